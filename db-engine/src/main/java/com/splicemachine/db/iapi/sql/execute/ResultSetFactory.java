@@ -116,6 +116,8 @@ public interface ResultSetFactory {
 			be inserted into the target table.
 		@param generationClauses	The code to compute column generation clauses if any
 		@param checkGM	The code to enforce the check constraints, if any
+		@param bulkImportColumnar	true if a bulk import should read Parquet or ORC sources
+			directly, whatever splice.bulkImport.columnar says
 		@return the insert operation as a result set.
 		@exception StandardException thrown when unable to perform the insert
 	 */
@@ -142,7 +144,8 @@ public interface ResultSetFactory {
 								 boolean samplingOnly,
                                  boolean outputKeysOnly,
 								 boolean skipSampling,
-								 String indexName)
+								 String indexName,
+								 boolean bulkImportColumnar)
         throws StandardException;
 
 	/**
@@ -980,7 +980,12 @@ public final class SQLDate extends DataType
                                   cal.get(Calendar.DATE));
 	}
 
-    static int computeEncodedDate( int y, int m, int d) throws StandardException
+    /**
+     * Encode a year, month (1-12) and day as {@link #setValue(int)} expects them.
+     *
+     * @exception StandardException if the value is out of the DB2 date range
+     */
+    public static int computeEncodedDate( int y, int m, int d) throws StandardException
     {
         int maxDay = 31;
         switch( m)
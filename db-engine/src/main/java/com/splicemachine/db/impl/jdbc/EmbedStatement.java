@@ -38,8 +38,12 @@ import com.splicemachine.db.iapi.sql.PreparedStatement;
 import com.splicemachine.db.iapi.sql.ResultSet;
 import com.splicemachine.db.iapi.sql.ParameterValueSet;
 import com.splicemachine.db.iapi.sql.conn.LanguageConnectionContext;
+import com.splicemachine.db.iapi.sql.conn.StatementContext;
+import com.splicemachine.db.iapi.error.ExceptionSeverity;
 import com.splicemachine.db.iapi.error.StandardException;
 import com.splicemachine.db.iapi.jdbc.EngineStatement;
+import com.splicemachine.db.impl.sql.StatementNormalizer;
+import com.splicemachine.db.impl.sql.catalog.DataDictionaryCache;
 import java.sql.SQLException;
 import java.sql.SQLWarning;
 import java.sql.Statement;
@@ -615,12 +619,15 @@ public class EmbedStatement extends ConnectionChild implements EngineStatement {
             try {
                 Activation activation;
                 try {
-                    PreparedStatement preparedStatement = lcc.prepareInternalStatement
-                            (lcc.getDefaultSchema(), sql, resultSetConcurrency ==
-                                    java.sql.ResultSet.CONCUR_READ_ONLY, false);
-                    activation =
-                            preparedStatement.getActivation(lcc, resultSetType ==
-                                    java.sql.ResultSet.TYPE_SCROLL_INSENSITIVE);
+                    activation = autoParameterizedActivation(sql);
+                    if (activation == null) {
+                        PreparedStatement preparedStatement = lcc.prepareInternalStatement
+                                (lcc.getDefaultSchema(), sql, resultSetConcurrency ==
+                                        java.sql.ResultSet.CONCUR_READ_ONLY, false);
+                        activation =
+                                preparedStatement.getActivation(lcc, resultSetType ==
+                                        java.sql.ResultSet.TYPE_SCROLL_INSENSITIVE);
+                    }
                     checkRequiresCallableStatement(activation);
                     InterruptStatus.restoreIntrFlagIfSeen(lcc);
                 } catch (Throwable t) {
@@ -642,6 +649,56 @@ public class EmbedStatement extends ConnectionChild implements EngineStatement {
         }
     }
 
+    /**
+     * If the database auto-parameterizes statements, compile the statement
+     * with its literals lifted into parameters, so that it shares its plan
+     * with every statement which differs from it only in its literals.
+     *
+     * @param sql the statement text
+     * @return an activation whose parameters are set to the literals of the
+     * statement, or null if the statement should be compiled as it is
+     * @throws StandardException thrown on failure
+     */
+    private Activation autoParameterizedActivation(String sql) throws StandardException {
+        DataDictionaryCache cache = lcc.getDataDictionary().getDataDictionaryCache();
+        StatementNormalizer.NormalizedStatement normalized = cache.autoParameterize(sql);
+        if (normalized == null)
+            return null;
+
+        Activation activation = null;
+        int statementDepth = lcc.getStatementDepth();
+        try {
+            PreparedStatement preparedStatement = lcc.prepareInternalStatement
+                    (lcc.getDefaultSchema(), normalized.getText(), resultSetConcurrency ==
+                            java.sql.ResultSet.CONCUR_READ_ONLY, false);
+            activation =
+                    preparedStatement.getActivation(lcc, resultSetType ==
+                            java.sql.ResultSet.TYPE_SCROLL_INSENSITIVE);
+            normalized.bind(activation.getParameterValueSet());
+            return activation;
+        } catch (StandardException se) {
+            if (se.getSeverity() > ExceptionSeverity.STATEMENT_SEVERITY)
+                throw se;
+            /*
+             * A literal was somewhere that a parameter can't be. Undo only the
+             * failed compile, by cleaning up the statement contexts it left
+             * pushed (which also drops the dependencies it registered), and
+             * compile the statement as it was written instead (from now on,
+             * as well). The rest of the context stack is left as it is.
+             */
+            if (activation != null)
+                activation.close();
+            while (lcc.getStatementDepth() > statementDepth) {
+                StatementContext statementContext = lcc.getStatementContext();
+                statementContext.cleanupOnError(se);
+                if (lcc.getStatementDepth() > statementDepth && lcc.getStatementContext() == statementContext)
+                    lcc.popStatementContext(statementContext, se);
+            }
+            cache.autoParameterizeFailed(normalized);
+            return null;
+        }
+    }
+
     /**
      * JDBC 3.0
      * <p/>
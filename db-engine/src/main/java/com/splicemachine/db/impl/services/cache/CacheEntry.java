@@ -288,6 +288,19 @@ final class CacheEntry {
         callback = cb;
     }
 
+    /**
+     * Notify the replacement algorithm that the identity of the cached object
+     * has been set.
+     */
+    void identitySet() {
+        if (SanityManager.DEBUG) {
+            SanityManager.ASSERT(mutex.isHeldByCurrentThread());
+        }
+        if (callback != null) {
+            callback.identitySet();
+        }
+    }
+
     /**
      * Clear this entry and notify the replacement algorithm that the
      * <code>Cacheable</code> can be reused.
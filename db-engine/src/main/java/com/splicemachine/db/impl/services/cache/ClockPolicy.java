@@ -149,10 +149,12 @@ final class ClockPolicy implements ReplacementPolicy {
      * <em>not recently used</em> object from the cache. If there are no
      * entries available for reuse, increase the size of the cache.
      *
+     * @param key the identity of the object being inserted
      * @param entry the entry to insert (must be locked)
      * @exception StandardException if an error occurs when inserting the entry
      */
-    public void insertEntry(CacheEntry entry) throws StandardException {
+    public void insertEntry(Object key, CacheEntry entry)
+            throws StandardException {
 
         final int size;
         synchronized (clock) {
@@ -248,6 +250,13 @@ final class ClockPolicy implements ReplacementPolicy {
             recentlyUsed = true;
         }
 
+        /**
+         * The clock only counts entries, so there is nothing to do when an
+         * entry has been given its identity.
+         */
+        public void identitySet() {
+        }
+
         /**
          * Mark this object as free and reusable. Caller must have locked
          * <code>entry</code>.
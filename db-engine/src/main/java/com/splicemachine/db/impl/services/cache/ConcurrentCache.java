@@ -34,14 +34,20 @@ package com.splicemachine.db.impl.services.cache;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.ObjectName;
 import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.reference.Module;
 import com.splicemachine.db.iapi.reference.SQLState;
 import com.splicemachine.db.iapi.services.cache.CacheManager;
 import com.splicemachine.db.iapi.services.cache.Cacheable;
 import com.splicemachine.db.iapi.services.cache.CacheableFactory;
 import com.splicemachine.db.iapi.services.daemon.DaemonService;
+import com.splicemachine.db.iapi.services.jmx.ManagementService;
+import com.splicemachine.db.iapi.services.monitor.Monitor;
 import com.splicemachine.db.iapi.services.sanity.SanityManager;
 import com.splicemachine.db.iapi.util.Matchable;
+import com.splicemachine.db.mbeans.CacheManagerMBean;
 
 /**
  * A cache manager based on the utilities found in the
@@ -67,11 +73,29 @@ final class ConcurrentCache implements CacheManager {
     private final CacheableFactory holderFactory;
     /** Name of this cache. */
     private final String name;
-    /** The maximum size (number of elements) for this cache. */
+    /**
+     * The maximum size (number of elements) for this cache. For a weighted
+     * cache, whose number of elements is not bounded, the initial size.
+     */
     private final int maxSize;
+    /**
+     * The maximum weight of this cache. Unless the cache is weighted, the
+     * same as the maximum size.
+     */
+    private final long maxWeight;
     /** Replacement policy to be used for this cache. */
     private final ReplacementPolicy replacementPolicy;
 
+    /** The number of look-ups which found the object in the cache. */
+    private final LongAdder hits = new LongAdder();
+    /** The number of look-ups which didn't find the object in the cache. */
+    private final LongAdder misses = new LongAdder();
+    /** The number of objects evicted to make room for others. */
+    private final LongAdder evictions = new LongAdder();
+
+    /** Identifies the management bean of this cache, if it has one. */
+    private Object mbean;
+
     /**
      * Flag that indicates whether this cache instance has been shut down. When
      * it has been stopped, <code>find()</code>, <code>findCached()</code> and
@@ -102,6 +126,31 @@ final class ConcurrentCache implements CacheManager {
         this.holderFactory = holderFactory;
         this.name = name;
         this.maxSize = maxSize;
+        this.maxWeight = maxSize;
+    }
+
+    /**
+     * Creates a new cache manager which uses the W-TinyLFU replacement
+     * policy.
+     *
+     * @param holderFactory factory which creates <code>Cacheable</code>s
+     * @param name the name of the cache
+     * @param initialSize the initial capacity of the cache
+     * @param maxWeight maximum weight of the cache
+     * @param weighted if <code>true</code>, a <code>SizedCacheable</code>
+     * weighs its estimated size in bytes, otherwise each element weighs one
+     * @see WindowTinyLfuPolicy
+     */
+    ConcurrentCache(CacheableFactory holderFactory, String name,
+                    int initialSize, long maxWeight, boolean weighted) {
+        cache = new ConcurrentHashMap<Object, CacheEntry>(initialSize);
+        replacementPolicy =
+                new WindowTinyLfuPolicy(this, initialSize, maxWeight, weighted);
+        this.holderFactory = holderFactory;
+        this.name = name;
+        this.maxSize = weighted ?
+                initialSize : (int) Math.min(maxWeight, Integer.MAX_VALUE);
+        this.maxWeight = maxWeight;
     }
 
     /**
@@ -197,6 +246,7 @@ final class ConcurrentCache implements CacheManager {
         CacheEntry entry = cache.remove(key);
         entry.getCacheable().clearIdentity();
         entry.setCacheable(null);
+        evictions.increment();
     }
 
     /**
@@ -215,7 +265,7 @@ final class ConcurrentCache implements CacheManager {
             throws StandardException {
 
         try {
-            replacementPolicy.insertEntry(entry);
+            replacementPolicy.insertEntry(key, entry);
         } catch (StandardException se) {
             // Failed to insert the entry into the replacement policy. Make
             // sure that it's also removed from the hash table.
@@ -254,6 +304,7 @@ final class ConcurrentCache implements CacheManager {
             entry.settingIdentityComplete();
             if (item != null) {
                 entry.setCacheable(item);
+                entry.identitySet();
             } else {
                 removeEntry(key);
             }
@@ -287,10 +338,12 @@ final class ConcurrentCache implements CacheManager {
                 // The object is already cached. Increase the use count and
                 // return it.
                 entry.keep(true);
+                hits.increment();
                 return item;
             } else {
                 // The object is not cached. Insert the entry into a free
                 // slot and retrieve a reusable Cacheable.
+                misses.increment();
                 item = insertIntoFreeSlot(key, entry);
             }
         } finally {
@@ -332,6 +385,7 @@ final class ConcurrentCache implements CacheManager {
         CacheEntry entry = cache.get(key);
         if (entry == null) {
             // No such object was found in the cache.
+            misses.increment();
             return null;
         }
 
@@ -347,6 +401,9 @@ final class ConcurrentCache implements CacheManager {
             Cacheable item = entry.getCacheable();
             if (item != null) {
                 entry.keep(true);
+                hits.increment();
+            } else {
+                misses.increment();
             }
             return item;
         } finally {
@@ -609,6 +666,75 @@ final class ConcurrentCache implements CacheManager {
         if (cleaner != null) {
             cleaner.unsubscribe();
         }
+        ManagementService jmx = (ManagementService)
+                Monitor.getSystemModule(Module.JMX);
+        if (jmx != null) {
+            jmx.unregisterMBean(mbean);
+        }
+    }
+
+    /**
+     * Register a management bean which shows the statistics of this cache,
+     * if the management service is running.
+     *
+     * @exception StandardException if the bean cannot be registered
+     */
+    void registerMBean() throws StandardException {
+        ManagementService jmx = (ManagementService)
+                Monitor.getSystemModule(Module.JMX);
+        if (jmx != null) {
+            mbean = jmx.registerMBean(new ConcurrentCacheMBeanImpl(this),
+                    CacheManagerMBean.class,
+                    "type=CacheManager,name=" + ObjectName.quote(name));
+        }
+    }
+
+    String getName() {
+        return name;
+    }
+
+    String getReplacementPolicyName() {
+        return (replacementPolicy instanceof WindowTinyLfuPolicy) ?
+                "W-TinyLFU" : "Clock";
+    }
+
+    long getHitCount() {
+        return hits.sum();
+    }
+
+    long getMissCount() {
+        return misses.sum();
+    }
+
+    long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Return the number of entries in the cache, including those whose
+     * identity is being set.
+     *
+     * @return the number of entries
+     */
+    int getEntryCount() {
+        return cache.size();
+    }
+
+    /**
+     * Return the weight of the cache, if its replacement policy weighs the
+     * entries, otherwise the number of entries.
+     *
+     * @return the weight of the cache
+     */
+    long getWeight() {
+        if (replacementPolicy instanceof WindowTinyLfuPolicy) {
+            return ((WindowTinyLfuPolicy) replacementPolicy).getWeight();
+        }
+        return cache.size();
+    }
+
+    long getMaxWeight() {
+        return maxWeight;
     }
 
     /**
@@ -31,13 +31,18 @@
 
 package com.splicemachine.db.impl.services.cache;
 
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.reference.Property;
 import com.splicemachine.db.iapi.services.cache.CacheFactory;
 import com.splicemachine.db.iapi.services.cache.CacheManager;
 import com.splicemachine.db.iapi.services.cache.CacheableFactory;
+import com.splicemachine.db.iapi.services.property.PropertyUtil;
 
 /**
  * Factory class which creates cache manager instances based on the
- * <code>ConcurrentCache</code> implementation.
+ * <code>ConcurrentCache</code> implementation. The replacement policy of the
+ * caches is picked by the <code>derby.cache.replacementPolicy</code>
+ * property.
  */
 public class ConcurrentCacheFactory implements CacheFactory {
     /**
@@ -52,7 +57,56 @@ public class ConcurrentCacheFactory implements CacheFactory {
     public CacheManager newCacheManager(CacheableFactory holderFactory,
                                         String name,
                                         int initialSize, int maximumSize) {
-        return new ConcurrentCache(holderFactory, name,
-                                   initialSize, maximumSize);
+        ConcurrentCache cache;
+        if (useWindowTinyLfu()) {
+            cache = new ConcurrentCache(holderFactory, name,
+                                        initialSize, (long) maximumSize,
+                                        false);
+        } else {
+            cache = new ConcurrentCache(holderFactory, name,
+                                        initialSize, maximumSize);
+        }
+        registerMBean(cache);
+        return cache;
+    }
+
+    /**
+     * Create a new <code>ConcurrentCache</code> instance which limits the
+     * estimated size of its objects rather than their number. Objects which
+     * implement <code>SizedCacheable</code> weigh their size, others weigh
+     * one byte. Such a cache always uses the W-TinyLFU replacement policy,
+     * since the clock can only count objects.
+     *
+     * @param holderFactory factory which creates <code>Cacheable</code>s
+     * @param name name of the cache
+     * @param initialSize initial capacity of the cache (number of objects)
+     * @param maximumSize maximum size of the cache (bytes)
+     * @return a <code>ConcurrentCache</code> instance
+     */
+    public CacheManager newSizedCacheManager(CacheableFactory holderFactory,
+                                             String name,
+                                             int initialSize,
+                                             long maximumSize) {
+        ConcurrentCache cache = new ConcurrentCache(holderFactory, name,
+                                                    initialSize, maximumSize,
+                                                    true);
+        registerMBean(cache);
+        return cache;
+    }
+
+    private static boolean useWindowTinyLfu() {
+        String policy = PropertyUtil.getSystemProperty(
+                Property.CACHE_REPLACEMENT_POLICY,
+                Property.CACHE_REPLACEMENT_POLICY_CLOCK);
+        return Property.CACHE_REPLACEMENT_POLICY_TINYLFU.equalsIgnoreCase(
+                policy.trim());
+    }
+
+    private static void registerMBean(ConcurrentCache cache) {
+        try {
+            cache.registerMBean();
+        } catch (StandardException se) {
+            // The cache works just as well without its statistics bean.
+        }
     }
 }
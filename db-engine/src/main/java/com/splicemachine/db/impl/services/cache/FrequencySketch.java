@@ -0,0 +1,213 @@
+/*
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Some parts of this source code are based on Apache Derby, and the following notices apply to
+ * Apache Derby:
+ *
+ * Apache Derby is a subproject of the Apache DB project, and is licensed under
+ * the Apache License, Version 2.0 (the "License"); you may not use these files
+ * except in compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * Splice Machine, Inc. has modified the Apache Derby code in this file.
+ *
+ * All such Splice Machine modifications are Copyright 2012 - 2017 Splice Machine, Inc.,
+ * and are licensed to you under the GNU Affero General Public License.
+ */
+
+package com.splicemachine.db.impl.services.cache;
+
+/**
+ * A probabilistic estimate of how often keys have been accessed, used by
+ * {@code WindowTinyLfuPolicy} to decide which of two entries is the more
+ * valuable to keep. It is a count-min sketch of 4-bit counters, four of them
+ * packed into each row of a {@code long} table. A key is counted in four
+ * counters, picked by four different hashes, and its frequency is the
+ * smallest of them, which can overestimate but never underestimate how often
+ * the key has been seen.
+ *
+ * <p>
+ *
+ * When the number of increments reaches ten times the capacity, all the
+ * counters are halved, so that keys which were popular long ago do not keep
+ * their place in the cache forever.
+ *
+ * <p>
+ *
+ * This class is not thread safe. {@code WindowTinyLfuPolicy} only uses it
+ * while it holds its eviction lock.
+ */
+final class FrequencySketch {
+
+    /** Seeds of the four hashes which pick the counters of a key. */
+    private static final long[] SEED = {
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L,
+        0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+
+    /** Clears the high bit of each counter after a shift right. */
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    /** Selects the low bit of each counter. */
+    private static final long ONE_MASK = 0x1111111111111111L;
+
+    /** The largest table that will be allocated. */
+    private static final int MAX_TABLE_SIZE = 1 << 24;
+
+    /** The counters, sixteen of them in each long. */
+    private long[] table;
+
+    /** The number of rows in the table minus one. */
+    private int tableMask;
+
+    /** The number of increments after which the counters are halved. */
+    private int sampleSize;
+
+    /** The number of increments since the counters were last halved. */
+    private int size;
+
+    /**
+     * Create a sketch for a cache which holds about the given number of
+     * entries.
+     *
+     * @param capacity the expected number of entries
+     */
+    FrequencySketch(long capacity) {
+        ensureCapacity(capacity);
+    }
+
+    /**
+     * Make the sketch large enough to tell apart the given number of keys.
+     * Growing the sketch forgets the frequencies counted so far.
+     *
+     * @param capacity the expected number of entries
+     */
+    void ensureCapacity(long capacity) {
+        int maximum = (int) Math.min(Math.max(capacity, 1), MAX_TABLE_SIZE);
+        if (table != null && table.length >= maximum) {
+            return;
+        }
+        table = new long[ceilingPowerOfTwo(maximum)];
+        tableMask = table.length - 1;
+        sampleSize = 10 * maximum;
+        size = 0;
+    }
+
+    /**
+     * Return the number of rows in the table.
+     *
+     * @return the capacity of the sketch
+     */
+    int capacity() {
+        return table.length;
+    }
+
+    /**
+     * Return the estimated number of times the key with the given hash code
+     * has been seen since the counters were last halved, at most 15.
+     *
+     * @param hashCode the hash code of the key
+     * @return the estimated frequency of the key
+     */
+    int frequency(int hashCode) {
+        int hash = spread(hashCode);
+        int start = (hash & 3) << 2;
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * Count one more occurrence of the key with the given hash code.
+     *
+     * @param hashCode the hash code of the key
+     */
+    void increment(int hashCode) {
+        int hash = spread(hashCode);
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            added |= incrementAt(index, start + i);
+        }
+        if (added && ++size == sampleSize) {
+            reset();
+        }
+    }
+
+    /**
+     * Increment one counter, unless it has already reached its maximum.
+     *
+     * @param i the row of the counter
+     * @param j the position of the counter within the row (0-15)
+     * @return {@code true} if the counter was incremented
+     */
+    private boolean incrementAt(int i, int j) {
+        int offset = j << 2;
+        long mask = 0xfL << offset;
+        if ((table[i] & mask) != mask) {
+            table[i] += 1L << offset;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Halve every counter.
+     */
+    private void reset() {
+        int odd = 0;
+        for (int i = 0; i < table.length; i++) {
+            odd += Long.bitCount(table[i] & ONE_MASK);
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        // Halving rounds the odd counters down, so the sum of all
+        // counters drops by a bit more than half.
+        size = (size >>> 1) - (odd >>> 2);
+    }
+
+    /**
+     * Return the row of one of the counters of a key.
+     *
+     * @param hash the spread hash code of the key
+     * @param i which of the four counters (0-3)
+     * @return the row of the counter
+     */
+    private int indexOf(int hash, int i) {
+        long h = (hash + SEED[i]) * SEED[i];
+        h += h >>> 32;
+        return ((int) h) & tableMask;
+    }
+
+    /**
+     * Mix the bits of a hash code, since many keys have poorly distributed
+     * hash codes.
+     */
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+
+    private static int ceilingPowerOfTwo(int x) {
+        return 1 << -Integer.numberOfLeadingZeros(x - 1);
+    }
+}
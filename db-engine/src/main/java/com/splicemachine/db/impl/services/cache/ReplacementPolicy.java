@@ -51,13 +51,14 @@ interface ReplacementPolicy {
      * use to communicate back to the replacement policy events (for instance,
      * that it has been accessed or become invalid).
      *
+     * @param key the identity of the object being inserted
      * @param entry the entry to insert
      * @exception StandardException if an error occurs while inserting the
      * entry
      *
      * @see CacheEntry#setCallback(ReplacementPolicy.Callback)
      */
-    void insertEntry(CacheEntry entry) throws StandardException;
+    void insertEntry(Object key, CacheEntry entry) throws StandardException;
 
     /**
      * Try to shrink the cache if it has exceeded its maximum size. It is not
@@ -85,6 +86,19 @@ interface ReplacementPolicy {
          */
         void access();
 
+        /**
+         * Notify the replacement algorithm that the <code>Cacheable</code> of
+         * the entry associated with this callback object has been given its
+         * identity, so that it can look at the object it holds (for instance,
+         * to find out how large it is).
+         *
+         * <p>
+         *
+         * The entry associated with the callback object must be locked by the
+         * current thread.
+         */
+        void identitySet();
+
         /**
          * Notify the replacement algorithm that the entry associated with this
          * callback object has been removed, and the callback object and the
@@ -0,0 +1,750 @@
+/*
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Some parts of this source code are based on Apache Derby, and the following notices apply to
+ * Apache Derby:
+ *
+ * Apache Derby is a subproject of the Apache DB project, and is licensed under
+ * the Apache License, Version 2.0 (the "License"); you may not use these files
+ * except in compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * Splice Machine, Inc. has modified the Apache Derby code in this file.
+ *
+ * All such Splice Machine modifications are Copyright 2012 - 2017 Splice Machine, Inc.,
+ * and are licensed to you under the GNU Affero General Public License.
+ */
+
+package com.splicemachine.db.impl.services.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.services.cache.Cacheable;
+import com.splicemachine.db.iapi.services.cache.SizedCacheable;
+import com.splicemachine.db.iapi.services.sanity.SanityManager;
+
+/**
+ * Implementation of a replacement policy which uses the W-TinyLFU algorithm.
+ * New entries are inserted into a small LRU window. Entries which fall out of
+ * the window become candidates for the main space, which is a segmented LRU
+ * made of a probation segment and a protected segment. When the cache is
+ * full, the oldest candidate competes with the least recently used entry of
+ * the probation segment, and the one which has been accessed less often (as
+ * estimated by a {@code FrequencySketch}, which also remembers keys that are
+ * no longer cached) is evicted. An entry in the probation segment which is
+ * accessed again is promoted to the protected segment. So an entry is only
+ * kept for long if it is used often, and a scan of many entries that are used
+ * once can not flush the entries that are used all the time.
+ *
+ * <p>
+ *
+ * The size of the cache is the sum of the weights of its entries. Each entry
+ * weighs one, unless the cache is weighted and its {@code Cacheable} is a
+ * {@code SizedCacheable}, in which case it weighs its estimated size.
+ *
+ * <p>
+ *
+ * Look-ups do not take any lock of the policy. An access only records the
+ * entry in a lossy ring buffer with a compare-and-set, and the buffer is
+ * drained into the queues and the sketch by whichever thread next holds the
+ * eviction lock. Insertions, removals and evictions take the eviction lock
+ * for as long as it takes to update the queues.
+ *
+ * <p>
+ *
+ * <code>CacheEntry</code> objects must be locked before the eviction lock,
+ * never the other way around. A thread which holds the eviction lock must
+ * not try to lock an entry, so the victim of an eviction is picked while
+ * holding the eviction lock, and evicted after the eviction lock has been
+ * released and the victim's entry has been locked.
+ */
+final class WindowTinyLfuPolicy implements ReplacementPolicy {
+
+    /** How large part of the cache (in percent) is the window. */
+    private static final int WINDOW_PERCENT = 1;
+
+    /**
+     * How large part of the main space (in percent) is the protected
+     * segment.
+     */
+    private static final int PROTECTED_PERCENT = 80;
+
+    /** The number of slots in the read buffer (a power of two). */
+    private static final int READ_BUFFER_SIZE = 128;
+
+    /**
+     * The number of pending accesses in the read buffer which makes the
+     * thread that records an access try to drain it.
+     */
+    private static final int READ_BUFFER_DRAIN_THRESHOLD = 32;
+
+    /**
+     * The minimum number of entries to try to evict before giving up making
+     * room for a new entry.
+     */
+    private static final int MIN_EVICTION_ATTEMPTS = 20;
+
+    /**
+     * How large part of the entries to try to evict before giving up making
+     * room for a new entry.
+     */
+    private static final float MAX_EVICTION_ATTEMPTS = 0.2f;
+
+    /** The queues an entry can be in. */
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    /** The cache manager for which this replacement policy is used. */
+    private final ConcurrentCache cacheManager;
+
+    /**
+     * The maximum weight of the cache. When this weight is exceeded, entries
+     * must be evicted before new ones are inserted.
+     */
+    private final long maxWeight;
+
+    /** Tells whether the entries are weighed by their estimated size. */
+    private final boolean weighted;
+
+    /** The maximum weight of the window. */
+    private final long windowMaxWeight;
+
+    /** The maximum weight of the protected segment. */
+    private final long protectedMaxWeight;
+
+    /**
+     * Guards the queues, the weights and the sketch. It must not be held
+     * when an entry is locked.
+     */
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    /** The window, least recently used entry first. */
+    private final AccessOrderQueue window = new AccessOrderQueue();
+
+    /** The probation segment, least recently used entry first. */
+    private final AccessOrderQueue probation = new AccessOrderQueue();
+
+    /** The protected segment, least recently used entry first. */
+    private final AccessOrderQueue protectedSegment = new AccessOrderQueue();
+
+    /** The access frequencies of recently used keys. */
+    private final FrequencySketch sketch;
+
+    /** The weight of all the entries in the policy. */
+    private long totalWeight;
+
+    /** The weight of the entries in the window. */
+    private long windowWeight;
+
+    /** The weight of the entries in the protected segment. */
+    private long protectedWeight;
+
+    /** The number of entries in the policy. */
+    private int nodeCount;
+
+    /**
+     * The oldest entry moved from the window to the probation segment which
+     * has not competed with a victim for admission yet, or {@code null}.
+     */
+    private Node candidate;
+
+    /** Accesses which have not been applied to the queues yet. */
+    private final AtomicReferenceArray<Node> readBuffer =
+            new AtomicReferenceArray<Node>(READ_BUFFER_SIZE);
+
+    /** The number of accesses ever written into the read buffer. */
+    private final AtomicLong readBufferWriteCount = new AtomicLong();
+
+    /**
+     * The number of accesses ever drained from the read buffer. Only
+     * written by threads which hold the eviction lock.
+     */
+    private volatile long readBufferReadCount;
+
+    /**
+     * Create a new <code>WindowTinyLfuPolicy</code> instance.
+     *
+     * @param cacheManager the cache manager that requests this policy
+     * @param initialSize the initial capacity of the cache (number of
+     * objects)
+     * @param maxWeight the maximum weight of the cache
+     * @param weighted whether objects which implement
+     * {@code SizedCacheable} weigh their estimated size rather than one
+     */
+    WindowTinyLfuPolicy(ConcurrentCache cacheManager, int initialSize,
+                        long maxWeight, boolean weighted) {
+        this.cacheManager = cacheManager;
+        this.maxWeight = maxWeight;
+        this.weighted = weighted;
+        windowMaxWeight = Math.max(1, maxWeight * WINDOW_PERCENT / 100);
+        protectedMaxWeight =
+                (maxWeight - windowMaxWeight) * PROTECTED_PERCENT / 100;
+        sketch = new FrequencySketch(weighted ? initialSize : maxWeight);
+    }
+
+    /**
+     * Insert an entry into the window. If the maximum weight would be
+     * exceeded, first evict the least valuable entries to make room for it,
+     * and give the new entry the {@code Cacheable} of one of them for reuse.
+     *
+     * <p>
+     *
+     * The new entry is only linked into the queues after the evictions, so
+     * that no other thread can pick it as a victim and wait for its lock
+     * while we are waiting for the lock on one of theirs.
+     *
+     * @param key the identity of the object being inserted
+     * @param entry the entry to insert (must be locked)
+     * @exception StandardException if an error occurs when cleaning an entry
+     * that is about to be evicted
+     */
+    public void insertEntry(Object key, CacheEntry entry)
+            throws StandardException {
+        int attempts;
+        evictionLock.lock();
+        try {
+            attempts = Math.max(MIN_EVICTION_ATTEMPTS,
+                                (int) (nodeCount * MAX_EVICTION_ATTEMPTS));
+        } finally {
+            evictionLock.unlock();
+        }
+
+        while (attempts-- > 0) {
+            Node victim = selectVictim(1);
+            if (victim == null) {
+                break;
+            }
+            Cacheable dirty = evict(victim, entry);
+            if (dirty != null) {
+                // Clean the object and unkeep it. If no one touches it in
+                // the meantime, it will be evicted the next time around.
+                cacheManager.cleanAndUnkeepEntry(victim.entry, dirty);
+            }
+        }
+
+        Node node = new Node(key.hashCode(), entry);
+        entry.setCallback(node);
+        evictionLock.lock();
+        try {
+            node.policyWeight = 1;
+            window.addLast(node);
+            windowWeight += node.policyWeight;
+            totalWeight += node.policyWeight;
+            nodeCount++;
+            sketch.increment(node.hash);
+            moveWindowOverflow();
+            if (nodeCount > sketch.capacity()) {
+                sketch.ensureCapacity(2L * nodeCount);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Try to shrink the cache if it has exceeded its maximum weight. Dirty
+     * objects are not evicted.
+     */
+    public void doShrink() {
+        int attempts = MIN_EVICTION_ATTEMPTS;
+        while (attempts-- > 0) {
+            Node victim = selectVictim(0);
+            if (victim == null) {
+                return;
+            }
+            // Never returns a dirty object when nothing is being inserted.
+            evict(victim, null);
+        }
+    }
+
+    /**
+     * Return the weight of all the entries in the cache.
+     *
+     * @return the weight of the cache
+     */
+    long getWeight() {
+        evictionLock.lock();
+        try {
+            return totalWeight;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Entry in the queues of the policy. It also implements the
+     * <code>Callback</code> interface, so that <code>ConcurrentCache</code>
+     * can notify the policy about events relevant to it.
+     */
+    private final class Node implements Callback {
+        /** The hash code of the key of the entry. */
+        final int hash;
+
+        /** The entry this node represents. */
+        final CacheEntry entry;
+
+        /**
+         * Tells whether the entry is still in the policy. Guarded by the
+         * eviction lock.
+         */
+        boolean alive = true;
+
+        /** The queue the entry is in. Guarded by the eviction lock. */
+        int queue = WINDOW;
+
+        /**
+         * The weight of the entry, as counted in the weights of the policy.
+         * Guarded by the eviction lock.
+         */
+        long policyWeight;
+
+        /** The neighbours in the queue. Guarded by the eviction lock. */
+        Node prev;
+        Node next;
+
+        /**
+         * Tells whether the access which <code>ConcurrentCache</code>
+         * records right after the insertion has been seen. Guarded by the
+         * lock on <code>entry</code>.
+         */
+        boolean inserted;
+
+        Node(int hash, CacheEntry entry) {
+            this.hash = hash;
+            this.entry = entry;
+        }
+
+        /**
+         * Record that the entry has been accessed. Caller must have locked
+         * <code>entry</code>.
+         */
+        public void access() {
+            if (!inserted) {
+                // The insertion has already been counted, and must not
+                // promote the entry as if it had been used again.
+                inserted = true;
+                return;
+            }
+            recordAccess(this);
+        }
+
+        /**
+         * Weigh the object which has been given its identity. Caller must
+         * have locked <code>entry</code>.
+         */
+        public void identitySet() {
+            if (!weighted) {
+                return;
+            }
+            Cacheable c = entry.getCacheable();
+            long weight = (c instanceof SizedCacheable) ?
+                    Math.max(((SizedCacheable) c).getSize(), 0) : 1;
+            boolean overweight;
+            evictionLock.lock();
+            try {
+                if (!alive) {
+                    return;
+                }
+                setWeight(this, weight);
+                overweight = totalWeight > maxWeight;
+            } finally {
+                evictionLock.unlock();
+            }
+            if (overweight) {
+                // Entries can't be evicted while this entry is locked. Let
+                // the background cleaner do it, if there is one, otherwise
+                // the next insertion will.
+                BackgroundCleaner cleaner =
+                        cacheManager.getBackgroundCleaner();
+                if (cleaner != null) {
+                    cleaner.scheduleShrink();
+                }
+            }
+        }
+
+        /**
+         * Remove the entry from the policy. Caller must have locked
+         * <code>entry</code>.
+         */
+        public void free() {
+            evictionLock.lock();
+            try {
+                if (alive) {
+                    unlink(this);
+                }
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * A doubly linked list of nodes, least recently used first.
+     */
+    private static final class AccessOrderQueue {
+        Node first;
+        Node last;
+
+        boolean isEmpty() {
+            return first == null;
+        }
+
+        void addLast(Node n) {
+            n.prev = last;
+            n.next = null;
+            if (last == null) {
+                first = n;
+            } else {
+                last.next = n;
+            }
+            last = n;
+        }
+
+        void remove(Node n) {
+            if (n.prev == null) {
+                first = n.next;
+            } else {
+                n.prev.next = n.next;
+            }
+            if (n.next == null) {
+                last = n.prev;
+            } else {
+                n.next.prev = n.prev;
+            }
+            n.prev = null;
+            n.next = null;
+        }
+
+        void moveToLast(Node n) {
+            if (n != last) {
+                remove(n);
+                addLast(n);
+            }
+        }
+    }
+
+    /**
+     * Record an access to an entry in the read buffer. If the buffer is full
+     * the access is dropped, which only makes the frequencies and the
+     * recency order slightly less accurate. If enough accesses are pending,
+     * try to drain the buffer, unless another thread is busy with the
+     * queues.
+     *
+     * @param node the accessed entry
+     */
+    private void recordAccess(Node node) {
+        while (true) {
+            long write = readBufferWriteCount.get();
+            long pending = write - readBufferReadCount;
+            if (pending >= READ_BUFFER_SIZE) {
+                break;
+            }
+            if (readBufferWriteCount.compareAndSet(write, write + 1)) {
+                readBuffer.lazySet((int) (write & (READ_BUFFER_SIZE - 1)),
+                                   node);
+                if (pending + 1 < READ_BUFFER_DRAIN_THRESHOLD) {
+                    return;
+                }
+                break;
+            }
+        }
+        if (evictionLock.tryLock()) {
+            try {
+                drainReadBuffer();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Apply the pending accesses in the read buffer. The caller must hold the
+     * eviction lock.
+     */
+    private void drainReadBuffer() {
+        long read = readBufferReadCount;
+        long write = readBufferWriteCount.get();
+        for (; read < write; read++) {
+            int index = (int) (read & (READ_BUFFER_SIZE - 1));
+            Node node = readBuffer.get(index);
+            if (node == null) {
+                // The thread which reserved this slot hasn't written to it
+                // yet. Leave the rest for later.
+                break;
+            }
+            readBuffer.lazySet(index, null);
+            onAccess(node);
+        }
+        readBufferReadCount = read;
+    }
+
+    /**
+     * Count an access to an entry and move it to the most recently used end
+     * of its queue, promoting it from the probation segment to the protected
+     * segment. The caller must hold the eviction lock.
+     *
+     * @param node the accessed entry
+     */
+    private void onAccess(Node node) {
+        sketch.increment(node.hash);
+        if (!node.alive) {
+            return;
+        }
+        switch (node.queue) {
+            case WINDOW:
+                window.moveToLast(node);
+                break;
+            case PROBATION:
+                removeFromProbation(node);
+                node.queue = PROTECTED;
+                protectedSegment.addLast(node);
+                protectedWeight += node.policyWeight;
+                // Make room in the protected segment by demoting its least
+                // recently used entries.
+                while (protectedWeight > protectedMaxWeight &&
+                        protectedSegment.first != node) {
+                    Node demoted = protectedSegment.first;
+                    protectedSegment.remove(demoted);
+                    protectedWeight -= demoted.policyWeight;
+                    demoted.queue = PROBATION;
+                    probation.addLast(demoted);
+                }
+                break;
+            default:
+                protectedSegment.moveToLast(node);
+        }
+    }
+
+    /**
+     * Pick the entry to evict next, if the cache would exceed its maximum
+     * weight. Entries which have fallen out of the window are moved to the
+     * probation segment, and the oldest of them competes with the least
+     * recently used entry of the probation segment.
+     *
+     * @param incomingWeight the weight of the entry that is about to be
+     * inserted
+     * @return the entry to evict, or {@code null} if nothing needs to or can
+     * be evicted
+     */
+    private Node selectVictim(long incomingWeight) {
+        evictionLock.lock();
+        try {
+            drainReadBuffer();
+            if (totalWeight + incomingWeight <= maxWeight) {
+                return null;
+            }
+
+            moveWindowOverflow();
+
+            Node victim = probation.first;
+            if (victim == null) {
+                // Everything is in the window or the protected segment.
+                return protectedSegment.first != null ?
+                        protectedSegment.first : window.first;
+            }
+
+            Node challenger = candidate;
+            if (challenger == null || challenger == victim) {
+                return victim;
+            }
+            // This candidate has had its chance. The next one is the
+            // following entry that came from the window.
+            candidate = challenger.next;
+
+            // Keep the one which is used more often. Ties go to the victim,
+            // since the candidate hasn't proved itself yet.
+            return sketch.frequency(challenger.hash) >
+                   sketch.frequency(victim.hash) ? victim : challenger;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Move the least recently used entries of the window to the probation
+     * segment until the window is back to its maximum weight. If the cache is
+     * full, they become candidates which have to compete for admission. The
+     * caller must hold the eviction lock.
+     */
+    private void moveWindowOverflow() {
+        while (windowWeight > windowMaxWeight && !window.isEmpty()) {
+            Node n = window.first;
+            window.remove(n);
+            windowWeight -= n.policyWeight;
+            n.queue = PROBATION;
+            probation.addLast(n);
+            if (candidate == null && totalWeight > maxWeight) {
+                candidate = n;
+            }
+        }
+    }
+
+    /**
+     * Evict an entry if it is still in the cache and not kept. If the
+     * evicted object's {@code Cacheable} can be reused by the inserted
+     * entry, hand it over.
+     *
+     * @param victim the entry to evict
+     * @param inserted the entry being inserted (locked by the current
+     * thread), or {@code null} if the cache is being shrunk
+     * @return a dirty object which the caller must clean and unkeep before
+     * the victim can be evicted, or {@code null}
+     */
+    private Cacheable evict(Node victim, CacheEntry inserted) {
+        CacheEntry e = victim.entry;
+        e.lock();
+        try {
+            boolean alive;
+            evictionLock.lock();
+            try {
+                alive = victim.alive;
+            } finally {
+                evictionLock.unlock();
+            }
+            if (!alive) {
+                // Someone else removed it after we picked it.
+                return null;
+            }
+            if (e.isKept() || !e.isValid()) {
+                // In use. Try it again later.
+                requeue(victim);
+                return null;
+            }
+
+            Cacheable c = e.getCacheable();
+            if (!c.isDirty()) {
+                cacheManager.evictEntry(c.getIdentity());
+                evictionLock.lock();
+                try {
+                    unlink(victim);
+                } finally {
+                    evictionLock.unlock();
+                }
+                if (inserted != null && inserted.getCacheable() == null) {
+                    inserted.setCacheable(c);
+                }
+                return null;
+            }
+
+            // Ask the background cleaner to clean the entry, so that it can
+            // be evicted next time around.
+            BackgroundCleaner cleaner = cacheManager.getBackgroundCleaner();
+            if (inserted == null ||
+                    (cleaner != null && cleaner.scheduleClean(e))) {
+                requeue(victim);
+                return null;
+            }
+
+            // There is no background cleaner, or the background cleaner has
+            // no free capacity. Keep the entry to prevent eviction until the
+            // caller has cleaned it, but don't mark it as accessed.
+            e.keep(false);
+            return c;
+        } finally {
+            e.unlock();
+        }
+    }
+
+    /**
+     * Move an entry which could not be evicted to the most recently used end
+     * of its queue, so that it isn't picked again right away.
+     *
+     * @param node the entry
+     */
+    private void requeue(Node node) {
+        evictionLock.lock();
+        try {
+            if (!node.alive) {
+                return;
+            }
+            switch (node.queue) {
+                case WINDOW:
+                    window.moveToLast(node);
+                    break;
+                case PROBATION:
+                    removeFromProbation(node);
+                    probation.addLast(node);
+                    break;
+                default:
+                    protectedSegment.moveToLast(node);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Change the weight of an entry. The caller must hold the eviction lock.
+     *
+     * @param node the entry
+     * @param weight its new weight
+     */
+    private void setWeight(Node node, long weight) {
+        long delta = weight - node.policyWeight;
+        node.policyWeight = weight;
+        totalWeight += delta;
+        if (node.queue == WINDOW) {
+            windowWeight += delta;
+        } else if (node.queue == PROTECTED) {
+            protectedWeight += delta;
+        }
+    }
+
+    /**
+     * Remove an entry from the probation segment, moving on the candidate
+     * for admission if it was that entry. The caller must hold the eviction
+     * lock.
+     *
+     * @param node the entry
+     */
+    private void removeFromProbation(Node node) {
+        if (candidate == node) {
+            candidate = node.next;
+        }
+        probation.remove(node);
+    }
+
+    /**
+     * Remove an entry from the policy. The caller must hold the eviction
+     * lock.
+     *
+     * @param node the entry
+     */
+    private void unlink(Node node) {
+        if (SanityManager.DEBUG) {
+            SanityManager.ASSERT(node.alive, "Node unlinked twice");
+        }
+        switch (node.queue) {
+            case WINDOW:
+                window.remove(node);
+                windowWeight -= node.policyWeight;
+                break;
+            case PROBATION:
+                removeFromProbation(node);
+                break;
+            default:
+                protectedSegment.remove(node);
+                protectedWeight -= node.policyWeight;
+        }
+        totalWeight -= node.policyWeight;
+        nodeCount--;
+        node.alive = false;
+    }
+}
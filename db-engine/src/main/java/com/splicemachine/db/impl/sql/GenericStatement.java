@@ -49,6 +49,7 @@ import com.splicemachine.db.iapi.sql.execute.ExecutionContext;
 import com.splicemachine.db.iapi.util.ByteArray;
 import com.splicemachine.db.iapi.util.InterruptStatus;
 import com.splicemachine.db.impl.ast.JsonTreeBuilderVisitor;
+import com.splicemachine.db.impl.sql.catalog.DataDictionaryCache;
 import com.splicemachine.db.impl.sql.compile.ExplainNode;
 import com.splicemachine.db.impl.sql.compile.StatementNode;
 import com.splicemachine.db.impl.sql.conn.GenericLanguageConnectionContext;
@@ -204,6 +205,12 @@ public class GenericStatement implements Statement{
 
     public String getCompilationSchema(){ return compilationSchema.getDescriptorName(); }
 
+    public SchemaDescriptor getCompilationSchemaDescriptor(){ return compilationSchema; }
+
+    public boolean isForReadOnly(){ return isForReadOnly; }
+
+    public int getPrepareIsolationLevel(){ return prepareIsolationLevel; }
+
     /**
      * Return the {@link PreparedStatement} currently associated with this
      * statement.
@@ -422,7 +429,12 @@ public class GenericStatement implements Statement{
                 cc.setReliability(CompilerContext.INTERNAL_SQL_LEGAL);
             }
 
+            long compileStart=System.nanoTime();
             fourPhasePrepare(lcc,paramDefaults,timestamps,beginTimestamp,foundInCache,cc);
+            DataDictionaryCache dataDictionaryCache=lcc.getDataDictionary().getDataDictionaryCache();
+            dataDictionaryCache.recordCompile(System.nanoTime()-compileStart);
+            if(cacheMe)
+                dataDictionaryCache.persistentStatementCacheAdd(this,preparedStmt,lcc);
         }catch(StandardException se){
             if(foundInCache)
                 ((GenericLanguageConnectionContext)lcc).removeStatement(this);
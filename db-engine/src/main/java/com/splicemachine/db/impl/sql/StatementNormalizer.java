@@ -0,0 +1,411 @@
+/*
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Some parts of this source code are based on Apache Derby, and the following notices apply to
+ * Apache Derby:
+ *
+ * Apache Derby is a subproject of the Apache DB project, and is licensed under
+ * the Apache License, Version 2.0 (the "License"); you may not use these files
+ * except in compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * Splice Machine, Inc. has modified the Apache Derby code in this file.
+ *
+ * All such Splice Machine modifications are Copyright 2012 - 2017 Splice Machine, Inc.,
+ * and are licensed to you under the GNU Affero General Public License.
+ */
+
+package com.splicemachine.db.impl.sql;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.reference.Limits;
+import com.splicemachine.db.iapi.sql.ParameterValueSet;
+
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Rewrites the text of a DML statement so that its literals become parameters, which lets statements that differ
+ * only in their constants share one entry in the statement cache.
+ * <p>
+ * Each literal is replaced with {@code CAST(? AS <type>)}. The type must not depend on the length or precision of the
+ * literal, or statements which differ only in their literals would still compile separately, so strings are cast to
+ * VARCHAR(32672) and exact decimals to DECIMAL(31,s), which only keeps the scale of the literal. Integers and
+ * floating point numbers keep the type the parser gives them (INTEGER, BIGINT or DOUBLE). The literal text is kept,
+ * and is bound to the parameter before execution.
+ * <p>
+ * The rewrite is lexical, and deliberately conservative. The following are left as they are:
+ * <ul>
+ *     <li>comments, including optimizer hints, so statements with different hints keep different plans</li>
+ *     <li>literals in ORDER BY, GROUP BY and PARTITION BY lists, where a number is a column position</li>
+ *     <li>the row counts of TOP, LIMIT, OFFSET and FETCH FIRST/NEXT, which must be constants</li>
+ *     <li>LIKE patterns and ESCAPE characters, whose constant prefix becomes an index range</li>
+ *     <li>operands of range predicates ({@code <}, {@code <=}, {@code >}, {@code >=} and BETWEEN), whose
+ *     selectivity the optimizer can only estimate from the statistics of the column given the value. The
+ *     selectivity of an equality predicate on a parameter is estimated from the cardinality of the column, so
+ *     those are lifted</li>
+ *     <li>typed DATE/TIME/TIMESTAMP literals and hex literals</li>
+ *     <li>empty strings, and numbers too wide to be typed as DECIMAL</li>
+ *     <li>literals in select lists and in VALUES other than those of an INSERT, whose types would become the types
+ *     of the result columns</li>
+ *     <li>operands of {@code ||} and dividends, as the type of the result depends on the length or precision of
+ *     the operands</li>
+ * </ul>
+ * Statements which are not DML, which already contain parameters or JDBC escapes, which have no literals to lift, or
+ * which have more than the allowed number of literals are not rewritten at all.
+ */
+public final class StatementNormalizer{
+    private static final Set<String> DML_KEYWORDS = keywords("SELECT","VALUES","INSERT","UPDATE","DELETE","WITH");
+    /* Keywords after which the next literal has to stay a literal */
+    private static final Set<String> CONSTANT_KEYWORDS = keywords("TOP","LIMIT","OFFSET","FIRST","NEXT","LIKE","ESCAPE");
+    /* Keywords which give a literal its type, as in DATE '2017-01-01' */
+    private static final Set<String> TYPED_LITERAL_KEYWORDS = keywords("DATE","TIME","TIMESTAMP");
+    /* Keywords which begin a BY list */
+    private static final Set<String> LIST_KEYWORDS = keywords("ORDER","GROUP","PARTITION");
+    /* Keywords which end a BY list at the same nesting level */
+    private static final Set<String> END_OF_LIST_KEYWORDS = keywords("HAVING","FETCH","OFFSET","LIMIT","UNION","EXCEPT",
+            "INTERSECT","FOR","WINDOW");
+    /* Keywords which end the upper bound of a BETWEEN at the same nesting level */
+    private static final Set<String> END_OF_BETWEEN_KEYWORDS = keywords("AND","OR","THEN","WHEN","ELSE","END","ORDER",
+            "GROUP","HAVING","FETCH","OFFSET","LIMIT","UNION","EXCEPT","INTERSECT","FOR","WINDOW");
+    private static final String STRING_TYPE = "VARCHAR("+Limits.DB2_VARCHAR_MAXWIDTH+")";
+
+    private StatementNormalizer(){}
+
+    /**
+     * @param statementText the statement as the client sent it
+     * @param maxLiterals the most literals to lift out of the statement
+     * @return the rewritten statement, or {@code null} if the statement should be compiled as it is
+     */
+    public static NormalizedStatement normalize(String statementText,int maxLiterals){
+        StringBuilder text = new StringBuilder(statementText.length()+32);
+        List<String> values = new ArrayList<>();
+        List<String> types = new ArrayList<>();
+
+        String firstWord = null;
+        String previousWord = null;
+        boolean keepNext = false;
+        int depth = 0;
+        int listDepth = -1;
+        /* the nesting level of the BETWEEN whose bounds the current position is in, and whether its AND is past */
+        int betweenDepth = -1;
+        boolean betweenAnd = false;
+        /* the nesting levels of the select lists and VALUES the current position is in */
+        Deque<Integer> projectionDepths = new ArrayDeque<>();
+        int length = statementText.length();
+        int pos = 0;
+        while(pos<length){
+            char c = statementText.charAt(pos);
+            int end;
+            if(c=='-' && pos+1<length && statementText.charAt(pos+1)=='-'){
+                end = statementText.indexOf('\n',pos);
+                end = end<0?length:end+1;
+                text.append(statementText,pos,end);
+                pos = end;
+                continue;
+            }else if(c=='/' && pos+1<length && statementText.charAt(pos+1)=='*'){
+                end = statementText.indexOf("*/",pos+2);
+                if(end<0) return null;
+                end+=2;
+                text.append(statementText,pos,end);
+                pos = end;
+                continue;
+            }else if(Character.isWhitespace(c)){
+                text.append(c);
+                pos++;
+                continue;
+            }
+
+            if(c=='"'){
+                end = closingQuote(statementText,pos);
+                if(end<0) return null;
+                text.append(statementText,pos,end);
+                previousWord = null;
+            }else if(c=='\''){
+                end = closingQuote(statementText,pos);
+                if(end<0 || firstWord==null) return null;
+                String value = statementText.substring(pos+1,end-1).replace("''","'");
+                boolean liftable = !keepNext && listDepth<0 && betweenDepth<0 && projectionDepths.isEmpty()
+                        && value.length()>0 && value.length()<=Limits.DB2_VARCHAR_MAXWIDTH
+                        && (previousWord==null || !TYPED_LITERAL_KEYWORDS.contains(previousWord))
+                        && !isConcatenated(text,statementText,end) && !isRangeOperand(text,statementText,end);
+                if(liftable)
+                    lift(text,values,types,value,STRING_TYPE);
+                else
+                    text.append(statementText,pos,end);
+                previousWord = null;
+            }else if(Character.isLetter(c) || c=='_'){
+                end = pos+1;
+                while(end<length && isIdentifierPart(statementText.charAt(end))) end++;
+                if(end<length && statementText.charAt(end)=='\''){
+                    //a hex literal such as X'0F'
+                    end = closingQuote(statementText,end);
+                    if(end<0) return null;
+                    text.append(statementText,pos,end);
+                    previousWord = null;
+                    keepNext = false;
+                    pos = end;
+                    continue;
+                }
+                String word = statementText.substring(pos,end).toUpperCase();
+                if(firstWord==null){
+                    if(!DML_KEYWORDS.contains(word)) return null;
+                    firstWord = word;
+                }
+                if("BY".equals(word) && previousWord!=null && LIST_KEYWORDS.contains(previousWord)){
+                    if(listDepth<0) listDepth = depth;
+                }else if(listDepth==depth && END_OF_LIST_KEYWORDS.contains(word))
+                    listDepth = -1;
+                if("BETWEEN".equals(word)){
+                    betweenDepth = depth;
+                    betweenAnd = false;
+                }else if(betweenDepth==depth && END_OF_BETWEEN_KEYWORDS.contains(word)){
+                    if("AND".equals(word) && !betweenAnd)
+                        betweenAnd = true;
+                    else
+                        betweenDepth = -1;
+                }
+                if("SELECT".equals(word) || ("VALUES".equals(word) && !("INSERT".equals(firstWord) && depth==0)))
+                    projectionDepths.push(depth);
+                else if("FROM".equals(word) && !projectionDepths.isEmpty() && projectionDepths.peek()==depth)
+                    projectionDepths.pop();
+                text.append(statementText,pos,end);
+                previousWord = word;
+                pos = end;
+                keepNext = CONSTANT_KEYWORDS.contains(word);
+                continue;
+            }else if(Character.isDigit(c) || (c=='.' && pos+1<length && Character.isDigit(statementText.charAt(pos+1)))){
+                end = endOfNumber(statementText,pos);
+                if(end<length && isIdentifierPart(statementText.charAt(end))) return null;
+                if(firstWord==null) return null;
+                String value = statementText.substring(pos,end);
+                boolean liftable = !keepNext && listDepth<0 && betweenDepth<0 && projectionDepths.isEmpty()
+                        && !isConcatenated(text,statementText,end) && !isDividend(statementText,end)
+                        && !isRangeOperand(text,statementText,end);
+                String type = liftable?numericType(value):null;
+                if(type!=null)
+                    lift(text,values,types,value,type);
+                else
+                    text.append(value);
+                previousWord = null;
+            }else if(c=='?' || c=='{'){
+                //already parameterized, or a JDBC escape whose contents we don't parse
+                return null;
+            }else{
+                if(c=='(')
+                    depth++;
+                else if(c==')'){
+                    depth--;
+                    if(listDepth>depth) listDepth = -1;
+                    if(betweenDepth>depth) betweenDepth = -1;
+                    while(!projectionDepths.isEmpty() && projectionDepths.peek()>depth)
+                        projectionDepths.pop();
+                }
+                text.append(c);
+                end = pos+1;
+                previousWord = null;
+            }
+            if(values.size()>maxLiterals) return null;
+            keepNext = false;
+            pos = end;
+        }
+        if(values.isEmpty()) return null;
+        return new NormalizedStatement(text.toString(),
+                values.toArray(new String[values.size()]),
+                types.toArray(new String[types.size()]));
+    }
+
+    /**
+     * A statement whose literals have been replaced with parameters, along with the values of those literals.
+     */
+    public static final class NormalizedStatement{
+        private final String text;
+        private final String[] values;
+        private final String[] types;
+
+        NormalizedStatement(String text,String[] values,String[] types){
+            this.text = text;
+            this.values = values;
+            this.types = types;
+        }
+
+        /**
+         * @return the statement text, with a parameter in place of each literal. Statements which differ only
+         * in their literals have equal text.
+         */
+        public String getText(){ return text; }
+
+        public int getParameterCount(){ return values.length; }
+
+        /**
+         * @return the text of the literal which the {@code position}th (0-based) parameter replaced
+         */
+        public String getValue(int position){ return values[position]; }
+
+        /**
+         * @return the SQL type the {@code position}th (0-based) parameter is cast to
+         */
+        public String getType(int position){ return types[position]; }
+
+        /**
+         * Set each parameter of an activation of the normalized statement to the literal it replaced.
+         */
+        public void bind(ParameterValueSet parameters) throws StandardException{
+            for(int i=0;i<values.length;i++){
+                parameters.getParameterForSet(i).setValue(values[i]);
+            }
+        }
+
+        @Override
+        public String toString(){
+            return text+" "+Arrays.toString(values);
+        }
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+
+    private static void lift(StringBuilder text,List<String> values,List<String> types,String value,String type){
+        text.append("CAST(? AS ").append(type).append(')');
+        values.add(value);
+        types.add(type);
+    }
+
+    /**
+     * @return the type to cast a numeric literal to, or {@code null} if it is too wide to be cast to
+     */
+    static String numericType(String literal){
+        if(literal.indexOf('e')>=0 || literal.indexOf('E')>=0)
+            return "DOUBLE";
+        if(literal.indexOf('.')>=0){
+            BigDecimal decimal = new BigDecimal(literal);
+            int scale = decimal.scale();
+            if(Math.max(decimal.precision(),scale)>Limits.DB2_MAX_DECIMAL_PRECISION_SCALE) return null;
+            return decimalType(scale);
+        }
+        BigDecimal integer = new BigDecimal(literal);
+        if(integer.compareTo(BigDecimal.valueOf(Integer.MAX_VALUE))<=0)
+            return "INTEGER";
+        if(integer.compareTo(BigDecimal.valueOf(Long.MAX_VALUE))<=0)
+            return "BIGINT";
+        if(integer.precision()>Limits.DB2_MAX_DECIMAL_PRECISION_SCALE) return null;
+        return decimalType(0);
+    }
+
+    private static String decimalType(int scale){
+        return "DECIMAL("+Limits.DB2_MAX_DECIMAL_PRECISION_SCALE+","+scale+")";
+    }
+
+    /**
+     * @return true if the literal which ends at {@code end} is an operand of {@code ||}, given the statement text
+     * rewritten up to the literal
+     */
+    private static boolean isConcatenated(StringBuilder rewritten,String text,int end){
+        int last = rewritten.length()-1;
+        while(last>=0 && Character.isWhitespace(rewritten.charAt(last))) last--;
+        if(last>0 && rewritten.charAt(last)=='|' && rewritten.charAt(last-1)=='|')
+            return true;
+        int next = skipWhitespace(text,end);
+        return text.startsWith("||",next);
+    }
+
+    /**
+     * @return true if the literal which ends at {@code end} is compared with {@code <}, {@code <=}, {@code >} or
+     * {@code >=}, given the statement text rewritten up to the literal (and any sign it has)
+     */
+    private static boolean isRangeOperand(StringBuilder rewritten,String text,int end){
+        int last = rewritten.length()-1;
+        while(last>=0 && Character.isWhitespace(rewritten.charAt(last))) last--;
+        if(last>=0 && (rewritten.charAt(last)=='-' || rewritten.charAt(last)=='+')){
+            last--;
+            while(last>=0 && Character.isWhitespace(rewritten.charAt(last))) last--;
+        }
+        if(last>=0){
+            char c = rewritten.charAt(last);
+            char before = last>0?rewritten.charAt(last-1):' ';
+            if(c=='<' || (c=='>' && before!='<') || (c=='=' && (before=='<' || before=='>')))
+                return true;
+        }
+        int next = skipWhitespace(text,end);
+        return next<text.length() && (text.charAt(next)=='>' || (text.charAt(next)=='<' && !text.startsWith("<>",next)));
+    }
+
+    /**
+     * @return true if the literal which ends at {@code end} is divided by what follows it
+     */
+    private static boolean isDividend(String text,int end){
+        int next = skipWhitespace(text,end);
+        return next<text.length() && text.charAt(next)=='/' && !text.startsWith("/*",next);
+    }
+
+    private static int skipWhitespace(String text,int pos){
+        while(pos<text.length() && Character.isWhitespace(text.charAt(pos))) pos++;
+        return pos;
+    }
+
+    /**
+     * @return the position just past the quote which closes the quoted string or identifier starting at
+     * {@code start}, or -1 if it is never closed. A doubled quote is an escaped quote.
+     */
+    private static int closingQuote(String text,int start){
+        char quote = text.charAt(start);
+        int pos = start+1;
+        while(pos<text.length()){
+            if(text.charAt(pos)==quote){
+                if(pos+1<text.length() && text.charAt(pos+1)==quote)
+                    pos+=2;
+                else
+                    return pos+1;
+            }else
+                pos++;
+        }
+        return -1;
+    }
+
+    private static int endOfNumber(String text,int start){
+        int pos = skipDigits(text,start);
+        if(pos<text.length() && text.charAt(pos)=='.')
+            pos = skipDigits(text,pos+1);
+        if(pos<text.length() && (text.charAt(pos)=='e' || text.charAt(pos)=='E')){
+            int exponent = pos+1;
+            if(exponent<text.length() && (text.charAt(exponent)=='+' || text.charAt(exponent)=='-'))
+                exponent++;
+            if(exponent<text.length() && Character.isDigit(text.charAt(exponent)))
+                pos = skipDigits(text,exponent);
+        }
+        return pos;
+    }
+
+    private static int skipDigits(String text,int pos){
+        while(pos<text.length() && Character.isDigit(text.charAt(pos))) pos++;
+        return pos;
+    }
+
+    private static boolean isIdentifierPart(char c){
+        return Character.isLetterOrDigit(c) || c=='_' || c=='$' || c=='#' || c=='@';
+    }
+
+    private static Set<String> keywords(String... words){
+        return new HashSet<>(Arrays.asList(words));
+    }
+}
@@ -45,15 +45,27 @@ import com.splicemachine.db.iapi.store.access.TransactionController;
 import com.splicemachine.db.iapi.store.access.conglomerate.Conglomerate;
 import com.splicemachine.db.impl.sql.GenericStatement;
 import com.splicemachine.db.impl.sql.GenericStorablePreparedStatement;
+import com.splicemachine.db.impl.sql.StatementNormalizer;
 import org.apache.log4j.Logger;
 import org.spark_project.guava.cache.Cache;
 import org.spark_project.guava.cache.CacheBuilder;
 import org.spark_project.guava.cache.RemovalListener;
 import org.spark_project.guava.cache.RemovalNotification;
 
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.MBeanRegistrationException;
+import javax.management.MBeanServer;
 import javax.management.MXBean;
+import javax.management.MalformedObjectNameException;
+import javax.management.NotCompliantMBeanException;
+import javax.management.ObjectName;
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  *
@@ -61,7 +73,10 @@ import java.util.Properties;
  *
  */
 public class DataDictionaryCache {
+    public static final String JMX_NAME = "com.splicemachine.db.impl.sql.catalog:type=DataDictionaryCache";
     private static Logger LOG = Logger.getLogger(DataDictionaryCache.class);
+    /*how long a statement which failed to compile with its literals lifted out is compiled with them in place*/
+    private static final long UNPARAMETERIZABLE_EXPIRATION_MINUTES = 10;
     private Cache<UUID,TableDescriptor> oidTdCache;
     private Cache<TableKey,TableDescriptor> nameTdCache;
     private Cache<TableKey,SPSDescriptor> spsNameCache;
@@ -73,11 +88,29 @@ public class DataDictionaryCache {
     private Cache<GenericStatement,GenericStorablePreparedStatement> statementCache;
     private Cache<String,SchemaDescriptor> schemaCache;
     private Cache<String,Optional<RoleGrantDescriptor>> roleCache;
+    /*
+     * Normalized statement texts which failed to compile with their literals lifted out; they are
+     * compiled with their literals in place until their entry expires, so that a failure which
+     * has since gone away (e.g. the statement was run before a table it needs was created) is
+     * not held against the statement forever.
+     */
+    private Cache<String,Boolean> unparameterizableCache;
+    private PersistentStatementCache persistentStatementCache;
+    private int persistentStatementCacheWarmSize;
     private int tdCacheSize;
     private int stmtCacheSize;
     private int permissionsCacheSize;
+    private boolean autoParameterize;
+    private int autoParameterizeMaxLiterals;
     private DataDictionary dd;
 
+    private final AtomicLong statementCacheHits = new AtomicLong();
+    private final AtomicLong statementCacheMisses = new AtomicLong();
+    private final AtomicLong autoParameterizedCount = new AtomicLong();
+    private final AtomicLong autoParameterizeFallbackCount = new AtomicLong();
+    private final AtomicLong compileCount = new AtomicLong();
+    private final AtomicLong totalCompileTimeNanos = new AtomicLong();
+
 
     public DataDictionaryCache(Properties startParams,DataDictionary dd) throws StandardException {
         String value=startParams.getProperty(Property.LANG_TD_CACHE_SIZE);
@@ -96,6 +129,30 @@ public class DataDictionaryCache {
         permissionsCacheSize=PropertyUtil.intPropertyValue(Property.LANG_PERMISSIONS_CACHE_SIZE, value,
                 0, Integer.MAX_VALUE, Property.LANG_PERMISSIONS_CACHE_SIZE_DEFAULT);
 
+        value=startParams.getProperty(Property.LANG_AUTO_PARAMETERIZE);
+        autoParameterize=value==null?Property.LANG_AUTO_PARAMETERIZE_DEFAULT:Boolean.parseBoolean(value);
+
+        value=startParams.getProperty(Property.LANG_AUTO_PARAMETERIZE_MAX_LITERALS);
+        autoParameterizeMaxLiterals=PropertyUtil.intPropertyValue(Property.LANG_AUTO_PARAMETERIZE_MAX_LITERALS, value,
+                1, Integer.MAX_VALUE, Property.LANG_AUTO_PARAMETERIZE_MAX_LITERALS_DEFAULT);
+
+        value=startParams.getProperty(Property.LANG_PERSISTENT_STATEMENT_CACHE_SIZE);
+        int persistentStatementCacheSize=PropertyUtil.intPropertyValue(Property.LANG_PERSISTENT_STATEMENT_CACHE_SIZE, value,
+                1, Integer.MAX_VALUE, Property.LANG_PERSISTENT_STATEMENT_CACHE_SIZE_DEFAULT);
+
+        value=startParams.getProperty(Property.LANG_PERSISTENT_STATEMENT_CACHE_DIRECTORY);
+        if(value!=null){
+            try{
+                persistentStatementCache=new PersistentStatementCache(new File(value),persistentStatementCacheSize);
+            }catch(IOException e){
+                LOG.error("Unable to use the persistent statement cache in " + value, e);
+            }
+        }
+
+        value=startParams.getProperty(Property.LANG_PERSISTENT_STATEMENT_CACHE_WARM_SIZE);
+        persistentStatementCacheWarmSize=PropertyUtil.intPropertyValue(Property.LANG_PERSISTENT_STATEMENT_CACHE_WARM_SIZE, value,
+                0, Integer.MAX_VALUE, Property.LANG_PERSISTENT_STATEMENT_CACHE_WARM_SIZE_DEFAULT);
+
         RemovalListener<Object,Dependent> dependentInvalidator = new RemovalListener<Object, Dependent>() {
             @Override
             public void onRemoval(RemovalNotification<Object, Dependent> removalNotification) {
@@ -120,6 +177,8 @@ public class DataDictionaryCache {
         statementCache = CacheBuilder.newBuilder().maximumSize(1024).removalListener(dependentInvalidator).build();
         schemaCache = CacheBuilder.newBuilder().maximumSize(1024).build();
         roleCache = CacheBuilder.newBuilder().maximumSize(100).build();
+        unparameterizableCache = CacheBuilder.newBuilder().maximumSize(1024)
+                .expireAfterWrite(UNPARAMETERIZABLE_EXPIRATION_MINUTES, TimeUnit.MINUTES).build();
         permissionsCache=CacheBuilder.newBuilder().maximumSize(permissionsCacheSize).build();
         this.dd = dd;
     }
@@ -343,6 +402,7 @@ public class DataDictionaryCache {
         schemaCache.invalidateAll();
         statementCache.invalidateAll();
         roleCache.invalidateAll();
+        unparameterizableCache.invalidateAll();
     }
 
     public void clearTableCache(){
@@ -372,6 +432,8 @@ public class DataDictionaryCache {
         if (LOG.isDebugEnabled())
             LOG.debug("clearStatementCache ");
         statementCache.invalidateAll();
+        if (persistentStatementCache != null)
+            persistentStatementCache.clear();
     }
 
     public void statementCacheAdd(GenericStatement gs, GenericStorablePreparedStatement gsp) throws StandardException {
@@ -386,11 +448,99 @@ public class DataDictionaryCache {
         if (!dd.canUseCache(null))
             return null;
         GenericStorablePreparedStatement gsps = statementCache.getIfPresent(gs);
+        if (gsps != null)
+            statementCacheHits.incrementAndGet();
+        else
+            statementCacheMisses.incrementAndGet();
         if (LOG.isDebugEnabled())
             LOG.debug("statementCacheFind " + gs.toString() +(gsps != null ? " found" : " null"));
         return gsps;
     }
 
+    public GenericStorablePreparedStatement persistentStatementCacheFind(GenericStatement gs, LanguageConnectionContext lcc) throws StandardException {
+        if (persistentStatementCache == null || !dd.canUseCache(null))
+            return null;
+        return persistentStatementCache.find(gs, lcc);
+    }
+
+    public void persistentStatementCacheAdd(GenericStatement gs, GenericStorablePreparedStatement gsps, LanguageConnectionContext lcc) throws StandardException {
+        if (persistentStatementCache == null || !dd.canUseCache(null))
+            return;
+        if (LOG.isDebugEnabled())
+            LOG.debug("persistentStatementCacheAdd " + gs.toString());
+        persistentStatementCache.add(gs, gsps, lcc);
+    }
+
+    public void persistentStatementCacheRemove(GenericStatement gs) {
+        if (persistentStatementCache == null)
+            return;
+        if (LOG.isDebugEnabled())
+            LOG.debug("persistentStatementCacheRemove " + gs.toString());
+        persistentStatementCache.remove(gs);
+    }
+
+    /**
+     * @return true if there are statements in the persistent statement cache to load at boot
+     */
+    public boolean canWarmStatementCache() {
+        return persistentStatementCache != null && persistentStatementCacheWarmSize > 0;
+    }
+
+    /**
+     * Load the most recently compiled statements of the persistent statement cache into the statement cache,
+     * by preparing them on the given connection.
+     *
+     * @return the number of statements loaded
+     */
+    public int warmStatementCache(Connection conn) {
+        if (!canWarmStatementCache())
+            return 0;
+        int warmed = persistentStatementCache.warm(conn, persistentStatementCacheWarmSize);
+        if (LOG.isInfoEnabled())
+            LOG.info("Warmed the statement cache with " + warmed + " statements");
+        return warmed;
+    }
+
+    /**
+     * Lift the literals out of a statement, so that it shares its statement cache entry with all the statements
+     * which differ from it only in their literals.
+     *
+     * @return the statement to compile and bind in place of {@code statementText}, or {@code null} if
+     * auto-parameterization is off, or the statement should be compiled as it is
+     */
+    public StatementNormalizer.NormalizedStatement autoParameterize(String statementText) {
+        if (!autoParameterize)
+            return null;
+        StatementNormalizer.NormalizedStatement normalized =
+                StatementNormalizer.normalize(statementText, autoParameterizeMaxLiterals);
+        if (normalized == null || unparameterizableCache.getIfPresent(normalized.getText()) != null)
+            return null;
+        if (LOG.isDebugEnabled())
+            LOG.debug("autoParameterize " + normalized);
+        autoParameterizedCount.incrementAndGet();
+        return normalized;
+    }
+
+    /**
+     * Record that a normalized statement could not be compiled, so that statements which normalize to
+     * it are compiled with their literals in place for the next {@link #UNPARAMETERIZABLE_EXPIRATION_MINUTES}.
+     */
+    public void autoParameterizeFailed(StatementNormalizer.NormalizedStatement normalized) {
+        if (LOG.isDebugEnabled())
+            LOG.debug("autoParameterizeFailed " + normalized.getText());
+        unparameterizableCache.put(normalized.getText(), Boolean.TRUE);
+        autoParameterizeFallbackCount.incrementAndGet();
+    }
+
+    public void recordCompile(long compileTimeNanos) {
+        compileCount.incrementAndGet();
+        totalCompileTimeNanos.addAndGet(compileTimeNanos);
+    }
+
+    public void registerJMX(MBeanServer mbs) throws MalformedObjectNameException, NotCompliantMBeanException, InstanceAlreadyExistsException, MBeanRegistrationException {
+        mbs.registerMBean(new Statistics(), new ObjectName(JMX_NAME));
+    }
+
     public void roleCacheAdd(String roleName, Optional<RoleGrantDescriptor> optional) throws StandardException {
         if (!dd.canUseCache(null))
             return;
@@ -419,6 +569,113 @@ public class DataDictionaryCache {
     @SuppressWarnings("UnusedDeclaration")
     public interface DataDictionaryCacheIFace {
 
+        /**
+         * @return the number of statements found already compiled in the statement cache
+         */
+        long getStatementCacheHitCount();
+
+        /**
+         * @return the number of statements looked for in the statement cache and not found
+         */
+        long getStatementCacheMissCount();
+
+        /**
+         * @return the number of compiled statements currently in the statement cache
+         */
+        long getStatementCacheSize();
+
+        /**
+         * @return true if the literals of statements are lifted into parameters before the statement cache is searched
+         */
+        boolean isAutoParameterizeEnabled();
+
+        /**
+         * @return the number of statements whose literals were lifted into parameters
+         */
+        long getAutoParameterizedCount();
+
+        /**
+         * @return the number of statements which failed to compile with their literals lifted, and were compiled
+         * with their literals in place instead
+         */
+        long getAutoParameterizeFallbackCount();
+
+        /**
+         * @return the number of statements which have been compiled
+         */
+        long getCompileCount();
+
+        /**
+         * @return the total time spent compiling statements, in milliseconds
+         */
+        long getTotalCompileTimeMillis();
+
+        /**
+         * @return true if compiled statements are also kept on local disk
+         */
+        boolean isPersistentStatementCacheEnabled();
+
+        /**
+         * @return the number of statements loaded from the persistent statement cache instead of being compiled
+         */
+        long getPersistentStatementCacheHitCount();
+
+        /**
+         * @return the number of statements looked for in the persistent statement cache and not found
+         */
+        long getPersistentStatementCacheMissCount();
+
+        /**
+         * @return the number of statements found in the persistent statement cache which were out of date,
+         * and had to be compiled
+         */
+        long getPersistentStatementCacheStaleCount();
+
+        /**
+         * @return the number of compiled statements written to the persistent statement cache
+         */
+        long getPersistentStatementCacheWriteCount();
+
+        /**
+         * @return the number of compiled statements not written to the persistent statement cache, because
+         * too many were already waiting to be written
+         */
+        long getPersistentStatementCacheDroppedWriteCount();
+
+        /**
+         * @return the number of least recently used statements deleted from the persistent statement cache
+         */
+        long getPersistentStatementCacheEvictionCount();
+
+        /**
+         * Delete every statement in the persistent statement cache. Statements which are out of date are
+         * recompiled anyway, so this is only needed to reclaim disk space.
+         */
+        void clearPersistentStatementCache();
+    }
+
+    private class Statistics implements DataDictionaryCacheIFace {
+        @Override public long getStatementCacheHitCount() { return statementCacheHits.get(); }
+        @Override public long getStatementCacheMissCount() { return statementCacheMisses.get(); }
+        @Override public long getStatementCacheSize() { return statementCache.size(); }
+        @Override public boolean isAutoParameterizeEnabled() { return autoParameterize; }
+        @Override public long getAutoParameterizedCount() { return autoParameterizedCount.get(); }
+        @Override public long getAutoParameterizeFallbackCount() { return autoParameterizeFallbackCount.get(); }
+        @Override public long getCompileCount() { return compileCount.get(); }
+        @Override public long getTotalCompileTimeMillis() { return TimeUnit.NANOSECONDS.toMillis(totalCompileTimeNanos.get()); }
+        @Override public boolean isPersistentStatementCacheEnabled() { return persistentStatementCache != null; }
+        @Override public long getPersistentStatementCacheHitCount() { return persistentStatementCache == null ? 0 : persistentStatementCache.getHitCount(); }
+        @Override public long getPersistentStatementCacheMissCount() { return persistentStatementCache == null ? 0 : persistentStatementCache.getMissCount(); }
+        @Override public long getPersistentStatementCacheStaleCount() { return persistentStatementCache == null ? 0 : persistentStatementCache.getStaleCount(); }
+        @Override public long getPersistentStatementCacheWriteCount() { return persistentStatementCache == null ? 0 : persistentStatementCache.getWriteCount(); }
+        @Override public long getPersistentStatementCacheDroppedWriteCount() { return persistentStatementCache == null ? 0 : persistentStatementCache.getDroppedWriteCount(); }
+        @Override public long getPersistentStatementCacheEvictionCount() { return persistentStatementCache == null ? 0 : persistentStatementCache.getEvictionCount(); }
+
+        @Override
+        public void clearPersistentStatementCache() {
+            if (persistentStatementCache != null)
+                persistentStatementCache.clear();
+        }
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,579 @@
+/*
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Some parts of this source code are based on Apache Derby, and the following notices apply to
+ * Apache Derby:
+ *
+ * Apache Derby is a subproject of the Apache DB project, and is licensed under
+ * the Apache License, Version 2.0 (the "License"); you may not use these files
+ * except in compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * Splice Machine, Inc. has modified the Apache Derby code in this file.
+ *
+ * All such Splice Machine modifications are Copyright 2012 - 2017 Splice Machine, Inc.,
+ * and are licensed to you under the GNU Affero General Public License.
+ */
+
+package com.splicemachine.db.impl.sql.catalog;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.services.io.FormatIdInputStream;
+import com.splicemachine.db.iapi.services.io.FormatIdOutputStream;
+import com.splicemachine.db.iapi.services.monitor.Monitor;
+import com.splicemachine.db.iapi.sql.conn.LanguageConnectionContext;
+import com.splicemachine.db.iapi.sql.depend.DependencyManager;
+import com.splicemachine.db.iapi.sql.depend.Provider;
+import com.splicemachine.db.iapi.sql.depend.ProviderInfo;
+import com.splicemachine.db.iapi.sql.dictionary.ColumnDescriptor;
+import com.splicemachine.db.iapi.sql.dictionary.ConglomerateDescriptor;
+import com.splicemachine.db.iapi.sql.dictionary.ConstraintDescriptor;
+import com.splicemachine.db.iapi.sql.dictionary.DataDictionary;
+import com.splicemachine.db.iapi.sql.dictionary.PartitionStatisticsDescriptor;
+import com.splicemachine.db.iapi.sql.dictionary.TableDescriptor;
+import com.splicemachine.db.iapi.sql.dictionary.UniqueTupleDescriptor;
+import com.splicemachine.db.iapi.sql.execute.ExecutionContext;
+import com.splicemachine.db.iapi.store.access.TransactionController;
+import com.splicemachine.db.iapi.util.IdUtil;
+import com.splicemachine.db.impl.sql.GenericStatement;
+import com.splicemachine.db.impl.sql.GenericStorablePreparedStatement;
+import org.apache.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A local, on-disk copy of the statement cache, so that a server which restarts can load the compiled plans
+ * of its hot statements rather than parse, optimize and generate them all over again.
+ * <p>
+ * Each compiled statement is kept in its own file, named for its compilation schema, its text, and the
+ * other properties which make up the identity of a {@link GenericStatement}. The file holds the
+ * {@link GenericStorablePreparedStatement} in the same externalized form that stored prepared statements
+ * use (generated class bytes included), along with the persistent providers it depends on, each with a
+ * fingerprint of its definition. A file is only used if it was written by the same build of the engine, and
+ * every one of its providers still exists with the same fingerprint; otherwise it is deleted, and the
+ * statement is compiled as usual (which writes the file anew).
+ * <p>
+ * A statement loaded from disk registers its dependencies with the DependencyManager, just as a compiled one
+ * does, so DDL invalidates it in the same way. Statements which need permission checks at execution, or which
+ * refer to session objects, are never written.
+ * <p>
+ * A compiled statement is serialized in memory by the thread which compiled it, and written to disk by a
+ * background thread, so compiling never waits on the disk; if the writer falls behind, new statements are
+ * not written. The directory holds at most a fixed number of statements: once it holds more, the least
+ * recently used ones (by the modification time of their files, which is touched when a file is loaded) are
+ * deleted.
+ * <p>
+ * All of this is best effort: I/O errors are logged, and treated as a miss.
+ */
+public class PersistentStatementCache {
+    private static final Logger LOG = Logger.getLogger(PersistentStatementCache.class);
+    private static final int FORMAT_VERSION = 1;
+    private static final String SUFFIX = ".plan";
+    private static final long NO_FINGERPRINT = 0L;
+    /*the number of statements which may wait to be written, beyond which new ones are dropped*/
+    private static final int MAX_PENDING_WRITES = 128;
+
+    private final File directory;
+    private final String buildStamp;
+    private final int maxEntries;
+    private final Executor writer;
+    /*the number of files in the directory, as far as this cache knows*/
+    private final AtomicInteger entries = new AtomicInteger();
+    /*bumped by clear(), so that statements waiting to be written when it is called are dropped*/
+    private final AtomicLong generation = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong staleEntries = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong droppedWrites = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param maxEntries the number of statements to keep, beyond which the least recently used are deleted
+     */
+    public PersistentStatementCache(File directory, int maxEntries) throws IOException {
+        this(directory, buildStamp(), maxEntries, null);
+    }
+
+    /**
+     * @param writer runs the writes of statements, or null to write them on a background thread
+     */
+    PersistentStatementCache(File directory, String buildStamp, int maxEntries, Executor writer) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("Unable to create statement cache directory " + directory);
+        this.directory = directory;
+        this.buildStamp = buildStamp;
+        this.maxEntries = maxEntries;
+        this.writer = writer != null ? writer : newWriter(droppedWrites);
+        File[] files = planFiles();
+        entries.set(files == null ? 0 : files.length);
+    }
+
+    /**
+     * Load the compiled form of a statement, if it was written by an earlier compile and is still valid.
+     *
+     * @return the statement, up to date and with its dependencies registered, or null if it has to be compiled
+     */
+    public GenericStorablePreparedStatement find(GenericStatement statement,
+                                                 LanguageConnectionContext lcc) throws StandardException {
+        File file = fileFor(statement);
+        if (!file.isFile()) {
+            misses.incrementAndGet();
+            return null;
+        }
+        DataDictionary dd = lcc.getDataDictionary();
+        GenericStorablePreparedStatement ps;
+        Provider[] providers;
+        try (FormatIdInputStream in = new FormatIdInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            Header header = Header.read(in);
+            if (!header.matches(buildStamp, statement)) {
+                stale(file, "it was written for a different build or statement");
+                return null;
+            }
+            providers = new Provider[in.readInt()];
+            for (int i = 0; i < providers.length; i++) {
+                ProviderInfo info = (ProviderInfo) in.readObject();
+                long fingerprint = in.readLong();
+                providers[i] = provider(info, dd);
+                if (providers[i] == null || fingerprint(providers[i], lcc) != fingerprint) {
+                    stale(file, info.getProviderName() + " has changed or been dropped");
+                    return null;
+                }
+            }
+            ps = readPreparedStatement(statement, in);
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            LOG.warn("Unable to read cached statement " + file, e);
+            stale(file, "it could not be read");
+            return null;
+        }
+
+        ps.loadGeneratedClass();
+        DependencyManager dm = dd.getDependencyManager();
+        for (Provider provider : providers) {
+            dm.addDependency(ps, provider, lcc.getContextManager());
+        }
+        ps.setValid();
+        hits.incrementAndGet();
+        //the file is now the most recently used, and the last to be evicted
+        if (!file.setLastModified(System.currentTimeMillis()) && LOG.isDebugEnabled())
+            LOG.debug("Unable to touch cached statement " + file);
+        if (LOG.isDebugEnabled())
+            LOG.debug("loaded " + statement + " from " + file);
+        return ps;
+    }
+
+    /**
+     * Write a statement which has just been compiled. The statement is serialized before this returns, and
+     * written to disk later.
+     */
+    public void add(GenericStatement statement, GenericStorablePreparedStatement ps,
+                    LanguageConnectionContext lcc) throws StandardException {
+        List permissions = ps.getRequiredPermissionsList();
+        if (ps.referencesSessionSchema() || (permissions != null && !permissions.isEmpty()))
+            return;
+        DataDictionary dd = lcc.getDataDictionary();
+        ProviderInfo[] providers = dd.getDependencyManager().getPersistentProviderInfos(ps);
+        long[] fingerprints = new long[providers.length];
+        for (int i = 0; i < providers.length; i++) {
+            Provider provider = provider(providers[i], dd);
+            if (provider == null)
+                return;
+            fingerprints[i] = fingerprint(provider, lcc);
+            if (fingerprints[i] == NO_FINGERPRINT)
+                return;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+        try (FormatIdOutputStream out = new FormatIdOutputStream(bytes)) {
+            new Header(buildStamp, statement).write(out);
+            out.writeInt(providers.length);
+            for (int i = 0; i < providers.length; i++) {
+                out.writeObject(providers[i]);
+                out.writeLong(fingerprints[i]);
+            }
+            ps.writeExternal(out);
+        } catch (IOException e) {
+            //typically a saved object which can't be written
+            if (LOG.isDebugEnabled())
+                LOG.debug("Unable to cache statement " + statement, e);
+            return;
+        }
+        final File file = fileFor(statement);
+        final byte[] contents = bytes.toByteArray();
+        final long writeGeneration = generation.get();
+        writer.execute(() -> write(file, contents, ps, writeGeneration));
+    }
+
+    /**
+     * Prepare the most recently written statements on the given connection, which loads them into the
+     * statement cache. Statements whose files turn out to be stale are compiled, which is no worse than
+     * waiting for a client to compile them.
+     *
+     * @return the number of statements prepared
+     */
+    public int warm(Connection conn, int maxStatements) {
+        File[] files = planFiles();
+        if (files == null)
+            return 0;
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified).reversed());
+
+        int warmed = 0;
+        String schema = null;
+        for (int i = 0; i < files.length && warmed < maxStatements; i++) {
+            Header header;
+            try (FormatIdInputStream in = new FormatIdInputStream(new BufferedInputStream(new FileInputStream(files[i])))) {
+                header = Header.read(in);
+            } catch (IOException e) {
+                continue;
+            }
+            if (!header.buildStamp.equals(buildStamp)
+                    || header.isolationLevel != ExecutionContext.UNSPECIFIED_ISOLATION_LEVEL)
+                continue;
+            try {
+                if (!header.schemaName.equals(schema)) {
+                    try (Statement s = conn.createStatement()) {
+                        s.execute("SET SCHEMA " + IdUtil.normalToDelimited(header.schemaName));
+                    }
+                    schema = header.schemaName;
+                }
+                int concurrency = header.readOnly ? ResultSet.CONCUR_READ_ONLY : ResultSet.CONCUR_UPDATABLE;
+                conn.prepareStatement(header.statementText, ResultSet.TYPE_FORWARD_ONLY, concurrency).close();
+                warmed++;
+            } catch (SQLException e) {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Unable to warm statement " + header.statementText, e);
+            }
+        }
+        return warmed;
+    }
+
+    /**
+     * Delete a statement, which has been invalidated.
+     */
+    public void remove(GenericStatement statement) {
+        delete(fileFor(statement));
+    }
+
+    /**
+     * Delete every cached statement.
+     */
+    public void clear() {
+        generation.incrementAndGet();
+        File[] files = planFiles();
+        if (files == null)
+            return;
+        for (File file : files) {
+            delete(file);
+        }
+    }
+
+    public long getHitCount() { return hits.get(); }
+    public long getMissCount() { return misses.get(); }
+    public long getStaleCount() { return staleEntries.get(); }
+    public long getWriteCount() { return writes.get(); }
+    public long getDroppedWriteCount() { return droppedWrites.get(); }
+    public long getEvictionCount() { return evictions.get(); }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+
+    private void stale(File file, String reason) {
+        staleEntries.incrementAndGet();
+        if (LOG.isDebugEnabled())
+            LOG.debug("Discarding cached statement " + file + " because " + reason);
+        delete(file);
+    }
+
+    /**
+     * Write a serialized statement to its file, unless the statement has been invalidated (or the cache
+     * cleared) since it was serialized. Runs on the writer.
+     */
+    private void write(File file, byte[] contents, GenericStorablePreparedStatement ps, long writeGeneration) {
+        File tmp = new File(directory, file.getName() + ".tmp" + Thread.currentThread().getId());
+        try {
+            Files.write(tmp.toPath(), contents);
+            if (!ps.isValid() || writeGeneration != generation.get()) {
+                delete(tmp);
+                return;
+            }
+            boolean replaced = file.exists();
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            writes.incrementAndGet();
+            if (!replaced && entries.incrementAndGet() > maxEntries)
+                evict();
+        } catch (IOException e) {
+            LOG.warn("Unable to write cached statement " + file, e);
+            delete(tmp);
+        }
+    }
+
+    /**
+     * Delete the least recently used statements, so that the directory holds no more than {@link #maxEntries},
+     * and (so that the directory is not listed after every write) a tenth fewer when there are many.
+     */
+    private void evict() {
+        File[] files = planFiles();
+        if (files == null)
+            return;
+        int target = maxEntries - maxEntries / 10;
+        int remaining = files.length;
+        if (remaining > target) {
+            long[] lastModified = new long[files.length];
+            Integer[] order = new Integer[files.length];
+            for (int i = 0; i < files.length; i++) {
+                lastModified[i] = files[i].lastModified();
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparingLong(i -> lastModified[i]));
+            for (int i = 0; i < order.length && remaining > target; i++) {
+                File file = files[order[i]];
+                if (file.delete() || !file.exists()) {
+                    remaining--;
+                    evictions.incrementAndGet();
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("Evicted cached statement " + file);
+                }
+            }
+        }
+        entries.set(remaining);
+    }
+
+    private void delete(File file) {
+        if (file.delete())
+            entries.decrementAndGet();
+        else if (file.exists())
+            LOG.warn("Unable to delete cached statement " + file);
+    }
+
+    private File[] planFiles() {
+        return directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+    }
+
+    /**
+     * A single daemon thread, which drops (and counts) the writes which arrive while
+     * {@link #MAX_PENDING_WRITES} are already waiting.
+     */
+    private static Executor newWriter(AtomicLong droppedWrites) {
+        return new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(MAX_PENDING_WRITES),
+                r -> {
+                    Thread t = new Thread(r, "statement-cache-writer");
+                    t.setDaemon(true);
+                    return t;
+                },
+                (r, executor) -> droppedWrites.incrementAndGet());
+    }
+
+    /**
+     * Read the compiled form of a statement, which was written by {@link GenericStorablePreparedStatement#writeExternal}.
+     */
+    GenericStorablePreparedStatement readPreparedStatement(GenericStatement statement,
+                                                           FormatIdInputStream in) throws IOException, ClassNotFoundException {
+        GenericStorablePreparedStatement ps = new GenericStorablePreparedStatement(statement);
+        ps.readExternal(in);
+        return ps;
+    }
+
+    /**
+     * @return the provider, or null if it has been dropped or can't be looked up
+     */
+    private static Provider provider(ProviderInfo info, DataDictionary dd) {
+        try {
+            return (Provider) info.getDependableFinder().getDependable(dd, info.getObjectId());
+        } catch (StandardException e) {
+            //typically LANG_OBJECT_NOT_FOUND, as the finders throw rather than return null
+            if (LOG.isDebugEnabled())
+                LOG.debug("Unable to find " + info.getProviderName(), e);
+            return null;
+        }
+    }
+
+    private File fileFor(GenericStatement statement) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); //every JVM has SHA-1
+        }
+        digest.update(statement.getCompilationSchemaDescriptor().getUUID().toString().getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) (statement.isForReadOnly() ? 1 : 0));
+        digest.update((byte) statement.getPrepareIsolationLevel());
+        digest.update(statement.getSource().getBytes(StandardCharsets.UTF_8));
+        StringBuilder name = new StringBuilder(48);
+        for (byte b : digest.digest()) {
+            name.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return new File(directory, name.append(SUFFIX).toString());
+    }
+
+    /**
+     * A hash of the parts of a provider's definition which a compiled plan bakes in. For a table, that is its
+     * columns (with their defaults and autoincrement settings), its conglomerates (and so its indexes), its
+     * constraints, its triggers, and when its statistics were last collected; any other provider has only to
+     * exist under the same name.
+     * <p>
+     * A provider which can't be looked at has no fingerprint, and so never matches.
+     */
+    static long fingerprint(Provider provider, LanguageConnectionContext lcc) {
+        try {
+            return fingerprint(provider, lcc.getDataDictionary(), lcc.getTransactionCompile());
+        } catch (StandardException e) {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Unable to fingerprint " + provider.getObjectName(), e);
+            return NO_FINGERPRINT;
+        }
+    }
+
+    static long fingerprint(Provider provider, DataDictionary dd, TransactionController tc) throws StandardException {
+        long h = hash(provider.getObjectName());
+        if (provider instanceof TableDescriptor) {
+            TableDescriptor td = (TableDescriptor) provider;
+            h = 31 * h + hash(td.getVersion());
+            for (ColumnDescriptor cd : td.getColumnDescriptorList()) {
+                h = 31 * h + hash(cd.getColumnName());
+                h = 31 * h + cd.getPosition();
+                h = 31 * h + hash(String.valueOf(cd.getType()));
+                h = 31 * h + hash(cd.getDefaultInfo() == null ? null : cd.getDefaultInfo().getDefaultText());
+                if (cd.isAutoincrement()) {
+                    h = 31 * h + (cd.isAutoincAlways() ? 2 : 1);
+                    h = 31 * h + cd.getAutoincStart();
+                    h = 31 * h + cd.getAutoincInc();
+                }
+            }
+            for (ConglomerateDescriptor cd : td.getConglomerateDescriptorList()) {
+                h = 31 * h + cd.getConglomerateNumber();
+            }
+            for (ConstraintDescriptor cd : dd.getConstraintDescriptors(td)) {
+                h = 31 * h + hash(cd.getUUID().toString());
+            }
+            for (Object trigger : dd.getTriggerDescriptors(td)) {
+                h = 31 * h + hash(((UniqueTupleDescriptor) trigger).getUUID().toString());
+            }
+            ConglomerateDescriptor base = td.getBaseConglomerateDescriptor();
+            if (base != null) {
+                for (PartitionStatisticsDescriptor stats : dd.getPartitionStatistics(base.getConglomerateNumber(), tc)) {
+                    h = 31 * h + hash(stats.getPartitionId());
+                    h = 31 * h + stats.getTimestamp();
+                    h = 31 * h + (stats.isStale() ? 1 : 0);
+                }
+            }
+        } else if (provider instanceof ConglomerateDescriptor) {
+            h = 31 * h + ((ConglomerateDescriptor) provider).getConglomerateNumber();
+        }
+        return h == NO_FINGERPRINT ? h + 1 : h;
+    }
+
+    private static long hash(String s) {
+        return s == null ? 0 : s.hashCode();
+    }
+
+    /**
+     * Identifies the build of the engine, since generated classes are only valid against the classes they
+     * were generated with.
+     */
+    private static String buildStamp() {
+        StringBuilder stamp = new StringBuilder(String.valueOf(Monitor.getMonitor().getEngineVersion()));
+        URL source = GenericStatement.class.getProtectionDomain().getCodeSource() == null ? null
+                : GenericStatement.class.getProtectionDomain().getCodeSource().getLocation();
+        if (source != null && "file".equals(source.getProtocol())) {
+            File jar = new File(source.getPath());
+            stamp.append(' ').append(jar.length()).append(' ').append(jar.lastModified());
+        }
+        return stamp.toString();
+    }
+
+    /**
+     * The identity of the statement a file holds, which is checked against the statement being looked up
+     * (in case of a hash collision), and is all that warming needs to read.
+     */
+    private static class Header {
+        final String buildStamp;
+        final String schemaName;
+        final String schemaId;
+        final boolean readOnly;
+        final int isolationLevel;
+        final String statementText;
+
+        Header(String buildStamp, String schemaName, String schemaId, boolean readOnly, int isolationLevel,
+               String statementText) {
+            this.buildStamp = buildStamp;
+            this.schemaName = schemaName;
+            this.schemaId = schemaId;
+            this.readOnly = readOnly;
+            this.isolationLevel = isolationLevel;
+            this.statementText = statementText;
+        }
+
+        Header(String buildStamp, GenericStatement statement) {
+            this(buildStamp, statement.getCompilationSchema(),
+                    statement.getCompilationSchemaDescriptor().getUUID().toString(),
+                    statement.isForReadOnly(), statement.getPrepareIsolationLevel(), statement.getSource());
+        }
+
+        boolean matches(String buildStamp, GenericStatement statement) {
+            return this.buildStamp.equals(buildStamp)
+                    && schemaId.equals(statement.getCompilationSchemaDescriptor().getUUID().toString())
+                    && readOnly == statement.isForReadOnly()
+                    && isolationLevel == statement.getPrepareIsolationLevel()
+                    && statementText.equals(statement.getSource());
+        }
+
+        void write(FormatIdOutputStream out) throws IOException {
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(buildStamp);
+            out.writeUTF(schemaName);
+            out.writeUTF(schemaId);
+            out.writeBoolean(readOnly);
+            out.writeInt(isolationLevel);
+            out.writeObject(statementText);
+        }
+
+        static Header read(FormatIdInputStream in) throws IOException {
+            if (in.readInt() != FORMAT_VERSION)
+                throw new IOException("Unknown statement cache format");
+            try {
+                return new Header(in.readUTF(), in.readUTF(), in.readUTF(), in.readBoolean(), in.readInt(),
+                        (String) in.readObject());
+            } catch (ClassNotFoundException e) {
+                throw new IOException(e);
+            }
+        }
+    }
+}
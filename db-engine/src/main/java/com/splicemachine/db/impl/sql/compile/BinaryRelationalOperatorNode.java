@@ -1403,14 +1403,23 @@ public class BinaryRelationalOperatorNode
             } else if (rightFromBaseTable) {
                 return ((ColumnReference) rightOperand).columnReferenceEqualityPredicateSelectivity();
             }
-        } else if (leftOperand instanceof ColumnReference && rightOperand instanceof ParameterNode) {
+        } else if (leftOperand instanceof ColumnReference && isParameter(rightOperand)) {
             return ((ColumnReference) leftOperand).columnReferenceEqualityPredicateSelectivity();
-        } else if (rightOperand instanceof ColumnReference && leftOperand instanceof ParameterNode) {
+        } else if (rightOperand instanceof ColumnReference && isParameter(leftOperand)) {
             return ((ColumnReference) rightOperand).columnReferenceEqualityPredicateSelectivity();
         }
         return -1.0d;
     }
 
+    /**
+     * @return true if the operand is a parameter, or a parameter cast to a type (as auto-parameterization
+     * writes the literals it lifts)
+     */
+    private static boolean isParameter(ValueNode operand) {
+        return operand instanceof ParameterNode
+                || (operand instanceof CastNode && ((CastNode) operand).getCastOperand() instanceof ParameterNode);
+    }
+
     /**
      * return the selectivity of this predicate.
      */
@@ -101,6 +101,7 @@ public final class InsertNode extends DMLModStatementNode {
 	public static final String SAMPLING_ONLY = "samplingOnly";
     public static final String OUTPUT_KEYS_ONLY = "outputKeysOnly";
     public static final String SKIP_SAMPLING = "skipSampling";
+    public static final String BULK_IMPORT_COLUMNAR = "bulkImportColumnar";
 	public static final String INDEX_NAME = "index";
 
 	public		ResultColumnList	targetColumnList;
@@ -120,6 +121,7 @@ public final class InsertNode extends DMLModStatementNode {
 	private     boolean             samplingOnly;
 	private     boolean             outputKeysOnly;
     private     boolean             skipSampling;
+    private     boolean             bulkImportColumnar;
     private     String              indexName;
 
 	private CompilerContext.DataSetProcessorType dataSetProcessorType = CompilerContext.DataSetProcessorType.DEFAULT_CONTROL;
@@ -737,6 +739,7 @@ public final class InsertNode extends DMLModStatementNode {
 		samplingOnly = Boolean.parseBoolean(targetProperties.getProperty(SAMPLING_ONLY));
         outputKeysOnly = Boolean.parseBoolean(targetProperties.getProperty(OUTPUT_KEYS_ONLY));
 		skipSampling = Boolean.parseBoolean(targetProperties.getProperty(SKIP_SAMPLING));
+		bulkImportColumnar = Boolean.parseBoolean(targetProperties.getProperty(BULK_IMPORT_COLUMNAR));
 		indexName = targetProperties.getProperty(INDEX_NAME);
         String failBadRecordCountString = targetProperties.getProperty(BAD_RECORDS_ALLOWED);
         Boolean pin = Boolean.parseBoolean(targetProperties.getProperty(PIN));
@@ -1031,7 +1034,8 @@ public final class InsertNode extends DMLModStatementNode {
             mb.push(outputKeysOnly);
             mb.push(skipSampling);
             BaseJoinStrategy.pushNullableString(mb, indexName);
-			mb.callMethod(VMOpcode.INVOKEINTERFACE, (String) null, "getInsertResultSet", ClassName.ResultSet, 24);
+            mb.push(bulkImportColumnar);
+			mb.callMethod(VMOpcode.INVOKEINTERFACE, (String) null, "getInsertResultSet", ClassName.ResultSet, 25);
 		}
 		else
 		{
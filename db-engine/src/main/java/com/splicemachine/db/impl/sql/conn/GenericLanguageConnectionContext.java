@@ -67,6 +67,7 @@ import com.splicemachine.db.iapi.util.IdUtil;
 import com.splicemachine.db.iapi.util.InterruptStatus;
 import com.splicemachine.db.impl.sql.GenericStatement;
 import com.splicemachine.db.impl.sql.GenericStorablePreparedStatement;
+import com.splicemachine.db.impl.sql.catalog.DataDictionaryCache;
 import com.splicemachine.db.impl.sql.compile.CompilerContextImpl;
 import com.splicemachine.db.impl.sql.execute.*;
 import java.util.*;
@@ -1204,10 +1205,13 @@ public class GenericLanguageConnectionContext extends ContextImpl implements Lan
      * @throws StandardException thrown if lookup goes wrong.
      */
     public PreparedStatement lookupStatement(GenericStatement statement) throws StandardException{
-        GenericStorablePreparedStatement ps = getDataDictionary().getDataDictionaryCache().statementCacheFind(statement);
+        DataDictionaryCache cache = getDataDictionary().getDataDictionaryCache();
+        GenericStorablePreparedStatement ps = cache.statementCacheFind(statement);
         if (ps==null) {
-            ps = new GenericStorablePreparedStatement(statement);
-            getDataDictionary().getDataDictionaryCache().statementCacheAdd(statement,ps);
+            ps = cache.persistentStatementCacheFind(statement,this);
+            if (ps==null)
+                ps = new GenericStorablePreparedStatement(statement);
+            cache.statementCacheAdd(statement,ps);
         }
         synchronized(ps){
             if(ps.upToDate()){
@@ -58,6 +58,8 @@ import com.splicemachine.db.iapi.sql.dictionary.SchemaDescriptor;
 import com.splicemachine.db.iapi.sql.dictionary.TableDescriptor;
 import com.splicemachine.db.iapi.sql.dictionary.ViewDescriptor;
 import com.splicemachine.db.iapi.store.access.TransactionController;
+import com.splicemachine.db.impl.sql.GenericPreparedStatement;
+import com.splicemachine.db.impl.sql.GenericStatement;
 import com.splicemachine.db.impl.sql.catalog.DataDictionaryCache;
 import com.splicemachine.db.impl.sql.catalog.TableKey;
 import com.splicemachine.db.impl.sql.compile.CreateViewNode;
@@ -470,6 +472,12 @@ public class BasicDependencyManager implements DependencyManager {
 					// REVISIT: future impl will want to mark the individual
 					// dependency as invalid as well as the dependent...
 					dep.makeInvalid(action, lcc);
+					if (dep instanceof GenericPreparedStatement
+							&& ((GenericPreparedStatement) dep).statement instanceof GenericStatement) {
+						// so that a restarted server does not load it and then have to compile it anyway
+						dd.getDataDictionaryCache().persistentStatementCacheRemove(
+								(GenericStatement) ((GenericPreparedStatement) dep).statement);
+					}
 				}
 			}
 
@@ -0,0 +1,96 @@
+/*
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Some parts of this source code are based on Apache Derby, and the following notices apply to
+ * Apache Derby:
+ *
+ * Apache Derby is a subproject of the Apache DB project, and is licensed under
+ * the Apache License, Version 2.0 (the "License"); you may not use these files
+ * except in compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * Splice Machine, Inc. has modified the Apache Derby code in this file.
+ *
+ * All such Splice Machine modifications are Copyright 2012 - 2017 Splice Machine, Inc.,
+ * and are licensed to you under the GNU Affero General Public License.
+ */
+
+package com.splicemachine.db.mbeans;
+
+/**
+ * Statistics of one of the caches handed out by the cache factory, so that
+ * the replacement policies can be compared under a real workload.
+ * <P>
+ * Key properties for registered MBean:
+ * <UL>
+ * <LI> <code>type=CacheManager</code>
+ * <LI> <code>name=</code><em>name of the cache</em>
+ * <LI> <code>system=</code><em>runtime system identifier</em> (see overview)
+ * </UL>
+ */
+public interface CacheManagerMBean {
+
+    /**
+     * Get the name of the cache.
+     * @return name of the cache
+     */
+    String getName();
+
+    /**
+     * Get the name of the replacement policy of the cache.
+     * @return Clock or W-TinyLFU
+     */
+    String getReplacementPolicy();
+
+    /**
+     * Get the number of look-ups which found the object in the cache.
+     * @return number of hits
+     */
+    long getHitCount();
+
+    /**
+     * Get the number of look-ups which didn't find the object in the cache.
+     * @return number of misses
+     */
+    long getMissCount();
+
+    /**
+     * Get the number of objects evicted from the cache to make room for
+     * others.
+     * @return number of evictions
+     */
+    long getEvictionCount();
+
+    /**
+     * Get the number of objects in the cache.
+     * @return number of entries
+     */
+    int getEntryCount();
+
+    /**
+     * Get the weight of the objects in the cache: their estimated size in
+     * bytes if the cache is weighted, otherwise their number.
+     * @return weight of the cache
+     */
+    long getWeight();
+
+    /**
+     * Get the maximum weight of the cache.
+     * @return maximum weight of the cache
+     */
+    long getMaxWeight();
+}
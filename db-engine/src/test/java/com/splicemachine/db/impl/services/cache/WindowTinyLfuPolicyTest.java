@@ -0,0 +1,216 @@
+/*
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Some parts of this source code are based on Apache Derby, and the following notices apply to
+ * Apache Derby:
+ *
+ * Apache Derby is a subproject of the Apache DB project, and is licensed under
+ * the Apache License, Version 2.0 (the "License"); you may not use these files
+ * except in compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * Splice Machine, Inc. has modified the Apache Derby code in this file.
+ *
+ * All such Splice Machine modifications are Copyright 2012 - 2017 Splice Machine, Inc.,
+ * and are licensed to you under the GNU Affero General Public License.
+ */
+
+package com.splicemachine.db.impl.services.cache;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.services.cache.CacheManager;
+import com.splicemachine.db.iapi.services.cache.Cacheable;
+import com.splicemachine.db.iapi.services.cache.CacheableFactory;
+import com.splicemachine.db.iapi.services.cache.SizedCacheable;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the W-TinyLFU replacement policy of ConcurrentCache.
+ */
+public class WindowTinyLfuPolicyTest {
+
+    private static final CacheableFactory FACTORY = new CacheableFactory() {
+        @Override
+        public Cacheable newCacheable(CacheManager cm) {
+            return new SizedObject();
+        }
+    };
+
+    @Test
+    public void evictsDownToTheMaximumSize() throws StandardException {
+        ConcurrentCache cache = new ConcurrentCache(FACTORY, "test", 16, 100L, false);
+        for (int i = 0; i < 1000; i++) {
+            cache.release(cache.find(i));
+        }
+        assertTrue("Too many entries: " + cache.getEntryCount(), cache.getEntryCount() <= 100);
+        assertEquals(900, cache.getEvictionCount());
+        assertEquals(1000, cache.getMissCount());
+        assertEquals(0, cache.getHitCount());
+    }
+
+    @Test
+    public void countsHitsAndMisses() throws StandardException {
+        ConcurrentCache cache = new ConcurrentCache(FACTORY, "test", 16, 100L, false);
+        cache.release(cache.find("a"));
+        cache.release(cache.find("a"));
+        assertNull(cache.findCached("b"));
+        cache.release(cache.findCached("a"));
+        assertEquals(2, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void frequentlyUsedEntriesSurviveAScan() throws StandardException {
+        ConcurrentCache cache = new ConcurrentCache(FACTORY, "test", 16, 100L, false);
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 50; i++) {
+                cache.release(cache.find("hot" + i));
+            }
+        }
+        for (int i = 0; i < 10000; i++) {
+            cache.release(cache.find("cold" + i));
+        }
+        int hot = 0;
+        for (int i = 0; i < 50; i++) {
+            Cacheable c = cache.findCached("hot" + i);
+            if (c != null) {
+                hot++;
+                cache.release(c);
+            }
+        }
+        assertTrue("Only " + hot + " of 50 hot entries left after the scan", hot >= 45);
+    }
+
+    @Test
+    public void keptEntriesAreNotEvicted() throws StandardException {
+        ConcurrentCache cache = new ConcurrentCache(FACTORY, "test", 16, 10L, false);
+        List<Cacheable> kept = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            kept.add(cache.find("kept" + i));
+        }
+        for (int i = 0; i < 100; i++) {
+            cache.release(cache.find("other" + i));
+        }
+        for (int i = 0; i < 10; i++) {
+            Cacheable c = cache.findCached("kept" + i);
+            assertSame(kept.get(i), c);
+            cache.release(c);
+            cache.release(kept.get(i));
+        }
+    }
+
+    @Test
+    public void weighsSizedCacheables() throws StandardException {
+        ConcurrentCache cache = new ConcurrentCache(FACTORY, "test", 16, 1000L, true);
+        for (int i = 0; i < 50; i++) {
+            cache.release(cache.find(100));
+        }
+        assertEquals(1, cache.getEntryCount());
+        assertEquals(100, cache.getWeight());
+
+        for (int i = 1; i <= 50; i++) {
+            cache.release(cache.find(100 + i * 1000));
+        }
+        // The last object is weighed after it has been inserted, so the cache can be over by one object until
+        // the next insertion.
+        assertTrue("Weight is " + cache.getWeight(), cache.getWeight() <= 1000 + 100);
+        assertTrue("Wrong number of entries: " + cache.getEntryCount(),
+                cache.getEntryCount() >= 9 && cache.getEntryCount() <= 11);
+    }
+
+    @Test
+    public void removedEntriesAreNoLongerWeighed() throws StandardException {
+        ConcurrentCache cache = new ConcurrentCache(FACTORY, "test", 16, 1000L, true);
+        cache.release(cache.find(300));
+        cache.release(cache.find(1200));
+        cache.remove(cache.find(300));
+        assertNull(cache.findCached(300));
+        assertEquals(200, cache.getWeight());
+        assertTrue(cache.discard(null));
+        assertEquals(0, cache.getWeight());
+        assertEquals(0, cache.getEntryCount());
+    }
+
+    @Test
+    public void frequencySketchCountsAndAges() {
+        FrequencySketch sketch = new FrequencySketch(512);
+        for (int i = 0; i < 10; i++) {
+            sketch.increment(42);
+        }
+        assertTrue(sketch.frequency(42) >= 10);
+        assertEquals(0, sketch.frequency(4242));
+
+        for (int i = 0; i < 100; i++) {
+            sketch.increment(7);
+        }
+        assertEquals("Counters saturate at 15", 15, sketch.frequency(7));
+
+        // Enough other increments to halve all the counters
+        for (int i = 0; i < 10 * 512; i++) {
+            sketch.increment(100000 + i);
+        }
+        assertTrue(sketch.frequency(7) <= 7);
+    }
+
+    /**
+     * A cached object whose size is the remainder of its key (an Integer) divided by 1000.
+     */
+    public static class SizedObject implements SizedCacheable {
+        private Object identity;
+
+        @Override
+        public int getSize() {
+            return (identity instanceof Integer) ? (Integer) identity % 1000 : 1;
+        }
+
+        @Override
+        public Cacheable setIdentity(Object key) {
+            identity = key;
+            return this;
+        }
+
+        @Override
+        public Cacheable createIdentity(Object key, Object createParameter) {
+            identity = key;
+            return this;
+        }
+
+        @Override
+        public void clearIdentity() {
+            identity = null;
+        }
+
+        @Override
+        public Object getIdentity() {
+            return identity;
+        }
+
+        @Override
+        public boolean isDirty() {
+            return false;
+        }
+
+        @Override
+        public void clean(boolean forRemove) {
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Some parts of this source code are based on Apache Derby, and the following notices apply to
+ * Apache Derby:
+ *
+ * Apache Derby is a subproject of the Apache DB project, and is licensed under
+ * the Apache License, Version 2.0 (the "License"); you may not use these files
+ * except in compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * Splice Machine, Inc. has modified the Apache Derby code in this file.
+ *
+ * All such Splice Machine modifications are Copyright 2012 - 2017 Splice Machine, Inc.,
+ * and are licensed to you under the GNU Affero General Public License.
+ */
+
+package com.splicemachine.db.impl.sql;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Test case for StatementNormalizer.
+ */
+public class StatementNormalizerTest {
+    private static final int MAX_LITERALS = 64;
+
+    @Test
+    public void liftsLiteralsWithLengthAndPrecisionIndependentTypes() {
+        StatementNormalizer.NormalizedStatement normalized =
+                StatementNormalizer.normalize("select * from t where a = 1 and b = 'it''s' and c = 2.50 and d <> 1e3", MAX_LITERALS);
+        assertNotNull(normalized);
+        assertEquals("select * from t where a = CAST(? AS INTEGER) and b = CAST(? AS VARCHAR(32672))" +
+                " and c = CAST(? AS DECIMAL(31,2)) and d <> CAST(? AS DOUBLE)", normalized.getText());
+        assertEquals(4, normalized.getParameterCount());
+        assertEquals("1", normalized.getValue(0));
+        assertEquals("it's", normalized.getValue(1));
+        assertEquals("2.50", normalized.getValue(2));
+        assertEquals("1e3", normalized.getValue(3));
+    }
+
+    @Test
+    public void statementsDifferingOnlyInLiteralsShareText() {
+        String first = StatementNormalizer.normalize("update t set b = 'x' where a = 7 and c = 1.5", MAX_LITERALS).getText();
+        String second = StatementNormalizer.normalize("update t set b = 'a longer string' where a = 12345 and c = 1234.5",
+                MAX_LITERALS).getText();
+        assertEquals(first, second);
+    }
+
+    @Test
+    public void typesIntegersByMagnitude() {
+        assertEquals("INTEGER", StatementNormalizer.numericType("2147483647"));
+        assertEquals("BIGINT", StatementNormalizer.numericType("2147483648"));
+        assertEquals("DECIMAL(31,0)", StatementNormalizer.numericType("9223372036854775808"));
+        assertEquals("DECIMAL(31,1)", StatementNormalizer.numericType(".5"));
+        assertEquals("DECIMAL(31,1)", StatementNormalizer.numericType("12345.5"));
+        assertNull(StatementNormalizer.numericType("12345678901234567890123456789012"));
+    }
+
+    @Test
+    public void leavesPositionsRowCountsAndPatternsAlone() {
+        StatementNormalizer.NormalizedStatement normalized = StatementNormalizer.normalize(
+                "select a, count(*) from t where b like 'ab%' escape '!' and c = 3 group by 1 having count(*) = 2" +
+                        " order by 2 offset 5 rows fetch first 10 rows only", MAX_LITERALS);
+        assertNotNull(normalized);
+        assertEquals("select a, count(*) from t where b like 'ab%' escape '!' and c = CAST(? AS INTEGER) group by 1" +
+                " having count(*) = CAST(? AS INTEGER) order by 2 offset 5 rows fetch first 10 rows only", normalized.getText());
+    }
+
+    @Test
+    public void byListEndsWithItsParentheses() {
+        StatementNormalizer.NormalizedStatement normalized = StatementNormalizer.normalize(
+                "select * from t where a > (select max(b) from u group by c, 2) + 1", MAX_LITERALS);
+        assertNotNull(normalized);
+        assertEquals("select * from t where a > (select max(b) from u group by c, 2) + CAST(? AS INTEGER)", normalized.getText());
+    }
+
+    @Test
+    public void leavesLiteralsWhichTypeResultColumnsAlone() {
+        StatementNormalizer.NormalizedStatement normalized = StatementNormalizer.normalize(
+                "select a, 'x', 2 + b, (select max(c) from u where d = 1) from t where e = 'y'", MAX_LITERALS);
+        assertNotNull(normalized);
+        assertEquals("select a, 'x', 2 + b, (select max(c) from u where d = 1) from t where e = CAST(? AS VARCHAR(32672))",
+                normalized.getText());
+
+        assertNull(StatementNormalizer.normalize("values ('x', 1)", MAX_LITERALS));
+        normalized = StatementNormalizer.normalize("select * from t where a in (select b from u where c = 3)", MAX_LITERALS);
+        assertNotNull(normalized);
+        assertEquals("select * from t where a in (select b from u where c = CAST(? AS INTEGER))", normalized.getText());
+    }
+
+    @Test
+    public void liftsInsertedValues() {
+        StatementNormalizer.NormalizedStatement normalized = StatementNormalizer.normalize(
+                "insert into t (a, b) values ('x', 1.5)", MAX_LITERALS);
+        assertNotNull(normalized);
+        assertEquals("insert into t (a, b) values (CAST(? AS VARCHAR(32672)), CAST(? AS DECIMAL(31,1)))", normalized.getText());
+    }
+
+    @Test
+    public void leavesConcatenationsAndDividendsAlone() {
+        StatementNormalizer.NormalizedStatement normalized = StatementNormalizer.normalize(
+                "select * from t where a = 'x' || b and c || 'y' = d and e / 2 = 3.0 and f = 4 / g", MAX_LITERALS);
+        assertNotNull(normalized);
+        assertEquals("select * from t where a = 'x' || b and c || 'y' = d and e / CAST(? AS INTEGER) = CAST(? AS DECIMAL(31,1))" +
+                " and f = 4 / g", normalized.getText());
+    }
+
+    @Test
+    public void leavesRangeOperandsAlone() {
+        StatementNormalizer.NormalizedStatement normalized = StatementNormalizer.normalize(
+                "select * from t where a > 1 and b <= -2.5 and 'x' < c and d between 3 and 4 and e = 5" +
+                        " and f not between 'a' and 'b' or g >= 6 and h <> 7", MAX_LITERALS);
+        assertNotNull(normalized);
+        assertEquals("select * from t where a > 1 and b <= -2.5 and 'x' < c and d between 3 and 4 and e = CAST(? AS INTEGER)" +
+                " and f not between 'a' and 'b' or g >= 6 and h <> CAST(? AS INTEGER)", normalized.getText());
+
+        normalized = StatementNormalizer.normalize(
+                "select * from t where a in (select b from u where c between 1 and 2) and d = 3", MAX_LITERALS);
+        assertNotNull(normalized);
+        assertEquals("select * from t where a in (select b from u where c between 1 and 2) and d = CAST(? AS INTEGER)",
+                normalized.getText());
+    }
+
+    @Test
+    public void keepsCommentsIdentifiersAndTypedLiterals() {
+        StatementNormalizer.NormalizedStatement normalized = StatementNormalizer.normalize(
+                "select \"col 1\", c2 from t --splice-properties index=IX_1\n" +
+                        "where d = date '2017-01-01' and e = X'0F' /* 3 */ and f = 3", MAX_LITERALS);
+        assertNotNull(normalized);
+        assertEquals("select \"col 1\", c2 from t --splice-properties index=IX_1\n" +
+                "where d = date '2017-01-01' and e = X'0F' /* 3 */ and f = CAST(? AS INTEGER)", normalized.getText());
+    }
+
+    @Test
+    public void skipsStatementsItCannotRewrite() {
+        assertNull(StatementNormalizer.normalize("create table t (a int default 1)", MAX_LITERALS));
+        assertNull(StatementNormalizer.normalize("call syscs_util.foo(1)", MAX_LITERALS));
+        assertNull(StatementNormalizer.normalize("select * from t where a = ? and b = 1", MAX_LITERALS));
+        assertNull(StatementNormalizer.normalize("select {fn abs(a)} from t where b = 1", MAX_LITERALS));
+        assertNull(StatementNormalizer.normalize("select * from t where b = ''", MAX_LITERALS));
+        assertNull(StatementNormalizer.normalize("select * from t where b = 'unterminated", MAX_LITERALS));
+        assertNull(StatementNormalizer.normalize("select * from t where a in (1, 2, 3)", 2));
+    }
+}
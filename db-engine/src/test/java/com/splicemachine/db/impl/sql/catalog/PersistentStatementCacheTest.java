@@ -0,0 +1,400 @@
+/*
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Some parts of this source code are based on Apache Derby, and the following notices apply to
+ * Apache Derby:
+ *
+ * Apache Derby is a subproject of the Apache DB project, and is licensed under
+ * the Apache License, Version 2.0 (the "License"); you may not use these files
+ * except in compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ * Splice Machine, Inc. has modified the Apache Derby code in this file.
+ *
+ * All such Splice Machine modifications are Copyright 2012 - 2017 Splice Machine, Inc.,
+ * and are licensed to you under the GNU Affero General Public License.
+ */
+
+package com.splicemachine.db.impl.sql.catalog;
+
+import com.splicemachine.db.catalog.DefaultInfo;
+import com.splicemachine.db.catalog.Dependable;
+import com.splicemachine.db.catalog.DependableFinder;
+import com.splicemachine.db.catalog.UUID;
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.reference.SQLState;
+import com.splicemachine.db.iapi.services.context.ContextManager;
+import com.splicemachine.db.iapi.services.io.FormatIdInputStream;
+import com.splicemachine.db.iapi.services.io.StoredFormatIds;
+import com.splicemachine.db.iapi.sql.conn.LanguageConnectionContext;
+import com.splicemachine.db.iapi.sql.depend.DependencyManager;
+import com.splicemachine.db.iapi.sql.depend.Provider;
+import com.splicemachine.db.iapi.sql.depend.ProviderInfo;
+import com.splicemachine.db.iapi.sql.dictionary.ColumnDescriptor;
+import com.splicemachine.db.iapi.sql.dictionary.ColumnDescriptorList;
+import com.splicemachine.db.iapi.sql.dictionary.ConglomerateDescriptor;
+import com.splicemachine.db.iapi.sql.dictionary.ConglomerateDescriptorList;
+import com.splicemachine.db.iapi.sql.dictionary.ConstraintDescriptorList;
+import com.splicemachine.db.iapi.sql.dictionary.DataDescriptorGenerator;
+import com.splicemachine.db.iapi.sql.dictionary.DataDictionary;
+import com.splicemachine.db.iapi.sql.dictionary.GenericDescriptorList;
+import com.splicemachine.db.iapi.sql.dictionary.PartitionStatisticsDescriptor;
+import com.splicemachine.db.iapi.sql.dictionary.SchemaDescriptor;
+import com.splicemachine.db.iapi.sql.dictionary.TableDescriptor;
+import com.splicemachine.db.iapi.store.access.TransactionController;
+import com.splicemachine.db.iapi.types.DataTypeDescriptor;
+import com.splicemachine.db.impl.services.uuid.BasicUUID;
+import com.splicemachine.db.impl.sql.GenericStatement;
+import com.splicemachine.db.impl.sql.GenericStorablePreparedStatement;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test case for PersistentStatementCache.
+ * <p>
+ * The statement depends on a single table, T, with a column that has a default and an autoincrement column.
+ * The compiled form of the statement is not written, since generating it needs a running database; what is
+ * tested is when a file is used, and when it is discarded.
+ */
+public class PersistentStatementCacheTest {
+    private static final String BUILD = "build 1";
+    private static final long CONGLOMERATE = 1184L;
+
+    /**
+     * The providers which exist, by name, for {@link TestProviderInfo} to find.
+     */
+    private static final Map<String, Provider> PROVIDERS = new HashMap<>();
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File directory;
+    private ContextManager cm;
+    private LanguageConnectionContext lcc;
+    private DataDictionary dd;
+    private DependencyManager dm;
+    private TransactionController tc;
+    private TableDescriptor td;
+    private List<PartitionStatisticsDescriptor> statistics;
+    private GenericStatement statement;
+    private GenericStorablePreparedStatement compiled;
+    private GenericStorablePreparedStatement loaded;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = temporaryFolder.newFolder();
+        dd = mock(DataDictionary.class);
+        dm = mock(DependencyManager.class);
+        tc = mock(TransactionController.class);
+        cm = mock(ContextManager.class);
+        lcc = mock(LanguageConnectionContext.class);
+        when(lcc.getContextManager()).thenReturn(cm);
+        when(lcc.getDataDictionary()).thenReturn(dd);
+        when(lcc.getTransactionCompile()).thenReturn(tc);
+        when(dd.getDependencyManager()).thenReturn(dm);
+
+        ConglomerateDescriptor base = new DataDescriptorGenerator(dd).newConglomerateDescriptor(CONGLOMERATE, "T",
+                false, null, false, new BasicUUID(1L, 1L, 1), new BasicUUID(1L, 1L, 2), new BasicUUID(1L, 1L, 3));
+        ConglomerateDescriptorList conglomerates = new ConglomerateDescriptorList();
+        conglomerates.add(base);
+        td = mock(TableDescriptor.class);
+        when(td.getObjectName()).thenReturn("T");
+        when(td.getVersion()).thenReturn("2.0");
+        when(td.getConglomerateDescriptorList()).thenReturn(conglomerates);
+        when(td.getBaseConglomerateDescriptor()).thenReturn(base);
+        setColumns("0", 1L);
+        when(dd.getConstraintDescriptors(td)).thenReturn(new ConstraintDescriptorList());
+        when(dd.getTriggerDescriptors(td)).thenReturn(new GenericDescriptorList());
+        statistics = new ArrayList<>();
+        statistics.add(new PartitionStatisticsDescriptor(CONGLOMERATE, "p1", 100L, false, false, 10L, 100L, 10));
+        when(dd.getPartitionStatistics(CONGLOMERATE, tc)).thenReturn(statistics);
+        PROVIDERS.clear();
+        PROVIDERS.put("T", td);
+
+        SchemaDescriptor schema = new SchemaDescriptor(dd, "APP", "SPLICE", new BasicUUID(1L, 1L, 4), false);
+        statement = new GenericStatement(schema, "select * from t", true);
+        compiled = mock(GenericStorablePreparedStatement.class);
+        when(compiled.isValid()).thenReturn(true);
+        when(dm.getPersistentProviderInfos(compiled)).thenReturn(new ProviderInfo[]{new TestProviderInfo("T")});
+        loaded = mock(GenericStorablePreparedStatement.class);
+    }
+
+    @Test
+    public void writtenStatementIsFound() throws Exception {
+        PersistentStatementCache cache = cache(BUILD);
+        cache.add(statement, compiled, lcc);
+        assertEquals(1, cache.getWriteCount());
+        assertEquals(1, planFiles().length);
+
+        assertSame(loaded, cache.find(statement, lcc));
+        assertEquals(1, cache.getHitCount());
+        verify(dm).addDependency(loaded, td, cm);
+        verify(loaded).setValid();
+    }
+
+    @Test
+    public void missWithoutFile() throws Exception {
+        PersistentStatementCache cache = cache(BUILD);
+        assertNull(cache.find(statement, lcc));
+        assertEquals(1, cache.getMissCount());
+        assertEquals(0, cache.getStaleCount());
+    }
+
+    @Test
+    public void changedColumnDefaultIsStale() throws Exception {
+        PersistentStatementCache cache = cache(BUILD);
+        cache.add(statement, compiled, lcc);
+        setColumns("1", 1L);
+        assertStale(cache);
+    }
+
+    @Test
+    public void changedAutoincrementIsStale() throws Exception {
+        PersistentStatementCache cache = cache(BUILD);
+        cache.add(statement, compiled, lcc);
+        setColumns("0", 2L);
+        assertStale(cache);
+    }
+
+    @Test
+    public void newStatisticsAreStale() throws Exception {
+        PersistentStatementCache cache = cache(BUILD);
+        cache.add(statement, compiled, lcc);
+        statistics.set(0, new PartitionStatisticsDescriptor(CONGLOMERATE, "p1", 200L, false, false, 20L, 200L, 10));
+        assertStale(cache);
+    }
+
+    @Test
+    public void droppedProviderIsStale() throws Exception {
+        PersistentStatementCache cache = cache(BUILD);
+        cache.add(statement, compiled, lcc);
+        PROVIDERS.clear();
+        assertStale(cache);
+    }
+
+    @Test
+    public void providerWhichCannotBeFingerprintedIsStale() throws Exception {
+        PersistentStatementCache cache = cache(BUILD);
+        cache.add(statement, compiled, lcc);
+        when(dd.getPartitionStatistics(CONGLOMERATE, tc))
+                .thenThrow(StandardException.newException(SQLState.LANG_OBJECT_NOT_FOUND, "TABLE", "T"));
+        assertStale(cache);
+    }
+
+    @Test
+    public void differentBuildIsStale() throws Exception {
+        cache(BUILD).add(statement, compiled, lcc);
+        assertStale(cache("build 2"));
+    }
+
+    @Test
+    public void notWrittenWhenProviderDropped() throws Exception {
+        PersistentStatementCache cache = cache(BUILD);
+        PROVIDERS.clear();
+        cache.add(statement, compiled, lcc);
+        assertEquals(0, cache.getWriteCount());
+        assertEquals(0, planFiles().length);
+    }
+
+    @Test
+    public void notWrittenWhenPermissionsAreChecked() throws Exception {
+        PersistentStatementCache cache = cache(BUILD);
+        when(compiled.getRequiredPermissionsList()).thenReturn(Collections.singletonList(new Object()));
+        cache.add(statement, compiled, lcc);
+        assertEquals(0, cache.getWriteCount());
+        verify(dm, never()).getPersistentProviderInfos(compiled);
+    }
+
+    @Test
+    public void removeDeletesFile() throws Exception {
+        PersistentStatementCache cache = cache(BUILD);
+        cache.add(statement, compiled, lcc);
+        cache.remove(statement);
+        assertEquals(0, planFiles().length);
+        assertNull(cache.find(statement, lcc));
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void clearDeletesEveryFile() throws Exception {
+        PersistentStatementCache cache = cache(BUILD);
+        cache.add(statement, compiled, lcc);
+        cache.add(new GenericStatement(statement.getCompilationSchemaDescriptor(), "select a from t", true), compiled, lcc);
+        assertEquals(2, planFiles().length);
+        cache.clear();
+        assertEquals(0, planFiles().length);
+    }
+
+    @Test
+    public void leastRecentlyUsedStatementIsEvicted() throws Exception {
+        PersistentStatementCache cache = cache(BUILD, 2);
+        GenericStatement second = new GenericStatement(statement.getCompilationSchemaDescriptor(), "select a from t", true);
+        GenericStatement third = new GenericStatement(statement.getCompilationSchemaDescriptor(), "select b from t", true);
+        cache.add(statement, compiled, lcc);
+        cache.add(second, compiled, lcc);
+        long now = System.currentTimeMillis();
+        for (File file : planFiles()) {
+            assertTrue(file.setLastModified(now - 10000));
+        }
+        assertSame("the first statement is used after the second", loaded, cache.find(statement, lcc));
+
+        cache.add(third, compiled, lcc);
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(2, planFiles().length);
+        assertNull(cache.find(second, lcc));
+        assertEquals(1, cache.getMissCount());
+        assertSame(loaded, cache.find(statement, lcc));
+        assertSame(loaded, cache.find(third, lcc));
+    }
+
+    @Test
+    public void notWrittenWhenInvalidatedBeforeTheWrite() throws Exception {
+        List<Runnable> pending = new ArrayList<>();
+        PersistentStatementCache cache = new PersistentStatementCache(directory, BUILD, 16, pending::add);
+        cache.add(statement, compiled, lcc);
+        assertEquals("the statement is written later", 0, planFiles().length);
+        when(compiled.isValid()).thenReturn(false);
+        pending.get(0).run();
+        assertEquals(0, cache.getWriteCount());
+        assertEquals(0, planFiles().length);
+    }
+
+    private void assertStale(PersistentStatementCache cache) throws StandardException {
+        assertNull(cache.find(statement, lcc));
+        assertEquals(1, cache.getStaleCount());
+        assertEquals(0, cache.getHitCount());
+        assertEquals("Stale file was not deleted", 0, planFiles().length);
+        verify(dm, never()).addDependency(loaded, td, cm);
+    }
+
+    /**
+     * T has a column A with a default, and an autoincrement column B which starts at 1.
+     */
+    private void setColumns(String defaultText, long autoincInc) {
+        DefaultInfo defaultInfo = mock(DefaultInfo.class);
+        when(defaultInfo.getDefaultText()).thenReturn(defaultText);
+        DataTypeDescriptor type = DataTypeDescriptor.getBuiltInDataTypeDescriptor(Types.INTEGER);
+        ColumnDescriptorList columns = new ColumnDescriptorList();
+        columns.add(new ColumnDescriptor("A", 1, 1, type, null, defaultInfo, td, null, 0L, 0L, -1));
+        columns.add(new ColumnDescriptor("B", 2, 2, type, null, null, td, null, 1L, autoincInc, -1));
+        when(td.getColumnDescriptorList()).thenReturn(columns);
+    }
+
+    private File[] planFiles() {
+        return directory.listFiles((dir, name) -> name.endsWith(".plan"));
+    }
+
+    /**
+     * A cache which reads back the prepared statement written by {@link #add}, which writes nothing, as
+     * {@link #loaded}.
+     */
+    private PersistentStatementCache cache(String buildStamp) throws IOException {
+        return cache(buildStamp, 16);
+    }
+
+    /**
+     * The same, holding at most {@code maxEntries} statements, which writes them as soon as they are added.
+     */
+    private PersistentStatementCache cache(String buildStamp, int maxEntries) throws IOException {
+        return new PersistentStatementCache(directory, buildStamp, maxEntries, Runnable::run) {
+            @Override
+            GenericStorablePreparedStatement readPreparedStatement(GenericStatement statement, FormatIdInputStream in) {
+                return loaded;
+            }
+        };
+    }
+
+    /**
+     * Identifies a provider by name, and finds it in {@link #PROVIDERS}. It is written with plain serialization,
+     * so that reading it back does not need a registered format id.
+     */
+    public static class TestProviderInfo implements ProviderInfo {
+        private String name;
+
+        public TestProviderInfo() {
+        }
+
+        TestProviderInfo(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public DependableFinder getDependableFinder() {
+            return new DependableFinder() {
+                @Override
+                public Dependable getDependable(DataDictionary dd, UUID dependableObjectID) throws StandardException {
+                    Provider provider = PROVIDERS.get(name);
+                    if (provider == null)
+                        throw StandardException.newException(SQLState.LANG_OBJECT_NOT_FOUND, "TABLE", name);
+                    return provider;
+                }
+
+                @Override
+                public String getSQLObjectType() {
+                    return "Table";
+                }
+            };
+        }
+
+        @Override
+        public UUID getObjectId() {
+            return null;
+        }
+
+        @Override
+        public String getProviderName() {
+            return name;
+        }
+
+        @Override
+        public int getTypeFormatId() {
+            return StoredFormatIds.SERIALIZABLE_FORMAT_ID;
+        }
+
+        @Override
+        public void writeExternal(ObjectOutput out) throws IOException {
+            out.writeUTF(name);
+        }
+
+        @Override
+        public void readExternal(ObjectInput in) throws IOException {
+            name = in.readUTF();
+        }
+    }
+}
@@ -673,6 +673,71 @@ public interface Property {
 	String STATEMENT_CACHE_SIZE = "derby.language.statementCacheSize";
 	int STATEMENT_CACHE_SIZE_DEFAULT = 100;
 
+	/**
+	 * If true, the literals of statements run through java.sql.Statement are
+	 * replaced by parameters before the statement is looked up in the
+	 * statement cache, so that statements which differ only in their constants
+	 * share one compiled plan. The operands of range predicates are left as
+	 * they are, since their selectivity depends on their values; equality
+	 * predicates on parameters are costed from the cardinality of the column.
+	 * Database.  Static.
+	 * <p>
+	 * Externally visible.
+	 */
+	String LANG_AUTO_PARAMETERIZE = "derby.language.autoParameterize";
+	boolean LANG_AUTO_PARAMETERIZE_DEFAULT = false;
+
+	/**
+	 * The most literals that auto-parameterization will lift out of a single
+	 * statement. Statements with more literals (typically long IN lists or
+	 * multi-row inserts) are cached by their exact text.  Database.  Static.
+	 * <p>
+	 * Externally visible.
+	 */
+	String LANG_AUTO_PARAMETERIZE_MAX_LITERALS = "derby.language.autoParameterizeMaxLiterals";
+	int LANG_AUTO_PARAMETERIZE_MAX_LITERALS_DEFAULT = 64;
+
+	/**
+	 * A local directory in which compiled statements are kept, so that a
+	 * restarted server can load the plans of its statements instead of
+	 * compiling them again. If unset, compiled statements are only cached in
+	 * memory.  Database.  Static.
+	 * <p>
+	 * Externally visible.
+	 */
+	String LANG_PERSISTENT_STATEMENT_CACHE_DIRECTORY = "derby.language.persistentStatementCacheDirectory";
+
+	/**
+	 * The number of the most recently compiled statements in the persistent
+	 * statement cache which are loaded at boot, before any client asks for
+	 * them.  Database.  Static.
+	 * <p>
+	 * Externally visible.
+	 */
+	String LANG_PERSISTENT_STATEMENT_CACHE_WARM_SIZE = "derby.language.persistentStatementCacheWarmSize";
+	int LANG_PERSISTENT_STATEMENT_CACHE_WARM_SIZE_DEFAULT = 256;
+
+	/**
+	 * The number of compiled statements kept in the persistent statement
+	 * cache, beyond which the least recently used are deleted.  Database.
+	 * Static.
+	 * <p>
+	 * Externally visible.
+	 */
+	String LANG_PERSISTENT_STATEMENT_CACHE_SIZE = "derby.language.persistentStatementCacheSize";
+	int LANG_PERSISTENT_STATEMENT_CACHE_SIZE_DEFAULT = 4096;
+
+	/**
+	 * The replacement policy of the caches handed out by the cache factory:
+	 * "clock" (the default), or "tinylfu" to admit and evict entries by how
+	 * often they are used (W-TinyLFU).  System.  Static.
+	 * <p>
+	 * Externally visible.
+	 */
+	String CACHE_REPLACEMENT_POLICY = "derby.cache.replacementPolicy";
+	String CACHE_REPLACEMENT_POLICY_CLOCK = "clock";
+	String CACHE_REPLACEMENT_POLICY_TINYLFU = "tinylfu";
+
 	/**
 	 * Tells if the system stored procedures should be updated during database boot up.
 	 * Default is false.  System property.  Loaded once (static initializer).
@@ -24,6 +24,7 @@ import com.splicemachine.pipeline.utils.PipelineCompressor;
 import com.splicemachine.storage.PartitionInfoCache;
 import com.splicemachine.pipeline.client.BulkWritesRPCInvoker;
 import com.splicemachine.pipeline.client.RpcChannelFactory;
+import com.splicemachine.pipeline.client.WriteCoalescer;
 
 import java.io.IOException;
 
@@ -39,12 +40,27 @@ public class CoprocessorWriterFactory implements BulkWriterFactory{
     private final PartitionInfoCache partitionInfoCache;
     private final RpcChannelFactory channelFactory;
     private final HBaseTableInfoFactory tableInfoFactory;
+    private final WriteCoalescer coalescer;
 
     public CoprocessorWriterFactory(PipelineCompressor compressor,
                                     PartitionInfoCache partitionInfoCache,
                                     PipelineExceptionFactory exceptionFactory,
                                     RpcChannelFactory channelFactory,
                                     HBaseTableInfoFactory tableInfoFactory){
+        this(compressor,partitionInfoCache,exceptionFactory,channelFactory,tableInfoFactory,null);
+    }
+
+    /**
+     * @param coalescer if not null, shared by every writer, so that writes from different tables and
+     *                  transactions to the same region server can be coalesced
+     */
+    public CoprocessorWriterFactory(PipelineCompressor compressor,
+                                    PartitionInfoCache partitionInfoCache,
+                                    PipelineExceptionFactory exceptionFactory,
+                                    RpcChannelFactory channelFactory,
+                                    HBaseTableInfoFactory tableInfoFactory,
+                                    WriteCoalescer coalescer){
+        this.coalescer=coalescer;
         this.exceptionFactory=exceptionFactory;
         this.compressor = compressor;
         this.partitionInfoCache = partitionInfoCache;
@@ -57,7 +73,7 @@ public class CoprocessorWriterFactory implements BulkWriterFactory{
         return new BulkWritesRPCInvoker(tableName,pipelineWriter,
                 pipelineWriteFactory,compressor,
                 exceptionFactory,channelFactory,partitionInfoCache,
-                tableInfoFactory);
+                tableInfoFactory,coalescer);
     }
 
     @Override
@@ -34,6 +34,7 @@ import com.splicemachine.pipeline.api.PipelineExceptionFactory;
 import com.splicemachine.pipeline.api.PipelineMeter;
 import com.splicemachine.pipeline.api.WritePipelineFactory;
 import com.splicemachine.pipeline.client.RpcChannelFactory;
+import com.splicemachine.pipeline.client.WriteCoalescer;
 import com.splicemachine.pipeline.contextfactory.ContextFactoryDriver;
 import com.splicemachine.pipeline.utils.PipelineCompressor;
 import com.splicemachine.pipeline.utils.SimplePipelineCompressor;
@@ -98,11 +99,18 @@ public class HBasePipelineEnvironment implements PipelineEnvironment{
 
         KryoPool kryoPool=new KryoPool(pipelineConfiguration.getPipelineKryoPoolSize());
         kryoPool.setKryoRegistry(new PipelineKryoRegistry());
-        this.compressor = new SnappyPipelineCompressor(new SimplePipelineCompressor(kryoPool,env.getSIDriver().getOperationFactory()));
+        this.compressor = new SnappyPipelineCompressor(new SimplePipelineCompressor(kryoPool,env.getSIDriver().getOperationFactory(),
+                pipelineConfiguration.getPipelineEncodingVersion()));
 
         RpcChannelFactory channelFactory = ChannelFactoryService.loadChannelFactory(this.pipelineConfiguration);
+        WriteCoalescer coalescer = null;
+        if(pipelineConfiguration.getWriteCoalesceLingerMicros()>0){
+            coalescer = new WriteCoalescer(pipelineConfiguration.getWriteCoalesceLingerMicros(),
+                    pipelineConfiguration.getWriteCoalesceMaxEntries(),
+                    pipelineConfiguration.getWriteCoalesceMaxInFlight());
+        }
         this.writerFactory = new CoprocessorWriterFactory(compressor,partitionInfoCache(),pipelineExceptionFactory,channelFactory,
-                HBaseTableInfoFactory.getInstance(configuration()));
+                HBaseTableInfoFactory.getInstance(configuration()),coalescer);
     }
 
     @Override
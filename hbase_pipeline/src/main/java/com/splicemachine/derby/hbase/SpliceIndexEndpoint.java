@@ -30,7 +30,9 @@ import com.splicemachine.pipeline.PartitionWritePipeline;
 import com.splicemachine.pipeline.PipelineDriver;
 import com.splicemachine.pipeline.PipelineEnvironment;
 import com.splicemachine.pipeline.PipelineWriter;
+import com.splicemachine.pipeline.client.BulkWriteResult;
 import com.splicemachine.pipeline.client.BulkWrites;
+import com.splicemachine.pipeline.client.BulkWritesBatch;
 import com.splicemachine.pipeline.client.BulkWritesResult;
 import com.splicemachine.pipeline.contextfactory.ContextFactoryDriver;
 import com.splicemachine.pipeline.utils.PipelineCompressor;
@@ -50,6 +52,8 @@ import org.apache.log4j.Logger;
 
 import javax.annotation.Nullable;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Endpoint to allow special batch operations that the HBase API doesn't explicitly enable
@@ -176,7 +180,18 @@ public class SpliceIndexEndpoint extends SpliceMessage.SpliceIndexService implem
 //    @Override
     public byte[] bulkWrites(byte[] bulkWriteBytes) throws IOException{
         assert bulkWriteBytes!=null;
-        BulkWrites bulkWrites=compressor.decompress(bulkWriteBytes,BulkWrites.class);
-        return compressor.compress(bulkWrite(bulkWrites));
+        /*
+         * The request may hold BulkWrites coalesced from several transactions. Each is written separately,
+         * and the results are returned in the same order, so that the client can split them back up.
+         */
+        BulkWritesBatch batch=compressor.decompress(bulkWriteBytes,BulkWritesBatch.class);
+        List<BulkWrites> bulkWrites=batch.getBulkWrites();
+        if(bulkWrites.size()==1)
+            return compressor.compress(bulkWrite(bulkWrites.get(0)));
+        List<BulkWriteResult> results=new ArrayList<>();
+        for(BulkWrites bws:bulkWrites){
+            results.addAll(bulkWrite(bws).getBulkWriteResults());
+        }
+        return compressor.compress(new BulkWritesResult(results));
     }
 }
\ No newline at end of file
@@ -33,6 +33,7 @@ import org.apache.log4j.Logger;
 
 import java.io.IOException;
 import java.net.ConnectException;
+import java.util.List;
 
 /**
  * @author Scott Fines
@@ -62,6 +63,21 @@ public class BulkWriteChannelInvoker {
     }
 
     public BulkWritesResult invoke(BulkWrites write) throws IOException {
+        return invoke(write,write);
+    }
+
+    /**
+     * Send every BulkWrites in {@code batch} in a single call. The first BulkWrites must belong to this
+     * invoker's table, and all of them must be bound for the same region server.
+     */
+    public BulkWritesResult invoke(BulkWritesBatch batch) throws IOException {
+        List<BulkWrites> writes = batch.getBulkWrites();
+        if(writes.size()==1)
+            return invoke(writes.get(0));
+        return invoke(writes.get(0),batch);
+    }
+
+    private BulkWritesResult invoke(BulkWrites write,Object request) throws IOException {
         TableName tableName=tableInfoFactory.getTableInfo(this.tableName);
         CoprocessorRpcChannel channel = channelFactory.newChannel(tableName,write.getRegionKey());
 
@@ -69,7 +85,7 @@ public class BulkWriteChannelInvoker {
         try {
             SpliceMessage.SpliceIndexService service = ProtobufUtil.newServiceStub(SpliceMessage.SpliceIndexService.class, channel);
             SpliceMessage.BulkWriteRequest.Builder builder = SpliceMessage.BulkWriteRequest.newBuilder();
-            byte[] requestBytes = compressor.compress(write);
+            byte[] requestBytes = compressor.compress(request);
             builder.setBytes(ZeroCopyLiteralByteString.wrap(requestBytes));
             SpliceMessage.BulkWriteRequest bwr = builder.build();
 
@@ -35,6 +35,8 @@ public class BulkWritesRPCInvoker implements BulkWriter{
     private final BulkWriteChannelInvoker bulkWriteChannelInvoker;
     private final WritePipelineFactory pipelineFactory;
     private final PipelineWriter pipelineWriter;
+    private final WriteCoalescer coalescer;
+    private final WriteCoalescer.BatchWriter batchWriter;
 
     public BulkWritesRPCInvoker(byte[] tableName,
                                 PipelineWriter pipelineWriter,
@@ -44,9 +46,32 @@ public class BulkWritesRPCInvoker implements BulkWriter{
                                 RpcChannelFactory channelFactory,
                                 PartitionInfoCache partInfoCache,
                                 HBaseTableInfoFactory tableInfoFactory) {
+        this(tableName,pipelineWriter,pipelineFactory,pipelineCompressor,exceptionFactory,channelFactory,partInfoCache,tableInfoFactory,null);
+    }
+
+    /**
+     * @param coalescer if not null, remote writes are coalesced with writes from other invokers
+     *                  which are bound for the same region server
+     */
+    public BulkWritesRPCInvoker(byte[] tableName,
+                                PipelineWriter pipelineWriter,
+                                WritePipelineFactory pipelineFactory,
+                                PipelineCompressor pipelineCompressor,
+                                PipelineExceptionFactory exceptionFactory,
+                                RpcChannelFactory channelFactory,
+                                PartitionInfoCache partInfoCache,
+                                HBaseTableInfoFactory tableInfoFactory,
+                                WriteCoalescer coalescer) {
         this.pipelineFactory = pipelineFactory;
         this.pipelineWriter = pipelineWriter;
         this.bulkWriteChannelInvoker = new BulkWriteChannelInvoker(tableName,pipelineCompressor,channelFactory,partInfoCache,exceptionFactory,tableInfoFactory);
+        this.coalescer = coalescer;
+        this.batchWriter = new WriteCoalescer.BatchWriter(){
+            @Override
+            public BulkWritesResult write(BulkWritesBatch batch) throws IOException{
+                return bulkWriteChannelInvoker.invoke(batch);
+            }
+        };
     }
 
     @Override
@@ -64,6 +89,8 @@ public class BulkWritesRPCInvoker implements BulkWriter{
             }
         }
 
+        if(coalescer!=null && writes.getServer()!=null)
+            return coalescer.write(writes.getServer(),writes,batchWriter);
         return bulkWriteChannelInvoker.invoke(writes);
     }
 }
\ No newline at end of file
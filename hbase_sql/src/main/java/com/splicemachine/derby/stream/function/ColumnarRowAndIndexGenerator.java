@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.stream.function;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.services.io.ArrayUtil;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.impl.sql.execute.ValueRow;
+import com.splicemachine.derby.impl.sql.execute.operations.LocatedRow;
+import com.splicemachine.derby.impl.sql.execute.operations.NormalizeOperation;
+import com.splicemachine.derby.stream.output.ColumnarImportSource;
+import org.apache.spark.sql.Row;
+import scala.Tuple2;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Encodes the rows of a partition of Parquet or ORC files, as read by Spark, into the key/values of a table and
+ * its indexes.
+ * <p>
+ * Unlike a scan followed by {@link RowAndIndexGenerator}, no ExecRow is created per row: each row is read into
+ * a single row of descriptors, reused for the whole partition, which is normalized and encoded in place.
+ */
+public class ColumnarRowAndIndexGenerator
+        extends SpliceFlatMapFunction<NormalizeOperation, Iterator<Row>, Tuple2<Long, Tuple2<byte[], byte[]>>> {
+    private static final long serialVersionUID = 3211402734455962117L;
+
+    private ExecRow scanTemplate;
+    private int[] columnMap;
+    private RowAndIndexGenerator rowAndIndexGenerator;
+
+    private ExecRow scanRow;
+    private ExecRow sourceRow;
+    private NormalizeOperation normalize;
+
+    public ColumnarRowAndIndexGenerator() {
+    }
+
+    public ColumnarRowAndIndexGenerator(ColumnarImportSource source, RowAndIndexGenerator rowAndIndexGenerator) {
+        super(source.getNormalizeContext());
+        this.scanTemplate = source.getScanRow();
+        this.columnMap = source.getColumnMap();
+        this.rowAndIndexGenerator = rowAndIndexGenerator;
+    }
+
+    @Override
+    public Iterator<Tuple2<Long, Tuple2<byte[], byte[]>>> call(final Iterator<Row> rows) throws Exception {
+        if (scanRow == null) {
+            scanRow = scanTemplate.getNewNullRow();
+            sourceRow = new ValueRow(columnMap.length);
+            for (int i = 0; i < columnMap.length; i++) {
+                if (columnMap[i] != -1)
+                    sourceRow.setColumn(i + 1, scanRow.getColumn(columnMap[i]));
+            }
+            if (operationContext != null)
+                normalize = operationContext.getOperation();
+        }
+        return new Iterator<Tuple2<Long, Tuple2<byte[], byte[]>>>() {
+            private Iterator<Tuple2<Long, Tuple2<byte[], byte[]>>> current = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                try {
+                    while (!current.hasNext() && rows.hasNext()) {
+                        current = encode(rows.next());
+                    }
+                    return current.hasNext();
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+
+            @Override
+            public Tuple2<Long, Tuple2<byte[], byte[]>> next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return current.next();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        super.writeExternal(out);
+        out.writeObject(scanTemplate);
+        ArrayUtil.writeIntArray(out, columnMap);
+        out.writeObject(rowAndIndexGenerator);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        super.readExternal(in);
+        scanTemplate = (ExecRow) in.readObject();
+        columnMap = ArrayUtil.readIntArray(in);
+        rowAndIndexGenerator = (RowAndIndexGenerator) in.readObject();
+    }
+
+    /**
+     * Encode a row, as NormalizeFunction and RowAndIndexGenerator would once the scan had turned it into a
+     * LocatedRow.
+     */
+    private Iterator<Tuple2<Long, Tuple2<byte[], byte[]>>> encode(Row row) throws Exception {
+        scanRow.fromSparkRow(row);
+        ExecRow insertRow = sourceRow;
+        if (normalize != null) {
+            try {
+                insertRow = normalize.normalizeRow(sourceRow, true);
+            } catch (StandardException e) {
+                if (operationContext.isPermissive()) {
+                    operationContext.recordBadRecord(e.getLocalizedMessage() + sourceRow.toString(), e);
+                    return Collections.emptyIterator();
+                }
+                throw e;
+            }
+        }
+        return rowAndIndexGenerator.call(new LocatedRow(insertRow));
+    }
+}
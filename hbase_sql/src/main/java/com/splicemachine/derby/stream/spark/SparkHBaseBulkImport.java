@@ -41,6 +41,7 @@ import com.splicemachine.derby.stream.function.*;
 import com.splicemachine.derby.stream.iapi.DataSet;
 import com.splicemachine.derby.stream.iapi.OperationContext;
 import com.splicemachine.derby.stream.iapi.PairDataSet;
+import com.splicemachine.derby.stream.output.ColumnarImportSource;
 import com.splicemachine.derby.stream.output.HBaseBulkImporter;
 import com.splicemachine.pipeline.ErrorState;
 import com.splicemachine.primitives.Bytes;
@@ -87,6 +88,7 @@ public class SparkHBaseBulkImport implements HBaseBulkImporter{
     private boolean outputKeysOnly;
     private boolean skipSampling;
     private String indexName;
+    private ColumnarImportSource columnarSource;
 
     public SparkHBaseBulkImport(){
     }
@@ -104,7 +106,8 @@ public class SparkHBaseBulkImport implements HBaseBulkImporter{
                                 boolean samplingOnly,
                                 boolean outputKeysOnly,
                                 boolean skipSampling,
-                                String indexName) {
+                                String indexName,
+                                ColumnarImportSource columnarSource) {
         this.dataSet = dataSet;
         this.tableVersion = tableVersion;
         this.autoIncrementRowLocationArray = autoIncrementRowLocationArray;
@@ -119,6 +122,7 @@ public class SparkHBaseBulkImport implements HBaseBulkImporter{
         this.outputKeysOnly = outputKeysOnly;
         this.skipSampling = skipSampling;
         this.indexName = indexName;
+        this.columnarSource = columnarSource;
     }
 
     /**
@@ -178,16 +182,22 @@ public class SparkHBaseBulkImport implements HBaseBulkImporter{
                 }
             }
             List<Tuple2<Long, byte[][]>> cutPoints = null;
+            DataSet columnarRows = readColumnarSource();
             if (!skipSampling) {
                 SConfiguration sConfiguration = HConfiguration.getConfiguration();
                 double sampleFraction = sConfiguration.getBulkImportSampleFraction();
-                DataSet sampledDataSet = dataSet.sampleWithoutReplacement(sampleFraction);
 
                 // encode key/vale pairs for table and indexes
                 RowAndIndexGenerator rowAndIndexGenerator =
                         new RowAndIndexGenerator(pkCols, tableVersion, execRow, autoIncrementRowLocationArray,
                                 spliceSequences, heapConglom, txn, operationContext, tentativeIndexList);
-                DataSet sampleRowAndIndexes = sampledDataSet.flatMap(rowAndIndexGenerator);
+                DataSet sampleRowAndIndexes;
+                if (columnarRows != null) {
+                    sampleRowAndIndexes = columnarRows.sampleWithoutReplacement(sampleFraction)
+                            .mapPartitions(new ColumnarRowAndIndexGenerator(columnarSource, rowAndIndexGenerator));
+                } else {
+                    sampleRowAndIndexes = dataSet.sampleWithoutReplacement(sampleFraction).flatMap(rowAndIndexGenerator);
+                }
 
                 // collect statistics for encoded key/value, include size and histgram
                 RowKeyStatisticsFunction statisticsFunction =
@@ -213,7 +223,7 @@ public class SparkHBaseBulkImport implements HBaseBulkImporter{
                 final List<BulkImportPartition> bulkImportPartitions =
                         getBulkImportPartitions(allCongloms, bulkImportDirectory);
 
-                partitionUsingRDDSortUsingDataFrame(bulkImportPartitions, tentativeIndexList);
+                partitionUsingRDDSortUsingDataFrame(bulkImportPartitions, tentativeIndexList, columnarRows);
 
                 bulkLoad(bulkImportPartitions);
             }
@@ -238,6 +248,32 @@ public class SparkHBaseBulkImport implements HBaseBulkImporter{
         return new SparkDataSet<>(SpliceSpark.getContext().parallelize(Collections.singletonList(new LocatedRow(valueRow)), 1));
     }
 
+    /**
+     * Read the rows of the Parquet or ORC files the import copies, if it copies some, so that they can be
+     * encoded without going through the operations of the insert's source.
+     * @return the rows, or null if the data set must be encoded instead
+     */
+    private DataSet readColumnarSource() {
+        if (columnarSource == null)
+            return null;
+        String location = columnarSource.getLocation();
+        try {
+            SparkSession sparkSession = SpliceSpark.getSession();
+            Dataset<Row> table = columnarSource.isParquet() ?
+                    sparkSession.read().parquet(location) : sparkSession.read().orc(location);
+
+            // keep the columns the scan reads, in the order it reads them (a columnar source has no qualifiers)
+            table = SparkDataSetProcessor.processExternalDataset(table, columnarSource.getBaseColumnMap(), null, null);
+            return new SparkDataSet<>(table.javaRDD());
+        } catch (Exception e) {
+            // e.g. an empty directory, whose schema Spark cannot infer: the source's scan knows how to handle it
+            if (LOG.isDebugEnabled()) {
+                SpliceLogUtils.debug(LOG, "cannot read %s directly: %s", location, e.getMessage());
+            }
+            return null;
+        }
+    }
+
     private StructType createSchema() {
         List<StructField> fields = new ArrayList<>();
         StructField field = DataTypes.createStructField("conglomerateId", DataTypes.LongType, true);
@@ -502,11 +538,17 @@ public class SparkHBaseBulkImport implements HBaseBulkImporter{
     }
 
     private void partitionUsingRDDSortUsingDataFrame(List<BulkImportPartition> bulkImportPartitions,
-                                                      ArrayList<DDLMessage.TentativeIndex> tentativeIndexList) {
+                                                      ArrayList<DDLMessage.TentativeIndex> tentativeIndexList,
+                                                      DataSet columnarRows) {
         RowAndIndexGenerator rowAndIndexGenerator = new RowAndIndexGenerator(pkCols, tableVersion, execRow,
                 autoIncrementRowLocationArray, spliceSequences, heapConglom, txn,
                 operationContext, tentativeIndexList);
-        DataSet rowAndIndexes = dataSet.flatMap(rowAndIndexGenerator);
+        DataSet rowAndIndexes;
+        if (columnarRows != null) {
+            rowAndIndexes = columnarRows.mapPartitions(new ColumnarRowAndIndexGenerator(columnarSource, rowAndIndexGenerator));
+        } else {
+            rowAndIndexes = dataSet.flatMap(rowAndIndexGenerator);
+        }
         assert rowAndIndexes instanceof SparkDataSet;
 
         // Create a data frame for main table and index key/values, and sort data
@@ -19,6 +19,7 @@ import com.splicemachine.db.iapi.types.RowLocation;
 import com.splicemachine.derby.impl.sql.execute.sequence.SpliceSequence;
 import com.splicemachine.derby.stream.iapi.DataSet;
 import com.splicemachine.derby.stream.iapi.OperationContext;
+import com.splicemachine.derby.stream.output.ColumnarImportSource;
 import com.splicemachine.derby.stream.output.HBaseBulkImporter;
 import com.splicemachine.derby.stream.output.HBaseBulkImporterBuilder;
 import com.splicemachine.si.api.txn.TxnView;
@@ -41,6 +42,7 @@ public class SparkHBaseBulkImporterBuilder<V> implements HBaseBulkImporterBuilde
     private boolean outputKeysOnly;
     private boolean skipSampling;
     private String indexName;
+    private ColumnarImportSource columnarSource;
 
     public SparkHBaseBulkImporterBuilder(){
     }
@@ -125,10 +127,17 @@ public class SparkHBaseBulkImporterBuilder<V> implements HBaseBulkImporterBuilde
         this.indexName = indexName;
         return this;
     }
+
+    @Override
+    public HBaseBulkImporterBuilder columnarSource(ColumnarImportSource columnarSource) {
+        this.columnarSource = columnarSource;
+        return this;
+    }
+
     @Override
     public HBaseBulkImporter build() {
         return new SparkHBaseBulkImport(dataSet, tableVersion, pkCols, autoIncrementRowLocationArray, heapConglom,
                 execRow, spliceSequences, operationContext, txn, bulkImportDirectory, samplingOnly, outputKeysOnly,
-                skipSampling, indexName);
+                skipSampling, indexName, columnarSource);
     }
 }
@@ -58,6 +58,14 @@ public class SparkOperationContext<Op extends SpliceOperation> implements Operat
     public LongAccumulator rowsWritten;
     public LongAccumulator retryAttempts;
     public LongAccumulator regionTooBusyExceptions;
+    public LongAccumulator rowsDecoded;
+    public LongAccumulator bytesDecoded;
+    public LongAccumulator spilledRuns;
+    public LongAccumulator spilledBytes;
+    public LongAccumulator joinBuildRows;
+    public LongAccumulator joinBuildBytes;
+    public LongAccumulator joinProbeRows;
+    public LongAccumulator joinProbeHits;
 
     public LongAccumulator pipelineRowsWritten;
     public LongAccumulator thrownErrorsRows;
@@ -92,6 +100,14 @@ public class SparkOperationContext<Op extends SpliceOperation> implements Operat
         this.rowsJoinedLeft=SpliceSpark.getContext().sc().longAccumulator(baseName+" rows joined left");
         this.rowsJoinedRight=SpliceSpark.getContext().sc().longAccumulator(baseName+" rows joined right");
         this.rowsProduced=SpliceSpark.getContext().sc().longAccumulator(baseName+" rows produced");
+        this.rowsDecoded=SpliceSpark.getContext().sc().longAccumulator(baseName+" rows decoded");
+        this.bytesDecoded=SpliceSpark.getContext().sc().longAccumulator(baseName+" bytes decoded");
+        this.spilledRuns=SpliceSpark.getContext().sc().longAccumulator(baseName+" runs spilled");
+        this.spilledBytes=SpliceSpark.getContext().sc().longAccumulator(baseName+" bytes spilled");
+        this.joinBuildRows=SpliceSpark.getContext().sc().longAccumulator(baseName+" join build rows");
+        this.joinBuildBytes=SpliceSpark.getContext().sc().longAccumulator(baseName+" join build bytes");
+        this.joinProbeRows=SpliceSpark.getContext().sc().longAccumulator(baseName+" join probe rows");
+        this.joinProbeHits=SpliceSpark.getContext().sc().longAccumulator(baseName+" join probe hits");
         initWritePipeline();
     }
 
@@ -106,6 +122,14 @@ public class SparkOperationContext<Op extends SpliceOperation> implements Operat
         this.rowsJoinedLeft=SpliceSpark.getContext().sc().longAccumulator("rows joined left");
         this.rowsJoinedRight=SpliceSpark.getContext().sc().longAccumulator("rows joined right");
         this.rowsProduced=SpliceSpark.getContext().sc().longAccumulator("rows produced");
+        this.rowsDecoded=SpliceSpark.getContext().sc().longAccumulator("rows decoded");
+        this.bytesDecoded=SpliceSpark.getContext().sc().longAccumulator("bytes decoded");
+        this.spilledRuns=SpliceSpark.getContext().sc().longAccumulator("runs spilled");
+        this.spilledBytes=SpliceSpark.getContext().sc().longAccumulator("bytes spilled");
+        this.joinBuildRows=SpliceSpark.getContext().sc().longAccumulator("join build rows");
+        this.joinBuildBytes=SpliceSpark.getContext().sc().longAccumulator("join build bytes");
+        this.joinProbeRows=SpliceSpark.getContext().sc().longAccumulator("join probe rows");
+        this.joinProbeHits=SpliceSpark.getContext().sc().longAccumulator("join probe hits");
         initWritePipeline();
     }
 
@@ -158,6 +182,14 @@ public class SparkOperationContext<Op extends SpliceOperation> implements Operat
         out.writeObject(catchThrownRows);
         out.writeObject(catchRetriedRows);
         out.writeObject(pipelineRowsWritten);
+        out.writeObject(rowsDecoded);
+        out.writeObject(bytesDecoded);
+        out.writeObject(spilledRuns);
+        out.writeObject(spilledBytes);
+        out.writeObject(joinBuildRows);
+        out.writeObject(joinBuildBytes);
+        out.writeObject(joinProbeRows);
+        out.writeObject(joinProbeHits);
     }
 
     @Override
@@ -194,6 +226,14 @@ public class SparkOperationContext<Op extends SpliceOperation> implements Operat
         catchThrownRows=(LongAccumulator)in.readObject();
         catchRetriedRows=(LongAccumulator)in.readObject();
         pipelineRowsWritten=(LongAccumulator)in.readObject();
+        rowsDecoded=(LongAccumulator)in.readObject();
+        bytesDecoded=(LongAccumulator)in.readObject();
+        spilledRuns=(LongAccumulator)in.readObject();
+        spilledBytes=(LongAccumulator)in.readObject();
+        joinBuildRows=(LongAccumulator)in.readObject();
+        joinBuildBytes=(LongAccumulator)in.readObject();
+        joinProbeRows=(LongAccumulator)in.readObject();
+        joinProbeHits=(LongAccumulator)in.readObject();
     }
 
     @Override
@@ -331,6 +371,30 @@ public class SparkOperationContext<Op extends SpliceOperation> implements Operat
         rowsProduced.add(1l);
     }
 
+    @Override
+    public void recordSpill(long bytes){
+        spilledRuns.add(1l);
+        spilledBytes.add(bytes);
+    }
+
+    @Override
+    public void recordJoinBuild(long rows,long bytes){
+        joinBuildRows.add(rows);
+        joinBuildBytes.add(bytes);
+    }
+
+    @Override
+    public void recordJoinProbe(long rows,long hits){
+        joinProbeRows.add(rows);
+        joinProbeHits.add(hits);
+    }
+
+    @Override
+    public void recordDecoded(long rows,long bytes){
+        rowsDecoded.add(rows);
+        bytesDecoded.add(bytes);
+    }
+
     @Override
     public long getRecordsRead(){
         return rowsRead.value();
@@ -355,6 +419,46 @@ public class SparkOperationContext<Op extends SpliceOperation> implements Operat
         return regionTooBusyExceptions.value();
     }
 
+    @Override
+    public long getSpilledRuns(){
+        return spilledRuns.value();
+    }
+
+    @Override
+    public long getSpilledBytes(){
+        return spilledBytes.value();
+    }
+
+    @Override
+    public long getJoinBuildRows(){
+        return joinBuildRows.value();
+    }
+
+    @Override
+    public long getJoinBuildBytes(){
+        return joinBuildBytes.value();
+    }
+
+    @Override
+    public long getJoinProbeRows(){
+        return joinProbeRows.value();
+    }
+
+    @Override
+    public long getJoinProbeHits(){
+        return joinProbeHits.value();
+    }
+
+    @Override
+    public long getRowsDecoded(){
+        return rowsDecoded.value();
+    }
+
+    @Override
+    public long getBytesDecoded(){
+        return bytesDecoded.value();
+    }
+
 
     @Override
     public void pushScope(String displayName){
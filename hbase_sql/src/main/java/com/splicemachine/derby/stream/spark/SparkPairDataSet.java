@@ -114,6 +114,12 @@ public class SparkPairDataSet<K,V> implements PairDataSet<K, V>{
      return new SparkPairDataSet<>(rdd2);
     }
 
+    @Override
+    public PairDataSet<K, V> sortByKey(Comparator<K> comparator, String name, OperationContext context) {
+        // Spark records its own spills
+        return sortByKey(comparator, name);
+    }
+
     @Override
     public PairDataSet<K, V> partitionBy(Partitioner<K> partitioner, Comparator<K> comparator) {
         partitioner.initialize();
@@ -141,11 +147,23 @@ public class SparkPairDataSet<K,V> implements PairDataSet<K, V>{
         return new SparkPairDataSet<>(rdd.leftOuterJoin(((SparkPairDataSet<K,W>)rightDataSet).rdd));
     }
 
+    @Override
+    public <W> PairDataSet<K, Tuple2<V, Optional<W>>> hashLeftOuterJoin(PairDataSet<K, W> rightDataSet,OperationContext context){
+        // Spark records its own shuffles and spills
+        return hashLeftOuterJoin(rightDataSet);
+    }
+
     @Override
     public <W> PairDataSet<K, Tuple2<Optional<V>, W>> hashRightOuterJoin(PairDataSet<K, W> rightDataSet){
         return new SparkPairDataSet<>(rdd.rightOuterJoin(((SparkPairDataSet<K,W>)rightDataSet).rdd));
     }
 
+    @Override
+    public <W> PairDataSet<K, Tuple2<Optional<V>, W>> hashRightOuterJoin(PairDataSet<K, W> rightDataSet,OperationContext context){
+        // Spark records its own shuffles and spills
+        return hashRightOuterJoin(rightDataSet);
+    }
+
     @Override
     public <W> PairDataSet<K, Tuple2<V, W>> hashJoin(PairDataSet<K, W> rightDataSet){
         return hashJoin(rightDataSet,"Hash Join");
@@ -159,6 +177,12 @@ public class SparkPairDataSet<K,V> implements PairDataSet<K, V>{
         return new SparkPairDataSet<>(rdd1);
     }
 
+    @Override
+    public <W> PairDataSet<K, Tuple2<V, W>> hashJoin(PairDataSet<K, W> rightDataSet,String name,OperationContext context){
+        // Spark records its own shuffles and spills
+        return hashJoin(rightDataSet,name);
+    }
+
     private <W> Multimap<K, W> generateMultimap(JavaPairRDD<K, W> rightPairDataSet){
         Multimap<K, W> returnValue=ArrayListMultimap.create();
         List<Tuple2<K, W>> value=rightPairDataSet.collect();
@@ -182,6 +206,12 @@ public class SparkPairDataSet<K,V> implements PairDataSet<K, V>{
         return new SparkPairDataSet<>(rdd.subtractByKey(((SparkPairDataSet<K,W>)rightDataSet).rdd),name);
     }
 
+    @Override
+    public <W> PairDataSet<K, V> subtractByKey(PairDataSet<K, W> rightDataSet,String name,OperationContext context){
+        // Spark records its own shuffles and spills
+        return subtractByKey(rightDataSet,name);
+    }
+
     @Override
     public <Op extends SpliceOperation,U> DataSet<U> flatmap(SpliceFlatMapFunction<Op, Tuple2<K, V>, U> f){
         return new SparkDataSet<>(rdd.flatMap(new SparkFlatMapFunction<>(f)),f.getSparkName());
@@ -203,6 +233,12 @@ public class SparkPairDataSet<K,V> implements PairDataSet<K, V>{
         return new SparkPairDataSet<>(cogroup,name);
     }
 
+    @Override
+    public <W> PairDataSet<K, Tuple2<Iterable<V>, Iterable<W>>> cogroup(PairDataSet<K, W> rightDataSet,String name,OperationContext context){
+        // Spark records its own shuffles and spills
+        return cogroup(rightDataSet,name);
+    }
+
     @Override
     public PairDataSet<K, V> union(PairDataSet<K, V> dataSet){
         return new SparkPairDataSet<>(rdd.union(((SparkPairDataSet<K, V>)dataSet).rdd));
@@ -64,6 +64,7 @@ public class SMRecordReaderImpl extends RecordReader<RowLocation, ExecRow> {
     private boolean statisticsRun = false;
 	private Txn localTxn;
 	private ActivationHolder activationHolder;
+	private SparkOperationContext operationContext;
 
 
 	public SMRecordReaderImpl(Configuration config) {
@@ -87,7 +88,6 @@ public class SMRecordReaderImpl extends RecordReader<RowLocation, ExecRow> {
 			throw new IOException("splice scan info was not serialized to task, failing");
 		try {
 			builder = TableScannerBuilder.getTableScannerBuilderFromBase64String(tableScannerAsString);
-			SparkOperationContext operationContext = null;
 			if (operationContextAsString != null) {
 				operationContext = (SparkOperationContext) SerializationUtils.deserialize(Base64.decodeBase64(operationContextAsString));
 			}
@@ -158,6 +158,7 @@ public class SMRecordReaderImpl extends RecordReader<RowLocation, ExecRow> {
 		IOException lastThrown = null;
 		if (LOG.isDebugEnabled())
 			SpliceLogUtils.debug(LOG, "close");
+		recordDecoded();
 		if (localTxn != null) {
 			try {
 				localTxn.commit();
@@ -234,6 +235,7 @@ public class SMRecordReaderImpl extends RecordReader<RowLocation, ExecRow> {
                     .scanner(new RegionDataScanner(new RegionPartition(hregion),mrs,statisticsRun?Metrics.basicMetricFactory():Metrics.noOpMetricFactory()));
 			if (LOG.isTraceEnabled())
 				SpliceLogUtils.trace(LOG, "restart with builder=%s",builder);
+			recordDecoded();
 			siTableScanner = builder.build();
 			addCloseable(siTableScanner);
 			addCloseable(siTableScanner.getRegionScanner());
@@ -259,6 +261,15 @@ public class SMRecordReaderImpl extends RecordReader<RowLocation, ExecRow> {
 		return builder.getTemplate();
 	}
 
+	/**
+	 * Record the rows the current scanner decoded in the operation's context, before the scanner is
+	 * replaced or closed.
+	 */
+	private void recordDecoded() {
+		if (operationContext != null && siTableScanner != null)
+			operationContext.recordDecoded(siTableScanner.getRowsDecoded(), siTableScanner.getBytesDecoded());
+	}
+
 	public void addCloseable(AutoCloseable closeable) {
 		closeables.add(closeable);
 	}
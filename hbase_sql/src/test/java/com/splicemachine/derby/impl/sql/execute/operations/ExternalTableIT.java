@@ -432,6 +432,39 @@ public class ExternalTableIT extends SpliceUnitTest{
     }
 
 
+    @Test
+    public void testBulkImportFromParquetWritesSameRowsAsGenericPath() throws Exception {
+        String tablePath = getExternalResourceDirectory()+"bulk_import_parquet";
+        methodWatcher.executeUpdate(String.format("create external table bulk_import_parquet (col1 int, col2 varchar(24), col3 int)" +
+                " STORED AS PARQUET LOCATION '%s'",tablePath));
+        methodWatcher.executeUpdate("insert into bulk_import_parquet values (1,'XXXX',10),(2,null,null),(3,'ZZZZ',30),(4,'',40)");
+        methodWatcher.executeUpdate("create table bulk_import_native (col1 int, col2 varchar(24), col3 int)");
+        methodWatcher.executeUpdate("insert into bulk_import_native select * from bulk_import_parquet");
+        for (String table : new String[]{"bulk_import_columnar", "bulk_import_generic"}) {
+            methodWatcher.executeUpdate(String.format("create table %s (c3 int, c1 int primary key, c2 char(8))", table));
+            methodWatcher.executeUpdate(String.format("create index %s_idx on %s (c2)", table, table));
+        }
+
+        // A plain copy of the Parquet table is encoded straight from the files' rows, while the copy of the
+        // native table goes through the source's operations
+        String bulkImportDirectory = getExternalResourceDirectory()+"bulk_import_hfiles";
+        Assert.assertEquals(4, methodWatcher.executeUpdate(String.format("insert into bulk_import_columnar (c3, c1, c2) " +
+                "--splice-properties useSpark=true, bulkImportDirectory=%s, bulkImportColumnar=true\n" +
+                " select col3, col1, col2 from bulk_import_parquet", bulkImportDirectory)));
+        Assert.assertEquals(4, methodWatcher.executeUpdate(String.format("insert into bulk_import_generic (c3, c1, c2) " +
+                "--splice-properties useSpark=true, bulkImportDirectory=%s\n" +
+                " select col3, col1, col2 from bulk_import_native", bulkImportDirectory)));
+
+        for (String query : new String[]{
+                "select * from %s --splice-properties index=null\n order by c1",
+                "select c1, c2 from %s --splice-properties index=%s_idx\n order by c1"}) {
+            ResultSet generic = methodWatcher.executeQuery(String.format(query, "bulk_import_generic", "bulk_import_generic"));
+            String expected = TestUtils.FormattedResult.ResultFactory.toString(generic);
+            ResultSet columnar = methodWatcher.executeQuery(String.format(query, "bulk_import_columnar", "bulk_import_columnar"));
+            Assert.assertEquals(query, expected, TestUtils.FormattedResult.ResultFactory.toString(columnar));
+        }
+    }
+
     @Test
     public void testWriteReadFromPartitionedParquetExternalTable() throws Exception {
         String tablePath =  getExternalResourceDirectory()+"partitioned_parquet";
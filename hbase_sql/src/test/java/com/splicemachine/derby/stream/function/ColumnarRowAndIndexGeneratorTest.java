@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.stream.function;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.sql.Activation;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.types.RowLocation;
+import com.splicemachine.db.iapi.types.SQLInteger;
+import com.splicemachine.db.iapi.types.SQLVarchar;
+import com.splicemachine.db.impl.sql.execute.ValueRow;
+import com.splicemachine.db.shared.common.reference.SQLState;
+import com.splicemachine.derby.iapi.sql.execute.SpliceOperation;
+import com.splicemachine.derby.impl.sql.execute.operations.LocatedRow;
+import com.splicemachine.derby.impl.sql.execute.operations.NormalizeOperation;
+import com.splicemachine.derby.impl.sql.execute.operations.ProjectRestrictOperation;
+import com.splicemachine.derby.impl.sql.execute.operations.TableScanOperation;
+import com.splicemachine.derby.impl.sql.execute.operations.iapi.ScanInformation;
+import com.splicemachine.derby.impl.sql.execute.sequence.SpliceSequence;
+import com.splicemachine.derby.stream.iapi.DataSetProcessor;
+import com.splicemachine.derby.stream.iapi.OperationContext;
+import com.splicemachine.derby.stream.output.ColumnarImportSource;
+import com.splicemachine.ddl.DDLMessage;
+import com.splicemachine.primitives.Bytes;
+import com.splicemachine.si.api.txn.TxnView;
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.RowFactory;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import scala.Tuple2;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks that the columnar bulk import path writes the same key/values as the generic one, where the scanned rows
+ * go through a Normalize and then {@link RowAndIndexGenerator}.
+ * <p>
+ * The files hold (INTEGER, VARCHAR, INTEGER) rows; the insert row is (c3, c1, c2), keyed on c1, and the Normalize
+ * rejects VARCHARs longer than 5 characters.
+ */
+@Category(ArchitectureIndependent.class)
+public class ColumnarRowAndIndexGeneratorTest{
+    private static final int[] PROJECT_MAPPING = {3,1,2};
+    private static final int MAX_LENGTH = 5;
+
+    private static final Object[][] ROWS = {
+            {1,"a",10},
+            {2,null,null},
+            {3,"too long",30},
+            {4,"dddd",40},
+            {5,"",null},
+            {6,"also too long",null},
+            {7,"ggggg",70},
+    };
+
+    private TxnView txn;
+    private ExecRow insertRow;
+    private ExecRow scanRow;
+
+    @Before
+    public void setUp(){
+        txn = mock(TxnView.class);
+
+        scanRow = new ValueRow(3);
+        scanRow.setColumn(1,new SQLInteger());
+        scanRow.setColumn(2,new SQLVarchar());
+        scanRow.setColumn(3,new SQLInteger());
+
+        insertRow = new ValueRow(3);
+        insertRow.setColumn(1,new SQLInteger());
+        insertRow.setColumn(2,new SQLInteger());
+        insertRow.setColumn(3,new SQLVarchar());
+    }
+
+    @Test
+    public void testSameKeyValuesWithNormalizeErrorsInPermissiveMode() throws Exception{
+        OperationContext<NormalizeOperation> genericContext = normalizeContext(true);
+        List<String> generic = generic(genericContext);
+
+        OperationContext<NormalizeOperation> columnarContext = normalizeContext(true);
+        List<String> columnar = columnar(columnarContext);
+
+        Assert.assertEquals("Columnar and generic paths wrote different key/values",generic,columnar);
+        Assert.assertEquals("Incorrect number of rows written",ROWS.length-2,columnar.size());
+        verify(genericContext,times(2)).recordBadRecord(anyString(),any(Exception.class));
+        verify(columnarContext,times(2)).recordBadRecord(anyString(),any(Exception.class));
+    }
+
+    @Test
+    public void testNormalizeErrorFailsWhenNotPermissive() throws Exception{
+        OperationContext<NormalizeOperation> context = normalizeContext(false);
+        try{
+            columnar(context);
+            Assert.fail("Expected a normalize error");
+        }catch(Exception e){
+            Throwable cause = e;
+            while(cause!=null && !(cause instanceof StandardException))
+                cause = cause.getCause();
+            Assert.assertNotNull("Unexpected exception "+e,cause);
+            Assert.assertEquals(SQLState.LANG_STRING_TRUNCATION,((StandardException)cause).getMessageId());
+        }
+        verify(context,never()).recordBadRecord(anyString(),any(Exception.class));
+    }
+
+    /**
+     * Key/values of the rows scanned into ExecRows, picked by the ProjectRestrict, normalized by NormalizeFunction
+     * and encoded by RowAndIndexGenerator one at a time.
+     */
+    private List<String> generic(OperationContext<NormalizeOperation> context) throws Exception{
+        NormalizeFunction normalizeFunction = new NormalizeFunction(context);
+        RowAndIndexGenerator generator = rowAndIndexGenerator();
+        List<String> keyValues = new ArrayList<>();
+        for(Object[] values : ROWS){
+            ExecRow scanned = scanRow.getNewNullRow();
+            scanned.fromSparkRow(RowFactory.create(values));
+            ExecRow projected = new ValueRow(PROJECT_MAPPING.length);
+            for(int i=0;i<PROJECT_MAPPING.length;i++){
+                projected.setColumn(i+1,scanned.getColumn(PROJECT_MAPPING[i]).cloneValue(false));
+            }
+            Iterator<LocatedRow> normalized = normalizeFunction.call(new LocatedRow(projected));
+            while(normalized.hasNext()){
+                keyValues.addAll(toStrings(generator.call(normalized.next())));
+            }
+        }
+        return keyValues;
+    }
+
+    /**
+     * Key/values of the Spark rows encoded by ColumnarRowAndIndexGenerator, as one partition. They are all
+     * collected before being compared, as the generator reuses one row of descriptors for the whole partition.
+     */
+    private List<String> columnar(OperationContext<NormalizeOperation> context) throws Exception{
+        ColumnarImportSource source = ColumnarImportSource.forInsert(plan(context.getOperation()),dataSetProcessor(context));
+        Assert.assertNotNull("Source not recognised as columnar",source);
+        List<Row> rows = new ArrayList<>();
+        for(Object[] values : ROWS){
+            rows.add(RowFactory.create(values));
+        }
+        ColumnarRowAndIndexGenerator generator = new ColumnarRowAndIndexGenerator(source,rowAndIndexGenerator());
+        List<Tuple2<Long,Tuple2<byte[],byte[]>>> keyValues = new ArrayList<>();
+        Iterator<Tuple2<Long,Tuple2<byte[],byte[]>>> encoded = generator.call(rows.iterator());
+        while(encoded.hasNext()){
+            keyValues.add(encoded.next());
+        }
+        return toStrings(keyValues.iterator());
+    }
+
+    private RowAndIndexGenerator rowAndIndexGenerator(){
+        return new RowAndIndexGenerator(new int[]{2},"2.0",insertRow,new RowLocation[0],new SpliceSequence[0],
+                1184L,txn,null,new ArrayList<DDLMessage.TentativeIndex>());
+    }
+
+    /**
+     * Normalize over a ProjectRestrict which only maps columns, over a scan of a Parquet table.
+     */
+    @SuppressWarnings("unchecked")
+    private SpliceOperation plan(NormalizeOperation normalize) throws StandardException{
+        ScanInformation<ExecRow> scanInformation = mock(ScanInformation.class);
+        TableScanOperation scan = mock(TableScanOperation.class);
+        when(scan.getStoredAs()).thenReturn("P");
+        when(scan.getLocation()).thenReturn("/tmp/external");
+        when(scan.getScanInformation()).thenReturn(scanInformation);
+        when(scan.getExecRowDefinition()).thenReturn(scanRow);
+        when(scan.getBaseColumnMap()).thenReturn(new int[]{0,1,2});
+
+        ProjectRestrictOperation projectRestrict = mock(ProjectRestrictOperation.class);
+        when(projectRestrict.onlyMapsColumns()).thenReturn(true);
+        when(projectRestrict.getLeftOperation()).thenReturn((SpliceOperation)scan);
+        projectRestrict.projectMapping = PROJECT_MAPPING;
+
+        when(normalize.getLeftOperation()).thenReturn((SpliceOperation)projectRestrict);
+        normalize.source = projectRestrict;
+        return normalize;
+    }
+
+    private static DataSetProcessor dataSetProcessor(OperationContext<NormalizeOperation> context){
+        DataSetProcessor dsp = mock(DataSetProcessor.class);
+        when(dsp.createOperationContext(context.getOperation())).thenReturn(context);
+        return dsp;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static OperationContext<NormalizeOperation> normalizeContext(boolean permissive) throws StandardException{
+        NormalizeOperation normalize = mock(NormalizeOperation.class);
+        normalize.source = mock(SpliceOperation.class);
+        when(normalize.normalizeRow(any(ExecRow.class),anyBoolean())).thenAnswer(new Answer<ExecRow>(){
+            @Override
+            public ExecRow answer(InvocationOnMock invocation) throws Throwable{
+                ExecRow row = (ExecRow)invocation.getArguments()[0];
+                String value = row.getColumn(3).getString();
+                if(value!=null && value.length()>MAX_LENGTH)
+                    throw StandardException.newException(SQLState.LANG_STRING_TRUNCATION,"VARCHAR",value,
+                            String.valueOf(MAX_LENGTH));
+                return row;
+            }
+        });
+        OperationContext<NormalizeOperation> context = mock(OperationContext.class);
+        when(context.getOperation()).thenReturn(normalize);
+        when(context.getActivation()).thenReturn(mock(Activation.class));
+        when(context.isPermissive()).thenReturn(permissive);
+        return context;
+    }
+
+    private static List<String> toStrings(Iterator<Tuple2<Long,Tuple2<byte[],byte[]>>> keyValues){
+        List<String> strings = new ArrayList<>();
+        while(keyValues.hasNext()){
+            Tuple2<Long,Tuple2<byte[],byte[]>> keyValue = keyValues.next();
+            strings.add(keyValue._1()+":"+Bytes.toHex(keyValue._2()._1())+"/"+Bytes.toHex(keyValue._2()._2()));
+        }
+        return strings;
+    }
+}
@@ -57,6 +57,7 @@ import com.splicemachine.si.api.data.TxnOperationFactory;
 import com.splicemachine.si.api.filter.TransactionalFilter;
 import com.splicemachine.si.api.filter.TxnFilter;
 import com.splicemachine.si.api.server.TransactionalRegion;
+import com.splicemachine.si.api.server.Transactor;
 import com.splicemachine.si.api.txn.TxnView;
 import com.splicemachine.si.constants.SIConstants;
 import com.splicemachine.si.impl.HOperationFactory;
@@ -66,7 +67,9 @@ import com.splicemachine.si.impl.Tracer;
 import com.splicemachine.si.impl.TxnRegion;
 import com.splicemachine.si.impl.driver.SIDriver;
 import com.splicemachine.si.impl.server.SICompactionState;
+import com.splicemachine.si.impl.server.SITransactor;
 import com.splicemachine.storage.EntryPredicateFilter;
+import com.splicemachine.storage.HLock;
 import com.splicemachine.storage.HMutationStatus;
 import com.splicemachine.storage.MutationStatus;
 import com.splicemachine.storage.Partition;
@@ -111,6 +114,14 @@ public class SIObserver extends BaseRegionObserver{
     @Override
     public void stop(CoprocessorEnvironment e) throws IOException{
         SpliceLogUtils.trace(LOG,"stopping %s",SIObserver.class);
+        if(tableEnvMatch){
+            //the region is closing, so its row locks are no longer needed on this server
+            String regionName=((RegionCoprocessorEnvironment)e).getRegion().getRegionInfo().getRegionNameAsString();
+            HLock.regionClosed(regionName);
+            Transactor transactor=SIDriver.driver().getTransactor();
+            if(transactor instanceof SITransactor)
+                ((SITransactor)transactor).getRowLocks().remove(regionName);
+        }
         super.stop(e);
     }
 
@@ -89,7 +89,8 @@ public class TxnLifecycleEndpoint extends TxnMessage.TxnLifecycleService impleme
             TimestampSource timestampSource=driver.getTimestampSource();
             int txnLockStrips = configuration.getTransactionLockStripes();
             lifecycleStore = new StripedTxnLifecycleStore(txnLockStrips,regionStore,
-                    new RegionServerControl(region,rce.getRegionServerServices()),timestampSource);
+                    new RegionServerControl(region,rce.getRegionServerServices()),timestampSource,
+                    configuration.getTransactionGroupCommitMaxBatch(),configuration.getTransactionGroupCommitWindow());
             isTxnTable=true;
         }
     }
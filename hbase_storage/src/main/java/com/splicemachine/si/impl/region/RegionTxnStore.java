@@ -31,8 +31,10 @@ import com.splicemachine.utils.Source;
 import com.splicemachine.utils.SpliceLogUtils;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.client.*;
 import org.apache.hadoop.hbase.regionserver.HRegion;
+import org.apache.hadoop.hbase.regionserver.OperationStatus;
 import org.apache.hadoop.hbase.regionserver.RegionScanner;
 import org.apache.log4j.Logger;
 
@@ -53,6 +55,8 @@ import java.util.NoSuchElementException;
  */
 public class RegionTxnStore implements TxnPartition{
     private static final Logger LOG=Logger.getLogger(RegionTxnStore.class);
+    /*the number of times a group of completions is written, while some of them are not run*/
+    private static final int MAX_COMPLETION_ATTEMPTS=3;
 
     private final TxnDecoder newTransactionDecoder=V2TxnDecoder.INSTANCE;
     private final TransactionResolver resolver;
@@ -124,6 +128,21 @@ public class RegionTxnStore implements TxnPartition{
         return TxnUtils.getRowKey(txnId);
     }
 
+    private Put commitPut(long txnId,long commitTs){
+        Put put=new Put(getRowKey(txnId));
+        put.add(FAMILY,V2TxnDecoder.COMMIT_QUALIFIER_BYTES,Encoding.encode(commitTs));
+        put.add(FAMILY,V2TxnDecoder.STATE_QUALIFIER_BYTES,Txn.State.COMMITTED.encode());
+        return put;
+    }
+
+    private Put rollbackPut(long txnId){
+        Put put=new Put(getRowKey(txnId));
+        put.add(FAMILY,V2TxnDecoder.STATE_QUALIFIER_BYTES,Txn.State.ROLLEDBACK.encode());
+        put.add(FAMILY,V2TxnDecoder.COMMIT_QUALIFIER_BYTES,Encoding.encode(-1));
+        put.add(FAMILY,V2TxnDecoder.GLOBAL_COMMIT_QUALIFIER_BYTES,Encoding.encode(-1));
+        return put;
+    }
+
     @Override
     public boolean keepAlive(long txnId) throws IOException{
         if(LOG.isTraceEnabled())
@@ -195,10 +214,57 @@ public class RegionTxnStore implements TxnPartition{
     public void recordCommit(long txnId,long commitTs) throws IOException{
         if(LOG.isTraceEnabled())
             SpliceLogUtils.trace(LOG,"recordCommit txnId=%d, commitTs=%d",txnId,commitTs);
-        Put put=new Put(getRowKey(txnId));
-        put.add(FAMILY,V2TxnDecoder.COMMIT_QUALIFIER_BYTES,Encoding.encode(commitTs));
-        put.add(FAMILY,V2TxnDecoder.STATE_QUALIFIER_BYTES,Txn.State.COMMITTED.encode());
-        region.put(put);
+        region.put(commitPut(txnId,commitTs));
+    }
+
+    @Override
+    public IOException[] recordCompletions(long[] committedTxnIds,int numCommitted,long commitTs,
+                                           long[] rolledBackTxnIds,int numRolledBack) throws IOException{
+        if(LOG.isTraceEnabled())
+            SpliceLogUtils.trace(LOG,"recordCompletions committed=%d, commitTs=%d, rolledBack=%d",numCommitted,commitTs,numRolledBack);
+        Mutation[] puts=new Mutation[numCommitted+numRolledBack];
+        for(int i=0;i<numCommitted;i++){
+            puts[i]=commitPut(committedTxnIds[i],commitTs);
+        }
+        for(int i=0;i<numRolledBack;i++){
+            puts[numCommitted+i]=rollbackPut(rolledBackTxnIds[i]);
+        }
+        /*
+         * Each status belongs to the completion at the same position of the batch. Completions which were not run
+         * (e.g. because their row lock could not be had in time) are retried; any other failure fails only its own
+         * completion.
+         */
+        IOException[] errors=null;
+        Mutation[] batch=puts;
+        int[] positions=null;
+        for(int attempt=1;;attempt++){
+            OperationStatus[] statuses=region.batchMutate(batch);
+            int[] retry=null;
+            int numRetry=0;
+            for(int i=0;i<statuses.length;i++){
+                HConstants.OperationStatusCode code=statuses[i].getOperationStatusCode();
+                if(code==HConstants.OperationStatusCode.SUCCESS) continue;
+                int position=positions==null?i:positions[i];
+                if(code==HConstants.OperationStatusCode.NOT_RUN && attempt<MAX_COMPLETION_ATTEMPTS){
+                    if(retry==null)
+                        retry=new int[statuses.length];
+                    retry[numRetry++]=position;
+                }else{
+                    if(errors==null)
+                        errors=new IOException[puts.length];
+                    long txnId=position<numCommitted?committedTxnIds[position]:rolledBackTxnIds[position-numCommitted];
+                    errors[position]=new IOException("Unable to record the completion of transaction "+txnId+": "
+                            +code+" "+statuses[i].getExceptionMsg());
+                }
+            }
+            if(numRetry==0)
+                return errors;
+            batch=new Mutation[numRetry];
+            for(int i=0;i<numRetry;i++){
+                batch[i]=puts[retry[i]];
+            }
+            positions=retry;
+        }
     }
 
     @Override
@@ -228,11 +294,7 @@ public class RegionTxnStore implements TxnPartition{
     public void recordRollback(long txnId) throws IOException{
         if(LOG.isTraceEnabled())
             SpliceLogUtils.trace(LOG,"recordRollback txnId=%d",txnId);
-        Put put=new Put(getRowKey(txnId));
-        put.add(FAMILY,V2TxnDecoder.STATE_QUALIFIER_BYTES,Txn.State.ROLLEDBACK.encode());
-        put.add(FAMILY,V2TxnDecoder.COMMIT_QUALIFIER_BYTES,Encoding.encode(-1));
-        put.add(FAMILY,V2TxnDecoder.GLOBAL_COMMIT_QUALIFIER_BYTES,Encoding.encode(-1));
-        region.put(put);
+        region.put(rollbackPut(txnId));
     }
 
     @Override
@@ -14,29 +14,61 @@
 
 package com.splicemachine.storage;
 
+import com.splicemachine.utils.ByteSlice;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import org.apache.hadoop.hbase.regionserver.HRegion;
 import javax.annotation.Nonnull;
 import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 
 /**
+ * A lock on a single row of an HBase region.
+ *
+ * HBase has no way to try a row lock: acquiring one waits for as long as the region's row lock wait duration
+ * (30 seconds by default). So before a row's HBase lock is taken, the row is claimed in a table of the rows
+ * held by the locks of its region. A row which is already claimed is found without waiting, and a timed try
+ * waits on the claim's holder for no longer than it was asked to. The HBase lock is only taken once the claim
+ * is held, so it is never held by another of these locks, and only waits for writes which go around Splice.
+ *
+ * Claims are re-entrant for the thread which holds them, as HBase's row locks are.
+ *
  * @author Scott Fines
  *         Date: 12/15/15
  */
 public class HLock implements Lock{
+    /*the rows claimed in each region, by region name*/
+    private static final ConcurrentMap<String,ConcurrentMap<ByteSlice,HLock>> CLAIMS=new ConcurrentHashMap<>();
 
     private final byte[] key;
+    private final ByteSlice row;
+    private final ConcurrentMap<ByteSlice,HLock> claims;
 
     private HRegion.RowLock delegate;
     private HRegion region;
+    /*the lock which holds the row's claim for this one: itself, or the lock this thread claimed the row with*/
+    private HLock claim;
+
+    /*the holder of the claim, and the number of times it has claimed the row. Guarded by this*/
+    private Thread owner;
+    private int holds;
 
     @SuppressFBWarnings(value = "EI_EXPOSE_REP2",justification = "Intentional")
     public HLock(HRegion region,byte[] key){
         this.key = key;
         this.region = region;
+        this.row = ByteSlice.wrap(key);
+        this.claims = claims(region.getRegionInfo().getRegionNameAsString());
+    }
+
+    /**
+     * Forget the rows claimed in a region which is closing.
+     */
+    public static void regionClosed(String regionName){
+        CLAIMS.remove(regionName);
     }
 
     @Override public void lock(){
@@ -49,45 +81,120 @@ public class HLock implements Lock{
     }
 
     /**
-     *
-     * Try Lock Implementation
+     * Try the lock, without waiting for another holder of the row.
      *
      * // HBase as part of its 1.1.x release modified the locks to
      * // throw IOException when it cannot be acquired vs. returning null
      *
-     * @return
+     * @return true if the lock was acquired
      */
     @Override
     public boolean tryLock(){
         try{
-            delegate = region.getRowLock(key); // Null Lock Delegate means not run...
-            return delegate!=null;
-        }catch(IOException e){
+            return claim(0L) && lockRow();
+        }catch(InterruptedException e){
+            //a claim which is not waited for is never interrupted
+            Thread.currentThread().interrupt();
             return false;
         }
     }
 
     /**
+     * Try the lock, waiting up to {@code time} for another holder of the row to release it.
      *
-     * The TimeUnit passed in is not used for HBase Row Locks
-     *
-     * @param time
-     * @param unit
-     * @return
-     * @throws InterruptedException
+     * @return true if the lock was acquired
      */
     @Override
     public boolean tryLock(long time,@Nonnull TimeUnit unit) throws InterruptedException{
-        return tryLock();
+        return claim(unit.toNanos(time)) && lockRow();
     }
 
     @Override
     public void unlock(){
-        if(delegate!=null) delegate.release();
+        if(delegate!=null){
+            delegate.release();
+            delegate=null;
+        }
+        release();
     }
 
     @Override
     public @Nonnull Condition newCondition(){
         throw new UnsupportedOperationException("Cannot support conditions on an HLock");
     }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private static ConcurrentMap<ByteSlice,HLock> claims(String regionName){
+        ConcurrentMap<ByteSlice,HLock> claims=CLAIMS.get(regionName);
+        if(claims==null){
+            claims=new ConcurrentHashMap<>();
+            ConcurrentMap<ByteSlice,HLock> existing=CLAIMS.putIfAbsent(regionName,claims);
+            if(existing!=null)
+                claims=existing;
+        }
+        return claims;
+    }
+
+    private boolean claim(long waitNanos) throws InterruptedException{
+        Thread current=Thread.currentThread();
+        long deadline=System.nanoTime()+waitNanos;
+        while(true){
+            synchronized(this){
+                owner=current;
+                holds=1;
+            }
+            HLock holder=claims.putIfAbsent(row,this);
+            if(holder==null){
+                claim=this;
+                return true;
+            }
+            synchronized(this){
+                owner=null;
+                holds=0;
+            }
+            synchronized(holder){
+                //a holder with no holds has already given up its claim, so try again
+                if(holder.holds>0){
+                    if(holder.owner==current){
+                        holder.holds++;
+                        claim=holder;
+                        return true;
+                    }
+                    long remaining=deadline-System.nanoTime();
+                    if(remaining<=0)
+                        return false;
+                    TimeUnit.NANOSECONDS.timedWait(holder,remaining);
+                }
+            }
+        }
+    }
+
+    private boolean lockRow(){
+        boolean locked=false;
+        try{
+            //no other claim on the row is held, so this only waits for writes which go around Splice
+            delegate = region.getRowLock(key); // Null Lock Delegate means not run...
+            locked = delegate!=null;
+        }catch(IOException e){
+            locked = false;
+        }finally{
+            if(!locked)
+                release();
+        }
+        return locked;
+    }
+
+    private void release(){
+        HLock holder=claim;
+        if(holder==null) return;
+        claim=null;
+        synchronized(holder){
+            if(--holder.holds==0){
+                holder.owner=null;
+                claims.remove(row,holder);
+                holder.notifyAll();
+            }
+        }
+    }
 }
@@ -28,15 +28,24 @@ import com.splicemachine.si.impl.region.RegionTxnStore;
 import com.splicemachine.si.impl.region.TransactionResolver;
 import com.splicemachine.si.impl.store.TestingTimestampSource;
 import com.splicemachine.si.impl.store.TestingTxnStore;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.client.Mutation;
 import org.apache.hadoop.hbase.regionserver.HRegion;
+import org.apache.hadoop.hbase.regionserver.OperationStatus;
 import org.junit.Assert;
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 /**
  * @author Scott Fines
@@ -322,6 +331,35 @@ public class RegionTxnStoreTest{
         Assert.assertEquals("Incorrect length!",0,activeTxnIds.length);
     }
 
+    @Test
+    public void testFailedCompletionsAreReportedOnTheirOwn() throws Exception{
+        HRegion region=mock(HRegion.class);
+        final List<Integer> batchSizes=new ArrayList<>();
+        when(region.batchMutate(any(Mutation[].class))).thenAnswer(new Answer<OperationStatus[]>(){
+            @Override
+            public OperationStatus[] answer(InvocationOnMock invocation) throws Throwable{
+                Mutation[] batch=(Mutation[])invocation.getArguments()[0];
+                batchSizes.add(batch.length);
+                if(batchSizes.size()==1){
+                    //the first commit fails, and the rollback is not run
+                    return new OperationStatus[]{
+                            new OperationStatus(HConstants.OperationStatusCode.FAILURE,"failed"),
+                            OperationStatus.SUCCESS,
+                            OperationStatus.NOT_RUN};
+                }
+                return new OperationStatus[]{OperationStatus.SUCCESS};
+            }
+        });
+        RegionTxnStore store=new RegionTxnStore(region,txnSupplier,getTransactionResolver(),Long.MAX_VALUE,clock);
+
+        IOException[] errors=store.recordCompletions(new long[]{1,2},2,3l,new long[]{4},1);
+        Assert.assertEquals("Only the row which was not run should be retried!",2,batchSizes.size());
+        Assert.assertEquals("Only the row which was not run should be retried!",1,(int)batchSizes.get(1));
+        Assert.assertNotNull("Failed commit was not reported!",errors[0]);
+        Assert.assertNull("Written commit was reported as failed!",errors[1]);
+        Assert.assertNull("Retried rollback was reported as failed!",errors[2]);
+    }
+
     protected TransactionResolver getTransactionResolver(){
         TransactionResolver resolver=mock(TransactionResolver.class);
         doNothing().when(resolver).resolveGlobalCommitTimestamp(any(TxnPartition.class),any(TxnMessage.Txn.class));
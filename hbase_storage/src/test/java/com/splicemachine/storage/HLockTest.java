@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.storage;
+
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.regionserver.HRegion;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class HLockTest{
+    private static final String REGION_NAME="HLockTest";
+    private static final byte[] KEY={1,2,3};
+
+    private HRegion region;
+
+    @Before
+    public void setUp() throws Exception{
+        HRegionInfo regionInfo=mock(HRegionInfo.class);
+        when(regionInfo.getRegionNameAsString()).thenReturn(REGION_NAME);
+        region=mock(HRegion.class);
+        when(region.getRegionInfo()).thenReturn(regionInfo);
+        when(region.getRowLock(any(byte[].class))).thenReturn(mock(HRegion.RowLock.class));
+    }
+
+    @After
+    public void tearDown(){
+        HLock.regionClosed(REGION_NAME);
+    }
+
+    @Test(timeout=10000)
+    public void testTryLockDoesNotWaitForAnotherHolder() throws Exception{
+        CountDownLatch release=new CountDownLatch(1);
+        Thread holder=holdInAnotherThread(release);
+
+        HLock lock=new HLock(region,KEY.clone());
+        Assert.assertFalse("Locked a row held by another thread!",lock.tryLock());
+        Assert.assertTrue("Could not lock a different row!",new HLock(region,new byte[]{4}).tryLock());
+
+        release.countDown();
+        holder.join();
+        Assert.assertTrue("Could not lock a released row!",lock.tryLock());
+        lock.unlock();
+    }
+
+    @Test(timeout=10000)
+    public void testTimedTryLockWaitsForRelease() throws Exception{
+        CountDownLatch release=new CountDownLatch(1);
+        Thread holder=holdInAnotherThread(release);
+
+        HLock lock=new HLock(region,KEY);
+        long start=System.nanoTime();
+        Assert.assertFalse("Locked a row held by another thread!",lock.tryLock(50,TimeUnit.MILLISECONDS));
+        Assert.assertTrue("Waited too long for a held row!",System.nanoTime()-start<TimeUnit.SECONDS.toNanos(5));
+
+        release.countDown();
+        Assert.assertTrue("Did not wait for a row to be released!",lock.tryLock(5,TimeUnit.SECONDS));
+        lock.unlock();
+        holder.join();
+    }
+
+    @Test(timeout=10000)
+    public void testRowIsReentrantForItsHolder() throws Exception{
+        HLock first=new HLock(region,KEY);
+        HLock second=new HLock(region,KEY.clone());
+        Assert.assertTrue("Could not lock a free row!",first.tryLock());
+        Assert.assertTrue("Could not lock a row this thread holds!",second.tryLock());
+
+        first.unlock();
+        Assert.assertFalse("Row released while this thread still holds it!",tryInAnotherThread());
+        second.unlock();
+        Assert.assertTrue("Row not released!",tryInAnotherThread());
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private Thread holdInAnotherThread(final CountDownLatch release) throws InterruptedException{
+        final CountDownLatch locked=new CountDownLatch(1);
+        Thread holder=new Thread(new Runnable(){
+            @Override
+            public void run(){
+                HLock lock=new HLock(region,KEY.clone());
+                Assert.assertTrue(lock.tryLock());
+                locked.countDown();
+                try{
+                    release.await();
+                }catch(InterruptedException ignored){
+                    Thread.currentThread().interrupt();
+                }finally{
+                    lock.unlock();
+                }
+            }
+        });
+        holder.start();
+        locked.await();
+        return holder;
+    }
+
+    private boolean tryInAnotherThread() throws InterruptedException{
+        final boolean[] acquired=new boolean[1];
+        Thread other=new Thread(new Runnable(){
+            @Override
+            public void run(){
+                HLock lock=new HLock(region,KEY.clone());
+                acquired[0]=lock.tryLock();
+                if(acquired[0])
+                    lock.unlock();
+            }
+        });
+        other.start();
+        other.join();
+        return acquired[0];
+    }
+}
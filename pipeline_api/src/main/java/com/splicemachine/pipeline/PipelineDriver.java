@@ -34,6 +34,7 @@ import com.splicemachine.pipeline.api.WritePipelineFactory;
 import com.splicemachine.pipeline.client.WriteCoordinator;
 import com.splicemachine.pipeline.contextfactory.ContextFactoryDriver;
 import com.splicemachine.pipeline.contextfactory.ContextFactoryLoader;
+import com.splicemachine.pipeline.traffic.AdaptiveWriteControl;
 import com.splicemachine.pipeline.traffic.SpliceWriteControl;
 import com.splicemachine.pipeline.traffic.SynchronousWriteControl;
 import com.splicemachine.pipeline.utils.PipelineCompressor;
@@ -92,13 +93,17 @@ public class PipelineDriver{
         int maxIndependentWrites = config.getMaxIndependentWrites();
         int maxDependentWrites = config.getMaxDependentWrites();
 
-        this.writeControl= new SynchronousWriteControl(ipcThreads/2,ipcThreads/2,maxDependentWrites,maxIndependentWrites);
+        if(config.getAdaptiveWriteControl())
+            this.writeControl= new AdaptiveWriteControl(ipcThreads/2,ipcThreads/2,maxDependentWrites,maxIndependentWrites);
+        else
+            this.writeControl= new SynchronousWriteControl(ipcThreads/2,ipcThreads/2,maxDependentWrites,maxIndependentWrites);
         this.pipelineWriter = new PipelineWriter(pef, writePipelineFactory,writeControl,pipelineMeter);
         channelFactory.setWriter(pipelineWriter);
         channelFactory.setPipeline(writePipelineFactory);
         try{
             this.writeCoordinator=WriteCoordinator.create(config,channelFactory,pef,partitionFactory,clock);
             pipelineWriter.setWriteCoordinator(writeCoordinator);
+            writeCoordinator.setWriteControl(writeControl);
         }catch(IOException e){
             throw new RuntimeException(e);
         }
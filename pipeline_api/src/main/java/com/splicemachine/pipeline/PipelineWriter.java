@@ -112,7 +112,10 @@ public class PipelineWriter{
             return new BulkWritesResult(result);
         }
         try {
-            return performWrite(bulkWrites,bws,result,indexWriteBufferFactory);
+            long start = System.nanoTime();
+            BulkWritesResult writesResult = performWrite(bulkWrites,bws,result,indexWriteBufferFactory);
+            writeControl.recordWriteLatency(status,numKVPairs,System.nanoTime()-start);
+            return writesResult;
         } finally {
             switch (status) {
                 case REJECTED:
@@ -44,4 +44,21 @@ public interface WriteCoordinatorStatus {
     void setMaxFlushesPerRegion(int newMaxFlushesPerRegion);
 
     long getSynchronousFlushCount();
+
+    /**
+     * @return the current limit on the number of rows which this server writes at once to tables with indexes
+     * (or 0 if this process doesn't serve writes). The limit adapts to the latency of those writes unless
+     * adaptive write control is disabled.
+     */
+    int getDependentWriteLimit();
+
+    /**
+     * @return the current limit on the number of rows which this server writes at once to tables without
+     * indexes (or 0 if this process doesn't serve writes).
+     */
+    int getIndependentWriteLimit();
+
+    int getDependentWritesInFlight();
+
+    int getIndependentWritesInFlight();
 }
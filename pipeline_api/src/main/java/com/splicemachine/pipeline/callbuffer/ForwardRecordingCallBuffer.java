@@ -14,6 +14,7 @@
 
 package com.splicemachine.pipeline.callbuffer;
 
+import com.splicemachine.metrics.LatencyView;
 import com.splicemachine.pipeline.api.WriteStats;
 import com.splicemachine.pipeline.config.WriteConfiguration;
 import com.splicemachine.si.api.txn.TxnView;
@@ -95,6 +96,11 @@ public class ForwardRecordingCallBuffer<E> implements RecordingCallBuffer<E>{
         return delegate.getWriteStats();
     }
 
+    @Override
+    public LatencyView getFlushLatency(){
+        return delegate.getFlushLatency();
+    }
+
     @Override
     public PreFlushHook getPreFlushHook(){
         return delegate.getPreFlushHook();
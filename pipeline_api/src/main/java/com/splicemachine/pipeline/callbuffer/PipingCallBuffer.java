@@ -16,6 +16,8 @@ package com.splicemachine.pipeline.callbuffer;
 
 import com.splicemachine.access.util.ByteComparisons;
 import com.splicemachine.kvpair.KVPair;
+import com.splicemachine.metrics.LatencyHistogram;
+import com.splicemachine.metrics.LatencyView;
 import com.splicemachine.metrics.MetricFactory;
 import com.splicemachine.metrics.Metrics;
 import com.splicemachine.pipeline.api.*;
@@ -38,7 +40,10 @@ import java.util.*;
  * the write belongs to.  These "pre-mapped pipes" are incorporated into ???
  *
  * This implementation obeys any per-region bounds set in the passed in
- * {@link BufferConfiguration} entity.
+ * {@link BufferConfiguration} entity. Flushes are sent asynchronously, with up to
+ * {@link BufferConfiguration#getMaxFlushesPerRegion()} in flight to each region server. When the buffer is full,
+ * it flushes the largest buffer whose region server can accept another flush, and only waits (applying
+ * backpressure to the caller) when every region server it has writes for already has that many flushes in flight.
  *
  * This class is <em>not</em> Thread-safe. Its use should be restricted to a
  * single thread. If that is not possible, then external synchronization is
@@ -68,6 +73,7 @@ public class PipingCallBuffer implements RecordingCallBuffer<KVPair>, Rebuildabl
     private long totalBytesAdded = 0l;
     private long totalFlushes = 0l;
     private final MergingWriteStats writeStats;
+    private final LatencyHistogram flushLatency = new LatencyHistogram();
     private volatile boolean rebuildBuffer = true; // rebuild from region cache
     private final WriteConfiguration writeConfiguration;
     private long currentHeapSize;
@@ -131,12 +137,27 @@ public class PipingCallBuffer implements RecordingCallBuffer<KVPair>, Rebuildabl
     private void flushLargestBuffer() throws Exception {
         int maxSize = 0;
         ServerCallBuffer bufferToFlush = null;
+        int largestSize = 0;
+        ServerCallBuffer largestBuffer = null;
         for (ServerCallBuffer buffer : serverNameToRegionServerCBMap.values()) {
-            if (buffer.getHeapSize() > maxSize) {
+            int heapSize = buffer.getHeapSize();
+            if (heapSize > largestSize) {
+                largestBuffer = buffer;
+                largestSize = heapSize;
+            }
+            if (heapSize > maxSize && buffer.canFlushWithoutWaiting()) {
                 bufferToFlush = buffer;
-                maxSize = buffer.getHeapSize();
+                maxSize = heapSize;
             }
         }
+        if (bufferToFlush == null) {
+            /*
+             * Every region server we have writes for already has as many flushes in flight as we allow, so
+             * we have to wait for one of them. Flushing the largest buffer waits for its oldest flush.
+             */
+            bufferToFlush = largestBuffer;
+            maxSize = largestSize;
+        }
         assert bufferToFlush!=null;
         currentHeapSize-=maxSize;
         currentKVPairSize-=bufferToFlush.getKVPairSize();
@@ -204,7 +225,9 @@ public class PipingCallBuffer implements RecordingCallBuffer<KVPair>, Rebuildabl
                         writeConfiguration,
                         server,
                         (writer != null ? new RegulatedWriter(writer) : null),
-                        writeStats);
+                        writeStats,
+                        (bufferConfiguration != null ? bufferConfiguration.getMaxFlushesPerRegion() : Integer.MAX_VALUE),
+                        flushLatency);
                 serverNameToRegionServerCBMap.put(server, regionServerCB);
             }
 
@@ -327,6 +350,7 @@ public class PipingCallBuffer implements RecordingCallBuffer<KVPair>, Rebuildabl
     @Override public double getAverageSizePerFlush() { return ((double) totalBytesAdded)/getTotalFlushes(); }
     @Override public CallBuffer<KVPair> unwrap() { return this; }
     @Override public WriteStats getWriteStats() { return writeStats; }
+    @Override public LatencyView getFlushLatency() { return flushLatency; }
 
     public List<BulkWrites> getBulkWrites() throws Exception {
         rebuildIfNecessary();
@@ -15,6 +15,7 @@
 package com.splicemachine.pipeline.callbuffer;
 
 
+import com.splicemachine.metrics.LatencyView;
 import com.splicemachine.pipeline.api.WriteStats;
 import com.splicemachine.pipeline.callbuffer.CallBuffer;
 
@@ -38,4 +39,9 @@ public interface RecordingCallBuffer<E> extends CallBuffer<E>{
     CallBuffer<E> unwrap();
 
 	WriteStats getWriteStats();
+
+    /**
+     * @return the distribution of the time (in nanoseconds) from sending each flush to its completion
+     */
+    LatencyView getFlushLatency();
 }
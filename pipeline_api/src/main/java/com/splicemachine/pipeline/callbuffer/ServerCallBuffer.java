@@ -15,6 +15,7 @@
 package com.splicemachine.pipeline.callbuffer;
 
 import com.splicemachine.access.util.ByteComparisons;
+import com.splicemachine.metrics.LatencyHistogram;
 import com.splicemachine.pipeline.api.*;
 import com.splicemachine.pipeline.client.BulkWrite;
 import com.splicemachine.pipeline.client.BulkWrites;
@@ -27,9 +28,12 @@ import com.splicemachine.utils.Pair;
 import com.splicemachine.utils.SpliceLogUtils;
 import org.apache.log4j.Logger;
 import org.spark_project.guava.collect.Lists;
+import org.spark_project.guava.util.concurrent.ListenableFuture;
+import org.spark_project.guava.util.concurrent.MoreExecutors;
 
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 
 /**
@@ -38,6 +42,9 @@ import java.util.concurrent.Future;
  * This means the entries that are buffered by this class are pairs consisting of the starting row key and the call buffer for the region.
  * <em>Please Note:</em> This data structure also contains a table name.  So there will be multiple instances of this class
  * for each region server, since each table and region server combination will have an instance of this class.
+ * <p>
+ * Flushes are sent asynchronously, and up to a fixed number of them may be in flight to the region server at once.
+ * Once that many are in flight, a further flush waits for the oldest of them to finish.
  */
 class ServerCallBuffer implements CallBuffer<Pair<byte[], PartitionBuffer>> {
 
@@ -55,7 +62,9 @@ class ServerCallBuffer implements CallBuffer<Pair<byte[], PartitionBuffer>> {
      * If you know that information, you can get the call buffer to the region.
      */
     private final NavigableMap<byte[], PartitionBuffer> buffers;
-    private final List<Future<WriteStats>> outstandingRequests = Lists.newArrayList();
+    private final List<Flush> outstandingRequests = Lists.newArrayList();
+    private final int maxFlushesInFlight;
+    private final LatencyHistogram flushLatency;
     private final MergingWriteStats writeStats;
     private final WriteConfiguration writeConfiguration;
     private final byte[] tableName;
@@ -67,7 +76,9 @@ class ServerCallBuffer implements CallBuffer<Pair<byte[], PartitionBuffer>> {
                             WriteConfiguration writeConfiguration,
                             PartitionServer server,
                             Writer writer,
-                            final MergingWriteStats writeStats) {
+                            final MergingWriteStats writeStats,
+                            int maxFlushesInFlight,
+                            LatencyHistogram flushLatency) {
         this.txn = txn;
         this.writeConfiguration = writeConfiguration;
         this.tableName = tableName;
@@ -75,6 +86,8 @@ class ServerCallBuffer implements CallBuffer<Pair<byte[], PartitionBuffer>> {
         this.server= server;
         this.writer = writer;
         this.buffers = new TreeMap<>(ByteComparisons.comparator());
+        this.maxFlushesInFlight = Math.max(1,maxFlushesInFlight);
+        this.flushLatency = flushLatency;
     }
 
     /**
@@ -103,7 +116,8 @@ class ServerCallBuffer implements CallBuffer<Pair<byte[], PartitionBuffer>> {
     }
 
     /**
-     * Send buffered BulkWrites and check for (but do not wait for) writes in progress.
+     * Send buffered BulkWrites and check for (but do not wait for) writes in progress, unless the maximum
+     * number of flushes are already in flight, in which case wait for the oldest of them first.
      */
     @Override
     public void flushBuffer() throws Exception {
@@ -114,21 +128,30 @@ class ServerCallBuffer implements CallBuffer<Pair<byte[], PartitionBuffer>> {
         flushBufferCheckPrevious();
         BulkWrites bulkWrites = getBulkWrites();
         if (bulkWrites!=null && bulkWrites.numEntries() != 0) {
-            Future<WriteStats> write = writer.write(tableName, bulkWrites, writeConfiguration);
-            outstandingRequests.add(write);
+            while (outstandingRequests.size() >= maxFlushesInFlight) {
+                finishFlush(outstandingRequests.remove(0));
+            }
+            outstandingRequests.add(submit(bulkWrites));
         }
     }
 
+    /**
+     * @return true if a flush can be sent to this server without waiting for one which is already in flight
+     */
+    public boolean canFlushWithoutWaiting() throws Exception {
+        flushBufferCheckPrevious();
+        return outstandingRequests.size() < maxFlushesInFlight;
+    }
+
     @Override
     public void flushBufferAndWait() throws Exception {
         flushBuffer();
         //make sure all outstanding buffers complete before returning
-        Iterator<Future<WriteStats>> futureIterator = outstandingRequests.iterator();
-        while (futureIterator.hasNext()) {
-            Future<WriteStats> future = futureIterator.next();
-            futureIterator.remove();
-            WriteStats retStats = future.get();//check for errors
-            writeStats.merge(retStats);
+        Iterator<Flush> flushIterator = outstandingRequests.iterator();
+        while (flushIterator.hasNext()) {
+            Flush flush = flushIterator.next();
+            flushIterator.remove();
+            finishFlush(flush);
         }
     }
 
@@ -160,7 +183,7 @@ class ServerCallBuffer implements CallBuffer<Pair<byte[], PartitionBuffer>> {
         }
         if(bws.size()==0) return null;
         else
-            return new BulkWrites(bws, this.txn, this.buffers.lastKey());
+            return new BulkWrites(bws, this.txn, this.buffers.lastKey(), this.server);
     }
 
     public int getHeapSize() {
@@ -188,14 +211,49 @@ class ServerCallBuffer implements CallBuffer<Pair<byte[], PartitionBuffer>> {
     /* ****************************************************************************************************************/
     /*private helper methods*/
     private void flushBufferCheckPrevious() throws Exception {
-        Iterator<Future<WriteStats>> futureIterator = outstandingRequests.iterator();
-        while (futureIterator.hasNext()) {
-            Future<WriteStats> future = futureIterator.next();
-            if (future.isDone()) {
-                futureIterator.remove();
-                WriteStats retStats = future.get();//check for errors
-                writeStats.merge(retStats);
+        Iterator<Flush> flushIterator = outstandingRequests.iterator();
+        while (flushIterator.hasNext()) {
+            Flush flush = flushIterator.next();
+            if (flush.future.isDone()) {
+                flushIterator.remove();
+                finishFlush(flush);
             }
         }
     }
+
+    private Flush submit(BulkWrites bulkWrites) throws ExecutionException {
+        final long start = System.nanoTime();
+        Future<WriteStats> write = writer.write(tableName, bulkWrites, writeConfiguration);
+        boolean timed = write instanceof ListenableFuture;
+        if (timed) {
+            //time the flush when it finishes, rather than when we get around to checking on it
+            ((ListenableFuture<WriteStats>) write).addListener(new Runnable() {
+                @Override
+                public void run() {
+                    flushLatency.record(System.nanoTime() - start);
+                }
+            }, MoreExecutors.sameThreadExecutor());
+        }
+        return new Flush(write, start, timed);
+    }
+
+    private void finishFlush(Flush flush) throws Exception {
+        WriteStats retStats = flush.future.get();//check for errors
+        if (!flush.timed)
+            flushLatency.record(System.nanoTime() - flush.start);
+        writeStats.merge(retStats);
+    }
+
+    private static class Flush {
+        private final Future<WriteStats> future;
+        private final long start;
+        /*true if the flush is timed when it finishes, rather than when it is collected*/
+        private final boolean timed;
+
+        Flush(Future<WriteStats> future, long start, boolean timed) {
+            this.future = future;
+            this.start = start;
+            this.timed = timed;
+        }
+    }
 }
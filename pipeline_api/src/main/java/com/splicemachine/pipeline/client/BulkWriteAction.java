@@ -226,7 +226,8 @@ public class BulkWriteAction implements Callable<WriteStats>{
              * simply because we were told to wait a bit by the write pipeline (i.e. we were rejected).
              */
             if(ctx.shouldSleep()){
-                clock.sleep(PipelineUtils.getPauseTime(ctx.attemptCount,10),TimeUnit.MILLISECONDS);
+                long pause=ctx.tooBusy?PipelineUtils.getBusyPauseTime(ctx.attemptCount,10):PipelineUtils.getPauseTime(ctx.attemptCount,10);
+                clock.sleep(pause,TimeUnit.MILLISECONDS);
             }if(ctx.directRetry)
                 writesToPerform.add(nextWrite);
             else if(ctx.nextWriteSet!=null &&ctx.nextWriteSet.size()>0){
@@ -288,6 +289,7 @@ public class BulkWriteAction implements Callable<WriteStats>{
 
                         ctx.addBulkWrites(currentBulkWrite.getMutations());
                         ctx.refreshCache = ctx.refreshCache || bulkWriteResult.getGlobalResult().refreshCache();
+                        ctx.tooBusy = ctx.tooBusy || bulkWriteResult.getGlobalResult().getCode()==Code.PIPELINE_TOO_BUSY;
                         ctx.sleep=true; //always sleep due to rejection, even if we don't need to refresh the cache
                         break;
                     case PARTIAL:
@@ -363,6 +365,7 @@ public class BulkWriteAction implements Callable<WriteStats>{
                     SpliceLogUtils.debug(RETRY_LOG,"Retrying write after receiving RegionTooBusyException: id=%d",id);
 
                 regionTooBusy.increment();
+                ctx.tooBusy = true;
                 ctx.sleep = true;
                 ctx.directRetry();
                 return;
@@ -480,6 +483,8 @@ public class BulkWriteAction implements Callable<WriteStats>{
         boolean refreshCache = false;
         boolean sleep = false;
         boolean rejected= false;
+        /*true if the server rejected writes because it was too busy to perform them*/
+        boolean tooBusy = false;
         /*
          * Either directRetrySet !=null or nextWriteSet !=null. Otherwise, it's an error (since nextWriteSet is
          * necessarily a subset of the rows contained in directWriteSet).
@@ -500,6 +505,7 @@ public class BulkWriteAction implements Callable<WriteStats>{
         void reset(){
             refreshCache = false;
             sleep = false;
+            tooBusy = false;
             nextWriteSet = null;
             directRetry = false;
             rejected=false;
@@ -15,6 +15,7 @@
 package com.splicemachine.pipeline.client;
 
 import com.splicemachine.si.api.txn.TxnView;
+import com.splicemachine.storage.PartitionServer;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
 import java.util.ArrayList;
@@ -34,6 +35,11 @@ public class BulkWrites{
      * any region which is present on the destination region server
      */
     private transient byte[] regionKey;
+    /*
+     * the region server which the writes are bound for, if known. Used to coalesce writes
+     * to the same server
+     */
+    private transient PartitionServer server;
 
     public BulkWrites(){
         bulkWrites=new ArrayList<>(0);
@@ -45,9 +51,15 @@ public class BulkWrites{
 
     @SuppressFBWarnings(value = "EI_EXPOSE_REP2",justification = "Intentional")
     public BulkWrites(Collection<BulkWrite> bulkWrites,TxnView txn,byte[] regionKey){
+        this(bulkWrites,txn,regionKey,null);
+    }
+
+    @SuppressFBWarnings(value = "EI_EXPOSE_REP2",justification = "Intentional")
+    public BulkWrites(Collection<BulkWrite> bulkWrites,TxnView txn,byte[] regionKey,PartitionServer server){
         this.bulkWrites=bulkWrites;
         this.txn=txn;
         this.regionKey=regionKey;
+        this.server=server;
     }
 
     @SuppressFBWarnings(value="EI_EXPOSE_REP", justification="Intentional")
@@ -55,6 +67,13 @@ public class BulkWrites{
         return regionKey;
     }
 
+    /**
+     * @return the region server which the writes are bound for, or {@code null} if it isn't known
+     */
+    public PartitionServer getServer(){
+        return server;
+    }
+
     public Collection<BulkWrite> getBulkWrites(){
         return bulkWrites;
     }
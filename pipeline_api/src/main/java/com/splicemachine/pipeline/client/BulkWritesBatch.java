@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.pipeline.client;
+
+import java.util.List;
+
+/**
+ * A number of BulkWrites, usually from different transactions, which are sent to the same region server
+ * in a single network call. The server writes each BulkWrites separately (so that each is admitted and
+ * written under its own transaction), and replies with their results concatenated in the same order.
+ */
+public class BulkWritesBatch{
+    private final List<BulkWrites> bulkWrites;
+
+    public BulkWritesBatch(List<BulkWrites> bulkWrites){
+        this.bulkWrites=bulkWrites;
+    }
+
+    public List<BulkWrites> getBulkWrites(){
+        return bulkWrites;
+    }
+
+    /**
+     * @return the number of rows in all of the BulkWrites in the batch
+     */
+    public int numEntries(){
+        int size=0;
+        for(BulkWrites bws : bulkWrites){
+            size+=bws.numEntries();
+        }
+        return size;
+    }
+
+    @Override
+    public String toString(){
+        return "BulkWritesBatch{"+bulkWrites+"}";
+    }
+}
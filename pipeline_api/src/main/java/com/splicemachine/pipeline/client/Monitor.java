@@ -19,6 +19,7 @@ import java.util.concurrent.atomic.AtomicLong;
 
 import com.splicemachine.pipeline.callbuffer.BufferConfiguration;
 import com.splicemachine.pipeline.api.WriteCoordinatorStatus;
+import com.splicemachine.pipeline.traffic.SpliceWriteControl;
 
 public class Monitor implements WriteCoordinatorStatus,BufferConfiguration{
     public volatile long maxHeapSize;
@@ -28,6 +29,8 @@ public class Monitor implements WriteCoordinatorStatus,BufferConfiguration{
     public AtomicInteger outstandingBuffers = new AtomicInteger(0);
     public volatile long pauseTime;
     public AtomicLong writesRejected = new AtomicLong(0l);
+    /*the control which admits writes to this server, or null if this process doesn't serve writes*/
+    private volatile SpliceWriteControl writeControl;
 
     public Monitor(long maxHeapSize, int maxEntries, int maxRetries,long pauseTime,int maxFlushesPerRegion) {
         this.maxHeapSize = maxHeapSize;
@@ -56,6 +59,32 @@ public class Monitor implements WriteCoordinatorStatus,BufferConfiguration{
         return writesRejected.get();
     }
 
+    public void setWriteControl(SpliceWriteControl writeControl) { this.writeControl = writeControl; }
+
+    @Override
+    public int getDependentWriteLimit() {
+        SpliceWriteControl wc = writeControl;
+        return wc==null? 0 : wc.maxDependentWriteCount();
+    }
+
+    @Override
+    public int getIndependentWriteLimit() {
+        SpliceWriteControl wc = writeControl;
+        return wc==null? 0 : wc.maxIndependentWriteCount();
+    }
+
+    @Override
+    public int getDependentWritesInFlight() {
+        SpliceWriteControl wc = writeControl;
+        return wc==null? 0 : wc.getWriteStatus().getDependentWriteCount();
+    }
+
+    @Override
+    public int getIndependentWritesInFlight() {
+        SpliceWriteControl wc = writeControl;
+        return wc==null? 0 : wc.getWriteStatus().getIndependentWriteCount();
+    }
+
     @Override
     public void writeRejected() {
         this.writesRejected.incrementAndGet();
@@ -32,8 +32,113 @@ import java.util.*;
  *         Date: 1/19/15
  */
 public class PipelineEncoding {
+    /**
+     * The original encoding, which writes every KVPair in full.
+     */
+    public static final int VERSION_1 = 1;
+    /**
+     * The compact encoding, which run-length encodes KVPair types, writes each table name once,
+     * and writes each row key and value as a suffix of the previous one in its BulkWrite.
+     */
+    public static final int VERSION_2 = 2;
+    /**
+     * The version written when none is specified. A peer running an older release can only read
+     * {@link #VERSION_1}, so {@link #VERSION_2} is only written where it is asked for, once every server
+     * of the cluster can read it.
+     */
+    public static final int CURRENT_VERSION = VERSION_1;
+
+    /*
+     * A version 2 message begins with this byte. A version 1 message begins with the encoded
+     * length of the transaction, and the header byte of a non-negative encoded int always has its
+     * high bit set, so the two can't be confused.
+     */
+    private static final byte VERSION_2_MARKER = 0x02;
+    /*
+     * A batch of BulkWrites messages begins with this byte, followed by the number of messages and then
+     * each message in turn (prefixed by its length). A peer which predates batches can't read one.
+     */
+    private static final byte BATCH_MARKER = 0x03;
 
     public static byte[] encode(TxnOperationFactory operationFactory,BulkWrites bulkWrites){
+        return encode(operationFactory,bulkWrites,CURRENT_VERSION);
+    }
+
+    /**
+     * Encode {@code bulkWrites} with the specified version of the encoding. {@link #decode(TxnOperationFactory, byte[])}
+     * reads either version, but a peer running an older release can only read {@link #VERSION_1}.
+     */
+    public static byte[] encode(TxnOperationFactory operationFactory,BulkWrites bulkWrites,int version){
+        switch(version){
+            case VERSION_1:
+                return encodeVersion1(operationFactory,bulkWrites);
+            case VERSION_2:
+                return encodeVersion2(operationFactory,bulkWrites);
+            default:
+                throw new IllegalArgumentException("Unknown pipeline encoding version "+version);
+        }
+    }
+
+    /**
+     * Encode each BulkWrites in {@code batch} with the specified version of the encoding, into a single message
+     * which {@link #decodeBatch(TxnOperationFactory, byte[])} splits back apart.
+     */
+    public static byte[] encodeBatch(TxnOperationFactory operationFactory,BulkWritesBatch batch,int version){
+        List<BulkWrites> bulkWrites = batch.getBulkWrites();
+        List<byte[]> messages = new ArrayList<>(bulkWrites.size());
+        int size = 1+5;
+        for(BulkWrites bws:bulkWrites){
+            byte[] message = encode(operationFactory,bws,version);
+            messages.add(message);
+            size+=message.length+5;
+        }
+        ExpandingEncoder buffer = new ExpandingEncoder(size);
+        buffer.rawEncode(BATCH_MARKER);
+        buffer.encode(messages.size());
+        for(byte[] message:messages){
+            buffer.rawEncode(message);
+        }
+        return buffer.getBuffer();
+    }
+
+    /**
+     * Decode a message written by {@link #encodeBatch(TxnOperationFactory, BulkWritesBatch, int)}. A message holding
+     * a single BulkWrites (of any version) is returned as a batch of one.
+     */
+    public static BulkWritesBatch decodeBatch(TxnOperationFactory operationFactory,byte[] data){
+        if(data.length==0 || data[0]!=BATCH_MARKER)
+            return new BulkWritesBatch(Collections.singletonList(decode(operationFactory,data)));
+        ExpandedDecoder decoder = new ExpandedDecoder(data,1);
+        int numMessages = decoder.decodeInt();
+        List<BulkWrites> bulkWrites = new ArrayList<>(numMessages);
+        for(int i=0;i<numMessages;i++){
+            bulkWrites.add(decode(operationFactory,decoder.rawBytes()));
+        }
+        return new BulkWritesBatch(bulkWrites);
+    }
+
+    public static BulkWrites decode(TxnOperationFactory operationFactory,byte[] data){
+        if(data.length>0 && data[0]==VERSION_2_MARKER)
+            return decodeVersion2(operationFactory,data);
+        ExpandedDecoder decoder = new ExpandedDecoder(data);
+        byte[] txnBytes = decoder.rawBytes();
+        TxnView txn = operationFactory.decode(txnBytes,0,txnBytes.length);
+        int bwSize = decoder.decodeInt();
+        List<String> stringNames = new ArrayList<>(bwSize);
+        for(int i=0;i<bwSize;i++) {
+            stringNames.add(decoder.decodeString());
+        }
+        byte[] flags = new byte[bwSize];
+        for (int i=0; i<bwSize; i++) {
+            flags[i] = decoder.decodeByte();
+        }
+
+        return new BulkWrites(new BulkWriteCol(VERSION_1,flags,data,decoder.currentOffset(),stringNames),txn);
+    }
+
+    /***********************************************************************************************************/
+    /*private helper methods*/
+    private static byte[] encodeVersion1(TxnOperationFactory operationFactory,BulkWrites bulkWrites){
         /*
          * The encoding for a BulkWrites is as follows:
          * Txn (1-N bytes)
@@ -72,7 +177,6 @@ public class PipelineEncoding {
             Collection<KVPair> mutations = bw.getMutations();
             buffer.encode(mutations.size());
             for(KVPair kvPair:mutations){
-                //TODO -sf- use a run-length encoding for type information here?
                 buffer.rawEncode(kvPair.getType().asByte());
                 buffer.rawEncode(kvPair.rowKeySlice());
                 buffer.rawEncode(kvPair.valueSlice());
@@ -81,28 +185,154 @@ public class PipelineEncoding {
         return buffer.getBuffer();
     }
 
+    private static byte[] encodeVersion2(TxnOperationFactory operationFactory,BulkWrites bulkWrites){
+        /*
+         * Version 2 keeps the "Header-body" layout of version 1, but is more compact:
+         * Version marker (1 byte)
+         * Txn (1-N bytes)
+         * # of distinct table names (1-N bytes)
+         * for 1...# of distinct table names:
+         *  encodedStringName
+         * # of BulkWrites (1-N bytes)
+         * for 1...# of BulkWrites:
+         *  index of its table name
+         * for 1...# of BulkWrites:
+         *  flags
+         * for 1...# of BulkWrites:
+         *  # of KVPairs
+         *  # of type runs, then (type, run length) for each run
+         *  total length of the row keys and values (so that the decoder can allocate them at once)
+         *  for 1...# of KVPairs:
+         *   length of the prefix shared with the previous row key, then the rest of the row key
+         *   length of the prefix shared with the previous value, then the rest of the value
+         *
+         * Mutations within a BulkWrite are mostly of the same type, their row keys are usually written
+         * in sorted order, and their values share an entry header and often leading columns, so all three
+         * shrink considerably before the message ever reaches the generic compressor.
+         */
+        byte[] txnBytes = operationFactory.encode(bulkWrites.getTxn());
+
+        int heapSize = bulkWrites.getBufferHeapSize();
+        ExpandingEncoder buffer = new ExpandingEncoder(heapSize+txnBytes.length+1);
+        buffer.rawEncode(VERSION_2_MARKER);
+        buffer.rawEncode(txnBytes);
 
-    public static BulkWrites decode(TxnOperationFactory operationFactory,byte[] data){
-        ExpandedDecoder decoder = new ExpandedDecoder(data);
+        Collection<BulkWrite> bws = bulkWrites.getBulkWrites();
+        Map<String,Integer> nameIndexes = new LinkedHashMap<>();
+        int[] bwNameIndexes = new int[bws.size()];
+        int i=0;
+        for(BulkWrite bw:bws){
+            String name = bw.getEncodedStringName();
+            Integer index = nameIndexes.get(name);
+            if(index==null){
+                index = nameIndexes.size();
+                nameIndexes.put(name,index);
+            }
+            bwNameIndexes[i++] = index;
+        }
+        buffer.encode(nameIndexes.size());
+        for(String name:nameIndexes.keySet()){
+            buffer.encode(name);
+        }
+        buffer.encode(bws.size());
+        for(int nameIndex:bwNameIndexes){
+            buffer.encode(nameIndex);
+        }
+
+        for(BulkWrite bw:bws){
+            buffer.encode(bw.getFlags());
+        }
+
+        for(BulkWrite bw:bws){
+            encodeMutations(buffer,bw.getMutations());
+        }
+        return buffer.getBuffer();
+    }
+
+    private static void encodeMutations(ExpandingEncoder buffer,Collection<KVPair> mutations){
+        buffer.encode(mutations.size());
+
+        int numRuns = 0;
+        KVPair.Type runType = null;
+        int totalLength = 0;
+        for(KVPair kvPair:mutations){
+            if(kvPair.getType()!=runType){
+                runType = kvPair.getType();
+                numRuns++;
+            }
+            totalLength+=kvPair.rowKeySlice().length()+kvPair.valueSlice().length();
+        }
+        buffer.encode(numRuns);
+        runType = null;
+        int runLength = 0;
+        for(KVPair kvPair:mutations){
+            if(kvPair.getType()!=runType){
+                if(runType!=null)
+                    buffer.encode(runLength);
+                runType = kvPair.getType();
+                buffer.rawEncode(runType.asByte());
+                runLength = 0;
+            }
+            runLength++;
+        }
+        if(runType!=null)
+            buffer.encode(runLength);
+
+        buffer.encode(totalLength);
+        ByteSlice previousKey = null;
+        ByteSlice previousValue = null;
+        for(KVPair kvPair:mutations){
+            ByteSlice key = kvPair.rowKeySlice();
+            encodeSuffix(buffer,previousKey,key);
+            previousKey = key;
+
+            ByteSlice value = kvPair.valueSlice();
+            encodeSuffix(buffer,previousValue,value);
+            previousValue = value;
+        }
+    }
+
+    private static void encodeSuffix(ExpandingEncoder buffer,ByteSlice previous,ByteSlice current){
+        int shared = 0;
+        if(previous!=null){
+            int max = Math.min(previous.length(),current.length());
+            byte[] p = previous.array();
+            byte[] c = current.array();
+            int pOff = previous.offset();
+            int cOff = current.offset();
+            while(shared<max && p[pOff+shared]==c[cOff+shared])
+                shared++;
+        }
+        buffer.encode(shared);
+        buffer.rawEncode(current.array(),current.offset()+shared,current.length()-shared);
+    }
+
+    private static BulkWrites decodeVersion2(TxnOperationFactory operationFactory,byte[] data){
+        ExpandedDecoder decoder = new ExpandedDecoder(data,1);
         byte[] txnBytes = decoder.rawBytes();
         TxnView txn = operationFactory.decode(txnBytes,0,txnBytes.length);
+        int numNames = decoder.decodeInt();
+        String[] names = new String[numNames];
+        for(int i=0;i<numNames;i++){
+            names[i] = decoder.decodeString();
+        }
         int bwSize = decoder.decodeInt();
         List<String> stringNames = new ArrayList<>(bwSize);
-        for(int i=0;i<bwSize;i++) {
-            stringNames.add(decoder.decodeString());
+        for(int i=0;i<bwSize;i++){
+            stringNames.add(names[decoder.decodeInt()]);
         }
         byte[] flags = new byte[bwSize];
         for (int i=0; i<bwSize; i++) {
             flags[i] = decoder.decodeByte();
         }
 
-        return new BulkWrites(new BulkWriteCol(flags,data,decoder.currentOffset(),stringNames),txn);
+        return new BulkWrites(new BulkWriteCol(VERSION_2,flags,data,decoder.currentOffset(),stringNames),txn);
     }
 
-
     /***********************************************************************************************************/
     /*private helper classes*/
     private static class BulkWriteCol extends AbstractCollection<BulkWrite>{
+        private final int version;
         private final int kvOffset;
         private final List<String> encodedStringNames;
         private final byte[] flags;
@@ -116,7 +346,8 @@ public class PipelineEncoding {
         private transient ExpandedDecoder decoder;
         private transient int lastIndex = 0;
 
-        public BulkWriteCol(byte[] flags, byte[] buffer,int kvOffset, List<String> encodedStringNames) {
+        public BulkWriteCol(int version,byte[] flags, byte[] buffer,int kvOffset, List<String> encodedStringNames) {
+            this.version = version;
             this.kvOffset = kvOffset;
             this.encodedStringNames = encodedStringNames;
             this.buffer = buffer;
@@ -163,6 +394,14 @@ public class PipelineEncoding {
             public BulkWrite next() {
                 String esN = encodedStrings.next();
                 byte elementFlags = flags[index++];
+                Collection<KVPair> kvPairs = version==VERSION_1? decodeVersion1Mutations() : decodeVersion2Mutations();
+                BulkWrite bulkWrite = new BulkWrite(kvPairs, esN, elementFlags);
+                cache.add(bulkWrite);
+                lastIndex=index;
+                return bulkWrite;
+            }
+
+            private Collection<KVPair> decodeVersion1Mutations(){
                 int size = decoder.decodeInt();
                 Collection<KVPair> kvPairs = new ArrayList<>(size);
                 KVPair template = new KVPair();
@@ -174,12 +413,58 @@ public class PipelineEncoding {
                     decoder.sliceNext(valueSlice);
                     kvPairs.add(template.shallowClone());
                 }
+                return kvPairs;
+            }
 
+            private Collection<KVPair> decodeVersion2Mutations(){
+                int size = decoder.decodeInt();
+                KVPair.Type[] types = new KVPair.Type[size];
+                int numRuns = decoder.decodeInt();
+                int pos = 0;
+                for(int i=0;i<numRuns;i++){
+                    KVPair.Type type = KVPair.Type.decode(decoder.rawByte());
+                    int runLength = decoder.decodeInt();
+                    Arrays.fill(types,pos,pos+runLength,type);
+                    pos+=runLength;
+                }
 
-                BulkWrite bulkWrite = new BulkWrite(kvPairs, esN, elementFlags);
-                cache.add(bulkWrite);
-                lastIndex=index;
-                return bulkWrite;
+                /*
+                 * Row keys and values are rebuilt from their shared prefixes into a single array, which
+                 * the KVPairs are sliced from.
+                 */
+                byte[] data = new byte[decoder.decodeInt()];
+                int dataPos = 0;
+                Collection<KVPair> kvPairs = new ArrayList<>(size);
+                KVPair template = new KVPair();
+                ByteSlice rowKeySlice = template.rowKeySlice();
+                ByteSlice valueSlice = template.valueSlice();
+                ByteSlice suffix = new ByteSlice();
+                int keyOffset = 0, keyLength = 0;
+                int valueOffset = 0, valueLength = 0;
+                for(int i=0;i<size;i++){
+                    template.setType(types[i]);
+
+                    int shared = decoder.decodeInt();
+                    decoder.sliceNext(suffix);
+                    System.arraycopy(data,keyOffset,data,dataPos,shared);
+                    suffix.get(data,dataPos+shared);
+                    keyOffset = dataPos;
+                    keyLength = shared+suffix.length();
+                    rowKeySlice.set(data,keyOffset,keyLength);
+                    dataPos+=keyLength;
+
+                    shared = decoder.decodeInt();
+                    decoder.sliceNext(suffix);
+                    System.arraycopy(data,valueOffset,data,dataPos,shared);
+                    suffix.get(data,dataPos+shared);
+                    valueOffset = dataPos;
+                    valueLength = shared+suffix.length();
+                    valueSlice.set(data,valueOffset,valueLength);
+                    dataPos+=valueLength;
+
+                    kvPairs.add(template.shallowClone());
+                }
+                return kvPairs;
             }
         }
     }
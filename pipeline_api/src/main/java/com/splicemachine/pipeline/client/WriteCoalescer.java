@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.pipeline.client;
+
+import org.spark_project.guava.collect.Iterators;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Coalesces BulkWrites from concurrent writers (usually on behalf of different transactions) which are
+ * bound for the same region server into a single network call.
+ * <p/>
+ * Writes are grouped by destination. The first writer to arrive while no group is being gathered for its
+ * destination becomes the leader: if another group is already on its way to that destination, it waits (up to
+ * the linger time, or until the group holds enough rows) for more writers, then sends the whole group as one
+ * {@link BulkWritesBatch} on their behalf, and splits the results back up. A destination with nothing in flight
+ * is written to immediately, so coalescing costs nothing when there is no concurrency to exploit. At most a
+ * fixed number of groups are in flight to each destination at once; writers beyond that queue up, and are
+ * coalesced while they wait.
+ * <p/>
+ * If the group can't be written, every writer in it receives the error, and retries on its own.
+ */
+@ThreadSafe
+public class WriteCoalescer{
+    /**
+     * Sends a batch of BulkWrites to their destination.
+     */
+    public interface BatchWriter{
+        /**
+         * @return the results of every BulkWrites in the batch, concatenated in the same order
+         */
+        BulkWritesResult write(BulkWritesBatch batch) throws IOException;
+    }
+
+    private final long lingerNanos;
+    private final int maxEntries;
+    private final int maxInFlight;
+    private final ConcurrentMap<Object,Destination> destinations=new ConcurrentHashMap<>();
+
+    /*monitoring fields*/
+    private final AtomicLong batchesWritten=new AtomicLong(0l);
+    private final AtomicLong writesCoalesced=new AtomicLong(0l);
+
+    /**
+     * @param lingerMicros the longest time a leader waits for more writes to its destination
+     * @param maxEntries   the largest number of rows to gather into a single batch
+     * @param maxInFlight  the largest number of batches which may be in flight to a destination at once
+     */
+    public WriteCoalescer(long lingerMicros,int maxEntries,int maxInFlight){
+        assert maxInFlight>0: "At least one batch must be allowed in flight";
+        this.lingerNanos=TimeUnit.MICROSECONDS.toNanos(Math.max(0l,lingerMicros));
+        this.maxEntries=maxEntries;
+        this.maxInFlight=maxInFlight;
+    }
+
+    /**
+     * Write {@code writes} as part of the next batch to be sent to {@code destination}.
+     *
+     * @param destination the region server which the writes are bound for. Destinations must implement
+     *                    equals() and hashCode().
+     * @param writes      the writes to send
+     * @param writer      sends a batch to {@code destination}, if this call ends up leading one
+     * @return the results of {@code writes}
+     * @throws IOException if the batch holding {@code writes} could not be written
+     */
+    public BulkWritesResult write(Object destination,BulkWrites writes,BatchWriter writer) throws IOException{
+        Destination dest=destinations.get(destination);
+        if(dest==null){
+            Destination newDest=new Destination();
+            dest=destinations.putIfAbsent(destination,newDest);
+            if(dest==null) dest=newDest;
+        }
+        Call call=new Call(writes,writer);
+        dest.write(call);
+        if(call.error instanceof IOException)
+            throw (IOException)call.error;
+        else if(call.error instanceof RuntimeException)
+            throw (RuntimeException)call.error;
+        else if(call.error!=null)
+            throw new IOException(call.error);
+        return call.result;
+    }
+
+    /**
+     * @return the number of batches written so far
+     */
+    public long getBatchesWritten(){
+        return batchesWritten.get();
+    }
+
+    /**
+     * @return the number of BulkWrites written so far, over all batches
+     */
+    public long getWritesCoalesced(){
+        return writesCoalesced.get();
+    }
+
+    /* ***************************************************************************************************************/
+    /*private helper classes*/
+
+    private class Destination{
+        private final ReentrantLock lock=new ReentrantLock();
+        private final Condition groupFull=lock.newCondition();
+        private final Condition groupWritten=lock.newCondition();
+        private final ArrayDeque<Call> pending=new ArrayDeque<>();
+        private int pendingEntries;
+        private int inFlight;
+        private boolean gathering;
+
+        void write(Call call){
+            lock.lock();
+            try{
+                pending.add(call);
+                pendingEntries+=call.writes.numEntries();
+                if(pendingEntries>=maxEntries)
+                    groupFull.signal();
+                while(!call.done){
+                    if(call.taken || gathering || inFlight>=maxInFlight){
+                        groupWritten.awaitUninterruptibly();
+                        continue;
+                    }
+                    gathering=true;
+                    Call[] group;
+                    try{
+                        group=nextGroup();
+                    }finally{
+                        gathering=false;
+                    }
+                    inFlight++;
+                    //let the next leader start gathering while this group is written
+                    groupWritten.signalAll();
+                    lock.unlock();
+                    try{
+                        send(group);
+                    }finally{
+                        lock.lock();
+                        inFlight--;
+                        groupWritten.signalAll();
+                    }
+                }
+            }finally{
+                lock.unlock();
+            }
+        }
+
+        private Call[] nextGroup(){
+            long remaining=inFlight>0?lingerNanos:0l;
+            boolean interrupted=false;
+            while(pendingEntries<maxEntries && remaining>0){
+                try{
+                    remaining=groupFull.awaitNanos(remaining);
+                }catch(InterruptedException ie){
+                    interrupted=true;
+                }
+            }
+            if(interrupted)
+                Thread.currentThread().interrupt();
+            List<Call> group=new ArrayList<>();
+            int entries=0;
+            do{
+                Call next=pending.poll();
+                next.taken=true;
+                group.add(next);
+                entries+=next.writes.numEntries();
+            }while(!pending.isEmpty() && entries+pending.peek().writes.numEntries()<=maxEntries);
+            pendingEntries-=entries;
+            return group.toArray(new Call[group.size()]);
+        }
+    }
+
+    private void send(Call[] group){
+        List<BulkWrites> writes=new ArrayList<>(group.length);
+        for(Call call:group){
+            writes.add(call.writes);
+        }
+        Throwable error=null;
+        BulkWritesResult result=null;
+        try{
+            //the first writer's channel reaches the destination as well as any other's
+            result=group[0].writer.write(new BulkWritesBatch(writes));
+            batchesWritten.incrementAndGet();
+            writesCoalesced.addAndGet(group.length);
+        }catch(Throwable t){
+            error=t;
+        }
+        if(result!=null && group.length==1){
+            group[0].result=result;
+        }else if(result!=null){
+            Iterator<BulkWriteResult> results=result.getBulkWriteResults().iterator();
+            for(Call call:group){
+                int numRegions=call.writes.numRegions();
+                List<BulkWriteResult> callResults=new ArrayList<>(numRegions);
+                Iterators.addAll(callResults,Iterators.limit(results,numRegions));
+                if(callResults.size()<numRegions){
+                    error=new IOException("Expected a result for each of "+numRegions+" regions, but only received "+callResults.size());
+                    break;
+                }
+                call.result=new BulkWritesResult(callResults);
+            }
+        }
+        for(Call call:group){
+            call.error=error;
+            call.done=true;
+        }
+    }
+
+    private static class Call{
+        private final BulkWrites writes;
+        private final BatchWriter writer;
+        /*written by the leader before it sets done*/
+        private BulkWritesResult result;
+        private Throwable error;
+        /*guarded by the lock of the destination*/
+        private boolean taken;
+        private volatile boolean done;
+
+        Call(BulkWrites writes,BatchWriter writer){
+            this.writes=writes;
+            this.writer=writer;
+        }
+    }
+}
@@ -40,6 +40,7 @@ import com.splicemachine.pipeline.config.DefaultWriteConfiguration;
 import com.splicemachine.pipeline.config.ForwardingWriteConfiguration;
 import com.splicemachine.pipeline.config.WriteConfiguration;
 import com.splicemachine.pipeline.threadpool.MonitoredThreadPool;
+import com.splicemachine.pipeline.traffic.SpliceWriteControl;
 import com.splicemachine.pipeline.utils.PipelineUtils;
 import com.splicemachine.pipeline.writer.AsyncBucketingWriter;
 import com.splicemachine.pipeline.writer.SynchronousBucketingWriter;
@@ -118,6 +119,13 @@ public class WriteCoordinator {
         writerPool.setMaxThreadCount(count);
     }
 
+    /**
+     * Expose the limits of the control which admits writes to this server through this coordinator's status.
+     */
+    public void setWriteControl(SpliceWriteControl writeControl){
+        monitor.setWriteControl(writeControl);
+    }
+
     public int getMaxAsyncThreads(){
         return writerPool.getMaxThreadCount();
     }
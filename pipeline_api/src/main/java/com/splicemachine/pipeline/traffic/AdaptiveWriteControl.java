@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.pipeline.traffic;
+
+import org.apache.log4j.Logger;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A write control whose limits on the number of dependent and independent rows in flight adapt to the latency
+ * of the writes it admits, instead of being fixed by configuration.
+ * <p>
+ * Every completed write is a sample of the time taken to write a row. For each kind of write, the control keeps
+ * a short-term average of those samples, which follows the current load, and a long-term average, which stands
+ * in for the latency of an unloaded server. While the two stay close, the server has capacity to spare, and the
+ * limit grows by about its square root with each sample (as long as the writes in flight are actually using it).
+ * Once writes begin to queue up behind one another, the short-term latency rises above the long-term latency, and
+ * the limit shrinks in proportion to the ratio between them. Admission is decided by the IPC handler which has
+ * already taken the write off the region server's call queue (in {@link com.splicemachine.pipeline.PipelineWriter}),
+ * so a write beyond the limit has still waited in that queue; it is rejected before any of its rows are applied,
+ * and retried by the client after a pause, so that the handler is freed at once rather than held by a slow write
+ * while the calls behind it wait.
+ * <p>
+ * The limits start at, and never grow past, the configured maximum write counts; they never shrink below a small
+ * fraction of them, so that a burst of slow writes can't starve a server of work. The limits on the number
+ * of writer threads remain fixed, since they protect the IPC handler pool.
+ */
+@ThreadSafe
+public class AdaptiveWriteControl implements SpliceWriteControl{
+    private static final Logger LOG=Logger.getLogger(AdaptiveWriteControl.class);
+    /*the smallest limit, as a fraction of the largest*/
+    private static final int MIN_LIMIT_DIVISOR=64;
+
+    private volatile WriteStatus currStatus=new WriteStatus(0,0,0,0);
+
+    private volatile int maxDependentWriteThreads;
+    private volatile int maxIndependentWriteThreads;
+    private final GradientLimit dependentLimit;
+    private final GradientLimit independentLimit;
+
+    public AdaptiveWriteControl(int maxDependentWriteThreads,
+                                int maxIndependentWriteThreads,int maxDependentWriteCount,int maxIndependentWriteCount){
+        assert (maxDependentWriteThreads>=0 &&
+                maxIndependentWriteThreads>=0 &&
+                maxDependentWriteCount>=0 &&
+                maxIndependentWriteCount>=0);
+        this.maxDependentWriteThreads=maxDependentWriteThreads;
+        this.maxIndependentWriteThreads=maxIndependentWriteThreads;
+        this.dependentLimit=new GradientLimit("dependent",maxDependentWriteCount);
+        this.independentLimit=new GradientLimit("independent",maxIndependentWriteCount);
+    }
+
+    @Override
+    public Status performDependentWrite(int writes){
+        synchronized(this){
+            WriteStatus ws=currStatus;
+            if(ws.dependentWriteThreads>maxDependentWriteThreads ||
+                    ws.dependentWriteCount>dependentLimit.limit()){
+                return Status.REJECTED;
+            }
+
+            currStatus=WriteStatus.incrementDependentWriteStatus(ws,writes);
+            return Status.DEPENDENT;
+        }
+    }
+
+    @Override
+    public boolean finishDependentWrite(int writes){
+        synchronized(this){
+            currStatus=WriteStatus.decrementDependentWriteStatus(currStatus,writes);
+            return true;
+        }
+    }
+
+    @Override
+    public Status performIndependentWrite(int writes){
+        synchronized(this){
+            WriteStatus ws=currStatus;
+            if(ws.independentWriteThreads>maxIndependentWriteThreads
+                    || ws.independentWriteCount>independentLimit.limit()){
+                return performDependentWrite(writes); //attempt to steal
+            }else{
+                currStatus=WriteStatus.incrementIndependentWriteStatus(ws,writes);
+                return Status.INDEPENDENT;
+            }
+        }
+    }
+
+    @Override
+    public boolean finishIndependentWrite(int writes){
+        synchronized(this){
+            currStatus=WriteStatus.decrementIndependentWriteStatus(currStatus,writes);
+            return true;
+        }
+    }
+
+    @Override
+    public void recordWriteLatency(Status status,int writes,long latencyNanos){
+        synchronized(this){
+            switch(status){
+                case DEPENDENT:
+                    dependentLimit.sample(writes,latencyNanos,currStatus.dependentWriteCount);
+                    break;
+                case INDEPENDENT:
+                    independentLimit.sample(writes,latencyNanos,currStatus.independentWriteCount);
+                    break;
+                default:
+                    //rejected writes took no time
+            }
+        }
+    }
+
+    @Override
+    public WriteStatus getWriteStatus(){
+        return currStatus;
+    }
+
+    @Override
+    public int maxDependendentWriteThreads(){
+        return maxDependentWriteThreads;
+    }
+
+    @Override
+    public int maxIndependentWriteThreads(){
+        return maxIndependentWriteThreads;
+    }
+
+    /**
+     * @return the current limit on the number of dependent rows in flight
+     */
+    @Override
+    public int maxDependentWriteCount(){
+        return dependentLimit.limit();
+    }
+
+    /**
+     * @return the current limit on the number of independent rows in flight
+     */
+    @Override
+    public int maxIndependentWriteCount(){
+        return independentLimit.limit();
+    }
+
+    @Override
+    public void setMaxIndependentWriteThreads(int newMaxIndependentWriteThreads){
+        this.maxIndependentWriteThreads=newMaxIndependentWriteThreads;
+    }
+
+    @Override
+    public void setMaxDependentWriteThreads(int newMaxDependentWriteThreads){
+        this.maxDependentWriteThreads=newMaxDependentWriteThreads;
+    }
+
+    /**
+     * Set the largest that the limit on the number of independent rows in flight can grow to.
+     */
+    @Override
+    public void setMaxIndependentWriteCount(int newMaxIndependentWriteCount){
+        synchronized(this){
+            independentLimit.setCeiling(newMaxIndependentWriteCount);
+        }
+    }
+
+    /**
+     * Set the largest that the limit on the number of dependent rows in flight can grow to.
+     */
+    @Override
+    public void setMaxDependentWriteCount(int newMaxDependentWriteCount){
+        synchronized(this){
+            dependentLimit.setCeiling(newMaxDependentWriteCount);
+        }
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper classes*/
+
+    /**
+     * A limit which follows the gradient between the short and long term latency of the writes it admits. Guarded
+     * by the lock of the enclosing control.
+     */
+    private static final class GradientLimit{
+        /*weight of each new sample in the short-term latency*/
+        private static final double SHORT_WEIGHT=0.25d;
+        /*weight of each new sample in the long-term latency, which averages over a few hundred samples*/
+        private static final double LONG_WEIGHT=0.002d;
+        /*how far the short-term latency may rise over the long-term latency before the limit shrinks*/
+        private static final double TOLERANCE=1.5d;
+        /*the most that the limit can shrink by with a single sample*/
+        private static final double MIN_GRADIENT=0.5d;
+        /*how quickly the limit moves towards the value suggested by each sample*/
+        private static final double SMOOTHING=0.2d;
+
+        private final String name;
+        private int ceiling;
+        private int floor;
+        private volatile int limit;
+        private double limitEstimate;
+        private double shortLatency;
+        private double longLatency;
+
+        GradientLimit(String name,int ceiling){
+            this.name=name;
+            setCeiling(ceiling);
+            this.limitEstimate=ceiling;
+            this.limit=ceiling;
+        }
+
+        int limit(){
+            return limit;
+        }
+
+        void setCeiling(int ceiling){
+            this.ceiling=ceiling;
+            this.floor=Math.max(1,ceiling/MIN_LIMIT_DIVISOR);
+            if(limitEstimate>ceiling){
+                limitEstimate=ceiling;
+                limit=ceiling;
+            }
+        }
+
+        void sample(int writes,long latencyNanos,int inFlight){
+            if(writes<=0 || latencyNanos<=0) return;
+            double rowLatency=(double)latencyNanos/writes;
+            if(longLatency==0d){
+                shortLatency=rowLatency;
+                longLatency=rowLatency;
+                return;
+            }
+            shortLatency+=(rowLatency-shortLatency)*SHORT_WEIGHT;
+            longLatency+=(rowLatency-longLatency)*LONG_WEIGHT;
+            if(longLatency>2*shortLatency){
+                //the load has dropped off, so let the baseline catch up with it
+                longLatency=0.95d*longLatency+0.05d*shortLatency;
+            }
+
+            double gradient=Math.max(MIN_GRADIENT,Math.min(1d,TOLERANCE*longLatency/shortLatency));
+            if(gradient>=1d && inFlight<limitEstimate/2){
+                //the limit isn't what's holding the writes back, so there's no evidence that it can grow
+                return;
+            }
+            double newLimit=limitEstimate*gradient+Math.sqrt(limitEstimate);
+            newLimit=limitEstimate*(1-SMOOTHING)+newLimit*SMOOTHING;
+            limitEstimate=Math.max(floor,Math.min(ceiling,newLimit));
+
+            int oldLimit=limit;
+            limit=(int)limitEstimate;
+            if(LOG.isDebugEnabled() && oldLimit!=limit && (oldLimit/1024)!=(limit/1024)){
+                LOG.debug(String.format("Adjusted %s write limit from %d to %d: shortLatency=%.1fns/row, longLatency=%.1fns/row, inFlight=%d",
+                        name,oldLimit,limit,shortLatency,longLatency,inFlight));
+            }
+        }
+    }
+}
@@ -103,6 +103,11 @@ public class AtomicSpliceWriteControl implements SpliceWriteControl{
         }
     }
 
+    @Override
+    public void recordWriteLatency(Status status,int writes,long latencyNanos){
+        //the limits are fixed, so there is nothing to adapt
+    }
+
     @Override
     public WriteStatus getWriteStatus() {
         return writeStatus.get();
@@ -31,6 +31,17 @@ public interface SpliceWriteControl{
 
     boolean finishIndependentWrite(int writes);
 
+    /**
+     * Record how long a write which was admitted with the specified status took, once it's done (but
+     * before it's finished with {@link #finishDependentWrite(int)} or {@link #finishIndependentWrite(int)}).
+     * Controls with fixed limits may ignore it.
+     *
+     * @param status the status the write was admitted with
+     * @param writes the number of rows written
+     * @param latencyNanos the time taken to write them, in nanoseconds
+     */
+    void recordWriteLatency(Status status,int writes,long latencyNanos);
+
     WriteStatus getWriteStatus();
 
     int maxDependendentWriteThreads();
@@ -94,4 +94,17 @@ public class PipelineUtils{
         return normalPause + jitter;
     }
 
+    /**
+     * Get Pause time in millis before retrying a write which a busy server rejected. Unlike
+     * {@link #getPauseTime(int, long)}, up to half of the pause is random, so that writers which
+     * were rejected together don't all come back together and get rejected again.
+     *
+     * @param tries the number of attempts made so far
+     * @param pause the base pause, in millis
+     */
+    public static long getBusyPauseTime(final int tries, final long pause) {
+        long normalPause = getPauseTime(tries, pause);
+        return normalPause - (long)(normalPause * RANDOM.nextFloat() * 0.5f);
+    }
+
 }
\ No newline at end of file
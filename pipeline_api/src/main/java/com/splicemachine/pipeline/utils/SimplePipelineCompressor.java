@@ -18,6 +18,7 @@ import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 import com.splicemachine.pipeline.client.BulkWrites;
+import com.splicemachine.pipeline.client.BulkWritesBatch;
 import com.splicemachine.pipeline.client.PipelineEncoding;
 import com.splicemachine.si.api.data.TxnOperationFactory;
 import com.splicemachine.utils.kryo.KryoPool;
@@ -33,10 +34,20 @@ import java.io.OutputStream;
 public class SimplePipelineCompressor implements PipelineCompressor{
     private final TxnOperationFactory txnOperationFactory;
     private final KryoPool kp;
+    private final int encodingVersion;
 
     public SimplePipelineCompressor(KryoPool kp,TxnOperationFactory txnOperationFactory){
+        this(kp,txnOperationFactory,PipelineEncoding.CURRENT_VERSION);
+    }
+
+    /**
+     * @param encodingVersion the version of {@link PipelineEncoding} to write BulkWrites with. BulkWrites
+     *                        of any version can be read.
+     */
+    public SimplePipelineCompressor(KryoPool kp,TxnOperationFactory txnOperationFactory,int encodingVersion){
         this.txnOperationFactory = txnOperationFactory;
         this.kp = kp;
+        this.encodingVersion = encodingVersion;
     }
 
     @Override
@@ -53,7 +64,9 @@ public class SimplePipelineCompressor implements PipelineCompressor{
     public byte[] compress(Object o) throws IOException{
         if(o instanceof BulkWrites){
             BulkWrites bw = (BulkWrites)o;
-            return PipelineEncoding.encode(txnOperationFactory,bw);
+            return PipelineEncoding.encode(txnOperationFactory,bw,encodingVersion);
+        }else if(o instanceof BulkWritesBatch){
+            return PipelineEncoding.encodeBatch(txnOperationFactory,(BulkWritesBatch)o,encodingVersion);
         }else {
             Output out = new Output(128,-1);
             Kryo kryo = kp.get();
@@ -71,6 +84,8 @@ public class SimplePipelineCompressor implements PipelineCompressor{
     public <T> T decompress(byte[] bytes,Class<T> clazz) throws IOException{
         if(clazz.isAssignableFrom(BulkWrites.class))
             return (T)PipelineEncoding.decode(txnOperationFactory,bytes);
+        else if(clazz==BulkWritesBatch.class)
+            return (T)PipelineEncoding.decodeBatch(txnOperationFactory,bytes);
         else{
             Input input = new Input(bytes);
             Kryo kryo = kp.get();
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.pipeline.callbuffer;
+
+import com.splicemachine.kvpair.KVPair;
+import com.splicemachine.metrics.LatencyHistogram;
+import com.splicemachine.metrics.Metrics;
+import com.splicemachine.pipeline.api.WriteStats;
+import com.splicemachine.pipeline.api.Writer;
+import com.splicemachine.pipeline.client.BulkWrites;
+import com.splicemachine.pipeline.client.MergingWriteStats;
+import com.splicemachine.pipeline.config.WriteConfiguration;
+import com.splicemachine.pipeline.utils.PipelineUtils;
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import com.splicemachine.storage.Partition;
+import com.splicemachine.utils.Pair;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.spark_project.guava.util.concurrent.SettableFuture;
+
+import javax.management.MBeanServer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@Category(ArchitectureIndependent.class)
+public class ServerCallBufferTest{
+    private static final int MAX_IN_FLIGHT=2;
+
+    private PendingWriter writer;
+    private LatencyHistogram flushLatency;
+    private PartitionBuffer partitionBuffer;
+    private ServerCallBuffer buffer;
+
+    @Before
+    public void setUp() throws Exception{
+        Partition partition=mock(Partition.class);
+        when(partition.getName()).thenReturn("region");
+        writer=new PendingWriter();
+        flushLatency=new LatencyHistogram();
+        partitionBuffer=new PartitionBuffer(partition,PipelineUtils.noOpFlushHook,false,false,false);
+        buffer=new ServerCallBuffer(new byte[]{1},null,mock(WriteConfiguration.class),null,writer,
+                new MergingWriteStats(Metrics.noOpMetricFactory()),MAX_IN_FLIGHT,flushLatency);
+        buffer.add(Pair.newPair(new byte[0],partitionBuffer));
+    }
+
+    @Test
+    public void testFlushesAreLimitedPerServer() throws Exception{
+        for(int i=0;i<MAX_IN_FLIGHT;i++){
+            Assert.assertTrue("Pipe should not be full yet!",buffer.canFlushWithoutWaiting());
+            flushRow();
+        }
+        Assert.assertEquals(MAX_IN_FLIGHT,writer.pending.size());
+        Assert.assertFalse("Pipe should be full!",buffer.canFlushWithoutWaiting());
+
+        writer.pending.get(0).set(WriteStats.NOOP_WRITE_STATS);
+        Assert.assertTrue("Completed flush did not free the pipe!",buffer.canFlushWithoutWaiting());
+        Assert.assertEquals("Completed flush was not timed!",1,flushLatency.getCount());
+    }
+
+    @Test
+    public void testFlushWaitsForOldestWhenPipeIsFull() throws Exception{
+        for(int i=0;i<MAX_IN_FLIGHT;i++){
+            flushRow();
+        }
+        ExecutorService executor=Executors.newSingleThreadExecutor();
+        try{
+            Future<Void> blocked=executor.submit(new Callable<Void>(){
+                @Override
+                public Void call() throws Exception{
+                    flushRow();
+                    return null;
+                }
+            });
+            try{
+                blocked.get(100,TimeUnit.MILLISECONDS);
+                Assert.fail("Flush did not wait for a full pipe!");
+            }catch(TimeoutException expected){
+                //the pipe is full, so the flush must wait
+            }
+            //completing the oldest flush frees the pipe
+            writer.pending.get(0).set(WriteStats.NOOP_WRITE_STATS);
+            blocked.get(10,TimeUnit.SECONDS);
+            Assert.assertEquals(MAX_IN_FLIGHT+1,writer.pending.size());
+        }finally{
+            executor.shutdownNow();
+        }
+        for(int i=1;i<writer.pending.size();i++){
+            writer.pending.get(i).set(WriteStats.NOOP_WRITE_STATS);
+        }
+        buffer.flushBufferAndWait();
+        Assert.assertEquals(MAX_IN_FLIGHT+1,flushLatency.getCount());
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+
+    private void flushRow() throws Exception{
+        partitionBuffer.add(new KVPair(new byte[]{1},new byte[]{2}));
+        buffer.flushBuffer();
+    }
+
+    /**
+     * A Writer whose writes don't complete until the test completes them.
+     */
+    private static class PendingWriter implements Writer{
+        private final List<SettableFuture<WriteStats>> pending=new ArrayList<>();
+
+        @Override
+        public synchronized Future<WriteStats> write(byte[] tableName,BulkWrites action,WriteConfiguration writeConfiguration){
+            SettableFuture<WriteStats> future=SettableFuture.create();
+            pending.add(future);
+            return future;
+        }
+
+        @Override public void stopWrites(){ }
+        @Override public void registerJMX(MBeanServer mbs){ }
+    }
+}
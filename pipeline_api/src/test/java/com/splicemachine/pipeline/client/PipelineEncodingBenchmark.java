@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.pipeline.client;
+
+import com.splicemachine.kvpair.KVPair;
+import com.splicemachine.si.api.data.TxnOperationFactory;
+import com.splicemachine.si.api.txn.TxnView;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Measures how many BulkWrites messages per second each version of the pipeline encoding can encode
+ * and decode, for a message of sequentially keyed inserts like those an import or an INSERT...SELECT
+ * produces.
+ * <p>
+ * The size of each encoded message is printed during setup, since that (rather than CPU time) is
+ * usually what matters on the network.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PipelineEncodingBenchmark{
+
+    @Param({"1", "2"})
+    public int version;
+
+    /**
+     * The number of KVPairs in each BulkWrite
+     */
+    @Param({"1000"})
+    public int rowsPerBulkWrite;
+
+    /**
+     * The number of BulkWrites in the message
+     */
+    @Param({"8"})
+    public int bulkWrites;
+
+    private TxnOperationFactory operationFactory;
+    private BulkWrites writes;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp(){
+        TxnView txn = mock(TxnView.class);
+        operationFactory = mock(TxnOperationFactory.class);
+        when(operationFactory.encode(any(TxnView.class))).thenReturn(new byte[]{0x11,0x22,0x33,0x44});
+        when(operationFactory.decode(any(byte[].class),anyInt(),anyInt())).thenReturn(txn);
+
+        Random random = new Random(0);
+        List<BulkWrite> bws = new ArrayList<>(bulkWrites);
+        long rowId = 0L;
+        for(int i=0;i<bulkWrites;i++){
+            List<KVPair> mutations = new ArrayList<>(rowsPerBulkWrite);
+            for(int j=0;j<rowsPerBulkWrite;j++){
+                byte[] key = new byte[9];
+                key[0] = (byte)0xE0;
+                long id = rowId++;
+                for(int b=8;b>0;b--){
+                    key[b] = (byte)id;
+                    id>>>=8;
+                }
+                //an entry header and a couple of constant columns, followed by some varying ones
+                byte[] value = new byte[48];
+                for(int b=0;b<16;b++)
+                    value[b] = (byte)b;
+                for(int b=16;b<value.length;b++)
+                    value[b] = (byte)random.nextInt(64);
+                mutations.add(new KVPair(key,value));
+            }
+            bws.add(new BulkWrite(mutations,"1184"));
+        }
+        writes = new BulkWrites(bws,txn);
+        encoded = PipelineEncoding.encode(operationFactory,writes,version);
+        System.out.printf("%nVersion %d encodes %d KVPairs in %d bytes%n",version,bulkWrites*rowsPerBulkWrite,encoded.length);
+    }
+
+    @Benchmark
+    public byte[] encode(){
+        return PipelineEncoding.encode(operationFactory,writes,version);
+    }
+
+    @Benchmark
+    public void decode(Blackhole blackhole){
+        BulkWrites decoded = PipelineEncoding.decode(operationFactory,encoded);
+        for(BulkWrite bw:decoded.getBulkWrites()){
+            for(KVPair kvPair:bw.getMutations()){
+                blackhole.consume(kvPair);
+            }
+        }
+    }
+
+    public static void main(String... args) throws RunnerException{
+        Options options = new OptionsBuilder()
+                .include(PipelineEncodingBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
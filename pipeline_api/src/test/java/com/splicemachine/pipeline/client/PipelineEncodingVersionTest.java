@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.pipeline.client;
+
+import com.splicemachine.kvpair.KVPair;
+import com.splicemachine.si.api.data.TxnOperationFactory;
+import com.splicemachine.si.api.txn.TxnView;
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@Category(ArchitectureIndependent.class)
+public class PipelineEncodingVersionTest{
+    private static final byte[] TXN_BYTES={0x11,0x22,0x33};
+
+    private TxnOperationFactory operationFactory;
+    private TxnView txn;
+
+    @Before
+    public void setUp() throws Exception{
+        txn=mock(TxnView.class);
+        operationFactory=mock(TxnOperationFactory.class);
+        when(operationFactory.encode(any(TxnView.class))).thenReturn(TXN_BYTES);
+        when(operationFactory.decode(any(byte[].class),anyInt(),anyInt())).thenReturn(txn);
+    }
+
+    @Test
+    public void testRoundTripsBothVersions() throws Exception{
+        Random random=new Random(0);
+        for(int i=0;i<100;i++){
+            List<BulkWrite> bulkWrites=randomBulkWrites(random);
+            BulkWrites writes=new BulkWrites(bulkWrites,txn);
+            for(int version:new int[]{PipelineEncoding.VERSION_1,PipelineEncoding.VERSION_2}){
+                BulkWrites decoded=PipelineEncoding.decode(operationFactory,PipelineEncoding.encode(operationFactory,writes,version));
+                Assert.assertSame("Incorrect txn!",txn,decoded.getTxn());
+                assertMatches("version "+version,bulkWrites,decoded.getBulkWrites());
+                //a second iteration is served from the cache, and must return the same thing
+                assertMatches("version "+version+" (cached)",bulkWrites,decoded.getBulkWrites());
+            }
+        }
+    }
+
+    @Test
+    public void testDefaultEncodingIsCurrentVersion() throws Exception{
+        BulkWrites writes=new BulkWrites(randomBulkWrites(new Random(1)),txn);
+        Assert.assertArrayEquals(PipelineEncoding.encode(operationFactory,writes,PipelineEncoding.CURRENT_VERSION),
+                PipelineEncoding.encode(operationFactory,writes));
+    }
+
+    @Test
+    public void testRepeatedTableNamesAndTypeRuns() throws Exception{
+        List<KVPair> mutations=Arrays.asList(
+                new KVPair(new byte[]{1,2,3},new byte[]{9,9,9},KVPair.Type.INSERT),
+                new KVPair(new byte[]{1,2,4},new byte[]{9,9},KVPair.Type.INSERT),
+                new KVPair(new byte[]{1,2},new byte[0],KVPair.Type.DELETE),
+                new KVPair(new byte[0],new byte[]{9,9,9,9},KVPair.Type.UPSERT),
+                new KVPair(new byte[]{5},new byte[]{8},KVPair.Type.UPSERT));
+        List<BulkWrite> bulkWrites=Arrays.asList(
+                new BulkWrite(mutations,"1184",(byte)1),
+                new BulkWrite(new ArrayList<KVPair>(),"1184",(byte)0),
+                new BulkWrite(mutations,"1568",(byte)3),
+                new BulkWrite(mutations,"1184",(byte)2));
+        BulkWrites decoded=PipelineEncoding.decode(operationFactory,
+                PipelineEncoding.encode(operationFactory,new BulkWrites(bulkWrites,txn),PipelineEncoding.VERSION_2));
+        assertMatches("repeated names",bulkWrites,decoded.getBulkWrites());
+    }
+
+    @Test
+    public void testVersion2IsSmallerForSortedRows() throws Exception{
+        List<KVPair> mutations=new ArrayList<>();
+        for(int i=0;i<1000;i++){
+            byte[] value=new byte[32];
+            Arrays.fill(value,0,16,(byte)7);
+            value[31]=(byte)i;
+            mutations.add(new KVPair(new byte[]{(byte)0xE0,0,0,(byte)(i>>8),(byte)i},value));
+        }
+        BulkWrites writes=new BulkWrites(Arrays.asList(new BulkWrite(mutations,"1184"),new BulkWrite(mutations,"1184")),txn);
+        int v1Size=PipelineEncoding.encode(operationFactory,writes,PipelineEncoding.VERSION_1).length;
+        int v2Size=PipelineEncoding.encode(operationFactory,writes,PipelineEncoding.VERSION_2).length;
+        Assert.assertTrue("Version 2 is not smaller! v1="+v1Size+", v2="+v2Size,v2Size*2<v1Size);
+    }
+
+    @Test
+    public void testBatchRoundTrips() throws Exception{
+        Random random=new Random(2);
+        List<List<BulkWrite>> expected=new ArrayList<>();
+        List<BulkWrites> writes=new ArrayList<>();
+        for(int i=0;i<5;i++){
+            List<BulkWrite> bulkWrites=randomBulkWrites(random);
+            expected.add(bulkWrites);
+            writes.add(new BulkWrites(bulkWrites,txn));
+        }
+        for(int version:new int[]{PipelineEncoding.VERSION_1,PipelineEncoding.VERSION_2}){
+            BulkWritesBatch decoded=PipelineEncoding.decodeBatch(operationFactory,
+                    PipelineEncoding.encodeBatch(operationFactory,new BulkWritesBatch(writes),version));
+            Assert.assertEquals("Incorrect number of BulkWrites!",expected.size(),decoded.getBulkWrites().size());
+            for(int i=0;i<expected.size();i++){
+                assertMatches("version "+version+", message "+i,expected.get(i),decoded.getBulkWrites().get(i).getBulkWrites());
+            }
+        }
+    }
+
+    @Test
+    public void testSingleMessageDecodesAsBatch() throws Exception{
+        List<BulkWrite> bulkWrites=randomBulkWrites(new Random(3));
+        for(int version:new int[]{PipelineEncoding.VERSION_1,PipelineEncoding.VERSION_2}){
+            BulkWritesBatch decoded=PipelineEncoding.decodeBatch(operationFactory,
+                    PipelineEncoding.encode(operationFactory,new BulkWrites(bulkWrites,txn),version));
+            Assert.assertEquals("Incorrect number of BulkWrites!",1,decoded.getBulkWrites().size());
+            assertMatches("version "+version,bulkWrites,decoded.getBulkWrites().get(0).getBulkWrites());
+        }
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testUnknownVersionIsRejected() throws Exception{
+        PipelineEncoding.encode(operationFactory,new BulkWrites(new ArrayList<BulkWrite>(),txn),3);
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+
+    private static List<BulkWrite> randomBulkWrites(Random random){
+        KVPair.Type[] types=KVPair.Type.values();
+        int numBulkWrites=random.nextInt(5);
+        List<BulkWrite> bulkWrites=new ArrayList<>(numBulkWrites);
+        for(int i=0;i<numBulkWrites;i++){
+            int numMutations=random.nextInt(50);
+            List<KVPair> mutations=new ArrayList<>(numMutations);
+            for(int j=0;j<numMutations;j++){
+                byte[] key=new byte[random.nextInt(12)];
+                random.nextBytes(key);
+                if(key.length>0) key[0]=(byte)i;
+                byte[] value=new byte[random.nextInt(24)];
+                random.nextBytes(value);
+                KVPair.Type type=random.nextInt(4)==0?types[random.nextInt(types.length)]:KVPair.Type.INSERT;
+                mutations.add(new KVPair(key,value,type));
+            }
+            bulkWrites.add(new BulkWrite(mutations,Integer.toString(random.nextInt(3)),(byte)random.nextInt(8)));
+        }
+        return bulkWrites;
+    }
+
+    private static void assertMatches(String message,List<BulkWrite> expected,Collection<BulkWrite> actual){
+        Assert.assertEquals(message+": incorrect number of BulkWrites",expected.size(),actual.size());
+        Iterator<BulkWrite> actualIter=actual.iterator();
+        for(BulkWrite e:expected){
+            BulkWrite a=actualIter.next();
+            Assert.assertEquals(message+": incorrect table name",e.getEncodedStringName(),a.getEncodedStringName());
+            Assert.assertEquals(message+": incorrect flags",e.getFlags(),a.getFlags());
+            Assert.assertEquals(message+": incorrect number of KVPairs",e.getMutations().size(),a.getMutations().size());
+            Iterator<KVPair> actualKvs=a.getMutations().iterator();
+            for(KVPair eKv:e.getMutations()){
+                KVPair aKv=actualKvs.next();
+                Assert.assertEquals(message+": KVPair row not correct",eKv.rowKeySlice(),aKv.rowKeySlice());
+                Assert.assertEquals(message+": KVPair value not correct",eKv.valueSlice(),aKv.valueSlice());
+                Assert.assertEquals(message+": KVPair type not correct",eKv.getType(),aKv.getType());
+            }
+        }
+    }
+}
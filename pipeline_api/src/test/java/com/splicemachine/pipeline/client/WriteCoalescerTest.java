@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.pipeline.client;
+
+import com.splicemachine.kvpair.KVPair;
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Category(ArchitectureIndependent.class)
+public class WriteCoalescerTest{
+    private static final Object SERVER="server";
+
+    @Test
+    public void testIdleDestinationIsWrittenImmediately() throws Exception{
+        WriteCoalescer coalescer=new WriteCoalescer(TimeUnit.SECONDS.toMicros(10),1000,4);
+        EchoWriter writer=new EchoWriter();
+        long start=System.nanoTime();
+        BulkWritesResult result=coalescer.write(SERVER,writes("a","b"),writer);
+        Assert.assertTrue("Waited for the linger time!",System.nanoTime()-start<TimeUnit.SECONDS.toNanos(5));
+        assertResults(result,"a","b");
+        Assert.assertEquals(1,coalescer.getBatchesWritten());
+        Assert.assertEquals(1,writer.batches.get());
+    }
+
+    @Test
+    public void testConcurrentWritesAreCoalescedAndSplit() throws Exception{
+        final WriteCoalescer coalescer=new WriteCoalescer(TimeUnit.MILLISECONDS.toMicros(50),1000,1);
+        final CountDownLatch firstWriteStarted=new CountDownLatch(1);
+        final CountDownLatch releaseFirstWrite=new CountDownLatch(1);
+        final EchoWriter writer=new EchoWriter(){
+            @Override
+            public BulkWritesResult write(BulkWritesBatch batch) throws IOException{
+                if(batches.get()==0){
+                    firstWriteStarted.countDown();
+                    try{
+                        releaseFirstWrite.await();
+                    }catch(InterruptedException e){
+                        throw new IOException(e);
+                    }
+                }
+                return super.write(batch);
+            }
+        };
+        ExecutorService executor=Executors.newFixedThreadPool(9);
+        try{
+            Future<BulkWritesResult> first=executor.submit(write(coalescer,writer,"first"));
+            firstWriteStarted.await();
+            //with the first batch in flight, the rest queue up behind it
+            List<Future<BulkWritesResult>> rest=new ArrayList<>();
+            for(int i=0;i<8;i++){
+                rest.add(executor.submit(write(coalescer,writer,"r"+i,"s"+i)));
+            }
+            Thread.sleep(100);
+            releaseFirstWrite.countDown();
+
+            assertResults(first.get(),"first");
+            for(int i=0;i<rest.size();i++){
+                assertResults(rest.get(i).get(),"r"+i,"s"+i);
+            }
+        }finally{
+            executor.shutdownNow();
+        }
+        Assert.assertEquals(9,coalescer.getWritesCoalesced());
+        Assert.assertTrue("Writes were not coalesced! batches="+writer.batches.get(),writer.batches.get()<9);
+    }
+
+    @Test
+    public void testBatchesAreLimitedToMaxEntries() throws Exception{
+        final WriteCoalescer coalescer=new WriteCoalescer(TimeUnit.MILLISECONDS.toMicros(50),2,1);
+        final CountDownLatch firstWriteStarted=new CountDownLatch(1);
+        final CountDownLatch releaseFirstWrite=new CountDownLatch(1);
+        final AtomicInteger largestBatch=new AtomicInteger(0);
+        final EchoWriter writer=new EchoWriter(){
+            @Override
+            public BulkWritesResult write(BulkWritesBatch batch) throws IOException{
+                if(batches.get()==0){
+                    firstWriteStarted.countDown();
+                    try{
+                        releaseFirstWrite.await();
+                    }catch(InterruptedException e){
+                        throw new IOException(e);
+                    }
+                }
+                largestBatch.set(Math.max(largestBatch.get(),batch.numEntries()));
+                return super.write(batch);
+            }
+        };
+        ExecutorService executor=Executors.newFixedThreadPool(7);
+        try{
+            Future<BulkWritesResult> first=executor.submit(write(coalescer,writer,"first"));
+            firstWriteStarted.await();
+            List<Future<BulkWritesResult>> rest=new ArrayList<>();
+            for(int i=0;i<6;i++){
+                rest.add(executor.submit(write(coalescer,writer,"r"+i)));
+            }
+            Thread.sleep(100);
+            releaseFirstWrite.countDown();
+            first.get();
+            for(int i=0;i<rest.size();i++){
+                assertResults(rest.get(i).get(),"r"+i);
+            }
+        }finally{
+            executor.shutdownNow();
+        }
+        Assert.assertTrue("Batch exceeded the maximum entries! largest="+largestBatch.get(),largestBatch.get()<=2);
+    }
+
+    @Test
+    public void testErrorsAreReturnedToEveryWriter() throws Exception{
+        WriteCoalescer coalescer=new WriteCoalescer(0,1000,1);
+        WriteCoalescer.BatchWriter writer=new WriteCoalescer.BatchWriter(){
+            @Override
+            public BulkWritesResult write(BulkWritesBatch batch) throws IOException{
+                throw new IOException("failed");
+            }
+        };
+        try{
+            coalescer.write(SERVER,writes("a"),writer);
+            Assert.fail("Did not receive the error!");
+        }catch(IOException expected){
+            Assert.assertEquals("failed",expected.getMessage());
+        }
+        //the destination is still usable afterwards
+        assertResults(coalescer.write(SERVER,writes("b"),new EchoWriter()),"b");
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+
+    private static BulkWrites writes(String... regions){
+        List<BulkWrite> bulkWrites=new ArrayList<>(regions.length);
+        for(String region:regions){
+            KVPair kvPair=new KVPair(region.getBytes(),new byte[]{1});
+            bulkWrites.add(new BulkWrite(Collections.singletonList(kvPair),region));
+        }
+        return new BulkWrites(bulkWrites,null);
+    }
+
+    private static Callable<BulkWritesResult> write(final WriteCoalescer coalescer,
+                                                    final WriteCoalescer.BatchWriter writer,
+                                                    final String... regions){
+        return new Callable<BulkWritesResult>(){
+            @Override
+            public BulkWritesResult call() throws Exception{
+                return coalescer.write(SERVER,writes(regions),writer);
+            }
+        };
+    }
+
+    private static void assertResults(BulkWritesResult result,String... regions){
+        List<String> actual=new ArrayList<>();
+        for(BulkWriteResult bwr:result.getBulkWriteResults()){
+            actual.add(bwr.getGlobalResult().getErrorMessage());
+        }
+        List<String> expected=new ArrayList<>();
+        Collections.addAll(expected,regions);
+        Assert.assertEquals("Incorrect results!",expected,actual);
+    }
+
+    /**
+     * Replies to each BulkWrite with a result carrying its region name, so that the results can be matched
+     * to the writes they belong to.
+     */
+    private static class EchoWriter implements WriteCoalescer.BatchWriter{
+        final AtomicInteger batches=new AtomicInteger(0);
+
+        @Override
+        public BulkWritesResult write(BulkWritesBatch batch) throws IOException{
+            List<BulkWriteResult> results=new ArrayList<>();
+            for(BulkWrites writes:batch.getBulkWrites()){
+                for(BulkWrite bw:writes.getBulkWrites()){
+                    results.add(new BulkWriteResult(WriteResult.failed(bw.getEncodedStringName())));
+                }
+            }
+            batches.incrementAndGet();
+            return new BulkWritesResult(results);
+        }
+    }
+}
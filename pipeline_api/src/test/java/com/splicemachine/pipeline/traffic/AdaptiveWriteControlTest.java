@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.pipeline.traffic;
+
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category(ArchitectureIndependent.class)
+public class AdaptiveWriteControlTest{
+    private static final int CEILING=10000;
+    private static final int BATCH=500;
+
+    @Test
+    public void testLimitStartsAtConfiguredMaximum() throws Exception{
+        SpliceWriteControl writeControl=new AdaptiveWriteControl(10,10,CEILING,CEILING);
+        Assert.assertEquals(CEILING,writeControl.maxDependentWriteCount());
+        Assert.assertEquals(CEILING,writeControl.maxIndependentWriteCount());
+        //steady latency leaves the limit where it is
+        writeSamples(writeControl,SpliceWriteControl.Status.DEPENDENT,100,1000);
+        Assert.assertEquals(CEILING,writeControl.maxDependentWriteCount());
+    }
+
+    @Test
+    public void testLimitShrinksAsLatencyRisesAndRecovers() throws Exception{
+        SpliceWriteControl writeControl=new AdaptiveWriteControl(10,10,CEILING,CEILING);
+        writeSamples(writeControl,SpliceWriteControl.Status.DEPENDENT,100,1000);
+        writeSamples(writeControl,SpliceWriteControl.Status.DEPENDENT,20,10000);
+        int shrunk=writeControl.maxDependentWriteCount();
+        Assert.assertTrue("Limit did not shrink! limit="+shrunk,shrunk<CEILING/2);
+        Assert.assertTrue("Limit shrank below the floor! limit="+shrunk,shrunk>=CEILING/64);
+        Assert.assertEquals("Independent limit was affected!",CEILING,writeControl.maxIndependentWriteCount());
+
+        writeSamples(writeControl,SpliceWriteControl.Status.DEPENDENT,1000,1000);
+        int recovered=writeControl.maxDependentWriteCount();
+        Assert.assertTrue("Limit did not recover! limit="+recovered,recovered>shrunk);
+    }
+
+    @Test
+    public void testWritesBeyondTheLimitAreRejected() throws Exception{
+        SpliceWriteControl writeControl=new AdaptiveWriteControl(100,100,CEILING,CEILING);
+        writeSamples(writeControl,SpliceWriteControl.Status.DEPENDENT,100,1000);
+        writeSamples(writeControl,SpliceWriteControl.Status.DEPENDENT,40,100000);
+        int limit=writeControl.maxDependentWriteCount();
+
+        int admitted=0;
+        while(writeControl.performDependentWrite(BATCH)==SpliceWriteControl.Status.DEPENDENT){
+            admitted+=BATCH;
+            Assert.assertTrue("Admitted more writes than the ceiling!",admitted<=CEILING+BATCH);
+        }
+        Assert.assertTrue("Admitted more than the limit! limit="+limit+", admitted="+admitted,admitted<=limit+BATCH);
+        Assert.assertEquals(admitted,writeControl.getWriteStatus().getDependentWriteCount());
+    }
+
+    @Test
+    public void testCeilingCapsTheLimit() throws Exception{
+        SpliceWriteControl writeControl=new AdaptiveWriteControl(10,10,CEILING,CEILING);
+        writeControl.setMaxIndependentWriteCount(CEILING/10);
+        Assert.assertEquals(CEILING/10,writeControl.maxIndependentWriteCount());
+        writeSamples(writeControl,SpliceWriteControl.Status.INDEPENDENT,1000,1000);
+        Assert.assertEquals(CEILING/10,writeControl.maxIndependentWriteCount());
+    }
+
+    /**
+     * Write {@code count} batches which keep the writes in flight at the current limit, with each row
+     * taking {@code rowLatencyNanos}.
+     */
+    private static void writeSamples(SpliceWriteControl writeControl,SpliceWriteControl.Status status,int count,long rowLatencyNanos){
+        boolean dependent=status==SpliceWriteControl.Status.DEPENDENT;
+        for(int i=0;i<count;i++){
+            int limit=dependent?writeControl.maxDependentWriteCount():writeControl.maxIndependentWriteCount();
+            int rows=Math.max(1,limit);
+            SpliceWriteControl.Status admitted=dependent?writeControl.performDependentWrite(rows):writeControl.performIndependentWrite(rows);
+            Assert.assertEquals(status,admitted);
+            writeControl.recordWriteLatency(admitted,rows,rowLatencyNanos*rows);
+            if(dependent)
+                writeControl.finishDependentWrite(rows);
+            else
+                writeControl.finishIndependentWrite(rows);
+        }
+    }
+}
@@ -139,6 +139,18 @@ public interface SConfiguration {
 
     int getBulkImportTasksPerRegion();
 
+    boolean getBulkImportColumnar();
+
+    int getPipelineEncodingVersion();
+
+    boolean getAdaptiveWriteControl();
+
+    long getWriteCoalesceLingerMicros();
+
+    int getWriteCoalesceMaxEntries();
+
+    int getWriteCoalesceMaxInFlight();
+
     // SIConfigurations
     int getActiveTransactionCacheSize();
 
@@ -170,6 +182,14 @@ public interface SConfiguration {
 
     long getTransactionKeepAliveInterval();
 
+    int getTransactionGroupCommitMaxBatch();
+
+    long getTransactionGroupCommitWindow();
+
+    int getRowLockStripes();
+
+    long getRowLockMaxWait();
+
     long getTransactionTimeout();
 
     // SQLConfiguration
@@ -189,6 +209,10 @@ public interface SConfiguration {
 
     int getImportMaxQuotedColumnLines();
 
+    int getImportParallelism();
+
+    int getImportChunkSize();
+
     int getIndexBatchSize();
 
     int getIndexLookupBlocks();
@@ -217,6 +241,24 @@ public interface SConfiguration {
 
     int getNestedLoopJoinBatchSize();
 
+    long getBroadcastJoinMaxMemory();
+
+    String getSpillDirectory();
+
+    int getControlScanBatchSize();
+
+    boolean getLazyColumnDecoding();
+
+    int getBroadcastJoinRuntimeFilterMaxKeys();
+
+    long getControlSortMaxMemory();
+
+    long getControlAggregateMaxMemory();
+
+    long getControlDistinctMaxMemory();
+
+    long getControlJoinMaxMemory();
+
     // StatsConfiguration
     double getFallbackNullFraction();
 
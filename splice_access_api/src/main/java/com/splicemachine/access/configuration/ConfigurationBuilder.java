@@ -35,6 +35,10 @@ public class ConfigurationBuilder {
     public int transactionKeepAliveThreads;
     public int transactionLockStripes;
     public long transactionKeepAliveInterval;
+    public int transactionGroupCommitMaxBatch;
+    public long transactionGroupCommitWindow;
+    public int rowLockStripes;
+    public long rowLockMaxWait;
     public long transactionTimeout;
 
     // OperationConfiguration
@@ -98,6 +102,8 @@ public class ConfigurationBuilder {
     public boolean upgradeForced;
     public int batchOnceBatchSize;
     public int importMaxQuotedColumnLines;
+    public int importParallelism;
+    public int importChunkSize;
     public int indexBatchSize;
     public int indexLookupBlocks;
     public int kryoPoolSize;
@@ -117,6 +123,15 @@ public class ConfigurationBuilder {
     public String upgradeForcedFrom;
     public String storageFactoryHome;
     public int nestedLoopJoinBatchSize;
+    public long broadcastJoinMaxMemory;
+    public String spillDirectory;
+    public int controlScanBatchSize;
+    public boolean lazyColumnDecoding;
+    public int broadcastJoinRuntimeFilterMaxKeys;
+    public long controlSortMaxMemory;
+    public long controlAggregateMaxMemory;
+    public long controlDistinctMaxMemory;
+    public long controlJoinMaxMemory;
 
     // PipelineConfiguration
     public int coreWriterThreads;
@@ -141,6 +156,12 @@ public class ConfigurationBuilder {
     public int olapClientRetries;
     public double bulkImportSampleFraction;
     public int bulkImportTasksPerRegion;
+    public boolean bulkImportColumnar;
+    public int pipelineEncodingVersion;
+    public boolean adaptiveWriteControl;
+    public long writeCoalesceLingerMicros;
+    public int writeCoalesceMaxEntries;
+    public int writeCoalesceMaxInFlight;
 
     /**
      * Build the {@link SConfiguration} given the list of subsystem defaults and the configuration source.<br/>
@@ -88,6 +88,10 @@ public class PipelineConfiguration implements ConfigurationDefault {
      * This setting becomes useless once set higher than the maximum number of write threads (splice.writer.maxThreads),
      * as a single region can never allocate more than the maximum total number of write threads.
      *
+     * A write operation flushes all of its buffered writes for a region server at once, so this is enforced as a
+     * limit on the flushes in flight to each region server. The write operation only waits when every region
+     * server which it has writes for has reached the limit.
+     *
      * Defaults to 5
      */
     public static final String WRITE_MAX_FLUSHES_PER_REGION = "splice.writer.maxFlushesPerRegion";
@@ -162,6 +166,68 @@ public class PipelineConfiguration implements ConfigurationDefault {
     public static final String BULK_IMPORT_TASKS_PER_REGION = "splice.bulkImport.tasks.perRegion";
     private static final int DEFAULT_BULK_IMPORT_TASKS_PER_REGION = 3;
 
+    /**
+     * Whether a bulk import which copies a Parquet or ORC external table as it is reads the files' rows
+     * straight into the table's encoding, instead of through the operations of the insert's source. A single
+     * insert can ask for it with the bulkImportColumnar=true hint.
+     *
+     * Defaults to false
+     */
+    public static final String BULK_IMPORT_COLUMNAR = "splice.bulkImport.columnar";
+    private static final boolean DEFAULT_BULK_IMPORT_COLUMNAR = false;
+
+    /**
+     * The version of the encoding with which a server writes bulk writes to other servers. Every
+     * release which understands version 2 also reads version 1, but older releases only read version 1,
+     * so set this to 2 only once every server of the cluster is upgraded.
+     *
+     * Defaults to 1
+     */
+    public static final String PIPELINE_ENCODING_VERSION = "splice.writer.encodingVersion";
+    private static final int DEFAULT_PIPELINE_ENCODING_VERSION = 1;
+
+    /**
+     * When enabled, a region server adapts its limits on the number of dependent and independent rows
+     * which it writes at once to the latency of those writes, and rejects writes beyond the current limits
+     * (so that clients back off) before they queue. The configured maximum writes ({@link #MAX_DEPENDENT_WRITES}
+     * and {@link #MAX_INDEPENDENT_WRITES}) become the ceilings of those limits. When disabled, the configured
+     * maximums are fixed limits.
+     *
+     * Defaults to true
+     */
+    public static final String ADAPTIVE_WRITE_CONTROL = "splice.client.write.adaptiveControl";
+    private static final boolean DEFAULT_ADAPTIVE_WRITE_CONTROL = true;
+
+    /**
+     * The longest time, in microseconds, that a write to a region server waits to be sent together with
+     * writes from other transactions to the same server. Writes only wait while another batch is already on
+     * its way to that server, so an idle server is written to immediately. Set to 0 to disable coalescing.
+     *
+     * Coalesced writes are sent in a format which older releases can't read, so only enable this once
+     * every server is upgraded.
+     *
+     * Defaults to 0
+     */
+    public static final String WRITE_COALESCE_LINGER_MICROS = "splice.writer.coalesce.lingerMicros";
+    private static final long DEFAULT_WRITE_COALESCE_LINGER_MICROS = 0L;
+
+    /**
+     * The largest number of rows to coalesce into a single write to a region server.
+     *
+     * Defaults to 10000
+     */
+    public static final String WRITE_COALESCE_MAX_ENTRIES = "splice.writer.coalesce.maxEntries";
+    private static final int DEFAULT_WRITE_COALESCE_MAX_ENTRIES = 10000;
+
+    /**
+     * The largest number of coalesced writes which may be on their way to the same region server at once.
+     * Writes beyond this wait for one of those to return, and are coalesced in the meantime.
+     *
+     * Defaults to 16
+     */
+    public static final String WRITE_COALESCE_MAX_IN_FLIGHT = "splice.writer.coalesce.maxInFlight";
+    private static final int DEFAULT_WRITE_COALESCE_MAX_IN_FLIGHT = 16;
+
     @Override
     public void setDefaults(ConfigurationBuilder builder, ConfigurationSource configurationSource) {
         builder.ipcThreads = configurationSource.getInt(IPC_THREADS, DEFAULT_IPC_THREADS);
@@ -187,6 +253,12 @@ public class PipelineConfiguration implements ConfigurationDefault {
         builder.reservedSlotsTimeout = configurationSource.getInt(SPARK_RESERVED_SLOTS_TIMEOUT, DEFAULT_SPARK_RESERVED_SLOTS_TIMEOUT);
         builder.bulkImportSampleFraction = configurationSource.getDouble(BULK_IMPORT_SAMPLE_FRACTION, DEFAULT_BULK_IMPORT_SAMPLE_FRACTION);
         builder.bulkImportTasksPerRegion = configurationSource.getInt(BULK_IMPORT_TASKS_PER_REGION, DEFAULT_BULK_IMPORT_TASKS_PER_REGION);
+        builder.bulkImportColumnar = configurationSource.getBoolean(BULK_IMPORT_COLUMNAR, DEFAULT_BULK_IMPORT_COLUMNAR);
+        builder.pipelineEncodingVersion = configurationSource.getInt(PIPELINE_ENCODING_VERSION, DEFAULT_PIPELINE_ENCODING_VERSION);
+        builder.adaptiveWriteControl = configurationSource.getBoolean(ADAPTIVE_WRITE_CONTROL, DEFAULT_ADAPTIVE_WRITE_CONTROL);
+        builder.writeCoalesceLingerMicros = configurationSource.getLong(WRITE_COALESCE_LINGER_MICROS, DEFAULT_WRITE_COALESCE_LINGER_MICROS);
+        builder.writeCoalesceMaxEntries = configurationSource.getInt(WRITE_COALESCE_MAX_ENTRIES, DEFAULT_WRITE_COALESCE_MAX_ENTRIES);
+        builder.writeCoalesceMaxInFlight = configurationSource.getInt(WRITE_COALESCE_MAX_IN_FLIGHT, DEFAULT_WRITE_COALESCE_MAX_IN_FLIGHT);
 
     }
 }
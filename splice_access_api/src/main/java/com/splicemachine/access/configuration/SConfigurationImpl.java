@@ -101,6 +101,12 @@ public final class SConfigurationImpl implements SConfiguration {
     private final int reservedSlotsTimeout;
     private final double bulkImportSampleFraction;
     private final int bulkImportTasksPerRegion;
+    private final boolean bulkImportColumnar;
+    private final int pipelineEncodingVersion;
+    private final boolean adaptiveWriteControl;
+    private final long writeCoalesceLingerMicros;
+    private final int writeCoalesceMaxEntries;
+    private final int writeCoalesceMaxInFlight;
 
     // OLAP client/server configurations
     private final int olapClientWaitTime;
@@ -121,6 +127,10 @@ public final class SConfigurationImpl implements SConfiguration {
     private final  int transactionKeepAliveThreads;
     private final  int transactionLockStripes;
     private final  long transactionKeepAliveInterval;
+    private final int transactionGroupCommitMaxBatch;
+    private final long transactionGroupCommitWindow;
+    private final int rowLockStripes;
+    private final long rowLockMaxWait;
     private final  long transactionTimeout;
 
     // SQLConfiguration
@@ -132,6 +142,8 @@ public final class SConfigurationImpl implements SConfiguration {
     private final  boolean upgradeForced;
     private final  int batchOnceBatchSize;
     private final  int importMaxQuotedColumnLines;
+    private final  int importParallelism;
+    private final  int importChunkSize;
     private final  int indexBatchSize;
     private final  int indexLookupBlocks;
     private final  int kryoPoolSize;
@@ -146,6 +158,15 @@ public final class SConfigurationImpl implements SConfiguration {
     private final  String upgradeForcedFrom;
     private final String storageFactoryHome;
     private final int nestedLoopJoinBatchSize;
+    private final long broadcastJoinMaxMemory;
+    private final String spillDirectory;
+    private final int controlScanBatchSize;
+    private final boolean lazyColumnDecoding;
+    private final int broadcastJoinRuntimeFilterMaxKeys;
+    private final long controlSortMaxMemory;
+    private final long controlAggregateMaxMemory;
+    private final long controlDistinctMaxMemory;
+    private final long controlJoinMaxMemory;
 
     // StatsConfiguration
     private final  double fallbackNullFraction;
@@ -361,6 +382,31 @@ public final class SConfigurationImpl implements SConfiguration {
     public int getBulkImportTasksPerRegion() {
         return bulkImportTasksPerRegion;
     }
+
+    @Override
+    public boolean getBulkImportColumnar() {
+        return bulkImportColumnar;
+    }
+    @Override
+    public int getPipelineEncodingVersion() {
+        return pipelineEncodingVersion;
+    }
+    @Override
+    public boolean getAdaptiveWriteControl() {
+        return adaptiveWriteControl;
+    }
+    @Override
+    public long getWriteCoalesceLingerMicros() {
+        return writeCoalesceLingerMicros;
+    }
+    @Override
+    public int getWriteCoalesceMaxEntries() {
+        return writeCoalesceMaxEntries;
+    }
+    @Override
+    public int getWriteCoalesceMaxInFlight() {
+        return writeCoalesceMaxInFlight;
+    }
     @Override
     public int getSparkResultStreamingBatches() {
         return sparkResultStreamingBatches;
@@ -433,6 +479,22 @@ public final class SConfigurationImpl implements SConfiguration {
         return transactionKeepAliveInterval;
     }
     @Override
+    public int getTransactionGroupCommitMaxBatch() {
+        return transactionGroupCommitMaxBatch;
+    }
+    @Override
+    public long getTransactionGroupCommitWindow() {
+        return transactionGroupCommitWindow;
+    }
+    @Override
+    public int getRowLockStripes() {
+        return rowLockStripes;
+    }
+    @Override
+    public long getRowLockMaxWait() {
+        return rowLockMaxWait;
+    }
+    @Override
     public long getTransactionTimeout() {
         return transactionTimeout;
     }
@@ -471,6 +533,14 @@ public final class SConfigurationImpl implements SConfiguration {
         return importMaxQuotedColumnLines;
     }
     @Override
+    public int getImportParallelism() {
+        return importParallelism;
+    }
+    @Override
+    public int getImportChunkSize() {
+        return importChunkSize;
+    }
+    @Override
     public int getIndexBatchSize() {
         return indexBatchSize;
     }
@@ -522,6 +592,42 @@ public final class SConfigurationImpl implements SConfiguration {
     public int getNestedLoopJoinBatchSize() {
         return nestedLoopJoinBatchSize;
     }
+    @Override
+    public long getBroadcastJoinMaxMemory() {
+        return broadcastJoinMaxMemory;
+    }
+    @Override
+    public String getSpillDirectory() {
+        return spillDirectory;
+    }
+    @Override
+    public int getControlScanBatchSize() {
+        return controlScanBatchSize;
+    }
+    @Override
+    public boolean getLazyColumnDecoding() {
+        return lazyColumnDecoding;
+    }
+    @Override
+    public int getBroadcastJoinRuntimeFilterMaxKeys() {
+        return broadcastJoinRuntimeFilterMaxKeys;
+    }
+    @Override
+    public long getControlSortMaxMemory() {
+        return controlSortMaxMemory;
+    }
+    @Override
+    public long getControlAggregateMaxMemory() {
+        return controlAggregateMaxMemory;
+    }
+    @Override
+    public long getControlDistinctMaxMemory() {
+        return controlDistinctMaxMemory;
+    }
+    @Override
+    public long getControlJoinMaxMemory() {
+        return controlJoinMaxMemory;
+    }
 
     // StatsConfiguration
     @Override
@@ -615,6 +721,10 @@ public final class SConfigurationImpl implements SConfiguration {
         transactionKeepAliveThreads = builder.transactionKeepAliveThreads;
         transactionLockStripes = builder.transactionLockStripes;
         transactionKeepAliveInterval = builder.transactionKeepAliveInterval;
+        transactionGroupCommitMaxBatch = builder.transactionGroupCommitMaxBatch;
+        transactionGroupCommitWindow = builder.transactionGroupCommitWindow;
+        rowLockStripes = builder.rowLockStripes;
+        rowLockMaxWait = builder.rowLockMaxWait;
         transactionTimeout = builder.transactionTimeout;
         sequenceBlockSize = builder.sequenceBlockSize;
         threadPoolMaxSize = builder.threadPoolMaxSize;
@@ -662,6 +772,8 @@ public final class SConfigurationImpl implements SConfiguration {
         ignoreSavePoints = builder.ignoreSavePoints;
         upgradeForced = builder.upgradeForced;
         importMaxQuotedColumnLines = builder.importMaxQuotedColumnLines;
+        importParallelism = builder.importParallelism;
+        importChunkSize = builder.importChunkSize;
         indexBatchSize = builder.indexBatchSize;
         indexLookupBlocks = builder.indexLookupBlocks;
         kryoPoolSize = builder.kryoPoolSize;
@@ -703,8 +815,23 @@ public final class SConfigurationImpl implements SConfiguration {
         reservedSlotsTimeout = builder.reservedSlotsTimeout;
         storageFactoryHome = builder.storageFactoryHome;
         nestedLoopJoinBatchSize = builder.nestedLoopJoinBatchSize;
+        broadcastJoinMaxMemory = builder.broadcastJoinMaxMemory;
+        spillDirectory = builder.spillDirectory;
+        controlScanBatchSize = builder.controlScanBatchSize;
+        lazyColumnDecoding = builder.lazyColumnDecoding;
+        broadcastJoinRuntimeFilterMaxKeys = builder.broadcastJoinRuntimeFilterMaxKeys;
+        controlSortMaxMemory = builder.controlSortMaxMemory;
+        controlAggregateMaxMemory = builder.controlAggregateMaxMemory;
+        controlDistinctMaxMemory = builder.controlDistinctMaxMemory;
+        controlJoinMaxMemory = builder.controlJoinMaxMemory;
         bulkImportSampleFraction = builder.bulkImportSampleFraction;
         bulkImportTasksPerRegion = builder.bulkImportTasksPerRegion;
+        bulkImportColumnar = builder.bulkImportColumnar;
+        pipelineEncodingVersion = builder.pipelineEncodingVersion;
+        adaptiveWriteControl = builder.adaptiveWriteControl;
+        writeCoalesceLingerMicros = builder.writeCoalesceLingerMicros;
+        writeCoalesceMaxEntries = builder.writeCoalesceMaxEntries;
+        writeCoalesceMaxInFlight = builder.writeCoalesceMaxInFlight;
     }
 
     private static final Logger LOG = Logger.getLogger("splice.config");
@@ -151,6 +151,46 @@ public class SIConfigurations implements ConfigurationDefault {
     public static final String ACTIVE_TRANSACTION_CACHE_SIZE="splice.txn.activeCacheSize";
     private static final int DEFAULT_ACTIVE_TRANSACTION_CACHE_SIZE = 1<<12;
 
+    /**
+     * The maximum number of commits and rollbacks which a transaction region folds into a single
+     * write to the transaction table. Commits written together share a single commit timestamp.
+     * Set to 1 to write each commit and rollback on its own.
+     *
+     * Defaults to 64
+     */
+    public static final String TRANSACTION_GROUP_COMMIT_MAX_BATCH="splice.txn.groupCommit.maxBatchSize";
+    private static final int DEFAULT_TRANSACTION_GROUP_COMMIT_MAX_BATCH=64;
+
+    /**
+     * The time (in microseconds) which a group commit waits for more commits to arrive before it is
+     * written, unless the group is already full. With the default of 0, a group is made up of the commits
+     * which arrived while the previous group was being written, so no commit is ever delayed.
+     *
+     * Defaults to 0
+     */
+    public static final String TRANSACTION_GROUP_COMMIT_WINDOW="splice.txn.groupCommit.windowMicros";
+    private static final long DEFAULT_TRANSACTION_GROUP_COMMIT_WINDOW=0L;
+
+    /**
+     * The number of lock stripes which SI writes to a single region are serialized on. Writes lock the stripes
+     * of their rows in stripe order, so a batch waits for a contended stripe rather than failing the row back to
+     * the writer. More stripes mean fewer unrelated rows sharing a stripe, at the cost of memory per region.
+     *
+     * Defaults to 256
+     */
+    public static final String ROW_LOCK_STRIPES="splice.txn.rowLockStripes";
+    private static final int DEFAULT_ROW_LOCK_STRIPES=256;
+
+    /**
+     * The longest time (in milliseconds) which a write batch will wait for contended row lock stripes, in total.
+     * The actual wait adapts to how long stripes have recently been held, and never exceeds this value. Rows whose
+     * stripe could not be locked in time are failed back to the writer to retry, as before.
+     *
+     * Defaults to 20
+     */
+    public static final String ROW_LOCK_MAX_WAIT="splice.txn.rowLockMaxWaitMillis";
+    private static final long DEFAULT_ROW_LOCK_MAX_WAIT=20L;
+
     @Override
     public void setDefaults(ConfigurationBuilder builder, ConfigurationSource configurationSource) {
         builder.completedTxnConcurrency  = configurationSource.getInt(completedTxnConcurrency, DEFAULT_COMPLETED_TRANSACTION_CONCURRENCY);
@@ -171,6 +211,10 @@ public class SIConfigurations implements ConfigurationDefault {
 
         builder.transactionTimeout = configurationSource.getLong(TRANSACTION_TIMEOUT, DEFAULT_TRANSACTION_TIMEOUT);
         builder.transactionKeepAliveInterval = configurationSource.getLong(TRANSACTION_KEEP_ALIVE_INTERVAL, DEFAULT_TRANSACTION_KEEP_ALIVE_INTERVAL);
+        builder.transactionGroupCommitMaxBatch = configurationSource.getInt(TRANSACTION_GROUP_COMMIT_MAX_BATCH, DEFAULT_TRANSACTION_GROUP_COMMIT_MAX_BATCH);
+        builder.transactionGroupCommitWindow = configurationSource.getLong(TRANSACTION_GROUP_COMMIT_WINDOW, DEFAULT_TRANSACTION_GROUP_COMMIT_WINDOW);
+        builder.rowLockStripes = configurationSource.getInt(ROW_LOCK_STRIPES, DEFAULT_ROW_LOCK_STRIPES);
+        builder.rowLockMaxWait = configurationSource.getLong(ROW_LOCK_MAX_WAIT, DEFAULT_ROW_LOCK_MAX_WAIT);
 
     }
 }
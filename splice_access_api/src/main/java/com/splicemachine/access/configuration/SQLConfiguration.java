@@ -62,6 +62,25 @@ public class SQLConfiguration implements ConfigurationDefault {
     public static final String IMPORT_MAX_QUOTED_COLUMN_LINES="splice.import.maxQuotedColumnLines";
     private static final int DEFAULT_IMPORT_MAX_QUOTED_COLUMN_LINES = 50000;
 
+    /**
+     * The number of threads which parse a single UTF-8 file that is read as a whole (i.e. one whose records
+     * may span lines). The file is split into chunks at record boundaries, and each chunk is tokenized and
+     * converted into rows on its own thread. 1 parses the file on the reading thread.
+     *
+     * Defaults to 4
+     */
+    public static final String IMPORT_PARALLELISM = "splice.import.parallelism";
+    private static final int DEFAULT_IMPORT_PARALLELISM = 4;
+
+    /**
+     * The approximate number of bytes in each chunk of a file which is parsed in parallel (see
+     * splice.import.parallelism). Each chunk ends at the first record boundary past this size.
+     *
+     * Defaults to 1 MB
+     */
+    public static final String IMPORT_CHUNK_SIZE = "splice.import.chunkSize";
+    private static final int DEFAULT_IMPORT_CHUNK_SIZE = 1024*1024;
+
     public static final String BATCH_ONCE_BATCH_SIZE = "splice.batchonce.batchsize";
     private static final int DEFAULT_BATCH_ONCE_BATCH_SIZE = 50_000;
 
@@ -202,6 +221,98 @@ public class SQLConfiguration implements ConfigurationDefault {
     public static final String NESTEDLOOPJOIN_BATCH_SIZE = "splice.nestedLoopJoin.batchSize";
     private static final int DEFAULT_NESTEDLOOPJOIN_BATCH_SIZE = 10;
 
+    /**
+     * The maximum number of bytes which all cached broadcast join tables in a single JVM
+     * may hold in memory. If the inner side of a single broadcast join would exceed this limit
+     * on its own, the inner rows are spilled to local disk and only the join keys are kept in memory.
+     *
+     * Defaults to 10% of the maximum heap size.
+     */
+    public static final String BROADCAST_JOIN_MAX_MEMORY = "splice.execution.broadcastJoin.maxMemory";
+    private static final long DEFAULT_BROADCAST_JOIN_MAX_MEMORY = Runtime.getRuntime().maxMemory()/10;
+
+    /**
+     * The local directory which operations use when they have to spill data to disk.
+     *
+     * Defaults to the JVM's temporary directory (java.io.tmpdir).
+     */
+    public static final String SPILL_DIRECTORY = "splice.execution.spillDirectory";
+    private static final String DEFAULT_SPILL_DIRECTORY = System.getProperty("java.io.tmpdir");
+
+    /**
+     * The largest number of rows which a control-side table scan decodes into a column batch before
+     * evaluating its scan qualifiers over the whole batch. A scan starts with a batch of 16 rows, so that
+     * its first rows come back quickly, and doubles the batch each time it is refilled, up to this size.
+     * Values of 1 or less disable batching, so that qualifiers are evaluated one row at a time.
+     *
+     * Defaults to 1024
+     */
+    public static final String CONTROL_SCAN_BATCH_SIZE = "splice.execution.control.scanBatchSize";
+    private static final int DEFAULT_CONTROL_SCAN_BATCH_SIZE = 1024;
+
+    /**
+     * When a control-side table scan qualifies its rows one at a time, decode only the columns
+     * referenced by the scan's qualifiers before evaluating them, and decode the remaining columns
+     * only for rows which qualify.
+     *
+     * Defaults to true
+     */
+    public static final String LAZY_COLUMN_DECODING = "splice.execution.lazyColumnDecoding";
+    private static final boolean DEFAULT_LAZY_COLUMN_DECODING = true;
+
+    /**
+     * The maximum number of distinct join keys in the inner table of a broadcast join for which a
+     * Bloom filter over the keys is built and pushed into the scan of the outer table, so that outer
+     * rows which cannot match are dropped before being decoded. Set to 0 to disable the filter.
+     *
+     * Defaults to 1000000
+     */
+    public static final String BROADCAST_JOIN_RUNTIME_FILTER_MAX_KEYS = "splice.execution.broadcastJoin.runtimeFilterMaxKeys";
+    private static final int DEFAULT_BROADCAST_JOIN_RUNTIME_FILTER_MAX_KEYS = 1000000;
+
+    /**
+     * The maximum number of bytes of rows which a single control-side sort holds in memory. When a sort
+     * exceeds this limit, it writes its buffered rows to a sorted run under the spill directory and merges
+     * the runs once its input is exhausted. Each sort operation has its own limit.
+     *
+     * Defaults to 64 MB
+     */
+    public static final String CONTROL_SORT_MAX_MEMORY = "splice.execution.control.sortMaxMemory";
+    private static final long DEFAULT_CONTROL_SORT_MAX_MEMORY = 64*1024*1024L;
+
+    /**
+     * The maximum number of bytes of groups which a single control-side aggregation (or grouping) holds
+     * in memory. When an aggregation exceeds this limit, it writes its groups out to partitions under the
+     * spill directory, and re-aggregates each partition once its input is exhausted. Each aggregation has
+     * its own limit.
+     *
+     * Defaults to 64 MB
+     */
+    public static final String CONTROL_AGGREGATE_MAX_MEMORY = "splice.execution.control.aggregateMaxMemory";
+    private static final long DEFAULT_CONTROL_AGGREGATE_MAX_MEMORY = 64*1024*1024L;
+
+    /**
+     * The maximum number of bytes of distinct rows which a single control-side DISTINCT remembers in
+     * memory. Once a DISTINCT exceeds this limit, rows it hasn't yet seen are written to partitions under
+     * the spill directory, and each partition is made distinct once its input is exhausted. Each DISTINCT
+     * has its own limit.
+     *
+     * Defaults to 64 MB
+     */
+    public static final String CONTROL_DISTINCT_MAX_MEMORY = "splice.execution.control.distinctMaxMemory";
+    private static final long DEFAULT_CONTROL_DISTINCT_MAX_MEMORY = 64*1024*1024L;
+
+    /**
+     * The maximum number of bytes of build-side rows which a single control-side hash join (or
+     * cogroup) holds in memory. When a join exceeds this limit, it writes whole hash partitions of its
+     * build side out to the spill directory, along with the probe rows which fall into them, and joins
+     * each spilled partition once the probe side is exhausted. Each join has its own limit.
+     *
+     * Defaults to 64 MB
+     */
+    public static final String CONTROL_JOIN_MAX_MEMORY = "splice.execution.control.joinMaxMemory";
+    private static final long DEFAULT_CONTROL_JOIN_MAX_MEMORY = 64*1024*1024L;
+
     @Override
     public void setDefaults(ConfigurationBuilder builder, ConfigurationSource configurationSource) {
         // FIXME: JC - some of these are not referenced anywhere outside. Do we need them?
@@ -211,10 +322,21 @@ public class SQLConfiguration implements ConfigurationDefault {
         builder.indexBatchSize = configurationSource.getInt(INDEX_BATCH_SIZE, DEFAULT_INDEX_BATCH_SIZE);
         builder.indexLookupBlocks = configurationSource.getInt(INDEX_LOOKUP_BLOCKS, DEFAULT_INDEX_LOOKUP_BLOCKS);
         builder.importMaxQuotedColumnLines = configurationSource.getInt(IMPORT_MAX_QUOTED_COLUMN_LINES, DEFAULT_IMPORT_MAX_QUOTED_COLUMN_LINES);
+        builder.importParallelism = configurationSource.getInt(IMPORT_PARALLELISM, DEFAULT_IMPORT_PARALLELISM);
+        builder.importChunkSize = configurationSource.getInt(IMPORT_CHUNK_SIZE, DEFAULT_IMPORT_CHUNK_SIZE);
         builder.batchOnceBatchSize = configurationSource.getInt(BATCH_ONCE_BATCH_SIZE, DEFAULT_BATCH_ONCE_BATCH_SIZE);
         builder.partitionserverJmxPort = configurationSource.getInt(PARTITIONSERVER_JMX_PORT, DEFAULT_PARTITIONSERVER_JMX_PORT);
         builder.partitionserverPort = configurationSource.getInt(PARTITIONSERVER_PORT, DEFAULT_PARTITIONSERVER_PORT);
         builder.nestedLoopJoinBatchSize = configurationSource.getInt(NESTEDLOOPJOIN_BATCH_SIZE, DEFAULT_NESTEDLOOPJOIN_BATCH_SIZE);
+        builder.broadcastJoinMaxMemory = configurationSource.getLong(BROADCAST_JOIN_MAX_MEMORY, DEFAULT_BROADCAST_JOIN_MAX_MEMORY);
+        builder.spillDirectory = configurationSource.getString(SPILL_DIRECTORY, DEFAULT_SPILL_DIRECTORY);
+        builder.controlScanBatchSize = configurationSource.getInt(CONTROL_SCAN_BATCH_SIZE, DEFAULT_CONTROL_SCAN_BATCH_SIZE);
+        builder.lazyColumnDecoding = configurationSource.getBoolean(LAZY_COLUMN_DECODING, DEFAULT_LAZY_COLUMN_DECODING);
+        builder.broadcastJoinRuntimeFilterMaxKeys = configurationSource.getInt(BROADCAST_JOIN_RUNTIME_FILTER_MAX_KEYS, DEFAULT_BROADCAST_JOIN_RUNTIME_FILTER_MAX_KEYS);
+        builder.controlSortMaxMemory = configurationSource.getLong(CONTROL_SORT_MAX_MEMORY, DEFAULT_CONTROL_SORT_MAX_MEMORY);
+        builder.controlAggregateMaxMemory = configurationSource.getLong(CONTROL_AGGREGATE_MAX_MEMORY, DEFAULT_CONTROL_AGGREGATE_MAX_MEMORY);
+        builder.controlDistinctMaxMemory = configurationSource.getLong(CONTROL_DISTINCT_MAX_MEMORY, DEFAULT_CONTROL_DISTINCT_MAX_MEMORY);
+        builder.controlJoinMaxMemory = configurationSource.getLong(CONTROL_JOIN_MAX_MEMORY, DEFAULT_CONTROL_JOIN_MAX_MEMORY);
 
         // Where to place jar files...
         String defaultStorageFactoryHome;
@@ -68,6 +68,35 @@ class DoubleEncoding {
         return Double.longBitsToDouble(l);
     }
 
+    /**
+     * Decode {@code count} consecutive doubles, each followed by a single delimiter byte, into {@code dest}.
+     * Equivalent to calling {@link #toDouble(byte[], int, boolean)} for each one, but without copying
+     * descending values.
+     * <p>
+     * A field holding {@link #NULL_DOUBLE_BYTES} (or which lies past {@code limit}) is null, and decodes to 0.
+     *
+     * @return the offset of the first field after those decoded
+     */
+    static int toDoubles(byte[] data,int offset,int limit,boolean desc,
+                         double[] dest,boolean[] nulls,int destOffset,int count){
+        long flip = desc?-1L:0L;
+        for(int i=destOffset,end=destOffset+count;i<end;i++){
+            if(offset+1>=limit || (data[offset]==0x00 && data[offset+1]==0x00)){
+                dest[i] = 0d;
+                if(nulls!=null) nulls[i] = true;
+                if(offset<limit) offset = Math.min(limit,offset+NULL_DOUBLE_BYTES_LENGTH+1);
+                continue;
+            }
+            long l = Bytes.toLong(data,offset)^flip;
+            l--;
+            l ^= (~l >> Long.SIZE-1) | Long.MIN_VALUE;
+            dest[i] = Double.longBitsToDouble(l);
+            if(nulls!=null) nulls[i] = false;
+            offset+=9;
+        }
+        return offset;
+    }
+
     public static double toDouble(byte[] data, int offset,boolean desc){
     	byte[] val = data;
     	if(desc){
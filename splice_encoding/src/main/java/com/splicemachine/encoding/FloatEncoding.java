@@ -58,4 +58,32 @@ class FloatEncoding {
 
         return Float.intBitsToFloat(j);
     }
+
+    /**
+     * Decode {@code count} consecutive floats, each followed by a single delimiter byte, into {@code dest}.
+     * Equivalent to calling {@link #toFloat(byte[], int, boolean)} for each one.
+     * <p>
+     * A field holding {@link DoubleEncoding#NULL_FLOAT_BYTES} (or which lies past {@code limit}) is null, and decodes to 0.
+     *
+     * @return the offset of the first field after those decoded
+     */
+    static int toFloats(byte[] data,int offset,int limit,boolean desc,
+                        float[] dest,boolean[] nulls,int destOffset,int count){
+        int flip = desc?-1:0;
+        for(int i=destOffset,end=destOffset+count;i<end;i++){
+            if(offset+1>=limit || (data[offset]==0x00 && data[offset+1]==0x00)){
+                dest[i] = 0f;
+                if(nulls!=null) nulls[i] = true;
+                if(offset<limit) offset = Math.min(limit,offset+DoubleEncoding.NULL_FLOAT_BYTES_LENGTH+1);
+                continue;
+            }
+            int j = Bytes.toInt(data,offset)^flip;
+            j--;
+            j ^= (~j >> Integer.SIZE-1)|Integer.MIN_VALUE;
+            dest[i] = Float.intBitsToFloat(j);
+            if(nulls!=null) nulls[i] = false;
+            offset+=5;
+        }
+        return offset;
+    }
 }
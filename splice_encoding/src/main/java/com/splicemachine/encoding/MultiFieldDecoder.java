@@ -389,6 +389,74 @@ public class MultiFieldDecoder {
         return currentOffset - offset;
     }
 
+    /*
+     * Bulk decoding. Each of these decodes a run of consecutive fields of the same type in a single loop,
+     * with the bounds of the row and of the destination checked once up front instead of once per field.
+     * Decoding the same columns from many rows into one array (at destOffset=row*count, say) gives a
+     * columnar view of them which aggregation code can loop over directly.
+     *
+     * Null fields decode to 0, and are flagged in the nulls array when one is given.
+     */
+
+    /**
+     * Decode the next {@code count} scalar (long, int or short) fields into {@code dest}.
+     *
+     * @param dest the array to decode into, starting at {@code destOffset}
+     * @param nulls if not null, {@code nulls[destOffset+i]} is set to whether the i-th field was null
+     * @param destOffset the position in {@code dest} (and {@code nulls}) of the first field
+     * @param count the number of fields to decode
+     * @param desc whether the fields were encoded in descending order
+     */
+    public void decodeNextLongs(long[] dest,boolean[] nulls,int destOffset,int count,boolean desc){
+        checkDestination(dest.length,nulls,destOffset,count);
+        currentOffset = ScalarEncoding.readLongs(data,currentOffset,offset+length,desc,dest,nulls,destOffset,count);
+    }
+
+    /**
+     * Decode the next {@code count} double fields into {@code dest}.
+     *
+     * @see #decodeNextLongs(long[], boolean[], int, int, boolean)
+     */
+    public void decodeNextDoubles(double[] dest,boolean[] nulls,int destOffset,int count,boolean desc){
+        checkDestination(dest.length,nulls,destOffset,count);
+        currentOffset = DoubleEncoding.toDoubles(data,currentOffset,offset+length,desc,dest,nulls,destOffset,count);
+    }
+
+    /**
+     * Decode the next {@code count} float fields into {@code dest}.
+     *
+     * @see #decodeNextLongs(long[], boolean[], int, int, boolean)
+     */
+    public void decodeNextFloats(float[] dest,boolean[] nulls,int destOffset,int count,boolean desc){
+        checkDestination(dest.length,nulls,destOffset,count);
+        currentOffset = FloatEncoding.toFloats(data,currentOffset,offset+length,desc,dest,nulls,destOffset,count);
+    }
+
+    /**
+     * Find the next {@code count} length-delimited (String, BigDecimal or byte[]) fields, without
+     * decoding them. The i-th field occupies {@code lengths[destOffset+i]} bytes of {@link #array()},
+     * starting at {@code offsets[destOffset+i]}, and can be decoded from there when it's needed (with
+     * {@link Encoding#decodeString(byte[], int, int, boolean)}, for example), or compared as it is.
+     * A null field has a length of 0.
+     */
+    public void nextFieldOffsets(int[] offsets,int[] lengths,int destOffset,int count){
+        checkDestination(offsets.length,null,destOffset,count);
+        checkDestination(lengths.length,null,destOffset,count);
+        byte[] data = this.data;
+        int limit = offset+length;
+        int position = currentOffset;
+        for(int i=destOffset,end=destOffset+count;i<end;i++){
+            int fieldEnd = position;
+            while(fieldEnd<limit && data[fieldEnd]!=0x00){
+                fieldEnd++;
+            }
+            offsets[i] = Math.min(position,limit);
+            lengths[i] = Math.max(0,fieldEnd-position);
+            if(position<limit) position = fieldEnd<limit?fieldEnd+1:limit;
+        }
+        currentOffset = position;
+    }
+
 /*********************************************************************************************************************/
 /*private helper methods*/
 
@@ -423,6 +491,12 @@ public class MultiFieldDecoder {
         currentOffset += expectedLength + 1; //not found before the end of the expectedLength
     }
     
+    private static void checkDestination(int destLength,boolean[] nulls,int destOffset,int count){
+        if(destOffset<0 || count<0 || destOffset+count>destLength || (nulls!=null && destOffset+count>nulls.length))
+            throw new ArrayIndexOutOfBoundsException("Cannot decode "+count+" fields at position "+destOffset
+                    +" of an array of length "+destLength);
+    }
+
     private boolean check2ByteNull(byte[] nullValue) {
         return nullValue[0] == data[currentOffset] && nullValue[1] == data[currentOffset+1];
     }
@@ -205,12 +205,33 @@ public class MultiFieldEncoder {
         //if you haven't tried to encode anything, return empty array
         if(currentPos==0) return Encoding.EMPTY_BYTE_ARRAY;
 
-        byte[] data = new byte[currentSize+currentPos-1];
-        int destPos=0;
+        byte[] data = new byte[getLength()];
+        build(data,0);
+        return data;
+    }
+
+    /**
+     * @return the number of bytes which {@link #build()} would currently return
+     */
+    public int getLength(){
+        if(currentPos==0) return 0;
+        return currentSize+currentPos-1;
+    }
+
+    /**
+     * Copy the encoded fields into an existing array, rather than allocating a new one.
+     *
+     * @param destination the array to copy into, which must hold at least {@link #getLength()} bytes
+     *                    after {@code offset}
+     * @param offset the position in {@code destination} to start copying at
+     * @return the number of bytes copied
+     */
+    public int build(byte[] destination,int offset){
+        int destPos=offset;
         for(int srcPos=0;srcPos<currentPos;srcPos++){
             byte[] src = fields[srcPos];
             if(srcPos != 0){
-                data[destPos] = 0x00; //we know that 0x00 is never allowed, so it's a safe terminator
+                destination[destPos] = 0x00; //we know that 0x00 is never allowed, so it's a safe terminator
                 destPos++;
             }
             if(src==null || src.length==0) {
@@ -218,10 +239,10 @@ public class MultiFieldEncoder {
                 continue;
             }
 
-            System.arraycopy(src,0,data,destPos,src.length);
+            System.arraycopy(src,0,destination,destPos,src.length);
             destPos+=src.length;
         }
-        return data;
+        return destPos-offset;
     }
 
     public void mark() {
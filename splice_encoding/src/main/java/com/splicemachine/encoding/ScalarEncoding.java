@@ -333,6 +333,62 @@ final class ScalarEncoding{
         valueAndLength[1]=length;
     }
 
+    /**
+     * Decode {@code count} consecutive longs, each followed by a single delimiter byte, into {@code dest}.
+     * Equivalent to calling {@link #readLong(byte[], int, boolean, long[])} for each one, but without
+     * the intermediate array, and with the body of each long decoded without branching on its sign or
+     * on the sort order.
+     * <p>
+     * A field which is empty (or which lies past {@code limit}) is null, and decodes to 0.
+     *
+     * @return the offset of the first field after those decoded
+     */
+    static int readLongs(byte[] data,int offset,int limit,boolean desc,
+                         long[] dest,boolean[] nulls,int destOffset,int count){
+        int flip=desc?0xff:0;
+        for(int i=destOffset,end=destOffset+count;i<end;i++){
+            if(offset>=limit || data[offset]==0x00){
+                dest[i]=0L;
+                if(nulls!=null) nulls[i]=true;
+                if(offset<limit) offset++;
+                continue;
+            }
+            byte headerByte=(byte)(data[offset]^flip);
+            int sign=(headerByte&LONG_SIGN_BIT)!=0?0:Byte.MIN_VALUE;
+            int negSign=~sign>>Integer.SIZE-1;
+
+            int h=headerByte^negSign;
+            int length;
+            int numHeaderDataBits;
+            if((h&SINGLE_HEADER_BIT)!=0){
+                length=1;
+                numHeaderDataBits=0x6;
+            }else if((h&DOUBLE_HEADER_BIT)!=0){
+                length=2;
+                numHeaderDataBits=0x5;
+            }else{
+                length=(headerByte^~negSign)>>>0x2;
+                length&=(1<<0x3)-1;
+                length+=0x3;
+                numHeaderDataBits=0x2;
+            }
+
+            long x=decodeHeader(headerByte,sign,length,numHeaderDataBits);
+            /*
+             * The bytes of the body start out as all 1s for a negative number, and all 0s for a positive
+             * one, so xor-ing in each (sign-adjusted) byte is the same as the masking in decodeBody()
+             */
+            int bodyFlip=flip^(sign!=0?0xff:0);
+            for(int b=1;b<length;b++){
+                x^=((long)((data[offset+b]^bodyFlip)&0xff))<<((length-1-b)*8);
+            }
+            dest[i]=x;
+            if(nulls!=null) nulls[i]=false;
+            offset+=length+1;
+        }
+        return offset;
+    }
+
     /*package-local methods*/
     static byte[] writeLong(long x,byte extraHeader,int extraHeaderSize){
         long sign=x&Long.MIN_VALUE;
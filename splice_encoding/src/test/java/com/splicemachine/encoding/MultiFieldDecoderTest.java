@@ -17,6 +17,7 @@ package com.splicemachine.encoding;
 import com.splicemachine.primitives.Bytes;
 import org.junit.Test;
 import java.math.BigDecimal;
+import java.util.Random;
 import static org.junit.Assert.*;
 
 public class MultiFieldDecoderTest {
@@ -262,4 +263,138 @@ public class MultiFieldDecoderTest {
         assertEquals("E", d.decodeNextString());
         assertEquals("E", d.decodeNextString());
     }
+
+    @Test
+    public void testBulkLongsMatchPerFieldDecoding() {
+        Random random = new Random(0);
+        long[] edges = {0L, 1L, -1L, 63L, -64L, 4096L, -4097L, Long.MAX_VALUE, Long.MIN_VALUE, Integer.MIN_VALUE};
+        for (boolean desc : new boolean[]{false, true}) {
+            for (int row = 0; row < 200; row++) {
+                int count = 1 + random.nextInt(12);
+                MultiFieldEncoder encoder = MultiFieldEncoder.create(count + 1);
+                for (int i = 0; i < count; i++) {
+                    if (random.nextInt(8) == 0)
+                        encoder.encodeEmpty();
+                    else if (random.nextInt(4) == 0)
+                        encoder.encodeNext(edges[random.nextInt(edges.length)], desc);
+                    else
+                        encoder.encodeNext(random.nextLong() >> random.nextInt(64), desc);
+                }
+                encoder.encodeNext("after");
+                byte[] bytes = encoder.build();
+
+                long[] values = new long[count + 2];
+                boolean[] nulls = new boolean[count + 2];
+                MultiFieldDecoder bulk = MultiFieldDecoder.wrap(bytes);
+                bulk.decodeNextLongs(values, nulls, 1, count, desc);
+                MultiFieldDecoder perField = MultiFieldDecoder.wrap(bytes);
+                for (int i = 0; i < count; i++) {
+                    assertEquals("Incorrect null flag for field " + i, perField.nextIsNull(), nulls[i + 1]);
+                    assertEquals("Incorrect value for field " + i, perField.decodeNextLong(desc), values[i + 1]);
+                }
+                assertEquals("Did not stop at the end of the run!", "after", bulk.decodeNextString());
+            }
+        }
+    }
+
+    @Test
+    public void testBulkDoublesAndFloatsMatchPerFieldDecoding() {
+        Random random = new Random(1);
+        for (boolean desc : new boolean[]{false, true}) {
+            int count = 64;
+            MultiFieldEncoder encoder = MultiFieldEncoder.create(2 * count + 1);
+            double[] expectedDoubles = new double[count];
+            float[] expectedFloats = new float[count];
+            for (int i = 0; i < count; i++) {
+                expectedDoubles[i] = i % 7 == 3 ? 0d : random.nextGaussian() * Math.pow(10, random.nextInt(20) - 10);
+                if (i % 7 == 3)
+                    encoder.encodeEmptyDouble();
+                else
+                    encoder.encodeNext(expectedDoubles[i], desc);
+            }
+            for (int i = 0; i < count; i++) {
+                expectedFloats[i] = i % 5 == 2 ? 0f : (float) random.nextGaussian();
+                if (i % 5 == 2)
+                    encoder.encodeEmptyFloat();
+                else
+                    encoder.encodeNext(expectedFloats[i], desc);
+            }
+            encoder.encodeNext(42L);
+
+            double[] doubles = new double[count];
+            float[] floats = new float[count];
+            boolean[] doubleNulls = new boolean[count];
+            MultiFieldDecoder bulk = MultiFieldDecoder.wrap(encoder.build());
+            bulk.decodeNextDoubles(doubles, doubleNulls, 0, count, desc);
+            bulk.decodeNextFloats(floats, null, 0, count, desc);
+            assertEquals("Did not stop at the end of the run!", 42L, bulk.decodeNextLong());
+            for (int i = 0; i < count; i++) {
+                assertEquals("Incorrect null flag for double " + i, i % 7 == 3, doubleNulls[i]);
+                assertEquals("Incorrect double " + i, expectedDoubles[i], doubles[i], 0d);
+                assertEquals("Incorrect float " + i, expectedFloats[i], floats[i], 0f);
+            }
+        }
+    }
+
+    @Test
+    public void testFieldOffsetsLocateStrings() {
+        String[] strings = {"A", null, "hello", "", "\u00e9t\u00e9", null};
+        MultiFieldEncoder encoder = MultiFieldEncoder.create(strings.length + 1);
+        for (String string : strings) {
+            if (string == null)
+                encoder.encodeEmpty();
+            else
+                encoder.encodeNext(string);
+        }
+        encoder.encodeNext(7L);
+        byte[] bytes = encoder.build();
+
+        int[] offsets = new int[strings.length];
+        int[] lengths = new int[strings.length];
+        MultiFieldDecoder bulk = MultiFieldDecoder.wrap(bytes);
+        bulk.nextFieldOffsets(offsets, lengths, 0, strings.length);
+        assertEquals("Did not stop at the end of the run!", 7L, bulk.decodeNextLong());
+
+        MultiFieldDecoder perField = MultiFieldDecoder.wrap(bytes);
+        for (int i = 0; i < strings.length; i++) {
+            String expected = perField.decodeNextString();
+            if (expected == null)
+                assertEquals("Null field " + i + " has a length!", 0, lengths[i]);
+            else
+                assertEquals("Incorrect string " + i, expected, Encoding.decodeString(bulk.array(), offsets[i], lengths[i], false));
+        }
+    }
+
+    @Test
+    public void testBulkDecodingAcrossRowsFillsColumns() {
+        int numRows = 10;
+        int numColumns = 3;
+        byte[][] rows = new byte[numRows][];
+        for (int row = 0; row < numRows; row++) {
+            rows[row] = MultiFieldEncoder.create(numColumns + 1)
+                    .encodeNext("key" + row)
+                    .encodeNext(row)
+                    .encodeNext(row * 10L)
+                    .encodeNext(-row)
+                    .build();
+        }
+
+        long[] columns = new long[numRows * numColumns];
+        for (int row = 0; row < numRows; row++) {
+            decoder.set(rows[row]);
+            decoder.skip();
+            decoder.decodeNextLongs(columns, null, row * numColumns, numColumns, false);
+        }
+        for (int row = 0; row < numRows; row++) {
+            assertEquals(row, columns[row * numColumns]);
+            assertEquals(row * 10L, columns[row * numColumns + 1]);
+            assertEquals(-row, columns[row * numColumns + 2]);
+        }
+    }
+
+    @Test(expected = ArrayIndexOutOfBoundsException.class)
+    public void testBulkDecodingChecksDestinationUpFront() {
+        decoder.set(MultiFieldEncoder.create(2).encodeNext(1L).encodeNext(2L).build());
+        decoder.decodeNextLongs(new long[4], new boolean[1], 0, 2, false);
+    }
 }
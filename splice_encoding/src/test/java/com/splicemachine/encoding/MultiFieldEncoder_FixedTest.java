@@ -95,5 +95,22 @@ public class MultiFieldEncoder_FixedTest {
 
     }
 
+    @Test
+    public void build_intoExistingArray() {
+
+        MultiFieldEncoder encoder = MultiFieldEncoder.create(3);
+        encoder.encodeNext("A");
+        encoder.encodeEmpty();
+        encoder.encodeNext("B");
+
+        byte[] destination = new byte[]{9, 9, 9, 9, 9, 9};
+        assertEquals(4, encoder.getLength());
+        assertEquals(4, encoder.build(destination, 1));
+        assertArrayEquals(new byte[]{9, 67, 0, 0, 68, 9}, destination);
+
+        encoder.reset();
+        assertEquals(0, encoder.getLength());
+        assertEquals(0, encoder.build(destination, 0));
+    }
 
 }
@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.encoding;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how many values per second can be decoded from a batch of rows into columnar arrays, field by field
+ * with the decodeNext methods of MultiFieldDecoder, and in bulk with decodeNextLongs, decodeNextDoubles and
+ * nextFieldOffsets.
+ * <p>
+ * Every row holds {@value #FIELDS_PER_ROW} fields of the same type, a few of them null (other than doubles).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BulkDecodingBenchmark{
+    private static final int NUM_ROWS = 1024;
+    private static final int FIELDS_PER_ROW = 16;
+    private static final int NUM_VALUES = NUM_ROWS*FIELDS_PER_ROW;
+
+    @Param({"LONG", "DOUBLE", "STRING"})
+    public FieldType type;
+
+    @Param({"false", "true"})
+    public boolean desc;
+
+    private byte[][] rows;
+    private MultiFieldDecoder decoder;
+    private long[] longs;
+    private double[] doubles;
+    private int[] offsets;
+    private int[] lengths;
+    private boolean[] nulls;
+
+    public enum FieldType{
+        LONG, DOUBLE, STRING
+    }
+
+    @Setup
+    public void setUp(){
+        Random random = new Random(0);
+        rows = new byte[NUM_ROWS][];
+        MultiFieldEncoder encoder = MultiFieldEncoder.create(FIELDS_PER_ROW);
+        for(int row=0;row<NUM_ROWS;row++){
+            encoder.reset();
+            for(int i=0;i<FIELDS_PER_ROW;i++){
+                boolean isNull = random.nextInt(20)==0;
+                switch(type){
+                    case LONG:
+                        if(isNull) encoder.encodeEmpty();
+                        else encoder.encodeNext(random.nextLong()>>random.nextInt(64),desc);
+                        break;
+                    case DOUBLE:
+                        //no nulls, since decodeNextDouble() skips a null as if it were 8 bytes long
+                        encoder.encodeNext(random.nextGaussian()*1000d,desc);
+                        break;
+                    default:
+                        if(isNull) encoder.encodeEmpty();
+                        else encoder.encodeNext(Long.toString(random.nextLong(),36),desc);
+                }
+            }
+            rows[row] = encoder.build();
+        }
+        decoder = MultiFieldDecoder.create();
+        longs = new long[NUM_VALUES];
+        doubles = new double[NUM_VALUES];
+        offsets = new int[NUM_VALUES];
+        lengths = new int[NUM_VALUES];
+        nulls = new boolean[NUM_VALUES];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_VALUES)
+    public void perField(Blackhole blackhole){
+        for(int row=0;row<NUM_ROWS;row++){
+            decoder.set(rows[row]);
+            int base = row*FIELDS_PER_ROW;
+            for(int i=0;i<FIELDS_PER_ROW;i++){
+                switch(type){
+                    case LONG:
+                        nulls[base+i] = decoder.nextIsNull();
+                        longs[base+i] = decoder.decodeNextLong(desc);
+                        break;
+                    case DOUBLE:
+                        nulls[base+i] = decoder.nextIsNullDouble();
+                        doubles[base+i] = decoder.decodeNextDouble(desc);
+                        break;
+                    default:
+                        //the closest the per-field API comes to locating a field without decoding it
+                        offsets[base+i] = decoder.offset();
+                        lengths[base+i] = decoder.skip()-1;
+                }
+            }
+        }
+        consume(blackhole);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_VALUES)
+    public void bulk(Blackhole blackhole){
+        for(int row=0;row<NUM_ROWS;row++){
+            decoder.set(rows[row]);
+            int base = row*FIELDS_PER_ROW;
+            switch(type){
+                case LONG:
+                    decoder.decodeNextLongs(longs,nulls,base,FIELDS_PER_ROW,desc);
+                    break;
+                case DOUBLE:
+                    decoder.decodeNextDoubles(doubles,nulls,base,FIELDS_PER_ROW,desc);
+                    break;
+                default:
+                    decoder.nextFieldOffsets(offsets,lengths,base,FIELDS_PER_ROW);
+            }
+        }
+        consume(blackhole);
+    }
+
+    /**
+     * Sum the decoded column, as an aggregate would, so that none of the decoding can be optimized away.
+     */
+    private void consume(Blackhole blackhole){
+        switch(type){
+            case LONG:
+                long longSum = 0L;
+                for(int i=0;i<NUM_VALUES;i++){
+                    longSum+=longs[i];
+                }
+                blackhole.consume(longSum);
+                break;
+            case DOUBLE:
+                double doubleSum = 0d;
+                for(int i=0;i<NUM_VALUES;i++){
+                    doubleSum+=doubles[i];
+                }
+                blackhole.consume(doubleSum);
+                break;
+            default:
+                int totalLength = 0;
+                for(int i=0;i<NUM_VALUES;i++){
+                    totalLength+=lengths[i];
+                }
+                blackhole.consume(totalLength);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.encoding;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+
+/**
+ * Entry point of the benchmarks jar, which {@code mvn package -Pbenchmarks} builds (regular builds only compile
+ * the benchmarks). Accepts the usual JMH command line, so that
+ * <pre>
+ *     java -jar target/benchmarks.jar BitIndexBenchmark -p variant=SPARSE
+ * </pre>
+ * runs a subset of the benchmarks, and with no arguments runs all of them.
+ * <p>
+ * Unless the command line says otherwise (with {@code -rf} and {@code -rff}), the results are written as JSON to
+ * {@value #DEFAULT_RESULT_FILE}, so that runs from before and after a change to the encoding can be compared
+ * mechanically.
+ */
+public class EncodingBenchmarks{
+    public static final String DEFAULT_RESULT_FILE = "jmh-result.json";
+
+    public static void main(String... args) throws CommandLineOptionException, IOException, RunnerException{
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if(commandLine.shouldHelp()){
+            commandLine.showHelp();
+            return;
+        }
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+        if(!commandLine.getResultFormat().hasValue())
+            options = options.resultFormat(ResultFormatType.JSON);
+        if(!commandLine.getResult().hasValue())
+            options = options.result(DEFAULT_RESULT_FILE);
+
+        Runner runner = new Runner(options.build());
+        if(commandLine.shouldList())
+            runner.list();
+        else
+            runner.run();
+    }
+}
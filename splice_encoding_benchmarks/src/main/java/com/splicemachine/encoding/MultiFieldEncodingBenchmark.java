@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.encoding;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how many rows per second MultiFieldEncoder can encode, and MultiFieldDecoder can decode, when
+ * every field in the row has the same type, for each of the sortable encodings in both sort orders.
+ * <p>
+ * The rows are generated up front, and each invocation encodes (or decodes) the next one, so that the
+ * benchmark sees the spread of values (and therefore of encoded lengths) that a real table would.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MultiFieldEncodingBenchmark{
+    private static final int NUM_ROWS = 1024;
+
+    @Param({"BOOLEAN", "BYTE", "SHORT", "INT", "LONG", "FLOAT", "DOUBLE", "BIGDECIMAL", "STRING", "BYTES"})
+    public FieldType type;
+
+    @Param({"false", "true"})
+    public boolean desc;
+
+    /**
+     * The number of fields in each row
+     */
+    @Param({"16"})
+    public int fieldsPerRow;
+
+    private long[] longs;
+    private double[] doubles;
+    private BigDecimal[] decimals;
+    private String[] strings;
+    private byte[][] bytes;
+    private byte[][] encodedRows;
+
+    private MultiFieldEncoder encoder;
+    private MultiFieldDecoder decoder;
+    private int nextRow;
+
+    public enum FieldType{
+        BOOLEAN, BYTE, SHORT, INT, LONG, FLOAT, DOUBLE, BIGDECIMAL, STRING, BYTES
+    }
+
+    @Setup
+    public void setUp(){
+        int numValues = NUM_ROWS*fieldsPerRow;
+        Random random = new Random(0);
+        longs = new long[numValues];
+        doubles = new double[numValues];
+        decimals = new BigDecimal[numValues];
+        strings = new String[numValues];
+        bytes = new byte[numValues][];
+        for(int i=0;i<numValues;i++){
+            //skew towards small magnitudes, as real keys and counters are
+            longs[i] = random.nextLong()>>random.nextInt(64);
+            doubles[i] = random.nextGaussian()*Math.pow(10,random.nextInt(12)-4);
+            decimals[i] = BigDecimal.valueOf(random.nextLong()>>random.nextInt(48),random.nextInt(8));
+            strings[i] = randomString(random,1+random.nextInt(24));
+            bytes[i] = new byte[1+random.nextInt(24)];
+            random.nextBytes(bytes[i]);
+        }
+
+        encoder = MultiFieldEncoder.create(fieldsPerRow);
+        decoder = MultiFieldDecoder.create();
+        encodedRows = new byte[NUM_ROWS][];
+        for(int i=0;i<NUM_ROWS;i++){
+            encodedRows[i] = encodeRow(i);
+        }
+        nextRow = 0;
+    }
+
+    @Benchmark
+    public byte[] encode(){
+        int row = nextRow;
+        nextRow = (row+1)%NUM_ROWS;
+        return encodeRow(row);
+    }
+
+    @Benchmark
+    public void decode(Blackhole blackhole){
+        int row = nextRow;
+        nextRow = (row+1)%NUM_ROWS;
+        decoder.set(encodedRows[row]);
+        for(int i=0;i<fieldsPerRow;i++){
+            switch(type){
+                case BOOLEAN: blackhole.consume(decoder.decodeNextBoolean(desc)); break;
+                case BYTE: blackhole.consume(decoder.decodeNextByte(desc)); break;
+                case SHORT: blackhole.consume(decoder.decodeNextShort(desc)); break;
+                case INT: blackhole.consume(decoder.decodeNextInt(desc)); break;
+                case LONG: blackhole.consume(decoder.decodeNextLong(desc)); break;
+                case FLOAT: blackhole.consume(decoder.decodeNextFloat(desc)); break;
+                case DOUBLE: blackhole.consume(decoder.decodeNextDouble(desc)); break;
+                case BIGDECIMAL: blackhole.consume(decoder.decodeNextBigDecimal(desc)); break;
+                case STRING: blackhole.consume(decoder.decodeNextString(desc)); break;
+                case BYTES: blackhole.consume(decoder.decodeNextBytes(desc)); break;
+                default: throw new IllegalStateException("Unexpected type "+type);
+            }
+        }
+    }
+
+    /**
+     * Skipping over the fields which aren't wanted is most of what a scan does with a row, so it's
+     * measured separately from decoding them.
+     */
+    @Benchmark
+    public int skip(){
+        int row = nextRow;
+        nextRow = (row+1)%NUM_ROWS;
+        decoder.set(encodedRows[row]);
+        int skipped = 0;
+        for(int i=0;i<fieldsPerRow;i++){
+            switch(type){
+                case BOOLEAN:
+                case BYTE:
+                    //a single byte, which may itself be 0x00, so it can't be skipped by looking for the delimiter
+                    decoder.seek(decoder.offset()+2);
+                    skipped+=2;
+                    break;
+                case SHORT:
+                case INT:
+                case LONG:
+                    if(desc){
+                        //the decoder has no way to skip a descending scalar without decoding it
+                        int offset = decoder.offset();
+                        decoder.decodeNextLong(true);
+                        skipped+=decoder.offset()-offset;
+                    }else
+                        skipped+=decoder.skipLong();
+                    break;
+                case FLOAT: skipped+=decoder.skipFloat(); break;
+                case DOUBLE: skipped+=decoder.skipDouble(); break;
+                default: skipped+=decoder.skip();
+            }
+        }
+        return skipped;
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+
+    private byte[] encodeRow(int row){
+        encoder.reset();
+        int start = row*fieldsPerRow;
+        for(int i=start;i<start+fieldsPerRow;i++){
+            switch(type){
+                case BOOLEAN: encoder.encodeNext((longs[i]&1)!=0,desc); break;
+                case BYTE: encoder.encodeNext((byte)longs[i],desc); break;
+                case SHORT: encoder.encodeNext((short)longs[i],desc); break;
+                case INT: encoder.encodeNext((int)longs[i],desc); break;
+                case LONG: encoder.encodeNext(longs[i],desc); break;
+                case FLOAT: encoder.encodeNext((float)doubles[i],desc); break;
+                case DOUBLE: encoder.encodeNext(doubles[i],desc); break;
+                case BIGDECIMAL: encoder.encodeNext(decimals[i],desc); break;
+                case STRING: encoder.encodeNext(strings[i],desc); break;
+                case BYTES: encoder.encodeNext(bytes[i],desc); break;
+                default: throw new IllegalStateException("Unexpected type "+type);
+            }
+        }
+        return encoder.build();
+    }
+
+    private static String randomString(Random random,int length){
+        char[] chars = new char[length];
+        for(int i=0;i<length;i++){
+            //mostly ASCII, with the occasional multi-byte character
+            chars[i] = random.nextInt(16)==0?(char)(0xA0+random.nextInt(0x700)):(char)('a'+random.nextInt(26));
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.storage;
+
+import com.carrotsearch.hppc.BitSet;
+import com.splicemachine.encoding.MultiFieldDecoder;
+import com.splicemachine.encoding.MultiFieldEncoder;
+import com.splicemachine.utils.kryo.KryoPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how many rows per second can be written with EntryEncoder, read back with EntryDecoder, and
+ * projected with EntryPredicateFilter, for a table whose columns cycle through long, float, double and
+ * string types.
+ * <p>
+ * Every {@code projectEvery}th column is returned by the filter, so {@code projectEvery=1} measures
+ * a {@code select *}, and larger values measure the skipping that a narrow projection does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EntryEncodingBenchmark{
+    private static final int NUM_ROWS = 1024;
+
+    /**
+     * The number of columns in the table
+     */
+    @Param({"16"})
+    public int numColumns;
+
+    @Param({"1", "4"})
+    public int projectEvery;
+
+    private long[] longs;
+    private double[] doubles;
+    private String[] strings;
+    private byte[][] encodedRows;
+
+    private EntryEncoder encoder;
+    private EntryDecoder decoder;
+    private EntryPredicateFilter predicateFilter;
+    private EntryAccumulator accumulator;
+    private int nextRow;
+
+    @Setup
+    public void setUp() throws IOException{
+        BitSet setCols = new BitSet(numColumns);
+        BitSet scalarFields = new BitSet(numColumns);
+        BitSet floatFields = new BitSet(numColumns);
+        BitSet doubleFields = new BitSet(numColumns);
+        BitSet fieldsToReturn = new BitSet(numColumns);
+        for(int i=0;i<numColumns;i++){
+            setCols.set(i);
+            switch(i%4){
+                case 0: scalarFields.set(i); break;
+                case 1: floatFields.set(i); break;
+                case 2: doubleFields.set(i); break;
+                default: //strings are untyped
+            }
+            if(i%projectEvery==0)
+                fieldsToReturn.set(i);
+        }
+
+        Random random = new Random(0);
+        int numValues = NUM_ROWS*numColumns;
+        longs = new long[numValues];
+        doubles = new double[numValues];
+        strings = new String[numValues];
+        for(int i=0;i<numValues;i++){
+            longs[i] = random.nextLong()>>random.nextInt(64);
+            doubles[i] = random.nextGaussian()*1000d;
+            char[] chars = new char[1+random.nextInt(24)];
+            for(int c=0;c<chars.length;c++){
+                chars[c] = (char)('a'+random.nextInt(26));
+            }
+            strings[i] = new String(chars);
+        }
+
+        encoder = EntryEncoder.create(new KryoPool(1),numColumns,setCols,scalarFields,floatFields,doubleFields);
+        decoder = new EntryDecoder();
+        predicateFilter = new EntryPredicateFilter(fieldsToReturn);
+        accumulator = predicateFilter.newAccumulator();
+        encodedRows = new byte[NUM_ROWS][];
+        for(int i=0;i<NUM_ROWS;i++){
+            encodedRows[i] = encodeRow(i);
+        }
+        nextRow = 0;
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException{
+        int row = nextRow;
+        nextRow = (row+1)%NUM_ROWS;
+        return encodeRow(row);
+    }
+
+    @Benchmark
+    public void decode(Blackhole blackhole) throws IOException{
+        int row = nextRow;
+        nextRow = (row+1)%NUM_ROWS;
+        decoder.set(encodedRows[row]);
+        MultiFieldDecoder fieldDecoder = decoder.getEntryDecoder();
+        for(int i=0;i<numColumns;i++){
+            switch(i%4){
+                case 0: blackhole.consume(fieldDecoder.decodeNextLong()); break;
+                case 1: blackhole.consume(fieldDecoder.decodeNextFloat()); break;
+                case 2: blackhole.consume(fieldDecoder.decodeNextDouble()); break;
+                default: blackhole.consume(fieldDecoder.decodeNextString());
+            }
+        }
+    }
+
+    @Benchmark
+    public byte[] filter() throws IOException{
+        int row = nextRow;
+        nextRow = (row+1)%NUM_ROWS;
+        accumulator.reset();
+        decoder.set(encodedRows[row]);
+        predicateFilter.match(decoder,accumulator);
+        return accumulator.finish();
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+
+    private byte[] encodeRow(int row) throws IOException{
+        MultiFieldEncoder fieldEncoder = encoder.getEntryEncoder();
+        fieldEncoder.reset();
+        int start = row*numColumns;
+        for(int i=0;i<numColumns;i++){
+            switch(i%4){
+                case 0: fieldEncoder.encodeNext(longs[start+i]); break;
+                case 1: fieldEncoder.encodeNext((float)doubles[start+i]); break;
+                case 2: fieldEncoder.encodeNext(doubles[start+i]); break;
+                default: fieldEncoder.encodeNext(strings[start+i]);
+            }
+        }
+        return encoder.encode();
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.storage.index;
+
+import com.carrotsearch.hppc.BitSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how many BitIndexes per second each of the index encodings can build and encode, and how many
+ * it can wrap and walk (the way EntryPredicateFilter does for every row a scan reads), for rows in
+ * which the given fraction of the columns are set.
+ * <p>
+ * Lazy indexes are only ever produced by wrapping an encoded index, so the LAZY variant encodes with the
+ * uncompressed encoding, and differs from UNCOMPRESSED only in how it decodes.
+ * <p>
+ * The size of each encoded index is printed during setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BitIndexBenchmark{
+
+    @Param({"UNCOMPRESSED", "DENSE", "SPARSE", "LAZY"})
+    public Variant variant;
+
+    /**
+     * The number of columns in the table
+     */
+    @Param({"64"})
+    public int numColumns;
+
+    /**
+     * The fraction of the columns which are set in each row
+     */
+    @Param({"0.05", "0.5", "1.0"})
+    public double density;
+
+    private BitSet setCols;
+    private BitSet scalarFields;
+    private BitSet floatFields;
+    private BitSet doubleFields;
+    private byte[] encoded;
+
+    public enum Variant{
+        UNCOMPRESSED, DENSE, SPARSE, LAZY
+    }
+
+    @Setup
+    public void setUp(){
+        Random random = new Random(0);
+        setCols = new BitSet(numColumns);
+        scalarFields = new BitSet(numColumns);
+        floatFields = new BitSet(numColumns);
+        doubleFields = new BitSet(numColumns);
+        for(int i=0;i<numColumns;i++){
+            if(random.nextDouble()>=density) continue;
+            setCols.set(i);
+            //a mix of the column types a real table has
+            switch(i%4){
+                case 0: scalarFields.set(i); break;
+                case 1: floatFields.set(i); break;
+                case 2: doubleFields.set(i); break;
+                default: //untyped
+            }
+        }
+        if(setCols.isEmpty()){
+            setCols.set(0);
+            scalarFields.set(0);
+        }
+        encoded = encode();
+        System.out.printf("%n%s encodes %d of %d columns in %d bytes%n",variant,setCols.cardinality(),numColumns,encoded.length);
+    }
+
+    @Benchmark
+    public byte[] encode(){
+        switch(variant){
+            case DENSE:
+                return BitIndexing.compressedBitMap(setCols,scalarFields,floatFields,doubleFields).encode();
+            case SPARSE:
+                return BitIndexing.sparseBitMap(setCols,scalarFields,floatFields,doubleFields).encode();
+            default:
+                return BitIndexing.uncompressedBitMap(setCols,scalarFields,floatFields,doubleFields).encode();
+        }
+    }
+
+    @Benchmark
+    public void decode(Blackhole blackhole){
+        BitIndex index;
+        switch(variant){
+            case DENSE:
+                index = BitIndexing.compressedBitMap(encoded,0,encoded.length);
+                break;
+            case SPARSE:
+                index = BitIndexing.sparseBitMap(encoded,0,encoded.length);
+                break;
+            case LAZY:
+                index = new UncompressedLazyBitIndex(encoded,0,encoded.length);
+                break;
+            default:
+                index = BitIndexing.uncompressedBitMap(encoded,0,encoded.length);
+        }
+        for(int i=index.nextSetBit(0);i>=0;i=index.nextSetBit(i+1)){
+            blackhole.consume(index.isScalarType(i));
+            blackhole.consume(index.isFloatType(i));
+            blackhole.consume(index.isDoubleType(i));
+        }
+    }
+}
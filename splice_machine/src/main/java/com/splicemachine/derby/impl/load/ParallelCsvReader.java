@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.impl.load;
+
+import org.spark_project.guava.util.concurrent.ThreadFactoryBuilder;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads a UTF-8 CSV stream in large blocks, splits each block into chunks at record boundaries, and tokenizes
+ * and parses the chunks in parallel, returning the parsed records in the order they appear in the stream.
+ * <p>
+ * Record boundaries are found by skipping through each block with a {@link Utf8CsvTokenizer}, which tracks quotes
+ * across lines exactly as the parsing does, so a chunk never starts in the middle of a quoted column. A record
+ * which is cut off by the end of a block is carried over to the start of the next one. Only the skipping and the
+ * reading happen on the calling thread; while the chunks of one block are parsed, the next block is read and split
+ * into a second buffer.
+ * <p>
+ * This is not thread safe: a single thread must consume the records.
+ *
+ * @param <R> the type of a parsed record
+ */
+public class ParallelCsvReader<R> implements Iterator<R>, Closeable{
+
+    /**
+     * Parses the records of a chunk. It is called from several threads at once, with different chunks.
+     */
+    public interface ChunkParser<R>{
+        /**
+         * @param records a tokenizer positioned at the start of the chunk, which ends at the end of its range
+         * @param results the list to add the parsed records to, in order
+         */
+        void parse(Utf8CsvTokenizer records,List<R> results) throws Exception;
+    }
+
+    private final InputStream input;
+    private final char quoteChar;
+    private final char delimiterChar;
+    private final int maxLinesPerRow;
+    private final int chunkSize;
+    private final ChunkParser<R> parser;
+    private final Utf8CsvTokenizer scanner;
+    private final ExecutorService executor;
+
+    /* The block being parsed and the block being read alternate between two buffers */
+    private final byte[][] buffers=new byte[2][];
+    private int latestBuffer=1;
+    private int tailOffset;
+    private int tailLength;
+    private int lineNumber;
+    private boolean endOfInput;
+
+    private final ArrayDeque<Chunk<R>> pending=new ArrayDeque<>();
+    private Iterator<R> current=Collections.emptyIterator();
+    private boolean closed;
+
+    /**
+     * @param input          the stream to read, which is closed when the records run out or the reader is closed
+     * @param quoteChar      the quote character, which must be ASCII
+     * @param delimiterChar  the column delimiter, which must be ASCII
+     * @param maxLinesPerRow the maximum number of lines a quoted column may span, or 0 for no limit
+     * @param chunkSize      the approximate number of bytes in a chunk
+     * @param parallelism    the number of chunks to parse at once. With 1, chunks are parsed on the calling thread
+     * @param parser         the parser of a chunk
+     */
+    public ParallelCsvReader(InputStream input,
+                             char quoteChar,
+                             char delimiterChar,
+                             int maxLinesPerRow,
+                             int chunkSize,
+                             int parallelism,
+                             ChunkParser<R> parser){
+        this.input=input;
+        this.quoteChar=quoteChar;
+        this.delimiterChar=delimiterChar;
+        this.maxLinesPerRow=maxLinesPerRow;
+        this.chunkSize=Math.max(chunkSize,1);
+        this.parser=parser;
+        this.scanner=new Utf8CsvTokenizer(quoteChar,delimiterChar,maxLinesPerRow);
+        int blockSize=(int)Math.min(Integer.MAX_VALUE-8,(long)this.chunkSize*Math.max(parallelism,1));
+        this.buffers[0]=new byte[blockSize];
+        this.buffers[1]=new byte[blockSize];
+        if(parallelism>1){
+            ThreadPoolExecutor tpe=new ThreadPoolExecutor(parallelism,parallelism,
+                    60,TimeUnit.SECONDS,new LinkedBlockingQueue<Runnable>(),
+                    new ThreadFactoryBuilder().setNameFormat("csv-import-parser-%d").setDaemon(true).build());
+            tpe.allowCoreThreadTimeOut(true);
+            this.executor=tpe;
+        }else
+            this.executor=null;
+    }
+
+    @Override
+    public boolean hasNext(){
+        try{
+            while(!current.hasNext()){
+                if(closed)
+                    return false;
+                Chunk<R> chunk=pending.poll();
+                if(chunk==null){
+                    if(endOfInput){
+                        close();
+                        return false;
+                    }
+                    readBlock();
+                    continue;
+                }
+                /*
+                 * Once we reach the chunks of the latest block, every chunk of the block before it has been
+                 * parsed, so its buffer is free: read the next block into it while the latest one is parsed.
+                 */
+                if(!endOfInput && chunk.buffer==latestBuffer)
+                    readBlock();
+                current=chunk.results().iterator();
+            }
+            return true;
+        }catch(IOException ioe){
+            throw new RuntimeException(ioe);
+        }
+    }
+
+    @Override
+    public R next(){
+        if(!hasNext()) throw new NoSuchElementException();
+        return current.next();
+    }
+
+    @Override
+    public void remove(){
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() throws IOException{
+        if(closed) return;
+        closed=true;
+        for(Chunk<R> chunk : pending){
+            chunk.task.cancel(true);
+        }
+        pending.clear();
+        if(executor!=null)
+            executor.shutdownNow();
+        input.close();
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+
+    /**
+     * Read the next block into the buffer which is not in use, after the tail of the previous block, and submit
+     * its chunks. If the block does not hold a single complete record, the buffer is grown until it does.
+     */
+    private void readBlock() throws IOException{
+        int next=latestBuffer^1;
+        byte[] previous=buffers[latestBuffer];
+        byte[] buffer=buffers[next];
+        if(buffer.length<previous.length)
+            buffer=buffers[next]=new byte[previous.length];
+        System.arraycopy(previous,tailOffset,buffer,0,tailLength);
+        int filled=tailLength;
+        latestBuffer=next;
+
+        while(true){
+            filled=fill(buffer,filled);
+            scanner.reset(buffer,0,filled,lineNumber,endOfInput);
+            int chunkStart=0;
+            int chunkLine=lineNumber;
+            while(scanner.skip()){
+                if(scanner.getPosition()-chunkStart>=chunkSize){
+                    submit(buffer,chunkStart,scanner.getPosition(),chunkLine);
+                    chunkStart=scanner.getPosition();
+                    chunkLine=scanner.getLineNumber();
+                }
+            }
+            int end=scanner.getPosition();
+            if(end==0 && !endOfInput){
+                // a record larger than the block
+                buffer=buffers[next]=Arrays.copyOf(buffer,buffer.length*2);
+                continue;
+            }
+            if(end>chunkStart)
+                submit(buffer,chunkStart,end,chunkLine);
+            tailOffset=end;
+            tailLength=filled-end;
+            lineNumber=scanner.getLineNumber();
+            return;
+        }
+    }
+
+    private int fill(byte[] buffer,int filled) throws IOException{
+        while(filled<buffer.length){
+            int read=input.read(buffer,filled,buffer.length-filled);
+            if(read<0){
+                endOfInput=true;
+                break;
+            }
+            filled+=read;
+        }
+        return filled;
+    }
+
+    private void submit(final byte[] buffer,final int start,final int end,final int firstLine){
+        FutureTask<List<R>> task=new FutureTask<>(new Callable<List<R>>(){
+            @Override
+            public List<R> call() throws Exception{
+                Utf8CsvTokenizer records=new Utf8CsvTokenizer(quoteChar,delimiterChar,maxLinesPerRow);
+                records.reset(buffer,start,end,firstLine,true);
+                List<R> results=new ArrayList<>();
+                parser.parse(records,results);
+                return results;
+            }
+        });
+        if(executor!=null)
+            executor.execute(task);
+        pending.add(new Chunk<>(task,latestBuffer));
+    }
+
+    private static final class Chunk<R>{
+        final FutureTask<List<R>> task;
+        final int buffer;
+
+        Chunk(FutureTask<List<R>> task,int buffer){
+            this.task=task;
+            this.buffer=buffer;
+        }
+
+        List<R> results(){
+            task.run(); // does nothing if a parser thread has run it already
+            try{
+                return task.get();
+            }catch(InterruptedException ie){
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(ie);
+            }catch(ExecutionException ee){
+                Throwable cause=ee.getCause();
+                if(cause instanceof RuntimeException)
+                    throw (RuntimeException)cause;
+                throw new RuntimeException(cause);
+            }
+        }
+    }
+}
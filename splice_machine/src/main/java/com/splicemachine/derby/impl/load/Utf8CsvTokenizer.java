@@ -0,0 +1,330 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.impl.load;
+
+import org.supercsv.exception.SuperCsvException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tokenizes CSV records straight out of a buffer of UTF-8 bytes, without decoding them into chars or
+ * copying them into Strings.
+ * <p>
+ * The rules are those of {@link com.splicemachine.derby.stream.function.QuoteTrackingTokenizer} (with surrounding
+ * spaces kept, and empty lines ignored), and so are the errors and the line numbers in them. A column is
+ * described by its offset and length in the buffer: quotes are removed and escaped quotes unescaped by moving
+ * the bytes of the column in place, so the buffer is modified as records are read. This is safe on UTF-8 because
+ * no byte of a multi-byte character is ever equal to an ASCII quote, delimiter or line terminator.
+ * <p>
+ * The same state machine can also {@link #skip()} records without touching the buffer, which is how a file is
+ * split into chunks at record boundaries before the chunks are tokenized in parallel.
+ */
+public class Utf8CsvTokenizer{
+    private static final byte NEWLINE='\n';
+    private static final byte CARRIAGE_RETURN='\r';
+
+    private static final int RECORD=0;
+    private static final int END=1;
+    private static final int INCOMPLETE=2;
+    private static final int TOO_MANY_LINES=3;
+    private static final int UNTERMINATED_QUOTE=4;
+
+    private final byte quoteChar;
+    private final byte delimiterChar;
+    private final int maxLinesPerRow;
+
+    private byte[] buffer;
+    private int position;
+    private int limit;
+    private boolean endOfInput;
+    private int lineNumber;
+    private int quoteScopeStartingLine;
+
+    private int columnCount;
+    private int[] offsets=new int[16];
+    private int[] lengths=new int[16];
+    private boolean[] quoted=new boolean[16];
+
+    /**
+     * @param quoteChar      the quote character, which must be ASCII
+     * @param delimiterChar  the column delimiter, which must be ASCII
+     * @param maxLinesPerRow the maximum number of lines a quoted column may span, or 0 for no limit
+     */
+    public Utf8CsvTokenizer(char quoteChar,char delimiterChar,int maxLinesPerRow){
+        assert isAscii(quoteChar) && isAscii(delimiterChar):"Only ASCII quotes and delimiters can be matched to bytes";
+        this.quoteChar=(byte)quoteChar;
+        this.delimiterChar=(byte)delimiterChar;
+        this.maxLinesPerRow=maxLinesPerRow;
+    }
+
+    /**
+     * @return true if {@code c} can be used as the quote or delimiter of a tokenizer
+     */
+    public static boolean isAscii(int c){
+        return c>=0 && c<0x80 && c!=NEWLINE && c!=CARRIAGE_RETURN;
+    }
+
+    /**
+     * Start reading records from a new range of bytes.
+     *
+     * @param buffer     the bytes
+     * @param offset     the offset of the first byte, which must start a line
+     * @param limit      the offset after the last byte
+     * @param lineNumber the number of lines before {@code offset}
+     * @param endOfInput whether the input ends at {@code limit}. If not, {@link #skip()} stops before a record
+     *                   which is cut off by the end of the range
+     */
+    public void reset(byte[] buffer,int offset,int limit,int lineNumber,boolean endOfInput){
+        this.buffer=buffer;
+        this.position=offset;
+        this.limit=limit;
+        this.lineNumber=lineNumber;
+        this.endOfInput=endOfInput;
+        this.columnCount=0;
+    }
+
+    /**
+     * Read the next record.
+     *
+     * @return false if there are no more records
+     * @throws SuperCsvException if the record has a quoted column which spans too many lines, or is not closed
+     *                           before the end of the input. The record is skipped (up to the end of the line the
+     *                           error was found on), so reading can go on.
+     */
+    public boolean next(){
+        int status=readRecord(true);
+        switch(status){
+            case RECORD:
+                return true;
+            case TOO_MANY_LINES:
+                throw new SuperCsvException(maxLinesPerRow==1?
+                        String.format("unexpected end of line while reading quoted column on line %d",lineNumber):
+                        String.format("max number of lines to read exceeded while reading quoted column"+
+                                " beginning on line %d and ending on line %d",quoteScopeStartingLine,lineNumber));
+            case UNTERMINATED_QUOTE:
+                throw new SuperCsvException(String.format("unexpected end of file while reading quoted column "+
+                        "beginning on line %d and ending on line %d",quoteScopeStartingLine,lineNumber));
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Move past the next record without tokenizing it. A record which {@link #next()} would reject counts as a
+     * record too, since it is skipped the same way.
+     *
+     * @return false if there are no more complete records. {@link #getPosition()} is then the end of the last
+     * complete record
+     */
+    public boolean skip(){
+        int status=readRecord(false);
+        return status!=END && status!=INCOMPLETE;
+    }
+
+    /**
+     * @return the offset of the next byte to read
+     */
+    public int getPosition(){
+        return position;
+    }
+
+    /**
+     * @return the number of lines read so far, including those before the range
+     */
+    public int getLineNumber(){
+        return lineNumber;
+    }
+
+    public byte[] getBuffer(){
+        return buffer;
+    }
+
+    public int getColumnCount(){
+        return columnCount;
+    }
+
+    public int getOffset(int column){
+        return offsets[column];
+    }
+
+    public int getLength(int column){
+        return lengths[column];
+    }
+
+    public boolean isQuoted(int column){
+        return quoted[column];
+    }
+
+    /**
+     * @return the column decoded into a String, or null if it is empty
+     */
+    public String getString(int column){
+        int length=lengths[column];
+        return length==0?null:new String(buffer,offsets[column],length,StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the columns of the current record, as {@code QuoteTrackingTokenizer} would have returned them
+     */
+    public List<String> getColumns(){
+        List<String> columns=new ArrayList<>(columnCount);
+        for(int i=0;i<columnCount;i++){
+            columns.add(getString(i));
+        }
+        return columns;
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+
+    /**
+     * Read a record, skipping empty lines before it. When {@code tokenize} is set, the columns are recorded and
+     * compacted in place; otherwise the buffer is left as it is.
+     */
+    private int readRecord(boolean tokenize){
+        final byte[] buf=buffer;
+        final int startPosition=position;
+        final int startLine=lineNumber;
+        int pos=position;
+        columnCount=0;
+
+        // skip empty lines
+        while(true){
+            if(pos==limit){
+                if(endOfInput){
+                    position=pos;
+                    return END;
+                }
+                return incomplete(startPosition,startLine);
+            }
+            byte b=buf[pos];
+            if(b==NEWLINE){
+                pos++;
+            }else if(b==CARRIAGE_RETURN){
+                if(pos+1==limit && !endOfInput)
+                    return incomplete(startPosition,startLine);
+                pos++;
+                if(pos<limit && buf[pos]==NEWLINE) pos++;
+            }else
+                break;
+            lineNumber++;
+        }
+        lineNumber++;
+
+        boolean inQuotes=false;
+        boolean wasQuoted=false;
+        int write=pos;
+        int columnStart=pos;
+        while(true){
+            if(pos==limit){
+                if(!endOfInput)
+                    return incomplete(startPosition,startLine);
+                if(!inQuotes){
+                    if(tokenize) addColumn(columnStart,write-columnStart,wasQuoted);
+                    position=pos;
+                    return RECORD;
+                }
+                position=pos;
+                return tooManyLines()?TOO_MANY_LINES:UNTERMINATED_QUOTE;
+            }
+            byte b=buf[pos];
+            if(b==NEWLINE || b==CARRIAGE_RETURN){
+                if(b==CARRIAGE_RETURN && pos+1==limit && !endOfInput)
+                    return incomplete(startPosition,startLine); // can't tell whether a \n follows
+                pos++;
+                if(b==CARRIAGE_RETURN && pos<limit && buf[pos]==NEWLINE) pos++;
+                if(!inQuotes){
+                    if(tokenize) addColumn(columnStart,write-columnStart,wasQuoted);
+                    position=pos;
+                    return RECORD;
+                }
+                // a line break within a quoted column
+                if(tooManyLines()){
+                    position=pos;
+                    return TOO_MANY_LINES;
+                }
+                if(pos==limit){
+                    if(!endOfInput)
+                        return incomplete(startPosition,startLine);
+                    position=pos;
+                    return UNTERMINATED_QUOTE;
+                }
+                lineNumber++;
+                if(tokenize) buf[write]=NEWLINE;
+                write++;
+            }else if(inQuotes){
+                if(b==quoteChar){
+                    if(pos+1==limit && !endOfInput)
+                        return incomplete(startPosition,startLine); // can't tell whether it is escaped
+                    if(pos+1<limit && buf[pos+1]==quoteChar){
+                        // an escaped quote
+                        if(tokenize) buf[write]=b;
+                        write++;
+                        pos+=2;
+                    }else{
+                        inQuotes=false;
+                        pos++;
+                    }
+                }else{
+                    if(tokenize) buf[write]=b;
+                    write++;
+                    pos++;
+                }
+            }else if(b==delimiterChar){
+                if(tokenize) addColumn(columnStart,write-columnStart,wasQuoted);
+                pos++;
+                write=pos;
+                columnStart=pos;
+                wasQuoted=false;
+            }else if(b==quoteChar){
+                inQuotes=true;
+                wasQuoted=true;
+                quoteScopeStartingLine=lineNumber;
+                pos++;
+            }else{
+                if(tokenize) buf[write]=b;
+                write++;
+                pos++;
+            }
+        }
+    }
+
+    private boolean tooManyLines(){
+        return maxLinesPerRow>0 && lineNumber-quoteScopeStartingLine+1>=maxLinesPerRow;
+    }
+
+    private int incomplete(int startPosition,int startLine){
+        position=startPosition;
+        lineNumber=startLine;
+        columnCount=0;
+        return INCOMPLETE;
+    }
+
+    private void addColumn(int offset,int length,boolean wasQuoted){
+        if(columnCount==offsets.length){
+            int newLength=offsets.length*2;
+            offsets=Arrays.copyOf(offsets,newLength);
+            lengths=Arrays.copyOf(lengths,newLength);
+            quoted=Arrays.copyOf(quoted,newLength);
+        }
+        offsets[columnCount]=offset;
+        lengths[columnCount]=length;
+        quoted[columnCount]=wasQuoted;
+        columnCount++;
+    }
+}
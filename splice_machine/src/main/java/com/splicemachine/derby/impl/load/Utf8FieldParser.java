@@ -0,0 +1,250 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.impl.load;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.services.io.StoredFormatIds;
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
+import com.splicemachine.db.iapi.types.SQLDate;
+
+import java.math.BigDecimal;
+
+/**
+ * Sets numeric and date columns straight from the UTF-8 bytes of an imported field.
+ * <p>
+ * Only values in the common, unambiguous forms are parsed here: plain decimal integers, decimals and doubles
+ * which can be converted exactly, and ISO dates. Anything else (including every malformed or out of range value)
+ * is left to the caller, who sets the column from a String as before, so that the same values are accepted and
+ * the same errors are raised as with {@link DataValueDescriptor#setValue(String)}.
+ */
+public class Utf8FieldParser{
+    /* The largest integer a double holds exactly, and the powers of ten a double holds exactly */
+    private static final long MAX_EXACT_DOUBLE_MANTISSA=1L<<53;
+    private static final double[] EXACT_POWERS_OF_TEN={
+            1e0,1e1,1e2,1e3,1e4,1e5,1e6,1e7,1e8,1e9,1e10,1e11,
+            1e12,1e13,1e14,1e15,1e16,1e17,1e18,1e19,1e20,1e21,1e22
+    };
+    private static final int MAX_LONG_DIGITS=18;
+
+    private Utf8FieldParser(){}
+
+    /**
+     * @return true if the field should be imported as null: it is empty, or it is an unquoted {@code null}
+     * in any case.
+     */
+    public static boolean isNull(byte[] buffer,int offset,int length,boolean quoted){
+        if(length==0) return true;
+        if(quoted || length!=4) return false;
+        return (buffer[offset]|0x20)=='n'
+                && (buffer[offset+1]|0x20)=='u'
+                && (buffer[offset+2]|0x20)=='l'
+                && (buffer[offset+3]|0x20)=='l';
+    }
+
+    /**
+     * Set a column from the bytes of a field, if its type and value allow it.
+     *
+     * @param dvd         the column
+     * @param buffer      the bytes
+     * @param offset      the offset of the field
+     * @param length      the length of the field, which must not be null
+     * @param isoDates    whether dates are in the default format
+     * @return false if the column was not set, and must be set from the field's String instead
+     * @throws StandardException if the column rejects the value
+     */
+    public static boolean setValue(DataValueDescriptor dvd,byte[] buffer,int offset,int length,boolean isoDates) throws StandardException{
+        int typeFormatId=dvd.getTypeFormatId();
+        if(typeFormatId==StoredFormatIds.SQL_DATE_ID){
+            // dates are not trimmed
+            return isoDates && dvd instanceof SQLDate && setDate((SQLDate)dvd,buffer,offset,offset+length);
+        }
+
+        // numbers are trimmed, as String.trim() does
+        int end=offset+length;
+        while(offset<end && (buffer[offset]&0xff)<=' ') offset++;
+        while(end>offset && (buffer[end-1]&0xff)<=' ') end--;
+        if(offset==end) return false;
+
+        switch(typeFormatId){
+            case StoredFormatIds.SQL_INTEGER_ID:
+                return setInteger(dvd,buffer,offset,end,Integer.MIN_VALUE,Integer.MAX_VALUE);
+            case StoredFormatIds.SQL_SMALLINT_ID:
+                return setInteger(dvd,buffer,offset,end,Short.MIN_VALUE,Short.MAX_VALUE);
+            case StoredFormatIds.SQL_TINYINT_ID:
+                return setInteger(dvd,buffer,offset,end,Byte.MIN_VALUE,Byte.MAX_VALUE);
+            case StoredFormatIds.SQL_LONGINT_ID:
+                return setInteger(dvd,buffer,offset,end,Long.MIN_VALUE,Long.MAX_VALUE);
+            case StoredFormatIds.SQL_DOUBLE_ID:
+            case StoredFormatIds.SQL_REAL_ID:
+                return setDouble(dvd,buffer,offset,end);
+            case StoredFormatIds.SQL_DECIMAL_ID:
+                return setDecimal(dvd,buffer,offset,end);
+            default:
+                return false;
+        }
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+
+    private static boolean setInteger(DataValueDescriptor dvd,byte[] buffer,int offset,int end,long min,long max) throws StandardException{
+        boolean negative=false;
+        byte sign=buffer[offset];
+        if(sign=='-' || sign=='+'){
+            negative=sign=='-';
+            offset++;
+        }
+        int digits=end-offset;
+        if(digits<=0 || digits>MAX_LONG_DIGITS) return false;
+        long value=0L;
+        for(int i=offset;i<end;i++){
+            int d=buffer[i]-'0';
+            if(d<0 || d>9) return false;
+            value=value*10+d;
+        }
+        if(negative) value=-value;
+        if(value<min || value>max) return false;
+        switch(dvd.getTypeFormatId()){
+            case StoredFormatIds.SQL_LONGINT_ID:
+                dvd.setValue(value);
+                break;
+            case StoredFormatIds.SQL_SMALLINT_ID:
+                dvd.setValue((short)value);
+                break;
+            case StoredFormatIds.SQL_TINYINT_ID:
+                dvd.setValue((byte)value);
+                break;
+            default:
+                dvd.setValue((int)value);
+        }
+        return true;
+    }
+
+    /**
+     * Parse a double when it can be computed with a single, correctly rounded multiplication or division:
+     * when its digits fit in 53 bits and its decimal exponent is at most 22 either way.
+     */
+    private static boolean setDouble(DataValueDescriptor dvd,byte[] buffer,int offset,int end) throws StandardException{
+        boolean negative=false;
+        byte sign=buffer[offset];
+        if(sign=='-' || sign=='+'){
+            negative=sign=='-';
+            offset++;
+        }
+        long mantissa=0L;
+        int digits=0;
+        int exponent=0;
+        boolean seenPoint=false;
+        int i=offset;
+        for(;i<end;i++){
+            byte b=buffer[i];
+            if(b=='.'){
+                if(seenPoint) return false;
+                seenPoint=true;
+                continue;
+            }
+            int d=b-'0';
+            if(d<0 || d>9) break;
+            mantissa=mantissa*10+d;
+            if(mantissa>MAX_EXACT_DOUBLE_MANTISSA) return false;
+            digits++;
+            if(seenPoint) exponent--;
+        }
+        if(digits==0) return false;
+        if(i<end){
+            byte b=buffer[i];
+            if(b!='e' && b!='E') return false;
+            i++;
+            boolean negativeExponent=false;
+            if(i<end && (buffer[i]=='-' || buffer[i]=='+')){
+                negativeExponent=buffer[i]=='-';
+                i++;
+            }
+            if(i==end || end-i>3) return false;
+            int e=0;
+            for(;i<end;i++){
+                int d=buffer[i]-'0';
+                if(d<0 || d>9) return false;
+                e=e*10+d;
+            }
+            exponent+=negativeExponent?-e:e;
+        }
+
+        double value=(double)mantissa;
+        if(mantissa!=0L){
+            if(exponent<-22 || exponent>22) return false;
+            if(exponent<0) value/=EXACT_POWERS_OF_TEN[-exponent];
+            else value*=EXACT_POWERS_OF_TEN[exponent];
+        }
+        dvd.setValue(negative?-value:value);
+        return true;
+    }
+
+    private static boolean setDecimal(DataValueDescriptor dvd,byte[] buffer,int offset,int end) throws StandardException{
+        boolean negative=false;
+        byte sign=buffer[offset];
+        if(sign=='-' || sign=='+'){
+            negative=sign=='-';
+            offset++;
+        }
+        long unscaled=0L;
+        int digits=0;
+        int scale=0;
+        boolean seenPoint=false;
+        for(int i=offset;i<end;i++){
+            byte b=buffer[i];
+            if(b=='.'){
+                if(seenPoint) return false;
+                seenPoint=true;
+                continue;
+            }
+            int d=b-'0';
+            if(d<0 || d>9 || ++digits>MAX_LONG_DIGITS) return false;
+            unscaled=unscaled*10+d;
+            if(seenPoint) scale++;
+        }
+        if(digits==0) return false;
+        dvd.setBigDecimal(BigDecimal.valueOf(negative?-unscaled:unscaled,scale));
+        return true;
+    }
+
+    /**
+     * Parse a date in the form yyyy-mm-dd, leaving dates which are out of range to the String parser (which
+     * tries other formats before giving up).
+     */
+    private static boolean setDate(SQLDate dvd,byte[] buffer,int offset,int end){
+        if(end-offset!=10 || buffer[offset+4]!='-' || buffer[offset+7]!='-') return false;
+        int year=digits(buffer,offset,4);
+        int month=digits(buffer,offset+5,2);
+        int day=digits(buffer,offset+8,2);
+        if(year<0 || month<0 || day<0) return false;
+        try{
+            dvd.setValue(SQLDate.computeEncodedDate(year,month,day));
+        }catch(StandardException se){
+            return false;
+        }
+        return true;
+    }
+
+    private static int digits(byte[] buffer,int offset,int count){
+        int value=0;
+        for(int i=offset;i<offset+count;i++){
+            int d=buffer[i]-'0';
+            if(d<0 || d>9) return -1;
+            value=value*10+d;
+        }
+        return value;
+    }
+}
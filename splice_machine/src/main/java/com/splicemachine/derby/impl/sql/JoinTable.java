@@ -16,6 +16,7 @@ package com.splicemachine.derby.impl.sql;
 
 import com.splicemachine.db.iapi.error.StandardException;
 import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.hash.BloomFilter;
 
 import java.io.IOException;
 import java.util.Iterator;
@@ -28,6 +29,24 @@ public interface JoinTable extends AutoCloseable{
 
     interface Factory{
         JoinTable newTable();
+
+        /**
+         * @return an estimate of the number of bytes of memory held by this factory
+         */
+        long getEstimatedSize();
+
+        /**
+         * @param maxKeys the maximum number of distinct join keys to build a filter for
+         * @return a Bloom filter over the encoded join keys of the inner table, or {@code null} if the
+         * inner table has more than {@code maxKeys} distinct keys, or the factory cannot provide one
+         */
+        BloomFilter getKeyFilter(int maxKeys);
+
+        /**
+         * Release any resources (e.g. spill files) held by this factory. Called once the factory
+         * has left the cache and no tables created by it remain open.
+         */
+        void close();
     }
 
     Iterator<ExecRow> fetchInner(ExecRow outer) throws IOException, StandardException;
@@ -1133,7 +1133,8 @@ public class SpliceGenericResultSetFactory implements ResultSetFactory {
                                              boolean samplingOnly,
                                              boolean outputKeysOnly,
                                              boolean skipSampling,
-                                             String indexName)
+                                             String indexName,
+                                             boolean bulkImportColumnar)
             throws StandardException {
         try{
             ConvertedResultSet below = (ConvertedResultSet)source;
@@ -1141,7 +1142,7 @@ public class SpliceGenericResultSetFactory implements ResultSetFactory {
                     statusDirectory, failBadRecordCount, skipConflictDetection, skipWAL,
                     optimizerEstimatedRowCount,optimizerEstimatedCost, tableVersion,
                     delimited,escaped,lines,storedAs,location, compression, partitionBy,bulkImportDirectory,
-            samplingOnly, outputKeysOnly, skipSampling, indexName);
+            samplingOnly, outputKeysOnly, skipSampling, indexName, bulkImportColumnar);
 
             source.getActivation().getLanguageConnectionContext().getAuthorizer().authorize(source.getActivation(), 1);
             top.markAsTopResultSet();
@@ -16,49 +16,144 @@ package com.splicemachine.derby.impl.sql.execute.operations;
 
 import org.spark_project.guava.cache.Cache;
 import org.spark_project.guava.cache.CacheBuilder;
+import org.spark_project.guava.cache.RemovalCause;
+import org.spark_project.guava.cache.RemovalListener;
+import org.spark_project.guava.cache.RemovalNotification;
+import org.spark_project.guava.cache.Weigher;
+import com.splicemachine.EngineDriver;
+import com.splicemachine.access.api.SConfiguration;
 import com.splicemachine.db.iapi.error.StandardException;
 import com.splicemachine.db.iapi.sql.execute.ExecRow;
 import com.splicemachine.derby.impl.sql.JoinTable;
+import com.splicemachine.derby.management.BroadcastJoinCacheStatistics;
+import com.splicemachine.hash.BloomFilter;
 import com.splicemachine.pipeline.Exceptions;
 import com.splicemachine.stream.Stream;
 
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.MBeanRegistrationException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.NotCompliantMBeanException;
+import javax.management.ObjectName;
+import java.io.File;
 import java.io.IOException;
 import java.util.Iterator;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Represents a Cache of records for use in a Broadcast Join.
  *
+ * The cache is bounded by the estimated number of bytes held by its join tables, rather than by the
+ * number of tables. Any single inner table which would exceed that budget is spilled to local disk
+ * by the loader, so that it holds only its join keys in memory.
+ *
  * @author Scott Fines
  *         Date: 10/27/15
  */
-public class BroadcastJoinCache{
+public class BroadcastJoinCache implements BroadcastJoinCacheStatistics{
+    public static final String JMX_NAME = "com.splicemachine.derby.impl.sql.execute.operations:type=BroadcastJoinCacheStatistics";
+    private static volatile BroadcastJoinCache INSTANCE;
+
     private final Cache<Long,ReferenceCountingFactory> cache;
     private final JoinTableLoader tableLoader;
+    private final long maxMemory;
+    private final File spillDirectory;
+
+    /*
+     * The ids of join tables which were evicted by the cache, so that we can tell when we are
+     * forced to rebuild the same table.
+     */
+    private final Cache<Long,Boolean> evictedIds;
+    private final AtomicLong rebuildCount = new AtomicLong(0L);
+    private final AtomicLong spillCount = new AtomicLong(0L);
+    private final AtomicLong currentSize = new AtomicLong(0L);
 
     interface JoinTableLoader{
+        /**
+         * @param maxMemory the maximum number of bytes the loaded table may hold in memory. Loaders
+         *                  which are unable to spill may ignore this.
+         * @param spillDirectory the local directory to spill to, when the table exceeds {@code maxMemory}
+         */
         JoinTable.Factory load(Callable<Stream<ExecRow>> streamLoader,
                                int[] innerHashKeys,
                                int[] outerHashKeys,
-                               ExecRow outerTemplateRow) throws ExecutionException;
+                               ExecRow outerTemplateRow,
+                               long maxMemory,
+                               File spillDirectory) throws ExecutionException;
+    }
+
+    /**
+     * @return the cache shared by all broadcast joins in this JVM
+     */
+    public static BroadcastJoinCache instance(){
+        BroadcastJoinCache cache = INSTANCE;
+        if(cache==null){
+            synchronized(BroadcastJoinCache.class){
+                cache = INSTANCE;
+                if(cache==null){
+                    cache = INSTANCE = new BroadcastJoinCache();
+                }
+            }
+        }
+        return cache;
     }
 
     public BroadcastJoinCache(){
-       this(ByteBufferMapTableLoader.INSTANCE);
+        this(EngineDriver.driver().getConfiguration());
+    }
+
+    public BroadcastJoinCache(SConfiguration configuration){
+       this(PagedBytesTableLoader.INSTANCE,configuration.getBroadcastJoinMaxMemory(),new File(configuration.getSpillDirectory()));
     }
 
-    public BroadcastJoinCache(JoinTableLoader tableLoader){
+    public BroadcastJoinCache(JoinTableLoader tableLoader,long maxMemory,File spillDirectory){
         this.tableLoader = tableLoader;
+        this.maxMemory = maxMemory;
+        this.spillDirectory = spillDirectory;
+        this.evictedIds = CacheBuilder.newBuilder().maximumSize(1000).build();
+        /*
+         * The cache splits its weight evenly between its segments, so with more than one segment a table which the
+         * loader did not spill could still be too heavy for its segment, and be evicted as soon as it is loaded.
+         */
         this.cache =CacheBuilder.newBuilder()
-                .maximumSize(1000)
+                .concurrencyLevel(1)
+                .maximumWeight(maxMemory)
+                .weigher(new Weigher<Long, ReferenceCountingFactory>(){
+                    @Override
+                    public int weigh(Long key,ReferenceCountingFactory value){
+                        return (int)Math.min(Integer.MAX_VALUE,value.size);
+                    }
+                })
                 .expireAfterAccess(2,TimeUnit.SECONDS)
-                .softValues()
+                .removalListener(new RemovalListener<Long, ReferenceCountingFactory>(){
+                    @Override
+                    public void onRemoval(RemovalNotification<Long, ReferenceCountingFactory> notification){
+                        if(notification.getCause()!=RemovalCause.EXPLICIT){
+                            evictedIds.put(notification.getKey(),Boolean.TRUE);
+                        }
+                        notification.getValue().markEvicted();
+                    }
+                })
+                .recordStats()
                 .build();
     }
 
+    public void registerJMX(MBeanServer mbs) throws MalformedObjectNameException, NotCompliantMBeanException, InstanceAlreadyExistsException, MBeanRegistrationException{
+        mbs.registerMBean(this,new ObjectName(JMX_NAME));
+    }
+
+    @Override public long getHitCount(){ return cache.stats().hitCount(); }
+    @Override public long getMissCount(){ return cache.stats().missCount(); }
+    @Override public long getRebuildCount(){ return rebuildCount.get(); }
+    @Override public long getSpillCount(){ return spillCount.get(); }
+    @Override public long getCurrentSize(){ return currentSize.get(); }
+    @Override public long getMaxSize(){ return maxMemory; }
+
     public JoinTable.Factory get(Long operationId,
                          Callable<Stream<ExecRow>> loader,
                          int[] rightHashKeys,
@@ -67,7 +162,14 @@ public class BroadcastJoinCache{
         try{
             Loader callable=new Loader(operationId,tableLoader,rightHashKeys,leftHashKeys,leftTemplateRow,loader);
             ReferenceCountingFactory joinTable=cache.get(operationId,callable);
-            joinTable.refCount.incrementAndGet();
+            if(joinTable==callable.loaded || joinTable.acquire())
+                return joinTable; //tables are acquired for the caller which loads them, even if they are evicted at once
+            /*
+             * Another caller's table was evicted and closed before we could use it. Rather than loading it into
+             * the cache again, where it could be evicted again, load a table for this caller alone.
+             */
+            joinTable=callable.load();
+            joinTable.markEvicted();
             return joinTable;
         }catch(ExecutionException e){
             Throwable c = e.getCause();
@@ -87,6 +189,7 @@ public class BroadcastJoinCache{
         private final Callable<Stream<ExecRow>> streamLoader;
 
         private final Long operationId;
+        private ReferenceCountingFactory loaded;
 
         public Loader(Long operationId,
                       JoinTableLoader loader,
@@ -104,8 +207,24 @@ public class BroadcastJoinCache{
 
         @Override
         public ReferenceCountingFactory call() throws Exception{
-            JoinTable.Factory load=loader.load(streamLoader,innerHashKeys,outerHashKeys,outerTemplateRow);
-            return new ReferenceCountingFactory(load,operationId);
+            if(evictedIds.getIfPresent(operationId)!=null){
+                evictedIds.invalidate(operationId);
+                rebuildCount.incrementAndGet();
+            }
+            loaded=load();
+            return loaded;
+        }
+
+        /**
+         * @return a newly loaded table, already acquired for the caller
+         */
+        ReferenceCountingFactory load() throws ExecutionException{
+            JoinTable.Factory load=loader.load(streamLoader,innerHashKeys,outerHashKeys,outerTemplateRow,maxMemory,spillDirectory);
+            if(load instanceof SpilledJoinTable.Factory)
+                spillCount.incrementAndGet();
+            ReferenceCountingFactory factory=new ReferenceCountingFactory(load,operationId);
+            factory.acquire();
+            return factory;
         }
     }
 
@@ -134,11 +253,16 @@ public class BroadcastJoinCache{
     private class ReferenceCountingFactory implements JoinTable.Factory{
         private final JoinTable.Factory delegate;
         private final Long id;
+        private final long size;
         private AtomicInteger refCount = new AtomicInteger(0);
+        private volatile boolean evicted = false;
+        private boolean closed = false;
 
         public ReferenceCountingFactory(JoinTable.Factory delegate,Long id){
             this.delegate=delegate;
             this.id=id;
+            this.size=delegate.getEstimatedSize();
+            currentSize.addAndGet(size);
         }
 
         @Override
@@ -146,10 +270,57 @@ public class BroadcastJoinCache{
             return new ReferenceCountedJoinTable(delegate.newTable(),this);
         }
 
+        @Override
+        public long getEstimatedSize(){
+            return size;
+        }
+
+        @Override
+        public BloomFilter getKeyFilter(int maxKeys){
+            return delegate.getKeyFilter(maxKeys);
+        }
+
+        /**
+         * Register a new user of this factory.
+         *
+         * @return false if the factory has already been closed, and so cannot be used.
+         */
+        synchronized boolean acquire(){
+            if(closed) return false;
+            refCount.incrementAndGet();
+            return true;
+        }
+
         public void markClosed(){
             int refC=refCount.decrementAndGet();
-            if(refC<=0)
-                cache.invalidate(id);
+            if(refC<=0){
+                /*
+                 * Only remove ourselves; if we were already evicted, the cache may hold a newer
+                 * table under the same id which is still in use.
+                 */
+                if(!cache.asMap().remove(id,this))
+                    closeIfUnused();
+            }
+        }
+
+        void markEvicted(){
+            evicted=true;
+            if(delegate instanceof SpilledJoinTable.Factory)
+                ((SpilledJoinTable.Factory)delegate).deleteSpillFile(); //in case a table in use is never closed
+            closeIfUnused();
+        }
+
+        private synchronized void closeIfUnused(){
+            if(evicted && refCount.get()<=0)
+                close();
+        }
+
+        @Override
+        public synchronized void close(){
+            if(closed) return;
+            closed=true;
+            currentSize.addAndGet(-size);
+            delegate.close();
         }
     }
 }
@@ -25,6 +25,7 @@ import com.splicemachine.derby.utils.marshall.dvd.VersionedSerializers;
 import com.splicemachine.stream.Stream;
 import com.splicemachine.stream.StreamException;
 import javax.annotation.concurrent.ThreadSafe;
+import java.io.File;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -34,18 +35,29 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 
 /**
+ * Loads the inner side of a broadcast join into a HashMap of cloned rows. This loader cannot
+ * spill, so the memory limit is ignored.
+ *
  * @author Scott Fines
  *         Date: 10/27/15
  */
 @ThreadSafe
 class ByteBufferMapTableLoader implements BroadcastJoinCache.JoinTableLoader{
     public static BroadcastJoinCache.JoinTableLoader INSTANCE = new ByteBufferMapTableLoader();
+    /*rough per-row cost of the ByteBuffer, list entry, and ExecRow/DVD object headers*/
+    private static final long ROW_OVERHEAD=128L;
 
     private ByteBufferMapTableLoader(){} //singleton class
 
     @Override
-    public JoinTable.Factory load(Callable<Stream<ExecRow>> streamLoader,int[] innerHashKeys,int[] outerHashKeys, ExecRow outerTemplateRow) throws ExecutionException{
+    public JoinTable.Factory load(Callable<Stream<ExecRow>> streamLoader,
+                                  int[] innerHashKeys,
+                                  int[] outerHashKeys,
+                                  ExecRow outerTemplateRow,
+                                  long maxMemory,
+                                  File spillDirectory) throws ExecutionException{
         Map<ByteBuffer, List<ExecRow>> table=new HashMap<>();
+        long estimatedSize=0L;
 
         DescriptorSerializer[] innerSerializers=null;
         KeyEncoder innerKeyEncoder=null;
@@ -66,6 +78,7 @@ class ByteBufferMapTableLoader implements BroadcastJoinCache.JoinTableLoader{
                     table.put(key,rows);
                 }
                 rows.add(right.getClone());
+                estimatedSize+=key.capacity()+right.getRowSize()+ROW_OVERHEAD;
             }
         }catch(StreamException e){
            throw new ExecutionException(e.getCause());
@@ -74,6 +87,6 @@ class ByteBufferMapTableLoader implements BroadcastJoinCache.JoinTableLoader{
             else throw new ExecutionException(e);
         }
 
-        return new ByteBufferMappedJoinTable.Factory(table,outerHashKeys,outerTemplateRow);
+        return new ByteBufferMappedJoinTable.Factory(table,outerHashKeys,outerTemplateRow,estimatedSize);
     }
 }
@@ -23,6 +23,7 @@ import com.splicemachine.derby.utils.marshall.NoOpPostfix;
 import com.splicemachine.derby.utils.marshall.NoOpPrefix;
 import com.splicemachine.derby.utils.marshall.dvd.DescriptorSerializer;
 import com.splicemachine.derby.utils.marshall.dvd.VersionedSerializers;
+import com.splicemachine.hash.BloomFilter;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -64,16 +65,26 @@ class ByteBufferMappedJoinTable implements JoinTable{
         private final Map<ByteBuffer,List<ExecRow>> table;
         private final int[] outerHashKeys;
         private final ExecRow outerTemplateRow;
+        private final long estimatedSize;
 
-        public Factory(Map<ByteBuffer, List<ExecRow>> table,int[] outerHashKeys,ExecRow outerTemplateRow){
+        public Factory(Map<ByteBuffer, List<ExecRow>> table,int[] outerHashKeys,ExecRow outerTemplateRow,long estimatedSize){
             this.table=table;
             this.outerHashKeys=outerHashKeys;
             this.outerTemplateRow=outerTemplateRow;
+            this.estimatedSize=estimatedSize;
         }
 
         @Override
         public JoinTable newTable(){
             return new ByteBufferMappedJoinTable(table,outerHashKeys,outerTemplateRow);
         }
+
+        @Override public long getEstimatedSize(){ return estimatedSize; }
+
+        //the table is only used for small inner tables, so isn't worth filtering on
+        @Override public BloomFilter getKeyFilter(int maxKeys){ return null; }
+
+        //nothing to close
+        @Override public void close(){}
     }
 }
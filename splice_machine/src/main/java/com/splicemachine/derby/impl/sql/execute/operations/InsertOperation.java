@@ -23,6 +23,7 @@ import com.splicemachine.db.iapi.sql.dictionary.TableDescriptor;
 import com.splicemachine.db.impl.sql.GenericStorablePreparedStatement;
 import com.splicemachine.derby.impl.load.ImportUtils;
 import com.splicemachine.derby.stream.iapi.*;
+import com.splicemachine.derby.stream.output.ColumnarImportSource;
 import com.splicemachine.derby.stream.output.HBaseBulkImporter;
 import com.splicemachine.utils.IntArrays;
 import com.splicemachine.access.api.PartitionFactory;
@@ -103,6 +104,7 @@ public class InsertOperation extends DMLWriteOperation implements HasIncrement{
     protected boolean outputKeysOnly;
     protected boolean skipSampling;
     protected String indexName;
+    protected boolean bulkImportColumnar;
 
     @Override
     public String getName(){
@@ -136,7 +138,8 @@ public class InsertOperation extends DMLWriteOperation implements HasIncrement{
                            boolean samplingOnly,
                            boolean outputKeysOnly,
                            boolean skipSampling,
-                           String indexName) throws StandardException{
+                           String indexName,
+                           boolean bulkImportColumnar) throws StandardException{
         super(source,generationClauses,checkGM,source.getActivation(),optimizerEstimatedRowCount,optimizerEstimatedCost,tableVersion);
         this.insertMode=InsertNode.InsertMode.valueOf(insertMode);
         this.statusDirectory=statusDirectory;
@@ -155,6 +158,7 @@ public class InsertOperation extends DMLWriteOperation implements HasIncrement{
         this.outputKeysOnly = outputKeysOnly;
         this.skipSampling = skipSampling;
         this.indexName = indexName;
+        this.bulkImportColumnar = bulkImportColumnar;
         init();
     }
 
@@ -295,6 +299,7 @@ public class InsertOperation extends DMLWriteOperation implements HasIncrement{
         skipSampling = in.readBoolean();
         if (in.readBoolean())
             indexName = in.readUTF();
+        bulkImportColumnar = in.readBoolean();
     }
 
     @Override
@@ -340,6 +345,7 @@ public class InsertOperation extends DMLWriteOperation implements HasIncrement{
         out.writeBoolean(indexName != null);
         if (indexName != null)
             out.writeUTF(indexName);
+        out.writeBoolean(bulkImportColumnar);
     }
 
     @SuppressWarnings({ "unchecked" })
@@ -384,6 +390,8 @@ public class InsertOperation extends DMLWriteOperation implements HasIncrement{
             }
 
             if (bulkImportDirectory!=null && bulkImportDirectory.compareToIgnoreCase("NULL") !=0) {
+                boolean columnar = !outputKeysOnly &&
+                        (bulkImportColumnar || EngineDriver.driver().getConfiguration().getBulkImportColumnar());
                 HBaseBulkImporter importer = set.bulkImportData(operationContext)
                         .heapConglom(heapConglom)
                         .tableVersion(tableVersion)
@@ -398,6 +406,7 @@ public class InsertOperation extends DMLWriteOperation implements HasIncrement{
                         .outputKeysOnly(outputKeysOnly)
                         .skipSampling(skipSampling)
                         .indexName(indexName)
+                        .columnarSource(columnar ? ColumnarImportSource.forInsert(source, dsp) : null)
                         .build();
                 return importer.write();
             }
@@ -229,30 +229,30 @@ public class MergeSortJoinOperation extends JoinOperation {
         PairDataSet<ExecRow, LocatedRow> rightDataSet) {
 
         if (isOuterJoin) { // Outer Join
-            return leftDataSet.cogroup(rightDataSet, "Cogroup Left and Right")
+            return leftDataSet.cogroup(rightDataSet, "Cogroup Left and Right", operationContext)
                         .flatmap(new CogroupOuterJoinRestrictionFlatMapFunction<SpliceOperation>(operationContext))
                         .map(new SetCurrentLocatedRowFunction<>(operationContext));
         }
         else {
             if (this.notExistsRightSide) { // antijoin
                 if (restriction !=null) { // with restriction
-                    return leftDataSet.cogroup(rightDataSet, "Cogroup Left and Right").values()
+                    return leftDataSet.cogroup(rightDataSet, "Cogroup Left and Right", operationContext).values()
                         .flatMap(new CogroupAntiJoinRestrictionFlatMapFunction(operationContext));
                 } else { // No Restriction
-                    return leftDataSet.subtractByKey(rightDataSet)
+                    return leftDataSet.subtractByKey(rightDataSet, "Subtract Right From Left", operationContext)
                             .map(new AntiJoinFunction(operationContext));
                 }
             } else { // Inner Join
                 if (isOneRowRightSide()) {
-                    return leftDataSet.cogroup(rightDataSet, "Cogroup Left and Right").values()
+                    return leftDataSet.cogroup(rightDataSet, "Cogroup Left and Right", operationContext).values()
                         .flatMap(new CogroupInnerJoinRestrictionFlatMapFunction(operationContext));
                 }
                 if (restriction !=null) { // with restriction
-                    return leftDataSet.hashJoin(rightDataSet)
+                    return leftDataSet.hashJoin(rightDataSet, "Hash Join", operationContext)
                             .map(new InnerJoinFunction<SpliceOperation>(operationContext))
                             .filter(new JoinRestrictionPredicateFunction(operationContext));
                 } else { // No Restriction
-                    return leftDataSet.hashJoin(rightDataSet)
+                    return leftDataSet.hashJoin(rightDataSet, "Hash Join", operationContext)
                             .map(new InnerJoinFunction<SpliceOperation>(operationContext));
                 }
             }
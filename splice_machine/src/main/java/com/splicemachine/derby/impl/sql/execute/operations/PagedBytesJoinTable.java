@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.impl.sql.execute.operations;
+
+import com.splicemachine.collections.hashtable.PagedBytesHashTable;
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.derby.impl.sql.JoinTable;
+import com.splicemachine.derby.utils.marshall.BareKeyHash;
+import com.splicemachine.derby.utils.marshall.EntryDataDecoder;
+import com.splicemachine.derby.utils.marshall.dvd.DescriptorSerializer;
+import com.splicemachine.derby.utils.marshall.dvd.VersionedSerializers;
+import com.splicemachine.hash.BloomFilter;
+import com.splicemachine.utils.ByteSlice;
+import com.splicemachine.utils.IntArrays;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A JoinTable which holds the inner rows in their encoded form inside of a {@link PagedBytesHashTable}.
+ *
+ * Inner rows are only decoded when they are actually returned from {@link #fetchInner(ExecRow)}, and
+ * looking up an outer key does not require wrapping it in any intermediate objects.
+ */
+class PagedBytesJoinTable implements JoinTable{
+    private static final double KEY_FILTER_FALSE_POSITIVE_RATE=0.01d;
+    private final PagedBytesHashTable table;
+    private final ExecRow innerTemplateRow;
+    private final BareKeyHash.Encoder outerKeyHash;
+    private final ByteSlice outerKey=new ByteSlice();
+    private final EntryDataDecoder innerRowDecoder;
+
+    public PagedBytesJoinTable(PagedBytesHashTable table,
+                               int[] outerHashKeys,
+                               ExecRow outerTemplateRow,
+                               ExecRow innerTemplateRow){
+        this.table=table;
+        this.innerTemplateRow=innerTemplateRow;
+        DescriptorSerializer[] outerSerializers=VersionedSerializers.latestVersion(false).getSerializers(outerTemplateRow);
+        /*
+         * The inner keys are encoded with a bare hash(no prefix or postfix), so we can skip the KeyEncoder
+         * and save copying the key into a new array for every outer row. The outer keys are encoded into
+         * the same buffer every time, since the table only needs each one for the length of a lookup
+         */
+        this.outerKeyHash=BareKeyHash.encoder(outerHashKeys,null,outerSerializers);
+        if(innerTemplateRow!=null){
+            DescriptorSerializer[] innerSerializers=VersionedSerializers.latestVersion(false).getSerializers(innerTemplateRow);
+            this.innerRowDecoder=new EntryDataDecoder(IntArrays.count(innerTemplateRow.nColumns()),null,innerSerializers);
+        }else
+            this.innerRowDecoder=null;
+    }
+
+    @Override
+    public Iterator<ExecRow> fetchInner(ExecRow outer) throws IOException, StandardException{
+        if(innerRowDecoder==null) return Collections.emptyIterator(); //the inner table is empty
+
+        outerKeyHash.setRow(outer);
+        outerKeyHash.encode(outerKey);
+        long address=table.firstValue(outerKey.array(),outerKey.offset(),outerKey.length());
+        if(address==PagedBytesHashTable.NO_ENTRY)
+            return Collections.emptyIterator();
+        else
+            return new InnerRowIterator(address);
+    }
+
+    @Override
+    public void close(){
+        try{
+            outerKeyHash.close();
+            if(innerRowDecoder!=null)
+                innerRowDecoder.close();
+        }catch(IOException ignored){
+            //the serializers swallow their own errors on close, so there's nothing to do here
+        }
+    }
+
+    /**
+     * @return a Bloom filter over the keys of {@code table}, or {@code null} if it holds more than {@code maxKeys} keys
+     */
+    static BloomFilter buildKeyFilter(PagedBytesHashTable table,int maxKeys){
+        if(table.numKeys()>maxKeys) return null;
+        BloomFilter filter=BloomFilter.create(table.numKeys(),KEY_FILTER_FALSE_POSITIVE_RATE);
+        for(int slot=0;slot<table.slotCount();slot++){
+            if(table.isOccupied(slot))
+                filter.add(table.keyArray(slot),table.keyOffset(slot),table.keyLength(slot));
+        }
+        return filter;
+    }
+
+    private class InnerRowIterator implements Iterator<ExecRow>{
+        private long address;
+
+        InnerRowIterator(long address){
+            this.address=address;
+        }
+
+        @Override
+        public boolean hasNext(){
+            return address!=PagedBytesHashTable.NO_ENTRY;
+        }
+
+        @Override
+        public ExecRow next(){
+            if(!hasNext()) throw new NoSuchElementException();
+            /*
+             * The returned row may be held on to by the caller (e.g. in a cogroup), so we have
+             * to decode into a new row each time.
+             */
+            ExecRow row=innerTemplateRow.getNewNullRow();
+            innerRowDecoder.set(table.valueArray(address),table.valueOffset(address),table.valueLength(address));
+            try{
+                innerRowDecoder.decode(row);
+            }catch(StandardException e){
+                throw new RuntimeException(e);
+            }
+            address=table.nextValue(address);
+            return row;
+        }
+
+        @Override
+        public void remove(){
+            throw new UnsupportedOperationException("Cannot remove rows from a JoinTable");
+        }
+    }
+
+    static class Factory implements JoinTable.Factory{
+        private final PagedBytesHashTable table;
+        private final int[] outerHashKeys;
+        private final ExecRow outerTemplateRow;
+        private final ExecRow innerTemplateRow;
+        private BloomFilter keyFilter;
+        private int keyFilterMaxKeys=-1;
+
+        public Factory(PagedBytesHashTable table,int[] outerHashKeys,ExecRow outerTemplateRow,ExecRow innerTemplateRow){
+            this.table=table;
+            this.outerHashKeys=outerHashKeys;
+            this.outerTemplateRow=outerTemplateRow;
+            this.innerTemplateRow=innerTemplateRow;
+        }
+
+        @Override
+        public JoinTable newTable(){
+            return new PagedBytesJoinTable(table,outerHashKeys,outerTemplateRow,innerTemplateRow);
+        }
+
+        @Override public long getEstimatedSize(){ return table.heapSize(); }
+
+        @Override
+        public synchronized BloomFilter getKeyFilter(int maxKeys){
+            if(keyFilterMaxKeys!=maxKeys){
+                keyFilter=buildKeyFilter(table,maxKeys);
+                keyFilterMaxKeys=maxKeys;
+            }
+            return keyFilter;
+        }
+
+        //nothing to close
+        @Override public void close(){}
+    }
+}
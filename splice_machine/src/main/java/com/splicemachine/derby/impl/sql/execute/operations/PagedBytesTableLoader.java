@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.impl.sql.execute.operations;
+
+import com.splicemachine.collections.hashtable.PagedBytesHashTable;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.derby.impl.sql.JoinTable;
+import com.splicemachine.derby.utils.marshall.BareKeyHash;
+import com.splicemachine.derby.utils.marshall.DataHash;
+import com.splicemachine.derby.utils.marshall.EntryDataHash;
+import com.splicemachine.derby.utils.marshall.dvd.DescriptorSerializer;
+import com.splicemachine.derby.utils.marshall.dvd.VersionedSerializers;
+import com.splicemachine.primitives.Bytes;
+import com.splicemachine.stream.Stream;
+import com.splicemachine.stream.StreamException;
+import com.splicemachine.utils.IntArrays;
+import com.splicemachine.utils.SpliceLogUtils;
+import org.apache.log4j.Logger;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Loads the inner side of a broadcast join into a {@link PagedBytesHashTable}, keeping each
+ * inner row in its encoded form rather than as a cloned ExecRow.
+ *
+ * If the table grows beyond the allowed memory, the rows loaded so far (and all remaining rows) are
+ * written to a local spill file instead, and only the join keys are kept in memory. If even the keys
+ * grow beyond the allowed memory, they are written to a {@link SortedKeyFile} as well.
+ *
+ * @see SpilledJoinTable
+ */
+@ThreadSafe
+class PagedBytesTableLoader implements BroadcastJoinCache.JoinTableLoader{
+    private static final Logger LOG=Logger.getLogger(PagedBytesTableLoader.class);
+    public static BroadcastJoinCache.JoinTableLoader INSTANCE = new PagedBytesTableLoader();
+
+    private PagedBytesTableLoader(){} //singleton class
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public JoinTable.Factory load(Callable<Stream<ExecRow>> streamLoader,
+                                  int[] innerHashKeys,
+                                  int[] outerHashKeys,
+                                  ExecRow outerTemplateRow,
+                                  long maxMemory,
+                                  File spillDirectory) throws ExecutionException{
+        PagedBytesHashTable table=new PagedBytesHashTable();
+        Spill spill=null;
+
+        ExecRow innerTemplateRow=null;
+        DataHash<ExecRow> innerKeyHash=null;
+        DataHash<ExecRow> innerRowHash=null;
+        try(Stream<ExecRow> innerRows=streamLoader.call()){
+            ExecRow right;
+            while((right=innerRows.next())!=null){
+                if(innerTemplateRow==null){
+                    DescriptorSerializer[] innerSerializers=VersionedSerializers.latestVersion(false).getSerializers(right);
+                    innerKeyHash=BareKeyHash.encoder(innerHashKeys,null,innerSerializers);
+                    innerRowHash=new EntryDataHash(IntArrays.count(right.nColumns()),null,innerSerializers);
+                    innerTemplateRow=right.getNewNullRow();
+                }
+
+                innerKeyHash.setRow(right);
+                byte[] key=innerKeyHash.encode();
+                innerRowHash.setRow(right);
+                byte[] row=innerRowHash.encode();
+                if(spill!=null)
+                    spill.add(key,row,0,row.length);
+                else{
+                    table.put(key,0,key.length,row,0,row.length);
+                    if(table.heapSize()>maxMemory){
+                        spill=new Spill(spillDirectory,maxMemory);
+                        spill.addAll(table);
+                        table=null;
+                    }
+                }
+            }
+            if(spill!=null)
+                return spill.finish(outerHashKeys,outerTemplateRow,innerTemplateRow);
+        }catch(StreamException e){
+            if(spill!=null) spill.discard();
+            throw new ExecutionException(e.getCause());
+        }catch(Exception e){
+            if(spill!=null) spill.discard();
+            if(e instanceof ExecutionException) throw (ExecutionException)e;
+            else throw new ExecutionException(e);
+        }finally{
+            closeQuietly(innerKeyHash);
+            closeQuietly(innerRowHash);
+        }
+
+        return new PagedBytesJoinTable.Factory(table,outerHashKeys,outerTemplateRow,innerTemplateRow);
+    }
+
+    private static void closeQuietly(DataHash<ExecRow> hash){
+        if(hash==null) return;
+        try{
+            hash.close();
+        }catch(IOException ignored){ }
+    }
+
+    /**
+     * Writes encoded rows to the spill file, recording the position of each row in an
+     * in-memory index of join keys. Whenever the index grows beyond the allowed memory, it is
+     * written out as a sorted run of keys and started afresh.
+     */
+    private static class Spill{
+        private static final int RUN_MIN_PAGE_SIZE=1<<12;
+        private static final int RUN_MAX_PAGE_SIZE=1<<20;
+        private final File spillDirectory;
+        private final long maxMemory;
+        private final File file;
+        private final OutputStream out;
+        private PagedBytesHashTable index=new PagedBytesHashTable();
+        private final List<File> keyRuns=new ArrayList<>();
+        private final byte[] pointer=new byte[SpilledJoinTable.POINTER_SIZE];
+        private long position=0L;
+
+        Spill(File spillDirectory,long maxMemory) throws IOException{
+            this.spillDirectory=spillDirectory;
+            this.maxMemory=maxMemory;
+            this.file=File.createTempFile("broadcast-join-",".spill",spillDirectory);
+            this.out=new BufferedOutputStream(new FileOutputStream(file),1<<16);
+            if(LOG.isDebugEnabled())
+                SpliceLogUtils.debug(LOG,"Broadcast join inner table exceeds memory limit, spilling to %s",file);
+        }
+
+        void addAll(PagedBytesHashTable table) throws IOException{
+            for(int slot=0;slot<table.slotCount();slot++){
+                if(!table.isOccupied(slot)) continue;
+                byte[] key=table.keyArray(slot);
+                int keyOffset=table.keyOffset(slot);
+                int keyLength=table.keyLength(slot);
+                long address=table.firstValueAt(slot);
+                while(address!=PagedBytesHashTable.NO_ENTRY){
+                    add(key,keyOffset,keyLength,table.valueArray(address),table.valueOffset(address),table.valueLength(address));
+                    address=table.nextValue(address);
+                }
+            }
+        }
+
+        void add(byte[] key,byte[] row,int rowOffset,int rowLength) throws IOException{
+            add(key,0,key.length,row,rowOffset,rowLength);
+        }
+
+        void add(byte[] key,int keyOffset,int keyLength,byte[] row,int rowOffset,int rowLength) throws IOException{
+            out.write(row,rowOffset,rowLength);
+            Bytes.toBytes(position,pointer,0);
+            Bytes.toBytes(rowLength,pointer,Bytes.SIZEOF_LONG);
+            index.put(key,keyOffset,keyLength,pointer,0,pointer.length);
+            position+=rowLength;
+            if(index.heapSize()>maxMemory){
+                keyRuns.add(SortedKeyFile.writeRun(index,spillDirectory));
+                //smaller pages, so that even a small memory limit holds many keys per run
+                int pageSize=(int)Math.max(RUN_MIN_PAGE_SIZE,Math.min(RUN_MAX_PAGE_SIZE,maxMemory/16));
+                index=new PagedBytesHashTable(16,0.75f,pageSize);
+            }
+        }
+
+        JoinTable.Factory finish(int[] outerHashKeys,ExecRow outerTemplateRow,ExecRow innerTemplateRow) throws IOException{
+            out.close();
+            if(keyRuns.isEmpty()){
+                FileChannel channel=FileChannel.open(file.toPath(),StandardOpenOption.READ);
+                return new SpilledJoinTable.Factory(index,file,channel,outerHashKeys,outerTemplateRow,innerTemplateRow);
+            }
+            if(LOG.isDebugEnabled())
+                SpliceLogUtils.debug(LOG,"Broadcast join keys for %s exceed memory limit, merging %d runs of keys",file,keyRuns.size()+1);
+            if(index.numKeys()>0)
+                keyRuns.add(SortedKeyFile.writeRun(index,spillDirectory));
+            index=null;
+            SortedKeyFile keyFile=SortedKeyFile.merge(keyRuns,spillDirectory);
+            keyRuns.clear();
+            try{
+                FileChannel channel=FileChannel.open(file.toPath(),StandardOpenOption.READ);
+                return new SpilledJoinTable.Factory(keyFile,file,channel,outerHashKeys,outerTemplateRow,innerTemplateRow);
+            }catch(IOException e){
+                keyFile.close();
+                keyFile.delete();
+                throw e;
+            }
+        }
+
+        void discard(){
+            try{
+                out.close();
+            }catch(IOException ignored){ }
+            if(!file.delete())
+                LOG.warn("Unable to delete broadcast join spill file "+file);
+            for(File run : keyRuns){
+                if(!run.delete())
+                    LOG.warn("Unable to delete broadcast join key file "+run);
+            }
+        }
+    }
+}
@@ -104,6 +104,15 @@ public class ProjectRestrictOperation extends SpliceBaseOperation {
 				return doesProjection;
 		}
 
+		/**
+		 * @return true if this operation neither filters rows nor computes columns, but only picks the columns
+		 * of its source listed in {@link #projectMapping}
+		 */
+		public boolean onlyMapsColumns() {
+				return restrictionMethodName == null && constantRestrictionMethodName == null
+								&& projectionMethodName == null && !alwaysFalse;
+		}
+
 		@Override
 		public void readExternal(ObjectInput in) throws IOException,ClassNotFoundException {
 				super.readExternal(in);
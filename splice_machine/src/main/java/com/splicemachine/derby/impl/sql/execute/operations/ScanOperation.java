@@ -25,6 +25,7 @@ import com.splicemachine.db.impl.sql.execute.BaseActivation;
 import com.splicemachine.derby.iapi.sql.execute.SpliceOperation;
 import com.splicemachine.derby.iapi.sql.execute.SpliceOperationContext;
 import com.splicemachine.derby.impl.sql.execute.operations.iapi.ScanInformation;
+import com.splicemachine.derby.impl.sql.execute.operations.scanner.JoinKeyFilter;
 import com.splicemachine.derby.impl.store.access.hbase.HBaseRowLocation;
 import com.splicemachine.si.constants.SIConstants;
 import com.splicemachine.storage.DataScan;
@@ -63,6 +64,7 @@ public abstract class ScanOperation extends SpliceBaseOperation{
     protected String lines;
     protected String storedAs;
     protected String location;
+    protected transient JoinKeyFilter joinKeyFilter;
 
     public ScanOperation(){
         super();
@@ -347,6 +349,25 @@ public abstract class ScanOperation extends SpliceBaseOperation{
         return this.indexName != null;
     }
 
+    /**
+     * @return the format of an external table ("P" for Parquet, "O" for ORC, "T" for text), or null for a
+     * Splice table
+     */
+    public String getStoredAs() {
+        return this.storedAs;
+    }
+
+    /**
+     * @return the location of an external table's files, or null for a Splice table
+     */
+    public String getLocation() {
+        return this.location;
+    }
+
+    public boolean isPinned() {
+        return this.pin;
+    }
+
     @Override
     public String prettyPrint(int indentLevel){
         String indent="\n"+ Strings.repeat("\t", indentLevel);
@@ -406,4 +427,16 @@ public abstract class ScanOperation extends SpliceBaseOperation{
     public boolean getRowIdKey() {
         return rowIdKey;
     }
+
+    public JoinKeyFilter getJoinKeyFilter() {
+        return joinKeyFilter;
+    }
+
+    /**
+     * Drop scanned rows which cannot satisfy {@code joinKeyFilter}. Only set in control mode, by a join
+     * which consumes this scan's rows directly.
+     */
+    public void setJoinKeyFilter(JoinKeyFilter joinKeyFilter) {
+        this.joinKeyFilter = joinKeyFilter;
+    }
 }
@@ -219,7 +219,7 @@ public class SortOperation extends SpliceBaseOperation{
 
         //operationContext.pushScopeForOp(OperationContext.Scope.SHUFFLE);
         PairDataSet sortedByKey=pair.sortByKey(new RowComparator(descColumns,nullsOrderedLow),
-            OperationContext.Scope.SORT.displayName());
+            OperationContext.Scope.SORT.displayName(),operationContext);
         //operationContext.popScope();
 
         //operationContext.pushScopeForOp(OperationContext.Scope.READ_SORTED);
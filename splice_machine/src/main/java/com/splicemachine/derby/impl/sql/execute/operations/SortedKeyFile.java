@@ -0,0 +1,331 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.impl.sql.execute.operations;
+
+import com.splicemachine.collections.hashtable.PagedBytesHashTable;
+import com.splicemachine.primitives.ByteComparator;
+import com.splicemachine.primitives.Bytes;
+import org.apache.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * The join keys of a spilled broadcast join table whose index of keys is itself too large to hold in memory.
+ *
+ * The keys are written to a local file in sorted order, each followed by the (position,length) of a row in the
+ * spill file, and only the first key of every {@link #BLOCK_SIZE} bytes of the file is held in memory. A key is
+ * looked up by reading (using positional reads, so the file can be shared by many concurrent tables) the blocks
+ * which can hold it.
+ *
+ * The file is built from sorted runs, each of which is written out once the in-memory index of keys reaches
+ * its memory limit, and which are merged once the whole table has been spilled.
+ */
+class SortedKeyFile{
+    private static final Logger LOG=Logger.getLogger(SortedKeyFile.class);
+    private static final ByteComparator COMPARATOR=Bytes.basicByteComparator();
+    static final int BLOCK_SIZE=1<<14;
+
+    private final File file;
+    private final FileChannel channel;
+    private final int numBlocks;
+    /*the first key of each block, one after another*/
+    private final byte[] blockKeys;
+    private final int[] blockKeyOffsets;
+    /*the position of each block in the file, followed by the length of the file*/
+    private final long[] blockPositions;
+
+    private SortedKeyFile(File file,FileChannel channel,int numBlocks,byte[] blockKeys,int[] blockKeyOffsets,long[] blockPositions){
+        this.file=file;
+        this.channel=channel;
+        this.numBlocks=numBlocks;
+        this.blockKeys=blockKeys;
+        this.blockKeyOffsets=blockKeyOffsets;
+        this.blockPositions=blockPositions;
+    }
+
+    /**
+     * Write the keys of {@code index}, and the pointers held for each of them, to a new sorted run.
+     */
+    static File writeRun(PagedBytesHashTable index,File directory) throws IOException{
+        final PagedBytesHashTable table=index;
+        Integer[] slots=new Integer[table.numKeys()];
+        int n=0;
+        for(int slot=0;slot<table.slotCount();slot++){
+            if(table.isOccupied(slot))
+                slots[n++]=slot;
+        }
+        Arrays.sort(slots,new Comparator<Integer>(){
+            @Override
+            public int compare(Integer o1,Integer o2){
+                return COMPARATOR.compare(table.keyArray(o1),table.keyOffset(o1),table.keyLength(o1),
+                        table.keyArray(o2),table.keyOffset(o2),table.keyLength(o2));
+            }
+        });
+
+        File run=File.createTempFile("broadcast-join-",".keys",directory);
+        boolean success=false;
+        try(DataOutputStream out=new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run),1<<16))){
+            for(Integer slot : slots){
+                int keyLength=table.keyLength(slot);
+                long address=table.firstValueAt(slot);
+                while(address!=PagedBytesHashTable.NO_ENTRY){
+                    out.writeInt(keyLength);
+                    out.write(table.keyArray(slot),table.keyOffset(slot),keyLength);
+                    out.write(table.valueArray(address),table.valueOffset(address),table.valueLength(address));
+                    address=table.nextValue(address);
+                }
+            }
+            success=true;
+        }finally{
+            if(!success)
+                delete(run);
+        }
+        return run;
+    }
+
+    /**
+     * Merge sorted runs into a single key file. The runs are deleted, whether or not the merge succeeds.
+     */
+    static SortedKeyFile merge(List<File> runs,File directory) throws IOException{
+        PriorityQueue<Run> queue=new PriorityQueue<>(Math.max(1,runs.size()));
+        File file=File.createTempFile("broadcast-join-",".keys",directory);
+        boolean success=false;
+        try{
+            for(int i=0;i<runs.size();i++){
+                Run run=new Run(runs.get(i),i);
+                if(run.advance())
+                    queue.add(run);
+                else
+                    run.close();
+            }
+
+            byte[] blockKeys=new byte[256];
+            int[] blockKeyOffsets=new int[16];
+            long[] blockPositions=new long[16];
+            int numBlocks=0;
+            int keyBytes=0;
+            long position=0L;
+            long nextBlock=0L;
+            try(DataOutputStream out=new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file),1<<16))){
+                Run run;
+                while((run=queue.poll())!=null){
+                    if(position>=nextBlock){
+                        //this record starts a new block, so remember its key
+                        if(numBlocks+1>=blockPositions.length){
+                            blockKeyOffsets=Arrays.copyOf(blockKeyOffsets,2*blockKeyOffsets.length);
+                            blockPositions=Arrays.copyOf(blockPositions,2*blockPositions.length);
+                        }
+                        if(keyBytes+run.keyLength>blockKeys.length)
+                            blockKeys=Arrays.copyOf(blockKeys,Math.max(2*blockKeys.length,keyBytes+run.keyLength));
+                        System.arraycopy(run.key,0,blockKeys,keyBytes,run.keyLength);
+                        blockKeyOffsets[numBlocks]=keyBytes;
+                        blockPositions[numBlocks]=position;
+                        keyBytes+=run.keyLength;
+                        numBlocks++;
+                        nextBlock=position+BLOCK_SIZE;
+                    }
+                    out.writeInt(run.keyLength);
+                    out.write(run.key,0,run.keyLength);
+                    out.write(run.pointer);
+                    position+=Bytes.SIZEOF_INT+run.keyLength+run.pointer.length;
+                    if(run.advance())
+                        queue.add(run);
+                    else
+                        run.close();
+                }
+            }
+            blockKeyOffsets[numBlocks]=keyBytes;
+            blockPositions[numBlocks]=position;
+            FileChannel channel=FileChannel.open(file.toPath(),StandardOpenOption.READ);
+            success=true;
+            return new SortedKeyFile(file,channel,numBlocks,
+                    Arrays.copyOf(blockKeys,keyBytes),
+                    Arrays.copyOf(blockKeyOffsets,numBlocks+1),
+                    Arrays.copyOf(blockPositions,numBlocks+1));
+        }finally{
+            for(Run run : queue){
+                run.close();
+            }
+            for(File run : runs){
+                delete(run);
+            }
+            if(!success)
+                delete(file);
+        }
+    }
+
+    /**
+     * Find the rows held for a key.
+     *
+     * @param matches receives the (position,length) in the spill file of each row held for the key
+     */
+    void find(byte[] key,int keyOffset,int keyLength,Matches matches) throws IOException{
+        matches.count=0;
+        //the key's records start in the last block whose first key is less than it (if any), or the block after
+        int block=firstBlockFor(key,keyOffset,keyLength);
+        for(;block<numBlocks;block++){
+            long start=blockPositions[block];
+            int length=(int)(blockPositions[block+1]-start);
+            byte[] buffer=matches.block(length);
+            read(buffer,start,length);
+            int pos=0;
+            while(pos<length){
+                int recordKeyLength=Bytes.toInt(buffer,pos);
+                int recordKeyOffset=pos+Bytes.SIZEOF_INT;
+                int compare=COMPARATOR.compare(buffer,recordKeyOffset,recordKeyLength,key,keyOffset,keyLength);
+                if(compare>0)
+                    return;
+                int pointer=recordKeyOffset+recordKeyLength;
+                if(compare==0)
+                    matches.add(Bytes.toLong(buffer,pointer),Bytes.toInt(buffer,pointer+Bytes.SIZEOF_LONG));
+                pos=pointer+SpilledJoinTable.POINTER_SIZE;
+            }
+        }
+    }
+
+    /**
+     * @return an estimate of the heap occupied by the first keys of the blocks
+     */
+    long heapSize(){
+        return blockKeys.length+(long)blockKeyOffsets.length*Bytes.SIZEOF_INT+(long)blockPositions.length*Bytes.SIZEOF_LONG;
+    }
+
+    void close(){
+        try{
+            channel.close();
+        }catch(IOException e){
+            LOG.warn("Unable to close broadcast join key file "+file,e);
+        }
+    }
+
+    void delete(){
+        delete(file);
+    }
+
+    /**
+     * The rows found for a key. Re-used from one lookup to the next.
+     */
+    static class Matches{
+        long[] positions=new long[16];
+        int[] lengths=new int[16];
+        int count;
+        private byte[] block=new byte[BLOCK_SIZE];
+
+        private void add(long position,int length){
+            if(count==positions.length){
+                positions=Arrays.copyOf(positions,2*count);
+                lengths=Arrays.copyOf(lengths,2*count);
+            }
+            positions[count]=position;
+            lengths[count]=length;
+            count++;
+        }
+
+        private byte[] block(int length){
+            if(block.length<length)
+                block=new byte[length];
+            return block;
+        }
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private int firstBlockFor(byte[] key,int keyOffset,int keyLength){
+        int low=0;
+        int high=numBlocks-1;
+        int found=0;
+        while(low<=high){
+            int mid=(low+high)>>>1;
+            int start=blockKeyOffsets[mid];
+            if(COMPARATOR.compare(blockKeys,start,blockKeyOffsets[mid+1]-start,key,keyOffset,keyLength)<0){
+                found=mid;
+                low=mid+1;
+            }else
+                high=mid-1;
+        }
+        return found;
+    }
+
+    private void read(byte[] buffer,long position,int length) throws IOException{
+        ByteBuffer dest=ByteBuffer.wrap(buffer,0,length);
+        while(dest.hasRemaining()){
+            int read=channel.read(dest,position+dest.position());
+            if(read<0)
+                throw new EOFException("Unexpected end of broadcast join key file");
+        }
+    }
+
+    private static void delete(File file){
+        if(file.exists() && !file.delete())
+            LOG.warn("Unable to delete broadcast join key file "+file);
+    }
+
+    /**
+     * A sorted run being merged. Runs with equal keys are taken in the order they were written, so that the
+     * rows of a key are found in the order they were loaded.
+     */
+    private static class Run implements Comparable<Run>{
+        private final DataInputStream in;
+        private final int order;
+        private byte[] key=new byte[64];
+        private int keyLength;
+        private final byte[] pointer=new byte[SpilledJoinTable.POINTER_SIZE];
+
+        Run(File file,int order) throws IOException{
+            this.in=new DataInputStream(new BufferedInputStream(new FileInputStream(file),1<<16));
+            this.order=order;
+        }
+
+        boolean advance() throws IOException{
+            try{
+                keyLength=in.readInt();
+            }catch(EOFException eof){
+                return false;
+            }
+            if(key.length<keyLength)
+                key=new byte[Math.max(keyLength,2*key.length)];
+            in.readFully(key,0,keyLength);
+            in.readFully(pointer);
+            return true;
+        }
+
+        void close(){
+            try{
+                in.close();
+            }catch(IOException ignored){ }
+        }
+
+        @Override
+        public int compareTo(Run o){
+            int compare=COMPARATOR.compare(key,0,keyLength,o.key,0,o.keyLength);
+            return compare!=0?compare:Integer.compare(order,o.order);
+        }
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.impl.sql.execute.operations;
+
+import com.splicemachine.collections.hashtable.PagedBytesHashTable;
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.derby.impl.sql.JoinTable;
+import com.splicemachine.derby.utils.marshall.BareKeyHash;
+import com.splicemachine.derby.utils.marshall.DataHash;
+import com.splicemachine.derby.utils.marshall.EntryDataDecoder;
+import com.splicemachine.derby.utils.marshall.dvd.DescriptorSerializer;
+import com.splicemachine.derby.utils.marshall.dvd.VersionedSerializers;
+import com.splicemachine.hash.BloomFilter;
+import com.splicemachine.primitives.Bytes;
+import com.splicemachine.utils.IntArrays;
+import org.apache.log4j.Logger;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A JoinTable for inner sides which are too large to hold in memory.
+ *
+ * The encoded inner rows live in a local spill file; only the join keys are held in memory, in
+ * a {@link PagedBytesHashTable} which maps each key to the (position,length) of its rows within the file.
+ * When there are too many keys for that, they are kept in a {@link SortedKeyFile} instead.
+ * Rows are read back from the file (using positional reads, so the file can be shared by many
+ * concurrent tables) only when they are returned from {@link #fetchInner(ExecRow)}.
+ */
+class SpilledJoinTable implements JoinTable{
+    static final int POINTER_SIZE=Bytes.SIZEOF_LONG+Bytes.SIZEOF_INT;
+
+    private final PagedBytesHashTable index;
+    private final SortedKeyFile keyFile;
+    private final FileChannel spillChannel;
+    private final ExecRow innerTemplateRow;
+    private final DataHash<ExecRow> outerKeyHash;
+    private final EntryDataDecoder innerRowDecoder;
+    private byte[] rowBuffer=new byte[256];
+    private SortedKeyFile.Matches matches;
+
+    /**
+     * @param index the in-memory index of keys, or null if the keys are held in {@code keyFile}
+     * @param keyFile the keys, when they are not held in {@code index}
+     */
+    @SuppressWarnings("unchecked")
+    public SpilledJoinTable(PagedBytesHashTable index,
+                            SortedKeyFile keyFile,
+                            FileChannel spillChannel,
+                            int[] outerHashKeys,
+                            ExecRow outerTemplateRow,
+                            ExecRow innerTemplateRow){
+        this.index=index;
+        this.keyFile=keyFile;
+        this.spillChannel=spillChannel;
+        this.innerTemplateRow=innerTemplateRow;
+        DescriptorSerializer[] outerSerializers=VersionedSerializers.latestVersion(false).getSerializers(outerTemplateRow);
+        this.outerKeyHash=BareKeyHash.encoder(outerHashKeys,null,outerSerializers);
+        DescriptorSerializer[] innerSerializers=VersionedSerializers.latestVersion(false).getSerializers(innerTemplateRow);
+        this.innerRowDecoder=new EntryDataDecoder(IntArrays.count(innerTemplateRow.nColumns()),null,innerSerializers);
+    }
+
+    @Override
+    public Iterator<ExecRow> fetchInner(ExecRow outer) throws IOException, StandardException{
+        outerKeyHash.setRow(outer);
+        byte[] outerKey=outerKeyHash.encode();
+        assert outerKey!=null: "Programmer error: outer row does not have row key";
+        if(index==null){
+            if(matches==null)
+                matches=new SortedKeyFile.Matches();
+            keyFile.find(outerKey,0,outerKey.length,matches);
+            if(matches.count==0)
+                return Collections.emptyIterator();
+            //the matches are re-used by the next lookup, which may come before this iterator is exhausted
+            return new MatchedRowIterator(Arrays.copyOf(matches.positions,matches.count),Arrays.copyOf(matches.lengths,matches.count));
+        }
+        long address=index.firstValue(outerKey,0,outerKey.length);
+        if(address==PagedBytesHashTable.NO_ENTRY)
+            return Collections.emptyIterator();
+        else
+            return new SpilledRowIterator(address);
+    }
+
+    @Override
+    public void close(){
+        try{
+            outerKeyHash.close();
+            innerRowDecoder.close();
+        }catch(IOException ignored){
+            //the serializers swallow their own errors on close, so there's nothing to do here
+        }
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private ExecRow decodeRow(long position,int length){
+        ExecRow row=innerTemplateRow.getNewNullRow();
+        try{
+            readRow(position,length);
+            innerRowDecoder.set(rowBuffer,0,length);
+            innerRowDecoder.decode(row);
+        }catch(StandardException|IOException e){
+            throw new RuntimeException(e);
+        }
+        return row;
+    }
+
+    private void readRow(long position,int length) throws IOException{
+        if(rowBuffer.length<length)
+            rowBuffer=new byte[Math.max(length,2*rowBuffer.length)];
+        ByteBuffer dest=ByteBuffer.wrap(rowBuffer,0,length);
+        while(dest.hasRemaining()){
+            int read=spillChannel.read(dest,position+dest.position());
+            if(read<0)
+                throw new EOFException("Unexpected end of broadcast join spill file");
+        }
+    }
+
+    private class SpilledRowIterator implements Iterator<ExecRow>{
+        private long address;
+
+        SpilledRowIterator(long address){
+            this.address=address;
+        }
+
+        @Override
+        public boolean hasNext(){
+            return address!=PagedBytesHashTable.NO_ENTRY;
+        }
+
+        @Override
+        public ExecRow next(){
+            if(!hasNext()) throw new NoSuchElementException();
+            byte[] pointer=index.valueArray(address);
+            int pointerOffset=index.valueOffset(address);
+            long position=Bytes.toLong(pointer,pointerOffset);
+            int length=Bytes.toInt(pointer,pointerOffset+Bytes.SIZEOF_LONG);
+
+            ExecRow row=decodeRow(position,length);
+            address=index.nextValue(address);
+            return row;
+        }
+
+        @Override
+        public void remove(){
+            throw new UnsupportedOperationException("Cannot remove rows from a JoinTable");
+        }
+    }
+
+    private class MatchedRowIterator implements Iterator<ExecRow>{
+        private final long[] positions;
+        private final int[] lengths;
+        private int next;
+
+        MatchedRowIterator(long[] positions,int[] lengths){
+            this.positions=positions;
+            this.lengths=lengths;
+        }
+
+        @Override
+        public boolean hasNext(){
+            return next<positions.length;
+        }
+
+        @Override
+        public ExecRow next(){
+            if(!hasNext()) throw new NoSuchElementException();
+            ExecRow row=decodeRow(positions[next],lengths[next]);
+            next++;
+            return row;
+        }
+
+        @Override
+        public void remove(){
+            throw new UnsupportedOperationException("Cannot remove rows from a JoinTable");
+        }
+    }
+
+    static class Factory implements JoinTable.Factory{
+        private static final Logger LOG=Logger.getLogger(SpilledJoinTable.class);
+        private final PagedBytesHashTable index;
+        private final SortedKeyFile keyFile;
+        private final File spillFile;
+        private final FileChannel spillChannel;
+        private final int[] outerHashKeys;
+        private final ExecRow outerTemplateRow;
+        private final ExecRow innerTemplateRow;
+        private BloomFilter keyFilter;
+        private int keyFilterMaxKeys=-1;
+        private boolean spillFileDeleted=false;
+
+        public Factory(PagedBytesHashTable index,
+                       File spillFile,
+                       FileChannel spillChannel,
+                       int[] outerHashKeys,
+                       ExecRow outerTemplateRow,
+                       ExecRow innerTemplateRow){
+            this(index,null,spillFile,spillChannel,outerHashKeys,outerTemplateRow,innerTemplateRow);
+        }
+
+        public Factory(SortedKeyFile keyFile,
+                       File spillFile,
+                       FileChannel spillChannel,
+                       int[] outerHashKeys,
+                       ExecRow outerTemplateRow,
+                       ExecRow innerTemplateRow){
+            this(null,keyFile,spillFile,spillChannel,outerHashKeys,outerTemplateRow,innerTemplateRow);
+        }
+
+        private Factory(PagedBytesHashTable index,
+                        SortedKeyFile keyFile,
+                        File spillFile,
+                        FileChannel spillChannel,
+                        int[] outerHashKeys,
+                        ExecRow outerTemplateRow,
+                        ExecRow innerTemplateRow){
+            this.index=index;
+            this.keyFile=keyFile;
+            this.spillFile=spillFile;
+            this.spillChannel=spillChannel;
+            this.outerHashKeys=outerHashKeys;
+            this.outerTemplateRow=outerTemplateRow;
+            this.innerTemplateRow=innerTemplateRow;
+        }
+
+        @Override
+        public JoinTable newTable(){
+            return new SpilledJoinTable(index,keyFile,spillChannel,outerHashKeys,outerTemplateRow,innerTemplateRow);
+        }
+
+        @Override public long getEstimatedSize(){ return index!=null?index.heapSize():keyFile.heapSize(); }
+
+        @Override
+        public synchronized BloomFilter getKeyFilter(int maxKeys){
+            if(index==null) return null; //too many keys to filter on
+            if(keyFilterMaxKeys!=maxKeys){
+                keyFilter=PagedBytesJoinTable.buildKeyFilter(index,maxKeys);
+                keyFilterMaxKeys=maxKeys;
+            }
+            return keyFilter;
+        }
+
+        /**
+         * Remove the spill file (and key file) from the spill directory. Tables which are already reading them can
+         * still do so, as their space is only reclaimed once the files are closed, or the JVM exits.
+         */
+        synchronized void deleteSpillFile(){
+            if(spillFileDeleted) return;
+            spillFileDeleted=true;
+            if(!spillFile.delete())
+                LOG.warn("Unable to delete broadcast join spill file "+spillFile);
+            if(keyFile!=null)
+                keyFile.delete();
+        }
+
+        @Override
+        public void close(){
+            try{
+                spillChannel.close();
+            }catch(IOException e){
+                LOG.warn("Unable to close broadcast join spill file "+spillFile,e);
+            }
+            if(keyFile!=null)
+                keyFile.close();
+            deleteSpillFile();
+        }
+    }
+}
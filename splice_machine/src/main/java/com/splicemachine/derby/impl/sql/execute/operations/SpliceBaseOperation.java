@@ -70,6 +70,7 @@ public abstract class SpliceBaseOperation implements SpliceOperation, ScopeNamed
     private static final long serialVersionUID=4l;
     private static Logger LOG=Logger.getLogger(SpliceBaseOperation.class);
     private static Logger LOG_CLOSE=Logger.getLogger(SpliceBaseOperation.class.getName()+".close");
+    private static Logger LOG_METRICS=Logger.getLogger(SpliceBaseOperation.class.getName()+".metrics");
     protected Iterator<LocatedRow> locatedRowIterator;
     protected Activation activation;
     protected String explainPlan="";
@@ -209,6 +210,8 @@ public abstract class SpliceBaseOperation implements SpliceOperation, ScopeNamed
                 }
                 closeables=null;
             }
+            if(operationContext!=null && LOG_METRICS.isDebugEnabled())
+                logMetrics();
             clearCurrentRow();
             for(SpliceOperation op : getSubOperations())
                 op.close();
@@ -242,6 +245,20 @@ public abstract class SpliceBaseOperation implements SpliceOperation, ScopeNamed
         }
     }
 
+    /**
+     * Log what the operation's context recorded while it ran. Called once the closeables have been closed, so
+     * that the scanners and joins they hold have recorded their work.
+     */
+    private void logMetrics(){
+        LOG_METRICS.debug(String.format("(%d) %s: rows decoded=%d, bytes decoded=%d, runs spilled=%d, bytes spilled=%d, "+
+                        "join build rows=%d, join build bytes=%d, join probe rows=%d, join probe hits=%d",
+                resultSetNumber(),getName(),
+                operationContext.getRowsDecoded(),operationContext.getBytesDecoded(),
+                operationContext.getSpilledRuns(),operationContext.getSpilledBytes(),
+                operationContext.getJoinBuildRows(),operationContext.getJoinBuildBytes(),
+                operationContext.getJoinProbeRows(),operationContext.getJoinProbeHits()));
+    }
+
     //	@Override
     public void addWarning(SQLWarning w){
         activation.addWarning(w);
@@ -246,6 +246,13 @@ public class TableScanOperation extends ScanOperation{
         return currentTemplate;
     }
 
+    /**
+     * @return for each column of the table, its position in the scanned row, or -1 if it is not scanned
+     */
+    public int[] getBaseColumnMap(){
+        return baseColumnMap;
+    }
+
     /**
      *
      * Prints the name for explain plan.
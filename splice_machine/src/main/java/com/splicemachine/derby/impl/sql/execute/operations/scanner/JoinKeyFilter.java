@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.impl.sql.execute.operations.scanner;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.derby.utils.marshall.BareKeyHash;
+import com.splicemachine.derby.utils.marshall.DataHash;
+import com.splicemachine.derby.utils.marshall.dvd.DescriptorSerializer;
+import com.splicemachine.derby.utils.marshall.dvd.VersionedSerializers;
+import com.splicemachine.hash.BloomFilter;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.IOException;
+
+/**
+ * A filter on the join keys of scanned rows, built from the keys of the other side of an inner join.
+ *
+ * The join keys of each row are encoded exactly as the join encodes them to probe its inner table, and
+ * looked up in a Bloom filter over the inner table's keys. A row whose keys are not in the filter cannot
+ * join with any inner row, so the scanner can drop it without decoding the rest of the row.
+ */
+@NotThreadSafe
+public class JoinKeyFilter implements AutoCloseable{
+    private final BloomFilter filter;
+    private final int[] keyColumns;
+    private DataHash<ExecRow> keyHash;
+    private long rowsRejected;
+
+    /**
+     * @param filter a filter over the encoded join keys of the inner table
+     * @param keyColumns the (0-based) positions of the join key columns in the scanned row
+     */
+    public JoinKeyFilter(BloomFilter filter,int[] keyColumns){
+        this.filter=filter;
+        this.keyColumns=keyColumns;
+    }
+
+    public int[] getKeyColumns(){
+        return keyColumns;
+    }
+
+    /**
+     * @return false if {@code row} cannot join with any row of the inner table
+     */
+    @SuppressWarnings("unchecked")
+    public boolean mightMatch(ExecRow row) throws StandardException, IOException{
+        if(keyHash==null){
+            DescriptorSerializer[] serializers=VersionedSerializers.latestVersion(false).getSerializers(row);
+            keyHash=BareKeyHash.encoder(keyColumns,null,serializers);
+        }
+        keyHash.setRow(row);
+        if(filter.mightContain(keyHash.encode()))
+            return true;
+        rowsRejected++;
+        return false;
+    }
+
+    /**
+     * @return the number of rows which this filter has rejected
+     */
+    public long getRowsRejected(){
+        return rowsRejected;
+    }
+
+    @Override
+    public void close(){
+        if(keyHash!=null){
+            try{
+                keyHash.close();
+            }catch(IOException ignored){
+                //the serializers swallow their own errors on close, so there's nothing to do here
+            }
+            keyHash=null;
+        }
+    }
+}
@@ -22,9 +22,11 @@ import com.splicemachine.db.iapi.error.StandardException;
 import com.splicemachine.db.iapi.services.io.FormatableBitSet;
 import com.splicemachine.db.iapi.services.io.StoredFormatIds;
 import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.store.access.Qualifier;
 import com.splicemachine.db.iapi.types.RowLocation;
 import com.splicemachine.derby.impl.store.ExecRowAccumulator;
 import com.splicemachine.derby.impl.store.access.hbase.HBaseRowLocation;
+import com.splicemachine.derby.utils.Scans;
 import com.splicemachine.derby.utils.StandardIterator;
 import com.splicemachine.derby.utils.marshall.dvd.TypeProvider;
 import com.splicemachine.derby.utils.marshall.dvd.VersionedSerializers;
@@ -87,6 +89,13 @@ public class SITableScanner<Data> implements StandardIterator<ExecRow>,AutoClose
     private final Counter outputBytesCounter;
     private long demarcationPoint;
     private DataValueDescriptor optionalProbeValue;
+    private Qualifier[][] qualifiers;
+    private int[] qualifierColumnMap;
+    private boolean[] qualifierColumns;
+    private JoinKeyFilter joinKeyFilter;
+    private boolean[] joinKeyColumns;
+    private long rowsDecoded;
+    private long bytesDecoded;
 
     protected SITableScanner(DataScanner scanner,
                              final TransactionalRegion region,
@@ -206,6 +215,11 @@ public class SITableScanner<Data> implements StandardIterator<ExecRow>,AutoClose
                     if (LOG.isTraceEnabled())
                         SpliceLogUtils.trace(LOG,"miss columns=%d",template.nColumns());
                 }
+                if((qualifiers!=null || joinKeyFilter!=null) && !lazilyQualifies()){
+                    //the rest of the row is never decoded
+                    filterCounter.increment();
+                    continue;
+                }
                 measureOutputSize(keyValues);
                 currentKeyValue = keyValues.get(0);
                 setRowLocation(currentKeyValue);
@@ -219,6 +233,10 @@ public class SITableScanner<Data> implements StandardIterator<ExecRow>,AutoClose
     }
 
     private void measureOutputSize(List<DataCell> keyValues){
+        rowsDecoded++;
+        for(DataCell cell:keyValues){
+            bytesDecoded+=cell.encodedLength();
+        }
         if(outputBytesCounter.isActive()){
             for(DataCell cell:keyValues){
                 outputBytesCounter.add(cell.encodedLength());
@@ -255,6 +273,8 @@ public class SITableScanner<Data> implements StandardIterator<ExecRow>,AutoClose
             keyAccumulator.close();
         if(siFilter!=null)
             siFilter.getAccumulator().close();
+        if(joinKeyFilter!=null)
+            joinKeyFilter.close();
         if (regionScanner != null)
             regionScanner.close();
     }
@@ -267,10 +287,73 @@ public class SITableScanner<Data> implements StandardIterator<ExecRow>,AutoClose
         return filterCounter.getTotal();
     }
 
+    /**
+     * @return the number of rows read from the region, whether or not they were decoded.
+     * Compare with {@link #getRowsDecoded()}.
+     */
     public long getRowsVisited() {
         return regionScanner.getRowsVisited();
     }
 
+    /**
+     * @return the number of rows which were fully decoded and returned by this scanner
+     */
+    public long getRowsDecoded() {
+        return rowsDecoded;
+    }
+
+    /**
+     * @return the encoded size of the rows which were fully decoded and returned by this scanner.
+     * Compare with {@link #getBytesVisited()}.
+     */
+    public long getBytesDecoded() {
+        return bytesDecoded;
+    }
+
+    /**
+     * Evaluate {@code qualifiers} against each row as it is scanned, decoding only the columns the qualifiers
+     * reference until the row is known to qualify. Rows which do not qualify are skipped without their
+     * remaining columns being decoded.
+     *
+     * @param qualifiers the qualifiers, in the form accepted by {@link Scans#qualifyRecordFromRow}
+     * @param baseColumnMap the map from storage position to row position, or {@code null}
+     * @return true if the scanner will qualify rows, false if the caller must qualify the rows it returns
+     */
+    public boolean qualifyLazily(Qualifier[][] qualifiers,int[] baseColumnMap) {
+        boolean[] columns = new boolean[template.nColumns()];
+        for(Qualifier[] qualifierList:qualifiers){
+            for(Qualifier q:qualifierList){
+                int column = baseColumnMap!=null?baseColumnMap[q.getStoragePosition()]:q.getStoragePosition();
+                if(column<0 || column>=columns.length)
+                    return false;
+                columns[column] = true;
+            }
+        }
+        this.qualifiers = qualifiers;
+        this.qualifierColumnMap = baseColumnMap;
+        this.qualifierColumns = columns;
+        if(accumulator!=null)
+            accumulator.decodeLazily();
+        return true;
+    }
+
+    /**
+     * Drop rows which cannot satisfy {@code filter}, decoding only the join key columns of a row until
+     * the row is known to pass the filter.
+     */
+    public void setJoinKeyFilter(JoinKeyFilter filter) {
+        boolean[] columns = new boolean[template.nColumns()];
+        for(int column:filter.getKeyColumns()){
+            if(column<0 || column>=columns.length)
+                return;
+            columns[column] = true;
+        }
+        this.joinKeyFilter = filter;
+        this.joinKeyColumns = columns;
+        if(accumulator!=null)
+            accumulator.decodeLazily();
+    }
+
     public void setRegionScanner(DataScanner scanner){
         this.regionScanner = scanner;
     }
@@ -350,6 +433,8 @@ public class SITableScanner<Data> implements StandardIterator<ExecRow>,AutoClose
             boolean isCountStar = scan.getAttribute(SIConstants.SI_COUNT_STAR)!=null;
             predicateFilter= buildInitialPredicateFilter();
             accumulator = ExecRowAccumulator.newAccumulator(predicateFilter, false, template, rowDecodingMap, tableVersion);
+            if(qualifiers!=null || joinKeyFilter!=null)
+                accumulator.decodeLazily();
             siFilter = filterFactory.newFilter(predicateFilter,getRowEntryDecoder(),accumulator,isCountStar);
         }
         return siFilter;
@@ -429,6 +514,25 @@ public class SITableScanner<Data> implements StandardIterator<ExecRow>,AutoClose
         return numCells > 0 && filter.getAccumulator().result() != null;
     }
 
+    /**
+     * Apply the join key filter and the qualifiers to the current row, decoding only the columns they need,
+     * and then decode the rest of the row if it passes.
+     */
+    private boolean lazilyQualifies() throws StandardException, IOException {
+        if(joinKeyFilter!=null){
+            accumulator.decodePending(joinKeyColumns);
+            if(!joinKeyFilter.mightMatch(template))
+                return false;
+        }
+        if(qualifiers!=null){
+            accumulator.decodePending(qualifierColumns);
+            if(!Scans.qualifyRecordFromRow(template.getRowArray(),qualifiers,qualifierColumnMap,optionalProbeValue))
+                return false;
+        }
+        accumulator.decodePending(null);
+        return true;
+    }
+
     private boolean filterRowKey(DataCell data) throws IOException {
         if(!isKeyed) return true;
         keyDecoder.set(data.keyArray(), data.keyOffset(), data.keyLength());
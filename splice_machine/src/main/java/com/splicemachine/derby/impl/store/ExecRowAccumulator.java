@@ -25,6 +25,7 @@ import com.splicemachine.storage.ByteEntryAccumulator;
 import com.splicemachine.storage.EntryPredicateFilter;
 import com.carrotsearch.hppc.BitSet;
 import java.io.IOException;
+import java.util.Arrays;
 
 /**
  * @author Scott Fines
@@ -35,6 +36,14 @@ public class ExecRowAccumulator extends ByteEntryAccumulator {
     protected final DescriptorSerializer[] serializers;
     protected final int[] columnMap;
     protected final int[] columnLengths;
+    /*
+     * When decoding lazily, the location of each field which has been accumulated but not yet decoded.
+     * The underlying arrays belong to the current row's cells, so are only valid until the next row.
+     */
+    private BitSet pending;
+    private byte[][] pendingData;
+    private int[] pendingOffsets;
+    private int[] pendingLengths;
 
     private ExecRowAccumulator(){
         super(null,false,null);
@@ -114,27 +123,64 @@ public class ExecRowAccumulator extends ByteEntryAccumulator {
         return newAccumulator(predicateFilter,returnIndex,row,keyColumns,null,tableVersion);
     }
 
+    /**
+     * Defer decoding fields into the row until {@link #decodePending(boolean[])} is called, so that
+     * columns which are never looked at are not deserialized.
+     */
+    public void decodeLazily() {
+        if(pending!=null || columnMap==null) return;
+        pending = new BitSet(columnMap.length);
+        pendingData = new byte[columnMap.length][];
+        pendingOffsets = new int[columnMap.length];
+        pendingLengths = new int[columnMap.length];
+    }
+
+    /**
+     * Decode the fields of the current row which were accumulated lazily.
+     *
+     * @param columns the positions in the row of the columns to decode, or {@code null} to decode
+     *                every remaining field
+     */
+    public void decodePending(boolean[] columns) {
+        if(pending==null) return;
+        for(int position=pending.nextSetBit(0);position>=0;position=pending.nextSetBit(position+1)){
+            if(columns!=null && !columns[columnMap[position]]) continue;
+            decode(position,pendingData[position],pendingOffsets[position],pendingLengths[position]);
+            pendingData[position] = null;
+            pending.clear(position);
+        }
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        if(pending!=null && !pending.isEmpty()){
+            pending.clear();
+            Arrays.fill(pendingData,null);
+        }
+    }
+
     @Override
     protected void occupy(int position, byte[] data, int offset, int length) {
-        decode(position, data, offset, length);
+        accumulate(position, data, offset, length);
         super.occupy(position,data,offset,length);
     }
 
     @Override
     protected void occupyDouble(int position, byte[] data, int offset, int length) {
-        decode(position, data, offset, length);
+        accumulate(position, data, offset, length);
         super.occupyDouble(position, data, offset, length);
     }
 
     @Override
     protected void occupyFloat(int position, byte[] data, int offset, int length) {
-        decode(position, data, offset, length);
+        accumulate(position, data, offset, length);
         super.occupyFloat(position, data, offset, length);
     }
 
     @Override
     protected void occupyScalar(int position, byte[] data, int offset, int length) {
-        decode(position,data,offset,length);
+        accumulate(position,data,offset,length);
         super.occupyScalar(position, data, offset, length);
     }
 
@@ -149,6 +195,18 @@ public class ExecRowAccumulator extends ByteEntryAccumulator {
         return columnLengths[colPos];
     }
 
+    private void accumulate(int position, byte[] data, int offset, int length) {
+        if(pending==null){
+            decode(position, data, offset, length);
+            return;
+        }
+        pending.set(position);
+        pendingData[position] = data;
+        pendingOffsets[position] = offset;
+        pendingLengths[position] = length;
+        columnLengths[columnMap[position]] = length;
+    }
+
     protected void decode(int position, byte[] data, int offset, int length) {
         int colPos=columnMap[position];
         DataValueDescriptor dvd = dvds[colPos];
@@ -203,6 +261,7 @@ public class ExecRowAccumulator extends ByteEntryAccumulator {
         @Override protected void occupyFloat(int position, byte[] data, int offset, int length) { }
         @Override protected void occupyScalar(int position, byte[] data, int offset, int length) { }
         @Override public void reset() { }
+        @Override public void decodeLazily() { }
 
         @Override public boolean isFinished() { return true; }
     };
@@ -27,10 +27,12 @@ import com.splicemachine.SqlEnvironment;
 import com.splicemachine.access.api.DatabaseVersion;
 import com.splicemachine.access.api.SConfiguration;
 import com.splicemachine.db.iapi.reference.Property;
+import com.splicemachine.db.impl.sql.catalog.DataDictionaryCache;
 import com.splicemachine.db.impl.jdbc.EmbedConnection;
 import com.splicemachine.derby.ddl.DDLDriver;
 import com.splicemachine.derby.ddl.DDLEnvironmentLoader;
 import com.splicemachine.derby.impl.db.SpliceDatabase;
+import com.splicemachine.derby.impl.sql.execute.operations.BroadcastJoinCache;
 import com.splicemachine.derby.impl.store.access.SpliceAccessManager;
 import com.splicemachine.lifecycle.DatabaseLifecycleService;
 import com.splicemachine.pipeline.ContextFactoryDriverService;
@@ -39,7 +41,11 @@ import com.splicemachine.pipeline.PipelineDriver;
 import com.splicemachine.pipeline.contextfactory.ContextFactoryDriver;
 import com.splicemachine.pipeline.contextfactory.ContextFactoryLoader;
 import com.splicemachine.pipeline.contextfactory.ReferenceCountingFactoryDriver;
+import com.splicemachine.si.api.server.Transactor;
+import com.splicemachine.si.api.txn.TxnSupplier;
 import com.splicemachine.si.impl.driver.SIDriver;
+import com.splicemachine.si.impl.server.SITransactor;
+import com.splicemachine.si.impl.store.CompletedTxnCacheSupplier;
 import com.splicemachine.tools.EmbedConnectionMaker;
 import com.splicemachine.tools.version.ManifestReader;
 import com.splicemachine.utils.logging.LogManager;
@@ -119,6 +125,27 @@ public class EngineLifecycleService implements DatabaseLifecycleService{
         SpliceDatabase db = (SpliceDatabase)((EmbedConnection)internalConnection).getLanguageConnection().getDatabase();
         db.registerDDL();
         logging = new LogManager();
+
+        warmStatementCache(maker);
+    }
+
+    /**
+     * Load the statements this server compiled before it last stopped (if the persistent statement cache is on)
+     * in the background, so they are ready before clients ask for them.
+     */
+    private void warmStatementCache(final EmbedConnectionMaker maker){
+        DataDictionaryCache cache=((EmbedConnection)internalConnection).getLanguageConnection().getDataDictionary().getDataDictionaryCache();
+        if(!cache.canWarmStatementCache())
+            return;
+        Thread warmer=new Thread(() -> {
+            try(Connection conn=maker.createNew(dbProperties)){
+                ((EmbedConnection)conn).getLanguageConnection().getDataDictionary().getDataDictionaryCache().warmStatementCache(conn);
+            }catch(Exception e){
+                LOG.warn("Unable to warm the statement cache",e);
+            }
+        },"statement-cache-warmer");
+        warmer.setDaemon(true);
+        warmer.start();
     }
 
     @Override
@@ -136,6 +163,32 @@ public class EngineLifecycleService implements DatabaseLifecycleService{
              * this exception and don't worry about it too much.
              */
         }
+        try{
+            BroadcastJoinCache.instance().registerJMX(mbs);
+        }catch(InstanceAlreadyExistsException ignored){
+            //same as above
+        }
+        try{
+            ((EmbedConnection)internalConnection).getLanguageConnection().getDataDictionary().getDataDictionaryCache().registerJMX(mbs);
+        }catch(InstanceAlreadyExistsException ignored){
+            //same as above
+        }
+        TxnSupplier txnSupplier=SIDriver.driver().getTxnSupplier();
+        if(txnSupplier instanceof CompletedTxnCacheSupplier){
+            try{
+                ((CompletedTxnCacheSupplier)txnSupplier).registerJMX(mbs);
+            }catch(InstanceAlreadyExistsException ignored){
+                //same as above
+            }
+        }
+        Transactor transactor=SIDriver.driver().getTransactor();
+        if(transactor instanceof SITransactor){
+            try{
+                ((SITransactor)transactor).getRowLocks().registerJMX(mbs);
+            }catch(InstanceAlreadyExistsException ignored){
+                //same as above
+            }
+        }
     }
 
     @Override
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.management;
+
+import javax.management.MXBean;
+
+/**
+ * Interface for exposing the state of the Broadcast Join cache via JMX.
+ */
+@MXBean
+public interface BroadcastJoinCacheStatistics{
+
+    /**
+     * @return the number of requests for a join table which was already cached
+     */
+    long getHitCount();
+
+    /**
+     * @return the number of requests which had to load the join table
+     */
+    long getMissCount();
+
+    /**
+     * @return the number of loads of a join table which had previously been loaded
+     * and then evicted by the cache before the join was finished with it.
+     */
+    long getRebuildCount();
+
+    /**
+     * @return the number of join tables which exceeded the memory limit and spilled to disk
+     */
+    long getSpillCount();
+
+    /**
+     * @return an estimate of the number of bytes currently held by cached join tables
+     */
+    long getCurrentSize();
+
+    /**
+     * @return the maximum number of bytes which cached join tables may hold
+     */
+    long getMaxSize();
+}
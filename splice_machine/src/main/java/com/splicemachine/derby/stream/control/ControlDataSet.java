@@ -14,6 +14,9 @@
 
 package com.splicemachine.derby.stream.control;
 
+import com.splicemachine.EngineDriver;
+import com.splicemachine.access.api.SConfiguration;
+import com.splicemachine.derby.stream.control.spill.SpillableDistinct;
 import com.splicemachine.derby.impl.sql.execute.operations.window.WindowContext;
 import com.splicemachine.db.iapi.sql.execute.ExecRow;
 import com.splicemachine.derby.impl.sql.execute.operations.LocatedRow;
@@ -40,6 +43,7 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import org.spark_project.guava.util.concurrent.ThreadFactoryBuilder;
 import scala.Tuple2;
 import javax.annotation.Nullable;
+import java.io.File;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
@@ -95,12 +99,19 @@ public class ControlDataSet<V> implements DataSet<V> {
 
     @Override
     public DataSet<V> distinct() {
-        return new ControlDataSet<>(Sets.<V>newHashSet(iterator).iterator());
+        return distinct(null);
     }
 
     @Override
     public DataSet<V> distinct(String name, boolean isLast, OperationContext context, boolean pushScope, String scopeDetail) {
-        return distinct();
+        return distinct(context);
+    }
+
+    private DataSet<V> distinct(OperationContext context) {
+        SConfiguration config = configuration();
+        long maxMemory = config == null ? Long.MAX_VALUE : config.getControlDistinctMaxMemory();
+        File spillDirectory = config == null ? null : new File(config.getSpillDirectory());
+        return new ControlDataSet<>(new SpillableDistinct<V>(maxMemory, spillDirectory, context).distinct(iterator));
     }
 
     public <Op extends SpliceOperation, K,U>PairDataSet<K, U> index(final SplicePairFunction<Op,V,K,U> function) {
@@ -495,6 +506,11 @@ public class ControlDataSet<V> implements DataSet<V> {
        throw new RuntimeException("bulk load not supported");
     };
 
+    private static SConfiguration configuration() {
+        EngineDriver driver = EngineDriver.driver();
+        return driver == null ? null : driver.getConfiguration();
+    }
+
     /**
      *
      * Non Lazy Callable
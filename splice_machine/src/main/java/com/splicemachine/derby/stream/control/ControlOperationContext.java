@@ -48,6 +48,14 @@ public class ControlOperationContext<Op extends SpliceOperation> implements Oper
         long rowsJoinedLeft;
         long rowsJoinedRight;
         long rowsProduced;
+        long spilledRuns;
+        long spilledBytes;
+        long joinBuildRows;
+        long joinBuildBytes;
+        long joinProbeRows;
+        long joinProbeHits;
+        long rowsDecoded;
+        long bytesDecoded;
         List<String> badRecords;
         public ActivationHolder activationHolder;
         public SpliceTransactionResourceImpl impl;
@@ -244,6 +252,30 @@ public class ControlOperationContext<Op extends SpliceOperation> implements Oper
         rowsProduced++;
     }
 
+    @Override
+    public void recordSpill(long bytes) {
+        spilledRuns++;
+        spilledBytes+=bytes;
+    }
+
+    @Override
+    public void recordJoinBuild(long rows, long bytes) {
+        joinBuildRows+=rows;
+        joinBuildBytes+=bytes;
+    }
+
+    @Override
+    public void recordJoinProbe(long rows, long hits) {
+        joinProbeRows+=rows;
+        joinProbeHits+=hits;
+    }
+
+    @Override
+    public void recordDecoded(long rows, long bytes) {
+        rowsDecoded+=rows;
+        bytesDecoded+=bytes;
+    }
+
     @Override
     public long getRecordsRead() {
         return rowsRead;
@@ -269,6 +301,46 @@ public class ControlOperationContext<Op extends SpliceOperation> implements Oper
         return tooBusy;
     }
 
+    @Override
+    public long getSpilledRuns() {
+        return spilledRuns;
+    }
+
+    @Override
+    public long getSpilledBytes() {
+        return spilledBytes;
+    }
+
+    @Override
+    public long getJoinBuildRows() {
+        return joinBuildRows;
+    }
+
+    @Override
+    public long getJoinBuildBytes() {
+        return joinBuildBytes;
+    }
+
+    @Override
+    public long getJoinProbeRows() {
+        return joinProbeRows;
+    }
+
+    @Override
+    public long getJoinProbeHits() {
+        return joinProbeHits;
+    }
+
+    @Override
+    public long getRowsDecoded() {
+        return rowsDecoded;
+    }
+
+    @Override
+    public long getBytesDecoded() {
+        return bytesDecoded;
+    }
+
     @Override
     public void pushScope(String displayName) {
         // no op
@@ -16,9 +16,14 @@ package com.splicemachine.derby.stream.control;
 
 import org.apache.spark.api.java.Optional;
 import org.spark_project.guava.base.Function;
+import com.splicemachine.EngineDriver;
+import com.splicemachine.access.api.SConfiguration;
 import com.splicemachine.db.iapi.error.StandardException;
 import com.splicemachine.db.iapi.sql.execute.ExecRow;
 import com.splicemachine.derby.iapi.sql.execute.SpliceOperation;
+import com.splicemachine.derby.stream.control.spill.ExternalSorter;
+import com.splicemachine.derby.stream.control.spill.GraceHashJoin;
+import com.splicemachine.derby.stream.control.spill.SpillableHashAggregator;
 import com.splicemachine.derby.stream.function.*;
 import com.splicemachine.derby.stream.iapi.DataSet;
 import com.splicemachine.derby.stream.iapi.OperationContext;
@@ -42,12 +47,10 @@ import org.spark_project.guava.base.Predicate;
 import org.spark_project.guava.collect.*;
 import scala.Tuple2;
 import javax.annotation.Nullable;
+import java.io.File;
+import java.io.Serializable;
 import java.util.*;
 
-import static com.splicemachine.derby.stream.control.ControlUtils.entryToTuple;
-import static com.splicemachine.derby.stream.control.ControlUtils.multimapFromIterator;
-import static org.spark_project.guava.collect.Maps.*;
-
 /**
  *
  *
@@ -99,22 +102,29 @@ public class ControlPairDataSet<K,V> implements PairDataSet<K,V> {
 
     @Override
     public <Op extends SpliceOperation> PairDataSet<K, V> reduceByKey(final SpliceFunction2<Op,V, V, V> function2) {
-        Multimap<K,V> newMap = multimapFromIterator(source);
-        return new ControlPairDataSet<>(entryToTuple(Multimaps.<K,V>forMap(transformValues(newMap.asMap(),
-                new Function<Collection<V>, V>() {
+        // Fold each value into its group's partial result as it arrives, spilling groups beyond the memory limit
+        SpillableHashAggregator<K, V, V> aggregator = new SpillableHashAggregator<>(new SpillableHashAggregator.Combiner<V, V>() {
             @Override
-            public V apply(@Nullable Collection<V> vs) {
-                try {
-                    V returnValue = null;
-                    for (V v : vs) {
-                        returnValue = function2.call(returnValue, v);
-                    }
-                    return returnValue;
-                } catch (Exception e) {
-                    throw new RuntimeException(e);
-                }
+            public V createCombiner(V value) throws Exception {
+                return function2.call(null, value);
             }
-        })).entries()));
+
+            @Override
+            public V mergeValue(V combined, V value) throws Exception {
+                return function2.call(combined, value);
+            }
+
+            @Override
+            public V mergeCombiners(V combined, V other) throws Exception {
+                return function2.call(combined, other);
+            }
+
+            @Override
+            public boolean keepsValues() {
+                return false;
+            }
+        }, aggregateMaxMemory(), spillDirectory(), function2.operationContext);
+        return new ControlPairDataSet<>(aggregator.aggregate(source));
     }
 
     @Override
@@ -129,18 +139,7 @@ public class ControlPairDataSet<K,V> implements PairDataSet<K,V> {
 
     @Override
     public PairDataSet<K, V> sortByKey(final Comparator<K> comparator) {
-        /*
-         * -sf- this is done a bit goofily, so that we can support multiple versions of guava.
-         *
-         * This is essentially copying out FluentIterable.from(source).toSortedList(comparator) logic
-         * directly into the method, so that we can support the same code line from 12.0.1 on.
-         */
-        return new ControlPairDataSet<>(Ordering.from(new Comparator<Tuple2<K, V>>() {
-            @Override
-            public int compare(Tuple2<K, V> o1, Tuple2<K, V> o2) {
-                return comparator.compare(o1._1(), o2._1());
-            }
-        }).immutableSortedCopy(() -> source).iterator());
+        return sortByKey(comparator, null, null);
     }
 
     @Override
@@ -149,6 +148,15 @@ public class ControlPairDataSet<K,V> implements PairDataSet<K,V> {
         return sortByKey(comparator);
     }
 
+    @Override
+    public PairDataSet<K, V> sortByKey(Comparator<K> comparator, String name, OperationContext context) {
+        // Sort within the configured memory limit, spilling sorted runs to disk beyond it
+        SConfiguration config = configuration();
+        long maxMemory = config == null ? Long.MAX_VALUE : config.getControlSortMaxMemory();
+        ExternalSorter<K, V> sorter = new ExternalSorter<>(comparator, maxMemory, spillDirectory(), context);
+        return new ControlPairDataSet<>(sorter.sort(source));
+    }
+
     @Override
     public PairDataSet<K, V> partitionBy(Partitioner<K> partitioner, Comparator<K> comparator) {
         // we don't need to partition
@@ -157,15 +165,32 @@ public class ControlPairDataSet<K,V> implements PairDataSet<K,V> {
 
     @Override
     public PairDataSet<K, Iterable<V>> groupByKey() {
-        Multimap<K,V> newMap = multimapFromIterator(source);
-        return new ControlPairDataSet<>(FluentIterable.from(newMap.asMap().entrySet()).transform(new Function<Map.Entry<K, Collection<V>>, Tuple2<K, Iterable<V>>>() {
-            @Nullable
+        SpillableHashAggregator<K, V, Iterable<V>> aggregator = new SpillableHashAggregator<>(new SpillableHashAggregator.Combiner<V, Iterable<V>>() {
+            @Override
+            public Iterable<V> createCombiner(V value) {
+                List<V> values = new ArrayList<>();
+                values.add(value);
+                return values;
+            }
+
+            @Override
+            public Iterable<V> mergeValue(Iterable<V> combined, V value) {
+                ((List<V>) combined).add(value);
+                return combined;
+            }
+
+            @Override
+            public Iterable<V> mergeCombiners(Iterable<V> combined, Iterable<V> other) {
+                ((List<V>) combined).addAll((List<V>) other);
+                return combined;
+            }
+
             @Override
-            public Tuple2<K, Iterable<V>> apply(@Nullable Map.Entry<K, Collection<V>> e) {
-                assert e!=null: "E cannot be null";
-                return new Tuple2<K, Iterable<V>>(e.getKey(), e.getValue());
+            public boolean keepsValues() {
+                return true;
             }
-        }).iterator());
+        }, aggregateMaxMemory(), spillDirectory(), null);
+        return new ControlPairDataSet<>(aggregator.aggregate(source));
     }
 
     @Override
@@ -174,24 +199,26 @@ public class ControlPairDataSet<K,V> implements PairDataSet<K,V> {
     }
 
     @Override
-    public <W> PairDataSet< K, Tuple2<V, Optional<W>>> hashLeftOuterJoin(final PairDataSet< K, W> rightDataSet) {
-        // Materializes the right side
-        final Multimap<K,W> rightSide = multimapFromIterator(((ControlPairDataSet) rightDataSet).source);
-        return new ControlPairDataSet(Iterators.concat(Iterators.transform(source,new Function<Tuple2<K, V>, Iterable<Tuple2<K, Tuple2<V, Optional<W>>>>>() {
+    public <W> PairDataSet< K, Tuple2<V, Optional<W>>> hashLeftOuterJoin(PairDataSet< K, W> rightDataSet) {
+        return hashLeftOuterJoin(rightDataSet, null);
+    }
+
+    @Override
+    public <W> PairDataSet< K, Tuple2<V, Optional<W>>> hashLeftOuterJoin(PairDataSet< K, W> rightDataSet, OperationContext context) {
+        return new ControlPairDataSet<>(Iterators.concat(Iterators.transform(joinRight(rightDataSet, context), new Function<Tuple2<Tuple2<K, V>, Iterable<W>>, Iterator<Tuple2<K, Tuple2<V, Optional<W>>>>>() {
             @Nullable
             @Override
-            public Iterable<Tuple2<K, Tuple2<V, Optional<W>>>> apply(@Nullable Tuple2<K, V> t) {
+            public Iterator<Tuple2<K, Tuple2<V, Optional<W>>>> apply(@Nullable Tuple2<Tuple2<K, V>, Iterable<W>> t) {
                 assert t!=null: "T cannot be null";
                 List<Tuple2<K,Tuple2<V,Optional<W>>>> result = new ArrayList<>();
-                K key = t._1();
-                V value = t._2();
-                if (rightSide.containsKey(key)) {
-                    for (W rightValue : rightSide.get(key)) {
-                        result.add(new Tuple2<>(key,new Tuple2<>(value,Optional.of(rightValue))));
-                    }
-                } else
+                K key = t._1()._1();
+                V value = t._1()._2();
+                for (W rightValue : t._2()) {
+                    result.add(new Tuple2<>(key,new Tuple2<>(value,Optional.of(rightValue))));
+                }
+                if (result.isEmpty())
                     result.add(new Tuple2<>(key,new Tuple2<>(value,Optional.<W>empty())));
-                return result;
+                return result.iterator();
             }
         })));
 
@@ -199,40 +226,55 @@ public class ControlPairDataSet<K,V> implements PairDataSet<K,V> {
 
     @Override
     public <W> PairDataSet< K, Tuple2<Optional<V>, W>> hashRightOuterJoin(PairDataSet< K, W> rightDataSet) {
-        // Materializes the left side
-        final Multimap<K, V> leftSide = multimapFromIterator(source);
-        return new ControlPairDataSet(Iterators.transform( ( (ControlPairDataSet<K,W>) rightDataSet).source, new Function<Tuple2<K, W>, Iterator<Tuple2<K, Tuple2<Optional<V>, W>>>>() {
+        return hashRightOuterJoin(rightDataSet, null);
+    }
+
+    @Override
+    public <W> PairDataSet< K, Tuple2<Optional<V>, W>> hashRightOuterJoin(PairDataSet< K, W> rightDataSet, OperationContext context) {
+        // Builds the left side
+        GraceHashJoin<K, W, V> join = new GraceHashJoin<>(joinMaxMemory(), spillDirectory(), context);
+        Iterator<Tuple2<Tuple2<K, W>, Iterable<V>>> matches = join.join(source, ((ControlPairDataSet<K, W>) rightDataSet).source);
+        return new ControlPairDataSet<>(Iterators.concat(Iterators.transform(matches, new Function<Tuple2<Tuple2<K, W>, Iterable<V>>, Iterator<Tuple2<K, Tuple2<Optional<V>, W>>>>() {
             @Nullable
             @Override
-            public Iterator<Tuple2<K, Tuple2<Optional<V>, W>>> apply(@Nullable Tuple2<K, W> t) {
+            public Iterator<Tuple2<K, Tuple2<Optional<V>, W>>> apply(@Nullable Tuple2<Tuple2<K, W>, Iterable<V>> t) {
                 assert t!=null: "t cannot be null!";
                 List<Tuple2<K,Tuple2<Optional<V>,W>>> result = new ArrayList<>();
-                K key = t._1();
-                W value = t._2();
-                if (leftSide.containsKey(key)) {
-                    for (V leftValue: leftSide.get(key)) {
-                        result.add(new Tuple2<>(key,new Tuple2<>(Optional.of(leftValue),value)));
-                    }
-                } else
+                K key = t._1()._1();
+                W value = t._1()._2();
+                for (V leftValue: t._2()) {
+                    result.add(new Tuple2<>(key,new Tuple2<>(Optional.of(leftValue),value)));
+                }
+                if (result.isEmpty())
                     result.add(new Tuple2<>(key,new Tuple2<>(Optional.<V>absent(),value)));
                 return result.iterator();
             }
-        }));
+        })));
     }
 
     @Override
     public <W> PairDataSet< K, Tuple2<V, W>> hashJoin(PairDataSet< K, W> rightDataSet) {
-        // Materializes the right side
-        final Multimap<K,W> rightSide = multimapFromIterator(((ControlPairDataSet<K,W>) rightDataSet).source);
-        return new ControlPairDataSet(Iterators.concat(Iterators.transform(source,new Function<Tuple2<K, V>, Iterator<Tuple2<K, Tuple2<V, W>>>>() {
+        return hashJoin(rightDataSet, null, null);
+    }
+
+    @Override
+    public <W> PairDataSet< K, Tuple2<V, W>> hashJoin(PairDataSet< K, W> rightDataSet, String name) {
+        // Ignore name on control side
+        return hashJoin(rightDataSet);
+    }
+
+    @Override
+    public <W> PairDataSet< K, Tuple2<V, W>> hashJoin(PairDataSet< K, W> rightDataSet, String name, OperationContext context) {
+        // Ignore name on control side
+        return new ControlPairDataSet<>(Iterators.concat(Iterators.transform(joinRight(rightDataSet, context), new Function<Tuple2<Tuple2<K, V>, Iterable<W>>, Iterator<Tuple2<K, Tuple2<V, W>>>>() {
             @Nullable
             @Override
-            public Iterator<Tuple2<K, Tuple2<V, W>>> apply(@Nullable Tuple2<K, V> t) {
+            public Iterator<Tuple2<K, Tuple2<V, W>>> apply(@Nullable Tuple2<Tuple2<K, V>, Iterable<W>> t) {
                 assert t!=null: "Tuple cannot be null";
                 List<Tuple2<K,Tuple2<V,W>>> result = new ArrayList<>();
-                K key = t._1();
-                V value = t._2();
-                for (W rightValue : rightSide.get(key)) {
+                K key = t._1()._1();
+                V value = t._1()._2();
+                for (W rightValue : t._2()) {
                     result.add(new Tuple2<>(key,new Tuple2<>(value,rightValue)));
                 }
                 return result.iterator();
@@ -241,28 +283,86 @@ public class ControlPairDataSet<K,V> implements PairDataSet<K,V> {
     }
 
     @Override
-    public <W> PairDataSet< K, Tuple2<V, W>> hashJoin(PairDataSet< K, W> rightDataSet, String name) {
+    public <W> PairDataSet< K, V> subtractByKey(PairDataSet< K, W> rightDataSet) {
+        return subtractByKey(rightDataSet, null, null);
+    }
+
+    @Override
+    public <W> PairDataSet< K, V> subtractByKey(PairDataSet< K, W> rightDataSet, String name) {
         // Ignore name on control side
-        return hashJoin(rightDataSet);
+        return subtractByKey(rightDataSet);
     }
-    
+
     @Override
-    public <W> PairDataSet< K, V> subtractByKey(PairDataSet< K, W> rightDataSet) {
-        // Materializes the right side
-        final Multimap<K,W> rightSide = multimapFromIterator(((ControlPairDataSet<K,W>) rightDataSet).source);
-        return new ControlPairDataSet<>(Iterators.filter(source, new Predicate<Tuple2<K, V>>() {
+    public <W> PairDataSet< K, V> subtractByKey(PairDataSet< K, W> rightDataSet, String name, OperationContext context) {
+        // Ignore name on control side
+        Iterator<Tuple2<Tuple2<K, V>, Iterable<W>>> unmatched = Iterators.filter(joinRight(rightDataSet, context), new Predicate<Tuple2<Tuple2<K, V>, Iterable<W>>>() {
             @Override
-            public boolean apply(@Nullable Tuple2<K, V> t) {
+            public boolean apply(@Nullable Tuple2<Tuple2<K, V>, Iterable<W>> t) {
                 assert t!=null: "T cannot be null";
-                return rightSide.get(t._1()).isEmpty();
+                return Iterables.isEmpty(t._2());
+            }
+        });
+        return new ControlPairDataSet<>(Iterators.transform(unmatched, new Function<Tuple2<Tuple2<K, V>, Iterable<W>>, Tuple2<K, V>>() {
+            @Nullable
+            @Override
+            public Tuple2<K, V> apply(@Nullable Tuple2<Tuple2<K, V>, Iterable<W>> t) {
+                assert t!=null: "T cannot be null";
+                return t._1();
             }
         }));
     }
 
-    @Override
-    public <W> PairDataSet< K, V> subtractByKey(PairDataSet< K, W> rightDataSet, String name) {
-        // Ignore name on control side
-        return subtractByKey(rightDataSet);
+    /*
+     * Probes the right side with this data set's pairs, building the right side
+     * into a hash table which spills beyond the join memory limit.
+     */
+    private <W> Iterator<Tuple2<Tuple2<K, V>, Iterable<W>>> joinRight(PairDataSet<K, W> rightDataSet, OperationContext context) {
+        GraceHashJoin<K, V, W> join = new GraceHashJoin<>(joinMaxMemory(), spillDirectory(), context);
+        return join.join(((ControlPairDataSet<K, W>) rightDataSet).source, source);
+    }
+
+    private enum Side { LEFT, RIGHT }
+
+    /*
+     * A value from one side of a cogroup, tagged with that side so that it is grouped with the
+     * right side even when the value itself is null. Serializable, as the groups may be spilled.
+     */
+    private static final class CogroupValue<V, W> implements Serializable {
+        private static final long serialVersionUID = 1L;
+        final Side side;
+        final V left;
+        final W right;
+
+        CogroupValue(Side side, V left, W right) {
+            this.side = side;
+            this.left = left;
+            this.right = right;
+        }
+    }
+
+    /*
+     * Outside of a running engine (e.g. in unit tests) there is no configuration, so
+     * operations are never limited in memory and never spill.
+     */
+    private static SConfiguration configuration() {
+        EngineDriver driver = EngineDriver.driver();
+        return driver == null ? null : driver.getConfiguration();
+    }
+
+    private static long aggregateMaxMemory() {
+        SConfiguration config = configuration();
+        return config == null ? Long.MAX_VALUE : config.getControlAggregateMaxMemory();
+    }
+
+    private static long joinMaxMemory() {
+        SConfiguration config = configuration();
+        return config == null ? Long.MAX_VALUE : config.getControlJoinMaxMemory();
+    }
+
+    private static File spillDirectory() {
+        SConfiguration config = configuration();
+        return config == null ? null : new File(config.getSpillDirectory());
     }
 
     @Override
@@ -310,16 +410,7 @@ public class ControlPairDataSet<K,V> implements PairDataSet<K,V> {
     
     @Override
     public <W> PairDataSet<K, Tuple2<Iterable<V>, Iterable<W>>> cogroup(PairDataSet<K, W> rightDataSet) {
-        Multimap<K, V> left = multimapFromIterator(source);
-        Multimap<K, W> right = multimapFromIterator( ((ControlPairDataSet<K, W>) rightDataSet).source);
-
-        List<Tuple2<K, Tuple2<Iterable<V>, Iterable<W>>>> result = new ArrayList<>();
-        for (K key: Sets.union(left.keySet(),right.keySet())){
-            Collection<V> vs=left.get(key);
-            Collection<W> ws=right.get(key);
-            result.add(new Tuple2<>(key,new Tuple2<Iterable<V>, Iterable<W>>(vs,ws)));
-        }
-        return new ControlPairDataSet<>(result.iterator());
+        return cogroup(rightDataSet, null, null);
     }
 
     @Override
@@ -328,6 +419,58 @@ public class ControlPairDataSet<K,V> implements PairDataSet<K,V> {
         return cogroup(rightDataSet);
     }
 
+    @Override
+    @SuppressWarnings("unchecked")
+    public <W> PairDataSet<K, Tuple2<Iterable<V>, Iterable<W>>> cogroup(PairDataSet<K, W> rightDataSet, String name, OperationContext context) {
+        // Ignore name on control side
+        // tag each value with its side, and group both sides at once
+        Iterator<Tuple2<K, CogroupValue<V, W>>> left = Iterators.transform(source, new Function<Tuple2<K, V>, Tuple2<K, CogroupValue<V, W>>>() {
+            @Nullable
+            @Override
+            public Tuple2<K, CogroupValue<V, W>> apply(@Nullable Tuple2<K, V> t) {
+                assert t!=null: "T cannot be null";
+                return new Tuple2<>(t._1(), new CogroupValue<V, W>(Side.LEFT, t._2(), null));
+            }
+        });
+        Iterator<Tuple2<K, CogroupValue<V, W>>> right = Iterators.transform(((ControlPairDataSet<K, W>) rightDataSet).source, new Function<Tuple2<K, W>, Tuple2<K, CogroupValue<V, W>>>() {
+            @Nullable
+            @Override
+            public Tuple2<K, CogroupValue<V, W>> apply(@Nullable Tuple2<K, W> t) {
+                assert t!=null: "T cannot be null";
+                return new Tuple2<>(t._1(), new CogroupValue<V, W>(Side.RIGHT, null, t._2()));
+            }
+        });
+        SpillableHashAggregator<K, CogroupValue<V, W>, Tuple2<ArrayList<V>, ArrayList<W>>> aggregator = new SpillableHashAggregator<>(new SpillableHashAggregator.Combiner<CogroupValue<V, W>, Tuple2<ArrayList<V>, ArrayList<W>>>() {
+            @Override
+            public Tuple2<ArrayList<V>, ArrayList<W>> createCombiner(CogroupValue<V, W> value) {
+                return mergeValue(new Tuple2<>(new ArrayList<V>(), new ArrayList<W>()), value);
+            }
+
+            @Override
+            public Tuple2<ArrayList<V>, ArrayList<W>> mergeValue(Tuple2<ArrayList<V>, ArrayList<W>> combined, CogroupValue<V, W> value) {
+                if (value.side == Side.LEFT)
+                    combined._1().add(value.left);
+                else
+                    combined._2().add(value.right);
+                return combined;
+            }
+
+            @Override
+            public Tuple2<ArrayList<V>, ArrayList<W>> mergeCombiners(Tuple2<ArrayList<V>, ArrayList<W>> combined, Tuple2<ArrayList<V>, ArrayList<W>> other) {
+                combined._1().addAll(other._1());
+                combined._2().addAll(other._2());
+                return combined;
+            }
+
+            @Override
+            public boolean keepsValues() {
+                return true;
+            }
+        }, joinMaxMemory(), spillDirectory(), context);
+        Iterator groups = aggregator.aggregate(Iterators.concat(left, right));
+        return new ControlPairDataSet<>((Iterator<Tuple2<K, Tuple2<Iterable<V>, Iterable<W>>>>) groups);
+    }
+
     @Override
     public PairDataSet<K, V> union(PairDataSet<K, V> dataSet) {
         return new ControlPairDataSet(Iterators.concat(source,((ControlPairDataSet<K,V>)dataSet).source));
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.stream.control.spill;
+
+import com.splicemachine.derby.stream.iapi.OperationContext;
+import com.splicemachine.utils.SpliceLogUtils;
+import org.apache.log4j.Logger;
+import scala.Tuple2;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Sorts key-value pairs by key within a bounded amount of memory.
+ *
+ * Pairs are buffered in memory until their estimated size exceeds the memory limit. The buffer is then sorted
+ * and written to a local spill file as a sorted run. Once the input is exhausted, the runs (and whatever is
+ * left in the buffer) are merged with a {@link LoserTree}. If there are more runs than can be merged at once,
+ * the oldest runs are first merged into longer runs, so that the number of open files stays bounded.
+ *
+ * If the input fits in memory, nothing is written to disk and the sort is a plain in-memory sort. Either way,
+ * the sort is stable.
+ */
+@NotThreadSafe
+public class ExternalSorter<K,V>{
+    private static final Logger LOG=Logger.getLogger(ExternalSorter.class);
+    /*the most runs merged at once, which bounds the number of spill files open together*/
+    static final int MAX_MERGE_WIDTH=64;
+    private static final String SPILL_PREFIX="sort-";
+
+    private final Comparator<Tuple2<K,V>> comparator;
+    private final long maxMemory;
+    private final File spillDirectory;
+    private final OperationContext context;
+
+    /**
+     * @param keyComparator  the order to sort the keys in
+     * @param maxMemory      the maximum number of bytes of pairs to hold in memory
+     * @param spillDirectory the directory to write sorted runs to
+     * @param context        the context to record spills to, or {@code null} if they needn't be recorded
+     */
+    public ExternalSorter(final Comparator<K> keyComparator,long maxMemory,File spillDirectory,OperationContext context){
+        this.comparator=new Comparator<Tuple2<K,V>>(){
+            @Override
+            public int compare(Tuple2<K,V> o1,Tuple2<K,V> o2){
+                return keyComparator.compare(o1._1(),o2._1());
+            }
+        };
+        this.maxMemory=maxMemory;
+        this.spillDirectory=spillDirectory;
+        this.context=context;
+    }
+
+    /**
+     * Sort the pairs of {@code source}. The source is consumed entirely before this method returns.
+     *
+     * @return the pairs of {@code source}, sorted by key
+     */
+    public Iterator<Tuple2<K,V>> sort(Iterator<Tuple2<K,V>> source){
+        List<Tuple2<K,V>> buffer=new ArrayList<>();
+        List<SpillFile<K,V>> runs=new ArrayList<>();
+        boolean success=false;
+        try{
+            long bufferedBytes=0l;
+            while(source.hasNext()){
+                Tuple2<K,V> next=source.next();
+                buffer.add(next);
+                bufferedBytes+=RowSizeEstimator.estimate(next);
+                if(bufferedBytes>maxMemory){
+                    runs.add(spill(buffer));
+                    buffer.clear();
+                    bufferedBytes=0l;
+                }
+            }
+            Collections.sort(buffer,comparator);
+            if(runs.isEmpty()){
+                success=true;
+                return buffer.iterator();
+            }
+            while(runs.size()+1>MAX_MERGE_WIDTH){
+                mergeOldestRuns(runs);
+            }
+            List<Iterator<Tuple2<K,V>>> sources=new ArrayList<>(runs.size()+1);
+            for(SpillFile<K,V> run:runs){
+                sources.add(run.open(context));
+            }
+            sources.add(buffer.iterator());
+            success=true;
+            return new LoserTree<>(sources,comparator);
+        }catch(IOException e){
+            throw new RuntimeException("Unable to spill sorted rows to "+spillDirectory,e);
+        }finally{
+            if(!success){
+                for(SpillFile<K,V> run:runs){
+                    run.delete();
+                }
+            }
+        }
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private SpillFile<K,V> spill(List<Tuple2<K,V>> buffer) throws IOException{
+        Collections.sort(buffer,comparator);
+        SpillFile<K,V> run=SpillFile.create(spillDirectory,SPILL_PREFIX);
+        try{
+            for(Tuple2<K,V> pair:buffer){
+                run.write(pair);
+            }
+            finish(run);
+        }catch(IOException|RuntimeException e){
+            run.delete();
+            throw e;
+        }
+        return run;
+    }
+
+    /*
+     * Replace the oldest runs with a single run. The merged run takes the place of the runs it merges, so
+     * that pairs with equal keys stay in their original order.
+     */
+    private void mergeOldestRuns(List<SpillFile<K,V>> runs) throws IOException{
+        List<SpillFile<K,V>> oldest=runs.subList(0,MAX_MERGE_WIDTH);
+        List<Iterator<Tuple2<K,V>>> sources=new ArrayList<>(oldest.size());
+        for(SpillFile<K,V> run:oldest){
+            sources.add(run.open(context));
+        }
+        SpillFile<K,V> merged=SpillFile.create(spillDirectory,SPILL_PREFIX);
+        try{
+            LoserTree<Tuple2<K,V>> merge=new LoserTree<>(sources,comparator);
+            while(merge.hasNext()){
+                merged.write(merge.next());
+            }
+            finish(merged);
+        }catch(IOException|RuntimeException e){
+            merged.delete();
+            throw e;
+        }
+        oldest.clear();
+        runs.add(0,merged);
+    }
+
+    private void finish(SpillFile<K,V> run) throws IOException{
+        long bytes=run.finish();
+        if(context!=null)
+            context.recordSpill(bytes);
+        if(LOG.isDebugEnabled())
+            SpliceLogUtils.debug(LOG,"Spilled a sorted run of %d rows (%d bytes) to %s",run.size(),bytes,run);
+    }
+}
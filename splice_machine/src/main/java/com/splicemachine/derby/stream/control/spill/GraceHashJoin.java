@@ -0,0 +1,331 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.stream.control.spill;
+
+import com.splicemachine.derby.stream.iapi.OperationContext;
+import com.splicemachine.utils.SpliceLogUtils;
+import org.apache.log4j.Logger;
+import org.spark_project.guava.base.Function;
+import org.spark_project.guava.collect.Iterators;
+import scala.Tuple2;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Joins a stream of probe pairs to a build side by key, within a bounded amount of memory (a hybrid
+ * hash join).
+ *
+ * The build side is read first, into one of a fixed number of hash tables, chosen by the hash of the key. When the
+ * estimated size of the tables exceeds the memory limit, the largest table is written out to a spill partition and
+ * dropped, and any later build pairs which fall into it are written straight to that partition. Probe pairs are then
+ * streamed through: a pair whose partition is still in memory is matched immediately, while a pair whose partition
+ * was spilled is written to a matching probe partition. Once the probe side is exhausted, each pair of spilled
+ * partitions is joined in the same way, on different bits of the hash, one pair of partitions at a time.
+ *
+ * Keys are compared with {@link Object#equals(Object)}, as in a {@link HashMap}. Probe pairs are returned in their
+ * original order within a partition which stays in memory; pairs from spilled partitions follow them.
+ *
+ * If the build side fits in memory, nothing is written to disk.
+ */
+@NotThreadSafe
+public class GraceHashJoin<K,V,W>{
+    private static final Logger LOG=Logger.getLogger(GraceHashJoin.class);
+    private static final int PARTITION_BITS=4;
+    static final int NUM_PARTITIONS=1<<PARTITION_BITS;
+    /*once the hash has no bits left to partition on, build in memory regardless of the limit*/
+    private static final int MAX_DEPTH=Integer.SIZE/PARTITION_BITS-1;
+    /*the cost of a hash table entry, and of the list holding the build values of a key*/
+    private static final int KEY_OVERHEAD=64;
+    private static final int VALUE_OVERHEAD=8;
+    private static final String BUILD_PREFIX="join-build-";
+    private static final String PROBE_PREFIX="join-probe-";
+
+    private final long maxMemory;
+    private final File spillDirectory;
+    private final OperationContext context;
+
+    /**
+     * @param maxMemory      the maximum number of bytes of build pairs to hold in memory
+     * @param spillDirectory the directory to write spill partitions to
+     * @param context        the context to record the join and its spills to, or {@code null} if they needn't
+     *                       be recorded
+     */
+    public GraceHashJoin(long maxMemory,File spillDirectory,OperationContext context){
+        this.maxMemory=maxMemory;
+        this.spillDirectory=spillDirectory;
+        this.context=context;
+    }
+
+    /**
+     * Join {@code probe} to {@code build}. The build side is consumed entirely before this method returns; the
+     * probe side is read lazily.
+     *
+     * @return one pair for each pair of {@code probe}, holding the probe pair and the values of every build pair
+     * with an equal key. The values are empty if no build pair has its key.
+     */
+    public Iterator<Tuple2<Tuple2<K,V>,Iterable<W>>> join(Iterator<Tuple2<K,W>> build,Iterator<Tuple2<K,V>> probe){
+        return join(build,probe,0);
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+
+    private Iterator<Tuple2<Tuple2<K,V>,Iterable<W>>> join(Iterator<Tuple2<K,W>> build,Iterator<Tuple2<K,V>> probe,int depth){
+        Partitions partitions=new Partitions(depth);
+        boolean success=false;
+        try{
+            partitions.build(build);
+            success=true;
+        }catch(IOException e){
+            throw new RuntimeException("Unable to spill build rows to "+spillDirectory,e);
+        }finally{
+            if(!success)
+                partitions.discard();
+        }
+        return new ProbeIterator(partitions,probe);
+    }
+
+    private static int partition(Object key,int depth){
+        int h=key==null?0:key.hashCode();
+        //spread the bits, since row hash codes are often poorly distributed in the low bits
+        h*=0x9E3779B9;
+        h^=h>>>16;
+        return (h>>>(depth*PARTITION_BITS))&(NUM_PARTITIONS-1);
+    }
+
+    private class Partitions{
+        private final int depth;
+        /*the table of each partition, or null once the partition has been spilled*/
+        private final List<Map<K,List<W>>> tables=new ArrayList<>(NUM_PARTITIONS);
+        private final long[] tableBytes=new long[NUM_PARTITIONS];
+        private final List<SpillFile<K,W>> buildFiles=new ArrayList<>(NUM_PARTITIONS);
+        private final List<SpillFile<K,V>> probeFiles=new ArrayList<>(NUM_PARTITIONS);
+        private long bytes;
+
+        Partitions(int depth){
+            this.depth=depth;
+            for(int i=0;i<NUM_PARTITIONS;i++){
+                tables.add(new HashMap<K,List<W>>());
+                buildFiles.add(null);
+                probeFiles.add(null);
+            }
+        }
+
+        void build(Iterator<Tuple2<K,W>> build) throws IOException{
+            long rows=0l;
+            long totalBytes=0l;
+            while(build.hasNext()){
+                Tuple2<K,W> next=build.next();
+                rows++;
+                long valueSize=RowSizeEstimator.estimate(next._2());
+                long keySize=RowSizeEstimator.estimate(next._1());
+                totalBytes+=keySize+valueSize;
+                int p=partition(next._1(),depth);
+                Map<K,List<W>> table=tables.get(p);
+                if(table==null){
+                    buildFiles.get(p).write(next);
+                    continue;
+                }
+                List<W> values=table.get(next._1());
+                long size=VALUE_OVERHEAD+valueSize;
+                if(values==null){
+                    values=new ArrayList<>(1);
+                    table.put(next._1(),values);
+                    size+=KEY_OVERHEAD+keySize;
+                }
+                values.add(next._2());
+                tableBytes[p]+=size;
+                bytes+=size;
+                while(bytes>maxMemory && depth<MAX_DEPTH){
+                    spillLargest();
+                }
+            }
+            if(depth==0 && context!=null)
+                context.recordJoinBuild(rows,totalBytes);
+            if(LOG.isDebugEnabled())
+                SpliceLogUtils.debug(LOG,"Built %d rows (%d bytes, %d of them in memory) at depth %d",rows,totalBytes,bytes,depth);
+        }
+
+        private void spillLargest() throws IOException{
+            int largest=-1;
+            for(int i=0;i<NUM_PARTITIONS;i++){
+                if(tables.get(i)!=null && (largest<0 || tableBytes[i]>tableBytes[largest]))
+                    largest=i;
+            }
+            SpillFile<K,W> file=SpillFile.create(spillDirectory,BUILD_PREFIX);
+            buildFiles.set(largest,file);
+            for(Map.Entry<K,List<W>> entry:tables.get(largest).entrySet()){
+                for(W value:entry.getValue()){
+                    file.write(entry.getKey(),value);
+                }
+            }
+            tables.set(largest,null);
+            bytes-=tableBytes[largest];
+            tableBytes[largest]=0l;
+        }
+
+        /**
+         * @return the table to probe for {@code key}, or {@code null} if its partition was spilled, in which case
+         * the pair has been written to its probe partition
+         */
+        Map<K,List<W>> tableFor(Tuple2<K,V> pair) throws IOException{
+            int p=partition(pair._1(),depth);
+            Map<K,List<W>> table=tables.get(p);
+            if(table==null){
+                SpillFile<K,V> file=probeFiles.get(p);
+                if(file==null){
+                    file=SpillFile.create(spillDirectory,PROBE_PREFIX);
+                    probeFiles.set(p,file);
+                }
+                file.write(pair);
+            }
+            return table;
+        }
+
+        /**
+         * Finish the spill partitions, once the probe side is exhausted.
+         *
+         * @return the joins of the spilled partitions, each of which is made only once the previous one has
+         * been consumed
+         */
+        Iterator<Tuple2<Tuple2<K,V>,Iterable<W>>> joinSpilled() throws IOException{
+            tables.clear();
+            final List<Tuple2<SpillFile<K,W>,SpillFile<K,V>>> spilled=new ArrayList<>(NUM_PARTITIONS);
+            for(int i=0;i<NUM_PARTITIONS;i++){
+                SpillFile<K,W> buildFile=buildFiles.get(i);
+                if(buildFile==null) continue;
+                SpillFile<K,V> probeFile=probeFiles.get(i);
+                if(probeFile==null){
+                    //nothing probes this partition, so there's nothing to join it to
+                    buildFile.delete();
+                    continue;
+                }
+                finish(buildFile);
+                finish(probeFile);
+                spilled.add(new Tuple2<>(buildFile,probeFile));
+            }
+            buildFiles.clear();
+            probeFiles.clear();
+            return Iterators.concat(Iterators.transform(spilled.iterator(),new Function<Tuple2<SpillFile<K,W>,SpillFile<K,V>>, Iterator<Tuple2<Tuple2<K,V>,Iterable<W>>>>(){
+                @Override
+                public Iterator<Tuple2<Tuple2<K,V>,Iterable<W>>> apply(@Nullable Tuple2<SpillFile<K,W>,SpillFile<K,V>> files){
+                    assert files!=null;
+                    try{
+                        Iterator<Tuple2<K,W>> build=files._1().open(context);
+                        return join(build,files._2().open(context),depth+1);
+                    }catch(IOException e){
+                        files._2().delete();
+                        throw new RuntimeException("Unable to read spilled rows from "+spillDirectory,e);
+                    }
+                }
+            }));
+        }
+
+        private void finish(SpillFile<?,?> partition) throws IOException{
+            long bytes=partition.finish();
+            if(context!=null)
+                context.recordSpill(bytes);
+            if(LOG.isDebugEnabled())
+                SpliceLogUtils.debug(LOG,"Spilled a partition of %d rows (%d bytes) at depth %d to %s",partition.size(),bytes,depth,partition);
+        }
+
+        void discard(){
+            for(SpillFile<?,?> file:buildFiles){
+                if(file!=null)
+                    file.delete();
+            }
+            for(SpillFile<?,?> file:probeFiles){
+                if(file!=null)
+                    file.delete();
+            }
+            buildFiles.clear();
+            probeFiles.clear();
+            tables.clear();
+        }
+    }
+
+    private class ProbeIterator implements Iterator<Tuple2<Tuple2<K,V>,Iterable<W>>>{
+        private final Partitions partitions;
+        private final Iterator<Tuple2<K,V>> probe;
+        private Iterator<Tuple2<Tuple2<K,V>,Iterable<W>>> spilled;
+        private Tuple2<Tuple2<K,V>,Iterable<W>> next;
+        private long rows;
+        private long hits;
+
+        ProbeIterator(Partitions partitions,Iterator<Tuple2<K,V>> probe){
+            this.partitions=partitions;
+            this.probe=probe;
+        }
+
+        @Override
+        public boolean hasNext(){
+            if(next!=null) return true;
+            try{
+                next=computeNext();
+            }catch(IOException e){
+                partitions.discard();
+                throw new RuntimeException("Unable to spill probe rows to "+spillDirectory,e);
+            }catch(RuntimeException e){
+                partitions.discard();
+                throw e;
+            }
+            return next!=null;
+        }
+
+        @Override
+        public Tuple2<Tuple2<K,V>,Iterable<W>> next(){
+            if(!hasNext())
+                throw new NoSuchElementException();
+            Tuple2<Tuple2<K,V>,Iterable<W>> n=next;
+            next=null;
+            return n;
+        }
+
+        @Override
+        public void remove(){
+            throw new UnsupportedOperationException();
+        }
+
+        private Tuple2<Tuple2<K,V>,Iterable<W>> computeNext() throws IOException{
+            if(spilled!=null)
+                return spilled.hasNext()?spilled.next():null;
+            while(probe.hasNext()){
+                Tuple2<K,V> pair=probe.next();
+                Map<K,List<W>> table=partitions.tableFor(pair);
+                if(table==null) continue;
+                rows++;
+                List<W> values=table.get(pair._1());
+                if(values==null)
+                    return new Tuple2<Tuple2<K,V>,Iterable<W>>(pair,Collections.<W>emptyList());
+                hits++;
+                return new Tuple2<Tuple2<K,V>,Iterable<W>>(pair,values);
+            }
+            if(context!=null)
+                context.recordJoinProbe(rows,hits);
+            spilled=partitions.joinSpilled();
+            return spilled.hasNext()?spilled.next():null;
+        }
+    }
+}
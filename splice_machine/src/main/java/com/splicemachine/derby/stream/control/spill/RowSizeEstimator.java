@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.stream.control.spill;
+
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
+import com.splicemachine.derby.impl.sql.execute.operations.LocatedRow;
+import scala.Tuple2;
+
+/**
+ * Estimates how much heap the rows buffered by a control-side operation occupy, so that the
+ * operation can tell when to spill them.
+ *
+ * The estimates don't have to be exact, only proportional to the real size of the rows. Objects of
+ * a type this class doesn't know about are charged a fixed amount.
+ */
+public class RowSizeEstimator{
+    /*the cost of an object header and a reference to it*/
+    private static final int OBJECT_OVERHEAD=24;
+    private static final int UNKNOWN_OBJECT_SIZE=64;
+
+    private RowSizeEstimator(){}
+
+    /**
+     * @return the estimated number of bytes of heap which {@code o} occupies
+     */
+    public static long estimate(Object o){
+        if(o==null)
+            return 8;
+        if(o instanceof ExecRow)
+            return estimateRow((ExecRow)o);
+        if(o instanceof LocatedRow){
+            LocatedRow lr=(LocatedRow)o;
+            return OBJECT_OVERHEAD+estimate(lr.getRow())+estimate(lr.getRowLocation());
+        }
+        if(o instanceof DataValueDescriptor)
+            return ((DataValueDescriptor)o).estimateMemoryUsage();
+        if(o instanceof byte[])
+            return OBJECT_OVERHEAD+((byte[])o).length;
+        if(o instanceof Tuple2){
+            Tuple2 t=(Tuple2)o;
+            return OBJECT_OVERHEAD+estimate(t._1())+estimate(t._2());
+        }
+        return UNKNOWN_OBJECT_SIZE;
+    }
+
+    private static long estimateRow(ExecRow row){
+        DataValueDescriptor[] columns=row.getRowArray();
+        long size=OBJECT_OVERHEAD;
+        if(columns==null)
+            return size;
+        size+=OBJECT_OVERHEAD+8l*columns.length;
+        for(DataValueDescriptor dvd:columns){
+            if(dvd!=null)
+                size+=dvd.estimateMemoryUsage();
+        }
+        return size;
+    }
+}
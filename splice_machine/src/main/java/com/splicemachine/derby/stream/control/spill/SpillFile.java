@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.stream.control.spill;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.derby.iapi.sql.execute.SpliceOperation;
+import com.splicemachine.derby.stream.iapi.OperationContext;
+import com.splicemachine.utils.SpliceLogUtils;
+import org.apache.log4j.Logger;
+import scala.Tuple2;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A local file of key-value pairs written by a control-side operation which ran out of memory.
+ *
+ * Pairs are written with Java serialization, which every row type flowing through a control-side
+ * DataSet supports (the rows are {@link java.io.Externalizable}). The stream is reset periodically, so
+ * that neither the writer nor the reader holds on to every row it has seen.
+ *
+ * A file is read back at most once. It is unlinked as soon as it is opened for reading, so that
+ * its space is reclaimed once the reader is closed. A reader closes itself once it is exhausted; one
+ * which is abandoned before then is closed along with the operation which opened it.
+ */
+@NotThreadSafe
+public class SpillFile<K,V>{
+    private static final Logger LOG=Logger.getLogger(SpillFile.class);
+    private static final int BUFFER_SIZE=64*1024;
+    private static final int RESET_INTERVAL=1024;
+
+    private final File file;
+    private ObjectOutputStream out;
+    private long numPairs;
+    private long bytes;
+
+    private SpillFile(File file,ObjectOutputStream out){
+        this.file=file;
+        this.out=out;
+    }
+
+    /**
+     * Create a new, empty spill file in {@code directory}.
+     *
+     * @param prefix a prefix for the file name, identifying the kind of operation which spilled
+     */
+    public static <K,V> SpillFile<K,V> create(File directory,String prefix) throws IOException{
+        File file=File.createTempFile(prefix,".spill",directory);
+        try{
+            ObjectOutputStream out=new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file),BUFFER_SIZE));
+            return new SpillFile<>(file,out);
+        }catch(IOException e){
+            delete(file);
+            throw e;
+        }
+    }
+
+    public void write(K key,V value) throws IOException{
+        assert out!=null: "Cannot write to a spill file once it is finished";
+        out.writeObject(key);
+        out.writeObject(value);
+        numPairs++;
+        if(numPairs%RESET_INTERVAL==0)
+            out.reset();
+    }
+
+    public void write(Tuple2<K,V> pair) throws IOException{
+        write(pair._1(),pair._2());
+    }
+
+    /**
+     * Finish writing to this file.
+     *
+     * @return the number of bytes written
+     */
+    public long finish() throws IOException{
+        if(out!=null){
+            out.close();
+            out=null;
+            bytes=file.length();
+        }
+        return bytes;
+    }
+
+    /**
+     * @return the number of pairs in this file
+     */
+    public long size(){
+        return numPairs;
+    }
+
+    /**
+     * Open this file for reading. The file must be finished, and may only be read once.
+     *
+     * @param context the context of the operation reading the file, which closes the file when it
+     *                closes if it hasn't been read to the end by then; or {@code null} if the file
+     *                will always be read to the end
+     * @return the pairs in this file, in the order they were written
+     */
+    public Iterator<Tuple2<K,V>> open(OperationContext context) throws IOException{
+        finish();
+        ObjectInputStream in;
+        try{
+            in=new ObjectInputStream(new BufferedInputStream(new FileInputStream(file),BUFFER_SIZE));
+        }finally{
+            delete(file);
+        }
+        Reader reader=new Reader(in);
+        SpliceOperation operation=context==null?null:context.getOperation();
+        if(operation!=null && reader.hasNext()){
+            try{
+                operation.registerCloseable(reader);
+            }catch(StandardException se){
+                reader.close();
+                throw new IOException(se);
+            }
+        }
+        return reader;
+    }
+
+    /**
+     * Discard this file without reading it.
+     */
+    public void delete(){
+        if(out!=null){
+            try{
+                out.close();
+            }catch(IOException ignored){
+                //we're throwing the file away anyway
+            }
+            out=null;
+        }
+        delete(file);
+    }
+
+    @Override
+    public String toString(){
+        return file.getPath();
+    }
+
+    private static void delete(File file){
+        if(file.exists() && !file.delete())
+            SpliceLogUtils.warn(LOG,"Unable to delete spill file %s",file);
+    }
+
+    private class Reader implements Iterator<Tuple2<K,V>>,AutoCloseable{
+        private ObjectInputStream in;
+        private long remaining=numPairs;
+
+        Reader(ObjectInputStream in){
+            this.in=in;
+            if(remaining<=0)
+                close();
+        }
+
+        @Override
+        public boolean hasNext(){
+            return remaining>0;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Tuple2<K,V> next(){
+            if(remaining<=0)
+                throw new NoSuchElementException();
+            try{
+                K key=(K)in.readObject();
+                V value=(V)in.readObject();
+                if(--remaining==0)
+                    close();
+                return new Tuple2<>(key,value);
+            }catch(IOException|ClassNotFoundException e){
+                close();
+                throw new RuntimeException("Unable to read spilled rows from "+file,e);
+            }
+        }
+
+        @Override
+        public void remove(){
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close(){
+            remaining=0;
+            if(in!=null){
+                try{
+                    in.close();
+                }catch(IOException ignored){
+                    //the file is already unlinked, so there's nothing left to clean up
+                }
+                in=null;
+            }
+        }
+    }
+}
@@ -0,0 +1,326 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.stream.control.spill;
+
+import com.splicemachine.collections.hashtable.PagedBytesHashTable;
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
+import com.splicemachine.db.iapi.types.SQLChar;
+import com.splicemachine.db.impl.sql.execute.ValueRow;
+import com.splicemachine.derby.impl.sql.execute.operations.LocatedRow;
+import com.splicemachine.derby.stream.iapi.OperationContext;
+import com.splicemachine.derby.utils.marshall.BareKeyHash;
+import com.splicemachine.derby.utils.marshall.DataHash;
+import com.splicemachine.derby.utils.marshall.dvd.DescriptorSerializer;
+import com.splicemachine.derby.utils.marshall.dvd.VersionedSerializers;
+import com.splicemachine.hash.HashFunctions;
+import com.splicemachine.utils.SpliceLogUtils;
+import org.apache.log4j.Logger;
+import org.spark_project.guava.base.Function;
+import org.spark_project.guava.collect.Iterators;
+import scala.Tuple2;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Removes duplicate rows from a stream of rows within a bounded amount of memory, returning each
+ * distinct row as soon as it is first seen.
+ *
+ * Rows are compared by their key encoding, rather than by object equality, and only the encoded bytes of each
+ * distinct row are remembered, packed into a {@link PagedBytesHashTable}. Once the table exceeds the memory limit
+ * it stops growing: rows which it already holds are still dropped as duplicates, but rows which it doesn't hold
+ * can no longer be returned right away, since they may duplicate one another. They are written instead (with
+ * their encoded keys) to one of a fixed number of spill partitions, chosen by the hash of the key. Once the input
+ * is exhausted, each partition is made distinct in the same way, on a different hash.
+ *
+ * Strings are compared as though the shorter were padded with blanks, so they are encoded without their trailing
+ * blanks, to keep rows which differ only in those duplicates of one another. (Other values which are equal encode
+ * the same: decimals are encoded without trailing zeros, and floating point values never hold negative zero.)
+ *
+ * Only {@link ExecRow}s and {@link LocatedRow}s (which are compared by their rows) can be encoded. Other types of
+ * rows are made distinct by object equality, in memory.
+ */
+@NotThreadSafe
+public class SpillableDistinct<V>{
+    private static final Logger LOG=Logger.getLogger(SpillableDistinct.class);
+    static final int NUM_PARTITIONS=16;
+    /*past this many levels of partitioning, give up on the memory limit*/
+    private static final int MAX_DEPTH=8;
+    private static final int MAX_PAGE_SIZE=64*1024;
+    private static final int MIN_PAGE_SIZE=1024;
+    private static final byte[] NO_VALUE=new byte[0];
+    private static final String SPILL_PREFIX="distinct-";
+
+    private final long maxMemory;
+    private final File spillDirectory;
+    private final OperationContext context;
+    private final int pageSize;
+
+    /**
+     * @param maxMemory      the maximum number of bytes of encoded rows to hold in memory
+     * @param spillDirectory the directory to write spill partitions to
+     * @param context        the context to record spills to, or {@code null} if they needn't be recorded
+     */
+    public SpillableDistinct(long maxMemory,File spillDirectory,OperationContext context){
+        this.maxMemory=maxMemory;
+        this.spillDirectory=spillDirectory;
+        this.context=context;
+        //keep a single page from taking up most of a small limit
+        this.pageSize=(int)Math.max(MIN_PAGE_SIZE,Math.min(MAX_PAGE_SIZE,maxMemory/8));
+    }
+
+    /**
+     * @return the distinct rows of {@code source}. Rows are read from the source lazily.
+     */
+    public Iterator<V> distinct(Iterator<V> source){
+        return new DistinctIterator(source,0);
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+
+    private static ExecRow rowOf(Object row){
+        if(row instanceof ExecRow)
+            return (ExecRow)row;
+        if(row instanceof LocatedRow)
+            return ((LocatedRow)row).getRow();
+        return null;
+    }
+
+    private class DistinctIterator implements Iterator<V>{
+        private final Iterator<?> source;
+        private final int depth;
+        /*true if the source is pairs of an encoded key and its row, read back from a partition*/
+        private final boolean keyed;
+
+        private PagedBytesHashTable seen=new PagedBytesHashTable(64,0.75f,pageSize);
+        private DataHash<ExecRow> keyHash;
+        /*the row which is encoded in place of a row with strings that had to be trimmed*/
+        private ExecRow normalizedRow;
+        /*the trimmed values of the columns of normalizedRow, reused from row to row*/
+        private DataValueDescriptor[] normalizedColumns;
+        /*used instead of the table when rows can't be encoded*/
+        private Set<Object> seenObjects;
+        private boolean full;
+        private List<SpillFile<byte[],V>> partitions;
+        private Iterator<V> partitionRows;
+
+        private V next;
+
+        DistinctIterator(Iterator<?> source,int depth){
+            this.source=source;
+            this.depth=depth;
+            this.keyed=depth>0;
+        }
+
+        @Override
+        public boolean hasNext(){
+            if(next!=null) return true;
+            try{
+                next=computeNext();
+            }catch(StandardException|IOException e){
+                discardPartitions();
+                throw new RuntimeException(e);
+            }catch(RuntimeException e){
+                discardPartitions();
+                throw e;
+            }
+            return next!=null;
+        }
+
+        @Override
+        public V next(){
+            if(!hasNext())
+                throw new NoSuchElementException();
+            V n=next;
+            next=null;
+            return n;
+        }
+
+        @Override
+        public void remove(){
+            throw new UnsupportedOperationException();
+        }
+
+        @SuppressWarnings("unchecked")
+        private V computeNext() throws StandardException, IOException{
+            if(partitionRows!=null)
+                return partitionRows.hasNext()?partitionRows.next():null;
+            while(source.hasNext()){
+                Object n=source.next();
+                V row;
+                byte[] key;
+                if(keyed){
+                    Tuple2<byte[],V> pair=(Tuple2<byte[],V>)n;
+                    key=pair._1();
+                    row=pair._2();
+                }else{
+                    row=(V)n;
+                    if(seenObjects!=null || rowOf(row)==null){
+                        if(seenObjects==null)
+                            seenObjects=new HashSet<>();
+                        if(seenObjects.add(row))
+                            return row;
+                        continue;
+                    }
+                    key=encode(rowOf(row));
+                }
+                if(seen.containsKey(key,0,key.length))
+                    continue;
+                if(!full){
+                    seen.put(key,0,key.length,NO_VALUE,0,0);
+                    full=seen.heapSize()>maxMemory && depth<MAX_DEPTH;
+                    return row;
+                }
+                spill(key,row);
+            }
+            //the source is exhausted, so we won't see any more duplicates of the rows we remember
+            seen=null;
+            seenObjects=null;
+            closeKeyHash();
+            if(partitions==null)
+                return null;
+            partitionRows=readBack();
+            return partitionRows.hasNext()?partitionRows.next():null;
+        }
+
+        private byte[] encode(ExecRow row) throws StandardException, IOException{
+            if(keyHash==null){
+                DescriptorSerializer[] serializers=VersionedSerializers.latestVersion(false).getSerializers(row);
+                //with no key columns, every column of the row is encoded
+                keyHash=BareKeyHash.encoder(null,null,serializers);
+            }
+            keyHash.setRow(normalize(row));
+            return keyHash.encode();
+        }
+
+        /**
+         * @return {@code row}, or if it has strings with trailing blanks, a copy of it in which they are
+         * trimmed. {@code row} itself is never changed.
+         */
+        private ExecRow normalize(ExecRow row) throws StandardException{
+            DataValueDescriptor[] columns=row.getRowArray();
+            ExecRow normalized=row;
+            for(int i=0;i<columns.length;i++){
+                DataValueDescriptor column=columns[i];
+                if(!(column instanceof SQLChar) || column.isNull())
+                    continue;
+                String value=column.getString();
+                int end=value.length();
+                while(end>0 && value.charAt(end-1)==' ')
+                    end--;
+                if(end==value.length())
+                    continue;
+                normalized=normalizedRow(row,normalized);
+                DataValueDescriptor trimmed=normalizedColumn(column,i);
+                trimmed.setValue(value.substring(0,end));
+                normalized.setColumn(i+1,trimmed);
+            }
+            return normalized;
+        }
+
+        /**
+         * @return the row to write trimmed values of {@code row} to, which starts out with its columns
+         */
+        private ExecRow normalizedRow(ExecRow row,ExecRow normalized){
+            if(normalized!=row)
+                return normalized;
+            DataValueDescriptor[] columns=row.getRowArray();
+            if(normalizedRow==null || normalizedRow.nColumns()!=columns.length){
+                normalizedRow=new ValueRow(columns.length);
+                normalizedColumns=new DataValueDescriptor[columns.length];
+            }
+            for(int i=0;i<columns.length;i++){
+                normalizedRow.setColumn(i+1,columns[i]);
+            }
+            return normalizedRow;
+        }
+
+        private DataValueDescriptor normalizedColumn(DataValueDescriptor column,int position){
+            if(normalizedColumns[position]==null || normalizedColumns[position].getClass()!=column.getClass())
+                normalizedColumns[position]=column.getNewNull();
+            return normalizedColumns[position];
+        }
+
+        private void spill(byte[] key,V row) throws IOException{
+            if(partitions==null){
+                partitions=new ArrayList<>(NUM_PARTITIONS);
+                for(int i=0;i<NUM_PARTITIONS;i++){
+                    partitions.add(null);
+                }
+            }
+            int p=(HashFunctions.murmur3(depth).hash(key,0,key.length)>>>1)%NUM_PARTITIONS;
+            SpillFile<byte[],V> partition=partitions.get(p);
+            if(partition==null){
+                partition=SpillFile.create(spillDirectory,SPILL_PREFIX);
+                partitions.set(p,partition);
+            }
+            partition.write(key,row);
+        }
+
+        private Iterator<V> readBack() throws IOException{
+            List<SpillFile<byte[],V>> nonEmpty=new ArrayList<>(NUM_PARTITIONS);
+            for(SpillFile<byte[],V> partition:partitions){
+                if(partition==null) continue;
+                long bytes=partition.finish();
+                if(context!=null)
+                    context.recordSpill(bytes);
+                if(LOG.isDebugEnabled())
+                    SpliceLogUtils.debug(LOG,"Spilled a partition of %d rows (%d bytes) at depth %d to %s",partition.size(),bytes,depth,partition);
+                nonEmpty.add(partition);
+            }
+            partitions=null;
+            //make each partition distinct only when the previous one has been consumed
+            return Iterators.concat(Iterators.transform(nonEmpty.iterator(),new Function<SpillFile<byte[],V>, Iterator<V>>(){
+                @Override
+                public Iterator<V> apply(@Nullable SpillFile<byte[],V> partition){
+                    assert partition!=null;
+                    try{
+                        return new DistinctIterator(partition.open(context),depth+1);
+                    }catch(IOException e){
+                        throw new RuntimeException("Unable to read spilled rows from "+partition,e);
+                    }
+                }
+            }));
+        }
+
+        private void closeKeyHash() throws IOException{
+            if(keyHash!=null){
+                keyHash.close();
+                keyHash=null;
+            }
+        }
+
+        private void discardPartitions(){
+            if(partitions!=null){
+                for(SpillFile<byte[],V> partition:partitions){
+                    if(partition!=null)
+                        partition.delete();
+                }
+                partitions=null;
+            }
+        }
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.stream.control.spill;
+
+import com.splicemachine.derby.stream.iapi.OperationContext;
+import com.splicemachine.utils.SpliceLogUtils;
+import org.apache.log4j.Logger;
+import org.spark_project.guava.base.Function;
+import org.spark_project.guava.collect.Iterators;
+import scala.Tuple2;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Groups key-value pairs by key within a bounded amount of memory, combining the values of each group
+ * as they arrive.
+ *
+ * Each group is held in memory as a single combined value (a partial aggregate, say), in a hash table. When the
+ * estimated size of the table exceeds the memory limit, every group in it is written out to one of a fixed number of
+ * spill partitions, chosen by the hash of its key, and the table starts over. A key may therefore have several
+ * partial groups, but they are all in the same partition. Once the input is exhausted, each partition is read
+ * back in turn and its partial groups are combined again; a partition which is itself too large is partitioned
+ * again on different bits of the hash. Only one partition is held in memory at a time.
+ *
+ * If the input fits in memory, nothing is written to disk.
+ */
+@NotThreadSafe
+public class SpillableHashAggregator<K,V,C>{
+    private static final Logger LOG=Logger.getLogger(SpillableHashAggregator.class);
+    private static final int PARTITION_BITS=4;
+    static final int NUM_PARTITIONS=1<<PARTITION_BITS;
+    /*once the hash has no bits left to partition on, re-aggregate in memory regardless of the limit*/
+    private static final int MAX_DEPTH=Integer.SIZE/PARTITION_BITS-1;
+    private static final String SPILL_PREFIX="aggregate-";
+
+    /**
+     * How the values of a group are combined.
+     */
+    public interface Combiner<V,C>{
+        C createCombiner(V value) throws Exception;
+
+        C mergeValue(C combined,V value) throws Exception;
+
+        C mergeCombiners(C combined,C other) throws Exception;
+
+        /**
+         * @return true if a combined value holds on to every value merged into it (as a list of the
+         * group's values does), so that it grows with each value, rather than folding them into an
+         * accumulator of a fixed size.
+         */
+        boolean keepsValues();
+    }
+
+    private final Combiner<V,C> combiner;
+    private final long maxMemory;
+    private final File spillDirectory;
+    private final OperationContext context;
+
+    /**
+     * @param combiner       how to combine the values of each group
+     * @param maxMemory      the maximum number of bytes of groups to hold in memory
+     * @param spillDirectory the directory to write spill partitions to
+     * @param context        the context to record spills to, or {@code null} if they needn't be recorded
+     */
+    public SpillableHashAggregator(Combiner<V,C> combiner,long maxMemory,File spillDirectory,OperationContext context){
+        this.combiner=combiner;
+        this.maxMemory=maxMemory;
+        this.spillDirectory=spillDirectory;
+        this.context=context;
+    }
+
+    /**
+     * Group the pairs of {@code source} by key. The source is consumed entirely before this method returns.
+     *
+     * @return one pair for each distinct key of {@code source}, holding the combined values of that key
+     */
+    public Iterator<Tuple2<K,C>> aggregate(Iterator<Tuple2<K,V>> source){
+        return aggregate(source,0,false);
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+
+    /*
+     * @param combined true if the values of source are already combined (i.e. are partial groups read
+     *                 back from a spill partition), rather than raw values
+     */
+    @SuppressWarnings("unchecked")
+    private Iterator<Tuple2<K,C>> aggregate(Iterator<? extends Tuple2<K,?>> source,int depth,boolean combined){
+        Map<K,C> groups=new HashMap<>();
+        List<SpillFile<K,C>> partitions=null;
+        boolean success=false;
+        try{
+            long bytes=0l;
+            while(source.hasNext()){
+                Tuple2<K,?> next=source.next();
+                K key=next._1();
+                C group=groups.get(key);
+                if(group==null){
+                    group=combined?(C)next._2():combiner.createCombiner((V)next._2());
+                    bytes+=RowSizeEstimator.estimate(key)+RowSizeEstimator.estimate(group);
+                }else{
+                    group=combined?combiner.mergeCombiners(group,(C)next._2()):combiner.mergeValue(group,(V)next._2());
+                    if(combiner.keepsValues())
+                        bytes+=RowSizeEstimator.estimate(next._2());
+                }
+                groups.put(key,group);
+                //a single group can't be made any smaller by partitioning it
+                if(bytes>maxMemory && groups.size()>1 && depth<MAX_DEPTH){
+                    if(partitions==null)
+                        partitions=new ArrayList<>(NUM_PARTITIONS);
+                    spill(groups,partitions,depth);
+                    groups.clear();
+                    bytes=0l;
+                }
+            }
+            if(partitions==null){
+                success=true;
+                return entries(groups);
+            }
+            spill(groups,partitions,depth);
+            groups.clear();
+            for(SpillFile<K,C> partition:partitions){
+                if(partition!=null)
+                    finish(partition,depth);
+            }
+            success=true;
+            return readBack(partitions,depth);
+        }catch(IOException e){
+            throw new RuntimeException("Unable to spill aggregated rows to "+spillDirectory,e);
+        }catch(RuntimeException e){
+            throw e;
+        }catch(Exception e){
+            throw new RuntimeException(e);
+        }finally{
+            if(!success && partitions!=null){
+                for(SpillFile<K,C> partition:partitions){
+                    if(partition!=null)
+                        partition.delete();
+                }
+            }
+        }
+    }
+
+    private void spill(Map<K,C> groups,List<SpillFile<K,C>> partitions,int depth) throws IOException{
+        while(partitions.size()<NUM_PARTITIONS)
+            partitions.add(null);
+        for(Map.Entry<K,C> group:groups.entrySet()){
+            int p=partition(group.getKey(),depth);
+            SpillFile<K,C> partition=partitions.get(p);
+            if(partition==null){
+                partition=SpillFile.create(spillDirectory,SPILL_PREFIX);
+                partitions.set(p,partition);
+            }
+            partition.write(group.getKey(),group.getValue());
+        }
+    }
+
+    private Iterator<Tuple2<K,C>> readBack(List<SpillFile<K,C>> partitions,final int depth){
+        List<SpillFile<K,C>> nonEmpty=new ArrayList<>(partitions.size());
+        for(SpillFile<K,C> partition:partitions){
+            if(partition!=null)
+                nonEmpty.add(partition);
+        }
+        //aggregate each partition only when the previous one has been consumed
+        return Iterators.concat(Iterators.transform(nonEmpty.iterator(),new Function<SpillFile<K,C>, Iterator<Tuple2<K,C>>>(){
+            @Override
+            public Iterator<Tuple2<K,C>> apply(@Nullable SpillFile<K,C> partition){
+                assert partition!=null;
+                try{
+                    return aggregate(partition.open(context),depth+1,true);
+                }catch(IOException e){
+                    throw new RuntimeException("Unable to read spilled rows from "+partition,e);
+                }
+            }
+        }));
+    }
+
+    private void finish(SpillFile<K,C> partition,int depth) throws IOException{
+        long bytes=partition.finish();
+        if(context!=null)
+            context.recordSpill(bytes);
+        if(LOG.isDebugEnabled())
+            SpliceLogUtils.debug(LOG,"Spilled a partition of %d groups (%d bytes) at depth %d to %s",partition.size(),bytes,depth,partition);
+    }
+
+    private static int partition(Object key,int depth){
+        int h=key==null?0:key.hashCode();
+        //spread the bits, since row hash codes are often poorly distributed in the low bits
+        h*=0x9E3779B9;
+        h^=h>>>16;
+        return (h>>>(depth*PARTITION_BITS))&(NUM_PARTITIONS-1);
+    }
+
+    private static <K,C> Iterator<Tuple2<K,C>> entries(Map<K,C> groups){
+        return Iterators.transform(groups.entrySet().iterator(),new Function<Map.Entry<K,C>, Tuple2<K,C>>(){
+            @Override
+            public Tuple2<K,C> apply(@Nullable Map.Entry<K,C> e){
+                assert e!=null;
+                return new Tuple2<>(e.getKey(),e.getValue());
+            }
+        });
+    }
+}
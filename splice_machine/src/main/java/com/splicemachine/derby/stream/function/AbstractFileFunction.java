@@ -17,13 +17,17 @@ package com.splicemachine.derby.stream.function;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.sql.SQLException;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
 import java.util.List;
 
 import com.splicemachine.db.iapi.types.DateTimeDataValue;
+import com.splicemachine.derby.impl.load.Utf8CsvTokenizer;
+import com.splicemachine.derby.impl.load.Utf8FieldParser;
 import com.splicemachine.derby.stream.utils.BooleanList;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import org.supercsv.exception.SuperCsvException;
 import org.supercsv.prefs.CsvPreference;
 
 import com.splicemachine.EngineDriver;
@@ -131,41 +135,15 @@ public abstract class AbstractFileFunction<I> extends SpliceFlatMapFunction<Spli
                 throw StandardException.newException(SQLState.COLUMN_NUMBER_MISMATCH, execRow.nColumns(), 0);
             for (int i = 1; i <= returnRow.nColumns(); i++) {
                 DataValueDescriptor dvd = returnRow.getColumn(i);
-                int type = dvd.getTypeFormatId();
                 if (values.size()<=i-1) {
                     throw StandardException.newException(SQLState.COLUMN_NUMBER_MISMATCH, execRow.nColumns(),values.size());
                 }
                 String value = values.get(i - 1);
                 if (shouldBeNull(value,quotedColumns.valueAt(i-1)))
                     value = null;
-                switch(type){
-                    case StoredFormatIds.SQL_TIME_ID:
-                        if(calendar==null)
-                            calendar = new GregorianCalendar();
-                        if (timeFormat == null || value==null){
-                            ((DateTimeDataValue)dvd).setValue(value,calendar);
-                        }else
-                            dvd.setValue(SpliceDateFunctions.TO_TIME(value, timeFormat),calendar);
-                        break;
-                    case StoredFormatIds.SQL_DATE_ID:
-                        if(calendar==null)
-                            calendar = new GregorianCalendar();
-                        if (dateTimeFormat == null || value == null)
-                            ((DateTimeDataValue)dvd).setValue(value,calendar);
-                        else
-                            dvd.setValue(SpliceDateFunctions.TO_DATE(value, dateTimeFormat),calendar);
-                        break;
-                    case StoredFormatIds.SQL_TIMESTAMP_ID:
-                        if(calendar==null)
-                            calendar = new GregorianCalendar();
-                        if (timestampFormat == null || value==null)
-                            ((DateTimeDataValue)dvd).setValue(value,calendar);
-                        else
-                            dvd.setValue(SpliceDateFunctions.TO_TIMESTAMP(value, timestampFormat),calendar);
-                        break;
-                    default:
-                        dvd.setValue(value);
-                }
+                if(calendar==null)
+                    calendar = new GregorianCalendar();
+                setValue(dvd,value,calendar);
             }
             return new LocatedRow(returnRow);
         } catch (Exception e) {
@@ -178,6 +156,69 @@ public abstract class AbstractFileFunction<I> extends SpliceFlatMapFunction<Spli
     }
 
 
+    /**
+     * Parse the records of a chunk of a UTF-8 file straight from its bytes. Columns are set from the bytes of their
+     * fields where {@link Utf8FieldParser} can do it, and from Strings otherwise, with the same results (and the
+     * same errors) as {@link #call(List, BooleanList)}.
+     * <p>
+     * This runs on the threads of a {@link com.splicemachine.derby.impl.load.ParallelCsvReader}, so it records
+     * nothing in the operation context: {@link #call(ParsedRecord)} does that once the record is consumed.
+     */
+    void parseChunk(Utf8CsvTokenizer records,List<ParsedRecord> results){
+        Calendar chunkCalendar = new GregorianCalendar();
+        while (true) {
+            try {
+                if (!records.next())
+                    return;
+            } catch (SuperCsvException e) {
+                results.add(new ParsedRecord(null, e, e.getLocalizedMessage(), false));
+                continue;
+            }
+            try {
+                results.add(new ParsedRecord(new LocatedRow(parseRow(records, chunkCalendar)), null, null, true));
+            } catch (Exception e) {
+                results.add(new ParsedRecord(null, e, e.getLocalizedMessage() + records.getColumns(), true));
+            }
+        }
+    }
+
+    /**
+     * Account for a record parsed by {@link #parseChunk(Utf8CsvTokenizer, List)}, as {@link #call(List, BooleanList)}
+     * accounts for the records it parses.
+     *
+     * @return the row, or null if the record is bad and errors are permitted
+     * @throws Exception if the record is bad and errors are not permitted
+     */
+    public LocatedRow call(ParsedRecord record) throws Exception {
+        if (record.read)
+            operationContext.recordRead();
+        if (record.error == null)
+            return record.row;
+        if (operationContext.isPermissive()) {
+            operationContext.recordBadRecord(record.badRecordMessage, record.error);
+            return null;
+        }
+        throw record.error;
+    }
+
+    /**
+     * The outcome of parsing a record on another thread: a row, or the error to report for the record.
+     */
+    public static final class ParsedRecord {
+        private final LocatedRow row;
+        private final Exception error;
+        private final String badRecordMessage;
+        /* false if the record could not even be tokenized */
+        private final boolean read;
+
+        ParsedRecord(LocatedRow row, Exception error, String badRecordMessage, boolean read) {
+            this.row = row;
+            this.error = error;
+            this.badRecordMessage = badRecordMessage;
+            this.read = read;
+        }
+    }
+
     void checkPreference() {
         if (preference==null){
             SConfiguration config =EngineDriver.driver().getConfiguration();
@@ -191,6 +232,50 @@ public abstract class AbstractFileFunction<I> extends SpliceFlatMapFunction<Spli
 
     /* ****************************************************************************************************************/
     /*private helper methods*/
+    private ExecRow parseRow(Utf8CsvTokenizer record,Calendar calendar) throws StandardException, SQLException {
+        ExecRow returnRow = execRow.getClone();
+        byte[] buffer = record.getBuffer();
+        int columnCount = record.getColumnCount();
+        for (int i = 1; i <= returnRow.nColumns(); i++) {
+            if (columnCount<=i-1) {
+                throw StandardException.newException(SQLState.COLUMN_NUMBER_MISMATCH, execRow.nColumns(),columnCount);
+            }
+            DataValueDescriptor dvd = returnRow.getColumn(i);
+            int offset = record.getOffset(i-1);
+            int length = record.getLength(i-1);
+            if (Utf8FieldParser.isNull(buffer,offset,length,record.isQuoted(i-1)))
+                setValue(dvd,null,calendar);
+            else if (!Utf8FieldParser.setValue(dvd,buffer,offset,length,dateTimeFormat==null))
+                setValue(dvd,record.getString(i-1),calendar);
+        }
+        return returnRow;
+    }
+
+    private void setValue(DataValueDescriptor dvd,String value,Calendar calendar) throws StandardException, SQLException {
+        switch(dvd.getTypeFormatId()){
+            case StoredFormatIds.SQL_TIME_ID:
+                if (timeFormat == null || value==null){
+                    ((DateTimeDataValue)dvd).setValue(value,calendar);
+                }else
+                    dvd.setValue(SpliceDateFunctions.TO_TIME(value, timeFormat),calendar);
+                break;
+            case StoredFormatIds.SQL_DATE_ID:
+                if (dateTimeFormat == null || value == null)
+                    ((DateTimeDataValue)dvd).setValue(value,calendar);
+                else
+                    dvd.setValue(SpliceDateFunctions.TO_DATE(value, dateTimeFormat),calendar);
+                break;
+            case StoredFormatIds.SQL_TIMESTAMP_ID:
+                if (timestampFormat == null || value==null)
+                    ((DateTimeDataValue)dvd).setValue(value,calendar);
+                else
+                    dvd.setValue(SpliceDateFunctions.TO_TIMESTAMP(value, timestampFormat),calendar);
+                break;
+            default:
+                dvd.setValue(value);
+        }
+    }
+
     @SuppressWarnings("SimplifiableIfStatement") //the logic is clearer this way, without a performance penalty
     private boolean shouldBeNull(String value,boolean wasQuoted){
         if(value==null) return true;
@@ -14,14 +14,20 @@
 
 package com.splicemachine.derby.stream.function;
 
+import com.splicemachine.EngineDriver;
+import com.splicemachine.access.api.SConfiguration;
 import com.splicemachine.db.iapi.error.StandardException;
 import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.derby.impl.load.ParallelCsvReader;
 import com.splicemachine.derby.impl.load.SpliceCsvReader;
+import com.splicemachine.derby.impl.load.Utf8CsvTokenizer;
 import com.splicemachine.derby.impl.sql.execute.operations.LocatedRow;
 import com.splicemachine.derby.stream.iapi.OperationContext;
 import com.splicemachine.derby.stream.utils.BooleanList;
 
 import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
@@ -29,6 +35,11 @@ import java.util.NoSuchElementException;
 
 /**
  *
+ * Function for parsing a whole CSV file, whose records may span lines.
+ *
+ * UTF-8 files are split into chunks which are tokenized and parsed in parallel, straight from their bytes
+ * (see {@link ParallelCsvReader}). Files in other charsets are decoded and read a line at a time by a
+ * {@link SpliceCsvReader}.
  *
  */
     public class StreamFileFunction extends AbstractFileFunction<InputStream> {
@@ -62,6 +73,8 @@ import java.util.NoSuchElementException;
         if (operationContext.isFailed())
             return Collections.<LocatedRow>emptyList().iterator();
         checkPreference();
+        if (canParseBytes())
+            return parseBytes(s);
 
         return new Iterator<LocatedRow>() {
                     private LocatedRow nextRow;
@@ -120,4 +133,85 @@ import java.util.NoSuchElementException;
                     }
                 };
             }
+    
+    /**
+     * @return true if the file can be tokenized a byte at a time: it is UTF-8, its quotes and delimiters are
+     * ASCII, and the preference has the rules {@link Utf8CsvTokenizer} implements
+     */
+    private boolean canParseBytes() {
+        return StandardCharsets.UTF_8.equals(Charset.forName(charset))
+                && Utf8CsvTokenizer.isAscii(preference.getQuoteChar())
+                && Utf8CsvTokenizer.isAscii(preference.getDelimiterChar())
+                && !preference.isSurroundingSpacesNeedQuotes()
+                && preference.isIgnoreEmptyLines()
+                && preference.getCommentMatcher() == null;
+    }
+
+    private Iterator<LocatedRow> parseBytes(final InputStream s) {
+        SConfiguration config = EngineDriver.driver().getConfiguration();
+        final ParallelCsvReader<ParsedRecord> records = new ParallelCsvReader<>(s,
+                preference.getQuoteChar(),
+                (char)preference.getDelimiterChar(),
+                preference.getMaxLinesPerRow(),
+                config.getImportChunkSize(),
+                config.getImportParallelism(),
+                new ParallelCsvReader.ChunkParser<ParsedRecord>() {
+                    @Override
+                    public void parse(Utf8CsvTokenizer tokenizer, List<ParsedRecord> results) {
+                        parseChunk(tokenizer, results);
+                    }
+                });
+
+        return new Iterator<LocatedRow>() {
+                    private LocatedRow nextRow;
+                    private boolean hasNext = true;
+                    private boolean stale = false;
+                    @Override
+                    public boolean hasNext() {
+                            if (!hasNext || stale)
+                                return hasNext;
+                            try {
+                                while (true) {
+                                    try {
+                                        if (!records.hasNext()) {
+                                            records.close();
+                                            hasNext = false;
+                                            return false;
+                                        }
+                                        nextRow = call(records.next());
+                                        if (nextRow != null) {
+                                            stale = true;
+                                            hasNext = true;
+                                            return true;
+                                        }
+                                    } catch (Exception e) {
+                                        if (operationContext.isPermissive()) {
+                                            operationContext.recordBadRecord(e.getLocalizedMessage(), e);
+                                        } else
+                                            throw StandardException.plainWrapException(e);
+                                    }
+                                }
+                            } catch (Exception ioe) {
+                                try {
+                                    records.close();
+                                } catch (IOException ignored) {
+                                    // we are already failing
+                                }
+                                throw new RuntimeException("Terminal, should have been caught", ioe);
+                            }
+                    }
+
+                    @Override
+                    public LocatedRow next() {
+                        if(!hasNext()) throw new NoSuchElementException();
+                        stale = false;
+                        return nextRow;
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new RuntimeException("not supported");
+                    }
+                };
     }
+}
@@ -25,9 +25,12 @@ import com.splicemachine.derby.iapi.sql.execute.DataSetProcessorFactory;
 import com.splicemachine.derby.impl.sql.JoinTable;
 import com.splicemachine.derby.impl.sql.execute.operations.BroadcastJoinCache;
 import com.splicemachine.derby.impl.sql.execute.operations.LocatedRow;
+import com.splicemachine.derby.impl.sql.execute.operations.ScanOperation;
+import com.splicemachine.derby.impl.sql.execute.operations.scanner.JoinKeyFilter;
 import com.splicemachine.derby.stream.function.SpliceFlatMapFunction;
 import com.splicemachine.derby.stream.iapi.DataSetProcessor;
 import com.splicemachine.derby.stream.iapi.OperationContext;
+import com.splicemachine.hash.BloomFilter;
 import com.splicemachine.stream.Stream;
 import com.splicemachine.stream.Streams;
 import javax.annotation.Nullable;
@@ -38,7 +41,6 @@ import java.util.concurrent.Callable;
  * Created by dgomezferro on 11/4/15.
  */
 public abstract class AbstractBroadcastJoinFlatMapFunction<In, Out> extends SpliceFlatMapFunction<JoinOperation, Iterator<In>, Out> {
-    private static final BroadcastJoinCache broadcastJoinCache = new BroadcastJoinCache();
     private JoinOperation operation;
 
     public AbstractBroadcastJoinFlatMapFunction() {
@@ -78,9 +80,61 @@ public abstract class AbstractBroadcastJoinFlatMapFunction<In, Out> extends Spli
             }
         };
         ExecRow leftTemplate = operation.getLeftOperation().getExecRowDefinition();
-        joinTable = broadcastJoinCache.get(operation.getSequenceId(), rhsLoader, operation.getRightHashKeys(), operation.getLeftHashKeys(), leftTemplate).newTable();
+        JoinTable.Factory tableFactory = BroadcastJoinCache.instance().get(operation.getSequenceId(), rhsLoader, operation.getRightHashKeys(), operation.getLeftHashKeys(), leftTemplate);
+        if (filtersOuterKeys())
+            pushKeyFilter(tableFactory);
+        joinTable = tableFactory.newTable();
 
-        return call(locatedRows, joinTable).iterator();
+        return new ClosingIterator<>(call(locatedRows, joinTable).iterator(),joinTable);
+    }
+
+    /**
+     * Releases the JoinTable once all of the output has been consumed, so that the cache
+     * can free the inner table as soon as no partition needs it anymore.
+     */
+    private static class ClosingIterator<T> implements Iterator<T>{
+        private final Iterator<T> delegate;
+        private JoinTable joinTable;
+
+        ClosingIterator(Iterator<T> delegate,JoinTable joinTable){
+            this.delegate=delegate;
+            this.joinTable=joinTable;
+        }
+
+        @Override
+        public boolean hasNext(){
+            boolean hasNext=delegate.hasNext();
+            if(!hasNext && joinTable!=null){
+                joinTable.close();
+                joinTable=null;
+            }
+            return hasNext;
+        }
+
+        @Override public T next(){ return delegate.next(); }
+
+        @Override public void remove(){ delegate.remove(); }
+    }
+
+    /**
+     * @return true if outer rows whose keys have no match in the inner table are never part of the output,
+     * so that they may be dropped before they reach this function.
+     */
+    protected boolean filtersOuterKeys() {
+        return false;
+    }
+
+    /**
+     * When the outer rows come straight from a table scan, hand the scan a filter over the inner table's
+     * keys, so that it can drop the rows which cannot join before decoding them in full.
+     */
+    private void pushKeyFilter(JoinTable.Factory tableFactory) {
+        if (!(operation.getLeftOperation() instanceof ScanOperation))
+            return;
+        ScanOperation scan = (ScanOperation) operation.getLeftOperation();
+        int maxKeys = EngineDriver.driver().getConfiguration().getBroadcastJoinRuntimeFilterMaxKeys();
+        BloomFilter keyFilter = maxKeys > 0 ? tableFactory.getKeyFilter(maxKeys) : null;
+        scan.setJoinKeyFilter(keyFilter == null ? null : new JoinKeyFilter(keyFilter, operation.getLeftHashKeys()));
     }
 
     protected abstract Iterable<Out> call(Iterator<In> locatedRows, JoinTable joinTable);
@@ -38,6 +38,11 @@ public class BroadcastJoinFlatMapFunction extends AbstractBroadcastJoinFlatMapFu
         super(operationContext);
     }
 
+    @Override
+    protected boolean filtersOuterKeys() {
+        return true;
+    }
+
     @Override
     public Iterable<Tuple2<ExecRow, Tuple2<LocatedRow, LocatedRow>>> call(final Iterator<LocatedRow> locatedRows, final JoinTable joinTable) {
         return Iterables.concat(FluentIterable.from(new Iterable<LocatedRow>(){
@@ -34,11 +34,42 @@ public interface OperationContext<Op extends SpliceOperation> extends Externaliz
     void recordJoinedLeft();
     void recordJoinedRight();
 
+    /**
+     * Record that the operation wrote a run of {@code bytes} bytes to local disk, because it
+     * exceeded its memory limit.
+     */
+    void recordSpill(long bytes);
+
+    /**
+     * Record that a hash join built a table of {@code rows} rows, of about {@code bytes} bytes, from
+     * its build side.
+     */
+    void recordJoinBuild(long rows,long bytes);
+
+    /**
+     * Record that a hash join probed its table with {@code rows} rows, of which {@code hits} found
+     * at least one match.
+     */
+    void recordJoinProbe(long rows,long hits);
+
+    /**
+     * Record that a table scan fully decoded {@code rows} rows, whose encoded size was {@code bytes} bytes.
+     */
+    void recordDecoded(long rows,long bytes);
+
     long getRecordsRead();
     long getRecordsFiltered();
     long getRecordsWritten();
     long getRetryAttempts();
     long getRegionTooBusyExceptions();
+    long getSpilledRuns();
+    long getSpilledBytes();
+    long getJoinBuildRows();
+    long getJoinBuildBytes();
+    long getJoinProbeRows();
+    long getJoinProbeHits();
+    long getRowsDecoded();
+    long getBytesDecoded();
 
     BadRecordsRecorder getBadRecordsRecorder();
 
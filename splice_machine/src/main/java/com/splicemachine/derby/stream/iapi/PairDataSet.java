@@ -140,6 +140,20 @@ public interface PairDataSet<K,V> {
      * @return
      */
     PairDataSet<K,V> sortByKey(Comparator<K> comparator,String name);
+    /**
+     *
+     * Sort by key utilizing the comparator provided, recording any data which the sort
+     * has to spill to disk in the operation context. The name can be an override for
+     * Spark Implementations.
+     *
+     * @see Comparator
+     *
+     * @param comparator
+     * @param name
+     * @param context
+     * @return
+     */
+    PairDataSet<K,V> sortByKey(Comparator<K> comparator,String name,OperationContext context);
     /**
      *
      * Partition the pair DataSet via a custom partitioner and comparator.
@@ -155,13 +169,28 @@ public interface PairDataSet<K,V> {
     PairDataSet<K, Iterable<V>> groupByKey();
     PairDataSet<K, Iterable<V>> groupByKey(String name);
     <W> PairDataSet<K,Tuple2<V,Optional<W>>> hashLeftOuterJoin(PairDataSet<K, W> rightDataSet);
+    /**
+     * Hash left outer join, recording the join and any data it spills in the operation context.
+     */
+    <W> PairDataSet<K,Tuple2<V,Optional<W>>> hashLeftOuterJoin(PairDataSet<K, W> rightDataSet,OperationContext context);
     <W> PairDataSet<K,Tuple2<Optional<V>,W>> hashRightOuterJoin(PairDataSet<K, W> rightDataSet);
+    /**
+     * Hash right outer join, recording the join and any data it spills in the operation context.
+     */
+    <W> PairDataSet<K,Tuple2<Optional<V>,W>> hashRightOuterJoin(PairDataSet<K, W> rightDataSet,OperationContext context);
     <W> PairDataSet<K,Tuple2<V,W>> hashJoin(PairDataSet<K, W> rightDataSet);
     <W> PairDataSet<K,Tuple2<V,W>> hashJoin(PairDataSet<K, W> rightDataSet,String name);
+    /**
+     * Hash join, recording the size of the build side, the probe hits and any data which the join
+     * has to spill to disk in the operation context.
+     */
+    <W> PairDataSet<K,Tuple2<V,W>> hashJoin(PairDataSet<K, W> rightDataSet,String name,OperationContext context);
     <W> PairDataSet<K,V> subtractByKey(PairDataSet<K, W> rightDataSet);
     <W> PairDataSet<K,V> subtractByKey(PairDataSet<K, W> rightDataSet,String name);
+    <W> PairDataSet<K,V> subtractByKey(PairDataSet<K, W> rightDataSet,String name,OperationContext context);
     <W> PairDataSet<K,Tuple2<Iterable<V>, Iterable<W>>> cogroup(PairDataSet<K, W> rightDataSet);
     <W> PairDataSet<K,Tuple2<Iterable<V>, Iterable<W>>> cogroup(PairDataSet<K, W> rightDataSet,String name);
+    <W> PairDataSet<K,Tuple2<Iterable<V>, Iterable<W>>> cogroup(PairDataSet<K, W> rightDataSet,String name,OperationContext context);
     PairDataSet<K,V> union(PairDataSet<K, V> dataSet);
     <Op extends SpliceOperation, U> DataSet<U> mapPartitions(SpliceFlatMapFunction<Op, Iterator<Tuple2<K, V>>, U> f);
     DataSetWriterBuilder deleteData(OperationContext operationContext) throws StandardException;
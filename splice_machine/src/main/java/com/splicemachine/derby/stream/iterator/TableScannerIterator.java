@@ -14,6 +14,8 @@
 
 package com.splicemachine.derby.stream.iterator;
 
+import com.splicemachine.EngineDriver;
+import com.splicemachine.access.api.SConfiguration;
 import com.splicemachine.db.iapi.error.StandardException;
 import com.splicemachine.db.iapi.sql.execute.ExecRow;
 import com.splicemachine.db.iapi.store.access.Qualifier;
@@ -22,7 +24,10 @@ import com.splicemachine.derby.impl.sql.execute.operations.LocatedRow;
 import com.splicemachine.derby.impl.sql.execute.operations.ScanOperation;
 import com.splicemachine.derby.impl.sql.execute.operations.scanner.SITableScanner;
 import com.splicemachine.derby.impl.sql.execute.operations.scanner.TableScannerBuilder;
+import com.splicemachine.derby.stream.iapi.OperationContext;
 import com.splicemachine.derby.stream.utils.StreamLogUtils;
+import com.splicemachine.derby.stream.vector.BatchQualifier;
+import com.splicemachine.derby.stream.vector.RowBatch;
 import com.splicemachine.derby.utils.Scans;
 import javax.annotation.concurrent.NotThreadSafe;
 import java.io.Closeable;
@@ -30,10 +35,21 @@ import java.io.IOException;
 import java.util.Iterator;
 
 /**
+ * Iterates over the rows of a table scan, applying the scan's qualifiers.
  *
+ * When the qualifiers can be evaluated over column vectors (see {@link BatchQualifier}), rows are read from
+ * the scanner straight into a {@link RowBatch} and qualified a batch at a time, and only the rows which qualify
+ * are copied out of the batch. Otherwise, each row is qualified as it is read, by the scanner itself when it can
+ * decode the columns the qualifiers reference ahead of the rest of the row.
  */
 @NotThreadSafe
 public class TableScannerIterator implements Iterable<LocatedRow>, Iterator<LocatedRow>, Closeable {
+    /**
+     * The number of rows of the first batch. Each following batch is twice as large, up to the configured
+     * batch size, so that the first rows are returned as soon as they would be without batching.
+     */
+    private static final int INITIAL_BATCH_SIZE = 16;
+
     protected TableScannerBuilder siTableBuilder;
     protected SITableScanner tableScanner;
     protected boolean initialized;
@@ -45,6 +61,14 @@ public class TableScannerIterator implements Iterable<LocatedRow>, Iterator<Loca
     protected Qualifier[][] qualifiers;
     protected int[] baseColumnMap;
     protected boolean rowIdKey; // HACK Row ID Qualifiers point to the projection above them ?  TODO JL
+    private boolean qualificationDecided;
+    private boolean scannerQualifies;
+    private RowBatch batch;
+    private ExecRow scanRow;
+    private BatchQualifier batchQualifier;
+    private boolean exhausted;
+    private LocatedRow batchRow;
+    private boolean decodeRecorded;
 
     public TableScannerIterator(TableScannerBuilder siTableBuilder, SpliceOperation operation) throws StandardException {
         this.siTableBuilder = siTableBuilder;
@@ -71,13 +95,15 @@ public class TableScannerIterator implements Iterable<LocatedRow>, Iterator<Loca
                 initialized = true;
                 tableScanner = siTableBuilder.build();
                 tableScanner.open();
+                if (operation != null && operation.getJoinKeyFilter() != null)
+                    tableScanner.setJoinKeyFilter(operation.getJoinKeyFilter());
                 if (operation!= null) {
                     operation.registerCloseable(new Closeable() {
                         @Override
                         public void close() throws IOException {
                             try {
                                 if (tableScanner != null && initialized)
-                                    tableScanner.close();
+                                    closeScanner();
                             } catch (Exception e) {
                                 throw new IOException(e);
                             }
@@ -85,16 +111,25 @@ public class TableScannerIterator implements Iterable<LocatedRow>, Iterator<Loca
                     });
                 }
             }
+            if (batch != null) {
+                hasNext = nextBatchedRow();
+                return hasNext;
+            }
             while (true) {
                 execRow = tableScanner.next();
                 if (execRow == null) {
-                    tableScanner.close();
+                    closeScanner();
                     initialized = false;
                     hasNext = false;
                     return hasNext;
                 } else {
                     hasNext = true;
-                    if (qualifiers == null || rowIdKey || Scans.qualifyRecordFromRow(execRow.getRowArray(), qualifiers,baseColumnMap,siTableBuilder.getOptionalProbeValue() ))
+                    boolean qualified = scannerQualifies;
+                    if (!qualificationDecided && initializeQualification(execRow)) {
+                        hasNext = nextBatchedRow();
+                        return hasNext;
+                    }
+                    if (qualifiers == null || rowIdKey || qualified || Scans.qualifyRecordFromRow(execRow.getRowArray(), qualifiers,baseColumnMap,siTableBuilder.getOptionalProbeValue() ))
                         break;
                 }
             }
@@ -108,7 +143,12 @@ public class TableScannerIterator implements Iterable<LocatedRow>, Iterator<Loca
     public LocatedRow next() {
         slotted = false;
         rows++;
-        LocatedRow locatedRow = new LocatedRow(tableScanner.getCurrentRowLocation(),execRow.getClone());
+        LocatedRow locatedRow;
+        if (batch != null) {
+            locatedRow = batchRow;
+            batchRow = null;
+        } else
+            locatedRow = new LocatedRow(tableScanner.getCurrentRowLocation(),execRow.getClone());
         if (operation != null) {
             StreamLogUtils.logOperationRecord(locatedRow, operation);
             operation.setCurrentLocatedRow(locatedRow);
@@ -116,6 +156,82 @@ public class TableScannerIterator implements Iterable<LocatedRow>, Iterator<Loca
         return locatedRow;
     }
 
+    /**
+     * Decide, from the first scanned row, how the remaining rows are qualified. If the qualifiers can be
+     * evaluated over batches, the batch is created and {@code firstRow} is added to it. Otherwise the
+     * scanner may qualify each row itself, before decoding the columns the qualifiers don't reference.
+     *
+     * @return true if rows should be read in batches
+     */
+    private boolean initializeQualification(ExecRow firstRow) throws StandardException {
+        qualificationDecided = true;
+        if (qualifiers == null || rowIdKey)
+            return false;
+        SConfiguration configuration = EngineDriver.driver().getConfiguration();
+        int batchSize = configuration.getControlScanBatchSize();
+        RowBatch rowBatch = null;
+        if (batchSize > 1) {
+            rowBatch = new RowBatch(firstRow, batchSize);
+            batchQualifier = BatchQualifier.compile(qualifiers, baseColumnMap, siTableBuilder.getOptionalProbeValue(), rowBatch);
+        }
+        if (batchQualifier == null) {
+            if (configuration.getLazyColumnDecoding())
+                scannerQualifies = tableScanner.qualifyLazily(qualifiers, baseColumnMap);
+            return false;
+        }
+        batch = rowBatch;
+        scanRow = firstRow;
+        batch.setLimit(Math.min(INITIAL_BATCH_SIZE, batch.capacity()));
+        batch.add(firstRow, tableScanner.getCurrentRowLocation());
+        fillBatch();
+        return true;
+    }
+
+    private boolean nextBatchedRow() throws StandardException, IOException {
+        while (!batch.hasNext()) {
+            if (exhausted) {
+                closeScanner();
+                initialized = false;
+                return false;
+            }
+            batch.reset();
+            batch.setLimit((int) Math.min(2L * batch.getLimit(), batch.capacity()));
+            fillBatch();
+        }
+        batchRow = batch.next();
+        return true;
+    }
+
+    /**
+     * Read rows until the batch is full or the scan is exhausted, then qualify the whole batch. Each row is
+     * decoded into values owned by the batch, so nothing is copied until the batch has been qualified.
+     */
+    private void fillBatch() throws StandardException, IOException {
+        while (!batch.isFull()) {
+            batch.prepare(scanRow);
+            ExecRow row = tableScanner.next();
+            if (row == null) {
+                exhausted = true;
+                break;
+            }
+            batch.add(row, tableScanner.getCurrentRowLocation());
+        }
+        batchQualifier.evaluate(batch);
+    }
+
+    /**
+     * Close the scanner, recording the rows it decoded in the operation's context the first time it's closed.
+     */
+    private void closeScanner() throws StandardException, IOException {
+        tableScanner.close();
+        if (decodeRecorded || operation == null)
+            return;
+        decodeRecorded = true;
+        OperationContext operationContext = operation.getOperationContext();
+        if (operationContext != null)
+            operationContext.recordDecoded(tableScanner.getRowsDecoded(), tableScanner.getBytesDecoded());
+    }
+
     @Override
     public void remove() {
         throw new RuntimeException("Not Implemented");
@@ -125,7 +241,7 @@ public class TableScannerIterator implements Iterable<LocatedRow>, Iterator<Loca
     public void close() throws IOException {
         if (tableScanner != null) {
             try {
-                tableScanner.close();
+                closeScanner();
             } catch (StandardException se) {
                 throw new IOException(se);
             }
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.stream.output;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.store.access.Qualifier;
+import com.splicemachine.derby.iapi.sql.execute.SpliceOperation;
+import com.splicemachine.derby.impl.sql.execute.operations.NormalizeOperation;
+import com.splicemachine.derby.impl.sql.execute.operations.ProjectRestrictOperation;
+import com.splicemachine.derby.impl.sql.execute.operations.TableScanOperation;
+import com.splicemachine.derby.stream.iapi.DataSetProcessor;
+import com.splicemachine.derby.stream.iapi.OperationContext;
+import com.splicemachine.utils.IntArrays;
+
+/**
+ * The Parquet or ORC files which a bulk import copies as they are, so that their rows can be encoded into the
+ * table's format straight from the columnar reader, without going through the operations of the insert's source.
+ * <p>
+ * That is only the case when the source scans an external Parquet or ORC table without qualifiers, and every
+ * operation between the scan and the insert either only picks columns (a ProjectRestrict without restriction or
+ * projection) or normalizes them (a Normalize, which is still applied to each row).
+ */
+public class ColumnarImportSource {
+    private final String storedAs;
+    private final String location;
+    private final int[] baseColumnMap;
+    private final ExecRow scanRow;
+    private final int[] columnMap;
+    private final OperationContext normalizeContext;
+
+    private ColumnarImportSource(String storedAs,
+                                 String location,
+                                 int[] baseColumnMap,
+                                 ExecRow scanRow,
+                                 int[] columnMap,
+                                 OperationContext normalizeContext) {
+        this.storedAs = storedAs;
+        this.location = location;
+        this.baseColumnMap = baseColumnMap;
+        this.scanRow = scanRow;
+        this.columnMap = columnMap;
+        this.normalizeContext = normalizeContext;
+    }
+
+    /**
+     * @param source the source operation of an insert
+     * @param dsp    the processor the insert runs on
+     * @return the files the insert copies, or null if its source does more than read and normalize them
+     */
+    public static ColumnarImportSource forInsert(SpliceOperation source, DataSetProcessor dsp) throws StandardException {
+        SpliceOperation op = source;
+        NormalizeOperation normalize = null;
+        if (op instanceof NormalizeOperation) {
+            normalize = (NormalizeOperation) op;
+            op = op.getLeftOperation();
+        }
+        int[] columnMap = null;
+        while (op instanceof ProjectRestrictOperation) {
+            ProjectRestrictOperation projectRestrict = (ProjectRestrictOperation) op;
+            if (!projectRestrict.onlyMapsColumns())
+                return null;
+            columnMap = compose(columnMap, projectRestrict.projectMapping);
+            op = op.getLeftOperation();
+        }
+        if (!(op instanceof TableScanOperation))
+            return null;
+
+        TableScanOperation scan = (TableScanOperation) op;
+        String storedAs = scan.getStoredAs();
+        if (storedAs == null || scan.getLocation() == null || scan.isPinned())
+            return null;
+        if (!storedAs.equalsIgnoreCase("P") && !storedAs.equalsIgnoreCase("O"))
+            return null;
+        Qualifier[][] qualifiers = scan.getScanInformation().getScanQualifiers();
+        if (qualifiers != null && qualifiers.length > 0)
+            return null;
+
+        ExecRow scanRow = scan.getExecRowDefinition();
+        if (columnMap == null) {
+            columnMap = IntArrays.count(scanRow.nColumns());
+            for (int i = 0; i < columnMap.length; i++) {
+                columnMap[i]++;
+            }
+        }
+        OperationContext normalizeContext = normalize == null ? null : dsp.createOperationContext(normalize);
+        return new ColumnarImportSource(storedAs, scan.getLocation(), scan.getBaseColumnMap(), scanRow,
+                columnMap, normalizeContext);
+    }
+
+    public boolean isParquet() {
+        return storedAs.equalsIgnoreCase("P");
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    /**
+     * @return for each column of the files, its position in the scanned row, or -1 if it is not read
+     */
+    public int[] getBaseColumnMap() {
+        return baseColumnMap;
+    }
+
+    /**
+     * @return the row the read columns are decoded into
+     */
+    public ExecRow getScanRow() {
+        return scanRow;
+    }
+
+    /**
+     * @return for each column of the inserted row, the (1-based) column of the scanned row it is copied from, or
+     * -1 if it is left null
+     */
+    public int[] getColumnMap() {
+        return columnMap;
+    }
+
+    /**
+     * @return the context of the Normalize operation to apply to each row, or null if there is none
+     */
+    public OperationContext getNormalizeContext() {
+        return normalizeContext;
+    }
+
+    private static int[] compose(int[] outer, int[] inner) {
+        if (outer == null)
+            return inner.clone();
+        int[] result = new int[outer.length];
+        for (int i = 0; i < outer.length; i++) {
+            result[i] = outer[i] == -1 ? -1 : inner[outer[i] - 1];
+        }
+        return result;
+    }
+}
@@ -48,5 +48,11 @@ public interface HBaseBulkImporterBuilder {
 
     HBaseBulkImporterBuilder indexName(String indexName);
 
+    /**
+     * @param columnarSource the Parquet or ORC files the import copies as they are, or null to encode the rows
+     *                       of the data set
+     */
+    HBaseBulkImporterBuilder columnarSource(ColumnarImportSource columnarSource);
+
     HBaseBulkImporter build();
 }
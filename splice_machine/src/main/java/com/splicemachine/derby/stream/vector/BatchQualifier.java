@@ -0,0 +1,324 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.stream.vector;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.services.io.StoredFormatIds;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.store.access.Qualifier;
+import com.splicemachine.db.iapi.types.DataType;
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
+import com.splicemachine.derby.utils.Scans;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Evaluates a scan's {@link Qualifier}s over a whole {@link RowBatch} at a time, narrowing the
+ * batch's selection vector to the rows which qualify.
+ *
+ * Only qualifiers which compare a numeric column with a constant of the same numeric family
+ * (integral with integral, floating point with floating point) can be evaluated this way; for
+ * anything else {@link #compile} returns {@code null}, and the caller should qualify rows one at a
+ * time with {@link Scans#qualifyRecordFromRow}. The result for each row is exactly the result
+ * {@code qualifyRecordFromRow} would give, including its treatment of null values.
+ */
+@NotThreadSafe
+public class BatchQualifier{
+    private final Term[][] terms;
+    private final Qualifier[][] qualifiers;
+    private final int[] baseColumnMap;
+    private final DataValueDescriptor probeValue;
+    private final boolean[] results;
+    private final boolean[] matches;
+
+    private BatchQualifier(Term[][] terms,Qualifier[][] qualifiers,int[] baseColumnMap,DataValueDescriptor probeValue,int capacity){
+        this.terms=terms;
+        this.qualifiers=qualifiers;
+        this.baseColumnMap=baseColumnMap;
+        this.probeValue=probeValue;
+        this.results=new boolean[capacity];
+        this.matches=new boolean[capacity];
+    }
+
+    /**
+     * @param qualifiers the scan qualifiers, in the form accepted by {@link Scans#qualifyRecordFromRow}
+     * @param baseColumnMap the map from storage position to row position, or {@code null}
+     * @param probeValue the probe value which replaces the first qualifier's constant, or {@code null}
+     * @param batch the batch which will be evaluated
+     * @return an evaluator for the qualifiers, or {@code null} if any qualifier cannot be evaluated over a batch
+     */
+    public static BatchQualifier compile(Qualifier[][] qualifiers,
+                                         int[] baseColumnMap,
+                                         DataValueDescriptor probeValue,
+                                         RowBatch batch) throws StandardException{
+        int numColumns=batch.numColumns();
+        Term[][] terms=new Term[qualifiers.length][];
+        for(int i=0;i<qualifiers.length;i++){
+            terms[i]=new Term[qualifiers[i].length];
+            for(int j=0;j<qualifiers[i].length;j++){
+                Qualifier q=qualifiers[i][j];
+                if(q.getVariantType()==Qualifier.VARIANT)
+                    return null; //the constant may change from row to row
+                int column=baseColumnMap!=null?baseColumnMap[q.getStoragePosition()]:q.getStoragePosition();
+                if(column<0 || column>=numColumns)
+                    return null;
+                ColumnVector vector=batch.getColumn(column);
+                boolean integral;
+                if(vector instanceof LongColumnVector)
+                    integral=true;
+                else if(vector instanceof DoubleColumnVector)
+                    integral=false;
+                else
+                    return null;
+                Term term=new Term(q,column,integral,probeValue!=null && i==0 && j==0);
+                q.clearOrderableCache();
+                if(!term.bind(term.probe?probeValue:q.getOrderable()))
+                    return null;
+                terms[i][j]=term;
+            }
+        }
+        return new BatchQualifier(terms,qualifiers,baseColumnMap,probeValue,batch.capacity());
+    }
+
+    /**
+     * Narrow the selection of {@code batch} to the rows which satisfy the qualifiers.
+     */
+    public void evaluate(RowBatch batch) throws StandardException{
+        if(!bind()){
+            evaluateRows(batch);
+            return;
+        }
+        int[] selected=batch.getSelected();
+        int count=batch.getSelectedCount();
+
+        //the first list is a conjunction
+        for(Term term : terms[0]){
+            if(count==0) break;
+            if(term.filterNull){
+                count=0;
+                break;
+            }
+            term.evaluate(batch.getColumn(term.column),selected,count,results);
+            count=compact(selected,count,results);
+        }
+
+        //each remaining list is a disjunction, and the lists are and-ed together
+        for(int i=1;i<terms.length && count>0;i++){
+            for(int k=0;k<count;k++){
+                matches[k]=false;
+            }
+            for(Term term : terms[i]){
+                if(term.filterNull){
+                    /*
+                     * qualifyRecordFromRow rejects any row which reaches this term, so only
+                     * rows which have already matched an earlier term can still qualify
+                     */
+                    break;
+                }
+                term.evaluate(batch.getColumn(term.column),selected,count,results);
+                for(int k=0;k<count;k++){
+                    matches[k]|=results[k];
+                }
+            }
+            count=compact(selected,count,matches);
+        }
+        batch.setSelectedCount(count);
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+
+    /**
+     * Re-read each qualifier's constant, as {@link Scans#qualifyRecordFromRow} would for each row.
+     *
+     * @return false if a constant can no longer be compared as a primitive
+     */
+    private boolean bind() throws StandardException{
+        for(int i=0;i<terms.length;i++){
+            for(int j=0;j<terms[i].length;j++){
+                Term term=terms[i][j];
+                Qualifier q=qualifiers[i][j];
+                q.clearOrderableCache();
+                if(!term.bind(term.probe?probeValue:q.getOrderable()))
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    private void evaluateRows(RowBatch batch) throws StandardException{
+        int[] selected=batch.getSelected();
+        int count=batch.getSelectedCount();
+        for(int k=0;k<count;k++){
+            ExecRow row=batch.materialize(selected[k]);
+            results[k]=Scans.qualifyRecordFromRow(row.getRowArray(),qualifiers,baseColumnMap,probeValue);
+        }
+        batch.setSelectedCount(compact(selected,count,results));
+    }
+
+    private static int compact(int[] selected,int count,boolean[] keep){
+        int kept=0;
+        for(int k=0;k<count;k++){
+            if(keep[k])
+                selected[kept++]=selected[k];
+        }
+        return kept;
+    }
+
+    private static boolean isIntegral(int typeFormatId){
+        switch(typeFormatId){
+            case StoredFormatIds.SQL_TINYINT_ID:
+            case StoredFormatIds.SQL_SMALLINT_ID:
+            case StoredFormatIds.SQL_INTEGER_ID:
+            case StoredFormatIds.SQL_LONGINT_ID:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isFloatingPoint(int typeFormatId){
+        return typeFormatId==StoredFormatIds.SQL_REAL_ID || typeFormatId==StoredFormatIds.SQL_DOUBLE_ID;
+    }
+
+    /**
+     * @param comparison the result of comparing the column value with the constant (-1, 0 or 1)
+     */
+    private static boolean apply(int operator,int comparison){
+        switch(operator){
+            case DataType.ORDER_OP_LESSTHAN:
+                return comparison<0;
+            case DataType.ORDER_OP_EQUALS:
+                return comparison==0;
+            case DataType.ORDER_OP_LESSOREQUALS:
+                return comparison<=0;
+            case DataType.ORDER_OP_GREATERTHAN:
+                return comparison>0;
+            case DataType.ORDER_OP_GREATEROREQUALS:
+                return comparison>=0;
+            default:
+                throw new IllegalArgumentException("Invalid Operator "+operator);
+        }
+    }
+
+    /**
+     * A single qualifier, with the outcome of the comparison precomputed for each possible
+     * ordering of the column value and the constant.
+     */
+    private static final class Term{
+        private final int column;
+        private final boolean integral;
+        private final boolean probe;
+        private final int operator;
+        private final boolean negate;
+        private final boolean orderedNulls;
+        private final boolean unknownRV;
+        private final int variantType;
+
+        /*the result, indexed by Long.compare(value,constant)+1*/
+        private final boolean[] byComparison=new boolean[3];
+        private long longConstant;
+        private double doubleConstant;
+        private boolean constantNull;
+        private boolean filterNull;
+        private boolean columnNullResult;
+        private boolean constantNullResult;
+
+        Term(Qualifier q,int column,boolean integral,boolean probe){
+            this.column=column;
+            this.integral=integral;
+            this.probe=probe;
+            this.operator=q.getOperator();
+            this.negate=q.negateCompareResult();
+            this.orderedNulls=q.getOrderedNulls();
+            this.unknownRV=q.getUnknownRV();
+            this.variantType=q.getVariantType();
+        }
+
+        boolean bind(DataValueDescriptor constant) throws StandardException{
+            constantNull=constant==null || constant.isNull();
+            filterNull=false;
+            if(constantNull){
+                switch(operator){
+                    case DataType.ORDER_OP_LESSTHAN:
+                    case DataType.ORDER_OP_LESSOREQUALS:
+                    case DataType.ORDER_OP_GREATERTHAN:
+                    case DataType.ORDER_OP_GREATEROREQUALS:
+                        filterNull=true;
+                        break;
+                    case DataType.ORDER_OP_EQUALS:
+                        filterNull=variantType!=1;
+                        break;
+                    default:
+                        return false;
+                }
+                /*
+                 * A null constant compares equal to a null column value, and less than
+                 * any other value
+                 */
+                columnNullResult=(orderedNulls?apply(operator,0):unknownRV)^negate;
+                constantNullResult=(orderedNulls?apply(operator,-1):unknownRV)^negate;
+                return true;
+            }
+
+            int typeFormatId=constant.getTypeFormatId();
+            if(integral){
+                if(!isIntegral(typeFormatId)) return false;
+                longConstant=constant.getLong();
+            }else{
+                if(!isFloatingPoint(typeFormatId)) return false;
+                doubleConstant=constant.getDouble();
+            }
+            for(int c=-1;c<=1;c++){
+                byComparison[c+1]=apply(operator,c)^negate;
+            }
+            //a null column value sorts above any other value
+            columnNullResult=(orderedNulls?apply(operator,1):unknownRV)^negate;
+            return true;
+        }
+
+        void evaluate(ColumnVector vector,int[] selected,int count,boolean[] results){
+            if(constantNull){
+                for(int k=0;k<count;k++){
+                    results[k]=vector.isNull(selected[k])?columnNullResult:constantNullResult;
+                }
+            }else if(integral){
+                long[] values=((LongColumnVector)vector).values;
+                long constant=longConstant;
+                for(int k=0;k<count;k++){
+                    int row=selected[k];
+                    results[k]=byComparison[Long.compare(values[row],constant)+1];
+                }
+                fillNulls(vector,selected,count,results);
+            }else{
+                double[] values=((DoubleColumnVector)vector).values;
+                double constant=doubleConstant;
+                for(int k=0;k<count;k++){
+                    double value=values[selected[k]];
+                    results[k]=byComparison[value==constant?1:(value>constant?2:0)];
+                }
+                fillNulls(vector,selected,count,results);
+            }
+        }
+
+        private void fillNulls(ColumnVector vector,int[] selected,int count,boolean[] results){
+            if(!vector.hasNulls) return;
+            for(int k=0;k<count;k++){
+                if(vector.isNull(selected[k]))
+                    results[k]=columnNullResult;
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.stream.vector;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.services.io.StoredFormatIds;
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.Arrays;
+
+/**
+ * A single column of a {@link RowBatch}.
+ *
+ * Nulls are tracked in a bitmap, so that primitive vectors need not box their values. Primitive vectors
+ * copy each value out of the scanned row; other vectors keep the scanned value itself, and hand the
+ * scanner a value of their own to decode the next row into (see {@link #slot(int, DataValueDescriptor)}).
+ */
+@NotThreadSafe
+public abstract class ColumnVector{
+    protected final long[] nulls;
+    protected boolean hasNulls;
+
+    protected ColumnVector(int capacity){
+        this.nulls=new long[(capacity+63)>>>6];
+    }
+
+    /**
+     * Create a vector which can hold values of the same type as {@code template}.
+     *
+     * @param template a value of the column's type
+     * @param capacity the maximum number of rows the vector holds
+     * @return a primitive vector if the column's type has one, otherwise a vector of values
+     */
+    public static ColumnVector newVector(DataValueDescriptor template,int capacity){
+        if(template!=null){
+            switch(template.getTypeFormatId()){
+                case StoredFormatIds.SQL_TINYINT_ID:
+                case StoredFormatIds.SQL_SMALLINT_ID:
+                case StoredFormatIds.SQL_INTEGER_ID:
+                case StoredFormatIds.SQL_LONGINT_ID:
+                    return new LongColumnVector(capacity);
+                case StoredFormatIds.SQL_REAL_ID:
+                case StoredFormatIds.SQL_DOUBLE_ID:
+                    return new DoubleColumnVector(capacity);
+                default:
+            }
+        }
+        return new ObjectColumnVector(capacity);
+    }
+
+    /**
+     * Choose the value the scanner decodes position {@code row} into.
+     *
+     * @param row the position in the vector
+     * @param scanned the value the scanner would otherwise decode into
+     * @return {@code scanned}, or a value which the vector owns and re-uses for this position
+     */
+    public DataValueDescriptor slot(int row,DataValueDescriptor scanned){
+        return scanned;
+    }
+
+    /**
+     * Place {@code value} at position {@code row} of this vector. A value returned by
+     * {@link #slot(int, DataValueDescriptor)} may be held by the vector until it is reset; any other
+     * value is copied, so the caller is free to re-use it afterwards.
+     */
+    public abstract void set(int row,DataValueDescriptor value) throws StandardException;
+
+    /**
+     * Create a row of the batch's output from the value at position {@code row}.
+     *
+     * @param row the position in the vector
+     * @param template a value of the column's type
+     * @return a value which is not shared with the vector
+     */
+    public abstract DataValueDescriptor get(int row,DataValueDescriptor template) throws StandardException;
+
+    public final boolean isNull(int row){
+        return hasNulls && (nulls[row>>>6]&(1L<<row))!=0;
+    }
+
+    public void reset(){
+        if(hasNulls){
+            Arrays.fill(nulls,0L);
+            hasNulls=false;
+        }
+    }
+
+    protected final void setNull(int row){
+        nulls[row>>>6]|=1L<<row;
+        hasNulls=true;
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.stream.vector;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * A vector of REAL or DOUBLE values.
+ *
+ * A REAL is widened to a double exactly, so holding both types as doubles does not change
+ * the result of comparing them.
+ */
+@NotThreadSafe
+public class DoubleColumnVector extends ColumnVector{
+    final double[] values;
+
+    public DoubleColumnVector(int capacity){
+        super(capacity);
+        this.values=new double[capacity];
+    }
+
+    @Override
+    public void set(int row,DataValueDescriptor value) throws StandardException{
+        if(value.isNull())
+            setNull(row);
+        else
+            values[row]=value.getDouble();
+    }
+
+    @Override
+    public DataValueDescriptor get(int row,DataValueDescriptor template) throws StandardException{
+        DataValueDescriptor value=template.getNewNull();
+        if(!isNull(row))
+            value.setValue(values[row]);
+        return value;
+    }
+
+    public double getDouble(int row){
+        return values[row];
+    }
+}
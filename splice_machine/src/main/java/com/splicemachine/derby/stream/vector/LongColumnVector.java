@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.stream.vector;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * A vector of TINYINT, SMALLINT, INTEGER or BIGINT values.
+ */
+@NotThreadSafe
+public class LongColumnVector extends ColumnVector{
+    final long[] values;
+
+    public LongColumnVector(int capacity){
+        super(capacity);
+        this.values=new long[capacity];
+    }
+
+    @Override
+    public void set(int row,DataValueDescriptor value) throws StandardException{
+        if(value.isNull())
+            setNull(row);
+        else
+            values[row]=value.getLong();
+    }
+
+    @Override
+    public DataValueDescriptor get(int row,DataValueDescriptor template) throws StandardException{
+        DataValueDescriptor value=template.getNewNull();
+        if(!isNull(row))
+            value.setValue(values[row]);
+        return value;
+    }
+
+    public long getLong(int row){
+        return values[row];
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.stream.vector;
+
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * A vector for column types which have no primitive representation.
+ *
+ * Each position owns a value, which the scanner decodes straight into and which is re-used for every
+ * batch, so that a value is only cloned when its row is selected.
+ */
+@NotThreadSafe
+public class ObjectColumnVector extends ColumnVector{
+    private final DataValueDescriptor[] values;
+
+    public ObjectColumnVector(int capacity){
+        super(capacity);
+        this.values=new DataValueDescriptor[capacity];
+    }
+
+    @Override
+    public DataValueDescriptor slot(int row,DataValueDescriptor scanned){
+        DataValueDescriptor value=values[row];
+        if(value==null){
+            value=scanned.getNewNull();
+            values[row]=value;
+        }
+        return value;
+    }
+
+    @Override
+    public void set(int row,DataValueDescriptor value){
+        //a value the scanner replaced rather than decoded into (or never slotted) may be re-used by it
+        if(value!=values[row])
+            values[row]=value==null?null:value.cloneValue(false);
+    }
+
+    @Override
+    public DataValueDescriptor get(int row,DataValueDescriptor template){
+        DataValueDescriptor value=values[row];
+        return value==null?null:value.cloneValue(false);
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.stream.vector;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.services.io.FormatableBitSet;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
+import com.splicemachine.db.iapi.types.RowLocation;
+import com.splicemachine.derby.impl.sql.execute.operations.LocatedRow;
+import com.splicemachine.derby.impl.store.access.hbase.HBaseRowLocation;
+import com.splicemachine.utils.ByteSlice;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.Arrays;
+
+/**
+ * A batch of up to {@code capacity} rows held column-wise, together with a selection vector
+ * of the positions of the rows which are still qualified.
+ *
+ * Before each row is scanned, {@link #prepare(ExecRow)} points the scanner's row at values the batch owns,
+ * so that the row is decoded straight into the batch and nothing is copied until the whole batch has been
+ * filtered by a {@link BatchQualifier}. Only the selected rows are then turned back into {@link ExecRow}s.
+ * The batch's values and row keys are re-used for every batch, so filling a batch allocates nothing once
+ * each position has been used.
+ */
+@NotThreadSafe
+public class RowBatch{
+    private final ExecRow template;
+    private final ColumnVector[] columns;
+    private final FormatableBitSet sharedColumns;
+    private final RowLocation[] locations;
+    private final ByteSlice[] keys;
+    private final int[] selected;
+    private int limit;
+    private int size;
+    private int selectedCount;
+    private int position;
+
+    public RowBatch(ExecRow template,int capacity) throws StandardException{
+        this.template=template;
+        this.columns=new ColumnVector[template.nColumns()];
+        for(int i=0;i<columns.length;i++){
+            columns[i]=ColumnVector.newVector(template.getColumn(i+1),capacity);
+        }
+        this.sharedColumns=new FormatableBitSet(columns.length+1);
+        this.locations=new RowLocation[capacity];
+        this.keys=new ByteSlice[capacity];
+        this.selected=new int[capacity];
+        this.limit=capacity;
+    }
+
+    public void reset(){
+        for(ColumnVector column : columns){
+            column.reset();
+        }
+        Arrays.fill(locations,0,size,null);
+        size=0;
+        selectedCount=0;
+        position=0;
+    }
+
+    public boolean isFull(){
+        return size>=limit;
+    }
+
+    public int size(){
+        return size;
+    }
+
+    public int capacity(){
+        return selected.length;
+    }
+
+    /**
+     * @return the number of rows the batch holds before it is full
+     */
+    public int getLimit(){
+        return limit;
+    }
+
+    /**
+     * Fill the batch with fewer rows than it has room for, so that its first rows are not held back until
+     * {@link #capacity()} rows have been read.
+     *
+     * @param limit the number of rows the batch holds before it is full, between 1 and {@link #capacity()}
+     */
+    public void setLimit(int limit){
+        assert limit>0 && limit<=capacity():"Invalid batch limit "+limit;
+        this.limit=limit;
+    }
+
+    public int numColumns(){
+        return columns.length;
+    }
+
+    /**
+     * Point the columns of {@code row} at the values the next row of the batch is held in, so that the
+     * scanner decodes the next row straight into the batch. The columns are left in place when the batch
+     * is reset, so the row needs no preparing once the scan ends.
+     */
+    public void prepare(ExecRow row){
+        assert !isFull():"Cannot prepare a row for a full batch!";
+        DataValueDescriptor[] rowArray=row.getRowArray();
+        for(int i=0;i<columns.length;i++){
+            DataValueDescriptor value=rowArray[i];
+            if(value==null)
+                continue;
+            DataValueDescriptor slot=columns[i].slot(size,value);
+            if(slot!=value)
+                row.setColumn(i+1,slot);
+        }
+    }
+
+    /**
+     * Add {@code row} to the batch. The row is initially selected.
+     *
+     * Values placed in the row by {@link #prepare(ExecRow)} are held by the batch until it is reset, and
+     * the key of an {@link HBaseRowLocation} is referenced rather than copied; anything else is copied.
+     */
+    public void add(ExecRow row,RowLocation location) throws StandardException{
+        assert !isFull():"Cannot add a row to a full batch!";
+        DataValueDescriptor[] rowArray=row.getRowArray();
+        for(int i=0;i<columns.length;i++){
+            columns[i].set(size,rowArray[i]);
+        }
+        setLocation(size,location);
+        selected[size]=size;
+        size++;
+        selectedCount=size;
+    }
+
+    /**
+     * @param column the 0-based position of the column in the row
+     */
+    public ColumnVector getColumn(int column){
+        return columns[column];
+    }
+
+    /**
+     * @return the positions of the selected rows. Only the first {@link #getSelectedCount()}
+     * entries are meaningful, and may be overwritten to narrow the selection
+     */
+    public int[] getSelected(){
+        return selected;
+    }
+
+    public int getSelectedCount(){
+        return selectedCount;
+    }
+
+    public void setSelectedCount(int selectedCount){
+        assert selectedCount<=this.selectedCount:"The selection can only be narrowed!";
+        this.selectedCount=selectedCount;
+    }
+
+    public boolean hasNext(){
+        return position<selectedCount;
+    }
+
+    /**
+     * @return the next selected row, as a row which is not shared with the batch
+     */
+    public LocatedRow next() throws StandardException{
+        int row=selected[position++];
+        return new LocatedRow(getLocation(row),materialize(row));
+    }
+
+    /**
+     * @param row the position of a row in the batch
+     * @return a copy of the row, which is not shared with the batch
+     */
+    public ExecRow materialize(int row) throws StandardException{
+        //start from a row which shares every column of the template, and replace each one
+        ExecRow execRow=template.getClone(sharedColumns);
+        for(int i=0;i<columns.length;i++){
+            DataValueDescriptor column=template.getColumn(i+1);
+            execRow.setColumn(i+1,column==null?null:columns[i].get(row,column));
+        }
+        return execRow;
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private void setLocation(int row,RowLocation location){
+        if(location instanceof HBaseRowLocation && ((HBaseRowLocation)location).getSlice()!=null){
+            //the scanner re-uses its row location, but never the key bytes it points at
+            ByteSlice key=keys[row];
+            if(key==null){
+                key=new ByteSlice();
+                keys[row]=key;
+            }
+            key.set(((HBaseRowLocation)location).getSlice());
+            locations[row]=null;
+        }else{
+            if(keys[row]!=null)
+                keys[row].set(null,0,0);
+            locations[row]=location==null?null:(RowLocation)location.cloneValue(true);
+        }
+    }
+
+    private RowLocation getLocation(int row){
+        ByteSlice key=keys[row];
+        if(key!=null && key.array()!=null)
+            return new HBaseRowLocation(ByteSlice.wrap(key.array(),key.offset(),key.length()));
+        return locations[row];
+    }
+}
@@ -21,6 +21,7 @@ import com.splicemachine.db.iapi.types.DataValueDescriptor;
 import com.splicemachine.derby.utils.marshall.dvd.DescriptorSerializer;
 import com.splicemachine.encoding.MultiFieldDecoder;
 import com.splicemachine.encoding.MultiFieldEncoder;
+import com.splicemachine.utils.ByteSlice;
 import com.splicemachine.utils.kryo.KryoPool;
 
 import java.io.IOException;
@@ -50,11 +51,11 @@ public class BareKeyHash{
         this.serializers=serializers;
     }
 
-    public static DataHash encoder(int[] keyColumns,boolean[] keySortOrder,DescriptorSerializer[] serializers){
+    public static Encoder encoder(int[] keyColumns,boolean[] keySortOrder,DescriptorSerializer[] serializers){
         return encoder(keyColumns,keySortOrder,SpliceKryoRegistry.getInstance(),serializers);
     }
 
-    public static DataHash encoder(int[] keyColumns,boolean[] keySortOrder,KryoPool kryoPool,DescriptorSerializer[] serializers){
+    public static Encoder encoder(int[] keyColumns,boolean[] keySortOrder,KryoPool kryoPool,DescriptorSerializer[] serializers){
         return new Encoder(keyColumns,keySortOrder,kryoPool,serializers);
     }
 
@@ -149,8 +150,9 @@ public class BareKeyHash{
 
     }
 
-    private static class Encoder extends BareKeyHash implements DataHash<ExecRow>{
+    public static class Encoder extends BareKeyHash implements DataHash<ExecRow>{
         private MultiFieldEncoder encoder;
+        private byte[] buffer;
 
         private ExecRow currentRow;
 
@@ -165,6 +167,31 @@ public class BareKeyHash{
 
         @Override
         public byte[] encode() throws StandardException, IOException{
+            pack(encoder(),currentRow);
+            return encoder.build();
+        }
+
+        /**
+         * Encode the current row into a buffer which is re-used from one row to the next, rather than
+         * allocating a new array for each.
+         *
+         * @param destination set to the encoded bytes, which are only valid until the next call
+         */
+        public void encode(ByteSlice destination) throws StandardException, IOException{
+            pack(encoder(),currentRow);
+            int length=encoder.getLength();
+            if(buffer==null || buffer.length<length)
+                buffer=new byte[Math.max(length,buffer==null?64:2*buffer.length)];
+            encoder.build(buffer,0);
+            destination.set(buffer,0,length);
+        }
+
+        @Override
+        public KeyHashDecoder getDecoder(){
+            return new Decoder(keyColumns,keySortOrder,kryoPool,serializers);
+        }
+
+        private MultiFieldEncoder encoder(){
             if(encoder==null){
                 if(keyColumns==null)
                     encoder=MultiFieldEncoder.create(currentRow.nColumns());
@@ -176,14 +203,7 @@ public class BareKeyHash{
                     encoder=MultiFieldEncoder.create(numFields);
                 }
             }
-
-            pack(encoder,currentRow);
-            return encoder.build();
-        }
-
-        @Override
-        public KeyHashDecoder getDecoder(){
-            return new Decoder(keyColumns,keySortOrder,kryoPool,serializers);
+            return encoder;
         }
     }
 }
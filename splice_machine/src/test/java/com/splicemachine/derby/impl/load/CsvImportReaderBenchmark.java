@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.impl.load;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.services.io.StoredFormatIds;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
+import com.splicemachine.db.iapi.types.DateTimeDataValue;
+import com.splicemachine.db.iapi.types.SQLDate;
+import com.splicemachine.db.iapi.types.SQLDecimal;
+import com.splicemachine.db.iapi.types.SQLDouble;
+import com.splicemachine.db.iapi.types.SQLInteger;
+import com.splicemachine.db.iapi.types.SQLLongint;
+import com.splicemachine.db.iapi.types.SQLVarchar;
+import com.splicemachine.db.impl.sql.execute.ValueRow;
+import com.splicemachine.derby.stream.utils.BooleanList;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.supercsv.prefs.CsvPreference;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how many rows and megabytes per second an import turns from UTF-8 CSV into rows, with the
+ * line-at-a-time SpliceCsvReader and with ParallelCsvReader.
+ * <p>
+ * The file is generated in memory, so the numbers leave out the file system. Each row holds an INTEGER, a BIGINT,
+ * a DOUBLE, a DECIMAL, a VARCHAR (quoted in some rows) and a DATE. The rows and bytes read are reported as the
+ * {@code rows} and {@code bytes} rates next to the score.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CsvImportReaderBenchmark{
+    private static final int MAX_QUOTED_LINES = 50000;
+
+    /**
+     * The size of the generated file, in megabytes
+     */
+    @Param({"64"})
+    public int fileSizeMb;
+
+    /**
+     * The number of chunks ParallelCsvReader parses at once
+     */
+    @Param({"1", "4"})
+    public int parallelism;
+
+    private byte[] file;
+    private ExecRow template;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters{
+        public long rows;
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void clear(){
+            rows = 0;
+            bytes = 0;
+        }
+    }
+
+    @Setup
+    public void setUp(){
+        Random random = new Random(0);
+        StringBuilder csv = new StringBuilder();
+        long size = fileSizeMb*1024L*1024L;
+        while(csv.length()<size){
+            csv.append(random.nextInt()).append(',')
+                    .append(random.nextLong()).append(',')
+                    .append(random.nextGaussian()*1000d).append(',')
+                    .append(BigDecimal.valueOf(random.nextInt(100000000),2)).append(',');
+            String name = Long.toString(random.nextLong() & Long.MAX_VALUE,36);
+            if(random.nextInt(10)==0)
+                csv.append('"').append(name).append(",\"\"").append(name).append("\"\"\"");
+            else
+                csv.append(name);
+            csv.append(',').append(String.format("%04d-%02d-%02d",1970+random.nextInt(50),1+random.nextInt(12),1+random.nextInt(28)))
+                    .append('\n');
+        }
+        file = csv.toString().getBytes(StandardCharsets.UTF_8);
+
+        template = new ValueRow(6);
+        template.setColumn(1,new SQLInteger());
+        template.setColumn(2,new SQLLongint());
+        template.setColumn(3,new SQLDouble());
+        template.setColumn(4,new SQLDecimal());
+        template.setColumn(5,new SQLVarchar());
+        template.setColumn(6,new SQLDate());
+    }
+
+    @Benchmark
+    public void spliceCsvReader(Counters counters,Blackhole blackhole) throws IOException, StandardException{
+        CsvPreference preference = new CsvPreference.Builder('"',',',"\n").maxLinesPerRow(MAX_QUOTED_LINES).build();
+        SpliceCsvReader reader = new SpliceCsvReader(
+                new BufferedReader(new InputStreamReader(new ByteArrayInputStream(file),StandardCharsets.UTF_8)),preference);
+        Calendar calendar = new GregorianCalendar();
+        long rows = 0;
+        while(reader.hasNext()){
+            List<String> columns = reader.next();
+            BooleanList quoted = reader.nextQuotedColumns();
+            ExecRow row = template.getClone();
+            for(int i=1;i<=row.nColumns();i++){
+                String value = columns.get(i-1);
+                if(value!=null && !quoted.get(i-1) && value.equalsIgnoreCase("null"))
+                    value = null;
+                setValue(row.getColumn(i),value,calendar);
+            }
+            blackhole.consume(row);
+            rows++;
+        }
+        counters.rows+=rows;
+        counters.bytes+=file.length;
+    }
+
+    @Benchmark
+    public void parallelCsvReader(Counters counters,Blackhole blackhole) throws IOException{
+        ParallelCsvReader<ExecRow> reader = new ParallelCsvReader<>(new ByteArrayInputStream(file),'"',',',
+                MAX_QUOTED_LINES,1024*1024,parallelism,new ParallelCsvReader.ChunkParser<ExecRow>(){
+            @Override
+            public void parse(Utf8CsvTokenizer records,List<ExecRow> results) throws Exception{
+                Calendar calendar = new GregorianCalendar();
+                while(records.next()){
+                    ExecRow row = template.getClone();
+                    byte[] buffer = records.getBuffer();
+                    for(int i=1;i<=row.nColumns();i++){
+                        DataValueDescriptor dvd = row.getColumn(i);
+                        int offset = records.getOffset(i-1);
+                        int length = records.getLength(i-1);
+                        if(Utf8FieldParser.isNull(buffer,offset,length,records.isQuoted(i-1)))
+                            setValue(dvd,null,calendar);
+                        else if(!Utf8FieldParser.setValue(dvd,buffer,offset,length,true))
+                            setValue(dvd,records.getString(i-1),calendar);
+                    }
+                    results.add(row);
+                }
+            }
+        });
+        long rows = 0;
+        while(reader.hasNext()){
+            blackhole.consume(reader.next());
+            rows++;
+        }
+        reader.close();
+        counters.rows+=rows;
+        counters.bytes+=file.length;
+    }
+
+    private static void setValue(DataValueDescriptor dvd,String value,Calendar calendar) throws StandardException{
+        if(dvd.getTypeFormatId()==StoredFormatIds.SQL_DATE_ID)
+            ((DateTimeDataValue)dvd).setValue(value,calendar);
+        else
+            dvd.setValue(value);
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.impl.load;
+
+import com.splicemachine.derby.stream.function.QuoteTrackingTokenizer;
+import com.splicemachine.derby.stream.utils.BooleanList;
+import org.junit.Assert;
+import org.junit.Test;
+import org.supercsv.prefs.CsvPreference;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks that ParallelCsvReader (and the Utf8CsvTokenizer under it) reads the same records, and reports the same
+ * errors, as QuoteTrackingTokenizer, however the input is split into chunks.
+ */
+public class ParallelCsvReaderTest{
+
+    @Test
+    public void readsSimpleRecords() throws Exception{
+        List<String> records=readParallel("a,b,c\n1,2,3\n",0,1,1);
+        Assert.assertEquals(Arrays.asList("a|b|c|","1|2|3|"),records);
+    }
+
+    @Test
+    public void tracksQuotedColumnsAndUnescapesQuotes() throws Exception{
+        checkSameAsQuoteTrackingTokenizer("\"hello\",\"say \"\"hi\"\"\",,\"\",null\n",0);
+        List<String> records=readParallel("\"a,b\",\"c\"\"d\"\n",0,1,1);
+        Assert.assertEquals(Arrays.asList("a,bQ|c\"dQ|"),records);
+    }
+
+    @Test
+    public void readsQuotedColumnsAcrossLines() throws Exception{
+        checkSameAsQuoteTrackingTokenizer("\"hello\",goodbye,\"boots\nmagoo\"\n\"x\r\ny\",z",0);
+    }
+
+    @Test
+    public void skipsEmptyLinesAndAcceptsAllLineTerminators() throws Exception{
+        checkSameAsQuoteTrackingTokenizer("\n\na,b\r\n\r\nc,d\re,f\n\n",0);
+    }
+
+    @Test
+    public void keepsMultiByteCharacters() throws Exception{
+        checkSameAsQuoteTrackingTokenizer("café,\"日本,語\"\nüber,x\n",0);
+    }
+
+    @Test
+    public void reportsQuotedColumnsWhichSpanTooManyLines() throws Exception{
+        checkSameAsQuoteTrackingTokenizer("a,\"b\nc\nd\ne\",f\ng,h\n",2);
+        checkSameAsQuoteTrackingTokenizer("a,\"b\nc\",d\n",1);
+    }
+
+    @Test
+    public void reportsUnterminatedQuotes() throws Exception{
+        checkSameAsQuoteTrackingTokenizer("a,b\nc,\"d\ne,f\n",0);
+        checkSameAsQuoteTrackingTokenizer("a,\"b",0);
+    }
+
+    @Test
+    public void matchesQuoteTrackingTokenizerOnRandomInput() throws Exception{
+        String[] pieces={"a","bc","\"","\"\"",",","\n","\r\n","\r"," ","é","日本","null","12","\"x,y\"","\n\n"};
+        Random random=new Random(0);
+        for(int i=0;i<2000;i++){
+            StringBuilder csv=new StringBuilder();
+            int length=random.nextInt(40);
+            for(int j=0;j<length;j++){
+                csv.append(pieces[random.nextInt(pieces.length)]);
+            }
+            checkSameAsQuoteTrackingTokenizer(csv.toString(),random.nextInt(4));
+        }
+    }
+
+    @Test
+    public void growsTheBufferForRecordsLargerThanABlock() throws Exception{
+        StringBuilder csv=new StringBuilder("a,\"");
+        for(int i=0;i<1000;i++){
+            csv.append("0123456789");
+        }
+        csv.append("\",b\nc,d\n");
+        checkSameAsQuoteTrackingTokenizer(csv.toString(),0);
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private void checkSameAsQuoteTrackingTokenizer(String csv,int maxLinesPerRow) throws IOException{
+        List<String> expected=readSequential(csv,maxLinesPerRow);
+        int[][] chunkSizesAndParallelism={{1,1},{1,3},{3,2},{7,4},{1<<20,1}};
+        for(int[] config : chunkSizesAndParallelism){
+            Assert.assertEquals("Incorrect records with chunks of "+config[0]+" bytes, parsed "+config[1]+" at a time from "+csv,
+                    expected,readParallel(csv,maxLinesPerRow,config[0],config[1]));
+        }
+    }
+
+    private List<String> readSequential(String csv,int maxLinesPerRow) throws IOException{
+        CsvPreference preference=new CsvPreference.Builder('"',',',"\n").maxLinesPerRow(maxLinesPerRow).build();
+        QuoteTrackingTokenizer tokenizer=new QuoteTrackingTokenizer(
+                new InputStreamReader(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)),StandardCharsets.UTF_8),preference);
+        List<String> records=new ArrayList<>();
+        List<String> columns=new ArrayList<>();
+        BooleanList quoted=new BooleanList();
+        while(true){
+            try{
+                if(!tokenizer.readColumns(columns,quoted))
+                    return records;
+                StringBuilder record=new StringBuilder();
+                for(int i=0;i<columns.size();i++){
+                    record.append(columns.get(i)).append(quoted.get(i)?"Q":"").append('|');
+                }
+                records.add(record.toString());
+            }catch(RuntimeException e){
+                records.add("error: "+e.getMessage());
+            }
+        }
+    }
+
+    private List<String> readParallel(String csv,int maxLinesPerRow,int chunkSize,int parallelism) throws IOException{
+        ParallelCsvReader<String> reader=new ParallelCsvReader<>(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)),
+                '"',',',maxLinesPerRow,chunkSize,parallelism,new ParallelCsvReader.ChunkParser<String>(){
+            @Override
+            public void parse(Utf8CsvTokenizer records,List<String> results){
+                while(true){
+                    try{
+                        if(!records.next())
+                            return;
+                        StringBuilder record=new StringBuilder();
+                        for(int i=0;i<records.getColumnCount();i++){
+                            record.append(records.getString(i)).append(records.isQuoted(i)?"Q":"").append('|');
+                        }
+                        results.add(record.toString());
+                    }catch(RuntimeException e){
+                        results.add("error: "+e.getMessage());
+                    }
+                }
+            }
+        });
+        try{
+            List<String> records=new ArrayList<>();
+            while(reader.hasNext()){
+                records.add(reader.next());
+            }
+            return records;
+        }finally{
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.impl.sql;
+
+import com.splicemachine.derby.test.framework.SpliceNetConnection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long a running server takes to prepare a working set of distinct statements when none of them are
+ * in its statement cache, which is what the clients of a freshly restarted server wait for.
+ * <p>
+ * The working set is pushed out of the in-memory statement cache before every iteration, by preparing as many
+ * other statements as that cache holds. (SYSCS_EMPTY_STATEMENT_CACHE would also empty the persistent statement
+ * cache.) Run the benchmark against a server started with {@code derby.language.persistentStatementCacheDirectory}
+ * set, and against one started without it: the second compiles every statement, the first (after the warmup
+ * iterations have filled the directory) loads them from disk instead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 10)
+@Fork(1)
+public class StatementCacheWarmupBenchmark{
+    private static final String SCHEMA = "STATEMENT_CACHE_BENCHMARK";
+    /**
+     * The number of statements the in-memory statement cache holds
+     */
+    private static final int STATEMENT_CACHE_SIZE = 1024;
+
+    /**
+     * The number of distinct statements to prepare
+     */
+    @Param({"100", "500"})
+    public int workingSetSize;
+
+    private Connection conn;
+    private String[] workingSet;
+
+    @Setup
+    public void setUp() throws SQLException{
+        conn = SpliceNetConnection.getConnection();
+        try(Statement s = conn.createStatement()){
+            try{
+                s.execute("create schema "+SCHEMA);
+            }catch(SQLException se){
+                if(!"X0Y68".equals(se.getSQLState()))
+                    throw se;
+            }
+            s.execute("set schema "+SCHEMA);
+            try{
+                s.execute("create table T (a int primary key, b varchar(32), c bigint, d double)");
+            }catch(SQLException se){
+                if(!"X0Y32".equals(se.getSQLState()))
+                    throw se;
+            }
+        }
+
+        workingSet = new String[workingSetSize];
+        for(int i=0;i<workingSetSize;i++){
+            switch(i%4){
+                case 0: workingSet[i] = "select b, c from T where a = ? and c > "+i; break;
+                case 1: workingSet[i] = "select count(*) from T where b like ? and d < "+i; break;
+                case 2: workingSet[i] = "update T set c = c + "+i+" where a = ?"; break;
+                default: workingSet[i] = "select t1.b, t2.c from T t1 join T t2 on t1.a = t2.c where t1.d = ? and t2.a > "+i;
+            }
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void evictWorkingSet() throws SQLException{
+        for(int i=0;i<STATEMENT_CACHE_SIZE;i++){
+            conn.prepareStatement("select a as filler"+i+" from T").close();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException{
+        conn.close();
+    }
+
+    @Benchmark
+    public void prepareWorkingSet() throws SQLException{
+        for(String sql : workingSet){
+            try(PreparedStatement ps = conn.prepareStatement(sql)){
+                ps.getMetaData();
+            }
+        }
+    }
+}
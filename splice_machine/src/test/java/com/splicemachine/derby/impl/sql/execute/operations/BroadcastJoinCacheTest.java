@@ -0,0 +1,290 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.impl.sql.execute.operations;
+
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.types.SQLInteger;
+import com.splicemachine.db.iapi.types.SQLVarchar;
+import com.splicemachine.db.impl.sql.execute.ValueRow;
+import com.splicemachine.derby.impl.sql.JoinTable;
+import com.splicemachine.hash.BloomFilter;
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import com.splicemachine.stream.Stream;
+import com.splicemachine.stream.Streams;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests how the broadcast join cache weighs, evicts and spills its join tables, and when it closes them.
+ */
+@Category(ArchitectureIndependent.class)
+public class BroadcastJoinCacheTest{
+    private static final int[] HASH_KEYS={0};
+    private static final int MANY_KEYS=100000;
+    private static final ExecRow OUTER_TEMPLATE=new ValueRow(1);
+
+    static{
+        OUTER_TEMPLATE.setColumn(1,new SQLInteger());
+    }
+
+    @Rule
+    public TemporaryFolder temporaryFolder=new TemporaryFolder();
+
+    @Test
+    public void testTableLargerThanASegmentShareStaysCached() throws Exception{
+        FixedSizeLoader loader=new FixedSizeLoader(600L);
+        BroadcastJoinCache cache=new BroadcastJoinCache(loader,1000L,temporaryFolder.newFolder());
+
+        JoinTable.Factory first=cache.get(1L,null,HASH_KEYS,HASH_KEYS,OUTER_TEMPLATE);
+        JoinTable.Factory second=cache.get(1L,null,HASH_KEYS,HASH_KEYS,OUTER_TEMPLATE);
+        Assert.assertSame("Table was not cached",first,second);
+        Assert.assertEquals("Table was loaded more than once",1,loader.loaded.size());
+        Assert.assertEquals(1L,cache.getHitCount());
+        Assert.assertEquals(600L,cache.getCurrentSize());
+        Assert.assertFalse("Table in use was closed",loader.loaded.get(0).closed);
+    }
+
+    @Test(timeout=10000)
+    public void testTableLargerThanTheCacheIsStillReturned() throws Exception{
+        FixedSizeLoader loader=new FixedSizeLoader(2000L);
+        BroadcastJoinCache cache=new BroadcastJoinCache(loader,1000L,temporaryFolder.newFolder());
+
+        JoinTable table=cache.get(1L,null,HASH_KEYS,HASH_KEYS,OUTER_TEMPLATE).newTable();
+        Assert.assertEquals("Table was loaded more than once",1,loader.loaded.size());
+        Assert.assertFalse("Table in use was closed",loader.loaded.get(0).closed);
+
+        table.close();
+        Assert.assertTrue("Table was not closed once unused",loader.loaded.get(0).closed);
+        Assert.assertEquals(0L,cache.getCurrentSize());
+    }
+
+    @Test
+    public void testTableClosedOnceUnused() throws Exception{
+        FixedSizeLoader loader=new FixedSizeLoader(600L);
+        BroadcastJoinCache cache=new BroadcastJoinCache(loader,1000L,temporaryFolder.newFolder());
+
+        cache.get(1L,null,HASH_KEYS,HASH_KEYS,OUTER_TEMPLATE).newTable().close();
+        Assert.assertTrue("Table was not closed once unused",loader.loaded.get(0).closed);
+        Assert.assertEquals(0L,cache.getCurrentSize());
+
+        cache.get(1L,null,HASH_KEYS,HASH_KEYS,OUTER_TEMPLATE);
+        Assert.assertEquals("Closed table was not reloaded",2,loader.loaded.size());
+        Assert.assertEquals("Table removed once unused counted as rebuilt",0L,cache.getRebuildCount());
+    }
+
+    @Test
+    public void testEvictedTableClosedOnceUnused() throws Exception{
+        FixedSizeLoader loader=new FixedSizeLoader(600L);
+        BroadcastJoinCache cache=new BroadcastJoinCache(loader,1000L,temporaryFolder.newFolder());
+
+        JoinTable first=cache.get(1L,null,HASH_KEYS,HASH_KEYS,OUTER_TEMPLATE).newTable();
+        cache.get(2L,null,HASH_KEYS,HASH_KEYS,OUTER_TEMPLATE);
+        Assert.assertFalse("Evicted table in use was closed",loader.loaded.get(0).closed);
+        Assert.assertEquals(1200L,cache.getCurrentSize());
+
+        first.close();
+        Assert.assertTrue("Evicted table was not closed once unused",loader.loaded.get(0).closed);
+        Assert.assertFalse("Cached table was closed",loader.loaded.get(1).closed);
+        Assert.assertEquals(600L,cache.getCurrentSize());
+
+        cache.get(1L,null,HASH_KEYS,HASH_KEYS,OUTER_TEMPLATE);
+        Assert.assertEquals("Evicted table was not reloaded",3,loader.loaded.size());
+        Assert.assertEquals(1L,cache.getRebuildCount());
+    }
+
+    @Test
+    public void testSpilledTable() throws Exception{
+        File spillDirectory=temporaryFolder.newFolder();
+        BroadcastJoinCache cache=spillingCache(spillDirectory);
+
+        JoinTable table=cache.get(1L,innerRows(),HASH_KEYS,HASH_KEYS,OUTER_TEMPLATE).newTable();
+        Assert.assertEquals(1L,cache.getSpillCount());
+        Assert.assertEquals("Incorrect number of spill files",1,spillDirectory.list().length);
+        Assert.assertTrue("Spilled table is larger than the cache",cache.getCurrentSize()<=cache.getMaxSize());
+        assertFetchesInner(table,3);
+
+        table.close();
+        Assert.assertEquals("Spill file was not deleted once unused",0,spillDirectory.list().length);
+        Assert.assertEquals(0L,cache.getCurrentSize());
+    }
+
+    @Test
+    public void testSpillFileDeletedOnEviction() throws Exception{
+        File spillDirectory=temporaryFolder.newFolder();
+        BroadcastJoinCache cache=spillingCache(spillDirectory);
+
+        JoinTable first=cache.get(1L,innerRows(),HASH_KEYS,HASH_KEYS,OUTER_TEMPLATE).newTable();
+        // the index of a second spilled table does not fit alongside the first, so the first is evicted
+        JoinTable second=cache.get(2L,innerRows(),HASH_KEYS,HASH_KEYS,OUTER_TEMPLATE).newTable();
+        Assert.assertEquals(2L,cache.getSpillCount());
+        Assert.assertEquals("Spill file was not deleted on eviction",1,spillDirectory.list().length);
+        // tables which were already reading the file still can
+        assertFetchesInner(first,7);
+
+        first.close();
+        second.close();
+        Assert.assertEquals("Spill file was not deleted once unused",0,spillDirectory.list().length);
+        Assert.assertEquals(0L,cache.getCurrentSize());
+    }
+
+    @Test
+    public void testSpilledTableWithTooManyKeysToIndex() throws Exception{
+        File spillDirectory=temporaryFolder.newFolder();
+        BroadcastJoinCache cache=spillingCache(spillDirectory);
+
+        JoinTable table=cache.get(1L,manyKeyRows(),HASH_KEYS,HASH_KEYS,OUTER_TEMPLATE).newTable();
+        Assert.assertEquals(1L,cache.getSpillCount());
+        Assert.assertEquals("Incorrect number of spill and key files",2,spillDirectory.list().length);
+        Assert.assertTrue("Spilled table is larger than the cache",cache.getCurrentSize()<=cache.getMaxSize());
+        JoinTable.Factory cached=cache.get(1L,manyKeyRows(),HASH_KEYS,HASH_KEYS,OUTER_TEMPLATE);
+        Assert.assertEquals("Spilled table was not kept in the cache",1L,cache.getSpillCount());
+        Assert.assertEquals(0L,cache.getRebuildCount());
+        Assert.assertNull("Key filter built for too many keys",cached.getKeyFilter(Integer.MAX_VALUE));
+
+        for(int key : new int[]{0,1,MANY_KEYS/2,MANY_KEYS-1}){
+            ExecRow outer=OUTER_TEMPLATE.getNewNullRow();
+            outer.getColumn(1).setValue(key);
+            List<String> values=new ArrayList<>();
+            Iterator<ExecRow> inner=table.fetchInner(outer);
+            while(inner.hasNext()){
+                ExecRow row=inner.next();
+                Assert.assertEquals("Incorrect inner row key",key,row.getColumn(1).getInt());
+                values.add(row.getColumn(2).getString());
+            }
+            Assert.assertEquals("Incorrect inner rows",Arrays.asList("a"+key,"b"+key),values);
+        }
+        ExecRow missing=OUTER_TEMPLATE.getNewNullRow();
+        missing.getColumn(1).setValue(MANY_KEYS);
+        Assert.assertFalse("Found rows for a missing key",table.fetchInner(missing).hasNext());
+
+        table.close();
+        cached.newTable().close();
+        Assert.assertEquals("Spill and key files were not deleted once unused",0,spillDirectory.list().length);
+        Assert.assertEquals(0L,cache.getCurrentSize());
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+
+    /**
+     * A cache in which an inner table of {@link #innerRows()} is spilled, but its index of keys fits.
+     */
+    private static BroadcastJoinCache spillingCache(File spillDirectory){
+        return new BroadcastJoinCache(PagedBytesTableLoader.INSTANCE,3L<<19,spillDirectory);
+    }
+
+    /**
+     * 2 MB of inner rows, with 10 rows for each of the keys 0 to 9, whose values start with their key.
+     */
+    private static Callable<Stream<ExecRow>> innerRows(){
+        return new Callable<Stream<ExecRow>>(){
+            @Override
+            public Stream<ExecRow> call() throws Exception{
+                char[] padding=new char[20000];
+                Arrays.fill(padding,'x');
+                ExecRow[] rows=new ExecRow[100];
+                for(int i=0;i<rows.length;i++){
+                    rows[i]=new ValueRow(2);
+                    rows[i].setColumn(1,new SQLInteger(i%10));
+                    rows[i].setColumn(2,new SQLVarchar(i%10+":"+i+new String(padding)));
+                }
+                return Streams.of(rows);
+            }
+        };
+    }
+
+    /**
+     * Two small inner rows for each of {@link #MANY_KEYS} keys, which are too many to index in the memory of
+     * {@link #spillingCache(File)}.
+     */
+    private static Callable<Stream<ExecRow>> manyKeyRows(){
+        return new Callable<Stream<ExecRow>>(){
+            @Override
+            public Stream<ExecRow> call() throws Exception{
+                ExecRow[] rows=new ExecRow[2*MANY_KEYS];
+                for(int i=0;i<rows.length;i++){
+                    int key=i%MANY_KEYS;
+                    rows[i]=new ValueRow(2);
+                    rows[i].setColumn(1,new SQLInteger(key));
+                    rows[i].setColumn(2,new SQLVarchar((i<MANY_KEYS?"a":"b")+key));
+                }
+                return Streams.of(rows);
+            }
+        };
+    }
+
+    private static void assertFetchesInner(JoinTable table,int key) throws Exception{
+        ExecRow outer=OUTER_TEMPLATE.getNewNullRow();
+        outer.getColumn(1).setValue(key);
+        List<Integer> keys=new ArrayList<>();
+        Iterator<ExecRow> inner=table.fetchInner(outer);
+        while(inner.hasNext()){
+            ExecRow row=inner.next();
+            keys.add(row.getColumn(1).getInt());
+            Assert.assertTrue("Incorrect inner row",row.getColumn(2).getString().startsWith(key+":"));
+        }
+        Assert.assertEquals("Incorrect number of inner rows",10,keys.size());
+        for(Integer k:keys){
+            Assert.assertEquals("Incorrect inner row key",key,k.intValue());
+        }
+    }
+
+    private static class FixedSizeLoader implements BroadcastJoinCache.JoinTableLoader{
+        private final long size;
+        private final List<FixedSizeFactory> loaded=new ArrayList<>();
+
+        FixedSizeLoader(long size){
+            this.size=size;
+        }
+
+        @Override
+        public JoinTable.Factory load(Callable<Stream<ExecRow>> streamLoader,
+                                      int[] innerHashKeys,
+                                      int[] outerHashKeys,
+                                      ExecRow outerTemplateRow,
+                                      long maxMemory,
+                                      File spillDirectory){
+            FixedSizeFactory factory=new FixedSizeFactory(size);
+            loaded.add(factory);
+            return factory;
+        }
+    }
+
+    private static class FixedSizeFactory implements JoinTable.Factory{
+        private final long size;
+        private boolean closed=false;
+
+        FixedSizeFactory(long size){
+            this.size=size;
+        }
+
+        @Override public JoinTable newTable(){ return mock(JoinTable.class); }
+        @Override public long getEstimatedSize(){ return size; }
+        @Override public BloomFilter getKeyFilter(int maxKeys){ return null; }
+        @Override public void close(){ closed=true; }
+    }
+}
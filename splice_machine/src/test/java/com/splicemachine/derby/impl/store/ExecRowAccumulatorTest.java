@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.impl.store;
+
+import com.carrotsearch.hppc.BitSet;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.types.SQLDouble;
+import com.splicemachine.db.iapi.types.SQLInteger;
+import com.splicemachine.db.iapi.types.SQLVarchar;
+import com.splicemachine.db.impl.sql.execute.ValueRow;
+import com.splicemachine.derby.utils.marshall.EntryDataHash;
+import com.splicemachine.derby.utils.marshall.dvd.DescriptorSerializer;
+import com.splicemachine.derby.utils.marshall.dvd.VersionedSerializers;
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import com.splicemachine.storage.EntryDecoder;
+import com.splicemachine.storage.EntryPredicateFilter;
+import com.splicemachine.utils.IntArrays;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Tests that decoding rows lazily, as the table scanner does when it has qualifiers, decodes the same rows as
+ * decoding them eagerly.
+ * <p>
+ * The rows are (INTEGER, VARCHAR, INTEGER, DOUBLE), and the qualifiers are taken to reference the VARCHAR only.
+ */
+@Category(ArchitectureIndependent.class)
+public class ExecRowAccumulatorTest{
+    private static final String TABLE_VERSION = "2.0";
+    private static final boolean[] QUALIFIER_COLUMNS = {false,true,false,false};
+
+    private ExecRow template;
+    private EntryPredicateFilter predicateFilter;
+    private EntryDecoder entryDecoder;
+
+    @Before
+    public void setUp() throws Exception{
+        template = row(null,null,null,null);
+        BitSet fields = new BitSet(template.nColumns());
+        for(int i=0;i<template.nColumns();i++){
+            fields.set(i);
+        }
+        predicateFilter = new EntryPredicateFilter(fields);
+        entryDecoder = new EntryDecoder();
+    }
+
+    @Test
+    public void testOnlyQualifierColumnsDecodedUntilAccepted() throws Exception{
+        ExecRowAccumulator accumulator = lazyAccumulator();
+        accumulate(accumulator,encode(row(1,"a",10,1.5d)));
+
+        accumulator.decodePending(QUALIFIER_COLUMNS);
+        Assert.assertEquals("a",template.getColumn(2).getString());
+        Assert.assertTrue("Column before the qualifier column decoded early",template.getColumn(1).isNull());
+        Assert.assertTrue("Column after the qualifier column decoded early",template.getColumn(3).isNull());
+        Assert.assertTrue("Column after the qualifier column decoded early",template.getColumn(4).isNull());
+
+        accumulator.decodePending(null);
+        assertRow(row(1,"a",10,1.5d));
+    }
+
+    @Test
+    public void testAcceptedRowsAfterRejectedRowsAreDecodedCorrectly() throws Exception{
+        ExecRow[] rows = {
+                row(1,"a",10,1.5d),
+                row(2,"reject",20,2.5d),
+                row(3,"b",null,null),
+                row(null,"c",40,4.5d),
+                row(5,null,50,null),
+                row(6,"reject",null,6.5d),
+                row(7,"d",70,null),
+        };
+        ExecRowAccumulator accumulator = lazyAccumulator();
+        ExecRowAccumulator eager = ExecRowAccumulator.newAccumulator(predicateFilter,false,template,
+                IntArrays.count(template.nColumns()),TABLE_VERSION);
+        int accepted = 0;
+        for(ExecRow row:rows){
+            byte[] data = encode(row);
+            accumulate(accumulator,data);
+            accumulator.decodePending(QUALIFIER_COLUMNS);
+            String qualifierValue = template.getColumn(2).getString();
+            Assert.assertEquals("Incorrect qualifier column",row.getColumn(2).getString(),qualifierValue);
+            if("reject".equals(qualifierValue))
+                continue;
+            accumulator.decodePending(null);
+            assertRow(row);
+            accepted++;
+
+            accumulate(eager,data);
+            assertRow(row);
+        }
+        Assert.assertEquals("Incorrect number of rows accepted",5,accepted);
+    }
+
+    @Test
+    public void testDecodePendingDoesNotDecodeTwice() throws Exception{
+        ExecRowAccumulator accumulator = lazyAccumulator();
+        accumulate(accumulator,encode(row(1,"a",10,1.5d)));
+        accumulator.decodePending(QUALIFIER_COLUMNS);
+        // a column already decoded is not decoded again, so changing it shows whether it was
+        template.getColumn(2).setValue("changed");
+        accumulator.decodePending(null);
+        Assert.assertEquals("changed",template.getColumn(2).getString());
+        Assert.assertEquals(1,template.getColumn(1).getInt());
+        Assert.assertEquals(1.5d,template.getColumn(4).getDouble(),0d);
+    }
+
+    private ExecRowAccumulator lazyAccumulator(){
+        ExecRowAccumulator accumulator = ExecRowAccumulator.newAccumulator(predicateFilter,false,template,
+                IntArrays.count(template.nColumns()),TABLE_VERSION);
+        accumulator.decodeLazily();
+        return accumulator;
+    }
+
+    /**
+     * Accumulate a row as the scanner does, into a template which has been cleared of the previous row.
+     */
+    private void accumulate(ExecRowAccumulator accumulator,byte[] data) throws Exception{
+        template.resetRowArray();
+        accumulator.reset();
+        entryDecoder.set(data);
+        Assert.assertTrue("Row did not match",predicateFilter.match(entryDecoder,accumulator));
+    }
+
+    private void assertRow(ExecRow expected) throws Exception{
+        for(int i=1;i<=expected.nColumns();i++){
+            Assert.assertEquals("Incorrect nullity of column "+i,
+                    expected.getColumn(i).isNull(),template.getColumn(i).isNull());
+            Assert.assertEquals("Incorrect column "+i,expected.getColumn(i).getString(),template.getColumn(i).getString());
+        }
+    }
+
+    private static byte[] encode(ExecRow row) throws Exception{
+        DescriptorSerializer[] serializers = VersionedSerializers.forVersion(TABLE_VERSION,true).getSerializers(row);
+        EntryDataHash hash = new EntryDataHash(IntArrays.count(row.nColumns()),null,serializers);
+        hash.setRow(row);
+        try{
+            return hash.encode();
+        }finally{
+            hash.close();
+        }
+    }
+
+    private static ExecRow row(Integer a,String b,Integer c,Double d) throws Exception{
+        ExecRow row = new ValueRow(4);
+        row.setColumn(1,a==null?new SQLInteger():new SQLInteger(a));
+        row.setColumn(2,new SQLVarchar(b));
+        row.setColumn(3,c==null?new SQLInteger():new SQLInteger(c));
+        row.setColumn(4,d==null?new SQLDouble():new SQLDouble(d));
+        return row;
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.stream.control;
+
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import org.apache.spark.api.java.Optional;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import scala.Tuple2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+@Category(ArchitectureIndependent.class)
+public class ControlPairDataSetTest{
+
+    @Test
+    public void testCogroupKeepsNullValuesOnTheirOwnSide() throws Exception{
+        ControlPairDataSet<Integer,String> left=pairs(
+                new Tuple2<Integer,String>(1,null),new Tuple2<>(1,"a"),new Tuple2<Integer,String>(2,null));
+        ControlPairDataSet<Integer,String> right=pairs(
+                new Tuple2<>(1,"x"),new Tuple2<Integer,String>(3,null));
+
+        Map<Integer,Tuple2<List<String>,List<String>>> groups=new HashMap<>();
+        Iterator<Tuple2<Integer,Tuple2<Iterable<String>,Iterable<String>>>> cogrouped=
+                ((ControlPairDataSet<Integer,Tuple2<Iterable<String>,Iterable<String>>>)left.cogroup(right)).source;
+        while(cogrouped.hasNext()){
+            Tuple2<Integer,Tuple2<Iterable<String>,Iterable<String>>> group=cogrouped.next();
+            groups.put(group._1(),new Tuple2<>(list(group._2()._1()),list(group._2()._2())));
+        }
+        Assert.assertEquals("Incorrect number of groups!",3,groups.size());
+        Assert.assertEquals("Incorrect left values!",Arrays.asList(null,"a"),groups.get(1)._1());
+        Assert.assertEquals("Incorrect right values!",Arrays.asList("x"),groups.get(1)._2());
+        Assert.assertEquals("Null left value not on the left!",Arrays.asList((String)null),groups.get(2)._1());
+        Assert.assertTrue("Null left value on the right!",groups.get(2)._2().isEmpty());
+        Assert.assertTrue("Null right value on the left!",groups.get(3)._1().isEmpty());
+        Assert.assertEquals("Null right value not on the right!",Arrays.asList((String)null),groups.get(3)._2());
+    }
+
+    @Test
+    public void testLeftOuterJoinIsRecorded() throws Exception{
+        ControlOperationContext context=new ControlOperationContext();
+        Iterator<Tuple2<Integer,Tuple2<String,Optional<String>>>> joined=
+                ((ControlPairDataSet<Integer,Tuple2<String,Optional<String>>>)leftRows().hashLeftOuterJoin(rightRows(),context)).source;
+        Assert.assertEquals("Incorrect number of rows!",3,count(joined));
+        Assert.assertEquals("Build rows not recorded!",2,context.getJoinBuildRows());
+        Assert.assertEquals("Probe rows not recorded!",3,context.getJoinProbeRows());
+        Assert.assertEquals("Probe hits not recorded!",1,context.getJoinProbeHits());
+    }
+
+    @Test
+    public void testRightOuterJoinIsRecorded() throws Exception{
+        ControlOperationContext context=new ControlOperationContext();
+        Iterator<Tuple2<Integer,Tuple2<Optional<String>,String>>> joined=
+                ((ControlPairDataSet<Integer,Tuple2<Optional<String>,String>>)leftRows().hashRightOuterJoin(rightRows(),context)).source;
+        Assert.assertEquals("Incorrect number of rows!",2,count(joined));
+        Assert.assertEquals("Build rows not recorded!",3,context.getJoinBuildRows());
+        Assert.assertEquals("Probe rows not recorded!",2,context.getJoinProbeRows());
+        Assert.assertEquals("Probe hits not recorded!",1,context.getJoinProbeHits());
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private ControlPairDataSet<Integer,String> leftRows(){
+        return pairs(new Tuple2<>(1,"a"),new Tuple2<>(2,"b"),new Tuple2<>(3,"c"));
+    }
+
+    private ControlPairDataSet<Integer,String> rightRows(){
+        return pairs(new Tuple2<>(1,"x"),new Tuple2<>(4,"y"));
+    }
+
+    @SafeVarargs
+    private static ControlPairDataSet<Integer,String> pairs(Tuple2<Integer,String>... pairs){
+        return new ControlPairDataSet<>(Arrays.asList(pairs).iterator());
+    }
+
+    private static List<String> list(Iterable<String> values){
+        List<String> list=new ArrayList<>();
+        for(String value : values){
+            list.add(value);
+        }
+        return list;
+    }
+
+    private static int count(Iterator<?> iterator){
+        int count=0;
+        while(iterator.hasNext()){
+            iterator.next();
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.stream.control.spill;
+
+import com.splicemachine.derby.stream.control.ControlOperationContext;
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+import scala.Tuple2;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+@Category(ArchitectureIndependent.class)
+public class ExternalSorterTest{
+    private static final Comparator<Integer> NATURAL=new Comparator<Integer>(){
+        @Override
+        public int compare(Integer o1,Integer o2){
+            return o1.compareTo(o2);
+        }
+    };
+
+    @Rule
+    public TemporaryFolder temporaryFolder=new TemporaryFolder();
+
+    @Test
+    public void testSortsInMemoryWithoutSpilling() throws Exception{
+        File spillDirectory=temporaryFolder.newFolder();
+        ControlOperationContext context=new ControlOperationContext();
+        ExternalSorter<Integer,Integer> sorter=new ExternalSorter<>(NATURAL,Long.MAX_VALUE,spillDirectory,context);
+        assertSorted(sorter.sort(randomPairs(1000).iterator()),1000);
+        Assert.assertEquals("Sort spilled!",0,context.getSpilledRuns());
+        Assert.assertEquals("Spill files were written!",0,spillDirectory.list().length);
+    }
+
+    @Test
+    public void testSpillsAndMergesRuns() throws Exception{
+        File spillDirectory=temporaryFolder.newFolder();
+        ControlOperationContext context=new ControlOperationContext();
+        //room for a few dozen pairs at a time
+        ExternalSorter<Integer,Integer> sorter=new ExternalSorter<>(NATURAL,4096,spillDirectory,context);
+        Iterator<Tuple2<Integer,Integer>> sorted=sorter.sort(randomPairs(1000).iterator());
+        Assert.assertTrue("Sort did not spill!",context.getSpilledRuns()>1);
+        Assert.assertTrue("Spilled bytes not recorded!",context.getSpilledBytes()>0);
+        Assert.assertEquals("Runs were not removed once opened!",0,spillDirectory.list().length);
+        assertSorted(sorted,1000);
+    }
+
+    @Test
+    public void testMergesMoreRunsThanTheMergeWidth() throws Exception{
+        File spillDirectory=temporaryFolder.newFolder();
+        ControlOperationContext context=new ControlOperationContext();
+        //every pair is a run of its own
+        ExternalSorter<Integer,Integer> sorter=new ExternalSorter<>(NATURAL,1,spillDirectory,context);
+        int numPairs=3*ExternalSorter.MAX_MERGE_WIDTH+5;
+        Iterator<Tuple2<Integer,Integer>> sorted=sorter.sort(randomPairs(numPairs).iterator());
+        Assert.assertTrue("Runs were not merged before the final merge!",context.getSpilledRuns()>numPairs);
+        Assert.assertEquals("Runs were not removed once opened!",0,spillDirectory.list().length);
+        assertSorted(sorted,numPairs);
+    }
+
+    /*
+     * Keys are drawn from a small range so that there are many duplicates, and each value
+     * is the position of its pair in the input, so that stability can be checked.
+     */
+    private static List<Tuple2<Integer,Integer>> randomPairs(int count){
+        Random random=new Random(count);
+        List<Tuple2<Integer,Integer>> pairs=new ArrayList<>(count);
+        for(int i=0;i<count;i++){
+            pairs.add(new Tuple2<>(random.nextInt(count/10+1),i));
+        }
+        return pairs;
+    }
+
+    private static void assertSorted(Iterator<Tuple2<Integer,Integer>> sorted,int expectedCount){
+        int count=0;
+        Tuple2<Integer,Integer> previous=null;
+        while(sorted.hasNext()){
+            Tuple2<Integer,Integer> next=sorted.next();
+            if(previous!=null){
+                Assert.assertTrue("Pairs out of order!",previous._1()<=next._1());
+                if(previous._1().equals(next._1()))
+                    Assert.assertTrue("Sort is not stable!",previous._2()<next._2());
+            }
+            previous=next;
+            count++;
+        }
+        Assert.assertEquals("Incorrect number of pairs!",expectedCount,count);
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.stream.control.spill;
+
+import com.splicemachine.derby.stream.control.ControlOperationContext;
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+import scala.Tuple2;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+@Category(ArchitectureIndependent.class)
+public class GraceHashJoinTest{
+
+    @Rule
+    public TemporaryFolder temporaryFolder=new TemporaryFolder();
+
+    @Test
+    public void testJoinsInMemoryWithoutSpilling() throws Exception{
+        File spillDirectory=temporaryFolder.newFolder();
+        ControlOperationContext context=new ControlOperationContext();
+        List<Tuple2<Integer,Integer>> build=randomPairs(1000,200,0);
+        List<Tuple2<Integer,Integer>> probe=randomPairs(2000,400,1);
+        GraceHashJoin<Integer,Integer,Integer> join=new GraceHashJoin<>(Long.MAX_VALUE,spillDirectory,context);
+        List<String> joined=drain(join.join(build.iterator(),probe.iterator()));
+        Assert.assertEquals("Incorrect join!",nestedLoopJoin(build,probe),joined);
+        Assert.assertEquals("Join spilled!",0,context.getSpilledRuns());
+        Assert.assertEquals("Spill files were written!",0,spillDirectory.list().length);
+        Assert.assertEquals("Build rows not recorded!",build.size(),context.getJoinBuildRows());
+        Assert.assertEquals("Probe rows not recorded!",probe.size(),context.getJoinProbeRows());
+        Assert.assertTrue("Probe hits not recorded!",context.getJoinProbeHits()>0 && context.getJoinProbeHits()<probe.size());
+    }
+
+    @Test
+    public void testSpilledPartitionsAreJoined() throws Exception{
+        File spillDirectory=temporaryFolder.newFolder();
+        ControlOperationContext context=new ControlOperationContext();
+        List<Tuple2<Integer,Integer>> build=randomPairs(5000,2000,0);
+        List<Tuple2<Integer,Integer>> probe=randomPairs(5000,4000,1);
+        //room for a few dozen build rows at a time, so that partitions have to be partitioned again
+        GraceHashJoin<Integer,Integer,Integer> join=new GraceHashJoin<>(8192,spillDirectory,context);
+        Iterator<Tuple2<Tuple2<Integer,Integer>,Iterable<Integer>>> joined=join.join(build.iterator(),probe.iterator());
+        Assert.assertTrue("Join did not spill!",spillDirectory.list().length>0);
+        List<String> result=drain(joined);
+        Assert.assertEquals("Incorrect join!",nestedLoopJoin(build,probe),result);
+        Assert.assertTrue("Spilled bytes not recorded!",context.getSpilledBytes()>0);
+        Assert.assertTrue("Partitions were not re-partitioned!",context.getSpilledRuns()>2*GraceHashJoin.NUM_PARTITIONS);
+        Assert.assertEquals("Every probe row was not recorded!",probe.size(),context.getJoinProbeRows());
+        Assert.assertEquals("Spill files were not removed!",0,spillDirectory.list().length);
+    }
+
+    @Test
+    public void testUnmatchedProbeRowsAreReturned() throws Exception{
+        List<Tuple2<Integer,Integer>> build=randomPairs(500,100,0);
+        List<Tuple2<Integer,Integer>> probe=randomPairs(500,1000,1);
+        GraceHashJoin<Integer,Integer,Integer> join=new GraceHashJoin<>(1024,temporaryFolder.newFolder(),null);
+        Set<Integer> buildKeys=new HashSet<>();
+        for(Tuple2<Integer,Integer> pair:build){
+            buildKeys.add(pair._1());
+        }
+        Iterator<Tuple2<Tuple2<Integer,Integer>,Iterable<Integer>>> joined=join.join(build.iterator(),probe.iterator());
+        int count=0;
+        int unmatched=0;
+        while(joined.hasNext()){
+            Tuple2<Tuple2<Integer,Integer>,Iterable<Integer>> next=joined.next();
+            if(!next._2().iterator().hasNext()){
+                Assert.assertFalse("Matching row returned as unmatched!",buildKeys.contains(next._1()._1()));
+                unmatched++;
+            }
+            count++;
+        }
+        Assert.assertEquals("Incorrect number of probe rows!",probe.size(),count);
+        Assert.assertTrue("No unmatched rows!",unmatched>0);
+    }
+
+    private static List<Tuple2<Integer,Integer>> randomPairs(int count,int numKeys,int seed){
+        Random random=new Random(seed);
+        List<Tuple2<Integer,Integer>> pairs=new ArrayList<>(count);
+        for(int i=0;i<count;i++){
+            pairs.add(new Tuple2<>(random.nextInt(numKeys),i));
+        }
+        return pairs;
+    }
+
+    private static List<String> nestedLoopJoin(List<Tuple2<Integer,Integer>> build,List<Tuple2<Integer,Integer>> probe){
+        List<String> result=new ArrayList<>();
+        for(Tuple2<Integer,Integer> p:probe){
+            for(Tuple2<Integer,Integer> b:build){
+                if(p._1().equals(b._1()))
+                    result.add(p._1()+":"+p._2()+":"+b._2());
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    private static List<String> drain(Iterator<Tuple2<Tuple2<Integer,Integer>,Iterable<Integer>>> joined){
+        List<String> result=new ArrayList<>();
+        while(joined.hasNext()){
+            Tuple2<Tuple2<Integer,Integer>,Iterable<Integer>> next=joined.next();
+            for(Integer value:next._2()){
+                result.add(next._1()._1()+":"+next._1()._2()+":"+value);
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.stream.control.spill;
+
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+@Category(ArchitectureIndependent.class)
+public class LoserTreeTest{
+    private static final Comparator<Integer> NATURAL=new Comparator<Integer>(){
+        @Override
+        public int compare(Integer o1,Integer o2){
+            return o1.compareTo(o2);
+        }
+    };
+
+    @Test
+    public void testMergesAnyNumberOfSources() throws Exception{
+        Random random=new Random(0l);
+        for(int k=0;k<=17;k++){
+            List<Integer> expected=new ArrayList<>();
+            List<Iterator<Integer>> sources=new ArrayList<>();
+            for(int s=0;s<k;s++){
+                List<Integer> source=new ArrayList<>();
+                int size=random.nextInt(20); //some sources are empty
+                for(int i=0;i<size;i++){
+                    source.add(random.nextInt(50));
+                }
+                Collections.sort(source);
+                expected.addAll(source);
+                sources.add(source.iterator());
+            }
+            Collections.sort(expected);
+            Assert.assertEquals("Incorrect merge of "+k+" sources!",expected,drain(new LoserTree<>(sources,NATURAL)));
+        }
+    }
+
+    @Test
+    public void testMergeIsStable() throws Exception{
+        //compare only on the tens digit, and tag each element with its source in the ones digit
+        Comparator<Integer> tens=new Comparator<Integer>(){
+            @Override
+            public int compare(Integer o1,Integer o2){
+                return Integer.compare(o1/10,o2/10);
+            }
+        };
+        List<Iterator<Integer>> sources=new ArrayList<>();
+        sources.add(Arrays.asList(10,20,20,30).iterator());
+        sources.add(Arrays.asList(11,21).iterator());
+        sources.add(Arrays.asList(2,12,22,32).iterator());
+        List<Integer> merged=drain(new LoserTree<>(sources,tens));
+        Assert.assertEquals("Merge is not stable!",Arrays.asList(2,10,11,12,20,20,21,22,30,32),merged);
+    }
+
+    private static List<Integer> drain(Iterator<Integer> iterator){
+        List<Integer> result=new ArrayList<>();
+        while(iterator.hasNext()){
+            result.add(iterator.next());
+        }
+        return result;
+    }
+}
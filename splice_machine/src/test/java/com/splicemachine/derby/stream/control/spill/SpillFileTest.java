@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.stream.control.spill;
+
+import com.splicemachine.derby.iapi.sql.execute.SpliceOperation;
+import com.splicemachine.derby.stream.iapi.OperationContext;
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+import scala.Tuple2;
+
+import java.io.File;
+import java.util.Iterator;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@Category(ArchitectureIndependent.class)
+public class SpillFileTest{
+
+    @Rule
+    public TemporaryFolder temporaryFolder=new TemporaryFolder();
+
+    @Test
+    public void testAbandonedReaderIsClosedWithItsOperation() throws Exception{
+        File spillDirectory=temporaryFolder.newFolder();
+        SpliceOperation operation=mock(SpliceOperation.class);
+        SpillFile<Integer,String> file=spillFile(spillDirectory,100);
+
+        Iterator<Tuple2<Integer,String>> reader=file.open(context(operation));
+        Assert.assertEquals("Incorrect first pair!",new Tuple2<>(0,"0"),reader.next());
+        Assert.assertEquals("Spill file was not unlinked!",0,spillDirectory.list().length);
+
+        ArgumentCaptor<AutoCloseable> closeable=ArgumentCaptor.forClass(AutoCloseable.class);
+        verify(operation).registerCloseable(closeable.capture());
+        closeable.getValue().close();
+        Assert.assertFalse("Reader still open once its operation closed!",reader.hasNext());
+    }
+
+    @Test
+    public void testReaderOfEmptyFileIsNotRegistered() throws Exception{
+        SpliceOperation operation=mock(SpliceOperation.class);
+        SpillFile<Integer,String> file=spillFile(temporaryFolder.newFolder(),0);
+
+        Iterator<Tuple2<Integer,String>> reader=file.open(context(operation));
+        Assert.assertFalse("Empty file returned pairs!",reader.hasNext());
+        verify(operation,never()).registerCloseable(any(AutoCloseable.class));
+    }
+
+    @Test
+    public void testFileIsReadWithoutAnOperation() throws Exception{
+        SpillFile<Integer,String> file=spillFile(temporaryFolder.newFolder(),3000);
+
+        Iterator<Tuple2<Integer,String>> reader=file.open(null);
+        int count=0;
+        while(reader.hasNext()){
+            Tuple2<Integer,String> pair=reader.next();
+            Assert.assertEquals("Pairs out of order!",count,pair._1().intValue());
+            Assert.assertEquals("Incorrect value!",Integer.toString(count),pair._2());
+            count++;
+        }
+        Assert.assertEquals("Incorrect number of pairs!",3000,count);
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private SpillFile<Integer,String> spillFile(File directory,int numPairs) throws Exception{
+        SpillFile<Integer,String> file=SpillFile.create(directory,"spill-file-test-");
+        for(int i=0;i<numPairs;i++){
+            file.write(i,Integer.toString(i));
+        }
+        file.finish();
+        return file;
+    }
+
+    private OperationContext context(SpliceOperation operation){
+        OperationContext context=mock(OperationContext.class);
+        when(context.getOperation()).thenReturn(operation);
+        return context;
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.stream.control.spill;
+
+import com.splicemachine.db.iapi.services.cache.ClassSize;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
+import com.splicemachine.db.impl.sql.execute.ValueRow;
+import com.splicemachine.derby.stream.control.ControlOperationContext;
+import com.splicemachine.derby.utils.test.TestingDataType;
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+@Category(ArchitectureIndependent.class)
+public class SpillableDistinctTest{
+
+    @Rule
+    public TemporaryFolder temporaryFolder=new TemporaryFolder();
+
+    @BeforeClass
+    public static void setUpClass() throws Exception{
+        ClassSize.setDummyCatalog();
+    }
+
+    @Test
+    public void testRemovesDuplicatesInMemoryWithoutSpilling() throws Exception{
+        File spillDirectory=temporaryFolder.newFolder();
+        ControlOperationContext context=new ControlOperationContext();
+        List<ExecRow> rows=randomRows(5000,300);
+        SpillableDistinct<ExecRow> distinct=new SpillableDistinct<>(Long.MAX_VALUE,spillDirectory,context);
+        Assert.assertEquals("Incorrect distinct rows!",new HashSet<>(rows),drain(distinct.distinct(rows.iterator())));
+        Assert.assertEquals("Distinct spilled!",0,context.getSpilledRuns());
+        Assert.assertEquals("Spill files were written!",0,spillDirectory.list().length);
+    }
+
+    @Test
+    public void testReturnsRowsAsSoonAsTheyAreSeen() throws Exception{
+        List<ExecRow> rows=Arrays.asList(row(1,"a"),row(2,"b"),row(1,"a"),row(3,null),row(2,"b"),row(3,null));
+        Iterator<ExecRow> distinct=new SpillableDistinct<ExecRow>(Long.MAX_VALUE,null,null).distinct(rows.iterator());
+        Assert.assertEquals(rows.get(0),distinct.next());
+        Assert.assertEquals(rows.get(1),distinct.next());
+        Assert.assertEquals("Null column not distinct from the other rows!",rows.get(3),distinct.next());
+        Assert.assertFalse("Duplicate rows returned!",distinct.hasNext());
+    }
+
+    @Test
+    public void testSpilledPartitionsAreMadeDistinct() throws Exception{
+        File spillDirectory=temporaryFolder.newFolder();
+        ControlOperationContext context=new ControlOperationContext();
+        List<ExecRow> rows=randomRows(20000,4000);
+        //room for a hundred or so rows at a time, so that partitions have to be partitioned again
+        SpillableDistinct<ExecRow> distinct=new SpillableDistinct<>(8192,spillDirectory,context);
+        Assert.assertEquals("Incorrect distinct rows!",new HashSet<>(rows),drain(distinct.distinct(rows.iterator())));
+        Assert.assertTrue("Distinct did not spill!",context.getSpilledRuns()>0);
+        Assert.assertTrue("Spilled bytes not recorded!",context.getSpilledBytes()>0);
+        Assert.assertEquals("Spill files were not removed!",0,spillDirectory.list().length);
+    }
+
+    @Test
+    public void testCharsDifferingOnlyInTrailingBlanksAreNotDistinct() throws Exception{
+        List<ExecRow> rows=Arrays.asList(row(TestingDataType.CHAR,"a"),row(TestingDataType.CHAR,"a   "),
+                row(TestingDataType.CHAR,"a "),row(TestingDataType.CHAR," a"));
+        Iterator<ExecRow> distinct=new SpillableDistinct<ExecRow>(Long.MAX_VALUE,null,null).distinct(rows.iterator());
+        Assert.assertEquals(rows.get(0),distinct.next());
+        Assert.assertEquals("Leading blanks ignored!",rows.get(3),distinct.next());
+        Assert.assertFalse("Rows differing only in trailing blanks returned!",distinct.hasNext());
+    }
+
+    @Test
+    public void testVarcharsDifferingOnlyInTrailingBlanksAreNotDistinct() throws Exception{
+        List<ExecRow> rows=Arrays.asList(row(TestingDataType.VARCHAR,"b  "),row(TestingDataType.VARCHAR,"b"),
+                row(TestingDataType.VARCHAR,"   "),row(TestingDataType.VARCHAR,""));
+        Iterator<ExecRow> distinct=new SpillableDistinct<ExecRow>(Long.MAX_VALUE,null,null).distinct(rows.iterator());
+        Assert.assertEquals(rows.get(0),distinct.next());
+        Assert.assertEquals(rows.get(2),distinct.next());
+        Assert.assertFalse("Rows differing only in trailing blanks returned!",distinct.hasNext());
+        Assert.assertEquals("Returned row was changed!","b  ",rows.get(0).getColumn(2).getString());
+    }
+
+    @Test
+    public void testPaddedCharsAreNotDistinctOnceSpilled() throws Exception{
+        File spillDirectory=temporaryFolder.newFolder();
+        ControlOperationContext context=new ControlOperationContext();
+        Random random=new Random(20000);
+        List<ExecRow> rows=new ArrayList<>(20000);
+        Set<String> values=new HashSet<>();
+        for(int i=0;i<20000;i++){
+            String value="row "+random.nextInt(4000);
+            values.add(value);
+            char[] padding=new char[random.nextInt(4)];
+            Arrays.fill(padding,' ');
+            rows.add(row(TestingDataType.CHAR,value+new String(padding)));
+        }
+        SpillableDistinct<ExecRow> distinct=new SpillableDistinct<>(8192,spillDirectory,context);
+        Set<String> distinctValues=new HashSet<>();
+        Iterator<ExecRow> it=distinct.distinct(rows.iterator());
+        while(it.hasNext()){
+            Assert.assertTrue("Padded value returned twice!",distinctValues.add(it.next().getColumn(2).getString().trim()));
+        }
+        Assert.assertEquals("Incorrect distinct values!",values,distinctValues);
+        Assert.assertTrue("Distinct did not spill!",context.getSpilledRuns()>0);
+    }
+
+    private static List<ExecRow> randomRows(int count,int numDistinct) throws Exception{
+        Random random=new Random(count);
+        List<ExecRow> rows=new ArrayList<>(count);
+        for(int i=0;i<count;i++){
+            int value=random.nextInt(numDistinct);
+            rows.add(row(value,"row "+value));
+        }
+        return rows;
+    }
+
+    private static ExecRow row(int value,String name) throws Exception{
+        ValueRow row=new ValueRow(2);
+        DataValueDescriptor dvd=TestingDataType.INTEGER.getDataValueDescriptor();
+        dvd.setValue(value);
+        DataValueDescriptor dvd2=TestingDataType.VARCHAR.getDataValueDescriptor();
+        dvd2.setValue(name);
+        row.setColumn(1,dvd);
+        row.setColumn(2,dvd2);
+        return row;
+    }
+
+    /**
+     * A row of a constant and a string of the given type.
+     */
+    private static ExecRow row(TestingDataType stringType,String string) throws Exception{
+        ValueRow row=new ValueRow(2);
+        DataValueDescriptor dvd=TestingDataType.INTEGER.getDataValueDescriptor();
+        dvd.setValue(1);
+        DataValueDescriptor dvd2=stringType.getDataValueDescriptor();
+        dvd2.setValue(string);
+        row.setColumn(1,dvd);
+        row.setColumn(2,dvd2);
+        return row;
+    }
+
+    private static Set<ExecRow> drain(Iterator<ExecRow> distinct){
+        Set<ExecRow> result=new HashSet<>();
+        while(distinct.hasNext()){
+            Assert.assertTrue("Row returned twice!",result.add(distinct.next()));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.stream.control.spill;
+
+import com.splicemachine.derby.stream.control.ControlOperationContext;
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+import scala.Tuple2;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+@Category(ArchitectureIndependent.class)
+public class SpillableHashAggregatorTest{
+    private static final SpillableHashAggregator.Combiner<Long,Long> SUM=new SpillableHashAggregator.Combiner<Long,Long>(){
+        @Override public Long createCombiner(Long value){ return value; }
+        @Override public Long mergeValue(Long combined,Long value){ return combined+value; }
+        @Override public Long mergeCombiners(Long combined,Long other){ return combined+other; }
+        @Override public boolean keepsValues(){ return false; }
+    };
+
+    private static final SpillableHashAggregator.Combiner<Long,ArrayList<Long>> COLLECT=new SpillableHashAggregator.Combiner<Long,ArrayList<Long>>(){
+        @Override
+        public ArrayList<Long> createCombiner(Long value){
+            ArrayList<Long> values=new ArrayList<>();
+            values.add(value);
+            return values;
+        }
+        @Override
+        public ArrayList<Long> mergeValue(ArrayList<Long> combined,Long value){
+            combined.add(value);
+            return combined;
+        }
+        @Override
+        public ArrayList<Long> mergeCombiners(ArrayList<Long> combined,ArrayList<Long> other){
+            combined.addAll(other);
+            return combined;
+        }
+        @Override public boolean keepsValues(){ return true; }
+    };
+
+    @Rule
+    public TemporaryFolder temporaryFolder=new TemporaryFolder();
+
+    @Test
+    public void testAggregatesInMemoryWithoutSpilling() throws Exception{
+        File spillDirectory=temporaryFolder.newFolder();
+        ControlOperationContext context=new ControlOperationContext();
+        List<Tuple2<Integer,Long>> pairs=randomPairs(5000,100);
+        SpillableHashAggregator<Integer,Long,Long> aggregator=new SpillableHashAggregator<>(SUM,Long.MAX_VALUE,spillDirectory,context);
+        Assert.assertEquals("Incorrect sums!",sums(pairs),drain(aggregator.aggregate(pairs.iterator())));
+        Assert.assertEquals("Aggregation spilled!",0,context.getSpilledRuns());
+        Assert.assertEquals("Spill files were written!",0,spillDirectory.list().length);
+    }
+
+    @Test
+    public void testSpilledPartitionsAreReaggregated() throws Exception{
+        File spillDirectory=temporaryFolder.newFolder();
+        ControlOperationContext context=new ControlOperationContext();
+        List<Tuple2<Integer,Long>> pairs=randomPairs(20000,2000);
+        //room for a few dozen groups at a time, so that partitions have to be partitioned again
+        SpillableHashAggregator<Integer,Long,Long> aggregator=new SpillableHashAggregator<>(SUM,8192,spillDirectory,context);
+        Iterator<Tuple2<Integer,Long>> groups=aggregator.aggregate(pairs.iterator());
+        Assert.assertTrue("Aggregation did not spill!",context.getSpilledRuns()>0);
+        Assert.assertTrue("Spilled bytes not recorded!",context.getSpilledBytes()>0);
+        Assert.assertEquals("Incorrect sums!",sums(pairs),drain(groups));
+        Assert.assertTrue("Partitions were not re-partitioned!",context.getSpilledRuns()>SpillableHashAggregator.NUM_PARTITIONS);
+        Assert.assertEquals("Spill files were not removed!",0,spillDirectory.list().length);
+    }
+
+    @Test
+    public void testGroupsKeepEveryValue() throws Exception{
+        File spillDirectory=temporaryFolder.newFolder();
+        List<Tuple2<Integer,Long>> pairs=randomPairs(5000,300);
+        SpillableHashAggregator<Integer,Long,ArrayList<Long>> aggregator=new SpillableHashAggregator<>(COLLECT,4096,spillDirectory,null);
+        Iterator<Tuple2<Integer,ArrayList<Long>>> groups=aggregator.aggregate(pairs.iterator());
+        Map<Integer,Long> sums=new HashMap<>();
+        int values=0;
+        while(groups.hasNext()){
+            Tuple2<Integer,ArrayList<Long>> group=groups.next();
+            long sum=0l;
+            for(Long value:group._2()){
+                sum+=value;
+                values++;
+            }
+            Assert.assertNull("Key returned twice!",sums.put(group._1(),sum));
+        }
+        Assert.assertEquals("Incorrect number of values!",pairs.size(),values);
+        Assert.assertEquals("Incorrect groups!",sums(pairs),sums);
+    }
+
+    private static List<Tuple2<Integer,Long>> randomPairs(int count,int numKeys){
+        Random random=new Random(count);
+        List<Tuple2<Integer,Long>> pairs=new ArrayList<>(count);
+        for(int i=0;i<count;i++){
+            pairs.add(new Tuple2<>(random.nextInt(numKeys),(long)random.nextInt(1000)));
+        }
+        return pairs;
+    }
+
+    private static Map<Integer,Long> sums(List<Tuple2<Integer,Long>> pairs){
+        Map<Integer,Long> sums=new HashMap<>();
+        for(Tuple2<Integer,Long> pair:pairs){
+            Long sum=sums.get(pair._1());
+            sums.put(pair._1(),sum==null?pair._2():sum+pair._2());
+        }
+        return sums;
+    }
+
+    private static Map<Integer,Long> drain(Iterator<Tuple2<Integer,Long>> groups){
+        Map<Integer,Long> result=new HashMap<>();
+        while(groups.hasNext()){
+            Tuple2<Integer,Long> group=groups.next();
+            Assert.assertNull("Key returned twice!",result.put(group._1(),group._2()));
+        }
+        return result;
+    }
+}
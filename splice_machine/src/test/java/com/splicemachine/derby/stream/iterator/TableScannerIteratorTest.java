@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.stream.iterator;
+
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.types.SQLInteger;
+import com.splicemachine.db.impl.sql.execute.ValueRow;
+import com.splicemachine.derby.impl.sql.execute.operations.ScanOperation;
+import com.splicemachine.derby.impl.sql.execute.operations.iapi.OperationInformation;
+import com.splicemachine.derby.impl.sql.execute.operations.iapi.ScanInformation;
+import com.splicemachine.derby.impl.sql.execute.operations.scanner.SITableScanner;
+import com.splicemachine.derby.impl.sql.execute.operations.scanner.TableScannerBuilder;
+import com.splicemachine.derby.stream.control.ControlOperationContext;
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Arrays;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@Category(ArchitectureIndependent.class)
+public class TableScannerIteratorTest{
+
+    @Test
+    public void testDecodedRowsAreRecordedWhenTheScanEnds() throws Exception{
+        ControlOperationContext context=new ControlOperationContext();
+        SITableScanner scanner=scanner(2,2,100);
+        TableScannerIterator iterator=new TableScannerIterator(builder(scanner),scanOperation(context));
+
+        int rows=0;
+        while(iterator.hasNext()){
+            iterator.next();
+            rows++;
+        }
+        Assert.assertEquals("Incorrect number of rows!",2,rows);
+        Assert.assertEquals("Decoded rows not recorded!",2,context.getRowsDecoded());
+        Assert.assertEquals("Decoded bytes not recorded!",100,context.getBytesDecoded());
+
+        iterator.close();
+        Assert.assertEquals("Decoded rows recorded twice!",2,context.getRowsDecoded());
+        Assert.assertEquals("Decoded bytes recorded twice!",100,context.getBytesDecoded());
+    }
+
+    @Test
+    public void testDecodedRowsAreRecordedWhenTheOperationCloses() throws Exception{
+        ControlOperationContext context=new ControlOperationContext();
+        SITableScanner scanner=scanner(10,1,40);
+        ScanOperation operation=scanOperation(context);
+        TableScannerIterator iterator=new TableScannerIterator(builder(scanner),operation);
+
+        Assert.assertTrue("No rows returned!",iterator.hasNext());
+        iterator.next();
+        Assert.assertEquals("Decoded rows recorded before the scan was closed!",0,context.getRowsDecoded());
+
+        //the scan is abandoned, and closed along with its operation
+        ArgumentCaptor<AutoCloseable> closeable=ArgumentCaptor.forClass(AutoCloseable.class);
+        verify(operation).registerCloseable(closeable.capture());
+        closeable.getValue().close();
+        Assert.assertEquals("Decoded rows not recorded!",1,context.getRowsDecoded());
+        Assert.assertEquals("Decoded bytes not recorded!",40,context.getBytesDecoded());
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private SITableScanner scanner(int numRows,long rowsDecoded,long bytesDecoded) throws Exception{
+        //the rows of the scan, followed by the null which ends it
+        ExecRow[] rows=new ExecRow[numRows+1];
+        for(int i=0;i<numRows;i++){
+            rows[i]=new ValueRow(1);
+            rows[i].setColumn(1,new SQLInteger(i));
+        }
+        SITableScanner scanner=mock(SITableScanner.class);
+        when(scanner.next()).thenReturn(rows[0],Arrays.copyOfRange(rows,1,rows.length));
+        when(scanner.getRowsDecoded()).thenReturn(rowsDecoded);
+        when(scanner.getBytesDecoded()).thenReturn(bytesDecoded);
+        return scanner;
+    }
+
+    private TableScannerBuilder builder(SITableScanner scanner) throws Exception{
+        TableScannerBuilder builder=mock(TableScannerBuilder.class);
+        when(builder.build()).thenReturn(scanner);
+        return builder;
+    }
+
+    private ScanOperation scanOperation(ControlOperationContext context){
+        ScanOperation operation=mock(ScanOperation.class);
+        when(operation.getScanInformation()).thenReturn(mock(ScanInformation.class));
+        when(operation.getOperationInformation()).thenReturn(mock(OperationInformation.class));
+        when(operation.getOperationContext()).thenReturn(context);
+        return operation;
+    }
+}
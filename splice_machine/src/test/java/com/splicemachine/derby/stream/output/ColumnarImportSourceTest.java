@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.stream.output;
+
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.store.access.Qualifier;
+import com.splicemachine.db.iapi.types.SQLInteger;
+import com.splicemachine.db.iapi.types.SQLVarchar;
+import com.splicemachine.db.impl.sql.execute.ValueRow;
+import com.splicemachine.derby.impl.sql.execute.operations.NormalizeOperation;
+import com.splicemachine.derby.impl.sql.execute.operations.ProjectRestrictOperation;
+import com.splicemachine.derby.impl.sql.execute.operations.TableScanOperation;
+import com.splicemachine.derby.impl.sql.execute.operations.iapi.ScanInformation;
+import com.splicemachine.derby.iapi.sql.execute.SpliceOperation;
+import com.splicemachine.derby.stream.iapi.DataSetProcessor;
+import com.splicemachine.derby.stream.iapi.OperationContext;
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests which insert sources {@link ColumnarImportSource#forInsert} recognises as a plain copy of Parquet or ORC
+ * files, and how it maps their columns.
+ */
+@Category(ArchitectureIndependent.class)
+public class ColumnarImportSourceTest{
+    private TableScanOperation scan;
+    private ScanInformation<ExecRow> scanInformation;
+    private DataSetProcessor dsp;
+    private ExecRow scanRow;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception{
+        scanRow = new ValueRow(3);
+        scanRow.setColumn(1,new SQLInteger());
+        scanRow.setColumn(2,new SQLVarchar());
+        scanRow.setColumn(3,new SQLInteger());
+
+        scanInformation = mock(ScanInformation.class);
+        scan = mock(TableScanOperation.class);
+        when(scan.getStoredAs()).thenReturn("P");
+        when(scan.getLocation()).thenReturn("/tmp/external");
+        when(scan.isPinned()).thenReturn(false);
+        when(scan.getScanInformation()).thenReturn(scanInformation);
+        when(scan.getExecRowDefinition()).thenReturn(scanRow);
+        when(scan.getBaseColumnMap()).thenReturn(new int[]{0,1,2});
+        dsp = mock(DataSetProcessor.class);
+    }
+
+    @Test
+    public void testPlainScan() throws Exception{
+        ColumnarImportSource source = ColumnarImportSource.forInsert(scan,dsp);
+        Assert.assertNotNull(source);
+        Assert.assertTrue(source.isParquet());
+        Assert.assertEquals("/tmp/external",source.getLocation());
+        Assert.assertSame(scanRow,source.getScanRow());
+        Assert.assertArrayEquals(new int[]{1,2,3},source.getColumnMap());
+        Assert.assertArrayEquals(new int[]{0,1,2},source.getBaseColumnMap());
+        Assert.assertNull(source.getNormalizeContext());
+    }
+
+    @Test
+    public void testOrcScan() throws Exception{
+        when(scan.getStoredAs()).thenReturn("o");
+        ColumnarImportSource source = ColumnarImportSource.forInsert(scan,dsp);
+        Assert.assertNotNull(source);
+        Assert.assertFalse(source.isParquet());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testNormalizeOverScan() throws Exception{
+        NormalizeOperation normalize = mock(NormalizeOperation.class);
+        when(normalize.getLeftOperation()).thenReturn((SpliceOperation)scan);
+        OperationContext<NormalizeOperation> context = mock(OperationContext.class);
+        when(dsp.createOperationContext(normalize)).thenReturn(context);
+
+        ColumnarImportSource source = ColumnarImportSource.forInsert(normalize,dsp);
+        Assert.assertNotNull(source);
+        Assert.assertSame(context,source.getNormalizeContext());
+        Assert.assertArrayEquals(new int[]{1,2,3},source.getColumnMap());
+    }
+
+    @Test
+    public void testNativeTableIsNotColumnar() throws Exception{
+        when(scan.getStoredAs()).thenReturn(null);
+        Assert.assertNull(ColumnarImportSource.forInsert(scan,dsp));
+    }
+
+    @Test
+    public void testTextTableIsNotColumnar() throws Exception{
+        when(scan.getStoredAs()).thenReturn("T");
+        Assert.assertNull(ColumnarImportSource.forInsert(scan,dsp));
+    }
+
+    @Test
+    public void testMissingLocationIsNotColumnar() throws Exception{
+        when(scan.getLocation()).thenReturn(null);
+        Assert.assertNull(ColumnarImportSource.forInsert(scan,dsp));
+    }
+
+    @Test
+    public void testPinnedTableIsNotColumnar() throws Exception{
+        when(scan.isPinned()).thenReturn(true);
+        Assert.assertNull(ColumnarImportSource.forInsert(scan,dsp));
+    }
+
+    @Test
+    public void testScanWithQualifiersIsNotColumnar() throws Exception{
+        when(scanInformation.getScanQualifiers()).thenReturn(new Qualifier[1][]);
+        Assert.assertNull(ColumnarImportSource.forInsert(scan,dsp));
+    }
+
+    @Test
+    public void testScanWithEmptyQualifiers() throws Exception{
+        when(scanInformation.getScanQualifiers()).thenReturn(new Qualifier[0][]);
+        Assert.assertNotNull(ColumnarImportSource.forInsert(scan,dsp));
+    }
+
+    @Test
+    public void testProjectRestrictWithRestrictionOrProjection() throws Exception{
+        // onlyMapsColumns() is false as soon as a ProjectRestrict has a restriction, a constant restriction
+        // or a projection
+        ProjectRestrictOperation projectRestrict = projectRestrict(scan,new int[]{1,2,3});
+        when(projectRestrict.onlyMapsColumns()).thenReturn(false);
+        Assert.assertNull(ColumnarImportSource.forInsert(projectRestrict,dsp));
+
+        NormalizeOperation normalize = mock(NormalizeOperation.class);
+        when(normalize.getLeftOperation()).thenReturn((SpliceOperation)projectRestrict);
+        Assert.assertNull(ColumnarImportSource.forInsert(normalize,dsp));
+    }
+
+    @Test
+    public void testProjectRestrictOverOtherOperation() throws Exception{
+        ProjectRestrictOperation projectRestrict = projectRestrict(mock(NormalizeOperation.class),new int[]{1});
+        Assert.assertNull(ColumnarImportSource.forInsert(projectRestrict,dsp));
+    }
+
+    @Test
+    public void testProjectRestrictMapsColumns() throws Exception{
+        ProjectRestrictOperation projectRestrict = projectRestrict(scan,new int[]{3,-1,1});
+        ColumnarImportSource source = ColumnarImportSource.forInsert(projectRestrict,dsp);
+        Assert.assertNotNull(source);
+        Assert.assertArrayEquals(new int[]{3,-1,1},source.getColumnMap());
+    }
+
+    @Test
+    public void testNestedProjectRestrictsComposeMappings() throws Exception{
+        ProjectRestrictOperation inner = projectRestrict(scan,new int[]{3,1});
+        ProjectRestrictOperation outer = projectRestrict(inner,new int[]{2,-1,1,2});
+        ColumnarImportSource source = ColumnarImportSource.forInsert(outer,dsp);
+        Assert.assertNotNull(source);
+        // column i of the insert row is column outer[i] of the inner row, which is column inner[outer[i]] of the scan
+        Assert.assertArrayEquals(new int[]{1,-1,3,1},source.getColumnMap());
+    }
+
+    @Test
+    public void testNestedProjectRestrictsDoNotChangeTheirMappings() throws Exception{
+        int[] innerMapping = {3,1};
+        int[] outerMapping = {2,1};
+        ProjectRestrictOperation inner = projectRestrict(scan,innerMapping);
+        ProjectRestrictOperation outer = projectRestrict(inner,outerMapping);
+        ColumnarImportSource.forInsert(outer,dsp);
+        Assert.assertArrayEquals(new int[]{3,1},innerMapping);
+        Assert.assertArrayEquals(new int[]{2,1},outerMapping);
+    }
+
+    private static ProjectRestrictOperation projectRestrict(SpliceOperation source,int[] projectMapping){
+        ProjectRestrictOperation projectRestrict = mock(ProjectRestrictOperation.class);
+        when(projectRestrict.onlyMapsColumns()).thenReturn(true);
+        when(projectRestrict.getLeftOperation()).thenReturn(source);
+        projectRestrict.projectMapping = projectMapping;
+        return projectRestrict;
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.stream.vector;
+
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.store.access.Qualifier;
+import com.splicemachine.db.iapi.types.DataType;
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
+import com.splicemachine.db.iapi.types.SQLDouble;
+import com.splicemachine.db.iapi.types.SQLInteger;
+import com.splicemachine.db.iapi.types.SQLLongint;
+import com.splicemachine.db.iapi.types.SQLVarchar;
+import com.splicemachine.db.impl.sql.execute.GenericScanQualifier;
+import com.splicemachine.db.impl.sql.execute.ValueRow;
+import com.splicemachine.derby.utils.Scans;
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+@Category(ArchitectureIndependent.class)
+public class BatchQualifierTest{
+    private static final int BATCH_SIZE=128;
+    private static final int[] OPERATORS={
+            DataType.ORDER_OP_LESSTHAN,
+            DataType.ORDER_OP_EQUALS,
+            DataType.ORDER_OP_LESSOREQUALS,
+            DataType.ORDER_OP_GREATERTHAN,
+            DataType.ORDER_OP_GREATEROREQUALS
+    };
+
+    @Test
+    public void testMatchesRowAtATimeQualification() throws Exception{
+        Random random=new Random(0L);
+        for(int trial=0;trial<500;trial++){
+            Qualifier[][] qualifiers=new Qualifier[1+random.nextInt(3)][];
+            for(int i=0;i<qualifiers.length;i++){
+                qualifiers[i]=new Qualifier[1+random.nextInt(3)];
+                for(int j=0;j<qualifiers[i].length;j++){
+                    qualifiers[i][j]=randomQualifier(random);
+                }
+            }
+            assertMatchesRowAtATime(qualifiers,null,random);
+        }
+    }
+
+    @Test
+    public void testProbeValueReplacesFirstConstant() throws Exception{
+        Qualifier[][] qualifiers=new Qualifier[][]{{qualifier(0,new SQLInteger(1000),DataType.ORDER_OP_EQUALS,false,false)}};
+        assertMatchesRowAtATime(qualifiers,new SQLInteger(3),new Random(1L));
+    }
+
+    @Test
+    public void testUnsupportedTypesAreNotCompiled() throws Exception{
+        ExecRow template=new ValueRow(1);
+        template.setColumn(1,new SQLVarchar("a"));
+        RowBatch batch=new RowBatch(template,BATCH_SIZE);
+        Qualifier[][] qualifiers=new Qualifier[][]{{qualifier(0,new SQLVarchar("a"),DataType.ORDER_OP_EQUALS,false,false)}};
+        Assert.assertNull("Compiled a qualifier on a varchar column!",BatchQualifier.compile(qualifiers,null,null,batch));
+
+        template=newTemplate();
+        batch=new RowBatch(template,BATCH_SIZE);
+        qualifiers=new Qualifier[][]{{qualifier(0,new SQLDouble(1.0d),DataType.ORDER_OP_EQUALS,false,false)}};
+        Assert.assertNull("Compiled a comparison of an integer column with a double!",BatchQualifier.compile(qualifiers,null,null,batch));
+    }
+
+    @Test
+    public void testLimitedBatch() throws Exception{
+        ExecRow template=newTemplate();
+        RowBatch batch=new RowBatch(template,BATCH_SIZE);
+        Qualifier[][] qualifiers=new Qualifier[][]{{qualifier(0,new SQLInteger(5),DataType.ORDER_OP_LESSTHAN,false,false)}};
+        BatchQualifier batchQualifier=BatchQualifier.compile(qualifiers,null,null,batch);
+        Assert.assertNotNull("Unable to compile qualifiers!",batchQualifier);
+
+        batch.setLimit(4);
+        List<ExecRow> expected=new ArrayList<>();
+        for(int i=0;!batch.isFull();i++){
+            template.getColumn(1).setValue(i*2);
+            template.getColumn(2).setValue(i);
+            template.getColumn(3).setValue(i/2.0d);
+            if(i*2<5)
+                expected.add(template.getClone());
+            batch.add(template,null);
+        }
+        Assert.assertEquals("Batch not full at its limit!",4,batch.size());
+        batchQualifier.evaluate(batch);
+        List<ExecRow> actual=new ArrayList<>();
+        while(batch.hasNext()){
+            actual.add(batch.next().getRow());
+        }
+        Assert.assertEquals("Incorrect qualified rows!",expected.toString(),actual.toString());
+
+        batch.reset();
+        batch.setLimit(BATCH_SIZE);
+        Assert.assertFalse("Batch full after raising its limit!",batch.isFull());
+    }
+
+    @Test
+    public void testObjectColumnsAreDecodedIntoTheBatch() throws Exception{
+        ExecRow template=new ValueRow(2);
+        template.setColumn(1,new SQLInteger());
+        template.setColumn(2,new SQLVarchar());
+        RowBatch batch=new RowBatch(template,BATCH_SIZE);
+        Qualifier[][] qualifiers=new Qualifier[][]{{qualifier(0,new SQLInteger(2),DataType.ORDER_OP_EQUALS,false,false)}};
+        BatchQualifier batchQualifier=BatchQualifier.compile(qualifiers,null,null,batch);
+        Assert.assertNotNull("Unable to compile qualifiers!",batchQualifier);
+
+        DataValueDescriptor[] slots=new DataValueDescriptor[BATCH_SIZE];
+        for(int fill=0;fill<2;fill++){
+            batch.reset();
+            for(int i=0;!batch.isFull();i++){
+                batch.prepare(template);
+                if(fill>0)
+                    Assert.assertSame("Slot was not re-used!",slots[i],template.getColumn(2));
+                slots[i]=template.getColumn(2);
+                template.getColumn(1).setValue(i%4);
+                template.getColumn(2).setValue("fill "+fill+" row "+i);
+                batch.add(template,null);
+            }
+            batchQualifier.evaluate(batch);
+            Assert.assertEquals("Incorrect number of qualified rows!",BATCH_SIZE/4,batch.getSelectedCount());
+            for(int i=2;batch.hasNext();i+=4){
+                ExecRow row=batch.next().getRow();
+                Assert.assertEquals("Incorrect qualified row!","fill "+fill+" row "+i,row.getColumn(2).getString());
+                Assert.assertNotSame("Qualified row shares its value with the batch!",slots[i],row.getColumn(2));
+            }
+        }
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private void assertMatchesRowAtATime(Qualifier[][] qualifiers,DataValueDescriptor probeValue,Random random) throws Exception{
+        ExecRow template=newTemplate();
+        RowBatch batch=new RowBatch(template,BATCH_SIZE);
+        BatchQualifier batchQualifier=BatchQualifier.compile(qualifiers,null,probeValue,batch);
+        Assert.assertNotNull("Unable to compile qualifiers!",batchQualifier);
+
+        List<ExecRow> expected=new ArrayList<>();
+        for(int i=0;i<BATCH_SIZE;i++){
+            randomize(template,random);
+            if(Scans.qualifyRecordFromRow(template.getRowArray(),qualifiers,null,probeValue))
+                expected.add(template.getClone());
+            batch.add(template,null);
+        }
+        batchQualifier.evaluate(batch);
+
+        List<ExecRow> actual=new ArrayList<>();
+        while(batch.hasNext()){
+            actual.add(batch.next().getRow());
+        }
+        Assert.assertEquals("Incorrect qualified rows!",expected.toString(),actual.toString());
+    }
+
+    private static ExecRow newTemplate(){
+        ExecRow template=new ValueRow(3);
+        template.setColumn(1,new SQLInteger());
+        template.setColumn(2,new SQLLongint());
+        template.setColumn(3,new SQLDouble());
+        return template;
+    }
+
+    private static void randomize(ExecRow row,Random random) throws Exception{
+        for(int i=1;i<=row.nColumns();i++){
+            DataValueDescriptor dvd=row.getColumn(i);
+            if(random.nextInt(8)==0)
+                dvd.setToNull();
+            else if(dvd instanceof SQLDouble)
+                dvd.setValue(random.nextInt(10)/2.0d);
+            else
+                dvd.setValue(random.nextInt(10));
+        }
+    }
+
+    private static Qualifier randomQualifier(Random random) throws Exception{
+        int column=random.nextInt(3);
+        DataValueDescriptor orderable;
+        if(column==2)
+            orderable=new SQLDouble();
+        else
+            orderable=random.nextBoolean()?new SQLInteger():new SQLLongint();
+        if(random.nextInt(10)!=0){
+            if(column==2)
+                orderable.setValue(random.nextInt(10)/2.0d);
+            else
+                orderable.setValue(random.nextInt(10));
+        }
+        return qualifier(column,orderable,OPERATORS[random.nextInt(OPERATORS.length)],random.nextBoolean(),random.nextBoolean());
+    }
+
+    private static Qualifier qualifier(int column,DataValueDescriptor orderable,int operator,boolean negate,boolean orderedNulls){
+        GenericScanQualifier qualifier=new GenericScanQualifier();
+        qualifier.setQualifier(column,orderable,operator,negate,orderedNulls,!orderedNulls);
+        return qualifier;
+    }
+}
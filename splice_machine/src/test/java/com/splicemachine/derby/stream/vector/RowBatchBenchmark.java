@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.stream.vector;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.store.access.Qualifier;
+import com.splicemachine.db.iapi.types.DataType;
+import com.splicemachine.db.iapi.types.SQLDouble;
+import com.splicemachine.db.iapi.types.SQLInteger;
+import com.splicemachine.db.iapi.types.SQLLongint;
+import com.splicemachine.db.iapi.types.SQLVarchar;
+import com.splicemachine.db.impl.sql.execute.GenericScanQualifier;
+import com.splicemachine.db.impl.sql.execute.ValueRow;
+import com.splicemachine.derby.utils.Scans;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how many rows per second a scan qualifies, one row at a time (as TableScannerIterator does when
+ * its qualifiers can't be compiled) and a batch at a time through {@link RowBatch}.
+ * <p>
+ * Each row holds an INTEGER, a BIGINT, a DOUBLE and a VARCHAR, and is qualified on the INTEGER. Decoding is
+ * stood in for by setting the scanned row's values, so the numbers leave out the storage layer. Run with
+ * {@code -prof gc} to compare the bytes allocated per row.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class RowBatchBenchmark{
+    private static final int ROWS = 1<<16;
+    private static final int BATCH_SIZE = 1024;
+
+    /**
+     * The percentage of rows which qualify
+     */
+    @Param({"1", "10", "100"})
+    public int selectivity;
+
+    private int[] ints;
+    private long[] longs;
+    private double[] doubles;
+    private String[] strings;
+    private Qualifier[][] qualifiers;
+    private ExecRow scanRow;
+    private RowBatch batch;
+    private BatchQualifier batchQualifier;
+
+    @Setup
+    public void setUp() throws StandardException{
+        Random random = new Random(0);
+        ints = new int[ROWS];
+        longs = new long[ROWS];
+        doubles = new double[ROWS];
+        strings = new String[ROWS];
+        for(int i=0;i<ROWS;i++){
+            ints[i] = random.nextInt(100);
+            longs[i] = random.nextLong();
+            doubles[i] = random.nextGaussian();
+            strings[i] = Long.toString(random.nextLong() & Long.MAX_VALUE,36);
+        }
+        GenericScanQualifier qualifier = new GenericScanQualifier();
+        qualifier.setQualifier(0,new SQLInteger(selectivity),DataType.ORDER_OP_LESSTHAN,false,false,false);
+        qualifiers = new Qualifier[][]{{qualifier}};
+
+        scanRow = new ValueRow(4);
+        scanRow.setColumn(1,new SQLInteger());
+        scanRow.setColumn(2,new SQLLongint());
+        scanRow.setColumn(3,new SQLDouble());
+        scanRow.setColumn(4,new SQLVarchar());
+        batch = new RowBatch(scanRow,BATCH_SIZE);
+        batchQualifier = BatchQualifier.compile(qualifiers,null,null,batch);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void rowAtATime(Blackhole blackhole) throws StandardException{
+        for(int i=0;i<ROWS;i++){
+            decode(scanRow,i);
+            if(Scans.qualifyRecordFromRow(scanRow.getRowArray(),qualifiers,null,null))
+                blackhole.consume(scanRow.getClone());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void batched(Blackhole blackhole) throws StandardException{
+        for(int i=0;i<ROWS;){
+            batch.reset();
+            while(!batch.isFull() && i<ROWS){
+                batch.prepare(scanRow);
+                decode(scanRow,i++);
+                batch.add(scanRow,null);
+            }
+            batchQualifier.evaluate(batch);
+            while(batch.hasNext()){
+                blackhole.consume(batch.next());
+            }
+        }
+    }
+
+    private void decode(ExecRow row,int i) throws StandardException{
+        row.getColumn(1).setValue(ints[i]);
+        row.getColumn(2).setValue(longs[i]);
+        row.getColumn(3).setValue(doubles[i]);
+        row.getColumn(4).setValue(strings[i]);
+    }
+}
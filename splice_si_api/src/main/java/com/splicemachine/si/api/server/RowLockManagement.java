@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.si.api.server;
+
+import javax.management.MXBean;
+import java.util.Map;
+
+/**
+ * JMX Hook for monitoring row lock contention among SI writes, per region.
+ */
+@MXBean
+public interface RowLockManagement{
+
+    /**
+     * @return the number of regions which have received SI writes since they were opened on this server
+     */
+    int getNumRegions();
+
+    /**
+     * @return the number of times a write batch found a lock stripe it needed already locked, over all regions
+     */
+    long getTotalContendedStripes();
+
+    /**
+     * @return the number of rows which were failed back to the writer to retry, over all regions
+     */
+    long getTotalRowsNotRun();
+
+    /**
+     * @return the total time (in milliseconds) spent waiting for contended lock stripes and rows, over all regions
+     */
+    long getTotalWaitMillis();
+
+    /**
+     * @return the number of times a write batch found a lock stripe it needed already locked, by region name
+     */
+    Map<String,Long> getContendedStripesByRegion();
+
+    /**
+     * @return the number of times a write batch gave up waiting for a contended lock stripe, by region name
+     */
+    Map<String,Long> getTimedOutStripesByRegion();
+
+    /**
+     * @return the number of rows which were failed back to the writer to retry, by region name
+     */
+    Map<String,Long> getRowsNotRunByRegion();
+
+    /**
+     * @return the total time (in milliseconds) spent waiting for contended lock stripes and rows, by region name
+     */
+    Map<String,Long> getWaitMillisByRegion();
+}
@@ -25,4 +25,38 @@ import javax.management.MXBean;
 @MXBean
 public interface TransactionCacheManagement {
 
+    /**
+     * @return the total number of lookups made against the cache since it was created
+     */
+    long getTotalRequests();
+
+    /**
+     * @return the total number of lookups which could be served from the cache
+     */
+    long getTotalHits();
+
+    /**
+     * @return the total number of lookups which could <em>not</em> be served from the cache
+     */
+    long getTotalMisses();
+
+    /**
+     * @return the total number of entries which were evicted to make room for new entries
+     */
+    long getTotalEvictions();
+
+    /**
+     * @return the fraction of lookups which were hits--i.e. totalHits/totalRequests
+     */
+    double getHitRate();
+
+    /**
+     * @return the number of completed transactions currently held in the cache
+     */
+    int getCurrentSize();
+
+    /**
+     * @return the maximum number of entries which can be held before an eviction is forced.
+     */
+    int getMaxSize();
 }
@@ -165,6 +165,26 @@ public interface TxnPartition{
      */
     void recordRollback(long txnId) throws IOException;
 
+    /**
+     * Record the commits and rollbacks of several transactions in a single write.
+     * <p/>
+     * Each commit and rollback carries the same meaning, and the same requirement for external synchronization,
+     * as {@link #recordCommit(long, long)} and {@link #recordRollback(long)} do. Each commit and rollback succeeds or
+     * fails on its own: if this method returns, then every transaction which has no error in the returned array can
+     * safely be considered committed or rolled back. If it throws, then any of them may or may not have been written.
+     *
+     * @param committedTxnIds  the ids of the transactions to commit. Only the first {@code numCommitted} entries are used
+     * @param numCommitted     the number of transactions to commit
+     * @param commitTs         the timestamp at which every one of the commits is said to occur
+     * @param rolledBackTxnIds the ids of the transactions to roll back. Only the first {@code numRolledBack} entries are used
+     * @param numRolledBack    the number of transactions to roll back
+     * @return null if every commit and rollback was written. Otherwise, the reason each one which could not be
+     * written failed (or null for those which were written), at the position of each commit followed by each rollback
+     * @throws IOException if something goes wrong during the write.
+     */
+    IOException[] recordCompletions(long[] committedTxnIds,int numCommitted,long commitTs,
+                           long[] rolledBackTxnIds,int numRolledBack) throws IOException;
+
     /**
      * Update the Transaction's keepAlive field so that the transaction is known to still be active.
      * <p/>
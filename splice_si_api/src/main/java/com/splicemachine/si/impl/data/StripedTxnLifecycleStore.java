@@ -54,14 +54,31 @@ public class StripedTxnLifecycleStore implements TxnLifecycleStore{
     private final TxnPartition baseStore;
     private final ServerControl serverControl;
     private final TimestampSource timestampSource;
+    private final TxnGroupCommitter groupCommitter;
 
     public StripedTxnLifecycleStore(int numPartitions,
                                     TxnPartition baseStore,
                                     ServerControl serverControl,TimestampSource timestampSource){
+        this(numPartitions,baseStore,serverControl,timestampSource,1,0l);
+    }
+
+    /**
+     * @param groupCommitSize the maximum number of commits and rollbacks to write together, or 1 to
+     *                        write each one separately
+     * @param groupCommitWindowMicros the maximum time to wait for a group of commits to fill
+     */
+    public StripedTxnLifecycleStore(int numPartitions,
+                                    TxnPartition baseStore,
+                                    ServerControl serverControl,TimestampSource timestampSource,
+                                    int groupCommitSize,long groupCommitWindowMicros){
         this.lockStriper=LongStripedSynchronizer.stripedReadWriteLock(numPartitions,false);
         this.baseStore=baseStore;
         this.serverControl=serverControl;
         this.timestampSource=timestampSource;
+        if(groupCommitSize>1)
+            this.groupCommitter=new TxnGroupCommitter(baseStore,timestampSource,groupCommitSize,groupCommitWindowMicros);
+        else
+            this.groupCommitter=null;
     }
 
     @Override
@@ -105,6 +122,8 @@ public class StripedTxnLifecycleStore implements TxnLifecycleStore{
                 SpliceLogUtils.error(LOG,"attempting to commit rolled back txn=%d",txnId);
                 throw baseStore.cannotCommit(txnId, state);
             }
+            if(groupCommitter!=null)
+                return groupCommitter.commit(txnId);
             long commitTs=timestampSource.nextTimestamp();
             baseStore.recordCommit(txnId,commitTs);
             return commitTs;
@@ -128,7 +147,10 @@ public class StripedTxnLifecycleStore implements TxnLifecycleStore{
                 case ROLLEDBACK:
                     return;
                 default:
-                    baseStore.recordRollback(txnId);
+                    if(groupCommitter!=null)
+                        groupCommitter.rollback(txnId);
+                    else
+                        baseStore.recordRollback(txnId);
             }
         }finally{
             unlock(lock);
@@ -200,6 +222,13 @@ public class StripedTxnLifecycleStore implements TxnLifecycleStore{
         return baseStore.getActiveTxns(startId,endId,destTable);
     }
 
+    /**
+     * @return the group committer, or {@code null} if commits are written one at a time
+     */
+    public TxnGroupCommitter getGroupCommitter(){
+        return groupCommitter;
+    }
+
     @Override
     public void rollbackTransactionsAfter(long txnId) throws IOException {
         baseStore.rollbackTransactionsAfter(txnId);
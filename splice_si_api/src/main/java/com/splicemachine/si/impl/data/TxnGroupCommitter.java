@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.si.impl.data;
+
+import com.splicemachine.si.api.txn.lifecycle.TxnPartition;
+import com.splicemachine.timestamp.api.TimestampSource;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Folds concurrent commits and rollbacks into groups, each of which is recorded with a single write to
+ * the {@link TxnPartition}.
+ * <p/>
+ * The first caller to arrive while no group is being written becomes the leader: it waits (up to the configured
+ * window, or until the group is full) for more callers, then writes the whole group on their behalf. Callers which
+ * arrive while a group is being written queue up to form the next group. All of the commits in a group share a
+ * single commit timestamp, fetched after every member of the group has asked to commit. That is safe under
+ * snapshot isolation: any transaction which began before one of the commits was requested has a smaller timestamp,
+ * and any transaction which begins after one of the commits returns has a larger one, which are the only two
+ * orderings that visibility depends on.
+ * <p/>
+ * Callers must hold the same external lock on their transaction that {@link TxnPartition#recordCommit(long, long)}
+ * and {@link TxnPartition#recordRollback(long)} require, and must hold it until this class returns. Waiting is
+ * therefore uninterruptible, so that a caller never gives up its lock while its commit is still queued.
+ */
+@ThreadSafe
+public class TxnGroupCommitter{
+    private final TxnPartition baseStore;
+    private final TimestampSource timestampSource;
+    private final int maxGroupSize;
+    private final long windowNanos;
+
+    private final ReentrantLock lock=new ReentrantLock();
+    private final Condition groupFull=lock.newCondition();
+    private final Condition groupWritten=lock.newCondition();
+    private final ArrayDeque<Completion> pending=new ArrayDeque<>();
+    private boolean writing;
+
+    /*monitoring fields*/
+    private final AtomicLong groupsWritten=new AtomicLong(0l);
+    private final AtomicLong completionsWritten=new AtomicLong(0l);
+
+    /**
+     * @param baseStore       the store to record the commits and rollbacks to
+     * @param timestampSource the source of commit timestamps
+     * @param maxGroupSize    the maximum number of commits and rollbacks to write together
+     * @param windowMicros    the maximum time a leader waits for its group to fill before writing it
+     */
+    public TxnGroupCommitter(TxnPartition baseStore,TimestampSource timestampSource,int maxGroupSize,long windowMicros){
+        assert maxGroupSize>1: "Group commit requires groups of more than one transaction";
+        this.baseStore=baseStore;
+        this.timestampSource=timestampSource;
+        this.maxGroupSize=maxGroupSize;
+        this.windowNanos=TimeUnit.MICROSECONDS.toNanos(Math.max(0l,windowMicros));
+    }
+
+    /**
+     * Commit the transaction as part of the next group to be written.
+     *
+     * @return the commit timestamp of the transaction
+     * @throws IOException if the group could not be written
+     */
+    public long commit(long txnId) throws IOException{
+        Completion completion=new Completion(txnId,true);
+        complete(completion);
+        return completion.commitTs;
+    }
+
+    /**
+     * Roll back the transaction as part of the next group to be written.
+     *
+     * @throws IOException if the group could not be written
+     */
+    public void rollback(long txnId) throws IOException{
+        complete(new Completion(txnId,false));
+    }
+
+    /**
+     * @return the number of groups written so far
+     */
+    public long getGroupsWritten(){
+        return groupsWritten.get();
+    }
+
+    /**
+     * @return the number of commits and rollbacks written so far, over all groups. Those which failed are not counted
+     */
+    public long getCompletionsWritten(){
+        return completionsWritten.get();
+    }
+
+    /* ***************************************************************************************************************/
+    /*private helper methods*/
+    private void complete(Completion completion) throws IOException{
+        lock.lock();
+        try{
+            pending.add(completion);
+            if(pending.size()>=maxGroupSize)
+                groupFull.signal();
+            while(!completion.done){
+                if(writing){
+                    groupWritten.awaitUninterruptibly();
+                    continue;
+                }
+                writing=true;
+                Completion[] group=nextGroup();
+                lock.unlock();
+                try{
+                    write(group);
+                }finally{
+                    lock.lock();
+                    writing=false;
+                    groupWritten.signalAll();
+                }
+            }
+        }finally{
+            lock.unlock();
+        }
+        if(completion.error instanceof IOException)
+            throw (IOException)completion.error;
+        else if(completion.error!=null)
+            throw new IOException("Unable to record the completion of transaction "+completion.txnId,completion.error);
+    }
+
+    private Completion[] nextGroup(){
+        long remaining=windowNanos;
+        boolean interrupted=false;
+        while(pending.size()<maxGroupSize && remaining>0){
+            try{
+                remaining=groupFull.awaitNanos(remaining);
+            }catch(InterruptedException ie){
+                interrupted=true;
+            }
+        }
+        if(interrupted)
+            Thread.currentThread().interrupt();
+        Completion[] group=new Completion[Math.min(pending.size(),maxGroupSize)];
+        for(int i=0;i<group.length;i++){
+            group[i]=pending.poll();
+        }
+        return group;
+    }
+
+    private void write(Completion[] group){
+        long[] committed=new long[group.length];
+        long[] rolledBack=new long[group.length];
+        int numCommitted=0;
+        int numRolledBack=0;
+        for(Completion completion:group){
+            if(completion.commit)
+                committed[numCommitted++]=completion.txnId;
+            else
+                rolledBack[numRolledBack++]=completion.txnId;
+        }
+        Throwable error=null;
+        IOException[] errors=null;
+        long commitTs=-1l;
+        try{
+            if(numCommitted>0)
+                commitTs=timestampSource.nextTimestamp();
+            errors=baseStore.recordCompletions(committed,numCommitted,commitTs,rolledBack,numRolledBack);
+            groupsWritten.incrementAndGet();
+        }catch(Throwable t){
+            error=t;
+        }
+        //each completion learns whether its own write succeeded: commits first, then rollbacks, as they were written
+        int commitPosition=0;
+        int rollbackPosition=numCommitted;
+        int written=0;
+        for(Completion completion:group){
+            int position=completion.commit?commitPosition++:rollbackPosition++;
+            completion.commitTs=commitTs;
+            completion.error=error!=null?error:errors!=null?errors[position]:null;
+            if(completion.error==null)
+                written++;
+            completion.done=true;
+        }
+        completionsWritten.addAndGet(written);
+    }
+
+    private static class Completion{
+        private final long txnId;
+        private final boolean commit;
+        /*written by the leader, and read by the caller only after the leader re-acquires the lock*/
+        private long commitTs;
+        private Throwable error;
+        private boolean done;
+
+        Completion(long txnId,boolean commit){
+            this.txnId=txnId;
+            this.commit=commit;
+        }
+    }
+}
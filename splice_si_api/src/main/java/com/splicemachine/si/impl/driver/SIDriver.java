@@ -40,6 +40,7 @@ import com.splicemachine.si.impl.TxnRegion;
 import com.splicemachine.si.impl.readresolve.NoOpReadResolver;
 import com.splicemachine.si.impl.rollforward.NoopRollForward;
 import com.splicemachine.si.impl.rollforward.RollForwardStatus;
+import com.splicemachine.si.impl.server.RowLockManagers;
 import com.splicemachine.si.impl.server.SITransactor;
 import com.splicemachine.si.impl.txn.SITransactionReadController;
 import com.splicemachine.storage.DataFilterFactory;
@@ -116,7 +117,8 @@ public class SIDriver {
                 this.txnOpFactory,
                 env.baseOperationFactory(),
                 this.operationStatusFactory,
-                this.exceptionFactory);
+                this.exceptionFactory,
+                new RowLockManagers(config.getRowLockStripes(),config.getRowLockMaxWait()));
         ClientTxnLifecycleManager clientTxnLifecycleManager=new ClientTxnLifecycleManager(this.timestampSource,env.exceptionFactory());
         clientTxnLifecycleManager.setTxnStore(this.txnStore);
         clientTxnLifecycleManager.setKeepAliveScheduler(env.keepAliveScheduler());
@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.si.impl.server;
+
+import com.splicemachine.hash.Hash32;
+import com.splicemachine.hash.HashFunctions;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Serializes SI writes to the contended rows of a single region, over a fixed number of lock stripes.
+ * <p/>
+ * A write batch first tries the row lock of each of its rows, without waiting, so rows which no other writer
+ * holds (nearly all of them) are locked without going near a stripe. Only the rows whose locks were already held
+ * wait, and they wait in stripe order: the waiters for a row queue up on its stripe, and the one at the head of
+ * the queue waits for the row lock itself. A stripe is only held while its rows are being waited for, never while
+ * the batch is written, so a hot row makes its writers queue up instead of failing each other back to the write
+ * pipeline to retry, without holding up the writers of other rows.
+ * <p/>
+ * Waits are still bounded, so that a batch never sits behind a long-running holder (or another waiter which
+ * holds rows this batch is waiting for). The time a batch will wait, over all of its contended rows, adapts to
+ * how long batches have recently held their rows (a few times the recent average), and never exceeds the
+ * configured maximum. Rows which could not be locked in time are failed back to the writer, as they were before.
+ */
+@ThreadSafe
+public class RowLockManager{
+    private static final Hash32 HASH=HashFunctions.murmur3(0);
+    /*the number of average hold times a batch is willing to wait for*/
+    private static final int WAIT_HOLD_MULTIPLE=4;
+    /*don't let a string of very short holds reduce the wait to nothing*/
+    private static final long MIN_WAIT_NANOS=TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final ReentrantLock[] stripes;
+    private final int mask;
+    private final long maxWaitNanos;
+    /*exponentially weighted moving average of how long a batch holds its rows*/
+    private volatile long averageHoldNanos;
+
+    /*monitoring fields*/
+    private final LongAdder batches=new LongAdder();
+    private final LongAdder contendedRows=new LongAdder();
+    private final LongAdder stripesLocked=new LongAdder();
+    private final LongAdder contendedStripes=new LongAdder();
+    private final LongAdder timedOutStripes=new LongAdder();
+    private final LongAdder rowsNotRun=new LongAdder();
+    private final LongAdder waitNanos=new LongAdder();
+
+    /**
+     * @param numStripes    the number of stripes. Rounded up to a power of 2
+     * @param maxWaitMillis the longest time a single batch may wait for contended rows, or 0 to never wait
+     */
+    public RowLockManager(int numStripes,long maxWaitMillis){
+        int size=1;
+        while(size<numStripes)
+            size<<=1;
+        this.stripes=new ReentrantLock[size];
+        for(int i=0;i<size;i++){
+            stripes[i]=new ReentrantLock();
+        }
+        this.mask=size-1;
+        this.maxWaitNanos=TimeUnit.MILLISECONDS.toNanos(Math.max(0l,maxWaitMillis));
+        this.averageHoldNanos=maxWaitNanos/WAIT_HOLD_MULTIPLE;
+    }
+
+    /**
+     * @return the stripe which the row with the specified key belongs to
+     */
+    public int stripe(byte[] key,int offset,int length){
+        return HASH.hash(key,offset,length)&mask;
+    }
+
+    /**
+     * Lock the rows of a batch whose row locks were found to be held by another writer, in ascending stripe
+     * order, waiting for them for as long as the batch's wait allows. Each stripe is held only while its rows
+     * are waited for, and is released before this returns.
+     *
+     * @param rowLocks   the lock of each contended row
+     * @param rowStripes the stripe of each contended row, as returned by {@link #stripe(byte[], int, int)}
+     * @return whether the lock of each row was acquired. These <em>must</em> be released by the caller.
+     */
+    public boolean[] lockContended(Lock[] rowLocks,int[] rowStripes){
+        return lockContended(rowLocks,rowStripes,rowLocks.length);
+    }
+
+    /**
+     * Lock the first {@code count} rows of {@code rowLocks}, as {@link #lockContended(Lock[], int[])} does, so
+     * that the caller can collect its contended rows into arrays sized for the whole batch.
+     *
+     * @return whether the lock of each of the first {@code count} rows was acquired
+     */
+    public boolean[] lockContended(Lock[] rowLocks,int[] rowStripes,int count){
+        long[] order=new long[count];
+        for(int i=0;i<count;i++){
+            order[i]=((long)rowStripes[i]<<32)|i;
+        }
+        Arrays.sort(order);
+        boolean[] locked=new boolean[count];
+        long waitBudget=Math.min(maxWaitNanos,Math.max(MIN_WAIT_NANOS,WAIT_HOLD_MULTIPLE*averageHoldNanos));
+        long waited=0l;
+        boolean interrupted=false;
+        int currentStripe=-1;
+        ReentrantLock heldStripe=null;
+        boolean success=false;
+        try{
+            for(long next:order){
+                int stripe=(int)(next>>>32);
+                int row=(int)next;
+                if(stripe!=currentStripe){
+                    if(heldStripe!=null){
+                        heldStripe.unlock();
+                        heldStripe=null;
+                    }
+                    currentStripe=stripe;
+                    ReentrantLock lock=stripes[stripe];
+                    boolean acquired=lock.tryLock();
+                    if(!acquired){
+                        contendedStripes.increment();
+                        long remaining=waitBudget-waited;
+                        if(remaining>0 && !interrupted){
+                            long start=System.nanoTime();
+                            try{
+                                acquired=lock.tryLock(remaining,TimeUnit.NANOSECONDS);
+                            }catch(InterruptedException ie){
+                                interrupted=true;
+                            }
+                            waited+=System.nanoTime()-start;
+                        }
+                        if(!acquired)
+                            timedOutStripes.increment();
+                    }
+                    if(acquired){
+                        heldStripe=lock;
+                        stripesLocked.increment();
+                    }
+                }
+                //the rows of a stripe which could not be locked in time are not run
+                if(heldStripe==null) continue;
+                //the holder may well have finished with the row by now
+                locked[row]=rowLocks[row].tryLock();
+                long remaining=waitBudget-waited;
+                if(!locked[row] && remaining>0 && !interrupted){
+                    long start=System.nanoTime();
+                    try{
+                        locked[row]=rowLocks[row].tryLock(remaining,TimeUnit.NANOSECONDS);
+                    }catch(InterruptedException ie){
+                        interrupted=true;
+                    }
+                    waited+=System.nanoTime()-start;
+                }
+            }
+            success=true;
+        }finally{
+            if(heldStripe!=null)
+                heldStripe.unlock();
+            if(!success){
+                //the caller never sees the rows locked so far
+                for(int i=0;i<locked.length;i++){
+                    if(locked[i])
+                        rowLocks[i].unlock();
+                }
+            }
+        }
+        if(interrupted)
+            Thread.currentThread().interrupt();
+        contendedRows.add(count);
+        waitNanos.add(waited);
+        return locked;
+    }
+
+    /**
+     * Record that a batch has released the locks of its rows, and fold the time it held them into the
+     * average hold time.
+     */
+    public void released(long holdNanos){
+        batches.increment();
+        //racy, but a lost update only makes the average slightly stale
+        averageHoldNanos=averageHoldNanos-(averageHoldNanos>>3)+(holdNanos>>3);
+    }
+
+    /**
+     * Record that rows of a batch were failed back to the writer to retry.
+     */
+    public void rowsNotRun(int count){
+        rowsNotRun.add(count);
+    }
+
+    /**
+     * @return the number of batches which have locked rows in this region
+     */
+    public long getBatches(){
+        return batches.sum();
+    }
+
+    /**
+     * @return the number of rows whose locks were found to be held by another writer
+     */
+    public long getContendedRows(){
+        return contendedRows.sum();
+    }
+
+    /**
+     * @return the number of stripes which have been locked to wait for contended rows
+     */
+    public long getStripesLocked(){
+        return stripesLocked.sum();
+    }
+
+    /**
+     * @return the number of times a batch found a stripe it needed already locked
+     */
+    public long getContendedStripes(){
+        return contendedStripes.sum();
+    }
+
+    /**
+     * @return the number of times a batch gave up waiting for a contended stripe
+     */
+    public long getTimedOutStripes(){
+        return timedOutStripes.sum();
+    }
+
+    /**
+     * @return the number of rows which were failed back to the writer to retry
+     */
+    public long getRowsNotRun(){
+        return rowsNotRun.sum();
+    }
+
+    /**
+     * @return the total time (in milliseconds) spent waiting for contended stripes and rows
+     */
+    public long getWaitMillis(){
+        return TimeUnit.NANOSECONDS.toMillis(waitNanos.sum());
+    }
+
+    /**
+     * @return the recent average time (in microseconds) for which a batch holds its rows
+     */
+    public long getAverageHoldMicros(){
+        return TimeUnit.NANOSECONDS.toMicros(averageHoldNanos);
+    }
+}
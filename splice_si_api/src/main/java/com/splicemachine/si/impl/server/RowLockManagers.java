@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.si.impl.server;
+
+import com.splicemachine.si.api.server.RowLockManagement;
+import com.splicemachine.storage.Partition;
+
+import javax.annotation.concurrent.ThreadSafe;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.MBeanRegistrationException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.NotCompliantMBeanException;
+import javax.management.ObjectName;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The {@link RowLockManager} of each region which receives SI writes on this server.
+ */
+@ThreadSafe
+public class RowLockManagers implements RowLockManagement{
+    public static final String JMX_NAME="com.splicemachine.si.impl.server:type=RowLockManagement";
+
+    private final ConcurrentMap<String,RowLockManager> managers=new ConcurrentHashMap<>();
+    private final int numStripes;
+    private final long maxWaitMillis;
+
+    public RowLockManagers(int numStripes,long maxWaitMillis){
+        this.numStripes=numStripes;
+        this.maxWaitMillis=maxWaitMillis;
+    }
+
+    /**
+     * @return the lock manager for the specified region, creating it if necessary
+     */
+    public RowLockManager get(Partition region){
+        String name=region.getName();
+        RowLockManager manager=managers.get(name);
+        if(manager==null){
+            manager=new RowLockManager(numStripes,maxWaitMillis);
+            RowLockManager old=managers.putIfAbsent(name,manager);
+            if(old!=null)
+                manager=old;
+        }
+        return manager;
+    }
+
+    /**
+     * Forget the lock manager of a region which has been closed on this server.
+     */
+    public void remove(String regionName){
+        managers.remove(regionName);
+    }
+
+    public void registerJMX(MBeanServer mbs) throws MalformedObjectNameException, NotCompliantMBeanException, InstanceAlreadyExistsException, MBeanRegistrationException{
+        mbs.registerMBean(this,new ObjectName(JMX_NAME));
+    }
+
+    @Override
+    public int getNumRegions(){
+        return managers.size();
+    }
+
+    @Override
+    public long getTotalContendedStripes(){
+        long total=0l;
+        for(RowLockManager manager:managers.values()){
+            total+=manager.getContendedStripes();
+        }
+        return total;
+    }
+
+    @Override
+    public long getTotalRowsNotRun(){
+        long total=0l;
+        for(RowLockManager manager:managers.values()){
+            total+=manager.getRowsNotRun();
+        }
+        return total;
+    }
+
+    @Override
+    public long getTotalWaitMillis(){
+        long total=0l;
+        for(RowLockManager manager:managers.values()){
+            total+=manager.getWaitMillis();
+        }
+        return total;
+    }
+
+    @Override
+    public Map<String,Long> getContendedStripesByRegion(){
+        Map<String,Long> byRegion=new HashMap<>(managers.size());
+        for(Map.Entry<String,RowLockManager> entry:managers.entrySet()){
+            byRegion.put(entry.getKey(),entry.getValue().getContendedStripes());
+        }
+        return byRegion;
+    }
+
+    @Override
+    public Map<String,Long> getTimedOutStripesByRegion(){
+        Map<String,Long> byRegion=new HashMap<>(managers.size());
+        for(Map.Entry<String,RowLockManager> entry:managers.entrySet()){
+            byRegion.put(entry.getKey(),entry.getValue().getTimedOutStripes());
+        }
+        return byRegion;
+    }
+
+    @Override
+    public Map<String,Long> getRowsNotRunByRegion(){
+        Map<String,Long> byRegion=new HashMap<>(managers.size());
+        for(Map.Entry<String,RowLockManager> entry:managers.entrySet()){
+            byRegion.put(entry.getKey(),entry.getValue().getRowsNotRun());
+        }
+        return byRegion;
+    }
+
+    @Override
+    public Map<String,Long> getWaitMillisByRegion(){
+        Map<String,Long> byRegion=new HashMap<>(managers.size());
+        for(Map.Entry<String,RowLockManager> entry:managers.entrySet()){
+            byRegion.put(entry.getKey(),entry.getValue().getWaitMillis());
+        }
+        return byRegion;
+    }
+}
@@ -55,23 +55,43 @@ import java.util.concurrent.locks.Lock;
 @SuppressWarnings("unchecked")
 public class SITransactor implements Transactor{
     private static final Logger LOG=Logger.getLogger(SITransactor.class);
+    private static final int DEFAULT_ROW_LOCK_STRIPES=256;
     private final OperationFactory opFactory;
     private final OperationStatusFactory operationStatusLib;
     private final ExceptionFactory exceptionLib;
 
     private final TxnOperationFactory txnOperationFactory;
     private final TxnSupplier txnSupplier;
+    private final RowLockManagers rowLocks;
 
     public SITransactor(TxnSupplier txnSupplier,
                         TxnOperationFactory txnOperationFactory,
                         OperationFactory opFactory,
                         OperationStatusFactory operationStatusLib,
                         ExceptionFactory exceptionFactory){
+        this(txnSupplier,txnOperationFactory,opFactory,operationStatusLib,exceptionFactory,
+                new RowLockManagers(DEFAULT_ROW_LOCK_STRIPES,0l));
+    }
+
+    public SITransactor(TxnSupplier txnSupplier,
+                        TxnOperationFactory txnOperationFactory,
+                        OperationFactory opFactory,
+                        OperationStatusFactory operationStatusLib,
+                        ExceptionFactory exceptionFactory,
+                        RowLockManagers rowLocks){
         this.txnSupplier=txnSupplier;
         this.txnOperationFactory=txnOperationFactory;
         this.opFactory= opFactory;
         this.operationStatusLib = operationStatusLib;
         this.exceptionLib = exceptionFactory;
+        this.rowLocks = rowLocks;
+    }
+
+    /**
+     * @return the row lock managers of the regions this transactor has written to
+     */
+    public RowLockManagers getRowLocks(){
+        return rowLocks;
     }
 
     // Operation pre-processing. These are to be called "server-side" when we are about to process an operation.
@@ -178,8 +198,11 @@ public class SITransactor implements Transactor{
         if(constraintChecker!=null)
             constraintState=new SimpleTxnFilter(null,txn,NoOpReadResolver.INSTANCE,txnSupplier);
         @SuppressWarnings("unchecked") final LongOpenHashSet[] conflictingChildren=new LongOpenHashSet[mutations.size()];
+        RowLockManager lockManager=rowLocks.get(table);
+        long lockedAt=0l;
         try{
-            lockRows(table,mutations,lockPairs,finalStatus);
+            lockRows(table,lockManager,mutations,lockPairs,finalStatus);
+            lockedAt=System.nanoTime();
 
             /*
              * You don't need a low-level operation check here, because this code can only be called from
@@ -216,6 +239,8 @@ public class SITransactor implements Transactor{
             return finalStatus;
         }finally{
             releaseLocksForKvBatch(lockPairs);
+            if(lockedAt>0l)
+                lockManager.released(System.nanoTime()-lockedAt);
         }
     }
 
@@ -337,9 +362,12 @@ public class SITransactor implements Transactor{
     }
 
 
-    private void lockRows(Partition table,Collection<KVPair> mutations,Pair<KVPair, Lock>[] mutationsAndLocks,MutationStatus[] finalStatus) throws IOException{
+    private void lockRows(Partition table,RowLockManager lockManager,Collection<KVPair> mutations,Pair<KVPair, Lock>[] mutationsAndLocks,MutationStatus[] finalStatus) throws IOException{
         /*
-         * We attempt to lock each row in the collection.
+         * We first try the lock of each row in the collection, without waiting. Rows which another writer
+         * holds are then waited for (a short while, and in stripe order) by the lock manager; the stripes
+         * it uses to order the waiters are released before we return, so that they are never held while
+         * the batch is written.
          *
          * If the lock is acquired, we place it into mutationsAndLocks (at the position equal
          * to the position in the collection's iterator).
@@ -347,18 +375,47 @@ public class SITransactor implements Transactor{
          * If the lock cannot be acquired, then we set NOT_RUN into the finalStatus array. Those rows will be filtered
          * out and must be retried by the writer. mutationsAndLocks at the same location will be null
          */
+        int[] contended=null;
+        Lock[] contendedLocks=null;
+        int[] contendedStripes=null;
+        int numContended=0;
         int position=0;
         try{
             for(KVPair mutation : mutations){
                 ByteSlice byteSlice=mutation.rowKeySlice();
-                Lock lock=table.getRowLock(byteSlice.array(),byteSlice.offset(),byteSlice.length());//tableWriter.getRowLock(table, mutation.rowKeySlice());
+                Lock lock=table.getRowLock(byteSlice.array(),byteSlice.offset(),byteSlice.length());
                 if(lock.tryLock())
                     mutationsAndLocks[position]=Pair.newPair(mutation,lock);
-                else
-                    finalStatus[position]=operationStatusLib.notRun();
-
+                else{
+                    if(contended==null){
+                        contended=new int[mutationsAndLocks.length];
+                        contendedLocks=new Lock[mutationsAndLocks.length];
+                        contendedStripes=new int[mutationsAndLocks.length];
+                    }
+                    contended[numContended]=position;
+                    contendedLocks[numContended]=lock;
+                    contendedStripes[numContended]=lockManager.stripe(byteSlice.array(),byteSlice.offset(),byteSlice.length());
+                    numContended++;
+                }
                 position++;
             }
+            if(numContended==0)
+                return;
+
+            boolean[] locked=lockManager.lockContended(contendedLocks,contendedStripes,numContended);
+            KVPair[] byPosition=mutations.toArray(new KVPair[mutations.size()]);
+            int notRun=0;
+            for(int i=0;i<numContended;i++){
+                int p=contended[i];
+                if(locked[i])
+                    mutationsAndLocks[p]=Pair.newPair(byPosition[p],contendedLocks[i]);
+                else{
+                    finalStatus[p]=operationStatusLib.notRun();
+                    notRun++;
+                }
+            }
+            if(notRun>0)
+                lockManager.rowsNotRun(notRun);
         }catch(RuntimeException re){
             /*
              * trying the lock can result in us throwing a NotServingRegionException etc, which is wrapped
@@ -370,7 +427,6 @@ public class SITransactor implements Transactor{
         }
     }
 
-
     private DataPut getMutationToRun(Partition table, RollForward rollForwardQueue, KVPair kvPair,
                                      byte[] family, byte[] column,
                                      TxnView transaction, ConflictResults conflictResults, boolean skipWAL) throws IOException{
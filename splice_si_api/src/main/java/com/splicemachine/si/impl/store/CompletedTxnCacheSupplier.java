@@ -14,14 +14,20 @@
 
 package com.splicemachine.si.impl.store;
 
-import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+import com.splicemachine.collections.ConcurrentLongKeyedCache;
+import com.splicemachine.si.api.txn.TransactionCacheManagement;
 import com.splicemachine.si.api.txn.Txn;
 import com.splicemachine.si.api.txn.TxnSupplier;
 import com.splicemachine.si.api.txn.TxnView;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.MBeanRegistrationException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.NotCompliantMBeanException;
+import javax.management.ObjectName;
 import java.io.IOException;
-import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * TxnSupplier which caches transaction which have "Completed"--i.e. which have entered the COMMITTED or ROLLEDBACK
@@ -32,22 +38,22 @@ import java.util.concurrent.atomic.AtomicLong;
  * @author Scott Fines
  *         Date: 6/18/14
  */
-public class CompletedTxnCacheSupplier implements TxnSupplier{
-    private ConcurrentLinkedHashMap<Long, TxnView> cache; // autobox for now
+public class CompletedTxnCacheSupplier implements TxnSupplier, TransactionCacheManagement{
+    public static final String JMX_NAME="com.splicemachine.si.impl.store:type=TransactionCacheManagement";
+
+    private final ConcurrentLongKeyedCache<TxnView> cache;
     private final TxnSupplier delegate;
-    private final AtomicLong hits=new AtomicLong();
-    private final AtomicLong requests=new AtomicLong();
 
     public CompletedTxnCacheSupplier(TxnSupplier delegate,int maxSize,int concurrencyLevel){
-        cache=new ConcurrentLinkedHashMap.Builder<Long, TxnView>()
-                .maximumWeightedCapacity(maxSize)
+        cache=ConcurrentLongKeyedCache.<TxnView>newBuilder()
+                .maxEntries(maxSize)
                 .concurrencyLevel(concurrencyLevel)
                 .build();
         this.delegate=delegate;
     }
 
-    public int getMaxSize(){
-        return cache.size();
+    public void registerJMX(MBeanServer mbs) throws MalformedObjectNameException, NotCompliantMBeanException, InstanceAlreadyExistsException, MBeanRegistrationException{
+        mbs.registerMBean(this,new ObjectName(JMX_NAME));
     }
 
     @Override
@@ -62,10 +68,8 @@ public class CompletedTxnCacheSupplier implements TxnSupplier{
     public TxnView getTransaction(long txnId,boolean getDestinationTables) throws IOException{
         if(txnId==-1)
             return Txn.ROOT_TRANSACTION;
-        requests.incrementAndGet();
-        TxnView txn=cache.get(txnId); // autobox until Cliff C merge
+        TxnView txn=cache.get(txnId);
         if(txn!=null){
-            hits.incrementAndGet();
             return txn;
         }
         //bummer, we aren't in the cache, need to check the delegate
@@ -83,7 +87,7 @@ public class CompletedTxnCacheSupplier implements TxnSupplier{
 
     @Override
     public boolean transactionCached(long txnId){
-        return cache.get(txnId)!=null;
+        return cache.containsKey(txnId);
     }
 
     @Override
@@ -94,10 +98,20 @@ public class CompletedTxnCacheSupplier implements TxnSupplier{
 
     @Override
     public TxnView getTransactionFromCache(long txnId){
-        requests.incrementAndGet();
-        TxnView txn=cache.get(txnId);
-        if(txn!=null)
-            hits.incrementAndGet();
-        return txn;
+        return cache.get(txnId);
     }
+
+    @Override public long getTotalRequests(){ return cache.requestCount(); }
+
+    @Override public long getTotalHits(){ return cache.hitCount(); }
+
+    @Override public long getTotalMisses(){ return cache.missCount(); }
+
+    @Override public long getTotalEvictions(){ return cache.evictionCount(); }
+
+    @Override public double getHitRate(){ return cache.hitRate(); }
+
+    @Override public int getCurrentSize(){ return cache.size(); }
+
+    @Override public int getMaxSize(){ return cache.maxSize(); }
 }
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.si.impl.data;
+
+import com.splicemachine.si.api.txn.Txn;
+import com.splicemachine.si.api.txn.lifecycle.TxnPartition;
+import com.splicemachine.si.coprocessor.TxnMessage;
+import com.splicemachine.si.impl.store.TestingTimestampSource;
+import com.splicemachine.si.testenv.TestServerControl;
+import com.splicemachine.utils.Source;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Measures the number of small transactions per second which a transaction region can commit, with and
+ * without group commit, as the number of concurrent clients grows.
+ * <p>
+ * The transaction partition and the timestamp source simulate the latency of a write to the transaction
+ * table and of a timestamp fetch, which are what group commit amortizes.
+ * <p>
+ * Run with {@code main()} to measure each client count in turn, or through the JMH runner
+ * directly (e.g. {@code -t 64}) for a single client count.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TxnGroupCommitBenchmark{
+    private static final int[] CLIENT_COUNTS = {1, 16, 64, 256};
+
+    /**
+     * The maximum number of commits written together, where 1 disables group commit
+     */
+    @Param({"1", "64"})
+    public int groupCommitSize;
+
+    /**
+     * Time (in microseconds) it takes to write to the transaction table
+     */
+    @Param({"500"})
+    public int writeLatencyMicros;
+
+    /**
+     * Time (in microseconds) it takes to fetch a timestamp
+     */
+    @Param({"200"})
+    public int timestampLatencyMicros;
+
+    private final AtomicLong txnIds = new AtomicLong(0L);
+    private StripedTxnLifecycleStore store;
+
+    @Setup
+    public void setUp(){
+        final long timestampLatencyNanos = TimeUnit.MICROSECONDS.toNanos(timestampLatencyMicros);
+        TestingTimestampSource timestampSource = new TestingTimestampSource(){
+            @Override
+            public long nextTimestamp(){
+                LockSupport.parkNanos(timestampLatencyNanos);
+                return super.nextTimestamp();
+            }
+        };
+        store = new StripedTxnLifecycleStore(1024,
+                new SimulatedTxnPartition(TimeUnit.MICROSECONDS.toNanos(writeLatencyMicros)),
+                new TestServerControl(),timestampSource,groupCommitSize,0L);
+    }
+
+    @Benchmark
+    public long commit() throws IOException{
+        return store.commitTransaction(txnIds.incrementAndGet());
+    }
+
+    public static void main(String... args) throws RunnerException{
+        for(int clients : CLIENT_COUNTS){
+            Options options = new OptionsBuilder()
+                    .include(TxnGroupCommitBenchmark.class.getSimpleName())
+                    .threads(clients)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+
+    /**
+     * A partition in which every transaction is active, and every write takes the same amount of time.
+     */
+    private static class SimulatedTxnPartition implements TxnPartition{
+        private final long writeLatencyNanos;
+
+        SimulatedTxnPartition(long writeLatencyNanos){
+            this.writeLatencyNanos = writeLatencyNanos;
+        }
+
+        @Override
+        public Txn.State getState(long txnId){
+            return Txn.State.ACTIVE;
+        }
+
+        @Override
+        public void recordCommit(long txnId,long commitTs){
+            LockSupport.parkNanos(writeLatencyNanos);
+        }
+
+        @Override
+        public void recordRollback(long txnId){
+            LockSupport.parkNanos(writeLatencyNanos);
+        }
+
+        @Override
+        public IOException[] recordCompletions(long[] committedTxnIds,int numCommitted,long commitTs,
+                                               long[] rolledBackTxnIds,int numRolledBack){
+            LockSupport.parkNanos(writeLatencyNanos);
+            return null;
+        }
+
+        @Override public void recordTransaction(TxnMessage.TxnInfo txn){ throw new UnsupportedOperationException(); }
+        @Override public void addDestinationTable(long txnId,byte[] destTable){ throw new UnsupportedOperationException(); }
+        @Override public TxnMessage.Txn getTransaction(long txnId){ throw new UnsupportedOperationException(); }
+        @Override public long[] getActiveTxnIds(long afterTs,long beforeTs,byte[] destinationTable){ throw new UnsupportedOperationException(); }
+        @Override public Source<TxnMessage.Txn> getActiveTxns(long startId,long endId,byte[] destTable){ throw new UnsupportedOperationException(); }
+        @Override public long getCommitTimestamp(long txnId){ throw new UnsupportedOperationException(); }
+        @Override public IOException cannotCommit(long txnId,Txn.State state){ return new IOException("Cannot commit "+txnId); }
+        @Override public void recordGlobalCommit(long txnId,long globalCommitTs){ throw new UnsupportedOperationException(); }
+        @Override public boolean keepAlive(long txnId){ return true; }
+        @Override public void rollbackTransactionsAfter(long txnId){ throw new UnsupportedOperationException(); }
+        @Override public void recordRollbackSubtransactions(long txnId,long[] subIds){ throw new UnsupportedOperationException(); }
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.si.impl.data;
+
+import com.splicemachine.si.api.txn.lifecycle.TxnPartition;
+import com.splicemachine.si.impl.store.TestingTimestampSource;
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+@Category(ArchitectureIndependent.class)
+public class TxnGroupCommitterTest{
+    private static final int MAX_GROUP_SIZE=16;
+
+    @Test
+    public void testConcurrentCommitsAreEachWrittenOnce() throws Exception{
+        final Map<Long,Long> written=new ConcurrentHashMap<>();
+        final AtomicInteger largestGroup=new AtomicInteger(0);
+        TxnPartition store=mock(TxnPartition.class);
+        doAnswer(new Answer<IOException[]>(){
+            @Override
+            public IOException[] answer(InvocationOnMock invocation) throws Throwable{
+                Object[] args=invocation.getArguments();
+                long[] committed=(long[])args[0];
+                int numCommitted=(Integer)args[1];
+                long commitTs=(Long)args[2];
+                long[] rolledBack=(long[])args[3];
+                int numRolledBack=(Integer)args[4];
+                for(int i=0;i<numCommitted;i++){
+                    Assert.assertNull("Transaction written twice!",written.put(committed[i],commitTs));
+                }
+                for(int i=0;i<numRolledBack;i++){
+                    Assert.assertNull("Transaction written twice!",written.put(rolledBack[i],-1l));
+                }
+                int groupSize=numCommitted+numRolledBack;
+                int largest;
+                while((largest=largestGroup.get())<groupSize && !largestGroup.compareAndSet(largest,groupSize));
+                Thread.sleep(1); //give the next group time to form
+                return null;
+            }
+        }).when(store).recordCompletions(any(long[].class),anyInt(),anyLong(),any(long[].class),anyInt());
+
+        final TxnGroupCommitter committer=new TxnGroupCommitter(store,new TestingTimestampSource(),MAX_GROUP_SIZE,0l);
+        final Map<Long,Long> returned=new ConcurrentHashMap<>();
+        final AtomicLong txnIds=new AtomicLong(0l);
+        final AtomicReference<Throwable> error=new AtomicReference<>();
+        Thread[] threads=new Thread[32];
+        for(int t=0;t<threads.length;t++){
+            threads[t]=new Thread(new Runnable(){
+                @Override
+                public void run(){
+                    try{
+                        for(int i=0;i<50;i++){
+                            long txnId=txnIds.incrementAndGet();
+                            if(txnId%5==0){
+                                committer.rollback(txnId);
+                                returned.put(txnId,-1l);
+                            }else
+                                returned.put(txnId,committer.commit(txnId));
+                        }
+                    }catch(Throwable t){
+                        error.compareAndSet(null,t);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for(Thread thread:threads){
+            thread.join();
+        }
+        Assert.assertNull("Unexpected error: "+error.get(),error.get());
+        Assert.assertEquals("Incorrect number of transactions written!",txnIds.get(),written.size());
+        Assert.assertEquals("Returned commit timestamps do not match those written!",written,returned);
+        Assert.assertTrue("Group exceeded the maximum size!",largestGroup.get()<=MAX_GROUP_SIZE);
+        Assert.assertEquals("Incorrect completion count!",txnIds.get(),committer.getCompletionsWritten());
+        Assert.assertTrue("No commits were grouped!",committer.getGroupsWritten()<committer.getCompletionsWritten());
+    }
+
+    @Test
+    public void testLeaderWaitsForGroupToFill() throws Exception{
+        final AtomicInteger groups=new AtomicInteger(0);
+        TxnPartition store=mock(TxnPartition.class);
+        doAnswer(new Answer<IOException[]>(){
+            @Override
+            public IOException[] answer(InvocationOnMock invocation) throws Throwable{
+                Assert.assertEquals("Group was written before it filled!",2,invocation.getArguments()[1]);
+                groups.incrementAndGet();
+                return null;
+            }
+        }).when(store).recordCompletions(any(long[].class),anyInt(),anyLong(),any(long[].class),anyInt());
+
+        //a window long enough that only a full group can end it
+        final TxnGroupCommitter committer=new TxnGroupCommitter(store,new TestingTimestampSource(),2,60*1000*1000l);
+        final CountDownLatch leaderStarted=new CountDownLatch(1);
+        final AtomicLong leaderTs=new AtomicLong();
+        Thread leader=new Thread(new Runnable(){
+            @Override
+            public void run(){
+                leaderStarted.countDown();
+                try{
+                    leaderTs.set(committer.commit(1l));
+                }catch(IOException e){
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        leader.start();
+        leaderStarted.await();
+        long followerTs=committer.commit(2l);
+        leader.join();
+
+        Assert.assertEquals("Incorrect number of groups written!",1,groups.get());
+        Assert.assertEquals("Grouped commits do not share a timestamp!",leaderTs.get(),followerTs);
+    }
+
+    @Test
+    public void testRollbacksDoNotFetchATimestamp() throws Exception{
+        final AtomicLong commitTs=new AtomicLong(0l);
+        TxnPartition store=mock(TxnPartition.class);
+        doAnswer(new Answer<IOException[]>(){
+            @Override
+            public IOException[] answer(InvocationOnMock invocation) throws Throwable{
+                commitTs.set((Long)invocation.getArguments()[2]);
+                return null;
+            }
+        }).when(store).recordCompletions(any(long[].class),anyInt(),anyLong(),any(long[].class),anyInt());
+
+        TxnGroupCommitter committer=new TxnGroupCommitter(store,new TestingTimestampSource(){
+            @Override
+            public long nextTimestamp(){
+                throw new AssertionError("Fetched a commit timestamp for a rollback!");
+            }
+        },MAX_GROUP_SIZE,0l);
+        committer.rollback(1l);
+        Assert.assertEquals("Incorrect commit timestamp for a group of rollbacks!",-1l,commitTs.get());
+    }
+
+    @Test(expected=IOException.class)
+    public void testFailedWriteFailsTheCommit() throws Exception{
+        TxnPartition store=mock(TxnPartition.class);
+        doThrow(new IOException("write failed")).when(store)
+                .recordCompletions(any(long[].class),anyInt(),anyLong(),any(long[].class),anyInt());
+
+        TxnGroupCommitter committer=new TxnGroupCommitter(store,new TestingTimestampSource(),MAX_GROUP_SIZE,0l);
+        committer.commit(1l);
+    }
+
+    @Test
+    public void testFailedCompletionFailsOnlyItsOwnTransaction() throws Exception{
+        TxnPartition store=mock(TxnPartition.class);
+        doAnswer(new Answer<IOException[]>(){
+            @Override
+            public IOException[] answer(InvocationOnMock invocation) throws Throwable{
+                Object[] args=invocation.getArguments();
+                Assert.assertEquals("Group was written before it filled!",1,args[1]);
+                Assert.assertEquals("Group was written before it filled!",1,args[4]);
+                //the commit is written, but the rollback (which follows it) is not
+                return new IOException[]{null,new IOException("rollback failed")};
+            }
+        }).when(store).recordCompletions(any(long[].class),anyInt(),anyLong(),any(long[].class),anyInt());
+
+        final TxnGroupCommitter committer=new TxnGroupCommitter(store,new TestingTimestampSource(),2,60*1000*1000l);
+        final AtomicReference<Throwable> rollbackError=new AtomicReference<>();
+        Thread rollback=new Thread(new Runnable(){
+            @Override
+            public void run(){
+                try{
+                    committer.rollback(1l);
+                }catch(Throwable t){
+                    rollbackError.set(t);
+                }
+            }
+        });
+        rollback.start();
+        committer.commit(2l);
+        rollback.join();
+
+        Assert.assertTrue("Failed rollback was not reported!",rollbackError.get() instanceof IOException);
+        Assert.assertEquals("Incorrect completion count!",1,committer.getCompletionsWritten());
+    }
+}
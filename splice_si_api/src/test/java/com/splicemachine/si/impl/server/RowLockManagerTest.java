@@ -0,0 +1,297 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.si.impl.server;
+
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+@Category(ArchitectureIndependent.class)
+public class RowLockManagerTest{
+
+    @Test
+    public void testNumberOfStripesIsAPowerOfTwo() throws Exception{
+        RowLockManager manager=new RowLockManager(100,0l);
+        Random random=new Random(0l);
+        byte[] key=new byte[16];
+        for(int i=0;i<1000;i++){
+            random.nextBytes(key);
+            int stripe=manager.stripe(key,0,key.length);
+            Assert.assertTrue("Stripe out of range: "+stripe,stripe>=0 && stripe<128);
+        }
+    }
+
+    @Test
+    public void testContendedRowIsLockedOnceReleased() throws Exception{
+        RowLockManager manager=new RowLockManager(16,10000l);
+        ReentrantLock row=new ReentrantLock();
+        Holder holder=new Holder(row,50l);
+        holder.start();
+        holder.locked.await();
+
+        Lock[] rows={row,new ReentrantLock()};
+        boolean[] locked=manager.lockContended(rows,new int[]{3,1});
+        try{
+            Assert.assertTrue("Row not locked once released!",locked[0]);
+            Assert.assertTrue("Uncontended row not locked!",locked[1]);
+            Assert.assertEquals("Incorrect number of contended rows!",2,manager.getContendedRows());
+            Assert.assertEquals("Incorrect number of stripes locked!",2,manager.getStripesLocked());
+            Assert.assertEquals("Stripes were contended!",0,manager.getContendedStripes());
+        }finally{
+            unlock(rows,locked);
+            holder.join();
+        }
+    }
+
+    @Test
+    public void testRowsOfAStripeAreWaitedForTogether() throws Exception{
+        RowLockManager manager=new RowLockManager(16,0l);
+        Lock[] rows={new ReentrantLock(),new ReentrantLock(),new ReentrantLock()};
+        boolean[] locked=manager.lockContended(rows,new int[]{3,1,3});
+        try{
+            Assert.assertTrue("Rows not locked!",locked[0] && locked[1] && locked[2]);
+            Assert.assertEquals("Incorrect number of stripes locked!",2,manager.getStripesLocked());
+        }finally{
+            unlock(rows,locked);
+        }
+    }
+
+    @Test
+    public void testStripesAreNotHeldOnceLocked() throws Exception{
+        final RowLockManager manager=new RowLockManager(4,0l);
+        Lock[] rows={new ReentrantLock()};
+        boolean[] locked=manager.lockContended(rows,new int[]{2});
+        Assert.assertTrue("Row not locked!",locked[0]);
+        try{
+            //another writer waiting for a different row of the same stripe isn't held up by this batch
+            final AtomicReference<boolean[]> other=new AtomicReference<>();
+            Thread thread=new Thread(new Runnable(){
+                @Override
+                public void run(){
+                    other.set(manager.lockContended(new Lock[]{new ReentrantLock()},new int[]{2}));
+                }
+            });
+            thread.start();
+            thread.join(TimeUnit.SECONDS.toMillis(60));
+            Assert.assertTrue("Row of a released stripe not locked!",other.get()[0]);
+            Assert.assertEquals("Stripe was still held!",0,manager.getContendedStripes());
+        }finally{
+            unlock(rows,locked);
+        }
+    }
+
+    @Test
+    public void testOverlappingBatchesDoNotDeadlock() throws Exception{
+        final int numRows=8;
+        final RowLockManager manager=new RowLockManager(4,1000l);
+        final Lock[] rowLocks=new Lock[numRows];
+        for(int r=0;r<numRows;r++){
+            rowLocks[r]=new ReentrantLock();
+        }
+        final AtomicIntegerArray owners=new AtomicIntegerArray(numRows);
+        final AtomicReference<Throwable> error=new AtomicReference<>();
+        Thread[] threads=new Thread[8];
+        for(int t=0;t<threads.length;t++){
+            final int threadId=t+1;
+            threads[t]=new Thread(new Runnable(){
+                @Override
+                public void run(){
+                    Random random=new Random(threadId);
+                    try{
+                        for(int i=0;i<500;i++){
+                            //lock some distinct rows as a batch does: without waiting, then waiting for the rest
+                            boolean[] wanted=new boolean[numRows];
+                            boolean[] held=new boolean[numRows];
+                            int[] contended=new int[numRows];
+                            int numContended=0;
+                            for(int r=0;r<1+random.nextInt(6);r++){
+                                int row=random.nextInt(numRows);
+                                if(wanted[row]) continue;
+                                wanted[row]=true;
+                                if(rowLocks[row].tryLock())
+                                    held[row]=true;
+                                else
+                                    contended[numContended++]=row;
+                            }
+                            Lock[] locks=new Lock[numContended];
+                            int[] stripes=new int[numContended];
+                            for(int c=0;c<numContended;c++){
+                                locks[c]=rowLocks[contended[c]];
+                                stripes[c]=contended[c]%4;
+                            }
+                            boolean[] locked=manager.lockContended(locks,stripes);
+                            for(int c=0;c<numContended;c++){
+                                held[contended[c]]=locked[c];
+                            }
+                            try{
+                                for(int r=0;r<numRows;r++){
+                                    if(held[r])
+                                        Assert.assertTrue("Row held by two batches!",owners.compareAndSet(r,0,threadId));
+                                }
+                                for(int r=0;r<numRows;r++){
+                                    if(held[r])
+                                        owners.set(r,0);
+                                }
+                            }finally{
+                                for(int r=0;r<numRows;r++){
+                                    if(held[r])
+                                        rowLocks[r].unlock();
+                                }
+                                manager.released(1000l);
+                            }
+                        }
+                    }catch(Throwable t){
+                        error.compareAndSet(null,t);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for(Thread thread:threads){
+            thread.join(TimeUnit.SECONDS.toMillis(60));
+            Assert.assertFalse("Batches deadlocked!",thread.isAlive());
+        }
+        Assert.assertNull("Unexpected error: "+error.get(),error.get());
+        Assert.assertEquals("Incorrect number of batches!",threads.length*500,manager.getBatches());
+    }
+
+    @Test
+    public void testContendedRowTimesOut() throws Exception{
+        RowLockManager manager=new RowLockManager(4,20l);
+        ReentrantLock row=new ReentrantLock();
+        Holder holder=new Holder(row,-1l);
+        holder.start();
+        holder.locked.await();
+
+        Lock[] rows={new ReentrantLock(),row,new ReentrantLock()};
+        long start=System.nanoTime();
+        boolean[] locked=manager.lockContended(rows,new int[]{1,2,3});
+        long waited=TimeUnit.NANOSECONDS.toMillis(System.nanoTime()-start);
+        try{
+            Assert.assertTrue("Uncontended row not locked!",locked[0] && locked[2]);
+            Assert.assertFalse("Contended row locked!",locked[1]);
+            Assert.assertTrue("Waited longer than the maximum wait: "+waited,waited<1000);
+            Assert.assertTrue("Wait not recorded!",manager.getWaitMillis()>0);
+        }finally{
+            unlock(rows,locked);
+            holder.done.countDown();
+            holder.join();
+        }
+    }
+
+    @Test
+    public void testContendedStripeTimesOut() throws Exception{
+        final RowLockManager manager=new RowLockManager(4,5000l);
+        final ReentrantLock hot=new ReentrantLock();
+        Holder holder=new Holder(hot,-1l);
+        holder.start();
+        holder.locked.await();
+        //another batch waits for the hot row, and so holds its stripe, for as long as the holder keeps it
+        Thread waiter=new Thread(new Runnable(){
+            @Override
+            public void run(){
+                if(manager.lockContended(new Lock[]{hot},new int[]{2})[0])
+                    hot.unlock();
+            }
+        });
+        waiter.start();
+        while(manager.getStripesLocked()==0)
+            Thread.sleep(1);
+        //rows have recently been held for about 5ms, so this batch waits about 20ms
+        for(int i=0;i<100;i++){
+            manager.released(TimeUnit.MILLISECONDS.toNanos(5));
+        }
+
+        Lock[] rows={new ReentrantLock(),new ReentrantLock()};
+        long start=System.nanoTime();
+        boolean[] locked=manager.lockContended(rows,new int[]{1,2});
+        long waited=TimeUnit.NANOSECONDS.toMillis(System.nanoTime()-start);
+        try{
+            Assert.assertTrue("Row of an uncontended stripe not locked!",locked[0]);
+            Assert.assertFalse("Row of a contended stripe locked!",locked[1]);
+            Assert.assertTrue("Waited longer than the adapted wait: "+waited,waited<1000);
+            Assert.assertEquals("Incorrect contended stripe count!",1,manager.getContendedStripes());
+            Assert.assertEquals("Incorrect timed out stripe count!",1,manager.getTimedOutStripes());
+        }finally{
+            unlock(rows,locked);
+            holder.done.countDown();
+            holder.join();
+            waiter.join();
+        }
+    }
+
+    @Test
+    public void testNoWaitManagerDoesNotWait() throws Exception{
+        RowLockManager manager=new RowLockManager(4,0l);
+        ReentrantLock row=new ReentrantLock();
+        Holder holder=new Holder(row,-1l);
+        holder.start();
+        holder.locked.await();
+        try{
+            boolean[] locked=manager.lockContended(new Lock[]{row},new int[]{0});
+            Assert.assertFalse("Contended row locked!",locked[0]);
+            Assert.assertEquals("Waited for a contended row!",0,manager.getWaitMillis());
+        }finally{
+            holder.done.countDown();
+            holder.join();
+        }
+    }
+
+    private static void unlock(Lock[] rows,boolean[] locked){
+        for(int i=0;i<rows.length;i++){
+            if(locked[i])
+                rows[i].unlock();
+        }
+    }
+
+    /**
+     * Another writer, which holds a row until it is done, or for a fixed time.
+     */
+    private static class Holder extends Thread{
+        private final Lock row;
+        private final long holdMillis;
+        private final CountDownLatch locked=new CountDownLatch(1);
+        private final CountDownLatch done=new CountDownLatch(1);
+
+        Holder(Lock row,long holdMillis){
+            this.row=row;
+            this.holdMillis=holdMillis;
+        }
+
+        @Override
+        public void run(){
+            row.lock();
+            locked.countDown();
+            try{
+                if(holdMillis<0)
+                    done.await();
+                else
+                    Thread.sleep(holdMillis);
+            }catch(InterruptedException ignored){
+            }finally{
+                row.unlock();
+            }
+        }
+    }
+}
@@ -29,5 +29,33 @@ public interface TimestampClientStatistics{
 	long getNumberTimestampRequests();
 	
  	double getAvgTimestampRequestDuration();
+
+    /**
+     * Returns the number of request messages sent to the timestamp server. Concurrent
+     * timestamp requests are coalesced into a single message, so this is usually less
+     * than {@link #getNumberTimestampRequests()}.
+     *
+     * @return number of request messages sent
+     */
+    long getNumberBatchRequests();
+
+    /**
+     * @return the average number of timestamps requested in each message to the server
+     */
+    double getAvgBatchSize();
+
+    /**
+     * @return the largest number of timestamps requested in a single message to the server
+     */
+    int getMaxBatchSize();
+
+    /**
+     * Returns the distribution of the number of timestamps requested in each message
+     * to the server. Entry {@code i} holds the number of messages which requested between
+     * {@code 2^i} and {@code 2^(i+1)-1} timestamps.
+     *
+     * @return a histogram of batch sizes, in power-of-two buckets
+     */
+    long[] getBatchSizeHistogram();
 	
 }
@@ -41,5 +41,14 @@ public interface TimestampOracleStatistics{
      * @return number of timestamp blocks reserved
      */
     long getNumberBlocksReserved();
+
+    /**
+     * Returns the number of times a timestamp request had to wait for a
+     * block to be reserved, because the block reserved ahead of time in the
+     * background was not yet available.
+     *
+     * @return number of requests which waited on a block reservation
+     */
+    long getNumberReservationStalls();
 	
 }
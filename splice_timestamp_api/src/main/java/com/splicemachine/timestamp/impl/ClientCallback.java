@@ -16,23 +16,48 @@ package com.splicemachine.timestamp.impl;
 
 import com.splicemachine.timestamp.api.Callback;
 
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
 public class ClientCallback implements Callback {
 
-    private final short _callerId;
+    private volatile short _callerId = -1;
     private volatile long _newTimestamp = -1l;
     private Exception _e = null;
     private CountDownLatch _latch = new CountDownLatch(1);
-    		
-    public ClientCallback(short callerId) {
-    	_callerId = callerId;
+    private final CompletableFuture<Long> _future = new CompletableFuture<>();
+    private final long _startTime = System.currentTimeMillis();
+
+    public ClientCallback() {
     }
-    
+
+    /**
+     * @return the id of the request message which carried this call to the server,
+     * or -1 if the call has not been sent yet.
+     */
     public short getCallerId() {
     	return _callerId;
     }
+
+    void setCallerId(short callerId) {
+        _callerId = callerId;
+    }
+
+    /**
+     * @return the time (in milliseconds) at which this call was made
+     */
+    public long getStartTime() {
+        return _startTime;
+    }
+
+    /**
+     * @return a future which is completed when the timestamp for this call is received
+     * (or when the call fails).
+     */
+    public CompletableFuture<Long> getFuture() {
+        return _future;
+    }
     
     public Exception getException() {
        return _e;
@@ -72,15 +97,33 @@ public class ClientCallback implements Callback {
     	return _newTimestamp;
     }
 
+    /**
+     * @return whether this call has received its timestamp or failed
+     */
+    public boolean isDone() {
+        return _latch.getCount() == 0;
+    }
+
+    /**
+     * Fail this call, unless it has already received its timestamp (or failed).
+     */
     public synchronized void error(Exception e) {
+        if (isDone()) return;
         _e = e;
         countDown();
+        _future.completeExceptionally(e);
     }
 
+    /**
+     * Complete this call with its timestamp, unless it has already failed (e.g. because
+     * its caller gave up waiting).
+     */
     public synchronized void complete(long timestamp) {
+        if (isDone()) return;
         _newTimestamp = timestamp;
         countDown();
-    }   
+        _future.complete(timestamp);
+    }
 
     public String toString() {
     	return "Callback (callerId = " + _callerId +
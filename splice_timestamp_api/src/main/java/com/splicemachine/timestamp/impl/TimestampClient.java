@@ -16,14 +16,25 @@ package com.splicemachine.timestamp.impl;
 
 import java.lang.management.ManagementFactory;
 import java.net.InetSocketAddress;
-import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
 import javax.management.InstanceAlreadyExistsException;
 import javax.management.MBeanRegistrationException;
 import javax.management.MBeanServer;
@@ -36,10 +47,9 @@ import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.*;
 import org.jboss.netty.channel.socket.nio.NioClientSocketChannelFactory;
-import org.jboss.netty.handler.codec.frame.FixedLengthFrameDecoder;
+import org.jboss.netty.handler.codec.frame.FrameDecoder;
 import org.spark_project.guava.util.concurrent.ThreadFactoryBuilder;
 import com.splicemachine.concurrent.CountDownLatches;
-import com.splicemachine.timestamp.api.Callback;
 import com.splicemachine.timestamp.api.TimestampClientStatistics;
 import com.splicemachine.timestamp.api.TimestampHostProvider;
 import com.splicemachine.timestamp.api.TimestampIOException;
@@ -50,7 +60,21 @@ import org.apache.log4j.Logger;
  * Accepts concurrent requests for new transactional timestamps and
  * sends them over a shared connection to the remote {@link TimestampServer}.
  * For the caller, the invocation of {@link #getNextTimestamp()}
- * is synchronous.
+ * is synchronous; {@link #getNextTimestampAsync()} can be used instead
+ * to avoid blocking the calling thread.
+ * <p>
+ * Requests are pipelined: up to {@link #MAX_OUTSTANDING_BATCHES} request messages
+ * may be outstanding on the connection at once. Callers which arrive while
+ * that many messages are already waiting for a response are queued, and are
+ * sent to the server together in a single message asking for a contiguous range
+ * of timestamps as soon as one of the outstanding messages is answered. Under
+ * light load each caller is sent on its own, while under heavy load the number of
+ * round trips grows much more slowly than the number of callers.
+ * <p>
+ * Batched requests are only sent to a server which has answered the handshake the client
+ * starts each connection with (see {@link TimestampServer#HANDSHAKE_ID}). Against an older
+ * server, each caller is sent in its own single timestamp request instead, so that clients
+ * and servers can be upgraded independently of each other.
  * <p>
  * This class should generally not be constructed directly.
  *
@@ -64,28 +88,81 @@ public class TimestampClient extends TimestampBaseHandler implements TimestampCl
     private static final short CLIENT_COUNTER_INIT = 100; // actual value doesn't matter
 
     /**
-     * Fixed number of bytes in the message we expect to receive back from the server.
+     * Number of bytes in the response to a single timestamp request (and to the handshake).
+     */
+    private static final int LEGACY_MSG_RECEIVED_LENGTH = 10; // 2 byte client id + 8 byte timestamp
+
+    /**
+     * Number of bytes in the response to a batched request.
+     */
+    private static final int BATCH_MSG_RECEIVED_LENGTH = 13; // 1 byte version + 2 byte client id + 8 byte first timestamp + 2 byte count
+
+    /**
+     * Number of bytes in a single timestamp request.
+     */
+    private static final int LEGACY_MSG_SENT_LENGTH = 2; // 2 byte client id
+
+    /**
+     * Number of bytes in a batched request.
      */
-    private static final int FIXED_MSG_RECEIVED_LENGTH = 10; // 2 byte client id + 8 byte timestamp
+    private static final int BATCH_MSG_SENT_LENGTH = 5; // 1 byte version + 2 byte client id + 2 byte count
+
+    /**
+     * Maximum number of request messages which may be waiting for a response at once.
+     */
+    static final int MAX_OUTSTANDING_BATCHES = 4;
+
+    /**
+     * Number of buckets in the batch size histogram. The last bucket holds
+     * batches of {@link TimestampServer#MAX_TIMESTAMPS_PER_REQUEST}.
+     */
+    private static final int NUM_HISTOGRAM_BUCKETS = 32 - Integer.numberOfLeadingZeros(TimestampServer.MAX_TIMESTAMPS_PER_REQUEST);
 
     private enum State {
         DISCONNECTED, CONNECTING, CONNECTED, SHUTDOWN
     }
 
     /**
-     * A map representing all currently active callers to this TimestampClient
-     * waiting for their response.
+     * A map representing all request messages which have been sent to the server
+     * and are waiting for their response, keyed by the message id.
      */
-    private ConcurrentMap<Short, Callback> clientCallbacks = null;
+    private ConcurrentMap<Short, List<ClientCallback>> clientCallbacks = null;
+
+    /**
+     * Callers which have not yet been sent to the server.
+     */
+    private final Queue<ClientCallback> pendingCallbacks = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Number of request messages which have been sent and not yet answered
+     */
+    private final AtomicInteger outstandingBatches = new AtomicInteger(0);
 
     private final AtomicReference<State> state = new AtomicReference<>(State.DISCONNECTED);
 
+    /**
+     * Whether the server on the current connection accepts batched requests. Only
+     * meaningful once the handshake is complete, i.e. in the CONNECTED state.
+     */
+    private volatile boolean batched = false;
+
+    /**
+     * Number of responses to the handshake received on the current connection. Only
+     * accessed by the I/O thread of the channel.
+     */
+    private int handshakeResponses = 0;
+
     private ClientBootstrap bootstrap;
     private volatile Channel channel;
     private NioClientSocketChannelFactory factory;
 
     /**
-     * Internal unique identifier for a single synchronous call to this instance
+     * Times out the callers of {@link #getNextTimestampAsync()}, who don't have a thread of their own waiting.
+     */
+    private final ScheduledThreadPoolExecutor timeoutExecutor;
+
+    /**
+     * Internal unique identifier for a single request message sent by this instance
      * of {@link TimestampClient}. Necessary in order to subsequently associate
      * a server response with the original request. Although this is an atomic integer,
      * we consume it internally as a short so that we only pass two bytes (not four)
@@ -101,6 +178,10 @@ public class TimestampClient extends TimestampBaseHandler implements TimestampCl
     // for solid definitions of each metric.
     private AtomicLong numRequests = new AtomicLong(0);
     private AtomicLong totalRequestDuration = new AtomicLong(0);
+    private AtomicLong numBatches = new AtomicLong(0);
+    private AtomicLong totalBatchSize = new AtomicLong(0);
+    private AtomicInteger maxBatchSize = new AtomicInteger(0);
+    private AtomicLongArray batchSizeHistogram = new AtomicLongArray(NUM_HISTOGRAM_BUCKETS);
     private TimestampHostProvider timestampHostProvider;
 
 
@@ -114,6 +195,9 @@ public class TimestampClient extends TimestampBaseHandler implements TimestampCl
 
         factory = new NioClientSocketChannelFactory(bossExecutor, workerExecutor);
 
+        timeoutExecutor = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder().setNameFormat("timestampClient-timeout-%d").setDaemon(true).build());
+        timeoutExecutor.setRemoveOnCancelPolicy(true);
+
         bootstrap = new ClientBootstrap(factory);
 
         // If we end up needing to use one of the memory aware executors,
@@ -122,8 +206,16 @@ public class TimestampClient extends TimestampBaseHandler implements TimestampCl
         // bootstrap.getPipeline().addLast("executor", new ExecutionHandler(
         // 	   new OrderedMemoryAwareThreadPoolExecutor(10 /* threads */, 1024*1024, 4*1024*1024)));
 
-        bootstrap.getPipeline().addLast("decoder", new FixedLengthFrameDecoder(FIXED_MSG_RECEIVED_LENGTH));
-        bootstrap.getPipeline().addLast("handler", this);
+        // The decoder keeps the state of its connection, so each connection needs its own
+        bootstrap.setPipelineFactory(new ChannelPipelineFactory() {
+            @Override
+            public ChannelPipeline getPipeline() throws Exception {
+                ChannelPipeline pipeline = Channels.pipeline();
+                pipeline.addLast("decoder", new ResponseDecoder());
+                pipeline.addLast("handler", TimestampClient.this);
+                return pipeline;
+            }
+        });
 
         bootstrap.setOption("tcpNoDelay", false);
         bootstrap.setOption("keepAlive", true);
@@ -153,9 +245,16 @@ public class TimestampClient extends TimestampBaseHandler implements TimestampCl
                 channel.close().awaitUninterruptibly();
             }
             factory.releaseExternalResources();
+            timeoutExecutor.shutdownNow();
         } catch (Throwable t) {
             LOG.error("error shutting down", t);
         }
+        TimestampIOException shutdownException = new TimestampIOException("TimestampClient has been shut down");
+        failOutstanding(shutdownException);
+        ClientCallback pending;
+        while ((pending = pendingCallbacks.poll()) != null) {
+            pending.error(shutdownException);
+        }
     }
 
     /**
@@ -200,68 +299,42 @@ public class TimestampClient extends TimestampBaseHandler implements TimestampCl
 
         CountDownLatches.uncheckedAwait(latchConnect);
         if(channel == null) {
+            state.compareAndSet(State.CONNECTING, State.DISCONNECTED); // let the next caller try again
             throw new TimestampIOException("Unable to connect to TimestampServer");
         }
 
-        // Can only assume connecting (not connected) until channelConnected method is invoked
-        state.set(State.CONNECTING);
+        // Remain connecting (not connected) until the server has answered the handshake,
+        // which is sent once the channelConnected method is invoked
     }
 
     public long getNextTimestamp() throws TimestampIOException {
 
-        // Measure duration of full client request for JMX
-        long requestStartTime = System.currentTimeMillis();
-
         connectIfNeeded();
 
-        short clientCallId = (short) clientCallCounter.getAndIncrement();
-        final ClientCallback callback = new ClientCallback(clientCallId);
-        SpliceLogUtils.debug(LOG, "Starting new client call with id %s", clientCallId);
+        final ClientCallback callback = new ClientCallback();
+        submit(callback);
 
-        // Add this caller (id and callback) to the map of current clients.
-        // If an entry was already present for this caller id, that is a bug,
-        // so throw an exception.
-        if (clientCallbacks.putIfAbsent(clientCallId, callback) != null) {
-            doClientErrorThrow(LOG, "Found existing client callback with caller id %s, so unable to handle new call.", null, clientCallId);
-        }
-
-        try {
-            ChannelBuffer buffer = ChannelBuffers.buffer(2);
-            buffer.writeShort(clientCallId);
-            SpliceLogUtils.trace(LOG, "Writing request message to server for client: %s", callback);
-            ChannelFuture futureWrite = channel.write(buffer);
-            futureWrite.addListener(new ChannelFutureListener() {
-                @Override
-                public void operationComplete(ChannelFuture future) throws Exception {
-                    if (!future.isSuccess()) {
-                        doClientErrorThrow(LOG, "Error writing message from timestamp client to server", future.getCause());
-                    } else {
-                        SpliceLogUtils.trace(LOG, "Request sent. Waiting for response for client: %s", callback);
-                    }
-                }
-            });
-        } catch (Exception e) { // Correct to catch all Exceptions in this case so we can remove client call
-            clientCallbacks.remove(clientCallId);
-            callback.error(e);
-            doClientErrorThrow(LOG, "Exception writing message to timestamp server for client: %s", e, callback);
-        }
-
-        // If we get here, request was successfully sent without exception.
-        // However, we might not have received response yet, so we need to
-        // wait for that now.
+        // The request will be sent as part of a batch, either by this thread or by
+        // whichever thread completes an outstanding request. We might not have received
+        // the response yet, so we need to wait for that now.
 
         try {
             boolean success = callback.await(timeoutMillis);
-            if (!success) {
+            if (!success && detach(callback, new TimestampIOException("Client timed out after " + timeoutMillis + " ms"))) {
                 doClientErrorThrow(LOG, "Client timed out after %s ms waiting for new timestamp: %s", null, timeoutMillis, callback);
             }
         } catch (InterruptedException e) {
-            doClientErrorThrow(LOG, "Interrupted waiting for timestamp client: %s", e, callback);
+            if (detach(callback, new TimestampIOException("Interrupted waiting for timestamp", e))) {
+                doClientErrorThrow(LOG, "Interrupted waiting for timestamp client: %s", e, callback);
+            }
         }
 
         // If we get here, it should mean the client received the response with the timestamp,
         // which we can fetch now from the callback and send it back to the caller.
 
+        if (callback.getException() != null) {
+            doClientErrorThrow(LOG, "Unable to get new timestamp for client: %s", callback.getException(), callback);
+        }
         long timestamp = callback.getNewTimestamp();
         if (timestamp < 0) {
             doClientErrorThrow(LOG, "Invalid timestamp found for client: %s", null, callback);
@@ -269,45 +342,325 @@ public class TimestampClient extends TimestampBaseHandler implements TimestampCl
 
         SpliceLogUtils.debug(LOG, "Client call complete: %s", callback);
 
-        // Since request was successful, update JMX metrics
-        numRequests.incrementAndGet();
-        totalRequestDuration.addAndGet(System.currentTimeMillis() - requestStartTime);
-
         return timestamp;
     }
 
+    /**
+     * Request a new timestamp without blocking the calling thread.
+     * <p>
+     * Like {@link #getNextTimestamp()}, the request times out after the client's timeout, and the future is then
+     * completed exceptionally. A future which times out (or is cancelled) is detached from the request it was sent
+     * in, so the other callers of that request still receive their timestamps.
+     *
+     * @return a future which is completed with the new timestamp, or exceptionally with
+     * a {@link TimestampIOException} if the timestamp could not be obtained.
+     */
+    public CompletableFuture<Long> getNextTimestampAsync() {
+        return getNextTimestampAsync(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Request a new timestamp without blocking the calling thread, giving up after {@code timeout}.
+     *
+     * @see #getNextTimestampAsync()
+     */
+    public CompletableFuture<Long> getNextTimestampAsync(final long timeout, final TimeUnit unit) {
+        final ClientCallback callback = new ClientCallback();
+        try {
+            connectIfNeeded();
+        } catch (TimestampIOException e) {
+            callback.error(e);
+            return callback.getFuture();
+        }
+        final ScheduledFuture<?> timeoutTask;
+        try {
+            timeoutTask = timeoutExecutor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    detach(callback, new TimestampIOException("Client timed out after " + unit.toMillis(timeout) + " ms"));
+                }
+            }, timeout, unit);
+        } catch (RejectedExecutionException e) {
+            callback.error(new TimestampIOException("TimestampClient has been shut down"));
+            return callback.getFuture();
+        }
+        callback.getFuture().whenComplete(new BiConsumer<Long, Throwable>() {
+            @Override
+            public void accept(Long timestamp, Throwable t) {
+                timeoutTask.cancel(false);
+                if (callback.getFuture().isCancelled()) {
+                    detach(callback, new TimestampIOException("Timestamp request was cancelled"));
+                }
+            }
+        });
+        submit(callback);
+        return callback.getFuture();
+    }
+
+    private void submit(ClientCallback callback) {
+        pendingCallbacks.offer(callback);
+        sendPending();
+    }
+
+    /**
+     * Send queued callers to the server, as long as there are fewer than
+     * {@link #MAX_OUTSTANDING_BATCHES} messages waiting for a response. Any callers which
+     * cannot be sent now will be sent when the next response arrives. Nothing is sent
+     * until the handshake is complete.
+     * <p>
+     * If the server does not accept batched requests, each caller is sent on its own
+     * and is not held back by the number of outstanding messages, as older clients did.
+     */
+    private void sendPending() {
+        while (!pendingCallbacks.isEmpty()) {
+            if (state.get() != State.CONNECTED) return;
+            boolean batched = this.batched;
+            int maxOutstanding = batched ? MAX_OUTSTANDING_BATCHES : Integer.MAX_VALUE;
+            int maxBatchSize = batched ? TimestampServer.MAX_TIMESTAMPS_PER_REQUEST : 1;
+            int outstanding = outstandingBatches.get();
+            if (outstanding >= maxOutstanding) return;
+            if (!outstandingBatches.compareAndSet(outstanding, outstanding + 1)) continue;
+
+            List<ClientCallback> batch = new ArrayList<>();
+            ClientCallback next;
+            while (batch.size() < maxBatchSize && (next = pendingCallbacks.poll()) != null) {
+                batch.add(next);
+            }
+            if (batch.isEmpty()) {
+                // another thread sent everything while we were reserving our slot
+                outstandingBatches.decrementAndGet();
+                continue;
+            }
+            sendBatch(batch, batched);
+        }
+    }
+
+    private void sendBatch(final List<ClientCallback> batch, boolean batched) {
+        final short clientCallId = (short) clientCallCounter.getAndIncrement();
+        for (ClientCallback callback : batch) {
+            callback.setCallerId(clientCallId);
+        }
+        SpliceLogUtils.debug(LOG, "Starting new client call with id %s for %s timestamps", clientCallId, batch.size());
+
+        // Add this request (id and callbacks) to the map of current requests.
+        // If an entry was already present for this caller id, that is a bug,
+        // so fail the request.
+        if (clientCallbacks.putIfAbsent(clientCallId, batch) != null) {
+            failBatch(batch, new TimestampIOException(
+                    "Found existing client callback with caller id " + clientCallId + ", so unable to handle new call."));
+            outstandingBatches.decrementAndGet();
+            return;
+        }
+
+        try {
+            Channel c = channel;
+            if (c == null) {
+                throw new TimestampIOException("TimestampClient is not connected to the TimestampServer");
+            }
+            ChannelBuffer buffer;
+            if (batched) {
+                buffer = ChannelBuffers.buffer(BATCH_MSG_SENT_LENGTH);
+                buffer.writeByte(TimestampServer.BATCH_PROTOCOL_VERSION);
+                buffer.writeShort(clientCallId);
+                buffer.writeShort(batch.size());
+            } else {
+                assert batch.size() == 1 : "Single timestamp request for " + batch.size() + " callers";
+                buffer = ChannelBuffers.buffer(LEGACY_MSG_SENT_LENGTH);
+                buffer.writeShort(clientCallId);
+            }
+            SpliceLogUtils.trace(LOG, "Writing request message to server for client call: %s", clientCallId);
+            ChannelFuture futureWrite = c.write(buffer);
+            futureWrite.addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture future) throws Exception {
+                    if (!future.isSuccess()) {
+                        if (clientCallbacks.remove(clientCallId, batch)) {
+                            failBatch(batch, new TimestampIOException("Error writing message from timestamp client to server", future.getCause()));
+                            outstandingBatches.decrementAndGet();
+                            sendPending();
+                        }
+                    } else {
+                        SpliceLogUtils.trace(LOG, "Request sent. Waiting for response for client call: %s", clientCallId);
+                    }
+                }
+            });
+        } catch (Exception e) { // Correct to catch all Exceptions in this case so we can remove client call
+            if (clientCallbacks.remove(clientCallId, batch)) {
+                LOG.error("Exception writing message to timestamp server for client call: " + clientCallId, e);
+                failBatch(batch, e instanceof TimestampIOException ? e : new TimestampIOException("Exception writing message to timestamp server", e));
+                outstandingBatches.decrementAndGet();
+            }
+        }
+    }
+
+    private void failBatch(List<ClientCallback> batch, Exception e) {
+        for (ClientCallback callback : batch) {
+            callback.error(e);
+        }
+    }
+
+    /**
+     * Give up on a caller which is no longer waiting for its timestamp. The other callers sent
+     * in the same request still receive theirs when the response arrives. Only once every caller
+     * of an outstanding request has given up is the request itself dropped, so that a response
+     * which never arrives cannot hold on to one of the {@link #MAX_OUTSTANDING_BATCHES} slots forever.
+     *
+     * @return true if the caller was detached, or false if its timestamp arrived first
+     */
+    private boolean detach(ClientCallback callback, Exception e) {
+        callback.error(e);
+        if (callback.getException() == null) return false;
+        if (pendingCallbacks.remove(callback)) return true; // never sent
+        short callerId = callback.getCallerId();
+        List<ClientCallback> batch = clientCallbacks.get(callerId);
+        if (batch == null || !batch.contains(callback)) return true;
+        for (ClientCallback cb : batch) {
+            if (!cb.isDone()) return true;
+        }
+        if (clientCallbacks.remove(callerId, batch)) {
+            outstandingBatches.decrementAndGet();
+            sendPending();
+        }
+        return true;
+    }
+
+    /**
+     * Fail every request which is waiting for a response from the server.
+     */
+    private void failOutstanding(Exception e) {
+        for (Short callerId : clientCallbacks.keySet()) {
+            List<ClientCallback> batch = clientCallbacks.remove(callerId);
+            if (batch != null) {
+                failBatch(batch, e);
+                outstandingBatches.decrementAndGet();
+            }
+        }
+    }
+
     @Override
     public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
         ChannelBuffer buf = (ChannelBuffer) e.getMessage();
         assert (buf != null);
-        ensureReadableBytes(buf, FIXED_MSG_RECEIVED_LENGTH);
+        if (buf.readableBytes() == LEGACY_MSG_RECEIVED_LENGTH) {
+            short clientCallerId = buf.readShort();
+            long timestamp = buf.readLong();
+            ensureReadableBytes(buf, 0);
+            if (state.get() == State.CONNECTING) {
+                handshakeReceived(ctx, clientCallerId, timestamp);
+            } else {
+                assert (timestamp > 0);
+                deliver(clientCallerId, timestamp, 1);
+            }
+            super.messageReceived(ctx, e);
+            return;
+        }
+        ensureReadableBytes(buf, BATCH_MSG_RECEIVED_LENGTH);
 
+        byte version = buf.readByte();
+        if (version != TimestampServer.BATCH_PROTOCOL_VERSION) {
+            throw new TimestampIOException("Unsupported batched response version " + version);
+        }
         short clientCallerId = buf.readShort();
-        ensureReadableBytes(buf, 8);
+        ensureReadableBytes(buf, 10);
 
-        long timestamp = buf.readLong();
-        assert (timestamp > 0);
+        long firstTimestamp = buf.readLong();
+        assert (firstTimestamp > 0);
+        short numTimestamps = buf.readShort();
         ensureReadableBytes(buf, 0);
 
-        SpliceLogUtils.debug(LOG, "Response from server: clientCallerId = %s, timestamp = %s", clientCallerId, timestamp);
-        Callback cb = clientCallbacks.remove(clientCallerId);
-        if (cb == null) {
-            doClientErrorThrow(LOG, "Client callback with id %s not found, so unable to deliver timestamp %s", null, clientCallerId, timestamp);
+        deliver(clientCallerId, firstTimestamp, numTimestamps);
+        super.messageReceived(ctx, e);
+    }
+
+    /**
+     * Handle a response to the handshake. The first response holds a timestamp, which is not used.
+     * The second tells whether the server accepts batched requests, after which the callers which
+     * queued up while connecting can be sent.
+     */
+    private void handshakeReceived(ChannelHandlerContext ctx, short clientCallerId, long timestamp) {
+        if (clientCallerId != TimestampServer.HANDSHAKE_ID) {
+            LOG.warn(String.format("Unexpected response with id %s to the handshake", clientCallerId));
+            return;
         }
+        if (++handshakeResponses < 2) return;
+
+        if (timestamp == -TimestampServer.BATCH_PROTOCOL_VERSION) {
+            ((ResponseDecoder) ctx.getPipeline().get("decoder")).batched();
+            batched = true;
+            SpliceLogUtils.info(LOG, "TimestampServer accepts batched requests");
+        } else {
+            batched = false;
+            SpliceLogUtils.info(LOG, "TimestampServer does not accept batched requests, so each timestamp is requested on its own");
+        }
+        if (state.compareAndSet(State.CONNECTING, State.CONNECTED)) {
+            sendPending();
+        }
+    }
+
+    /**
+     * Hand out the range of timestamps the server responded with to the callers of the request.
+     */
+    private void deliver(short clientCallerId, long firstTimestamp, int numTimestamps) {
+        SpliceLogUtils.debug(LOG, "Response from server: clientCallerId = %s, timestamps = %s starting at %s", clientCallerId, numTimestamps, firstTimestamp);
+        List<ClientCallback> batch = clientCallbacks.remove(clientCallerId);
+        if (batch == null) {
+            // every caller of the request gave up (or it failed) before the response arrived
+            LOG.warn(String.format("Client callback with id %s not found, so unable to deliver timestamp %s", clientCallerId, firstTimestamp));
+            return;
+        }
+        outstandingBatches.decrementAndGet();
+
+        // Send anybody who queued up while this request was outstanding before
+        // waking up the callers of this one
+        sendPending();
 
-        // This releases the latch the original client thread is waiting for
+        if (numTimestamps != batch.size()) {
+            failBatch(batch, new TimestampIOException("Requested " + batch.size() + " timestamps but received " + numTimestamps));
+            return;
+        }
+
+        // This releases the latch each original client thread is waiting for
         // (to provide the synchronous behavior for that caller) and also
-        // provides the timestamp.
-        cb.complete(timestamp);
+        // provides the timestamp. Callers which gave up waiting are skipped,
+        // and their timestamps are not used.
+        long now = System.currentTimeMillis();
+        long timestamp = firstTimestamp;
+        for (ClientCallback cb : batch) {
+            if (!cb.isDone()) {
+                cb.complete(timestamp);
+                totalRequestDuration.addAndGet(now - cb.getStartTime());
+            }
+            timestamp += TimestampOracle.TIMESTAMP_INCREMENT;
+        }
 
-        super.messageReceived(ctx, e);
+        // Since request was successful, update JMX metrics
+        recordBatch(batch.size());
+    }
+
+    private void recordBatch(int size) {
+        numRequests.addAndGet(size);
+        numBatches.incrementAndGet();
+        totalBatchSize.addAndGet(size);
+        int max;
+        while (size > (max = maxBatchSize.get()) && !maxBatchSize.compareAndSet(max, size)) {
+            // retry until we either set the max or see a larger one
+        }
+        int bucket = Math.min(31 - Integer.numberOfLeadingZeros(size), NUM_HISTOGRAM_BUCKETS - 1);
+        batchSizeHistogram.incrementAndGet(bucket);
     }
 
     @Override
     public void channelConnected(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
         SpliceLogUtils.info(LOG, "Successfully connected to server");
         channel = e.getChannel();
-        state.set(State.CONNECTED);
+        handshakeResponses = 0;
+
+        // Ask whether the server accepts batched requests. An older server takes
+        // these as two requests for a single timestamp.
+        ChannelBuffer handshake = ChannelBuffers.buffer(2 * LEGACY_MSG_SENT_LENGTH);
+        handshake.writeShort(TimestampServer.HANDSHAKE_ID);
+        handshake.writeShort(TimestampServer.HANDSHAKE_ID);
+        e.getChannel().write(handshake);
         super.channelConnected(ctx, e);
     }
 
@@ -321,6 +674,9 @@ public class TimestampClient extends TimestampBaseHandler implements TimestampCl
             channel=null;
             shouldContinue = !state.compareAndSet(s,State.DISCONNECTED);
         }while(shouldContinue);
+        // any responses that were still on their way are lost with the connection
+        failOutstanding(new TimestampIOException("TimestampClient was disconnected from the server"));
+        // queued callers are sent once the new connection has completed its handshake
         connectIfNeeded();
     }
 
@@ -352,6 +708,32 @@ public class TimestampClient extends TimestampBaseHandler implements TimestampCl
         return a / b;
     }
 
+    @Override
+    public long getNumberBatchRequests() {
+        return numBatches.get();
+    }
+
+    @Override
+    public double getAvgBatchSize() {
+        double a = (double) totalBatchSize.get();
+        double b = (double) numBatches.get();
+        return a / b;
+    }
+
+    @Override
+    public int getMaxBatchSize() {
+        return maxBatchSize.get();
+    }
+
+    @Override
+    public long[] getBatchSizeHistogram() {
+        long[] histogram = new long[batchSizeHistogram.length()];
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] = batchSizeHistogram.get(i);
+        }
+        return histogram;
+    }
+
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, ExceptionEvent e) throws Exception {
         if(state.get() != State.SHUTDOWN) {
@@ -364,4 +746,23 @@ public class TimestampClient extends TimestampBaseHandler implements TimestampCl
         TimestampIOException t1 = t != null ? new TimestampIOException(message, t) : new TimestampIOException(message);
         SpliceLogUtils.logAndThrow(logger, String.format(message, args), t1);
     }
+
+    /**
+     * Splits the responses from the server into frames. Responses are single timestamp
+     * responses until the server accepts the handshake, and batched responses after.
+     */
+    private static class ResponseDecoder extends FrameDecoder {
+        private volatile int frameLength = LEGACY_MSG_RECEIVED_LENGTH;
+
+        void batched() {
+            frameLength = BATCH_MSG_RECEIVED_LENGTH;
+        }
+
+        @Override
+        protected Object decode(ChannelHandlerContext ctx, Channel channel, ChannelBuffer buffer) throws Exception {
+            int length = frameLength;
+            if (buffer.readableBytes() < length) return null;
+            return buffer.readBytes(length);
+        }
+    }
 }
@@ -19,7 +19,11 @@ import com.splicemachine.timestamp.api.TimestampIOException;
 import com.splicemachine.timestamp.api.TimestampOracleStatistics;
 import com.splicemachine.utils.SpliceLogUtils;
 import org.apache.log4j.Logger;
+import org.spark_project.guava.util.concurrent.ThreadFactoryBuilder;
 import java.lang.management.ManagementFactory;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import javax.management.InstanceAlreadyExistsException;
 import javax.management.MBeanRegistrationException;
@@ -28,8 +32,19 @@ import javax.management.MalformedObjectNameException;
 import javax.management.NotCompliantMBeanException;
 import javax.management.ObjectName;
 
+/**
+ * Hands out unique, increasing timestamps from blocks reserved through the {@link TimestampBlockManager}.
+ * <p>
+ * Allocating timestamps never takes a lock: the next timestamp is claimed with a CAS on the counter,
+ * which only succeeds if it stays inside of the reserved block. Before the current block runs out, the
+ * next one is reserved on a background thread, so that request threads do not have to wait on the
+ * block manager. Only if the reserved range is exhausted anyway (e.g. by a very large batch) does a
+ * request thread reserve blocks itself.
+ */
 public class TimestampOracle implements TimestampOracleStatistics{
-	private static final long TIMESTAMP_INCREMENT = 0x100l;
+	// Distance between consecutive timestamps. Package-visible so that clients can
+	// expand a batch response into the individual timestamps of its range.
+	static final long TIMESTAMP_INCREMENT = 0x100l;
 
     private static final Logger LOG = Logger.getLogger(TimestampOracle.class);
 
@@ -39,6 +54,24 @@ public class TimestampOracle implements TimestampOracleStatistics{
 	// Maximum timestamp that we can feed before reserving another block
 	private volatile long _maxReservedTimestamp = -1l;
 
+	// Guards against scheduling more than one background reservation at a time
+	private final AtomicBoolean _reservationScheduled = new AtomicBoolean(false);
+	private final ExecutorService _reservationExecutor = Executors.newSingleThreadExecutor(
+			new ThreadFactoryBuilder().setNameFormat("TimestampOracle-reserver").setDaemon(true).build());
+	private final Runnable _reserveAhead = new Runnable(){
+		@Override
+		public void run(){
+			try{
+				reserveAhead();
+			}catch(Throwable t){
+				// a request thread will retry the reservation (and report the failure) if the block runs out
+				LOG.error("Unable to reserve next timestamp block in the background", t);
+			}finally{
+				_reservationScheduled.set(false);
+			}
+		}
+	};
+
 	// Singleton instance, used by TimestampServerHandler
 	private static volatile TimestampOracle _instance;
 	
@@ -46,6 +79,7 @@ public class TimestampOracle implements TimestampOracleStatistics{
 	// for solid definitions of each metric.
     private AtomicLong _numBlocksReserved = new AtomicLong(0);
     private AtomicLong _numTimestampsCreated = new AtomicLong(0);
+    private AtomicLong _numReservationStalls = new AtomicLong(0);
 
     private TimestampBlockManager timestampBlockManager;
     private int blockSize;
@@ -88,26 +122,79 @@ public class TimestampOracle implements TimestampOracleStatistics{
     }
 
 	public long getNextTimestamp() throws TimestampIOException {
-		long nextTS = _timestampCounter.addAndGet(TIMESTAMP_INCREMENT);
-		long maxTS = _maxReservedTimestamp; // avoid the double volatile read
-		if (nextTS > maxTS) {
-			reserveNextBlock(maxTS);
+		return getNextTimestamps(1);
+	}
+
+	/**
+	 * Allocates a contiguous range of {@code count} timestamps, each {@link #TIMESTAMP_INCREMENT}
+	 * apart. The range is handed out as a unit, so no other caller will receive a timestamp
+	 * which falls inside of it.
+	 *
+	 * @param count the number of timestamps to allocate. Must be positive.
+	 * @return the first timestamp in the range
+	 * @throws TimestampIOException if a new block could not be reserved
+	 */
+	public long getNextTimestamps(int count) throws TimestampIOException {
+		assert count > 0 : "Cannot allocate "+count+" timestamps";
+		long rangeSize = TIMESTAMP_INCREMENT*count;
+		while (true) {
+			long currentTS = _timestampCounter.get();
+			long lastTS = currentTS + rangeSize;
+			long maxTS = _maxReservedTimestamp;
+			if (lastTS > maxTS) {
+				// the reserved range is used up before the background thread could extend it
+				_numReservationStalls.incrementAndGet(); // JMX metric
+				reserveBlocks(lastTS);
+				continue;
+			}
+			if (_timestampCounter.compareAndSet(currentTS, lastTS)) {
+				if (maxTS - lastTS < blockSize / 2) {
+					scheduleReservation();
+				}
+				_numTimestampsCreated.addAndGet(count); // JMX metric
+				return currentTS + TIMESTAMP_INCREMENT;
+			}
+		}
+	}
+
+	private void scheduleReservation() {
+		if (_reservationScheduled.compareAndSet(false, true)) {
+			_reservationExecutor.execute(_reserveAhead);
 		}
-		_numTimestampsCreated.incrementAndGet(); // JMX metric
-		return nextTS;
 	}
 
-    private void reserveNextBlock(long priorMaxReservedTimestamp) throws TimestampIOException {
+	/**
+	 * Reserve blocks until at least half a block remains ahead of the counter.
+	 */
+	private void reserveAhead() throws TimestampIOException {
+		synchronized(this) {
+			while (_maxReservedTimestamp - _timestampCounter.get() < blockSize / 2) {
+				reserveNextBlock();
+			}
+		}
+	}
+
+    /**
+     * Reserve as many blocks as are needed for {@code requiredTimestamp} to fall
+     * inside of the reserved range.
+     */
+    private void reserveBlocks(long requiredTimestamp) throws TimestampIOException {
         synchronized(this)  {
-            if (_maxReservedTimestamp > priorMaxReservedTimestamp) return; // some other thread got there first
-            long nextMax = _maxReservedTimestamp + blockSize;
-            timestampBlockManager.reserveNextBlock(nextMax);
-            _maxReservedTimestamp = nextMax;
-            _numBlocksReserved.incrementAndGet(); // JMX metric
-            SpliceLogUtils.debug(LOG, "Next timestamp block reserved with max = %s", _maxReservedTimestamp);
+            while (_maxReservedTimestamp < requiredTimestamp) {
+                reserveNextBlock();
+            }
         }
 	}
 
+    private void reserveNextBlock() throws TimestampIOException {
+        assert Thread.holdsLock(this);
+        long nextMax = _maxReservedTimestamp + blockSize;
+        timestampBlockManager.reserveNextBlock(nextMax);
+        _maxReservedTimestamp = nextMax;
+        _numBlocksReserved.incrementAndGet(); // JMX metric
+        SpliceLogUtils.debug(LOG, "Next timestamp block reserved with max = %s", _maxReservedTimestamp);
+    }
+
 	private void registerJMX() throws MalformedObjectNameException, NotCompliantMBeanException, InstanceAlreadyExistsException, MBeanRegistrationException {
         MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
         registerJMX(mbs);
@@ -128,4 +215,9 @@ public class TimestampOracle implements TimestampOracleStatistics{
 	public long getNumberBlocksReserved() {
 		return _numBlocksReserved.get();
 	}
+
+	@Override
+	public long getNumberReservationStalls() {
+		return _numReservationStalls.get();
+	}
 }
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.timestamp.impl;
+
+import com.splicemachine.utils.SpliceLogUtils;
+import org.apache.log4j.Logger;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.handler.codec.frame.FrameDecoder;
+
+/**
+ * Splits the requests a client sends to the {@link TimestampServer} into frames for the
+ * {@link TimestampServerHandler}, and answers the handshake with which a client asks whether
+ * it may send batched requests (see {@link TimestampServer#HANDSHAKE_ID}).
+ * <p>
+ * Until a client completes the handshake, its requests are single timestamp requests, as sent
+ * by older clients. Once it has, they are all batched requests.
+ * <p>
+ * Keeps the state of a single connection, so a new instance is needed for each channel.
+ */
+public class TimestampRequestDecoder extends FrameDecoder {
+
+    private static final Logger LOG = Logger.getLogger(TimestampRequestDecoder.class);
+
+    private enum Handshake {
+        NONE, STARTED, BATCHED, LEGACY
+    }
+
+    private Handshake handshake = Handshake.NONE;
+
+    @Override
+    protected Object decode(ChannelHandlerContext ctx, Channel channel, ChannelBuffer buffer) throws Exception {
+        if (handshake == Handshake.BATCHED) {
+            if (buffer.readableBytes() < TimestampServer.BATCH_MSG_RECEIVED_LENGTH) return null;
+            return buffer.readBytes(TimestampServer.BATCH_MSG_RECEIVED_LENGTH);
+        }
+
+        if (buffer.readableBytes() < TimestampServer.LEGACY_MSG_RECEIVED_LENGTH) return null;
+        ChannelBuffer frame = buffer.readBytes(TimestampServer.LEGACY_MSG_RECEIVED_LENGTH);
+        short callerId = frame.getShort(0);
+        switch (handshake) {
+            case NONE:
+                // answered like any other request, whether or not this is a handshake
+                handshake = callerId == TimestampServer.HANDSHAKE_ID ? Handshake.STARTED : Handshake.LEGACY;
+                return frame;
+            case STARTED:
+                if (callerId != TimestampServer.HANDSHAKE_ID) {
+                    handshake = Handshake.LEGACY;
+                    return frame;
+                }
+                SpliceLogUtils.debug(LOG, "Client %s sends batched requests", channel.getRemoteAddress());
+                ChannelBuffer ack = ChannelBuffers.buffer(TimestampServer.LEGACY_MSG_SENT_LENGTH);
+                ack.writeShort(TimestampServer.HANDSHAKE_ID);
+                ack.writeLong(-TimestampServer.BATCH_PROTOCOL_VERSION);
+                channel.write(ack);
+                handshake = Handshake.BATCHED;
+                return null;
+            default:
+                return frame;
+        }
+    }
+}
@@ -31,14 +31,46 @@ public class TimestampServer {
     private static final Logger LOG = Logger.getLogger(TimestampServer.class);
 
     /**
-     * Fixed number of bytes in the message we expect to receive from the client.
+     * Number of bytes in a request from a client which asks for a single timestamp. This is the only
+     * request older clients send, so it is always accepted.
      */
-    static final int FIXED_MSG_RECEIVED_LENGTH = 2; // 2 byte client id
+    static final int LEGACY_MSG_RECEIVED_LENGTH = 2; // 2 byte client id
 
     /**
-     * Fixed number of bytes in the message we expect to send back to the client.
+     * Number of bytes in the response to a single timestamp request.
      */
-    static final int FIXED_MSG_SENT_LENGTH = 10; // 2 byte client id + 8 byte timestamp
+    static final int LEGACY_MSG_SENT_LENGTH = 10; // 2 byte client id + 8 byte timestamp
+
+    /**
+     * Number of bytes in a batched request, which a client only sends once the handshake
+     * has shown that the server understands them.
+     */
+    static final int BATCH_MSG_RECEIVED_LENGTH = 5; // 1 byte version + 2 byte client id + 2 byte number of timestamps requested
+
+    /**
+     * Number of bytes in the response to a batched request.
+     */
+    static final int BATCH_MSG_SENT_LENGTH = 13; // 1 byte version + 2 byte client id + 8 byte first timestamp + 2 byte number of timestamps
+
+    /**
+     * Version of the batched messages, sent as their first byte. The server acknowledges the
+     * handshake with its negation in place of a timestamp.
+     */
+    static final byte BATCH_PROTOCOL_VERSION = 1;
+
+    /**
+     * Client id which a client sends twice, as two single timestamp requests, as soon as it connects
+     * to ask whether the server understands batched requests. Every server answers the first with a
+     * timestamp. A server which understands batched requests answers the second with
+     * {@code -BATCH_PROTOCOL_VERSION}, while an older server answers it with another timestamp.
+     * Older clients never send the same id twice in a row, so they are never mistaken for a handshake.
+     */
+    static final short HANDSHAKE_ID = (short)0xBA7C;
+
+    /**
+     * Maximum number of timestamps which a client may request in a single message.
+     */
+    static final int MAX_TIMESTAMPS_PER_REQUEST = 1024;
 
     private int port;
     private ChannelFactory factory;
@@ -56,24 +56,53 @@ public class TimestampServerHandler extends TimestampBaseHandler {
 
         ChannelBuffer buf = (ChannelBuffer) e.getMessage();
         assert buf != null;
-        ensureReadableBytes(buf, TimestampServer.FIXED_MSG_RECEIVED_LENGTH);
-
-        final short callerId = buf.readShort();
-        ensureReadableBytes(buf, 0);
-
-        SpliceLogUtils.trace(LOG, "Received timestamp request from client. Caller id = %s", callerId);
-        long nextTimestamp = oracle.getNextTimestamp();
-        assert nextTimestamp > 0;
+        ChannelBuffer writeBuf;
+        final short callerId;
+        if (buf.readableBytes() == TimestampServer.LEGACY_MSG_RECEIVED_LENGTH) {
+            callerId = buf.readShort();
+            ensureReadableBytes(buf, 0);
+
+            SpliceLogUtils.trace(LOG, "Received timestamp request from client. Caller id = %s", callerId);
+            long nextTimestamp = oracle.getNextTimestamp();
+            assert nextTimestamp > 0;
+
+            writeBuf = ChannelBuffers.buffer(TimestampServer.LEGACY_MSG_SENT_LENGTH);
+            writeBuf.writeShort(callerId);
+            writeBuf.writeLong(nextTimestamp);
+            SpliceLogUtils.debug(LOG, "Responding to caller %s with timestamp %s", callerId, nextTimestamp);
+        } else {
+            ensureReadableBytes(buf, TimestampServer.BATCH_MSG_RECEIVED_LENGTH);
+            byte version = buf.readByte();
+            if (version != TimestampServer.BATCH_PROTOCOL_VERSION) {
+                throw new TimestampIOException("Unsupported batched request version " + version);
+            }
+            callerId = buf.readShort();
+            ensureReadableBytes(buf, 2);
+
+            short numTimestamps = buf.readShort();
+            ensureReadableBytes(buf, 0);
+            if (numTimestamps <= 0 || numTimestamps > TimestampServer.MAX_TIMESTAMPS_PER_REQUEST) {
+                throw new TimestampIOException("Invalid number of timestamps " + numTimestamps +
+                        " requested by caller id " + callerId);
+            }
 
+            SpliceLogUtils.trace(LOG, "Received request for %s timestamps from client. Caller id = %s", numTimestamps, callerId);
+            long firstTimestamp = oracle.getNextTimestamps(numTimestamps);
+            assert firstTimestamp > 0;
+
+            // Respond to the client with the first timestamp of the range it was given
+            writeBuf = ChannelBuffers.buffer(TimestampServer.BATCH_MSG_SENT_LENGTH);
+            writeBuf.writeByte(TimestampServer.BATCH_PROTOCOL_VERSION);
+            writeBuf.writeShort(callerId);
+            writeBuf.writeLong(firstTimestamp);
+            writeBuf.writeShort(numTimestamps);
+            SpliceLogUtils.debug(LOG, "Responding to caller %s with %s timestamps starting at %s", callerId, numTimestamps, firstTimestamp);
+        }
 
         //
         // Respond to the client
         //
 
-        ChannelBuffer writeBuf = ChannelBuffers.buffer(TimestampServer.FIXED_MSG_SENT_LENGTH);
-        writeBuf.writeShort(callerId);
-        writeBuf.writeLong(nextTimestamp);
-        SpliceLogUtils.debug(LOG, "Responding to caller %s with timestamp %s", callerId, nextTimestamp);
         ChannelFuture futureResponse = e.getChannel().write(writeBuf); // Could also use Channels.write
         futureResponse.addListener(new ChannelFutureListener() {
                                        @Override
@@ -0,0 +1,358 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.timestamp.impl;
+
+import com.splicemachine.timestamp.api.TimestampBlockManager;
+import com.splicemachine.timestamp.api.TimestampHostProvider;
+import com.splicemachine.timestamp.api.TimestampIOException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests how the {@link TimestampClient} batches its callers, how it detaches callers which give up
+ * waiting, and that it falls back to single timestamp requests against an older server.
+ * <p>
+ * Most of the tests run against a server which the test itself plays, over a plain socket, so that
+ * it controls when each response is sent.
+ */
+public class TimestampClientTest{
+    private static final int SHORT_TIMEOUT = 500;
+    private static final long INCREMENT = TimestampOracle.TIMESTAMP_INCREMENT;
+
+    private ServerSocket serverSocket;
+    private TimestampClient client;
+
+    @Before
+    public void setUp() throws Exception{
+        serverSocket = new ServerSocket(0);
+    }
+
+    @After
+    public void tearDown() throws Exception{
+        if(client!=null)
+            client.shutdown();
+        serverSocket.close();
+    }
+
+    @Test(timeout = 10000)
+    public void testCallersQueuedBehindOutstandingRequestsAreBatched() throws Exception{
+        client = client(serverSocket.getLocalPort(),10000);
+        List<CompletableFuture<Long>> futures = new ArrayList<>();
+        futures.add(request());
+        try(Socket socket = serverSocket.accept()){
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            acceptHandshake(in,out,true);
+            // each caller is sent on its own while there are free slots
+            short[] ids = fillSlots(futures,in);
+
+            // every slot is taken, so these are sent together once a response arrives
+            futures.add(request());
+            futures.add(request());
+            respondBatch(out,ids[0],1000L,1);
+            short batchId = readBatch(in,2);
+            respondBatch(out,batchId,2000L,2);
+            for(int i=1;i<ids.length;i++){
+                respondBatch(out,ids[i],3000L*i,1);
+            }
+
+            Assert.assertEquals(1000L,futures.get(0).get().longValue());
+            for(int i=1;i<ids.length;i++){
+                Assert.assertEquals(3000L*i,futures.get(i).get().longValue());
+            }
+            Assert.assertEquals(2000L,futures.get(4).get().longValue());
+            Assert.assertEquals(2000L+INCREMENT,futures.get(5).get().longValue());
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testTimedOutCallerIsDetachedFromItsBatch() throws Exception{
+        client = client(serverSocket.getLocalPort(),SHORT_TIMEOUT);
+        List<CompletableFuture<Long>> futures = new ArrayList<>();
+        futures.add(request());
+        try(Socket socket = serverSocket.accept()){
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            acceptHandshake(in,out,true);
+            short[] ids = fillSlots(futures,in);
+
+            // a blocking caller and a future are queued, and then sent together
+            Caller caller = new Caller();
+            caller.start();
+            caller.awaitQueued();
+            CompletableFuture<Long> sameBatch = request();
+            respondBatch(out,ids[0],1000L,1);
+            short batchId = readBatch(in,2);
+
+            caller.join();
+            Assert.assertTrue("Caller did not time out",caller.error.get() instanceof TimestampIOException);
+            Assert.assertFalse("Caller in the same batch was failed",sameBatch.isDone());
+
+            respondBatch(out,batchId,2000L,2);
+            Assert.assertEquals("Caller in the same batch did not receive its timestamp",
+                    2000L+INCREMENT,sameBatch.get().longValue());
+            Assert.assertEquals(1000L,futures.get(0).get().longValue());
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testTimedOutFutureIsDetachedFromItsBatch() throws Exception{
+        client = client(serverSocket.getLocalPort(),SHORT_TIMEOUT);
+        List<CompletableFuture<Long>> futures = new ArrayList<>();
+        futures.add(request());
+        try(Socket socket = serverSocket.accept()){
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            acceptHandshake(in,out,true);
+            short[] ids = fillSlots(futures,in);
+
+            // a future with the client's timeout and one which waits longer are queued, and then sent together
+            CompletableFuture<Long> timesOut = client.getNextTimestampAsync();
+            CompletableFuture<Long> sameBatch = request();
+            respondBatch(out,ids[0],1000L,1);
+            short batchId = readBatch(in,2);
+
+            try{
+                timesOut.get();
+                Assert.fail("Future did not time out");
+            }catch(ExecutionException e){
+                Assert.assertTrue("Future did not time out",e.getCause() instanceof TimestampIOException);
+            }
+            Assert.assertFalse("Caller in the same batch was failed",sameBatch.isDone());
+
+            respondBatch(out,batchId,2000L,2);
+            Assert.assertEquals("Caller in the same batch did not receive its timestamp",
+                    2000L+INCREMENT,sameBatch.get().longValue());
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testCancelledFutureFreesItsSlot() throws Exception{
+        client = client(serverSocket.getLocalPort(),10000);
+        List<CompletableFuture<Long>> futures = new ArrayList<>();
+        futures.add(request());
+        try(Socket socket = serverSocket.accept()){
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            acceptHandshake(in,out,true);
+            short[] ids = fillSlots(futures,in);
+
+            // the only caller of the last request gives up, so the queued caller is sent in its place
+            CompletableFuture<Long> queued = request();
+            futures.get(ids.length-1).cancel(true);
+            short queuedId = readBatch(in,1);
+            respondBatch(out,ids[ids.length-1],1000L,1);
+            respondBatch(out,queuedId,2000L,1);
+            Assert.assertEquals(2000L,queued.get().longValue());
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testAbandonedRequestFreesItsSlot() throws Exception{
+        client = client(serverSocket.getLocalPort(),SHORT_TIMEOUT);
+        List<CompletableFuture<Long>> futures = new ArrayList<>();
+        futures.add(request());
+        try(Socket socket = serverSocket.accept()){
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            acceptHandshake(in,out,true);
+            readBatch(in,1);
+            for(int i=2;i<TimestampClient.MAX_OUTSTANDING_BATCHES;i++){
+                futures.add(request());
+                readBatch(in,1);
+            }
+
+            // the last slot is taken by a request with a single caller, who gives up
+            Caller caller = new Caller();
+            caller.start();
+            short abandonedId = readBatch(in,1);
+            CompletableFuture<Long> queued = request();
+            caller.join();
+            Assert.assertTrue("Caller did not time out",caller.error.get() instanceof TimestampIOException);
+
+            short queuedId = readBatch(in,1);
+            // a late response to the abandoned request is ignored
+            respondBatch(out,abandonedId,1000L,1);
+            respondBatch(out,queuedId,2000L,1);
+            Assert.assertEquals(2000L,queued.get().longValue());
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testSingleTimestampRequestsAgainstOlderServer() throws Exception{
+        client = client(serverSocket.getLocalPort(),10000);
+        List<CompletableFuture<Long>> futures = new ArrayList<>();
+        futures.add(request());
+        try(Socket socket = serverSocket.accept()){
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            acceptHandshake(in,out,false);
+
+            // an older server reads two byte requests, and a caller is never held back by the outstanding ones
+            for(int i=1;i<2*TimestampClient.MAX_OUTSTANDING_BATCHES;i++){
+                futures.add(request());
+            }
+            Set<Short> ids = new HashSet<>();
+            short[] sent = new short[futures.size()];
+            Set<Long> expected = new HashSet<>();
+            for(int i=0;i<sent.length;i++){
+                sent[i] = in.readShort();
+                Assert.assertTrue("Caller id was reused",ids.add(sent[i]));
+                expected.add(1000L*(i+1));
+            }
+            // answered out of order, as responses are matched to callers by their id
+            for(int i=sent.length-1;i>=0;i--){
+                out.writeShort(sent[i]);
+                out.writeLong(1000L*(i+1));
+            }
+            out.flush();
+
+            Set<Long> received = new HashSet<>();
+            for(CompletableFuture<Long> future : futures){
+                received.add(future.get());
+            }
+            Assert.assertEquals("Incorrect timestamps received",expected,received);
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void testManyCallersAgainstTimestampServer() throws Exception{
+        int port = TimestampServerTest.freePort();
+        TimestampServer server = new TimestampServer(port,mock(TimestampBlockManager.class),1 << 20);
+        server.startServer();
+        try{
+            client = client(port,10000);
+            long first = client.getNextTimestamp();
+            List<CompletableFuture<Long>> futures = new ArrayList<>();
+            for(int i=0;i<1000;i++){
+                futures.add(request());
+            }
+            Set<Long> timestamps = new HashSet<>();
+            for(CompletableFuture<Long> future : futures){
+                long timestamp = future.get(10,TimeUnit.SECONDS);
+                Assert.assertTrue("Timestamp is not after an earlier one",timestamp > first);
+                Assert.assertTrue("Timestamp was handed out twice",timestamps.add(timestamp));
+            }
+        }finally{
+            server.stopServer();
+        }
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+
+    private static TimestampClient client(int port,int timeoutMillis) throws Exception{
+        TimestampHostProvider hostProvider = mock(TimestampHostProvider.class);
+        when(hostProvider.getHost()).thenReturn("localhost");
+        when(hostProvider.getPort()).thenReturn(port);
+        return new TimestampClient(timeoutMillis,hostProvider);
+    }
+
+    /**
+     * Request a timestamp which waits longer than any test, whatever the client's timeout.
+     */
+    private CompletableFuture<Long> request(){
+        return client.getNextTimestampAsync(1,TimeUnit.MINUTES);
+    }
+
+    /**
+     * Read the handshake, and answer it as a server which does (or does not) accept batched requests.
+     */
+    private static void acceptHandshake(DataInputStream in,DataOutputStream out,boolean batched) throws IOException{
+        Assert.assertEquals(TimestampServer.HANDSHAKE_ID,in.readShort());
+        Assert.assertEquals(TimestampServer.HANDSHAKE_ID,in.readShort());
+        out.writeShort(TimestampServer.HANDSHAKE_ID);
+        out.writeLong(1L);
+        out.writeShort(TimestampServer.HANDSHAKE_ID);
+        out.writeLong(batched ? -TimestampServer.BATCH_PROTOCOL_VERSION : 2L);
+        out.flush();
+    }
+
+    /**
+     * Read the requests of the first caller, which is already in {@code futures}, and of as many more callers
+     * as it takes to fill every slot.
+     */
+    private short[] fillSlots(List<CompletableFuture<Long>> futures,DataInputStream in) throws Exception{
+        short[] ids = new short[TimestampClient.MAX_OUTSTANDING_BATCHES];
+        ids[0] = readBatch(in,1);
+        for(int i=1;i<ids.length;i++){
+            futures.add(request());
+            ids[i] = readBatch(in,1);
+        }
+        return ids;
+    }
+
+    /**
+     * @return the id of the batched request
+     */
+    private static short readBatch(DataInputStream in,int expectedSize) throws IOException{
+        Assert.assertEquals("Incorrect version",TimestampServer.BATCH_PROTOCOL_VERSION,in.readByte());
+        short id = in.readShort();
+        Assert.assertEquals("Incorrect batch size",expectedSize,in.readShort());
+        return id;
+    }
+
+    private static void respondBatch(DataOutputStream out,short id,long firstTimestamp,int size) throws IOException{
+        out.writeByte(TimestampServer.BATCH_PROTOCOL_VERSION);
+        out.writeShort(id);
+        out.writeLong(firstTimestamp);
+        out.writeShort(size);
+        out.flush();
+    }
+
+    /**
+     * A caller blocked in {@link TimestampClient#getNextTimestamp()}.
+     */
+    private class Caller extends Thread{
+        private final AtomicReference<Exception> error = new AtomicReference<>();
+
+        @Override
+        public void run(){
+            try{
+                client.getNextTimestamp();
+            }catch(Exception e){
+                error.set(e);
+            }
+        }
+
+        /**
+         * Wait until the caller has been queued, and is waiting for its timestamp.
+         */
+        void awaitQueued() throws InterruptedException{
+            while(getState()!=State.TIMED_WAITING){
+                Thread.sleep(1);
+            }
+        }
+    }
+}
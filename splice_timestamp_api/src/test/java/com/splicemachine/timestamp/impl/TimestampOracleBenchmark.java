@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.timestamp.impl;
+
+import com.splicemachine.timestamp.api.TimestampBlockManager;
+import com.splicemachine.timestamp.api.TimestampIOException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Measures the number of timestamps per second the {@link TimestampOracle} can hand out,
+ * as the number of requesting threads grows.
+ * <p>
+ * The block manager simulates the latency of persisting a block reservation, so that the
+ * benchmark also shows whether request threads stall on block reservation.
+ * <p>
+ * Run with {@code main()} to measure each thread count in turn, or through the JMH runner
+ * directly (e.g. {@code -t 8}) for a single thread count.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1) // the oracle is a singleton, so every trial needs its own JVM
+public class TimestampOracleBenchmark{
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16, 32};
+    private static final int BATCH_SIZE = 16;
+
+    /**
+     * Time (in microseconds) it takes to reserve a block
+     */
+    @Param({"0", "1000"})
+    public int reservationLatencyMicros;
+
+    @Param({"32768", "1048576"})
+    public int blockSize;
+
+    private TimestampOracle oracle;
+
+    @Setup
+    public void setUp() throws TimestampIOException{
+        oracle = TimestampOracle.getInstance(new SimulatedBlockManager(reservationLatencyMicros), blockSize);
+    }
+
+    @Benchmark
+    public long nextTimestamp() throws TimestampIOException{
+        return oracle.getNextTimestamp();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public long nextTimestampBatch() throws TimestampIOException{
+        return oracle.getNextTimestamps(BATCH_SIZE);
+    }
+
+    public static void main(String... args) throws RunnerException{
+        for(int threads : THREAD_COUNTS){
+            Options options = new OptionsBuilder()
+                    .include(TimestampOracleBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+
+    private static class SimulatedBlockManager implements TimestampBlockManager{
+        private final long latencyNanos;
+        private volatile long maxReserved = 0L;
+
+        SimulatedBlockManager(int latencyMicros){
+            this.latencyNanos = TimeUnit.MICROSECONDS.toNanos(latencyMicros);
+        }
+
+        @Override
+        public void reserveNextBlock(long currentMaxReserved) throws TimestampIOException{
+            if(latencyNanos > 0)
+                LockSupport.parkNanos(latencyNanos);
+            maxReserved = currentMaxReserved;
+        }
+
+        @Override
+        public long initialize() throws TimestampIOException{
+            return maxReserved;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.timestamp.impl;
+
+import com.splicemachine.timestamp.api.TimestampBlockManager;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests the messages the {@link TimestampServer} accepts, both from older clients which request
+ * a single timestamp at a time and from clients which batch their requests.
+ */
+public class TimestampServerTest{
+    private static final int BLOCK_SIZE = 1 << 20;
+
+    private TimestampServer server;
+    private int port;
+
+    @Before
+    public void setUp() throws Exception{
+        port = freePort();
+        server = new TimestampServer(port,mock(TimestampBlockManager.class),BLOCK_SIZE);
+        server.startServer();
+    }
+
+    @After
+    public void tearDown() throws Exception{
+        server.stopServer();
+    }
+
+    @Test(timeout = 10000)
+    public void testSingleTimestampRequests() throws Exception{
+        try(Socket socket = new Socket("localhost",port)){
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            long previous = 0L;
+            for(short id = 100;id < 110;id++){
+                out.writeShort(id);
+                out.flush();
+                Assert.assertEquals("Incorrect caller id",id,in.readShort());
+                long timestamp = in.readLong();
+                Assert.assertTrue("Timestamps are not increasing",timestamp > previous);
+                previous = timestamp;
+            }
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testSingleTimestampRequestsStartingWithHandshakeId() throws Exception{
+        // an older client may happen to use the handshake id for its first request, but never twice in a row
+        try(Socket socket = new Socket("localhost",port)){
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            short[] ids = {TimestampServer.HANDSHAKE_ID,(short)(TimestampServer.HANDSHAKE_ID + 1),TimestampServer.HANDSHAKE_ID};
+            for(short id : ids){
+                out.writeShort(id);
+                out.flush();
+                Assert.assertEquals("Incorrect caller id",id,in.readShort());
+                Assert.assertTrue("Not a timestamp",in.readLong() > 0);
+            }
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testBatchedRequests() throws Exception{
+        try(Socket socket = new Socket("localhost",port)){
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            handshake(out,in);
+
+            long first = batch(out,in,(short)5,(short)3);
+            long second = batch(out,in,(short)6,(short)1);
+            Assert.assertTrue("Batches overlap",second >= first + 3 * TimestampOracle.TIMESTAMP_INCREMENT);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testLargestBatch() throws Exception{
+        try(Socket socket = new Socket("localhost",port)){
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            handshake(out,in);
+
+            long first = batch(out,in,(short)7,(short)TimestampServer.MAX_TIMESTAMPS_PER_REQUEST);
+            long next = batch(out,in,(short)8,(short)1);
+            Assert.assertTrue("Batches overlap",
+                    next >= first + TimestampServer.MAX_TIMESTAMPS_PER_REQUEST * TimestampOracle.TIMESTAMP_INCREMENT);
+        }
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+
+    private static void handshake(DataOutputStream out,DataInputStream in) throws IOException{
+        out.writeShort(TimestampServer.HANDSHAKE_ID);
+        out.writeShort(TimestampServer.HANDSHAKE_ID);
+        out.flush();
+        Assert.assertEquals(TimestampServer.HANDSHAKE_ID,in.readShort());
+        Assert.assertTrue("First handshake response is not a timestamp",in.readLong() > 0);
+        Assert.assertEquals(TimestampServer.HANDSHAKE_ID,in.readShort());
+        Assert.assertEquals("Handshake was not acknowledged",-TimestampServer.BATCH_PROTOCOL_VERSION,in.readLong());
+    }
+
+    /**
+     * @return the first timestamp of the batch
+     */
+    private static long batch(DataOutputStream out,DataInputStream in,short id,short count) throws IOException{
+        out.writeByte(TimestampServer.BATCH_PROTOCOL_VERSION);
+        out.writeShort(id);
+        out.writeShort(count);
+        out.flush();
+        Assert.assertEquals("Incorrect version",TimestampServer.BATCH_PROTOCOL_VERSION,in.readByte());
+        Assert.assertEquals("Incorrect caller id",id,in.readShort());
+        long first = in.readLong();
+        Assert.assertTrue("Not a timestamp",first > 0);
+        Assert.assertEquals("Incorrect number of timestamps",count,in.readShort());
+        return first;
+    }
+
+    static int freePort() throws IOException{
+        try(ServerSocket socket = new ServerSocket(0)){
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,327 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.collections;
+
+import com.splicemachine.annotations.ThreadSafe;
+import org.spark_project.guava.base.Preconditions;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A thread-safe Cache that is keyed by a primitive long.
+ *
+ * The cache is split into a fixed number of segments, chosen by the high bits of the key's hash. Each
+ * segment is a fixed-size open-addressing table (linear probing, with backward-shift deletion) whose keys
+ * are held in a {@code long[]}, so neither lookups nor inserts box the key, and lookups do not allocate.
+ *
+ * Lookups are optimistic: they read the segment without taking any lock, and only fall back to a read lock
+ * if a writer modified the segment while the lookup was in progress. Writers take the segment's write lock.
+ *
+ * When a segment is full, an entry is evicted using the CLOCK algorithm (an approximation of LRU): a
+ * lookup hit marks the entry as referenced, and the clock hand sweeps the segment, clearing the mark on
+ * referenced entries and evicting the first entry which has not been referenced since the hand last passed it.
+ *
+ * Because eviction happens per-segment, the cache may evict an entry slightly before it holds {@code maxEntries}
+ * elements in total, if keys are not evenly distributed among the segments.
+ */
+@ThreadSafe
+public class ConcurrentLongKeyedCache<V>{
+    private final Segment<V>[] segments;
+    private final int segmentShift;
+    private final int maxSize;
+
+    private final LongAdder hits=new LongAdder();
+    private final LongAdder misses=new LongAdder();
+    private final LongAdder evictions=new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    private ConcurrentLongKeyedCache(int maxEntries,int concurrencyLevel){
+        int numSegments=1;
+        int shift=0;
+        while(numSegments<concurrencyLevel && 2*numSegments<=maxEntries){
+            numSegments<<=1;
+            shift++;
+        }
+        this.segmentShift=32-shift;
+        this.segments=new Segment[numSegments];
+        int segmentCapacity=(maxEntries+numSegments-1)/numSegments;
+        for(int i=0;i<numSegments;i++){
+            segments[i]=new Segment<>(segmentCapacity);
+        }
+        this.maxSize=segmentCapacity*numSegments;
+    }
+
+    /**
+     * @param key the key to lookup
+     * @return the element attached to the specified key, or {@code null} if no element with
+     * {@code key} is present in the cache
+     */
+    public V get(long key){
+        int hash=hash(key);
+        V value=segmentFor(hash).get(key,hash);
+        if(value!=null)
+            hits.increment();
+        else
+            misses.increment();
+        return value;
+    }
+
+    /**
+     * Determine whether an element is cached for {@code key}, without affecting either the
+     * cache statistics or the eviction order.
+     *
+     * @param key the key to lookup
+     * @return true if an element is present for {@code key}
+     */
+    public boolean containsKey(long key){
+        int hash=hash(key);
+        return segmentFor(hash).contains(key,hash);
+    }
+
+    /**
+     * Put the specified element in the cache, replacing any element which is already
+     * present for the same key. If the cache is full, another entry is evicted to make room.
+     *
+     * @param key the key for the element.
+     * @param value the value for the element.
+     */
+    public void put(long key,V value){
+        assert value!=null: "Cannot insert a null value!";
+        int hash=hash(key);
+        if(segmentFor(hash).put(key,hash,value))
+            evictions.increment();
+    }
+
+    /**
+     * @return the current number of entries in the cache
+     */
+    public int size(){
+        int size=0;
+        for(Segment<V> segment : segments){
+            size+=segment.size;
+        }
+        return size;
+    }
+
+    /**
+     * @return the maximum number of entries the cache can hold
+     */
+    public int maxSize(){ return maxSize; }
+
+    public long hitCount(){ return hits.sum(); }
+
+    public long missCount(){ return misses.sum(); }
+
+    public long requestCount(){ return hitCount()+missCount(); }
+
+    public long evictionCount(){ return evictions.sum(); }
+
+    /**
+     * @return the fraction of lookups which were hits, or {@code 1.0} if no lookups have been made
+     */
+    public double hitRate(){
+        long hitCount=hitCount();
+        long requestCount=hitCount+missCount();
+        return requestCount==0?1.0d:(double)hitCount/requestCount;
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private Segment<V> segmentFor(int hash){
+        return segments.length==1?segments[0]:segments[hash>>>segmentShift];
+    }
+
+    private static int hash(long key){
+        //the murmur3 64-bit finalizer, which spreads sequential keys(such as transaction ids) evenly
+        key^=key>>>33;
+        key*=0xff51afd7ed558ccdL;
+        key^=key>>>33;
+        key*=0xc4ceb9fe1a85ec53L;
+        key^=key>>>33;
+        return (int)key;
+    }
+
+    private static final class Segment<V> extends StampedLock{
+        private final long[] keys;
+        private final Object[] values; //null marks an empty slot
+        private final boolean[] referenced;
+        private final int mask;
+        private final int capacity;
+        private volatile int size;
+        private int hand;
+
+        Segment(int capacity){
+            int tableSize=1;
+            //keep the load factor below 0.75 so that probe sequences stay short
+            while(tableSize<capacity+(capacity+2)/3){
+                tableSize<<=1;
+            }
+            this.capacity=capacity;
+            this.keys=new long[tableSize];
+            this.values=new Object[tableSize];
+            this.referenced=new boolean[tableSize];
+            this.mask=tableSize-1;
+        }
+
+        V get(long key,int hash){
+            long stamp=tryOptimisticRead();
+            V value=find(key,hash,true);
+            if(!validate(stamp)){
+                stamp=readLock();
+                try{
+                    value=find(key,hash,true);
+                }finally{
+                    unlockRead(stamp);
+                }
+            }
+            return value;
+        }
+
+        boolean contains(long key,int hash){
+            long stamp=tryOptimisticRead();
+            boolean found=find(key,hash,false)!=null;
+            if(!validate(stamp)){
+                stamp=readLock();
+                try{
+                    found=find(key,hash,false)!=null;
+                }finally{
+                    unlockRead(stamp);
+                }
+            }
+            return found;
+        }
+
+        /**
+         * @return true if an entry was evicted to make room for this one
+         */
+        boolean put(long key,int hash,V value){
+            long stamp=writeLock();
+            try{
+                int position=hash&mask;
+                while(values[position]!=null){
+                    if(keys[position]==key){
+                        values[position]=value;
+                        referenced[position]=true;
+                        return false;
+                    }
+                    position=(position+1)&mask;
+                }
+                boolean evicted=false;
+                if(size>=capacity){
+                    evict();
+                    evicted=true;
+                    //the eviction may have shifted entries, so find the empty slot again
+                    position=hash&mask;
+                    while(values[position]!=null){
+                        position=(position+1)&mask;
+                    }
+                }
+                keys[position]=key;
+                values[position]=value;
+                referenced[position]=false;
+                size++;
+                return evicted;
+            }finally{
+                unlockWrite(stamp);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private V find(long key,int hash,boolean markReferenced){
+            int position=hash&mask;
+            /*
+             * When reading optimistically, the table may be modified underneath us, so bound
+             * the probe by the table size rather than relying on finding an empty slot
+             */
+            for(int i=0;i<=mask;i++){
+                Object value=values[position];
+                if(value==null) return null;
+                if(keys[position]==key){
+                    if(markReferenced && !referenced[position])
+                        referenced[position]=true;
+                    return (V)value;
+                }
+                position=(position+1)&mask;
+            }
+            return null;
+        }
+
+        private void evict(){
+            while(true){
+                int position=hand;
+                if(values[position]!=null){
+                    if(referenced[position]){
+                        //give it a second chance
+                        referenced[position]=false;
+                    }else{
+                        /*
+                         * The hand stays where it is, since the deletion may shift
+                         * an entry which hasn't been visited yet into this slot
+                         */
+                        delete(position);
+                        return;
+                    }
+                }
+                hand=(position+1)&mask;
+            }
+        }
+
+        private void delete(int position){
+            int empty=position;
+            int next=position;
+            while(true){
+                next=(next+1)&mask;
+                if(values[next]==null) break;
+                int home=hash(keys[next])&mask;
+                //leave the entry where it is if its home slot lies cyclically within (empty,next]
+                boolean inRange=empty<=next?(empty<home && home<=next):(empty<home || home<=next);
+                if(inRange) continue;
+                keys[empty]=keys[next];
+                values[empty]=values[next];
+                referenced[empty]=referenced[next];
+                empty=next;
+            }
+            values[empty]=null;
+            referenced[empty]=false;
+            size--;
+        }
+    }
+
+    public static <V> Builder<V> newBuilder(){
+        return new Builder<>();
+    }
+
+    public static class Builder<V>{
+        private int size=-1;
+        private int concurrencyLevel=16;
+
+        public Builder<V> maxEntries(int size){
+            this.size=size;
+            return this;
+        }
+
+        public Builder<V> concurrencyLevel(int concurrencyLevel){
+            this.concurrencyLevel=concurrencyLevel;
+            return this;
+        }
+
+        public ConcurrentLongKeyedCache<V> build(){
+            Preconditions.checkArgument(size>0,"Cannot create a cache with a negative size!");
+            Preconditions.checkArgument(concurrencyLevel>0,"Cannot create a cache with a non-positive concurrency level!");
+            return new ConcurrentLongKeyedCache<>(size,concurrencyLevel);
+        }
+    }
+}
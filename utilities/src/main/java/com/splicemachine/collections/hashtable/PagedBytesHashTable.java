@@ -0,0 +1,298 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.collections.hashtable;
+
+import com.splicemachine.hash.Hash32;
+import com.splicemachine.hash.HashFunctions;
+import com.splicemachine.primitives.Bytes;
+
+import java.util.Arrays;
+
+/**
+ * An append-only, open-addressing multimap from byte[] keys to byte[] values.
+ *
+ * Rather than holding one object per key and value, all keys and values are copied into
+ * large byte[] pages, and the table itself is made up only of primitive arrays. Each distinct
+ * key is stored exactly once; the values for a key are stored as a singly-linked chain (in insertion
+ * order) of records within the pages. Addresses into the pages are encoded as a single long
+ * ({@code page<<32 | offset}), so looking up a key and walking its values never allocates.
+ *
+ * Layout of the records within a page:
+ * <pre>
+ *     key record:   [int length][key bytes]
+ *     value record: [int length][long next value address][value bytes]
+ * </pre>
+ *
+ * Lookups use linear probing over the stored 32-bit hash codes, and only compare the key bytes
+ * when the hash codes match.
+ *
+ * This class is <em>not</em> thread-safe for writes. Once fully constructed and safely published,
+ * however, any number of threads may read from it concurrently.
+ */
+public class PagedBytesHashTable{
+    public static final long NO_ENTRY=-1L;
+    private static final int DEFAULT_PAGE_SIZE=1<<20;
+    private static final int VALUE_HEADER_SIZE=Bytes.SIZEOF_INT+Bytes.SIZEOF_LONG;
+
+    private final Hash32 hashFunction;
+    private final float loadFactor;
+    private final int pageSize;
+
+    private int[] hashCodes;
+    private long[] keyAddresses;
+    private long[] firstValues;
+    private long[] lastValues;
+    private int positionMask;
+    private int resizeThreshold;
+
+    private byte[][] pages;
+    private int currentPage;
+    private int pagePosition;
+
+    private int numKeys;
+    private long numValues;
+    private long bytesUsed;
+    private long pageBytes;
+
+    public PagedBytesHashTable(){
+        this(16,0.75f,DEFAULT_PAGE_SIZE);
+    }
+
+    public PagedBytesHashTable(int initialSize,float loadFactor,int pageSize){
+        assert loadFactor>0f && loadFactor<1f: "Load factor must be in (0,1)";
+        this.hashFunction=HashFunctions.murmur3(0);
+        this.loadFactor=loadFactor;
+        this.pageSize=pageSize;
+
+        int s=1;
+        while(s<initialSize)
+            s<<=1;
+        allocateSlots(s);
+        this.pages=new byte[4][];
+        this.pages[0]=new byte[pageSize];
+        this.currentPage=0;
+        this.pageBytes=pageSize;
+    }
+
+    /**
+     * Add {@code value} to the set of values associated with {@code key}.
+     *
+     * @return true if this is the first value which was added for {@code key}
+     */
+    public boolean put(byte[] key,int keyOffset,int keyLength,byte[] value,int valueOffset,int valueLength){
+        int hashCode=hashFunction.hash(key,keyOffset,keyLength);
+        int pos=findSlot(hashCode,key,keyOffset,keyLength);
+        boolean isNew=keyAddresses[pos]==NO_ENTRY;
+        if(isNew){
+            if(numKeys>=resizeThreshold){
+                resize();
+                pos=findSlot(hashCode,key,keyOffset,keyLength);
+            }
+            long keyAddress=reserve(Bytes.SIZEOF_INT+keyLength);
+            byte[] page=pages[page(keyAddress)];
+            int off=offset(keyAddress);
+            Bytes.toBytes(keyLength,page,off);
+            System.arraycopy(key,keyOffset,page,off+Bytes.SIZEOF_INT,keyLength);
+            hashCodes[pos]=hashCode;
+            keyAddresses[pos]=keyAddress;
+            numKeys++;
+        }
+
+        long valueAddress=reserve(VALUE_HEADER_SIZE+valueLength);
+        byte[] page=pages[page(valueAddress)];
+        int off=offset(valueAddress);
+        Bytes.toBytes(valueLength,page,off);
+        Bytes.toBytes(NO_ENTRY,page,off+Bytes.SIZEOF_INT);
+        System.arraycopy(value,valueOffset,page,off+VALUE_HEADER_SIZE,valueLength);
+
+        if(isNew){
+            firstValues[pos]=valueAddress;
+        }else{
+            long last=lastValues[pos];
+            Bytes.toBytes(valueAddress,pages[page(last)],offset(last)+Bytes.SIZEOF_INT);
+        }
+        lastValues[pos]=valueAddress;
+        numValues++;
+        return isNew;
+    }
+
+    public boolean put(byte[] key,byte[] value){
+        return put(key,0,key.length,value,0,value.length);
+    }
+
+    /**
+     * @return the address of the first value stored for {@code key}, or {@link #NO_ENTRY} if
+     * the key is not present in the table.
+     */
+    public long firstValue(byte[] key,int keyOffset,int keyLength){
+        int pos=findSlot(hashFunction.hash(key,keyOffset,keyLength),key,keyOffset,keyLength);
+        if(keyAddresses[pos]==NO_ENTRY) return NO_ENTRY;
+        return firstValues[pos];
+    }
+
+    public boolean containsKey(byte[] key,int keyOffset,int keyLength){
+        return firstValue(key,keyOffset,keyLength)!=NO_ENTRY;
+    }
+
+    /**
+     * @return the address of the value which follows {@code valueAddress} for the same key, or
+     * {@link #NO_ENTRY} if {@code valueAddress} is the last value for that key.
+     */
+    public long nextValue(long valueAddress){
+        return Bytes.toLong(pages[page(valueAddress)],offset(valueAddress)+Bytes.SIZEOF_INT);
+    }
+
+    public byte[] valueArray(long valueAddress){
+        return pages[page(valueAddress)];
+    }
+
+    public int valueOffset(long valueAddress){
+        return offset(valueAddress)+VALUE_HEADER_SIZE;
+    }
+
+    public int valueLength(long valueAddress){
+        return Bytes.toInt(pages[page(valueAddress)],offset(valueAddress));
+    }
+
+    /**
+     * @return the number of distinct keys held in the table
+     */
+    public int numKeys(){
+        return numKeys;
+    }
+
+    /**
+     * @return the total number of values held in the table
+     */
+    public long size(){
+        return numValues;
+    }
+
+    /**
+     * @return the number of bytes of keys and values (including record headers) held in the table
+     */
+    public long bytesUsed(){
+        return bytesUsed;
+    }
+
+    /**
+     * @return an estimate of the total heap occupied by this table, including slack in the
+     * slot arrays and in the pages.
+     */
+    public long heapSize(){
+        return pageBytes+(long)hashCodes.length*(Bytes.SIZEOF_INT+3*Bytes.SIZEOF_LONG);
+    }
+
+    /*
+     * Slot-level access, for visiting every key in the table. Slots are numbered from 0 to
+     * slotCount()-1, and only occupied slots hold a key.
+     */
+    public int slotCount(){
+        return keyAddresses.length;
+    }
+
+    public boolean isOccupied(int slot){
+        return keyAddresses[slot]!=NO_ENTRY;
+    }
+
+    public long firstValueAt(int slot){
+        assert isOccupied(slot): "Slot "+slot+" is empty";
+        return firstValues[slot];
+    }
+
+    public byte[] keyArray(int slot){
+        return pages[page(keyAddresses[slot])];
+    }
+
+    public int keyOffset(int slot){
+        return offset(keyAddresses[slot])+Bytes.SIZEOF_INT;
+    }
+
+    public int keyLength(int slot){
+        long keyAddress=keyAddresses[slot];
+        return Bytes.toInt(pages[page(keyAddress)],offset(keyAddress));
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private static int page(long address){
+        return (int)(address>>>32);
+    }
+
+    private static int offset(long address){
+        return (int)address;
+    }
+
+    private int findSlot(int hashCode,byte[] key,int keyOffset,int keyLength){
+        int pos=hashCode&positionMask;
+        while(true){
+            long keyAddress=keyAddresses[pos];
+            if(keyAddress==NO_ENTRY) return pos;
+            if(hashCodes[pos]==hashCode){
+                byte[] page=pages[page(keyAddress)];
+                int off=offset(keyAddress);
+                int len=Bytes.toInt(page,off);
+                if(Bytes.equals(page,off+Bytes.SIZEOF_INT,len,key,keyOffset,keyLength))
+                    return pos;
+            }
+            pos=(pos+1)&positionMask;
+        }
+    }
+
+    private long reserve(int length){
+        if(pagePosition+length>pages[currentPage].length){
+            if(currentPage+1>=pages.length)
+                pages=Arrays.copyOf(pages,2*pages.length);
+            currentPage++;
+            //oversized records get a page all to themselves
+            pages[currentPage]=new byte[Math.max(pageSize,length)];
+            pageBytes+=pages[currentPage].length;
+            pagePosition=0;
+        }
+        long address=(((long)currentPage)<<32)|pagePosition;
+        pagePosition+=length;
+        bytesUsed+=length;
+        return address;
+    }
+
+    private void allocateSlots(int size){
+        this.hashCodes=new int[size];
+        this.keyAddresses=new long[size];
+        this.firstValues=new long[size];
+        this.lastValues=new long[size];
+        Arrays.fill(keyAddresses,NO_ENTRY);
+        this.positionMask=size-1;
+        this.resizeThreshold=(int)(loadFactor*size);
+    }
+
+    private void resize(){
+        int[] oldHashCodes=hashCodes;
+        long[] oldKeys=keyAddresses;
+        long[] oldFirst=firstValues;
+        long[] oldLast=lastValues;
+        allocateSlots(2*oldHashCodes.length);
+        for(int i=0;i<oldKeys.length;i++){
+            if(oldKeys[i]==NO_ENTRY) continue;
+            //keys are distinct, so we only need to find the first empty slot
+            int pos=oldHashCodes[i]&positionMask;
+            while(keyAddresses[pos]!=NO_ENTRY)
+                pos=(pos+1)&positionMask;
+            hashCodes[pos]=oldHashCodes[i];
+            keyAddresses[pos]=oldKeys[i];
+            firstValues[pos]=oldFirst[i];
+            lastValues[pos]=oldLast[i];
+        }
+    }
+}
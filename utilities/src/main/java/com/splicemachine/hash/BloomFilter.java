@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.hash;
+
+import org.spark_project.guava.base.Preconditions;
+
+/**
+ * A Bloom filter over byte sequences.
+ *
+ * {@link #mightContain} never returns false for a sequence which was added, and returns true for a
+ * sequence which was not added with (approximately) the false positive probability the filter was sized for.
+ *
+ * The k bit positions for an element are derived from two independent 32-bit Murmur3 hashes, as
+ * {@code h1 + i*h2} (Kirsch and Mitzenmacher), so each add or lookup hashes the element only twice.
+ *
+ * Adding elements is not thread-safe, but once fully built, the filter may be read by any number of threads.
+ */
+public class BloomFilter{
+    private static final Hash32 HASH1=HashFunctions.murmur3(0x5bd1e995);
+    private static final Hash32 HASH2=HashFunctions.murmur3(0x1b873593);
+
+    private final long[] bits;
+    private final long numBits;
+    private final int numHashes;
+
+    private BloomFilter(long numBits,int numHashes){
+        this.bits=new long[(int)((numBits+63)>>>6)];
+        this.numBits=((long)bits.length)<<6;
+        this.numHashes=numHashes;
+    }
+
+    /**
+     * @param expectedElements the number of elements which will be added
+     * @param falsePositiveRate the desired false positive probability, once all elements are added
+     * @return a filter sized to hold {@code expectedElements} at the requested false positive rate
+     */
+    public static BloomFilter create(long expectedElements,double falsePositiveRate){
+        Preconditions.checkArgument(expectedElements>=0,"Cannot create a filter for a negative number of elements!");
+        Preconditions.checkArgument(falsePositiveRate>0d && falsePositiveRate<1d,"The false positive rate must be between 0 and 1!");
+        long n=Math.max(expectedElements,1L);
+        long numBits=(long)Math.ceil(-n*Math.log(falsePositiveRate)/(Math.log(2)*Math.log(2)));
+        Preconditions.checkArgument(numBits<=((long)Integer.MAX_VALUE)<<6,"Too many elements for a single filter!");
+        int numHashes=Math.max(1,(int)Math.round((double)numBits/n*Math.log(2)));
+        return new BloomFilter(numBits,numHashes);
+    }
+
+    public void add(byte[] bytes,int offset,int length){
+        int h1=HASH1.hash(bytes,offset,length);
+        int h2=HASH2.hash(bytes,offset,length);
+        for(int i=0;i<numHashes;i++){
+            long bit=position(h1,h2,i);
+            bits[(int)(bit>>>6)]|=1L<<bit;
+        }
+    }
+
+    public void add(byte[] bytes){
+        add(bytes,0,bytes.length);
+    }
+
+    /**
+     * @return false if the sequence was definitely not added to the filter
+     */
+    public boolean mightContain(byte[] bytes,int offset,int length){
+        int h1=HASH1.hash(bytes,offset,length);
+        int h2=HASH2.hash(bytes,offset,length);
+        for(int i=0;i<numHashes;i++){
+            long bit=position(h1,h2,i);
+            if((bits[(int)(bit>>>6)]&(1L<<bit))==0)
+                return false;
+        }
+        return true;
+    }
+
+    public boolean mightContain(byte[] bytes){
+        return mightContain(bytes,0,bytes.length);
+    }
+
+    public int numHashes(){
+        return numHashes;
+    }
+
+    /**
+     * @return the number of bytes held by the filter's bit set
+     */
+    public long heapSize(){
+        return (long)bits.length*8;
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private long position(int h1,int h2,int i){
+        long combined=(h1&0xFFFFFFFFL)+i*(h2&0xFFFFFFFFL);
+        return combined%numBits;
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.metrics;
+
+import com.splicemachine.annotations.ThreadSafe;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of latencies (in nanoseconds) which many threads can record into at once.
+ * <p>
+ * Unlike a {@link SampledTimer}, which keeps a sample of the latencies between its own start and stop calls,
+ * the histogram counts every latency it is given, in buckets which grow exponentially in width: each power
+ * of two is divided into 8 equal buckets, so reported percentiles are within 12.5% of the true value. Recording
+ * a latency is a handful of atomic operations, and never allocates.
+ */
+@ThreadSafe
+public class LatencyHistogram implements LatencyView{
+    /*the number of linear sub-buckets in each power of two (as a power of two)*/
+    private static final int SUB_BUCKET_BITS=3;
+    private static final int SUB_BUCKETS=1<<SUB_BUCKET_BITS;
+    private static final int NUM_BUCKETS=SUB_BUCKETS+(63-SUB_BUCKET_BITS)*SUB_BUCKETS;
+
+    private final AtomicLongArray buckets=new AtomicLongArray(NUM_BUCKETS);
+    private final AtomicLong count=new AtomicLong(0l);
+    private final AtomicLong total=new AtomicLong(0l);
+    private final AtomicLong min=new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max=new AtomicLong(0l);
+
+    /**
+     * @param latencyNanos the latency to record. Negative latencies are recorded as 0
+     */
+    public void record(long latencyNanos){
+        if(latencyNanos<0) latencyNanos=0;
+        buckets.incrementAndGet(bucket(latencyNanos));
+        count.incrementAndGet();
+        total.addAndGet(latencyNanos);
+        long currMin;
+        while(latencyNanos<(currMin=min.get()) && !min.compareAndSet(currMin,latencyNanos)){
+            //retry
+        }
+        long currMax;
+        while(latencyNanos>(currMax=max.get()) && !max.compareAndSet(currMax,latencyNanos)){
+            //retry
+        }
+    }
+
+    /**
+     * @return the number of latencies recorded
+     */
+    public long getCount(){
+        return count.get();
+    }
+
+    @Override
+    public double getOverallLatency(){
+        long n=count.get();
+        return n==0?0d:((double)total.get())/n;
+    }
+
+    @Override public long getP25Latency(){ return getPercentile(0.25d); }
+    @Override public long getP50Latency(){ return getPercentile(0.50d); }
+    @Override public long getP75Latency(){ return getPercentile(0.75d); }
+    @Override public long getP90Latency(){ return getPercentile(0.90d); }
+    @Override public long getP95Latency(){ return getPercentile(0.95d); }
+    @Override public long getP99Latency(){ return getPercentile(0.99d); }
+
+    @Override
+    public long getMinLatency(){
+        long m=min.get();
+        return m==Long.MAX_VALUE?0l:m;
+    }
+
+    @Override
+    public long getMaxLatency(){
+        return max.get();
+    }
+
+    /**
+     * @param percentile a fraction between 0 and 1
+     * @return the upper bound of the bucket holding the latency at {@code percentile}, or 0 if nothing has been
+     * recorded
+     */
+    public long getPercentile(double percentile){
+        long n=count.get();
+        if(n==0) return 0l;
+        long rank=Math.max(1l,(long)Math.ceil(percentile*n));
+        long seen=0l;
+        for(int i=0;i<NUM_BUCKETS;i++){
+            seen+=buckets.get(i);
+            if(seen>=rank)
+                return Math.min(upperBound(i),getMaxLatency());
+        }
+        //records arrived while we were reading the buckets
+        return getMaxLatency();
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private static int bucket(long value){
+        if(value<SUB_BUCKETS) return (int)value;
+        int exponent=63-Long.numberOfLeadingZeros(value);
+        int subBucket=(int)(value>>>(exponent-SUB_BUCKET_BITS))&(SUB_BUCKETS-1);
+        return SUB_BUCKETS+(exponent-SUB_BUCKET_BITS)*SUB_BUCKETS+subBucket;
+    }
+
+    private static long upperBound(int bucket){
+        if(bucket<SUB_BUCKETS) return bucket;
+        int exponent=(bucket-SUB_BUCKETS)/SUB_BUCKETS+SUB_BUCKET_BITS;
+        long subBucket=(bucket-SUB_BUCKETS)%SUB_BUCKETS;
+        long width=1l<<(exponent-SUB_BUCKET_BITS);
+        return (1l<<exponent)+(subBucket+1)*width-1;
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class ConcurrentLongKeyedCacheTest{
+
+    @Test
+    public void testCanPutAndThenFetch() throws Exception{
+        ConcurrentLongKeyedCache<String> cache=ConcurrentLongKeyedCache.<String>newBuilder().maxEntries(4).build();
+        Assert.assertNull("Found an element in an empty cache!",cache.get(1L));
+
+        cache.put(1L,"one");
+        Assert.assertEquals("Incorrect size!",1,cache.size());
+        Assert.assertEquals("Incorrect cache fetch!","one",cache.get(1L));
+        Assert.assertEquals("Incorrect hit count!",1L,cache.hitCount());
+        Assert.assertEquals("Incorrect miss count!",1L,cache.missCount());
+    }
+
+    @Test
+    public void testPutReplacesExistingEntry() throws Exception{
+        ConcurrentLongKeyedCache<String> cache=ConcurrentLongKeyedCache.<String>newBuilder().maxEntries(4).build();
+        cache.put(1L,"one");
+        cache.put(1L,"uno");
+
+        Assert.assertEquals("Incorrect size!",1,cache.size());
+        Assert.assertEquals("Incorrect cache fetch!","uno",cache.get(1L));
+        Assert.assertEquals("Incorrect eviction count!",0L,cache.evictionCount());
+    }
+
+    @Test
+    public void testEvictsWhenFullAndRemainingEntriesAreFindable() throws Exception{
+        ConcurrentLongKeyedCache<Long> cache=ConcurrentLongKeyedCache.<Long>newBuilder().maxEntries(64).concurrencyLevel(4).build();
+        int numKeys=1024;
+        for(long i=0;i<numKeys;i++){
+            cache.put(i,i);
+            Assert.assertEquals("Incorrect cache fetch!",i,cache.get(i).longValue());
+            Assert.assertTrue("Cache size is too large!",cache.size()<=cache.maxSize());
+        }
+
+        int found=0;
+        for(long i=0;i<numKeys;i++){
+            Long value=cache.get(i);
+            if(value!=null){
+                Assert.assertEquals("Incorrect value for key "+i,i,value.longValue());
+                found++;
+            }
+        }
+        Assert.assertEquals("Incorrect number of entries found!",cache.size(),found);
+        Assert.assertEquals("Incorrect eviction count!",numKeys-cache.size(),cache.evictionCount());
+    }
+
+    @Test
+    public void testReferencedEntryIsNotEvicted() throws Exception{
+        ConcurrentLongKeyedCache<Long> cache=ConcurrentLongKeyedCache.<Long>newBuilder().maxEntries(4).concurrencyLevel(1).build();
+        for(long i=0;i<4;i++){
+            cache.put(i,i);
+        }
+        Assert.assertNotNull("Missing entry!",cache.get(0L));
+
+        cache.put(4L,4L);
+        Assert.assertEquals("Incorrect size!",4,cache.size());
+        Assert.assertTrue("Recently used entry was evicted!",cache.containsKey(0L));
+        Assert.assertTrue("New entry is missing!",cache.containsKey(4L));
+    }
+
+    @Test
+    public void testConcurrentAccessReturnsCorrectValues() throws Exception{
+        final ConcurrentLongKeyedCache<Long> cache=ConcurrentLongKeyedCache.<Long>newBuilder().maxEntries(256).concurrencyLevel(8).build();
+        int numThreads=8;
+        ExecutorService executor=Executors.newFixedThreadPool(numThreads);
+        try{
+            List<Future<Void>> futures=new ArrayList<>(numThreads);
+            for(int t=0;t<numThreads;t++){
+                final long seed=t;
+                futures.add(executor.submit(new Callable<Void>(){
+                    @Override
+                    public Void call() throws Exception{
+                        Random random=new Random(seed);
+                        for(int i=0;i<100000;i++){
+                            long key=random.nextInt(1024);
+                            Long value=cache.get(key);
+                            if(value==null)
+                                cache.put(key,key);
+                            else
+                                Assert.assertEquals("Incorrect value for key "+key,key,value.longValue());
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for(Future<Void> future : futures){
+                future.get();
+            }
+        }finally{
+            executor.shutdownNow();
+        }
+        Assert.assertTrue("Cache size is too large!",cache.size()<=cache.maxSize());
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.collections.hashtable;
+
+import com.splicemachine.primitives.Bytes;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class PagedBytesHashTableTest{
+
+    @Test
+    public void testMissingKeyReturnsNoEntry() throws Exception{
+        PagedBytesHashTable table=new PagedBytesHashTable();
+        byte[] key=Bytes.toBytes(1L);
+        Assert.assertEquals("Found a value in an empty table!",PagedBytesHashTable.NO_ENTRY,table.firstValue(key,0,key.length));
+
+        table.put(Bytes.toBytes(2L),Bytes.toBytes("two"));
+        Assert.assertFalse("Found a value which was never added!",table.containsKey(key,0,key.length));
+    }
+
+    @Test
+    public void testValuesAreReturnedInInsertionOrder() throws Exception{
+        PagedBytesHashTable table=new PagedBytesHashTable();
+        byte[] key=Bytes.toBytes("key");
+        Assert.assertTrue("First put was not reported as a new key",table.put(key,Bytes.toBytes("a")));
+        Assert.assertFalse("Second put was reported as a new key",table.put(key,Bytes.toBytes("b")));
+        Assert.assertFalse("Third put was reported as a new key",table.put(key,Bytes.toBytes("c")));
+
+        Assert.assertEquals("Incorrect number of keys",1,table.numKeys());
+        Assert.assertEquals("Incorrect number of values",3,table.size());
+        Assert.assertEquals("Incorrect values",Arrays.asList("a","b","c"),values(table,key));
+    }
+
+    @Test
+    public void testCanFindEveryKeyAfterResizingAndPaging() throws Exception{
+        //small pages and a small initial size force both resizing and many pages
+        PagedBytesHashTable table=new PagedBytesHashTable(4,0.75f,64);
+        int numKeys=10000;
+        for(int i=0;i<numKeys;i++){
+            byte[] key=Bytes.toBytes(i);
+            table.put(key,Bytes.toBytes("v"+i));
+            if(i%3==0)
+                table.put(key,Bytes.toBytes("w"+i));
+        }
+
+        Assert.assertEquals("Incorrect number of keys",numKeys,table.numKeys());
+        for(int i=0;i<numKeys;i++){
+            List<String> expected=i%3==0?Arrays.asList("v"+i,"w"+i):Arrays.asList("v"+i);
+            Assert.assertEquals("Incorrect values for key "+i,expected,values(table,Bytes.toBytes(i)));
+        }
+    }
+
+    @Test
+    public void testOversizedValueGetsItsOwnPage() throws Exception{
+        PagedBytesHashTable table=new PagedBytesHashTable(4,0.75f,16);
+        byte[] key=Bytes.toBytes(1L);
+        byte[] value=new byte[100];
+        Arrays.fill(value,(byte)7);
+        table.put(key,value);
+        table.put(key,Bytes.toBytes(2L));
+
+        long address=table.firstValue(key,0,key.length);
+        byte[] found=Arrays.copyOfRange(table.valueArray(address),table.valueOffset(address),
+                table.valueOffset(address)+table.valueLength(address));
+        Assert.assertArrayEquals("Incorrect oversized value",value,found);
+        Assert.assertEquals("Incorrect number of values",2,values(table,key).size());
+    }
+
+    @Test
+    public void testCanVisitEveryKeyBySlot() throws Exception{
+        PagedBytesHashTable table=new PagedBytesHashTable(4,0.75f,64);
+        int numKeys=100;
+        for(int i=0;i<numKeys;i++){
+            table.put(Bytes.toBytes(i),Bytes.toBytes("v"+i));
+        }
+
+        boolean[] seen=new boolean[numKeys];
+        for(int slot=0;slot<table.slotCount();slot++){
+            if(!table.isOccupied(slot)) continue;
+            int key=Bytes.toInt(table.keyArray(slot),table.keyOffset(slot));
+            Assert.assertEquals("Incorrect key length",Bytes.SIZEOF_INT,table.keyLength(slot));
+            Assert.assertFalse("Saw key "+key+" twice",seen[key]);
+            seen[key]=true;
+            long address=table.firstValueAt(slot);
+            Assert.assertEquals("Incorrect value for key "+key,"v"+key,
+                    Bytes.toString(table.valueArray(address),table.valueOffset(address),table.valueLength(address)));
+        }
+        for(int i=0;i<numKeys;i++){
+            Assert.assertTrue("Did not visit key "+i,seen[i]);
+        }
+    }
+
+    private static List<String> values(PagedBytesHashTable table,byte[] key){
+        List<String> values=new ArrayList<>();
+        long address=table.firstValue(key,0,key.length);
+        while(address!=PagedBytesHashTable.NO_ENTRY){
+            values.add(Bytes.toString(table.valueArray(address),table.valueOffset(address),table.valueLength(address)));
+            address=table.nextValue(address);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.hash;
+
+import com.splicemachine.primitives.Bytes;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BloomFilterTest{
+
+    @Test
+    public void testContainsEveryAddedElement() throws Exception{
+        BloomFilter filter=BloomFilter.create(10000,0.01d);
+        for(long i=0;i<10000;i++){
+            filter.add(Bytes.toBytes(i));
+        }
+        for(long i=0;i<10000;i++){
+            Assert.assertTrue("Missing element "+i,filter.mightContain(Bytes.toBytes(i)));
+        }
+    }
+
+    @Test
+    public void testLookupIsIndependentOfOffset() throws Exception{
+        BloomFilter filter=BloomFilter.create(100,0.01d);
+        byte[] page=new byte[64];
+        byte[] element=Bytes.toBytes("hello bloom filter");
+        System.arraycopy(element,0,page,13,element.length);
+        filter.add(page,13,element.length);
+
+        Assert.assertTrue("Element added from within a larger array was not found!",filter.mightContain(element));
+    }
+
+    @Test
+    public void testFalsePositiveRateIsNearTarget() throws Exception{
+        int numElements=10000;
+        BloomFilter filter=BloomFilter.create(numElements,0.01d);
+        for(long i=0;i<numElements;i++){
+            filter.add(Bytes.toBytes(i));
+        }
+        int falsePositives=0;
+        int numLookups=100000;
+        for(long i=numElements;i<numElements+numLookups;i++){
+            if(filter.mightContain(Bytes.toBytes(i)))
+                falsePositives++;
+        }
+        double rate=(double)falsePositives/numLookups;
+        Assert.assertTrue("False positive rate is too high: "+rate,rate<0.02d);
+    }
+
+    @Test
+    public void testEmptyFilterContainsNothing() throws Exception{
+        BloomFilter filter=BloomFilter.create(0,0.01d);
+        Assert.assertFalse("Empty filter contains an element!",filter.mightContain(Bytes.toBytes(1L)));
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2012 - 2017 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class LatencyHistogramTest{
+
+    @Test
+    public void testEmptyHistogramReportsZero() throws Exception{
+        LatencyHistogram histogram=new LatencyHistogram();
+        Assert.assertEquals(0l,histogram.getCount());
+        Assert.assertEquals(0d,histogram.getOverallLatency(),0d);
+        Assert.assertEquals(0l,histogram.getP50Latency());
+        Assert.assertEquals(0l,histogram.getMinLatency());
+        Assert.assertEquals(0l,histogram.getMaxLatency());
+    }
+
+    @Test
+    public void testPercentilesAreWithinBucketError() throws Exception{
+        LatencyHistogram histogram=new LatencyHistogram();
+        Random random=new Random(0);
+        long[] latencies=new long[10000];
+        for(int i=0;i<latencies.length;i++){
+            latencies[i]=(long)Math.abs(random.nextGaussian()*1000000)+1000;
+            histogram.record(latencies[i]);
+        }
+        Arrays.sort(latencies);
+        Assert.assertEquals(latencies.length,histogram.getCount());
+        Assert.assertEquals(latencies[0],histogram.getMinLatency());
+        Assert.assertEquals(latencies[latencies.length-1],histogram.getMaxLatency());
+        for(double p:new double[]{0.25,0.5,0.75,0.9,0.95,0.99}){
+            long expected=latencies[(int)Math.ceil(p*latencies.length)-1];
+            long actual=histogram.getPercentile(p);
+            Assert.assertTrue("p"+p+" too small: expected="+expected+", actual="+actual,actual>=expected);
+            Assert.assertTrue("p"+p+" too large: expected="+expected+", actual="+actual,actual<=expected*1.125d+1);
+        }
+    }
+
+    @Test
+    public void testSmallAndLargeLatencies() throws Exception{
+        LatencyHistogram histogram=new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(3);
+        histogram.record(Long.MAX_VALUE);
+        Assert.assertEquals(0l,histogram.getMinLatency());
+        Assert.assertEquals(0l,histogram.getP25Latency());
+        Assert.assertEquals(3l,histogram.getP50Latency());
+        Assert.assertEquals(Long.MAX_VALUE,histogram.getP99Latency());
+    }
+}